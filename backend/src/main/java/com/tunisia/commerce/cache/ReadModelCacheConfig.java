@@ -0,0 +1,90 @@
+package com.tunisia.commerce.cache;
+
+import com.fasterxml.jackson.annotation.JsonTypeInfo;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.cache.RedisCacheConfiguration;
+import org.springframework.data.redis.cache.RedisCacheManager;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.data.redis.serializer.GenericJacksonJsonRedisSerializer;
+import org.springframework.data.redis.serializer.RedisSerializationContext;
+import tools.jackson.databind.DefaultTyping;
+import tools.jackson.databind.DeserializationFeature;
+import tools.jackson.databind.ObjectMapper;
+import tools.jackson.databind.cfg.DateTimeFeature;
+import tools.jackson.databind.json.JsonMapper;
+import tools.jackson.databind.jsontype.BasicPolymorphicTypeValidator;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Gestionnaire de cache de l'application ({@code @Cacheable}) : caches à deux niveaux, tier local
+ * Caffeine et tier partagé Redis, avec une rétention propre à chaque cache (voir {@link ReadModelCaches}).
+ */
+@Configuration
+public class ReadModelCacheConfig {
+
+    @Bean
+    public TwoLevelCacheManager cacheManager(
+            RedisConnectionFactory connectionFactory,
+            StringRedisTemplate redisTemplate,
+            RedisMessageListenerContainer listenerContainer,
+            MeterRegistry meterRegistry,
+            @Value("${app.cache.read-models.redis-tier:true}") boolean redisTier,
+            @Value("${app.cache.read-models.redis-invalidation:true}") boolean redisInvalidation) {
+        RedisCacheManager farCacheManager = redisTier ? farCacheManager(connectionFactory) : null;
+        return new TwoLevelCacheManager(ReadModelCaches.POLICIES, farCacheManager, redisTemplate,
+                listenerContainer, meterRegistry, redisInvalidation);
+    }
+
+    /**
+     * Tier partagé : un cache Redis par cache déclaré, préfixé {@code cache:<nom>::}, expirant selon
+     * sa politique. Non exposé comme bean : seul le gestionnaire à deux niveaux y accède.
+     */
+    private static RedisCacheManager farCacheManager(RedisConnectionFactory connectionFactory) {
+        RedisCacheConfiguration defaults = RedisCacheConfiguration.defaultCacheConfig()
+                .disableCachingNullValues()
+                .computePrefixWith(name -> "cache:" + name + "::")
+                .serializeValuesWith(RedisSerializationContext.SerializationPair.fromSerializer(
+                        new GenericJacksonJsonRedisSerializer(cacheObjectMapper())));
+
+        Map<String, RedisCacheConfiguration> configurations = new HashMap<>();
+        ReadModelCaches.POLICIES.forEach((name, policy) -> {
+            if (policy.hasFarTier()) {
+                configurations.put(name, defaults.entryTtl(policy.farTtl()));
+            }
+        });
+
+        RedisCacheManager cacheManager = RedisCacheManager.builder(connectionFactory)
+                .cacheDefaults(defaults)
+                .withInitialCacheConfigurations(configurations)
+                .disableCreateOnMissingCache()
+                .enableStatistics()
+                .build();
+        cacheManager.afterPropertiesSet();
+        return cacheManager;
+    }
+
+    /**
+     * DTO sérialisés avec leur type (listes et objets non finaux) pour être relus à l'identique ;
+     * dates en ISO-8601. Seuls les types de l'application et du JDK courant sont acceptés en lecture.
+     */
+    private static ObjectMapper cacheObjectMapper() {
+        BasicPolymorphicTypeValidator typeValidator = BasicPolymorphicTypeValidator.builder()
+                .allowIfSubType("com.tunisia.commerce.")
+                .allowIfSubType("java.util.")
+                .allowIfSubType("java.math.")
+                .allowIfSubType("java.time.")
+                .build();
+        return JsonMapper.builder()
+                .disable(DateTimeFeature.WRITE_DATES_AS_TIMESTAMPS)
+                .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES)
+                .activateDefaultTyping(typeValidator, DefaultTyping.NON_FINAL, JsonTypeInfo.As.PROPERTY)
+                .build();
+    }
+}
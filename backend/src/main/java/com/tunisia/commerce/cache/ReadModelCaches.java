@@ -0,0 +1,44 @@
+package com.tunisia.commerce.cache;
+
+import java.time.Duration;
+import java.util.Map;
+
+/**
+ * Caches applicatifs des lectures fréquentes et leur politique de rétention.
+ *
+ * Chaque cache a un tier local (Caffeine, borné en nombre d'entrées) et, sauf exception, un tier
+ * partagé dans Redis. Le tier local expire plus tôt que le tier Redis : il borne la durée pendant
+ * laquelle une instance peut rater un message d'invalidation.
+ */
+public final class ReadModelCaches {
+
+    // Liste des exportateurs à agrément validé (recherche des importateurs)
+    public static final String EXPORTATEURS_VALIDES = "exportateurs-valides";
+    // Structures internes, toutes ou actives seulement
+    public static final String STRUCTURES = "structures";
+    // Produits déclarés par exportateur (clé : id de l'exportateur)
+    public static final String PRODUITS_EXPORTATEUR = "produits-exportateur";
+    // Nombre de demandes en attente par instance de validation (clé : id de l'instance)
+    public static final String DEMANDES_EN_ATTENTE_INSTANCE = "demandes-en-attente-instance";
+
+    /**
+     * Rétention d'un cache : taille et durée du tier local, durée du tier Redis
+     * ({@link Duration#ZERO} : pas de tier Redis).
+     */
+    public record Policy(long nearMaxEntries, Duration nearTtl, Duration farTtl) {
+
+        public boolean hasFarTier() {
+            return !farTtl.isZero();
+        }
+    }
+
+    public static final Map<String, Policy> POLICIES = Map.of(
+            EXPORTATEURS_VALIDES, new Policy(10, Duration.ofMinutes(2), Duration.ofMinutes(10)),
+            STRUCTURES, new Policy(10, Duration.ofMinutes(10), Duration.ofMinutes(60)),
+            PRODUITS_EXPORTATEUR, new Policy(2_000, Duration.ofMinutes(5), Duration.ofMinutes(30)),
+            // Simple COUNT indexé : un aller-retour Redis coûterait autant que la requête
+            DEMANDES_EN_ATTENTE_INSTANCE, new Policy(1_000, Duration.ofSeconds(30), Duration.ZERO));
+
+    private ReadModelCaches() {
+    }
+}
@@ -0,0 +1,24 @@
+package com.tunisia.commerce.cache;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+
+/**
+ * Conteneur d'écoute Redis partagé : une seule connexion d'abonnement par instance pour tous les
+ * canaux (évictions des caches à deux niveaux et de référence, index douane, notifications SSE).
+ *
+ * Les services s'y abonnent à l'initialisation ; le conteneur démarre avec le contexte et
+ * s'arrête avant la destruction des beans.
+ */
+@Configuration
+public class RedisListenerConfig {
+
+    @Bean
+    public RedisMessageListenerContainer redisMessageListenerContainer(RedisConnectionFactory connectionFactory) {
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(connectionFactory);
+        return container;
+    }
+}
@@ -0,0 +1,74 @@
+package com.tunisia.commerce.cache;
+
+import com.github.benmanes.caffeine.jcache.configuration.CaffeineConfiguration;
+import com.github.benmanes.caffeine.jcache.spi.CaffeineCachingProvider;
+import org.hibernate.cache.jcache.ConfigSettings;
+import org.hibernate.cache.spi.RegionFactory;
+import org.hibernate.cfg.AvailableSettings;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.hibernate.autoconfigure.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.cache.CacheManager;
+import javax.cache.Caching;
+import javax.cache.spi.CachingProvider;
+import java.util.OptionalLong;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cache de second niveau Hibernate (JCache) et cache de requêtes pour les tables de référence.
+ *
+ * Tier local en tas (Caffeine), borné et expirant : chaque instance garde sa copie ; les
+ * écritures d'administration invalident les régions localement et sur les autres instances
+ * via Redis (voir ReferenceCacheService).
+ */
+@Configuration
+public class ReferenceCacheConfig {
+
+    @Bean(destroyMethod = "close")
+    public CacheManager referenceJCacheManager(
+            @Value("${app.cache.reference.max-entries:10000}") long maxEntries,
+            @Value("${app.cache.reference.ttl-minutes:60}") long ttlMinutes) {
+        CachingProvider provider = Caching.getCachingProvider(CaffeineCachingProvider.class.getName());
+        CacheManager cacheManager = provider.getCacheManager(provider.getDefaultURI(), getClass().getClassLoader());
+
+        for (String region : ReferenceCacheRegions.ENTITY_REGIONS) {
+            createIfAbsent(cacheManager, region, boundedConfiguration(maxEntries, ttlMinutes));
+        }
+        createIfAbsent(cacheManager, ReferenceCacheRegions.QUERIES, boundedConfiguration(maxEntries, ttlMinutes));
+        createIfAbsent(cacheManager, RegionFactory.DEFAULT_QUERY_RESULTS_REGION_UNQUALIFIED_NAME,
+                boundedConfiguration(maxEntries, ttlMinutes));
+        // Horodatages de mise à jour des tables : jamais expirés avant les résultats de requêtes qu'ils valident
+        createIfAbsent(cacheManager, RegionFactory.DEFAULT_UPDATE_TIMESTAMPS_REGION_UNQUALIFIED_NAME,
+                new CaffeineConfiguration<>());
+        return cacheManager;
+    }
+
+    @Bean
+    public HibernatePropertiesCustomizer referenceCacheHibernateProperties(CacheManager referenceJCacheManager) {
+        return properties -> {
+            properties.put(AvailableSettings.USE_SECOND_LEVEL_CACHE, true);
+            properties.put(AvailableSettings.USE_QUERY_CACHE, true);
+            properties.put(AvailableSettings.CACHE_REGION_FACTORY, "jcache");
+            properties.put(ConfigSettings.CACHE_MANAGER, referenceJCacheManager);
+            properties.put(ConfigSettings.MISSING_CACHE_STRATEGY, "create");
+            // Compteurs de hits/misses par région (ReferenceCacheService) : activés par
+            // spring.jpa.properties.hibernate.generate_statistics, défaut dans observability.properties
+        };
+    }
+
+    private static CaffeineConfiguration<Object, Object> boundedConfiguration(long maxEntries, long ttlMinutes) {
+        CaffeineConfiguration<Object, Object> configuration = new CaffeineConfiguration<>();
+        configuration.setMaximumSize(OptionalLong.of(maxEntries));
+        configuration.setExpireAfterWrite(OptionalLong.of(TimeUnit.MINUTES.toNanos(ttlMinutes)));
+        return configuration;
+    }
+
+    private static void createIfAbsent(CacheManager cacheManager, String name,
+                                       CaffeineConfiguration<Object, Object> configuration) {
+        if (cacheManager.getCache(name) == null) {
+            cacheManager.createCache(name, configuration);
+        }
+    }
+}
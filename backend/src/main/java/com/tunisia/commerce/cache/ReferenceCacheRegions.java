@@ -0,0 +1,23 @@
+package com.tunisia.commerce.cache;
+
+import java.util.List;
+
+/**
+ * Régions du cache de second niveau Hibernate pour les tables de référence
+ * (pays, codes NGP, structures internes et leurs compétences).
+ */
+public final class ReferenceCacheRegions {
+
+    public static final String COUNTRY = "reference.country";
+    public static final String NGP_CODE = "reference.ngp-code";
+    public static final String STRUCTURE = "reference.structure";
+    public static final String STRUCTURE_COMPETENCE = "reference.structure-competence";
+
+    // Résultats des requêtes de référence mises en cache (findByOfficialName, findByStructure...)
+    public static final String QUERIES = "reference.queries";
+
+    public static final List<String> ENTITY_REGIONS = List.of(COUNTRY, NGP_CODE, STRUCTURE, STRUCTURE_COMPETENCE);
+
+    private ReferenceCacheRegions() {
+    }
+}
@@ -0,0 +1,177 @@
+package com.tunisia.commerce.cache;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.cache.Cache;
+import org.springframework.cache.support.AbstractValueAdaptingCache;
+
+import java.util.concurrent.Callable;
+import java.util.function.Consumer;
+
+/**
+ * Cache à deux niveaux : tier local Caffeine devant un tier partagé (Redis).
+ *
+ * Une lecture interroge le tier local, puis le tier partagé, puis charge la valeur ; chaque niveau
+ * traversé est rempli au retour. Une écriture ou une éviction touche les deux niveaux puis est
+ * signalée aux autres instances, qui vident leur tier local. Une indisponibilité du tier partagé
+ * ne fait pas échouer la lecture : le cache se replie sur le tier local et le chargement.
+ */
+@Slf4j
+public class TwoLevelCache extends AbstractValueAdaptingCache {
+
+    private final String name;
+    private final com.github.benmanes.caffeine.cache.Cache<String, Object> near;
+    // Absent pour les caches purement locaux
+    private final Cache far;
+    // Clé locale modifiée, ou null pour un vidage complet
+    private final Consumer<String> invalidationPublisher;
+
+    public TwoLevelCache(String name, com.github.benmanes.caffeine.cache.Cache<String, Object> near, Cache far,
+                         Consumer<String> invalidationPublisher) {
+        // Les méthodes mises en cache ne renvoient jamais null
+        super(false);
+        this.name = name;
+        this.near = near;
+        this.far = far;
+        this.invalidationPublisher = invalidationPublisher;
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public com.github.benmanes.caffeine.cache.Cache<String, Object> getNativeCache() {
+        return near;
+    }
+
+    public boolean hasFarTier() {
+        return far != null;
+    }
+
+    // ==================== LECTURE ====================
+
+    @Override
+    protected Object lookup(Object key) {
+        String nearKey = nearKey(key);
+        Object value = near.getIfPresent(nearKey);
+        if (value == null) {
+            value = farGet(key);
+            if (value != null) {
+                near.put(nearKey, value);
+            }
+        }
+        return value;
+    }
+
+    /**
+     * Lecture avec chargement ({@code @Cacheable(sync = true)}) : un seul chargement par clé et par
+     * instance, les lectures concurrentes attendent son résultat.
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T get(Object key, Callable<T> valueLoader) {
+        return (T) fromStoreValue(near.get(nearKey(key), ignored -> {
+            Object value = farGet(key);
+            if (value != null) {
+                return value;
+            }
+            try {
+                value = toStoreValue(valueLoader.call());
+            } catch (Exception e) {
+                throw new ValueRetrievalException(key, valueLoader, e);
+            }
+            farPut(key, value);
+            return value;
+        }));
+    }
+
+    // ==================== ÉCRITURE ====================
+
+    @Override
+    public void put(Object key, Object value) {
+        Object storeValue = toStoreValue(value);
+        farPut(key, storeValue);
+        near.put(nearKey(key), storeValue);
+        invalidationPublisher.accept(nearKey(key));
+    }
+
+    @Override
+    public void evict(Object key) {
+        // Tier partagé d'abord : un rechargement local concurrent ne doit pas y relire l'ancienne valeur
+        farEvict(key);
+        near.invalidate(nearKey(key));
+        invalidationPublisher.accept(nearKey(key));
+    }
+
+    @Override
+    public void clear() {
+        farClear();
+        near.invalidateAll();
+        invalidationPublisher.accept(null);
+    }
+
+    /**
+     * Invalidation reçue d'une autre instance : seul le tier local est concerné.
+     */
+    void invalidateNear(String nearKey) {
+        if (nearKey == null) {
+            near.invalidateAll();
+        } else {
+            near.invalidate(nearKey);
+        }
+    }
+
+    static String nearKey(Object key) {
+        return String.valueOf(key);
+    }
+
+    // ==================== TIER PARTAGÉ ====================
+
+    private Object farGet(Object key) {
+        if (far == null) {
+            return null;
+        }
+        try {
+            ValueWrapper wrapper = far.get(key);
+            return wrapper != null ? wrapper.get() : null;
+        } catch (RuntimeException e) {
+            log.warn("Lecture du cache partagé {} impossible pour {}: {}", name, key, e.getMessage());
+            return null;
+        }
+    }
+
+    private void farPut(Object key, Object value) {
+        if (far == null) {
+            return;
+        }
+        try {
+            far.put(key, value);
+        } catch (RuntimeException e) {
+            log.warn("Écriture du cache partagé {} impossible pour {}: {}", name, key, e.getMessage());
+        }
+    }
+
+    private void farEvict(Object key) {
+        if (far == null) {
+            return;
+        }
+        try {
+            far.evict(key);
+        } catch (RuntimeException e) {
+            // L'entrée partagée expirera d'elle-même ; le tier local est vidé quoi qu'il arrive
+            log.warn("Éviction du cache partagé {} impossible pour {}: {}", name, key, e.getMessage());
+        }
+    }
+
+    private void farClear() {
+        if (far == null) {
+            return;
+        }
+        try {
+            far.clear();
+        } catch (RuntimeException e) {
+            log.warn("Vidage du cache partagé {} impossible: {}", name, e.getMessage());
+        }
+    }
+}
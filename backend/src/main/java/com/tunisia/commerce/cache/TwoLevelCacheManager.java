@@ -0,0 +1,161 @@
+package com.tunisia.commerce.cache;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.transaction.AbstractTransactionSupportingCacheManager;
+import org.springframework.data.redis.cache.CacheStatistics;
+import org.springframework.data.redis.cache.RedisCache;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Gestionnaire des caches applicatifs à deux niveaux déclarés dans {@link ReadModelCaches}.
+ *
+ * Les évictions et écritures faites dans une transaction ne sont appliquées qu'après sa validation.
+ * Elles sont diffusées sur un canal Redis ({@code nodeId|cache|clé}, sans clé pour un vidage
+ * complet) : les autres instances vident leur tier local et relisent le tier partagé.
+ * Hits, misses et écritures de chaque tier sont publiés dans Micrometer ({@code cache.gets},
+ * {@code cache.puts}... étiquetés {@code cache} et {@code tier}) et visibles dans l'actuator.
+ */
+@Slf4j
+public class TwoLevelCacheManager extends AbstractTransactionSupportingCacheManager
+        implements MessageListener {
+
+    private static final String CHANNEL = "cache:two-level:evict";
+
+    private final Map<String, ReadModelCaches.Policy> policies;
+    // Gestionnaire du tier partagé, absent si Redis n'est pas utilisé comme second niveau
+    private final CacheManager farCacheManager;
+    private final StringRedisTemplate redisTemplate;
+    private final RedisMessageListenerContainer listenerContainer;
+    private final MeterRegistry meterRegistry;
+    private final boolean redisInvalidation;
+    // Identifiant de l'instance : ses propres messages sont ignorés
+    private final String nodeId = UUID.randomUUID().toString();
+    private final Map<String, TwoLevelCache> localCaches = new HashMap<>();
+
+    public TwoLevelCacheManager(Map<String, ReadModelCaches.Policy> policies,
+                                CacheManager farCacheManager,
+                                StringRedisTemplate redisTemplate,
+                                RedisMessageListenerContainer listenerContainer,
+                                MeterRegistry meterRegistry,
+                                boolean redisInvalidation) {
+        this.policies = policies;
+        this.farCacheManager = farCacheManager;
+        this.redisTemplate = redisTemplate;
+        this.listenerContainer = listenerContainer;
+        this.meterRegistry = meterRegistry;
+        this.redisInvalidation = redisInvalidation;
+        setTransactionAware(true);
+    }
+
+    @Override
+    protected Collection<? extends Cache> loadCaches() {
+        List<TwoLevelCache> caches = new ArrayList<>();
+        policies.forEach((name, policy) -> {
+            com.github.benmanes.caffeine.cache.Cache<String, Object> near = Caffeine.newBuilder()
+                    .maximumSize(policy.nearMaxEntries())
+                    .expireAfterWrite(policy.nearTtl())
+                    .recordStats()
+                    .build();
+            Cache far = policy.hasFarTier() && farCacheManager != null ? farCacheManager.getCache(name) : null;
+
+            TwoLevelCache cache = new TwoLevelCache(name, near, far, nearKey -> publishInvalidation(name, nearKey));
+            localCaches.put(name, cache);
+            caches.add(cache);
+            registerMetrics(name, near, far);
+            log.info("Cache {} : {} entrées locales pendant {}, tier partagé {}", name,
+                    policy.nearMaxEntries(), policy.nearTtl(), far != null ? "pendant " + policy.farTtl() : "désactivé");
+        });
+        return caches;
+    }
+
+    @Override
+    public void afterPropertiesSet() {
+        super.afterPropertiesSet();
+        if (!redisInvalidation) {
+            return;
+        }
+        listenerContainer.addMessageListener(this, new ChannelTopic(CHANNEL));
+    }
+
+    // ==================== ÉVICTION ====================
+
+    /**
+     * Évince une entrée après validation de la transaction en cours (immédiatement hors transaction).
+     */
+    public void evict(String cacheName, Object key) {
+        Cache cache = getCache(cacheName);
+        if (cache != null) {
+            cache.evict(key);
+        }
+    }
+
+    /**
+     * Vide un cache après validation de la transaction en cours (immédiatement hors transaction).
+     */
+    public void clear(String cacheName) {
+        Cache cache = getCache(cacheName);
+        if (cache != null) {
+            cache.clear();
+        }
+    }
+
+    private void publishInvalidation(String cacheName, String nearKey) {
+        if (!redisInvalidation) {
+            return;
+        }
+        String message = nodeId + "|" + cacheName + (nearKey != null ? "|" + nearKey : "");
+        try {
+            redisTemplate.convertAndSend(CHANNEL, message);
+        } catch (Exception e) {
+            // Les autres instances retrouveront des données à jour à l'expiration de leur tier local
+            log.warn("Diffusion de l'invalidation du cache {} impossible: {}", cacheName, e.getMessage());
+        }
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String[] parts = new String(message.getBody(), StandardCharsets.UTF_8).split("\\|", 3);
+        if (parts.length < 2 || parts[0].equals(nodeId)) {
+            return;
+        }
+        TwoLevelCache cache = localCaches.get(parts[1]);
+        if (cache != null) {
+            cache.invalidateNear(parts.length == 3 ? parts[2] : null);
+        }
+    }
+
+    // ==================== MÉTRIQUES ====================
+
+    private void registerMetrics(String name, com.github.benmanes.caffeine.cache.Cache<String, Object> near, Cache far) {
+        CaffeineCacheMetrics.monitor(meterRegistry, near, name, Tags.of("tier", "near"));
+
+        // Statistiques du tier Redis (activées sur le RedisCacheManager)
+        if (far instanceof RedisCache redisCache) {
+            registerFarCounter(name, "cache.gets", redisCache, CacheStatistics::getHits, Tags.of("result", "hit"));
+            registerFarCounter(name, "cache.gets", redisCache, CacheStatistics::getMisses, Tags.of("result", "miss"));
+            registerFarCounter(name, "cache.puts", redisCache, CacheStatistics::getPuts, Tags.empty());
+        }
+    }
+
+    private void registerFarCounter(String name, String meter, RedisCache redisCache,
+                                    ToDoubleFunction<CacheStatistics> value, Tags tags) {
+        FunctionCounter.builder(meter, redisCache, cache -> value.applyAsDouble(cache.getStatistics()))
+                .tags(tags).tag("cache", name).tag("tier", "far")
+                .register(meterRegistry);
+    }
+}
@@ -14,11 +14,15 @@ import com.tunisia.commerce.repository.AdministrateurRepository;
 import com.tunisia.commerce.repository.DemandeValidateurRepository;
 import com.tunisia.commerce.repository.DocumentRepository;
 import com.tunisia.commerce.repository.UserRepository;
+import com.tunisia.commerce.security.AuthenticatedUser;
+import com.tunisia.commerce.security.CurrentUser;
 import com.tunisia.commerce.service.UserService;
-import com.tunisia.commerce.config.JwtUtil;
 import com.tunisia.commerce.service.impl.AdminServiceImpl;
 import com.tunisia.commerce.service.impl.AuditService;
+import com.tunisia.commerce.service.impl.DocumentScanService;
+import com.tunisia.commerce.service.impl.ExchangeRateService;
 import com.tunisia.commerce.service.impl.SecureStorageService;
+import com.tunisia.commerce.service.impl.TariffEngine;
 import jakarta.servlet.http.HttpServletRequest;
 import lombok.RequiredArgsConstructor;
 import org.slf4j.Logger;
@@ -28,8 +32,10 @@ import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
+import java.math.BigDecimal;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
@@ -44,14 +50,16 @@ import java.util.Map;
 public class AdminController {
 
     private final UserService userService;
-    private final JwtUtil jwtUtil;
     private final AdministrateurRepository administrateurRepository;
     private final DocumentRepository documentRepository;
     private final AdminServiceImpl adminService;
     private final UserRepository userRepository;
     private final AuditService auditService;
     private final SecureStorageService secureStorageService;
+    private final DocumentScanService documentScanService;
     private final DemandeValidateurRepository demandeValidateurRepository;
+    private final TariffEngine tariffEngine;
+    private final ExchangeRateService exchangeRateService;
 
     private static final Logger log = LoggerFactory.getLogger(AdminController.class);
     // Méthode utilitaire pour récupérer l'IP
@@ -92,13 +100,13 @@ public class AdminController {
      * Récupérer tous les utilisateurs
      */
     @GetMapping("/users")
-    public ResponseEntity<?> getAllUsers(@RequestHeader("Authorization") String authHeader, HttpServletRequest httpRequest) {
+    public ResponseEntity<?> getAllUsers(@CurrentUser AuthenticatedUser currentUser, HttpServletRequest httpRequest) {
         String clientIp = getClientIp(httpRequest);
         String adminEmail = null;
         Long adminId = null;
         try {
             log.info("=== RÉCUPÉRATION DE TOUS LES UTILISATEURS ===");
-            validateAdmin(authHeader);
+            validateAdmin(currentUser);
 
             List<UserDTO> users = userService.getAllUsers();
             // AUDIT: Consultation liste utilisateurs
@@ -142,18 +150,18 @@ public class AdminController {
      * Récupérer TOUTES les demandes sans filtre
      */
     @GetMapping("/all-demandes")
-    public ResponseEntity<?> getAllDemandes(@RequestHeader("Authorization") String authHeader, HttpServletRequest httpRequest) {
+    public ResponseEntity<?> getAllDemandes(@CurrentUser AuthenticatedUser currentUser, HttpServletRequest httpRequest) {
         String clientIp = getClientIp(httpRequest);
         String adminEmail = null;
         Long adminId = null;
 
         try {
             log.info("=== RÉCUPÉRATION DE TOUTES LES DEMANDES ===");
-            Administrateur admin = getAdminFromToken(authHeader);
+            Administrateur admin = getAdmin(currentUser);
             adminId = admin.getId();
             adminEmail = admin.getEmail();
 
-            validateAdmin(authHeader);
+            validateAdmin(currentUser);
 
             List<AdminDemandeDTO> demandes = adminService.getAllActiveDemandes();
 
@@ -194,17 +202,17 @@ public class AdminController {
     }
 
     @GetMapping("/archived-demandes")
-    public ResponseEntity<?> getArchivedDemandes(@RequestHeader("Authorization") String authHeader, HttpServletRequest httpRequest) {
+    public ResponseEntity<?> getArchivedDemandes(@CurrentUser AuthenticatedUser currentUser, HttpServletRequest httpRequest) {
         String clientIp = getClientIp(httpRequest);
         String adminEmail = null;
         Long adminId = null;
 
         try {
-            Administrateur admin = getAdminFromToken(authHeader);
+            Administrateur admin = getAdmin(currentUser);
             adminId = admin.getId();
             adminEmail = admin.getEmail();
 
-            validateAdmin(authHeader);
+            validateAdmin(currentUser);
 
             List<AdminDemandeDTO> archivedDemandes = adminService.getAllArchivedDemandes();
 
@@ -246,7 +254,7 @@ public class AdminController {
     @GetMapping("/demande/{id}")
     public ResponseEntity<?> getDemandeById(
             @PathVariable Long id,
-            @RequestHeader("Authorization") String authHeader,
+            @CurrentUser AuthenticatedUser currentUser,
             HttpServletRequest httpRequest) {
 
         String clientIp = getClientIp(httpRequest);
@@ -255,11 +263,11 @@ public class AdminController {
 
         try {
             log.info("=== RÉCUPÉRATION DEMANDE ID: {} ===", id);
-            Administrateur admin = getAdminFromToken(authHeader);
+            Administrateur admin = getAdmin(currentUser);
             adminId = admin.getId();
             adminEmail = admin.getEmail();
 
-            validateAdmin(authHeader);
+            validateAdmin(currentUser);
 
             AdminDemandeDTO demande = adminService.getDemandeById(id);
 
@@ -324,7 +332,7 @@ public class AdminController {
     @GetMapping("/document/{documentId}/preview")
     public ResponseEntity<?> previewDocument(
             @PathVariable Long documentId,
-            @RequestHeader("Authorization") String authHeader,
+            @CurrentUser AuthenticatedUser currentUser,
             HttpServletRequest httpRequest) {
 
         String clientIp = getClientIp(httpRequest);
@@ -335,9 +343,8 @@ public class AdminController {
         try {
             log.info("=== PRÉVISUALISATION DOCUMENT ID: {} ===", documentId);
 
-            String token = extractToken(authHeader);
-            String email = jwtUtil.extractUsername(token);
-            User user = userRepository.findByEmail(email)
+            // Entité chargée par identifiant : la structure du validateur est nécessaire au contrôle d'accès
+            User user = userRepository.findById(currentUser.getId())
                     .orElseThrow(() -> new RuntimeException("Utilisateur non trouvé"));
 
             userId = user.getId();
@@ -430,6 +437,8 @@ public class AdminController {
 
     // ✅ Méthode pour déchiffrer le document
     private byte[] getDocumentContentWithDecryption(Document document) throws Exception {
+        // Jamais de lecture d'un document en quarantaine ou infecté
+        documentScanService.assertDownloadable(document);
         Path filePath = Paths.get(document.getFilePath());
 
         if (!Files.exists(filePath)) {
@@ -476,10 +485,10 @@ public class AdminController {
      * Récupérer les statistiques des demandes
      */
     @GetMapping("/demandes-statistics")
-    public ResponseEntity<?> getDemandesStatistics(@RequestHeader("Authorization") String authHeader) {
+    public ResponseEntity<?> getDemandesStatistics(@CurrentUser AuthenticatedUser currentUser) {
         try {
             log.info("=== RÉCUPÉRATION STATISTIQUES DES DEMANDES ===");
-            validateAdmin(authHeader);
+            validateAdmin(currentUser);
 
             Map<String, Object> stats = adminService.getDemandesStatistics();
 
@@ -496,22 +505,124 @@ public class AdminController {
         }
     }
 
+    /**
+     * Recharger le moteur tarifaire après une mise à jour des tables NGP / pays
+     */
+    @PostMapping("/tarifs/reload")
+    public ResponseEntity<?> reloadTariffs(@CurrentUser AuthenticatedUser currentUser) {
+        try {
+            log.info("=== RECHARGEMENT DU MOTEUR TARIFAIRE ===");
+            validateAdmin(currentUser);
+
+            long version = tariffEngine.reload();
+
+            return ResponseEntity.ok(Map.of(
+                    "success", true,
+                    "version", version
+            ));
+        } catch (Exception e) {
+            log.error("Erreur: {}", e.getMessage());
+            return ResponseEntity.badRequest().body(Map.of(
+                    "success", false,
+                    "error", e.getMessage()
+            ));
+        }
+    }
+
+    /**
+     * Version courante de la table des taux de change
+     */
+    @GetMapping("/taux-change")
+    public ResponseEntity<?> getExchangeRates(@CurrentUser AuthenticatedUser currentUser) {
+        try {
+            validateAdmin(currentUser);
+
+            ExchangeRateService.RateSnapshot rates = exchangeRateService.current();
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", true);
+            response.put("version", rates.getVersion());
+            response.put("source", rates.getSource());
+            response.put("loadedAt", rates.getLoadedAt());
+            response.put("rates", rates.getRates());
+            return ResponseEntity.ok(response);
+        } catch (Exception e) {
+            log.error("Erreur: {}", e.getMessage());
+            return ResponseEntity.badRequest().body(Map.of(
+                    "success", false,
+                    "error", e.getMessage()
+            ));
+        }
+    }
+
+    /**
+     * Téléverser une nouvelle table des taux de change (fichier « DEVISE;taux »)
+     */
+    @PostMapping("/taux-change")
+    public ResponseEntity<?> uploadExchangeRates(@CurrentUser AuthenticatedUser currentUser,
+                                                 @RequestParam("file") MultipartFile file) {
+        try {
+            log.info("=== TÉLÉVERSEMENT DES TAUX DE CHANGE ===");
+            validateAdmin(currentUser);
+            Administrateur admin = getAdmin(currentUser);
+
+            Map<String, BigDecimal> rates = exchangeRateService.parseRates(file.getInputStream());
+            long version = exchangeRateService.importRates(rates, ExchangeRateService.SOURCE_ADMIN, admin.getEmail());
+
+            return ResponseEntity.ok(Map.of(
+                    "success", true,
+                    "version", version,
+                    "count", rates.size()
+            ));
+        } catch (Exception e) {
+            log.error("Erreur: {}", e.getMessage());
+            return ResponseEntity.badRequest().body(Map.of(
+                    "success", false,
+                    "error", e.getMessage()
+            ));
+        }
+    }
+
+    /**
+     * Importer le fichier local des taux de change comme nouvelle version
+     */
+    @PostMapping("/taux-change/import-fichier")
+    public ResponseEntity<?> importExchangeRatesFile(@CurrentUser AuthenticatedUser currentUser) {
+        try {
+            validateAdmin(currentUser);
+            Administrateur admin = getAdmin(currentUser);
+
+            long version = exchangeRateService.importRates(exchangeRateService.readRatesFile(),
+                    ExchangeRateService.SOURCE_FICHIER, admin.getEmail());
+
+            return ResponseEntity.ok(Map.of(
+                    "success", true,
+                    "version", version
+            ));
+        } catch (Exception e) {
+            log.error("Erreur: {}", e.getMessage());
+            return ResponseEntity.badRequest().body(Map.of(
+                    "success", false,
+                    "error", e.getMessage()
+            ));
+        }
+    }
+
     /**
      * Récupérer toutes les demandes de désactivation en attente
      */
     @GetMapping("/deactivation-requests")
-    public ResponseEntity<?> getAllDeactivationRequests(@RequestHeader("Authorization") String authHeader, HttpServletRequest httpRequest) {
+    public ResponseEntity<?> getAllDeactivationRequests(@CurrentUser AuthenticatedUser currentUser, HttpServletRequest httpRequest) {
         String clientIp = getClientIp(httpRequest);
         String adminEmail = null;
         Long adminId = null;
 
         try {
             log.info("=== RÉCUPÉRATION DES DEMANDES DE DÉSACTIVATION ===");
-            Administrateur admin = getAdminFromToken(authHeader);
+            Administrateur admin = getAdmin(currentUser);
             adminId = admin.getId();
             adminEmail = admin.getEmail();
 
-            validateAdmin(authHeader);
+            validateAdmin(currentUser);
 
             List<DeactivationRequestAdminDTO> requests = userService.getAllDeactivationRequests();
 
@@ -558,12 +669,12 @@ public class AdminController {
     public ResponseEntity<?> toggleUserStatus(
             @PathVariable Long userId,
             @RequestBody Map<String, String> request,
-            @RequestHeader("Authorization") String authHeader) {
+            @CurrentUser AuthenticatedUser currentUser) {
 
         try {
             log.info("=== CHANGEMENT STATUT UTILISATEUR ID: {} ===", userId);
             log.info("status", request.get("status"));
-            validateAdmin(authHeader);
+            validateAdmin(currentUser);
 
             String newStatus = request.get("status");
 
@@ -593,7 +704,7 @@ public class AdminController {
     public ResponseEntity<?> processDeactivationRequest(
             @PathVariable Long requestId,
             @RequestBody Map<String, String> request,
-            @RequestHeader("Authorization") String authHeader,
+            @CurrentUser AuthenticatedUser currentUser,
             HttpServletRequest httpRequest) {
 
         String clientIp = getClientIp(httpRequest);
@@ -603,7 +714,7 @@ public class AdminController {
         try {
             log.info("=== TRAITEMENT DEMANDE DE DÉSACTIVATION ID: {} ===", requestId);
 
-            Administrateur admin = getAdminFromToken(authHeader);
+            Administrateur admin = getAdmin(currentUser);
             adminId = admin.getId();
             adminEmail = admin.getEmail();
 
@@ -669,7 +780,7 @@ public class AdminController {
     public ResponseEntity<?> reactivateAccount(
             @PathVariable Long userId,
             @RequestBody(required = false) Map<String, String> request,
-            @RequestHeader("Authorization") String authHeader,
+            @CurrentUser AuthenticatedUser currentUser,
             HttpServletRequest httpRequest) {
 
         String clientIp = getClientIp(httpRequest);
@@ -680,11 +791,11 @@ public class AdminController {
         try {
             log.info("=== RÉACTIVATION DE COMPTE ID: {} ===", userId);
 
-            Administrateur admin = getAdminFromToken(authHeader);
+            Administrateur admin = getAdmin(currentUser);
             adminId = admin.getId();
             adminEmail = admin.getEmail();
 
-            validateAdmin(authHeader);
+            validateAdmin(currentUser);
 
             targetUser = userService.getUserById(userId);
 
@@ -734,7 +845,7 @@ public class AdminController {
     @PostMapping("/users/{userId}/reset-password")
     public ResponseEntity<?> resetUserPassword(
             @PathVariable Long userId,
-            @RequestHeader("Authorization") String authHeader,
+            @CurrentUser AuthenticatedUser currentUser,
             HttpServletRequest httpRequest) {
 
         String clientIp = getClientIp(httpRequest);
@@ -745,11 +856,11 @@ public class AdminController {
         try {
             log.info("=== RÉINITIALISATION MOT DE PASSE - ID: {} ===", userId);
 
-            Administrateur admin = getAdminFromToken(authHeader);
+            Administrateur admin = getAdmin(currentUser);
             adminId = admin.getId();
             adminEmail = admin.getEmail();
 
-            validateAdmin(authHeader);
+            validateAdmin(currentUser);
 
             targetUser = userService.getUserById(userId);
 
@@ -880,7 +991,7 @@ public class AdminController {
     @PostMapping("/banque/create")
     public ResponseEntity<?> createBanqueUser(
             @RequestBody CreateBanqueUserRequest request,
-            @RequestHeader("Authorization") String authHeader,
+            @CurrentUser AuthenticatedUser currentUser,
             HttpServletRequest httpRequest) {
 
         String clientIp = getClientIp(httpRequest);
@@ -892,10 +1003,10 @@ public class AdminController {
 
             // 🔥 Récupérer l'admin pour l'audit
             try {
-                Administrateur admin = getAdminFromToken(authHeader);
+                Administrateur admin = getAdmin(currentUser);
                 adminId = admin.getId();
                 adminEmail = admin.getEmail();
-                validateAdmin(authHeader);
+                validateAdmin(currentUser);
             } catch (Exception e) {
                 log.warn("Admin non authentifié, création sans audit admin");
             }
@@ -966,7 +1077,7 @@ public class AdminController {
     @PostMapping("/douane/create")
     public ResponseEntity<?> createDouaneUser(
             @RequestBody CreateDouaneUserRequest request,
-            @RequestHeader("Authorization") String authHeader,
+            @CurrentUser AuthenticatedUser currentUser,
             HttpServletRequest httpRequest) {
 
         String clientIp = getClientIp(httpRequest);
@@ -978,10 +1089,10 @@ public class AdminController {
 
             // 🔥 Récupérer l'admin pour l'audit
             try {
-                Administrateur admin = getAdminFromToken(authHeader);
+                Administrateur admin = getAdmin(currentUser);
                 adminId = admin.getId();
                 adminEmail = admin.getEmail();
-                validateAdmin(authHeader);
+                validateAdmin(currentUser);
             } catch (Exception e) {
                 log.warn("Admin non authentifié, création sans audit admin");
             }
@@ -1052,25 +1163,19 @@ public class AdminController {
 
     // ==================== MÉTHODES PRIVÉES ====================
 
-    private void validateAdmin(String authHeader) {
-        Administrateur admin = getAdminFromToken(authHeader);
+    private void validateAdmin(AuthenticatedUser currentUser) {
+        Administrateur admin = getAdmin(currentUser);
         if (!admin.isSuperAdmin()) {
             throw new RuntimeException("Accès non autorisé. Privilèges super administrateur requis.");
         }
     }
 
-    private Administrateur getAdminFromToken(String authHeader) {
-        String token = extractToken(authHeader);
-        String email = jwtUtil.extractUsername(token);
-
-        return administrateurRepository.findByEmail(email)
-                .orElseThrow(() -> new RuntimeException("Administrateur non trouvé avec l'email: " + email));
-    }
-
-    private String extractToken(String authHeader) {
-        if (authHeader == null || !authHeader.startsWith("Bearer ")) {
+    // Entité chargée par identifiant (indicateur super administrateur), sans relire le token
+    private Administrateur getAdmin(AuthenticatedUser currentUser) {
+        if (currentUser == null) {
             throw new RuntimeException("Token d'authentification manquant ou invalide");
         }
-        return authHeader.substring(7);
+        return administrateurRepository.findById(currentUser.getId())
+                .orElseThrow(() -> new RuntimeException("Administrateur non trouvé avec l'email: " + currentUser.getEmail()));
     }
-}
\ No newline at end of file
+}
@@ -4,11 +4,14 @@ import com.tunisia.commerce.dto.archive.ArchiveDemandeDTO;
 import com.tunisia.commerce.entity.DemandeEnregistrement;
 import com.tunisia.commerce.enums.ActionType;
 import com.tunisia.commerce.enums.EntityType;
+import com.tunisia.commerce.enums.UserRole;
+import com.tunisia.commerce.security.AuthenticatedUser;
+import com.tunisia.commerce.security.CurrentUser;
 import com.tunisia.commerce.service.impl.ArchiveService;
-import com.tunisia.commerce.config.JwtUtil;
 import com.tunisia.commerce.service.impl.AuditService;
 import jakarta.servlet.http.HttpServletRequest;
 import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.Page;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
@@ -24,7 +27,6 @@ import java.util.logging.Logger;
 public class ArchiveController {
 
     private final ArchiveService archiveService;
-    private final JwtUtil jwtUtil;
     private final AuditService auditService;
 
     private final Logger logger = Logger.getLogger(getClass().getName());
@@ -53,7 +55,7 @@ public class ArchiveController {
     @PostMapping("/demande/{demandeId}")
     public ResponseEntity<?> archiveDemande(
             @PathVariable Long demandeId,
-            @RequestHeader("Authorization") String authHeader,
+            @CurrentUser AuthenticatedUser currentUser,
             @RequestBody(required = false) Map<String, String> body,
             HttpServletRequest httpRequest) {
 
@@ -61,7 +63,7 @@ public class ArchiveController {
         String adminEmail = null;
 
         try {
-            String email = validateAdminToken(authHeader);
+            String email = validateAdmin(currentUser);
             adminEmail = email;
 
             String reason = body != null && body.containsKey("reason")
@@ -134,7 +136,7 @@ public class ArchiveController {
     // 2. Archivage multiple par admin
     @PostMapping("/bulk")
     public ResponseEntity<?> bulkArchive(
-            @RequestHeader("Authorization") String authHeader,
+            @CurrentUser AuthenticatedUser currentUser,
             @RequestBody Map<String, Object> request,
             HttpServletRequest httpRequest) {
 
@@ -146,27 +148,13 @@ public class ArchiveController {
         logger.info("Request body reçu: " + request);
 
         try {
-            if (authHeader == null || !authHeader.startsWith("Bearer ")) {
-                logger.warning("Token manquant ou invalide");
-                return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
-                        .body(Map.of("error", "Token d'authentification manquant"));
-            }
-
-            String token = authHeader.substring(7);
-
-            if (!jwtUtil.validateToken(token)) {
-                logger.warning("Token invalide ou expiré");
-                return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
-                        .body(Map.of("error", "Token invalide ou expiré"));
-            }
-
-            String email = jwtUtil.extractUsername(token);
+            String email = currentUser.getEmail();
             adminEmail = email;
-            String role = jwtUtil.extractRole(token);
+            String role = currentUser.getRole().name();
 
             logger.info("Utilisateur: " + email + ", Rôle: " + role);
 
-            if (!"ADMIN".equals(role)) {
+            if (!currentUser.hasRole(UserRole.ADMIN)) {
                 logger.warning("Accès non autorisé pour le rôle: " + role);
                 return ResponseEntity.status(HttpStatus.FORBIDDEN)
                         .body(Map.of("error", "Accès non autorisé. Rôle ADMIN requis."));
@@ -214,7 +202,7 @@ public class ArchiveController {
 
             String reason = request.containsKey("reason") ? (String) request.get("reason") : "Archivage massif par administrateur";
 
-            archiveService.bulkArchive(demandeIds, email, reason);
+            int archivedCount = archiveService.bulkArchive(demandeIds, email, reason);
 
             // AUDIT: Archivage multiple
             auditService.log(
@@ -225,14 +213,15 @@ public class ArchiveController {
                             .user(null, adminEmail, "ADMIN")
                             .success()
                             .detail("demande_ids", demandeIds.toString())
-                            .detail("count", demandeIds.size())
+                            .detail("count", archivedCount)
                             .detail("reason", reason)
                             .detail("ip_address", clientIp)
             );
 
             return ResponseEntity.ok(Map.of(
                     "success", true,
-                    "message", demandeIds.size() + " demande(s) archivée(s) avec succès"
+                    "message", archivedCount + " demande(s) archivée(s) avec succès",
+                    "count", archivedCount
             ));
 
         } catch (Exception e) {
@@ -258,7 +247,7 @@ public class ArchiveController {
     @PostMapping("/request/{demandeId}")
     public ResponseEntity<?> requestArchive(
             @PathVariable Long demandeId,
-            @RequestHeader("Authorization") String authHeader,
+            @CurrentUser AuthenticatedUser currentUser,
             HttpServletRequest httpRequest) {
 
         String clientIp = getClientIp(httpRequest);
@@ -266,9 +255,9 @@ public class ArchiveController {
         String userRole = null;
 
         try {
-            String email = validateUserToken(authHeader);
+            String email = currentUser.getEmail();
             userEmail = email;
-            userRole = extractRoleFromToken(authHeader);
+            userRole = currentUser.getRole().name();
 
             archiveService.userArchiveRequest(demandeId, email);
 
@@ -336,14 +325,14 @@ public class ArchiveController {
     @PostMapping("/restore/{demandeId}")
     public ResponseEntity<?> restoreDemande(
             @PathVariable Long demandeId,
-            @RequestHeader("Authorization") String authHeader,
+            @CurrentUser AuthenticatedUser currentUser,
             HttpServletRequest httpRequest) {
 
         String clientIp = getClientIp(httpRequest);
         String adminEmail = null;
 
         try {
-            String email = validateAdminToken(authHeader);
+            String email = validateAdmin(currentUser);
             adminEmail = email;
 
             archiveService.restoreDemande(demandeId, email);
@@ -411,14 +400,14 @@ public class ArchiveController {
     // 5. Récupérer toutes les demandes archivées (admin)
     @GetMapping("/all")
     public ResponseEntity<?> getAllArchivedDemandes(
-            @RequestHeader("Authorization") String authHeader,
+            @CurrentUser AuthenticatedUser currentUser,
             HttpServletRequest httpRequest) {
 
         String clientIp = getClientIp(httpRequest);
         String adminEmail = null;
 
         try {
-            String email = validateAdminToken(authHeader);
+            String email = validateAdmin(currentUser);
             adminEmail = email;
 
             List<DemandeEnregistrement> archivedDemandes = archiveService.getArchivedDemandes();
@@ -484,7 +473,7 @@ public class ArchiveController {
     // 6. Récupérer les demandes archivées par l'utilisateur connecté
     @GetMapping("/my-archives")
     public ResponseEntity<?> getMyArchivedDemandes(
-            @RequestHeader("Authorization") String authHeader,
+            @CurrentUser AuthenticatedUser currentUser,
             HttpServletRequest httpRequest) {
 
         String clientIp = getClientIp(httpRequest);
@@ -493,9 +482,9 @@ public class ArchiveController {
 
         try {
             System.out.println("***archive");
-            String email = validateUserToken(authHeader);
+            String email = currentUser.getEmail();
             userEmail = email;
-            userRole = extractRoleFromToken(authHeader);
+            userRole = currentUser.getRole().name();
 
             List<ArchiveDemandeDTO> archivedDemandes = archiveService.getArchivedDemandesByUser(email, userRole);
 
@@ -562,10 +551,9 @@ public class ArchiveController {
     @GetMapping("/check/{demandeId}")
     public ResponseEntity<?> checkArchived(
             @PathVariable Long demandeId,
-            @RequestHeader("Authorization") String authHeader) {
+            @CurrentUser AuthenticatedUser currentUser) {
 
         try {
-            validateUserToken(authHeader);
 
             boolean isArchived = archiveService.isDemandeArchived(demandeId);
 
@@ -582,42 +570,146 @@ public class ArchiveController {
         }
     }
 
-    // Méthodes utilitaires pour la validation des tokens
-    private String validateAdminToken(String authHeader) {
-        if (authHeader == null || !authHeader.startsWith("Bearer ")) {
-            throw new IllegalArgumentException("Token d'authentification manquant");
-        }
+    // 8. Restauration multiple (admin), y compris depuis le stockage froid
+    @PostMapping("/restore-bulk")
+    public ResponseEntity<?> bulkRestore(
+            @CurrentUser AuthenticatedUser currentUser,
+            @RequestBody Map<String, Object> request,
+            HttpServletRequest httpRequest) {
 
-        String token = authHeader.substring(7);
+        String clientIp = getClientIp(httpRequest);
+        String adminEmail = null;
+        List<Long> demandeIds = new ArrayList<>();
 
-        if (!jwtUtil.validateToken(token)) {
-            throw new IllegalArgumentException("Token invalide ou expiré");
-        }
+        try {
+            String email = validateAdmin(currentUser);
+            adminEmail = email;
 
-        String role = jwtUtil.extractRole(token);
-        if (!"ADMIN".equals(role)) {
-            throw new RuntimeException("Accès non autorisé. Rôle ADMIN requis.");
-        }
+            if (request.get("demandeIds") instanceof List<?> rawList) {
+                for (Object item : rawList) {
+                    if (item instanceof Number) {
+                        demandeIds.add(((Number) item).longValue());
+                    } else if (item instanceof String) {
+                        try {
+                            demandeIds.add(Long.parseLong((String) item));
+                        } catch (NumberFormatException e) {
+                            logger.warning("ID invalide: " + item);
+                        }
+                    }
+                }
+            }
+            if (demandeIds.isEmpty()) {
+                return ResponseEntity.badRequest()
+                        .body(Map.of("error", "La liste des IDs des demandes est requise"));
+            }
 
-        return jwtUtil.extractUsername(token);
-    }
+            int restoredCount = archiveService.bulkRestore(demandeIds, email);
+
+            // AUDIT: Restauration multiple
+            auditService.log(
+                    AuditService.AuditLogBuilder.builder()
+                            .action("ARCHIVE_RESTORE_BULK")
+                            .actionType(ActionType.MODIFICATION)
+                            .description("Restauration multiple de demandes archivées")
+                            .user(null, adminEmail, "ADMIN")
+                            .success()
+                            .detail("demande_ids", demandeIds.toString())
+                            .detail("count", restoredCount)
+                            .detail("ip_address", clientIp)
+            );
+
+            return ResponseEntity.ok(Map.of(
+                    "success", true,
+                    "message", restoredCount + " demande(s) restaurée(s) avec succès",
+                    "count", restoredCount
+            ));
+
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        } catch (RuntimeException e) {
+            auditService.log(
+                    AuditService.AuditLogBuilder.builder()
+                            .action("ARCHIVE_RESTORE_BULK")
+                            .actionType(ActionType.MODIFICATION)
+                            .description("Échec de la restauration multiple")
+                            .user(null, adminEmail, "ADMIN")
+                            .failure(e.getMessage())
+                            .detail("demande_ids", demandeIds.toString())
+                            .detail("ip_address", clientIp)
+            );
 
-    private String validateUserToken(String authHeader) {
-        if (authHeader == null || !authHeader.startsWith("Bearer ")) {
-            throw new IllegalArgumentException("Token d'authentification manquant");
+            logger.severe("Erreur lors de la restauration multiple: " + e.getMessage());
+            return ResponseEntity.status(adminEmail == null ? 403 : 500).body(Map.of("error", e.getMessage()));
         }
+    }
 
-        String token = authHeader.substring(7);
+    // 9. Demandes en stockage froid (admin, paginé)
+    @GetMapping("/cold")
+    public ResponseEntity<?> getColdArchives(
+            @CurrentUser AuthenticatedUser currentUser,
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "50") int size) {
 
-        if (!jwtUtil.validateToken(token)) {
-            throw new IllegalArgumentException("Token invalide ou expiré");
+        try {
+            validateAdmin(currentUser);
+
+            Page<ArchiveDemandeDTO> archives = archiveService.getColdArchivedDemandes(page, size);
+
+            return ResponseEntity.ok(Map.of(
+                    "success", true,
+                    "data", archives.getContent(),
+                    "totalElements", archives.getTotalElements(),
+                    "totalPages", archives.getTotalPages()
+            ));
+
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        } catch (RuntimeException e) {
+            return ResponseEntity.status(403).body(Map.of("error", e.getMessage()));
         }
+    }
 
-        return jwtUtil.extractUsername(token);
+    // 10. Déplacement immédiat vers le stockage froid (admin)
+    @PostMapping("/cold/move")
+    public ResponseEntity<?> moveToColdStorage(
+            @CurrentUser AuthenticatedUser currentUser,
+            HttpServletRequest httpRequest) {
+
+        String clientIp = getClientIp(httpRequest);
+        String adminEmail = null;
+
+        try {
+            adminEmail = validateAdmin(currentUser);
+
+            int movedCount = archiveService.moveToColdStorage();
+
+            // AUDIT: Déplacement vers le stockage froid
+            auditService.log(
+                    AuditService.AuditLogBuilder.builder()
+                            .action("ARCHIVE_COLD_MOVE")
+                            .actionType(ActionType.MODIFICATION)
+                            .description("Déplacement des archives anciennes vers le stockage froid")
+                            .user(null, adminEmail, "ADMIN")
+                            .success()
+                            .detail("count", movedCount)
+                            .detail("ip_address", clientIp)
+            );
+
+            return ResponseEntity.ok(Map.of("success", true, "count", movedCount));
+
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        } catch (RuntimeException e) {
+            logger.severe("Erreur lors du déplacement vers le stockage froid: " + e.getMessage());
+            return ResponseEntity.status(adminEmail == null ? 403 : 500).body(Map.of("error", e.getMessage()));
+        }
     }
 
-    private String extractRoleFromToken(String authHeader) {
-        String token = authHeader.substring(7);
-        return jwtUtil.extractRole(token);
+    // Administrateur requis : renvoie son email pour l'audit
+    private String validateAdmin(AuthenticatedUser currentUser) {
+        if (!currentUser.hasRole(UserRole.ADMIN)) {
+            throw new RuntimeException("Accès non autorisé. Rôle ADMIN requis.");
+        }
+        return currentUser.getEmail();
     }
-}
\ No newline at end of file
+}
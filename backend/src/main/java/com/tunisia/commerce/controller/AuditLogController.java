@@ -2,9 +2,9 @@ package com.tunisia.commerce.controller;
 
 import com.tunisia.commerce.dto.audit.AuditLogFilterDTO;
 import com.tunisia.commerce.dto.audit.AuditLogResponseDTO;
-import com.tunisia.commerce.config.JwtUtil;
-import com.tunisia.commerce.entity.User;
-import com.tunisia.commerce.repository.UserRepository;
+import com.tunisia.commerce.enums.UserRole;
+import com.tunisia.commerce.security.AuthenticatedUser;
+import com.tunisia.commerce.security.CurrentUser;
 import com.tunisia.commerce.service.impl.AuditService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
@@ -29,8 +29,6 @@ import java.util.Map;
 public class AuditLogController {
 
     private final AuditService auditLogService;
-    private final JwtUtil jwtUtil;
-    private final UserRepository userRepository;
 
 
     /**
@@ -42,10 +40,10 @@ public class AuditLogController {
     public ResponseEntity<AuditLogResponseDTO> getAllAuditLogs(
             @RequestParam(defaultValue = "0") int offset,
             @RequestParam(defaultValue = "20") int limit,
-            @RequestHeader("Authorization") String authHeader) {
+            @CurrentUser AuthenticatedUser currentUser) {
 
         log.info("=== RÉCUPÉRATION DE TOUS LES LOGS AUDIT - Offset: {}, Limit: {} ===", offset, limit);
-        validateAdmin(authHeader);
+        validateAdmin(currentUser);
 
         AuditLogResponseDTO response = auditLogService.getAllAuditLogs(offset, limit);
         return ResponseEntity.ok(response);
@@ -61,7 +59,7 @@ public class AuditLogController {
             @PathVariable Long userId,
             @RequestParam(defaultValue = "0") int offset,
             @RequestParam(defaultValue = "20") int limit,
-            @RequestHeader("Authorization") String authHeader) {
+            @CurrentUser AuthenticatedUser currentUser) {
 
         log.info("=== LOGS AUDIT PAR UTILISATEUR ID: {} - Offset: {}, Limit: {} ===", userId, offset, limit);
 
@@ -78,11 +76,11 @@ public class AuditLogController {
     public ResponseEntity<AuditLogResponseDTO> getMyAuditLogs(
             @RequestParam(defaultValue = "0") int offset,
             @RequestParam(defaultValue = "20") int limit,
-            @RequestHeader("Authorization") String authHeader) {
+            @CurrentUser AuthenticatedUser currentUser) {
 
         log.info("=== LOGS AUDIT POUR L'UTILISATEUR CONNECTÉ - Offset: {}, Limit: {} ===", offset, limit);
 
-        Long userId = getCurrentUserId(authHeader);
+        Long userId = currentUser.getId();
         AuditLogResponseDTO response = auditLogService.getAuditLogsByUser(userId, offset, limit);
         return ResponseEntity.ok(response);
     }
@@ -98,10 +96,10 @@ public class AuditLogController {
             @PathVariable Long entityId,
             @RequestParam(defaultValue = "0") int page,
             @RequestParam(defaultValue = "20") int size,
-            @RequestHeader("Authorization") String authHeader) {
+            @CurrentUser AuthenticatedUser currentUser) {
 
         log.info("=== LOGS AUDIT PAR ENTITÉ - Type: {}, ID: {} - Page: {}, Size: {} ===", entityType, entityId, page, size);
-        validateAdmin(authHeader);
+        validateAdmin(currentUser);
 
         AuditLogResponseDTO response = auditLogService.getAuditLogsByEntity(entityType, entityId, page, size);
         return ResponseEntity.ok(response);
@@ -115,10 +113,10 @@ public class AuditLogController {
     @Operation(summary = "Récupérer les derniers logs d'audit")
     public ResponseEntity<AuditLogResponseDTO> getLatestAuditLogs(
             @RequestParam(defaultValue = "100") int limit,
-            @RequestHeader("Authorization") String authHeader) {
+            @CurrentUser AuthenticatedUser currentUser) {
 
         log.info("=== DERNIERS LOGS AUDIT - Limit: {} ===", limit);
-        validateAdmin(authHeader);
+        validateAdmin(currentUser);
 
         AuditLogResponseDTO response = auditLogService.getLatestAuditLogs(limit);
         return ResponseEntity.ok(response);
@@ -133,10 +131,10 @@ public class AuditLogController {
     public ResponseEntity<Map<String, Object>> getAuditStatistics(
             @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime startDate,
             @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime endDate,
-            @RequestHeader("Authorization") String authHeader) {
+            @CurrentUser AuthenticatedUser currentUser) {
 
         log.info("=== STATISTIQUES AUDIT ===");
-        validateAdmin(authHeader);
+        validateAdmin(currentUser);
 
         if (startDate == null) {
             startDate = LocalDateTime.now().minusDays(30);
@@ -159,8 +157,8 @@ public class AuditLogController {
     @GetMapping("/action-types")
     @PreAuthorize("hasRole('ADMIN')")
     @Operation(summary = "Récupérer les types d'actions disponibles")
-    public ResponseEntity<Map<String, Object>> getActionTypes(@RequestHeader("Authorization") String authHeader) {
-        validateAdmin(authHeader);
+    public ResponseEntity<Map<String, Object>> getActionTypes(@CurrentUser AuthenticatedUser currentUser) {
+        validateAdmin(currentUser);
 
         Map<String, Object> response = new HashMap<>();
         response.put("success", true);
@@ -173,31 +171,9 @@ public class AuditLogController {
 
     // ==================== MÉTHODES PRIVÉES ====================
 
-    private void validateAdmin(String authHeader) {
-        String token = extractToken(authHeader);
-        String email = jwtUtil.extractUsername(token);
-        String role = jwtUtil.extractRole(token);
-
-        if (!"ADMIN".equals(role)) {
+    private void validateAdmin(AuthenticatedUser currentUser) {
+        if (!currentUser.hasRole(UserRole.ADMIN)) {
             throw new RuntimeException("Accès non autorisé. Rôle ADMIN requis.");
         }
     }
-
-    private Long getCurrentUserId(String authHeader) {
-        String token = extractToken(authHeader);
-        String email = jwtUtil.extractUsername(token);
-
-        // Récupérer l'utilisateur depuis la base de données
-        // Vous devez injecter UserRepository
-        User user = userRepository.findByEmail(email)
-                .orElseThrow(() -> new RuntimeException("Utilisateur non trouvé"));
-        return user.getId();
-    }
-
-    private String extractToken(String authHeader) {
-        if (authHeader == null || !authHeader.startsWith("Bearer ")) {
-            throw new RuntimeException("Token d'authentification manquant ou invalide");
-        }
-        return authHeader.substring(7);
-    }
 }
\ No newline at end of file
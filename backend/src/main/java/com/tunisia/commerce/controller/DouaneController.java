@@ -1,21 +1,23 @@
 package com.tunisia.commerce.controller;
 
 import com.tunisia.commerce.dto.admin.DouaneVerificationResponse;
-import com.tunisia.commerce.entity.Administrateur;
-import com.tunisia.commerce.entity.Douane;
-import com.tunisia.commerce.entity.User;
 import com.tunisia.commerce.enums.UserRole;
 import com.tunisia.commerce.repository.AdministrateurRepository;
 import com.tunisia.commerce.repository.DouaneRepository;
-import com.tunisia.commerce.repository.UserRepository;
+import com.tunisia.commerce.security.AuthenticatedUser;
+import com.tunisia.commerce.security.CurrentUser;
 import com.tunisia.commerce.service.impl.DouaneService;
-import com.tunisia.commerce.config.JwtUtil;
+import com.tunisia.commerce.service.impl.DouaneTokenService;
 import lombok.RequiredArgsConstructor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 @RestController
@@ -27,8 +29,10 @@ public class DouaneController {
     private static final Logger log = LoggerFactory.getLogger(DouaneController.class);
 
     private final DouaneService douaneService;
-    private final JwtUtil jwtUtil;
-    private final UserRepository userRepository;
+    private final DouaneTokenService douaneTokenService;
+
+    @Value("${app.douane.batch-max:500}")
+    private int batchMax;
 
     /**
      * Vérifier une référence de dossier (accessible par DOUANE et ADMIN)
@@ -37,25 +41,14 @@ public class DouaneController {
     @GetMapping("/verify/{reference}")
     public ResponseEntity<?> verifyReference(
             @PathVariable String reference,
-            @RequestHeader("Authorization") String authHeader) {
+            @CurrentUser AuthenticatedUser user) {
 
         try {
             log.info("=== VÉRIFICATION RÉFÉRENCE DOUANE: {} ===", reference);
 
-            // Vérifier l'authentification et les droits
-            String email = extractEmailFromToken(authHeader);
-            User user = userRepository.findByEmail(email)
-                    .orElseThrow(() -> new RuntimeException("Utilisateur non trouvé"));
-
             // Vérifier que l'utilisateur est DOUANE ou ADMIN
-            boolean isDouane = user instanceof Douane || user.getRole() == UserRole.DOUANE;
-            boolean isAdmin = user instanceof Administrateur || user.getRole() == UserRole.ADMIN;
-
-            if (!isDouane && !isAdmin) {
-                return ResponseEntity.status(403).body(Map.of(
-                        "success", false,
-                        "error", "Accès non autorisé. Seuls les agents douaniers et administrateurs peuvent accéder à cette ressource."
-                ));
+            if (!isDouaneOrAdmin(user)) {
+                return forbidden();
             }
 
             // Rechercher la référence
@@ -83,11 +76,170 @@ public class DouaneController {
         }
     }
 
-    private String extractEmailFromToken(String authHeader) {
-        if (authHeader == null || !authHeader.startsWith("Bearer ")) {
-            throw new RuntimeException("Token d'authentification manquant ou invalide");
+    /**
+     * Vérifier un lot de références (manifeste) en un seul appel
+     * POST /api/douane/verify/batch  { "references": [...] }
+     */
+    @PostMapping("/verify/batch")
+    public ResponseEntity<?> verifyBatch(
+            @RequestBody Map<String, List<String>> request,
+            @CurrentUser AuthenticatedUser user) {
+
+        try {
+            if (!isDouaneOrAdmin(user)) {
+                return forbidden();
+            }
+
+            List<String> references = request.get("references");
+            if (references == null || references.isEmpty()) {
+                return ResponseEntity.badRequest().body(Map.of(
+                        "success", false,
+                        "error", "Aucune référence fournie"
+                ));
+            }
+            if (references.size() > batchMax) {
+                return ResponseEntity.badRequest().body(Map.of(
+                        "success", false,
+                        "error", "Trop de références (maximum " + batchMax + ")"
+                ));
+            }
+
+            log.info("=== VÉRIFICATION DOUANE PAR LOT: {} référence(s) ===", references.size());
+            Map<String, DouaneVerificationResponse> results = douaneService.verifyReferences(references);
+
+            List<Map<String, Object>> items = new ArrayList<>();
+            int found = 0;
+            for (Map.Entry<String, DouaneVerificationResponse> entry : results.entrySet()) {
+                Map<String, Object> item = new HashMap<>();
+                item.put("reference", entry.getKey());
+                item.put("found", entry.getValue() != null);
+                item.put("data", entry.getValue());
+                items.add(item);
+                if (entry.getValue() != null) {
+                    found++;
+                }
+            }
+
+            return ResponseEntity.ok(Map.of(
+                    "success", true,
+                    "total", items.size(),
+                    "found", found,
+                    "results", items
+            ));
+
+        } catch (Exception e) {
+            log.error("Erreur lors de la vérification par lot: {}", e.getMessage());
+            return ResponseEntity.badRequest().body(Map.of(
+                    "success", false,
+                    "error", e.getMessage()
+            ));
         }
-        String token = authHeader.substring(7);
-        return jwtUtil.extractUsername(token);
     }
-}
\ No newline at end of file
+
+    // ==================== JETONS HORS LIGNE ====================
+
+    /**
+     * Émettre un jeton signé (et son QR code) pour un dossier validé
+     * GET /api/douane/token/{reference}
+     */
+    @GetMapping("/token/{reference}")
+    public ResponseEntity<?> issueToken(
+            @PathVariable String reference,
+            @CurrentUser AuthenticatedUser user) {
+
+        try {
+            if (!isDouaneOrAdmin(user)) {
+                return forbidden();
+            }
+
+            DouaneVerificationResponse result = douaneService.verifyReference(reference);
+            if (result == null) {
+                return ResponseEntity.ok(Map.of(
+                        "success", false,
+                        "error", "NOT_FOUND",
+                        "message", "Aucun dossier validé trouvé avec cette référence"
+                ));
+            }
+
+            String token = douaneTokenService.issue(result);
+            DouaneTokenService.VerifiedToken claims = douaneTokenService.verify(token);
+
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", true);
+            response.put("token", token);
+            response.put("qrCode", douaneTokenService.toQrCode(token));
+            response.put("keyId", claims.getKeyId());
+            response.put("expiresAt", claims.getExpiresAt().toString());
+            return ResponseEntity.ok(response);
+
+        } catch (Exception e) {
+            log.error("Erreur lors de l'émission du jeton douane: {}", e.getMessage());
+            return ResponseEntity.badRequest().body(Map.of(
+                    "success", false,
+                    "error", e.getMessage()
+            ));
+        }
+    }
+
+    /**
+     * Vérifier un jeton scanné (la vérification ne dépend que de la clé publique)
+     * POST /api/douane/token/verify  { "token": "DV1...." }
+     */
+    @PostMapping("/token/verify")
+    public ResponseEntity<?> verifyToken(
+            @RequestBody Map<String, String> request,
+            @CurrentUser AuthenticatedUser user) {
+
+        if (!isDouaneOrAdmin(user)) {
+            return forbidden();
+        }
+
+        try {
+            DouaneTokenService.VerifiedToken claims = douaneTokenService.verify(request.get("token"));
+            return ResponseEntity.ok(Map.of(
+                    "success", true,
+                    "data", claims
+            ));
+        } catch (SecurityException e) {
+            log.warn("Jeton douane rejeté: {}", e.getMessage());
+            return ResponseEntity.ok(Map.of(
+                    "success", false,
+                    "error", "INVALID_TOKEN",
+                    "message", e.getMessage()
+            ));
+        }
+    }
+
+    /**
+     * Clé publique à distribuer aux postes de contrôle hors ligne
+     * GET /api/douane/token/public-key
+     */
+    @GetMapping("/token/public-key")
+    public ResponseEntity<?> getPublicKey(@CurrentUser AuthenticatedUser user) {
+        if (!isDouaneOrAdmin(user)) {
+            return forbidden();
+        }
+
+        return ResponseEntity.ok(Map.of(
+                "success", true,
+                "keyId", douaneTokenService.keyId(),
+                "algorithm", douaneTokenService.algorithm(),
+                "publicKey", douaneTokenService.publicKeyBase64()
+        ));
+    }
+
+    // ==================== MÉTHODES PRIVÉES ====================
+
+    private boolean isDouaneOrAdmin(AuthenticatedUser user) {
+        boolean isDouane = user.isUserType("DOUANE") || user.hasRole(UserRole.DOUANE);
+        boolean isAdmin = user.isUserType("ADMIN") || user.hasRole(UserRole.ADMIN);
+        return isDouane || isAdmin;
+    }
+
+    private ResponseEntity<?> forbidden() {
+        return ResponseEntity.status(403).body(Map.of(
+                "success", false,
+                "error", "Accès non autorisé. Seuls les agents douaniers et administrateurs peuvent accéder à cette ressource."
+        ));
+    }
+}
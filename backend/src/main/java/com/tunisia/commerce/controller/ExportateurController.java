@@ -1,6 +1,5 @@
 package com.tunisia.commerce.controller;
 
-import com.tunisia.commerce.config.JwtUtil;
 import com.tunisia.commerce.dto.exportateur.*;
 import com.tunisia.commerce.dto.validation.DocumentDTO;
 import com.tunisia.commerce.entity.*;
@@ -9,11 +8,10 @@ import com.tunisia.commerce.repository.DemandeEnregistrementRepository;
 import com.tunisia.commerce.repository.DemandeValidateurRepository;
 import com.tunisia.commerce.repository.DocumentRepository;
 import com.tunisia.commerce.repository.ExportateurRepository;
+import com.tunisia.commerce.security.AuthenticatedUser;
+import com.tunisia.commerce.security.CurrentUser;
 import com.tunisia.commerce.service.impl.AuditService;
 import com.tunisia.commerce.service.impl.ExportateurDossierService;
-import io.jsonwebtoken.ExpiredJwtException;
-import io.jsonwebtoken.MalformedJwtException;
-import io.jsonwebtoken.security.SignatureException;
 import io.swagger.v3.oas.annotations.Operation;
 import jakarta.servlet.http.HttpServletRequest;
 import lombok.RequiredArgsConstructor;
@@ -33,7 +31,6 @@ import java.util.stream.Collectors;
 public class ExportateurController {
 
     private final ExportateurDossierService dossierService;
-    private final JwtUtil jwtUtil;
     private final ExportateurRepository exportateurRepository;
     private final DemandeEnregistrementRepository demandeRepository;
     private final DemandeValidateurRepository demandeValidateurRepository;
@@ -68,13 +65,13 @@ public class ExportateurController {
      */
     @GetMapping("/dossier/statut")
     public ResponseEntity<DossierResponseDTO> getDossierStatut(
-            @RequestHeader("Authorization") String authHeader) {
+            @CurrentUser AuthenticatedUser currentUser) {
 
         System.out.println("\n========== DÉBUT getDossierStatut ==========");
 
         try {
             // 1. Valider le token et récupérer l'exportateur
-            ExportateurEtranger exportateur = getExportateurFromToken(authHeader);
+            ExportateurEtranger exportateur = loadExportateur(currentUser);
             System.out.println("✅ Exportateur trouvé ID: " + exportateur.getId());
 
             // 2. RECHERCHER UNIQUEMENT LE DOSSIER DE CONFORMITÉ (KYC)
@@ -158,7 +155,7 @@ public class ExportateurController {
      */
     @PostMapping("/dossier/creer")
     public ResponseEntity<DossierResponseDTO> creerDossier(
-            @RequestHeader("Authorization") String authHeader,
+            @CurrentUser AuthenticatedUser currentUser,
             @RequestBody CreerDossierRequest request,
             HttpServletRequest httpRequest) {
 
@@ -169,7 +166,7 @@ public class ExportateurController {
         System.out.println("========== DÉBOGAGE CRÉATION DOSSIER ==========");
 
         try {
-            ExportateurEtranger exportateur = getExportateurFromToken(authHeader);
+            AuthenticatedUser exportateur = requireExportateur(currentUser);
             userEmail = exportateur.getEmail();
             userId = exportateur.getId();
 
@@ -233,7 +230,7 @@ public class ExportateurController {
 
     @PostMapping("/dossier/{demandeId}/documents")
     public ResponseEntity<?> uploadDocument(
-            @RequestHeader("Authorization") String authHeader,
+            @CurrentUser AuthenticatedUser currentUser,
             @PathVariable("demandeId") Long demandeId,
             @RequestParam("file") MultipartFile file,
             @RequestParam("documentType") String documentType,
@@ -244,7 +241,7 @@ public class ExportateurController {
         Long userId = null;
 
         try {
-            ExportateurEtranger exportateur = getExportateurFromToken(authHeader);
+            AuthenticatedUser exportateur = requireExportateur(currentUser);
             userEmail = exportateur.getEmail();
             userId = exportateur.getId();
 
@@ -329,7 +326,7 @@ public class ExportateurController {
      */
     @PostMapping("/dossier/{demandeId}/soumettre")
     public ResponseEntity<DossierResponseDTO> soumettreDossier(
-            @RequestHeader("Authorization") String authHeader,
+            @CurrentUser AuthenticatedUser currentUser,
             @PathVariable Long demandeId,
             HttpServletRequest httpRequest) {
 
@@ -338,7 +335,7 @@ public class ExportateurController {
         Long userId = null;
 
         try {
-            ExportateurEtranger exportateur = getExportateurFromToken(authHeader);
+            AuthenticatedUser exportateur = requireExportateur(currentUser);
             userEmail = exportateur.getEmail();
             userId = exportateur.getId();
 
@@ -394,10 +391,10 @@ public class ExportateurController {
      */
     @GetMapping("/pre-kyc/suggerer-usernames")
     public ResponseEntity<?> suggererUsernames(
-            @RequestHeader("Authorization") String authHeader) {
+            @CurrentUser AuthenticatedUser currentUser) {
 
         try {
-            ExportateurEtranger exportateur = getExportateurFromToken(authHeader);
+            ExportateurEtranger exportateur = loadExportateur(currentUser);
 
             String companyName = exportateur.getRaisonSociale(); // ou getCompanyName() selon votre DTO
             String email = exportateur.getEmail();
@@ -450,7 +447,7 @@ public class ExportateurController {
      */
     /*@GetMapping("/documents/{documentId}/file")
     public ResponseEntity<?> downloadDocument(
-            @RequestHeader("Authorization") String authHeader,
+            @CurrentUser AuthenticatedUser currentUser,
             @PathVariable Long documentId,
             HttpServletRequest httpRequest) {
 
@@ -459,7 +456,7 @@ public class ExportateurController {
         Long userId = null;
 
         try {
-            ExportateurEtranger exportateur = getExportateurFromToken(authHeader);
+            AuthenticatedUser exportateur = requireExportateur(currentUser);
             userEmail = exportateur.getEmail();
             userId = exportateur.getId();
 
@@ -524,7 +521,7 @@ public class ExportateurController {
     }*/
     @GetMapping("/documents/{documentId}/file")
     public ResponseEntity<?> downloadDocument(
-            @RequestHeader("Authorization") String authHeader,
+            @CurrentUser AuthenticatedUser currentUser,
             @PathVariable Long documentId,
             HttpServletRequest httpRequest) {
 
@@ -533,7 +530,7 @@ public class ExportateurController {
         Long userId = null;
 
         try {
-            ExportateurEtranger exportateur = getExportateurFromToken(authHeader);
+            AuthenticatedUser exportateur = requireExportateur(currentUser);
             userEmail = exportateur.getEmail();
             userId = exportateur.getId();
 
@@ -600,7 +597,7 @@ public class ExportateurController {
      */
     @GetMapping("/documents")
     public ResponseEntity<?> getAllDocuments(
-            @RequestHeader("Authorization") String authHeader,
+            @CurrentUser AuthenticatedUser currentUser,
             HttpServletRequest httpRequest) {
 
         String clientIp = getClientIp(httpRequest);
@@ -608,7 +605,7 @@ public class ExportateurController {
         Long userId = null;
 
         try {
-            ExportateurEtranger exportateur = getExportateurFromToken(authHeader);
+            AuthenticatedUser exportateur = requireExportateur(currentUser);
             userEmail = exportateur.getEmail();
             userId = exportateur.getId();
 
@@ -655,7 +652,7 @@ public class ExportateurController {
      */
     @PostMapping("/pre-kyc/completer")
     public ResponseEntity<?> completePreKyc(
-            @RequestHeader("Authorization") String authHeader,
+            @CurrentUser AuthenticatedUser currentUser,
             @RequestBody PreKycRequest request,
             HttpServletRequest httpRequest) {
 
@@ -664,7 +661,7 @@ public class ExportateurController {
         Long userId = null;
 
         try {
-            ExportateurEtranger exportateur = getExportateurFromToken(authHeader);
+            AuthenticatedUser exportateur = requireExportateur(currentUser);
             userEmail = exportateur.getEmail();
             userId = exportateur.getId();
 
@@ -735,10 +732,10 @@ public class ExportateurController {
 
     @GetMapping("/declarations")
     @Operation(summary = "Récupérer toutes les déclarations de l'exportateur connecté")
-    public ResponseEntity<?> getUserDeclarations(@RequestHeader("Authorization") String authHeader) {
+    public ResponseEntity<?> getUserDeclarations(@CurrentUser AuthenticatedUser currentUser) {
         try {
             System.out.println("***pipeline***");
-            ExportateurEtranger exportateur = getExportateurFromToken(authHeader);
+            AuthenticatedUser exportateur = requireExportateur(currentUser);
 
             // Récupérer toutes les demandes de l'exportateur
             List<DemandeEnregistrement> demandes = demandeRepository.findByExportateurId(exportateur.getId());
@@ -800,50 +797,22 @@ public class ExportateurController {
 
     // ==================== MÉTHODES PRIVÉES CORRIGÉES ====================
 
-    private ExportateurEtranger getExportateurFromToken(String authHeader) {
-        try {
-            // 1. Extraire le token
-            String token = extractToken(authHeader);
-
-            // 2. Valider le token d'abord
-            if (!jwtUtil.validateToken(token)) {
-                throw new RuntimeException("Token invalide ou expiré");
-            }
-
-            // 3. Extraire l'email
-            String email = jwtUtil.extractUsername(token);
-            if (email == null || email.isEmpty()) {
-                throw new RuntimeException("Email non trouvé dans le token");
-            }
-
-            // 4. Chercher l'exportateur
-            return exportateurRepository.findByEmail(email)
-                    .orElseThrow(() -> new RuntimeException("Aucun exportateur trouvé avec l'email: " + email));
-
-        } catch (ExpiredJwtException e) {
-            throw new RuntimeException("Token expiré. Veuillez vous reconnecter.");
-        } catch (MalformedJwtException | SignatureException e) {
-            throw new RuntimeException("Token invalide. Veuillez vous reconnecter.");
-        } catch (Exception e) {
-            throw new RuntimeException("Erreur d'authentification: " + e.getMessage());
+    /**
+     * Exportateur courant (principal en cache) : suffit quand seuls l'identifiant et l'email sont utilisés
+     */
+    private AuthenticatedUser requireExportateur(AuthenticatedUser currentUser) {
+        if (!currentUser.isUserType("EXPORTATEUR")) {
+            throw new RuntimeException("Aucun exportateur trouvé avec l'email: " + currentUser.getEmail());
         }
+        return currentUser;
     }
 
-    private String extractToken(String authHeader) {
-        if (authHeader == null || authHeader.isEmpty()) {
-            throw new RuntimeException("En-tête d'authentification manquant");
-        }
-
-        if (!authHeader.startsWith("Bearer ")) {
-            throw new RuntimeException("Format d'authentification invalide. Utilisez 'Bearer [token]'");
-        }
-
-        String token = authHeader.substring(7);
-        if (token.isEmpty()) {
-            throw new RuntimeException("Token vide");
-        }
-
-        return token;
+    /**
+     * Entité exportateur complète, chargée par identifiant, pour les écrans qui affichent son profil
+     */
+    private ExportateurEtranger loadExportateur(AuthenticatedUser currentUser) {
+        return exportateurRepository.findById(requireExportateur(currentUser).getId())
+                .orElseThrow(() -> new RuntimeException("Aucun exportateur trouvé avec l'email: " + currentUser.getEmail()));
     }
 
     private String getStatusMessage(DemandeStatus status) {
@@ -1,7 +1,7 @@
 package com.tunisia.commerce.controller;
 
 import com.tunisia.commerce.dto.statistics.ExporterStatisticsDTO;
-import com.tunisia.commerce.service.impl.ExporterStatisticsService;
+import com.tunisia.commerce.service.impl.ExporterStatisticsSnapshotService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import lombok.RequiredArgsConstructor;
@@ -21,7 +21,7 @@ import java.util.Map;
 @CrossOrigin(origins = "*")
 public class ExporterStatisticsController {
 
-    private final ExporterStatisticsService statisticsService;
+    private final ExporterStatisticsSnapshotService statisticsService;
 
     /**
      * Récupère toutes les statistiques des exportateurs pour la carte
@@ -1,41 +1,56 @@
 package com.tunisia.commerce.controller;
 
 import com.tunisia.commerce.dto.fraud.FraudDetectionResponse;
+import com.tunisia.commerce.dto.fraud.FraudJobDTO;
 import com.tunisia.commerce.entity.Document;
-import com.tunisia.commerce.entity.InstanceValidation;
-import com.tunisia.commerce.entity.User;
+import com.tunisia.commerce.enums.FraudJobStatus;
+import com.tunisia.commerce.enums.UserRole;
 import com.tunisia.commerce.repository.DocumentRepository;
-import com.tunisia.commerce.repository.UserRepository;
+import com.tunisia.commerce.security.AuthenticatedUser;
+import com.tunisia.commerce.security.CurrentUser;
+import com.tunisia.commerce.service.impl.FraudAnalysisJobService;
 import com.tunisia.commerce.service.impl.FraudDetectionService;
-import com.tunisia.commerce.config.JwtUtil;
-import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.async.DeferredResult;
 import org.springframework.web.multipart.MultipartFile;
 
-import jakarta.servlet.http.HttpServletRequest;
 import java.util.Map;
 
 @Slf4j
 @RestController
 @RequestMapping("/api/fraud")
-@RequiredArgsConstructor
 @CrossOrigin(origins = "*")
 public class FraudDetectionController {
 
     private final FraudDetectionService fraudDetectionService;
-    private final JwtUtil jwtUtil;
-    private final UserRepository userRepository;
+    private final FraudAnalysisJobService fraudAnalysisJobService;
     private final DocumentRepository documentRepository;
+    private final long detectTimeoutMs;
+
+    public FraudDetectionController(FraudDetectionService fraudDetectionService,
+                                    FraudAnalysisJobService fraudAnalysisJobService,
+                                    DocumentRepository documentRepository,
+                                    @Value("${ml.service.timeout-seconds:120}") long timeoutSeconds) {
+        this.fraudDetectionService = fraudDetectionService;
+        this.fraudAnalysisJobService = fraudAnalysisJobService;
+        this.documentRepository = documentRepository;
+        this.detectTimeoutMs = timeoutSeconds * 1000;
+    }
 
     /**
      * Endpoint principal pour la détection de fraude sur un document
      * Accessible par les rôles: INSTANCE_VALIDATION et ADMIN
+     *
+     * L'analyse est confiée à la file de jobs : le thread de requête est libéré pendant l'appel
+     * au service ML et la réponse est envoyée à la fin du job. Au-delà du délai, le job continue
+     * et son identifiant est renvoyé (202) pour suivi via /api/fraud/jobs/{jobId}.
      */
     @PostMapping("/detect")
-    public ResponseEntity<?> detectFraud(
+    public DeferredResult<ResponseEntity<?>> detectFraud(
             @RequestParam("file") MultipartFile file,
             @RequestParam(value = "documentId", required = false) Long documentId,
             @RequestParam(value = "demandeId", required = false) Long demandeId,
@@ -43,143 +58,133 @@ public class FraudDetectionController {
             @RequestParam(value = "soumissionnaire_type", required = false) String soumissionnaireType,
             @RequestParam(value = "soumissionnaire_nom", required = false) String soumissionnaireNom,
             @RequestParam(value = "soumissionnaire_pays", required = false) String soumissionnairePays,
-            @RequestHeader("Authorization") String authHeader,
-            HttpServletRequest httpRequest) {
+            @CurrentUser AuthenticatedUser currentUser) {
 
         log.info("=== DÉTECTION DE FRAUDE DOCUMENT ===");
 
+        DeferredResult<ResponseEntity<?>> deferred = new DeferredResult<>(detectTimeoutMs);
+        ResponseEntity<?> rejected = null;
         try {
-            // Vérifier l'authentification et les droits
-            User user = validateInstanceValidation(authHeader);
-            log.info("Utilisateur authentifié: {} (Rôle: {})", user.getEmail(), user.getRole());
-
-            // Vérifier que le fichier n'est pas vide
-            if (file == null || file.isEmpty()) {
-                return ResponseEntity.badRequest().body(Map.of(
-                        "success", false,
-                        "error", "Aucun fichier fourni"
-                ));
-            }
-
-            // Vérifier le type de fichier (optionnel)
-            String contentType = file.getContentType();
-            if (contentType == null || (!contentType.startsWith("image/") && !"application/pdf".equals(contentType))) {
-                return ResponseEntity.badRequest().body(Map.of(
-                        "success", false,
-                        "error", "Format de fichier non supporté. Utilisez PDF, JPG ou PNG."
-                ));
-            }
-
-            // Si documentId est fourni, vérifier que le document existe
-            if (documentId != null) {
-                Document document = documentRepository.findById(documentId).orElse(null);
-                if (document == null) {
-                    return ResponseEntity.status(HttpStatus.NOT_FOUND).body(Map.of(
-                            "success", false,
-                            "error", "Document non trouvé avec l'ID: " + documentId
-                    ));
-                }
-                log.info("Document trouvé: {} - Type: {}", document.getFileName(), document.getDocumentType());
-            }
-
-            // Appeler le service de détection
-            // Appeler le service de détection avec ou sans contexte
-            FraudDetectionResponse result;
-            if (demandeType != null && soumissionnaireType != null) {
-                result = fraudDetectionService.analyzeDocumentWithContext(
-                        file, documentId, demandeId,
-                        demandeType, soumissionnaireType, soumissionnaireNom, soumissionnairePays);
-            } else {
-                result = fraudDetectionService.analyzeDocument(file, documentId, demandeId);
-            }
-
-            // Journaliser le résultat
-            log.info("📊 Résultat analyse fraud: Décision={}, Confiance={}%",
-                    result.getDecision(),
-                    result.getConfidence() != null ? result.getConfidence() * 100 : "N/A");
-
-            if ("FRAUDE".equals(result.getDecision()) && result.getConfidence() != null && result.getConfidence() > 0.8) {
-                log.warn("⚠️ FRAUDE DÉTECTÉE avec haute confiance pour document: {}",
-                        documentId != null ? documentId : "Nouveau document");
-            }
-
-            // 🔥 AFFICHAGE DÉTAILLÉ
-            log.info("========== RÉSULTAT COMPLET DE L'ANALYSE ML ==========");
-            log.info("📊 Décision finale: {}", result.getDecision());
-            log.info("📈 Confiance: {}%", result.getConfidence() != null ? result.getConfidence() * 100 : "N/A");
-            log.info("💡 Recommandation: {}", result.getRecommendation());
-
-            if (result.getReasons() != null && !result.getReasons().isEmpty()) {
-                log.info("🔍 Raisons:");
-                for (String reason : result.getReasons()) {
-                    log.info("   - {}", reason);
-                }
-            }
-
-            if (result.getTextAnalysis() != null) {
-                log.info("📝 Analyse texte:");
-                if (result.getTextAnalysis().getWarnings() != null) {
-                    log.info("   Warnings: {}", result.getTextAnalysis().getWarnings());
-                }
-                if (result.getTextAnalysis().getAnomalies() != null) {
-                    log.info("   Anomalies: {}", result.getTextAnalysis().getAnomalies());
-                }
-                if (result.getTextAnalysis().getSocietes() != null) {
-                    log.info("   Sociétés détectées: {}", result.getTextAnalysis().getSocietes());
-                }
-                if (result.getTextAnalysis().getIsTunisianDocument() != null) {
-                    log.info("   Document Tunisien: {}", result.getTextAnalysis().getIsTunisianDocument());
-                }
-            }
-
-            if (result.getGeminiAnalysis() != null && result.getGeminiAnalysis().getAnomaliesGemini() != null) {
-                log.info("🧠 Analyse Gemini:");
-                for (var anomaly : result.getGeminiAnalysis().getAnomaliesGemini()) {
-                    log.info("   - [{}] {}", anomaly.getSeverity(), anomaly.getDescription());
-                }
-            }
-
-            log.info("=====================================================");
+            FraudAnalysisJobService.FraudJob job = submitJob(file, documentId, demandeType,
+                    soumissionnaireType, soumissionnaireNom, soumissionnairePays, currentUser);
 
-            return ResponseEntity.ok(Map.of(
+            deferred.onTimeout(() -> deferred.setResult(ResponseEntity.status(HttpStatus.ACCEPTED).body(Map.of(
                     "success", true,
-                    "data", result,
-                    "message", "Analyse terminée avec succès"
-            ));
-
+                    "jobId", job.getId(),
+                    "data", fraudAnalysisJobService.toDTO(job),
+                    "message", "Analyse en cours, consultez /api/fraud/jobs/" + job.getId()
+            ))));
+            job.getCompletion().thenAccept(done -> deferred.setResult(toDetectResponse(done)));
+
+        } catch (SubmissionRejectedException e) {
+            rejected = e.response;
         } catch (SecurityException e) {
             log.error("Erreur de sécurité: {}", e.getMessage());
-            return ResponseEntity.status(HttpStatus.FORBIDDEN).body(Map.of(
+            rejected = ResponseEntity.status(HttpStatus.FORBIDDEN).body(Map.of(
                     "success", false,
                     "error", e.getMessage()
             ));
+        } catch (IllegalStateException e) {
+            rejected = serviceUnavailable(e);
         } catch (Exception e) {
             log.error("Erreur lors de la détection de fraude: {}", e.getMessage(), e);
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(Map.of(
+            rejected = ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(Map.of(
                     "success", false,
                     "error", "Erreur lors de l'analyse: " + e.getMessage()
             ));
         }
+        if (rejected != null) {
+            deferred.setResult(rejected);
+        }
+        return deferred;
     }
 
     /**
      * Endpoint simplifié (alias de /detect) pour compatibilité avec l'existant
      */
     @PostMapping("/analyze")
-    public ResponseEntity<?> analyze(
+    public DeferredResult<ResponseEntity<?>> analyze(
             @RequestParam("file") MultipartFile file,
-            @RequestHeader("Authorization") String authHeader) {
+            @CurrentUser AuthenticatedUser currentUser) {
         // Appel avec tous les paramètres requis (les contextes sont null)
-        return detectFraud(file, null, null, null, null, null, null, authHeader, null);
+        return detectFraud(file, null, null, null, null, null, null, currentUser);
+    }
+
+    // ==================== JOBS D'ANALYSE ====================
+
+    /**
+     * Soumet une analyse et renvoie immédiatement l'identifiant du job (202),
+     * ou le résultat mémorisé si ce contenu a déjà été analysé (200).
+     */
+    @PostMapping("/jobs")
+    public ResponseEntity<?> submitAnalysis(
+            @RequestParam("file") MultipartFile file,
+            @RequestParam(value = "documentId", required = false) Long documentId,
+            @RequestParam(value = "demande_type", required = false) String demandeType,
+            @RequestParam(value = "soumissionnaire_type", required = false) String soumissionnaireType,
+            @RequestParam(value = "soumissionnaire_nom", required = false) String soumissionnaireNom,
+            @RequestParam(value = "soumissionnaire_pays", required = false) String soumissionnairePays,
+            @CurrentUser AuthenticatedUser currentUser) {
+
+        try {
+            FraudAnalysisJobService.FraudJob job = submitJob(file, documentId, demandeType,
+                    soumissionnaireType, soumissionnaireNom, soumissionnairePays, currentUser);
+            FraudJobDTO dto = fraudAnalysisJobService.toDTO(job);
+            return ResponseEntity.status(dto.getStatus() == FraudJobStatus.TERMINE ? HttpStatus.OK : HttpStatus.ACCEPTED)
+                    .body(Map.of(
+                            "success", true,
+                            "jobId", job.getId(),
+                            "data", dto
+                    ));
+        } catch (SubmissionRejectedException e) {
+            return e.response;
+        } catch (SecurityException e) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).body(Map.of(
+                    "success", false,
+                    "error", e.getMessage()
+            ));
+        } catch (IllegalStateException e) {
+            return serviceUnavailable(e);
+        } catch (Exception e) {
+            log.error("Erreur lors de la soumission de l'analyse: {}", e.getMessage(), e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(Map.of(
+                    "success", false,
+                    "error", "Erreur lors de la soumission: " + e.getMessage()
+            ));
+        }
+    }
+
+    @GetMapping("/jobs/{jobId}")
+    public ResponseEntity<?> getJob(
+            @PathVariable String jobId,
+            @CurrentUser AuthenticatedUser currentUser) {
+
+        try {
+            validateInstanceValidation(currentUser);
+            return fraudAnalysisJobService.findJob(jobId)
+                    .<ResponseEntity<?>>map(job -> ResponseEntity.ok(Map.of(
+                            "success", true,
+                            "data", fraudAnalysisJobService.toDTO(job)
+                    )))
+                    .orElseGet(() -> ResponseEntity.status(HttpStatus.NOT_FOUND).body(Map.of(
+                            "success", false,
+                            "error", "Job d'analyse introuvable ou expiré: " + jobId
+                    )));
+        } catch (SecurityException e) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).body(Map.of(
+                    "success", false,
+                    "error", e.getMessage()
+            ));
+        }
     }
 
     /**
      * Vérifie la santé du service ML
      */
     @GetMapping("/health")
-    public ResponseEntity<?> health(@RequestHeader("Authorization") String authHeader) {
+    public ResponseEntity<?> health(@CurrentUser AuthenticatedUser currentUser) {
         try {
-            validateInstanceValidation(authHeader);
+            validateInstanceValidation(currentUser);
 
             boolean isHealthy = fraudDetectionService.isMlServiceHealthy();
             Map<String, Object> modelInfo = fraudDetectionService.getModelInfo();
@@ -187,6 +192,7 @@ public class FraudDetectionController {
             return ResponseEntity.ok(Map.of(
                     "success", true,
                     "ml_service_healthy", isHealthy,
+                    "circuit_open", fraudAnalysisJobService.isCircuitOpen(),
                     "model_info", modelInfo,
                     "timestamp", java.time.Instant.now().toString()
             ));
@@ -202,9 +208,9 @@ public class FraudDetectionController {
      * Test Gemini (pour débogage)
      */
     /*@GetMapping("/test-gemini")
-    public ResponseEntity<?> testGemini(@RequestHeader("Authorization") String authHeader) {
+    public ResponseEntity<?> testGemini(@CurrentUser AuthenticatedUser currentUser) {
         try {
-            validateInstanceValidation(authHeader);
+            validateInstanceValidation(currentUser);
             Map<String, Object> result = fraudDetectionService.testGemini();
             return ResponseEntity.ok(result);
         } catch (SecurityException e) {
@@ -218,22 +224,104 @@ public class FraudDetectionController {
     // ==================== MÉTHODES PRIVÉES ====================
 
     /**
-     * Vérifie que l'utilisateur a le rôle INSTANCE_VALIDATION ou ADMIN
+     * Contrôles communs (droits, fichier, document) puis soumission du job d'analyse.
      */
-    private User validateInstanceValidation(String authHeader) {
-        if (authHeader == null || !authHeader.startsWith("Bearer ")) {
-            throw new SecurityException("Token d'authentification manquant ou invalide");
+    private FraudAnalysisJobService.FraudJob submitJob(MultipartFile file, Long documentId,
+                                                       String demandeType, String soumissionnaireType,
+                                                       String soumissionnaireNom, String soumissionnairePays,
+                                                       AuthenticatedUser currentUser) throws Exception {
+        // Vérifier l'authentification et les droits
+        AuthenticatedUser user = validateInstanceValidation(currentUser);
+        log.info("Utilisateur authentifié: {} (Rôle: {})", user.getEmail(), user.getRole());
+
+        // Vérifier que le fichier n'est pas vide
+        if (file == null || file.isEmpty()) {
+            throw new SubmissionRejectedException(ResponseEntity.badRequest().body(Map.of(
+                    "success", false,
+                    "error", "Aucun fichier fourni"
+            )));
+        }
+
+        // Vérifier le type de fichier (optionnel)
+        String contentType = file.getContentType();
+        if (contentType == null || (!contentType.startsWith("image/") && !"application/pdf".equals(contentType))) {
+            throw new SubmissionRejectedException(ResponseEntity.badRequest().body(Map.of(
+                    "success", false,
+                    "error", "Format de fichier non supporté. Utilisez PDF, JPG ou PNG."
+            )));
+        }
+
+        // Si documentId est fourni, vérifier que le document existe
+        if (documentId != null) {
+            Document document = documentRepository.findById(documentId).orElse(null);
+            if (document == null) {
+                throw new SubmissionRejectedException(ResponseEntity.status(HttpStatus.NOT_FOUND).body(Map.of(
+                        "success", false,
+                        "error", "Document non trouvé avec l'ID: " + documentId
+                )));
+            }
+            log.info("Document trouvé: {} - Type: {}", document.getFileName(), document.getDocumentType());
+        }
+
+        // Le contexte n'est transmis que s'il est complet (comportement historique)
+        FraudDetectionService.AnalysisContext context = demandeType != null && soumissionnaireType != null
+                ? new FraudDetectionService.AnalysisContext(demandeType, soumissionnaireType, soumissionnaireNom, soumissionnairePays)
+                : FraudDetectionService.AnalysisContext.none();
+
+        return fraudAnalysisJobService.submit(file, documentId, context);
+    }
+
+    private ResponseEntity<?> toDetectResponse(FraudAnalysisJobService.FraudJob job) {
+        if (job.getStatus() != FraudJobStatus.TERMINE) {
+            return ResponseEntity.status(HttpStatus.BAD_GATEWAY).body(Map.of(
+                    "success", false,
+                    "jobId", job.getId(),
+                    "error", "Erreur lors de l'analyse: " + job.getError()
+            ));
         }
 
-        String token = authHeader.substring(7);
-        String email = jwtUtil.extractUsername(token);
+        FraudDetectionResponse result = job.getResult();
+        if ("FRAUDE".equals(result.getDecision()) && result.getConfidence() != null && result.getConfidence() > 0.8) {
+            log.warn("⚠️ FRAUDE DÉTECTÉE avec haute confiance (job {})", job.getId());
+        }
+
+        return ResponseEntity.ok(Map.of(
+                "success", true,
+                "jobId", job.getId(),
+                "cached", job.isCached(),
+                "data", result,
+                "message", "Analyse terminée avec succès"
+        ));
+    }
+
+    private ResponseEntity<?> serviceUnavailable(IllegalStateException e) {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header("Retry-After", "30")
+                .body(Map.of(
+                        "success", false,
+                        "error", e.getMessage()
+                ));
+    }
+
+    /**
+     * Soumission refusée avant mise en file (requête invalide, document inconnu).
+     */
+    private static class SubmissionRejectedException extends RuntimeException {
+        private final ResponseEntity<?> response;
 
-        User user = userRepository.findByEmail(email)
-                .orElseThrow(() -> new SecurityException("Utilisateur non trouvé: " + email));
+        SubmissionRejectedException(ResponseEntity<?> response) {
+            super(null, null, false, false);
+            this.response = response;
+        }
+    }
 
+    /**
+     * Vérifie que l'utilisateur a le rôle INSTANCE_VALIDATION ou ADMIN
+     */
+    private AuthenticatedUser validateInstanceValidation(AuthenticatedUser user) {
         // Vérifier que l'utilisateur a le bon rôle
-        boolean isInstanceValidation = user instanceof InstanceValidation;
-        boolean isAdmin = user.getRole().name().equals("ADMIN");
+        boolean isInstanceValidation = user.isUserType("INSTANCE_VALIDATION");
+        boolean isAdmin = user.hasRole(UserRole.ADMIN);
 
         if (!isInstanceValidation && !isAdmin) {
             throw new SecurityException("Accès non autorisé. Rôle INSTANCE_VALIDATION ou ADMIN requis.");
@@ -6,17 +6,17 @@ import com.tunisia.commerce.dto.produits.DemandeEnregistrementDTO;
 import com.tunisia.commerce.dto.user.UserDTO;
 import com.tunisia.commerce.dto.validation.DocumentDTO;
 import com.tunisia.commerce.entity.Document;
-import com.tunisia.commerce.entity.ImportateurTunisien;
 import com.tunisia.commerce.enums.ActionType;
 import com.tunisia.commerce.enums.EntityType;
+import com.tunisia.commerce.enums.RapportJobStatus;
 import com.tunisia.commerce.exception.ImportateurException;
 import com.tunisia.commerce.repository.DocumentRepository;
-import com.tunisia.commerce.repository.ImportateurRepository;
+import com.tunisia.commerce.security.AuthenticatedUser;
+import com.tunisia.commerce.security.CurrentUser;
 import com.tunisia.commerce.service.ImportateurService;
-import com.tunisia.commerce.service.RapportPDFService;
 import com.tunisia.commerce.service.impl.AuditService;
 import com.tunisia.commerce.service.impl.DemandeImportationService;
-import com.tunisia.commerce.config.JwtUtil;
+import com.tunisia.commerce.service.impl.RapportJobService;
 import com.tunisia.commerce.service.impl.SecureStorageService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
@@ -31,6 +31,8 @@ import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import org.springframework.web.multipart.MultipartFile;
 import org.springframework.web.context.request.RequestContextHolder;
 import org.springframework.web.context.request.ServletRequestAttributes;
@@ -46,6 +48,7 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 @RestController
@@ -58,11 +61,11 @@ public class ImportateurController {
 
     private final ImportateurService importateurService;
     private final DemandeImportationService demandeImportationService;
-    private final JwtUtil jwtUtil;
-    private final ImportateurRepository importateurRepository;
     private final DocumentRepository documentRepository;
     private final AuditService auditService;
-    private final RapportPDFService rapportPDFService;
+    private final RapportJobService rapportJobService;
+
+    private static final long RAPPORT_SYNC_TIMEOUT_SECONDS = 60;
 
 
 
@@ -232,7 +235,7 @@ public class ImportateurController {
     @PreAuthorize("hasRole('IMPORTATEUR')")
     public ResponseEntity<?> createImportationDemande(
             @Valid @RequestBody DemandeImportationRequestDTO request,
-            @RequestHeader("Authorization") String authHeader,
+            @CurrentUser AuthenticatedUser currentUser,
             HttpServletRequest httpRequest) {
 
         String clientIp = getClientIp(httpRequest);
@@ -242,7 +245,7 @@ public class ImportateurController {
         log.info("========== CRÉATION DEMANDE D'IMPORTATION ==========");
 
         try {
-            ImportateurTunisien importateur = getImportateurFromToken(authHeader);
+            AuthenticatedUser importateur = requireImportateur(currentUser);
             userEmail = importateur.getEmail();
             userId = importateur.getId();
 
@@ -302,7 +305,7 @@ public class ImportateurController {
             @Parameter(description = "ID de la demande") @PathVariable Long demandeId,
             @Parameter(description = "Type de document") @RequestParam String documentType,
             @Parameter(description = "Fichier à uploader") @RequestParam("file") MultipartFile file,
-            @RequestHeader("Authorization") String authHeader,
+            @CurrentUser AuthenticatedUser currentUser,
             HttpServletRequest httpRequest) {
 
         String clientIp = getClientIp(httpRequest);
@@ -315,7 +318,7 @@ public class ImportateurController {
         log.info("Nom du fichier: {}", file.getOriginalFilename());
 
         try {
-            ImportateurTunisien importateur = getImportateurFromToken(authHeader);
+            AuthenticatedUser importateur = requireImportateur(currentUser);
             userEmail = importateur.getEmail();
             userId = importateur.getId();
 
@@ -392,7 +395,7 @@ public class ImportateurController {
     @PreAuthorize("hasRole('IMPORTATEUR')")
     public ResponseEntity<?> submitDemande(
             @Parameter(description = "ID de la demande") @PathVariable Long demandeId,
-            @RequestHeader("Authorization") String authHeader,
+            @CurrentUser AuthenticatedUser currentUser,
             HttpServletRequest httpRequest) {
 
         String clientIp = getClientIp(httpRequest);
@@ -403,7 +406,7 @@ public class ImportateurController {
         log.info("Demande ID: {}", demandeId);
 
         try {
-            ImportateurTunisien importateur = getImportateurFromToken(authHeader);
+            AuthenticatedUser importateur = requireImportateur(currentUser);
             userEmail = importateur.getEmail();
             userId = importateur.getId();
 
@@ -471,7 +474,7 @@ public class ImportateurController {
     @GetMapping("/mes-demandes")
     @PreAuthorize("hasRole('IMPORTATEUR')")
     public ResponseEntity<?> getMyDemandes(
-            @RequestHeader("Authorization") String authHeader,
+            @CurrentUser AuthenticatedUser currentUser,
             HttpServletRequest httpRequest) {
 
         String clientIp = getClientIp(httpRequest);
@@ -481,7 +484,7 @@ public class ImportateurController {
         log.info("========== RÉCUPÉRATION MES DEMANDES POUR TRACKING ==========");
 
         try {
-            ImportateurTunisien importateur = getImportateurFromToken(authHeader);
+            AuthenticatedUser importateur = requireImportateur(currentUser);
             userEmail = importateur.getEmail();
             userId = importateur.getId();
 
@@ -541,7 +544,7 @@ public class ImportateurController {
     @PreAuthorize("hasRole('IMPORTATEUR')")
     public ResponseEntity<?> getDocumentsForDemande(
             @Parameter(description = "ID de la demande") @PathVariable Long demandeId,
-            @RequestHeader("Authorization") String authHeader,
+            @CurrentUser AuthenticatedUser currentUser,
             HttpServletRequest httpRequest) {
 
         String clientIp = getClientIp(httpRequest);
@@ -552,7 +555,7 @@ public class ImportateurController {
         log.info("Demande ID: {}", demandeId);
 
         try {
-            ImportateurTunisien importateur = getImportateurFromToken(authHeader);
+            AuthenticatedUser importateur = requireImportateur(currentUser);
             userEmail = importateur.getEmail();
             userId = importateur.getId();
 
@@ -628,7 +631,7 @@ public class ImportateurController {
             @RequestParam(value = "files", required = false) MultipartFile[] files,
             @RequestParam(value = "documentTypes", required = false) String[] documentTypes,
             @RequestParam(value = "documentsToDelete", required = false) List<Long> documentsToDelete,
-            @RequestHeader("Authorization") String authHeader,
+            @CurrentUser AuthenticatedUser currentUser,
             HttpServletRequest httpRequest) {
 
         String clientIp = getClientIp(httpRequest);
@@ -641,7 +644,7 @@ public class ImportateurController {
         log.info("Nouveaux documents: {}", files != null ? files.length : 0);
 
         try {
-            ImportateurTunisien importateur = getImportateurFromToken(authHeader);
+            AuthenticatedUser importateur = requireImportateur(currentUser);
             userEmail = importateur.getEmail();
             userId = importateur.getId();
 
@@ -733,7 +736,7 @@ public class ImportateurController {
     @PreAuthorize("hasRole('IMPORTATEUR')")
     public ResponseEntity<?> deleteDemande(
             @Parameter(description = "ID de la demande à supprimer") @PathVariable Long demandeId,
-            @RequestHeader("Authorization") String authHeader,
+            @CurrentUser AuthenticatedUser currentUser,
             HttpServletRequest httpRequest) {
 
         String clientIp = getClientIp(httpRequest);
@@ -744,7 +747,7 @@ public class ImportateurController {
         log.info("Demande ID: {}", demandeId);
 
         try {
-            ImportateurTunisien importateur = getImportateurFromToken(authHeader);
+            AuthenticatedUser importateur = requireImportateur(currentUser);
             userEmail = importateur.getEmail();
             userId = importateur.getId();
 
@@ -813,11 +816,11 @@ public class ImportateurController {
     )
     @GetMapping("/dashboard/stats")
     @PreAuthorize("hasRole('IMPORTATEUR')")
-    public ResponseEntity<?> getDashboardStats(@RequestHeader("Authorization") String authHeader) {
+    public ResponseEntity<?> getDashboardStats(@CurrentUser AuthenticatedUser currentUser) {
         log.info("========== RÉCUPÉRATION STATISTIQUES DASHBOARD ==========");
 
         try {
-            ImportateurTunisien importateur = getImportateurFromToken(authHeader);
+            AuthenticatedUser importateur = requireImportateur(currentUser);
             Map<String, Object> stats = importateurService.getDashboardStats(importateur.getId());
 
             Map<String, Object> response = new HashMap<>();
@@ -835,39 +838,173 @@ public class ImportateurController {
         }
     }
 
+    /**
+     * Téléchargement direct du rapport : passe par la file de génération (déduplication,
+     * concurrence bornée). Le thread de requête est libéré pendant le rendu ; au-delà du délai,
+     * renvoie le job à suivre (202).
+     */
     @GetMapping("/dashboard/rapport")
     @PreAuthorize("hasRole('IMPORTATEUR')")
-    public ResponseEntity<byte[]> generateRapport(@RequestHeader("Authorization") String authHeader) {
-        ImportateurTunisien importateur = getImportateurFromToken(authHeader);
-        byte[] pdf = rapportPDFService.generateRapportPDF(importateur.getId());
+    public DeferredResult<ResponseEntity<?>> generateRapport(@CurrentUser AuthenticatedUser currentUser) {
+        DeferredResult<ResponseEntity<?>> deferred =
+                new DeferredResult<>(TimeUnit.SECONDS.toMillis(RAPPORT_SYNC_TIMEOUT_SECONDS));
+        ResponseEntity<?> rejected = null;
 
-        HttpHeaders headers = new HttpHeaders();
-        headers.setContentType(MediaType.APPLICATION_PDF);
-        headers.setContentDispositionFormData("inline", "rapport_importation.pdf");
+        try {
+            AuthenticatedUser importateur = requireImportateur(currentUser);
+            RapportJobService.RapportJob job = rapportJobService.submit(importateur.getId());
+
+            deferred.onTimeout(() -> {
+                Map<String, Object> response = new HashMap<>();
+                response.put("success", true);
+                response.put("data", rapportJobService.toDTO(job));
+                deferred.setResult(ResponseEntity.status(HttpStatus.ACCEPTED).body(response));
+            });
+            job.getCompletion().thenAccept(done -> deferred.setResult(toRapportResponse(done)));
+
+        } catch (IllegalStateException e) {
+            Map<String, Object> errorResponse = new HashMap<>();
+            errorResponse.put("success", false);
+            errorResponse.put("error", e.getMessage());
+            rejected = ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(errorResponse);
+        } catch (Exception e) {
+            log.error("Erreur lors de la génération du rapport: {}", e.getMessage());
+            Map<String, Object> errorResponse = new HashMap<>();
+            errorResponse.put("success", false);
+            errorResponse.put("error", e.getMessage());
+            rejected = ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(errorResponse);
+        }
+        if (rejected != null) {
+            deferred.setResult(rejected);
+        }
+        return deferred;
+    }
+
+    @Operation(
+            summary = "Lancer la génération du rapport",
+            description = "Met en file la génération du rapport PDF et renvoie l'identifiant du job à suivre"
+    )
+    @PostMapping("/dashboard/rapport/jobs")
+    @PreAuthorize("hasRole('IMPORTATEUR')")
+    public ResponseEntity<?> submitRapportJob(@CurrentUser AuthenticatedUser currentUser) {
+        try {
+            AuthenticatedUser importateur = requireImportateur(currentUser);
+            RapportJobService.RapportJob job = rapportJobService.submit(importateur.getId());
 
-        return new ResponseEntity<>(pdf, headers, HttpStatus.OK);
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", true);
+            response.put("data", rapportJobService.toDTO(job));
+            return ResponseEntity.status(HttpStatus.ACCEPTED).body(response);
+
+        } catch (IllegalStateException e) {
+            Map<String, Object> errorResponse = new HashMap<>();
+            errorResponse.put("success", false);
+            errorResponse.put("error", e.getMessage());
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(errorResponse);
+        } catch (Exception e) {
+            log.error("Erreur lors de la soumission du rapport: {}", e.getMessage());
+            Map<String, Object> errorResponse = new HashMap<>();
+            errorResponse.put("success", false);
+            errorResponse.put("error", e.getMessage());
+            return ResponseEntity.badRequest().body(errorResponse);
+        }
+    }
+
+    @Operation(summary = "État d'un job de rapport")
+    @GetMapping("/dashboard/rapport/jobs/{jobId}")
+    @PreAuthorize("hasRole('IMPORTATEUR')")
+    public ResponseEntity<?> getRapportJob(@CurrentUser AuthenticatedUser currentUser,
+                                           @PathVariable String jobId) {
+        AuthenticatedUser importateur = requireImportateur(currentUser);
+
+        return rapportJobService.findJob(jobId, importateur.getId())
+                .<ResponseEntity<?>>map(job -> {
+                    Map<String, Object> response = new HashMap<>();
+                    response.put("success", true);
+                    response.put("data", rapportJobService.toDTO(job));
+                    return ResponseEntity.ok(response);
+                })
+                .orElseGet(() -> ResponseEntity.status(HttpStatus.NOT_FOUND)
+                        .body(Map.of("success", false, "error", "Job de rapport non trouvé ou expiré")));
+    }
+
+    @Operation(summary = "Télécharger le rapport d'un job terminé")
+    @GetMapping("/dashboard/rapport/jobs/{jobId}/fichier")
+    @PreAuthorize("hasRole('IMPORTATEUR')")
+    public ResponseEntity<?> downloadRapportJob(@CurrentUser AuthenticatedUser currentUser,
+                                                @PathVariable String jobId) {
+        AuthenticatedUser importateur = requireImportateur(currentUser);
+
+        RapportJobService.RapportJob job = rapportJobService.findJob(jobId, importateur.getId()).orElse(null);
+        if (job == null) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                    .body(Map.of("success", false, "error", "Job de rapport non trouvé ou expiré"));
+        }
+
+        try {
+            return streamRapport(job);
+
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT)
+                    .body(Map.of("success", false, "error", e.getMessage()));
+        } catch (Exception e) {
+            log.error("Erreur lors de la lecture du rapport {}: {}", jobId, e.getMessage());
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(Map.of("success", false, "error", e.getMessage()));
+        }
     }
+
     // ==================== MÉTHODES PRIVÉES ====================
 
     /**
-     * Extraire l'importateur du token JWT
+     * Réponse du téléchargement direct une fois le job terminé : le PDF, ou l'erreur du rendu.
      */
-    private ImportateurTunisien getImportateurFromToken(String authHeader) {
-        String token = extractToken(authHeader);
-        String email = jwtUtil.extractUsername(token);
+    private ResponseEntity<?> toRapportResponse(RapportJobService.RapportJob job) {
+        if (job.getStatus() != RapportJobStatus.TERMINE) {
+            Map<String, Object> errorResponse = new HashMap<>();
+            errorResponse.put("success", false);
+            errorResponse.put("error", "Erreur lors de la génération du rapport PDF");
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(errorResponse);
+        }
+        return streamRapport(job);
+    }
 
-        return importateurRepository.findByEmail(email)
-                .orElseThrow(() -> new RuntimeException("Importateur non trouvé avec l'email: " + email));
+    /**
+     * PDF du job écrit en flux dans la réponse (thread d'exécution asynchrone de Spring MVC) :
+     * le rapport n'est jamais chargé en entier dans un tableau d'octets.
+     */
+    private ResponseEntity<StreamingResponseBody> streamRapport(RapportJobService.RapportJob job) {
+        rapportJobService.ensureAvailable(job);
+
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_PDF);
+        headers.setContentDispositionFormData("inline", "rapport_importation.pdf");
+        Long size = rapportJobService.getResultSize(job);
+        if (size != null) {
+            headers.setContentLength(size);
+        }
+
+        StreamingResponseBody body = out -> {
+            try {
+                rapportJobService.writeResult(job, out);
+            } catch (IOException e) {
+                throw e;
+            } catch (Exception e) {
+                log.error("Erreur lors de l'envoi du rapport {}: {}", job.getId(), e.getMessage());
+                throw new IOException(e.getMessage(), e);
+            }
+        };
+        return new ResponseEntity<>(body, headers, HttpStatus.OK);
     }
 
     /**
-     * Extraire le token du header Authorization
+     * Importateur courant (principal en cache) : seuls son identifiant et son email sont utilisés
      */
-    private String extractToken(String authHeader) {
-        if (authHeader == null || !authHeader.startsWith("Bearer ")) {
-            throw new RuntimeException("Token d'authentification invalide ou manquant");
+    private AuthenticatedUser requireImportateur(AuthenticatedUser currentUser) {
+        if (!currentUser.isUserType("IMPORTATEUR")) {
+            throw new RuntimeException("Importateur non trouvé avec l'email: " + currentUser.getEmail());
         }
-        return authHeader.substring(7);
+        return currentUser;
     }
 
 
@@ -904,11 +1041,11 @@ public class ImportateurController {
 
     @GetMapping("/produits/statuts")
     @PreAuthorize("hasRole('IMPORTATEUR')")
-    public ResponseEntity<?> getProduitsStatuts(@RequestHeader("Authorization") String authHeader) {
+    public ResponseEntity<?> getProduitsStatuts(@CurrentUser AuthenticatedUser currentUser) {
         log.info("========== RÉCUPÉRATION DES STATUTS DES PRODUITS ==========");
 
         try {
-            ImportateurTunisien importateur = getImportateurFromToken(authHeader);
+            AuthenticatedUser importateur = requireImportateur(currentUser);
             ImportateurStatutsDTO statuts = importateurService.getProduitsStatuts(importateur.getId());
 
             log.info("Statuts récupérés: acceptés={}, enAttente={}, soumis={}",
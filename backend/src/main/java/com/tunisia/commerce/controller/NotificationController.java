@@ -3,16 +3,23 @@ package com.tunisia.commerce.controller;
 import com.tunisia.commerce.dto.notification.*;
 import com.tunisia.commerce.enums.ActionType;
 import com.tunisia.commerce.enums.EntityType;
+import com.tunisia.commerce.security.AuthenticatedUser;
+import com.tunisia.commerce.security.CurrentUser;
 import com.tunisia.commerce.service.NotificationService;
 import com.tunisia.commerce.service.impl.AuditService;
+import com.tunisia.commerce.service.impl.NotificationStreamService;
 import jakarta.servlet.http.HttpServletRequest;
 import lombok.RequiredArgsConstructor;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
 import org.springframework.data.web.PageableDefault;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import java.util.HashMap;
 import java.util.List;
@@ -26,6 +33,7 @@ public class NotificationController {
 
     private final NotificationService notificationService;
     private final AuditService auditService;
+    private final NotificationStreamService notificationStreamService;
 
     private String getClientIp(HttpServletRequest request) {
         String ip = request.getHeader("X-Forwarded-For");
@@ -128,6 +136,72 @@ public class NotificationController {
         return ResponseEntity.ok(response);
     }
 
+    /**
+     * Ticket d'ouverture du flux temps réel pour l'utilisateur connecté
+     * (EventSource ne transmet pas l'en-tête Authorization).
+     */
+    @PostMapping("/stream-ticket")
+    public ResponseEntity<NotificationStreamService.StreamTicket> createStreamTicket(
+            @CurrentUser AuthenticatedUser currentUser) {
+        return ResponseEntity.ok(notificationStreamService.issueTicket(currentUser.getId()));
+    }
+
+    /**
+     * Flux temps réel des notifications (Server-Sent Events) : événements "notification"
+     * à chaque nouvelle notification et "unread-count" à chaque changement du nombre de non lues.
+     * Le flux est celui de l'utilisateur à qui le ticket a été délivré ; un ticket ne sert qu'une fois.
+     */
+    @GetMapping(value = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamNotifications(@RequestParam String ticket) {
+        Long userId = notificationStreamService.redeemTicket(ticket);
+        if (userId == null) {
+            throw new ResponseStatusException(HttpStatus.UNAUTHORIZED, "Ticket de flux invalide ou expiré");
+        }
+        return notificationStreamService.openStream(userId);
+    }
+
+    /**
+     * Marquer toutes les notifications d'un utilisateur comme lues
+     */
+    @PutMapping("/user/{userId}/read-all")
+    public ResponseEntity<Void> markAllAsRead(
+            @PathVariable Long userId,
+            HttpServletRequest httpRequest) {
+
+        String clientIp = getClientIp(httpRequest);
+
+        try {
+            notificationService.markAllAsRead(userId);
+
+            // AUDIT: Marquer toutes les notifications comme lues
+            auditService.log(
+                    AuditService.AuditLogBuilder.builder()
+                            .action("NOTIFICATION_MARK_ALL_AS_READ")
+                            .actionType(ActionType.MODIFICATION)
+                            .description("Marquage de toutes les notifications comme lues")
+                            .user(userId, null, null)
+                            .success()
+                            .detail("ip_address", clientIp)
+            );
+
+            return ResponseEntity.ok().build();
+
+        } catch (Exception e) {
+            // AUDIT: Échec marquage des notifications
+            auditService.log(
+                    AuditService.AuditLogBuilder.builder()
+                            .action("NOTIFICATION_MARK_ALL_AS_READ")
+                            .actionType(ActionType.MODIFICATION)
+                            .description("Échec marquage de toutes les notifications comme lues")
+                            .user(userId, null, null)
+                            .failure(e.getMessage())
+                            .detail("ip_address", clientIp)
+            );
+
+            throw e;
+        }
+    }
+
     /**
      * Marquer une notification comme lue
      */
@@ -1,27 +1,22 @@
 package com.tunisia.commerce.controller;
 
-import com.tunisia.commerce.config.JwtUtil;
 import com.tunisia.commerce.config.StorageConfig;
 import com.tunisia.commerce.dto.produits.DemandeEnregistrementDTO;
 import com.tunisia.commerce.dto.produits.DemandeEnregistrementRequestDTO;
 import com.tunisia.commerce.dto.produits.ProduitDTO;
+import com.tunisia.commerce.dto.produits.SearchSuggestionDTO;
 import com.tunisia.commerce.dto.validation.DocumentDTO;
 import com.tunisia.commerce.entity.DemandeEnregistrement;
-import com.tunisia.commerce.entity.ExportateurEtranger;
-import com.tunisia.commerce.entity.ImportateurTunisien;
-import com.tunisia.commerce.entity.User;
 import com.tunisia.commerce.enums.ActionType;
 import com.tunisia.commerce.enums.EntityType;
 import com.tunisia.commerce.exception.ProductDeclarationException;
 import com.tunisia.commerce.repository.DemandeEnregistrementRepository;
-import com.tunisia.commerce.repository.ExportateurRepository;
-import com.tunisia.commerce.repository.UserRepository;
+import com.tunisia.commerce.security.AuthenticatedUser;
+import com.tunisia.commerce.security.CurrentUser;
 import com.tunisia.commerce.service.impl.AuditService;
+import com.tunisia.commerce.service.impl.CatalogueSearchService;
 import com.tunisia.commerce.service.impl.DemandeEnregistrementService;
 import com.tunisia.commerce.service.impl.SecureStorageService;
-import io.jsonwebtoken.ExpiredJwtException;
-import io.jsonwebtoken.MalformedJwtException;
-import io.jsonwebtoken.security.SignatureException;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.tags.Tag;
@@ -54,13 +49,11 @@ import java.util.Map;
 public class ProduitController {
 
     private final DemandeEnregistrementService demandeService;
-    private final JwtUtil jwtUtil;
-    private final ExportateurRepository exportateurRepository;
-    private final UserRepository userRepository;
     private final DemandeEnregistrementRepository demandeEnregistrementRepository;
     private final AuditService auditService;
     private final StorageConfig storageConfig;
     private final SecureStorageService secureStorageService;
+    private final CatalogueSearchService catalogueSearchService;
 
 
     private static final Logger log = LoggerFactory.getLogger(AdminController.class);
@@ -93,7 +86,7 @@ public class ProduitController {
     @Operation(summary = "Récupérer le catalogue complet des produits pour les importateurs")
     @PreAuthorize("hasRole('IMPORTATEUR')")
     public ResponseEntity<?> getAllProductsForImporter(
-            @RequestHeader("Authorization") String authHeader,
+            @CurrentUser AuthenticatedUser currentUser,
             HttpServletRequest httpRequest) {
 
         String clientIp = getClientIp(httpRequest);
@@ -103,13 +96,13 @@ public class ProduitController {
         System.out.println("=== DÉBUT getAllProductsForImporter ===");
 
         try {
-            User user = getUserFromToken(authHeader);
+            AuthenticatedUser user = currentUser;
             userId = user.getId();
             userEmail = user.getEmail();
 
             System.out.println("Importateur ID: " + user.getId() + ", Email: " + user.getEmail());
 
-            if (!(user instanceof ImportateurTunisien)) {
+            if (!user.isUserType("IMPORTATEUR")) {
                 return ResponseEntity.status(HttpStatus.FORBIDDEN).body(Map.of("error", "FORBIDDEN", "message", "Accès réservé aux importateurs"));
             }
 
@@ -162,13 +155,13 @@ public class ProduitController {
     @PreAuthorize("hasRole('IMPORTATEUR')")
     public ResponseEntity<?> getProductsByTypeForImporter(
             @PathVariable String productType,
-            @RequestHeader("Authorization") String authHeader) {
+            @CurrentUser AuthenticatedUser currentUser) {
 
         System.out.println("=== DÉBUT getProductsByTypeForImporter ===");
         System.out.println("Type demandé: " + productType);
 
         try {
-            User user = getUserFromToken(authHeader);
+            AuthenticatedUser user = currentUser;
             System.out.println("Importateur ID: " + user.getId());
 
             List<ProduitDTO> products = demandeService.getProductsByTypeForImporter(productType);
@@ -196,7 +189,7 @@ public class ProduitController {
     @Operation(summary = "Récupérer les produits de l'exportateur")
     @PreAuthorize("hasRole('EXPORTATEUR')")
     public ResponseEntity<?> getMyProducts(
-            @RequestHeader("Authorization") String authHeader,
+            @CurrentUser AuthenticatedUser currentUser,
             HttpServletRequest httpRequest) {
 
         String clientIp = getClientIp(httpRequest);
@@ -206,7 +199,7 @@ public class ProduitController {
         System.out.println("=== DÉBUT getMyProducts ===");
 
         try {
-            ExportateurEtranger exportateur = getExportateurFromToken(authHeader);
+            AuthenticatedUser exportateur = requireExportateur(currentUser);
             userId = exportateur.getId();
             userEmail = exportateur.getEmail();
 
@@ -261,13 +254,13 @@ public class ProduitController {
     @PreAuthorize("hasRole('EXPORTATEUR')")
     public ResponseEntity<?> getMyProductsByType(
             @PathVariable String productType,
-            @RequestHeader("Authorization") String authHeader) {
+            @CurrentUser AuthenticatedUser currentUser) {
 
         System.out.println("=== DÉBUT getMyProductsByType ===");
         System.out.println("Type demandé: " + productType);
 
         try {
-            ExportateurEtranger exportateur = getExportateurFromToken(authHeader);
+            AuthenticatedUser exportateur = requireExportateur(currentUser);
 
             List<ProduitDTO> products = demandeService.getProductsByExportateurAndType(exportateur.getId(), productType);
 
@@ -298,7 +291,7 @@ public class ProduitController {
             @RequestParam(required = false) String productType,
             @RequestParam(required = false) String category,
             @RequestParam(required = false) String originCountry,
-            @RequestHeader("Authorization") String authHeader,
+            @CurrentUser AuthenticatedUser currentUser,
             HttpServletRequest httpRequest) {
 
         String clientIp = getClientIp(httpRequest);
@@ -306,7 +299,7 @@ public class ProduitController {
         String userEmail = null;
 
         try {
-            ExportateurEtranger exportateur = getExportateurFromToken(authHeader);
+            AuthenticatedUser exportateur = requireExportateur(currentUser);
             userId = exportateur.getId();
             userEmail = exportateur.getEmail();
 
@@ -379,7 +372,7 @@ public class ProduitController {
             @RequestParam(required = false) String productType,
             @RequestParam(required = false) String category,
             @RequestParam(required = false) String originCountry,
-            @RequestHeader("Authorization") String authHeader,
+            @CurrentUser AuthenticatedUser currentUser,
             HttpServletRequest httpRequest) {
 
         String clientIp = getClientIp(httpRequest);
@@ -387,7 +380,7 @@ public class ProduitController {
         String userEmail = null;
 
         try {
-            User user = getUserFromToken(authHeader);
+            AuthenticatedUser user = currentUser;
             userId = user.getId();
             userEmail = user.getEmail();
 
@@ -448,6 +441,35 @@ public class ProduitController {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(errorResponse);
         }
     }
+
+    /**
+     * Autocomplétion de la recherche catalogue (noms de produits, codes SH)
+     * Servie depuis l'index en mémoire, sans audit : appelée à chaque frappe.
+     */
+    @GetMapping("/catalogue-produits/suggestions")
+    @Operation(summary = "Suggestions d'autocomplétion pour le catalogue")
+    @PreAuthorize("hasRole('IMPORTATEUR')")
+    public ResponseEntity<?> suggestCatalogueProducts(@RequestParam("q") String query) {
+        try {
+            List<SearchSuggestionDTO> suggestions = query == null || query.isBlank()
+                    ? List.of()
+                    : catalogueSearchService.suggest(query);
+
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", true);
+            response.put("suggestions", suggestions);
+            response.put("count", suggestions.size());
+
+            return ResponseEntity.ok(response);
+
+        } catch (Exception e) {
+            Map<String, String> errorResponse = new HashMap<>();
+            errorResponse.put("error", "INTERNAL_ERROR");
+            errorResponse.put("message", e.getMessage());
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(errorResponse);
+        }
+    }
+
     /**
      * Créer une nouvelle demande d'enregistrement
      */
@@ -457,7 +479,7 @@ public class ProduitController {
     public ResponseEntity<?> createDemande(
             @RequestPart("demande") @Valid DemandeEnregistrementRequestDTO request,
             @RequestPart(value = "images", required = false) List<MultipartFile> images,
-            @RequestHeader("Authorization") String authHeader,
+            @CurrentUser AuthenticatedUser currentUser,
             HttpServletRequest httpRequest) {
 
         String clientIp = getClientIp(httpRequest);
@@ -467,7 +489,7 @@ public class ProduitController {
         try {
             System.out.println("*** create demande ***");
 
-            ExportateurEtranger exportateur = getExportateurFromToken(authHeader);
+            AuthenticatedUser exportateur = requireExportateur(currentUser);
             userId = exportateur.getId();
             userEmail = exportateur.getEmail();
 
@@ -530,7 +552,7 @@ public class ProduitController {
             @RequestParam String documentType,
             @RequestParam(required = false) Long productId,
             @RequestParam("file") MultipartFile file,
-            @RequestHeader("Authorization") String authHeader,
+            @CurrentUser AuthenticatedUser currentUser,
             HttpServletRequest httpRequest) {
 
         String clientIp = getClientIp(httpRequest);
@@ -538,7 +560,7 @@ public class ProduitController {
         String userEmail = null;
 
         try {
-            ExportateurEtranger exportateur = getExportateurFromToken(authHeader);
+            AuthenticatedUser exportateur = requireExportateur(currentUser);
             userId = exportateur.getId();
             userEmail = exportateur.getEmail();
 
@@ -590,7 +612,7 @@ public class ProduitController {
     @PreAuthorize("hasRole('EXPORTATEUR')")
     public ResponseEntity<?> submitDemande(
             @Parameter(description = "ID de la demande") @PathVariable Long id,
-            @RequestHeader("Authorization") String authHeader,
+            @CurrentUser AuthenticatedUser currentUser,
             HttpServletRequest httpRequest) {
 
         String clientIp = getClientIp(httpRequest);
@@ -601,7 +623,7 @@ public class ProduitController {
         System.out.println("=== DÉBUT submitDemande ===");
 
         try {
-            ExportateurEtranger exportateur = getExportateurFromToken(authHeader);
+            AuthenticatedUser exportateur = requireExportateur(currentUser);
             userId = exportateur.getId();
             userEmail = exportateur.getEmail();
 
@@ -671,7 +693,7 @@ public class ProduitController {
     public ResponseEntity<?> updateDemande(
             @PathVariable Long id,
             @Valid @RequestBody DemandeEnregistrementRequestDTO request,
-            @RequestHeader("Authorization") String authHeader,
+            @CurrentUser AuthenticatedUser currentUser,
             HttpServletRequest httpRequest) {
 
         String clientIp = getClientIp(httpRequest);
@@ -681,7 +703,7 @@ public class ProduitController {
         System.out.println("=== DÉBUT updateDemande ===");
 
         try {
-            ExportateurEtranger exportateur = getExportateurFromToken(authHeader);
+            AuthenticatedUser exportateur = requireExportateur(currentUser);
             userId = exportateur.getId();
             userEmail = exportateur.getEmail();
 
@@ -748,7 +770,7 @@ public class ProduitController {
     @PreAuthorize("hasRole('EXPORTATEUR')")
     public ResponseEntity<?> deleteDemande(
             @PathVariable Long id,
-            @RequestHeader("Authorization") String authHeader,
+            @CurrentUser AuthenticatedUser currentUser,
             HttpServletRequest httpRequest) {
 
         String clientIp = getClientIp(httpRequest);
@@ -758,7 +780,7 @@ public class ProduitController {
         System.out.println("=== DÉBUT deleteDemande ===");
 
         try {
-            ExportateurEtranger exportateur = getExportateurFromToken(authHeader);
+            AuthenticatedUser exportateur = requireExportateur(currentUser);
             userId = exportateur.getId();
             userEmail = exportateur.getEmail();
 
@@ -810,7 +832,7 @@ public class ProduitController {
     @Operation(summary = "Mes demandes")
     @PreAuthorize("hasRole('EXPORTATEUR')")
     public ResponseEntity<List<DemandeEnregistrementDTO>> getMyDemandes(
-            @RequestHeader("Authorization") String authHeader,
+            @CurrentUser AuthenticatedUser currentUser,
             HttpServletRequest httpRequest) {
 
         String clientIp = getClientIp(httpRequest);
@@ -818,7 +840,7 @@ public class ProduitController {
         String userEmail = null;
 
         try {
-            ExportateurEtranger exportateur = getExportateurFromToken(authHeader);
+            AuthenticatedUser exportateur = requireExportateur(currentUser);
             userId = exportateur.getId();
             userEmail = exportateur.getEmail();
 
@@ -940,79 +962,12 @@ public class ProduitController {
 
 
     /**
-     * Méthode utilitaire pour extraire l'exportateur du token JWT
-     */
-    private ExportateurEtranger getExportateurFromToken(String authHeader) {
-        try {
-            // 1. Extraire le token
-            String token = extractToken(authHeader);
-
-            // 2. Valider le token
-            if (!jwtUtil.validateToken(token)) {
-                throw new RuntimeException("Token invalide ou expiré");
-            }
-
-            // 3. Extraire l'email
-            String email = jwtUtil.extractUsername(token);
-            if (email == null || email.isEmpty()) {
-                throw new RuntimeException("Email non trouvé dans le token");
-            }
-
-            // 4. Chercher l'exportateur
-            return exportateurRepository.findByEmail(email)
-                    .orElseThrow(() -> new RuntimeException("Aucun exportateur trouvé avec l'email: " + email));
-
-        } catch (ExpiredJwtException e) {
-            throw new RuntimeException("Token expiré. Veuillez vous reconnecter.");
-        } catch (MalformedJwtException | SignatureException e) {
-            throw new RuntimeException("Token invalide. Veuillez vous reconnecter.");
-        } catch (Exception e) {
-            throw new RuntimeException("Erreur d'authentification: " + e.getMessage());
-        }
-    }
-
-    private String extractToken(String authHeader) {
-        if (authHeader == null || authHeader.isEmpty()) {
-            throw new RuntimeException("En-tête d'authentification manquant");
-        }
-
-        if (!authHeader.startsWith("Bearer ")) {
-            throw new RuntimeException("Format d'authentification invalide. Utilisez 'Bearer [token]'");
-        }
-
-        String token = authHeader.substring(7);
-        if (token.isEmpty()) {
-            throw new RuntimeException("Token vide");
-        }
-
-        return token;
-    }
-
-    /**
-     * Méthode utilitaire pour extraire l'utilisateur du token JWT (générique)
+     * Exportateur courant (principal en cache) : seuls son identifiant et son email sont utilisés
      */
-    private User getUserFromToken(String authHeader) {
-        try {
-            String token = extractToken(authHeader);
-
-            if (!jwtUtil.validateToken(token)) {
-                throw new RuntimeException("Token invalide ou expiré");
-            }
-
-            String email = jwtUtil.extractUsername(token);
-            if (email == null || email.isEmpty()) {
-                throw new RuntimeException("Email non trouvé dans le token");
-            }
-
-            return userRepository.findByEmail(email)
-                    .orElseThrow(() -> new RuntimeException("Aucun utilisateur trouvé avec l'email: " + email));
-
-        } catch (ExpiredJwtException e) {
-            throw new RuntimeException("Token expiré. Veuillez vous reconnecter.");
-        } catch (MalformedJwtException | SignatureException e) {
-            throw new RuntimeException("Token invalide. Veuillez vous reconnecter.");
-        } catch (Exception e) {
-            throw new RuntimeException("Erreur d'authentification: " + e.getMessage());
+    private AuthenticatedUser requireExportateur(AuthenticatedUser currentUser) {
+        if (!currentUser.isUserType("EXPORTATEUR")) {
+            throw new RuntimeException("Aucun exportateur trouvé avec l'email: " + currentUser.getEmail());
         }
+        return currentUser;
     }
 }
\ No newline at end of file
@@ -1,23 +1,20 @@
 package com.tunisia.commerce.controller;
 
-import com.tunisia.commerce.config.JwtUtil;
 import com.tunisia.commerce.dto.payment.CreatePaymentIntentRequest;
 import com.tunisia.commerce.dto.payment.CreatePaymentIntentResponse;
 import com.tunisia.commerce.dto.payment.PaymentResponseDTO;
 import com.tunisia.commerce.dto.payment.PaymentTransactionDTO;
 import com.tunisia.commerce.entity.DemandeEnregistrement;
-import com.tunisia.commerce.entity.ExportateurEtranger;
-import com.tunisia.commerce.entity.ImportateurTunisien;
-import com.tunisia.commerce.entity.User;
 import com.tunisia.commerce.enums.ActionType;
 import com.tunisia.commerce.enums.EntityType;
 import com.tunisia.commerce.enums.UserRole;
 import com.tunisia.commerce.repository.DemandeEnregistrementRepository;
-import com.tunisia.commerce.repository.ExportateurRepository;
-import com.tunisia.commerce.repository.ImportateurRepository;
-import com.tunisia.commerce.repository.UserRepository;
+import com.tunisia.commerce.security.AuthenticatedUser;
+import com.tunisia.commerce.security.CurrentUser;
 import com.tunisia.commerce.service.impl.AuditService;
+import com.tunisia.commerce.service.impl.PaymentLedgerReconciliationService;
 import com.tunisia.commerce.service.impl.StripePaymentService;
+import com.tunisia.commerce.service.impl.StripeWebhookInboxService;
 import jakarta.servlet.http.HttpServletRequest;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -27,9 +24,12 @@ import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 @RestController
 @RequestMapping("/api/stripe-payment")
@@ -38,10 +38,10 @@ import java.util.Map;
 public class StripePaymentController {
 
     private final StripePaymentService stripePaymentService;
-    private final JwtUtil jwtUtil;
-    private final UserRepository userRepository;
     private final DemandeEnregistrementRepository demandeRepository;
     private final AuditService auditService;
+    private final PaymentLedgerReconciliationService reconciliationService;
+    private final StripeWebhookInboxService webhookInboxService;
 
     private String getClientIp(HttpServletRequest request) {
         String ip = request.getHeader("X-Forwarded-For");
@@ -72,7 +72,7 @@ public class StripePaymentController {
      */
     @PostMapping("/create-intent")
     public ResponseEntity<CreatePaymentIntentResponse> createPaymentIntent(
-            @RequestHeader("Authorization") String authHeader,
+            @CurrentUser AuthenticatedUser currentUser,
             @RequestBody CreatePaymentIntentRequest request,
             HttpServletRequest httpRequest) {
 
@@ -84,9 +84,9 @@ public class StripePaymentController {
         String currency = null;
 
         try {
-            log.info("📝 Création de PaymentIntent - Header: {}", authHeader != null ? "présent" : "absent");
+            log.info("📝 Création de PaymentIntent - Utilisateur: {}", currentUser.getId());
 
-            User user = getUserFromToken(authHeader);
+            AuthenticatedUser user = currentUser;
             userId = user.getId();
             userEmail = user.getEmail();
             userRole = user.getRole().name();
@@ -160,7 +160,7 @@ public class StripePaymentController {
      */
     @PostMapping("/confirm-payment")
     public ResponseEntity<?> confirmPayment(
-            @RequestHeader("Authorization") String authHeader,
+            @CurrentUser AuthenticatedUser currentUser,
             @RequestBody Map<String, Object> paymentDetails,
             HttpServletRequest httpRequest) {
 
@@ -174,13 +174,7 @@ public class StripePaymentController {
         try {
             log.info("💳 Confirmation de paiement");
 
-            if (authHeader == null || !authHeader.startsWith("Bearer ")) {
-                log.error("❌ Header Authorization manquant ou invalide");
-                return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
-                        .body(Map.of("error", "Token d'authentification manquant"));
-            }
-
-            User user = getUserFromToken(authHeader);
+            AuthenticatedUser user = currentUser;
             userId = user.getId();
             userEmail = user.getEmail();
             userRole = user.getRole().name();
@@ -260,7 +254,7 @@ public class StripePaymentController {
      */
     @GetMapping("/all")
     public ResponseEntity<?> getAllTransactions(
-            @RequestHeader("Authorization") String authHeader,
+            @CurrentUser AuthenticatedUser currentUser,
             @RequestParam(defaultValue = "50") int limit,
             @RequestParam(required = false) String status,
             HttpServletRequest request) {
@@ -268,7 +262,7 @@ public class StripePaymentController {
         String clientIp = getClientIp(request);
 
         try {
-            User user = getUserFromToken(authHeader);
+            AuthenticatedUser user = currentUser;
             checkAdminOrBankAccess(user);
 
             log.info("📊 Récupération de toutes les transactions par {} - IP: {}", user.getEmail(), clientIp);
@@ -298,7 +292,7 @@ public class StripePaymentController {
      */
     @GetMapping("/filtered")
     public ResponseEntity<?> getFilteredTransactions(
-            @RequestHeader("Authorization") String authHeader,
+            @CurrentUser AuthenticatedUser currentUser,
             @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime startDate,
             @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime endDate,
             @RequestParam(required = false) String status,
@@ -309,7 +303,7 @@ public class StripePaymentController {
         String clientIp = getClientIp(request);
 
         try {
-            User user = getUserFromToken(authHeader);
+            AuthenticatedUser user = currentUser;
             checkAdminOrBankAccess(user);
 
             log.info("📊 Récupération des transactions filtrées par {} - IP: {}", user.getEmail(), clientIp);
@@ -345,14 +339,14 @@ public class StripePaymentController {
      */
     @GetMapping("/user/{userId}")
     public ResponseEntity<?> getTransactionsByUser(
-            @RequestHeader("Authorization") String authHeader,
+            @CurrentUser AuthenticatedUser currentUser,
             @PathVariable Long userId,
             HttpServletRequest request) {
 
         String clientIp = getClientIp(request);
 
         try {
-            User user = getUserFromToken(authHeader);
+            AuthenticatedUser user = currentUser;
             checkAdminOrBankAccess(user);
 
             log.info("📊 Récupération des transactions pour l'utilisateur {} par {} - IP: {}",
@@ -383,14 +377,14 @@ public class StripePaymentController {
      */
     @GetMapping("/demande/{demandeId}")
     public ResponseEntity<?> getTransactionByDemande(
-            @RequestHeader("Authorization") String authHeader,
+            @CurrentUser AuthenticatedUser currentUser,
             @PathVariable Long demandeId,
             HttpServletRequest request) {
 
         String clientIp = getClientIp(request);
 
         try {
-            User user = getUserFromToken(authHeader);
+            AuthenticatedUser user = currentUser;
             checkAdminOrBankAccess(user);
 
             log.info("📊 Récupération de la transaction pour la demande {} par {} - IP: {}",
@@ -428,13 +422,13 @@ public class StripePaymentController {
      */
     @GetMapping("/statistics")
     public ResponseEntity<?> getTransactionStatistics(
-            @RequestHeader("Authorization") String authHeader,
+            @CurrentUser AuthenticatedUser currentUser,
             HttpServletRequest request) {
 
         String clientIp = getClientIp(request);
 
         try {
-            User user = getUserFromToken(authHeader);
+            AuthenticatedUser user = currentUser;
             checkAdminOrBankAccess(user);
 
             log.info("📊 Récupération des statistiques par {} - IP: {}", user.getEmail(), clientIp);
@@ -456,48 +450,160 @@ public class StripePaymentController {
                     .body(Map.of("success", false, "error", "Erreur lors de la récupération des statistiques"));
         }
     }
-    // ==================== MÉTHODES PRIVÉES ====================
 
     /**
-     * Extraire l'utilisateur du token (générique pour tous les rôles)
+     * Statistiques journalières des transactions (ADMIN et BANQUE)
      */
-    private User getUserFromToken(String authHeader) {
+    @GetMapping("/statistics/daily")
+    public ResponseEntity<?> getDailyTransactionStatistics(
+            @CurrentUser AuthenticatedUser currentUser,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate startDate,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate endDate,
+            HttpServletRequest request) {
+
         try {
-            String token = extractToken(authHeader);
-            log.info("🔑 Token extrait: {}", token.substring(0, Math.min(20, token.length())) + "...");
+            AuthenticatedUser user = currentUser;
+            checkAdminOrBankAccess(user);
+
+            log.info("📊 Récupération des statistiques journalières par {} - IP: {}", user.getEmail(), getClientIp(request));
 
-            String email = jwtUtil.extractUsername(token);
-            log.info("📧 Email extrait du token: {}", email);
+            List<Map<String, Object>> days = stripePaymentService.getDailyTransactionStatistics(startDate, endDate);
 
-            User user = userRepository.findByEmail(email)
-                    .orElseThrow(() -> new RuntimeException("Utilisateur non trouvé avec l'email: " + email));
+            return ResponseEntity.ok(Map.of(
+                    "success", true,
+                    "daily", days
+            ));
 
-            log.info("👤 Utilisateur trouvé: ID={}, Rôle={}", user.getId(), user.getRole());
+        } catch (RuntimeException e) {
+            log.error("❌ Erreur: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.FORBIDDEN)
+                    .body(Map.of("success", false, "error", e.getMessage()));
+        }
+    }
 
-            return user;
+    /**
+     * Webhook Stripe (appelé par Stripe, authentifié par la signature de l'en-tête Stripe-Signature).
+     * L'événement est seulement enregistré ici ; son traitement est asynchrone.
+     */
+    @PostMapping("/webhook")
+    public ResponseEntity<?> handleWebhook(
+            @RequestBody String payload,
+            @RequestHeader("Stripe-Signature") String sigHeader) {
+        try {
+            boolean inserted = webhookInboxService.receive(payload, sigHeader);
+            return ResponseEntity.ok(Map.of("received", true, "duplicate", !inserted));
+        } catch (SecurityException e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                    .body(Map.of("received", false, "error", e.getMessage()));
         } catch (Exception e) {
-            log.error("❌ Erreur lors de l'extraction du token", e);
-            throw new RuntimeException("Erreur d'authentification: " + e.getMessage());
+            // Stripe relivrera l'événement
+            log.error("❌ Erreur lors de l'enregistrement du webhook Stripe", e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(Map.of("received", false, "error", "Erreur lors de l'enregistrement de l'événement"));
         }
     }
 
-    private void checkAdminOrBankAccess(User user) {
-        if (user.getRole() != UserRole.ADMIN && user.getRole() != UserRole.BANQUE) {
-            throw new RuntimeException("Accès non autorisé. Cette ressource est réservée à l'administration et à la banque.");
+    /**
+     * Webhooks Stripe rejetés après épuisement des tentatives (ADMIN uniquement)
+     */
+    @GetMapping("/webhooks/rejected")
+    public ResponseEntity<?> getRejectedWebhooks(
+            @CurrentUser AuthenticatedUser currentUser,
+            @RequestParam(defaultValue = "50") int limit) {
+        try {
+            AuthenticatedUser user = currentUser;
+            if (user.getRole() != UserRole.ADMIN) {
+                throw new RuntimeException("Accès non autorisé. Cette ressource est réservée à l'administration.");
+            }
+
+            List<Map<String, Object>> events = webhookInboxService.findRejected(limit).stream()
+                    .map(event -> {
+                        Map<String, Object> item = new HashMap<>();
+                        item.put("id", event.getId());
+                        item.put("eventId", event.getEventId());
+                        item.put("eventType", event.getEventType());
+                        item.put("orderingKey", event.getOrderingKey());
+                        item.put("attempts", event.getAttempts());
+                        item.put("lastError", event.getLastError());
+                        item.put("receivedAt", event.getReceivedAt());
+                        return item;
+                    })
+                    .toList();
+
+            return ResponseEntity.ok(Map.of(
+                    "success", true,
+                    "events", events,
+                    "counts", webhookInboxService.countByStatus()
+            ));
+
+        } catch (RuntimeException e) {
+            log.error("❌ Erreur: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.FORBIDDEN)
+                    .body(Map.of("success", false, "error", e.getMessage()));
         }
     }
 
-    private String extractToken(String authHeader) {
-        if (authHeader == null || authHeader.isEmpty()) {
-            throw new RuntimeException("En-tête d'authentification manquant");
+    /**
+     * Remettre en file un webhook Stripe rejeté (ADMIN uniquement)
+     */
+    @PostMapping("/webhooks/{id}/replay")
+    public ResponseEntity<?> replayWebhook(
+            @CurrentUser AuthenticatedUser currentUser,
+            @PathVariable Long id) {
+        try {
+            AuthenticatedUser user = currentUser;
+            if (user.getRole() != UserRole.ADMIN) {
+                throw new RuntimeException("Accès non autorisé. Cette ressource est réservée à l'administration.");
+            }
+
+            if (!webhookInboxService.replay(id)) {
+                return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                        .body(Map.of("success", false, "error", "Aucun webhook rejeté avec l'ID: " + id));
+            }
+
+            log.info("🔄 Webhook {} remis en file par {}", id, user.getEmail());
+            return ResponseEntity.ok(Map.of("success", true, "message", "Webhook remis en file"));
+
+        } catch (RuntimeException e) {
+            log.error("❌ Erreur: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.FORBIDDEN)
+                    .body(Map.of("success", false, "error", e.getMessage()));
         }
-        if (!authHeader.startsWith("Bearer ")) {
-            throw new RuntimeException("Format d'authentification invalide. Utilisez 'Bearer [token]'");
+    }
+
+    /**
+     * Lancer une réconciliation complète du registre des paiements avec Stripe (ADMIN uniquement)
+     */
+    @PostMapping("/ledger/reconcile")
+    public ResponseEntity<?> reconcileLedger(
+            @CurrentUser AuthenticatedUser currentUser,
+            HttpServletRequest request) {
+        try {
+            AuthenticatedUser user = currentUser;
+            if (user.getRole() != UserRole.ADMIN) {
+                throw new RuntimeException("Accès non autorisé. Cette ressource est réservée à l'administration.");
+            }
+
+            log.info("🔄 Réconciliation des paiements demandée par {} - IP: {}", user.getEmail(), getClientIp(request));
+            CompletableFuture.runAsync(reconciliationService::reconcileFullHistory);
+
+            return ResponseEntity.status(HttpStatus.ACCEPTED).body(Map.of(
+                    "success", true,
+                    "message", "Réconciliation lancée en arrière-plan"
+            ));
+
+        } catch (RuntimeException e) {
+            log.error("❌ Erreur: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.FORBIDDEN)
+                    .body(Map.of("success", false, "error", e.getMessage()));
         }
-        String token = authHeader.substring(7);
-        if (token.isEmpty()) {
-            throw new RuntimeException("Token vide");
+    }
+
+    // ==================== MÉTHODES PRIVÉES ====================
+
+    private void checkAdminOrBankAccess(AuthenticatedUser user) {
+        if (!user.hasAnyRole(UserRole.ADMIN, UserRole.BANQUE)) {
+            throw new RuntimeException("Accès non autorisé. Cette ressource est réservée à l'administration et à la banque.");
         }
-        return token;
     }
 }
\ No newline at end of file
@@ -8,7 +8,8 @@ import com.tunisia.commerce.enums.ActionType;
 import com.tunisia.commerce.enums.EntityType;
 import com.tunisia.commerce.enums.StructureType;
 import com.tunisia.commerce.repository.AdministrateurRepository;
-import com.tunisia.commerce.config.JwtUtil;
+import com.tunisia.commerce.security.AuthenticatedUser;
+import com.tunisia.commerce.security.CurrentUser;
 import com.tunisia.commerce.service.impl.AuditService;
 import com.tunisia.commerce.service.impl.StructureInterneServiceImpl;
 import jakarta.servlet.http.HttpServletRequest;
@@ -32,7 +33,6 @@ import java.util.Map;
 public class StructureInterneController {
 
     private final StructureInterneServiceImpl structureService;
-    private final JwtUtil jwtUtil;
     private final AdministrateurRepository administrateurRepository;
     private final AuditService auditService;
 
@@ -63,7 +63,7 @@ public class StructureInterneController {
     @PreAuthorize("hasRole('ADMIN')")
     public ResponseEntity<?> createStructure(
             @Valid @RequestBody CreateStructureRequestDTO request,
-            @RequestHeader("Authorization") String authHeader,
+            @CurrentUser AuthenticatedUser currentUser,
             HttpServletRequest httpRequest) {
 
         String clientIp = getClientIp(httpRequest);
@@ -72,8 +72,8 @@ public class StructureInterneController {
 
         try {
             log.info("=== CRÉATION STRUCTURE INTERNE ===");
-            adminId = getAdminIdFromToken(authHeader);
-            adminEmail = getAdminEmailFromToken(authHeader);
+            adminId = getAdminId(currentUser);
+            adminEmail = currentUser.getEmail();
 
             StructureInterneDTO created = structureService.createStructure(request, adminId);
 
@@ -144,7 +144,7 @@ public class StructureInterneController {
     public ResponseEntity<?> updateStructure(
             @PathVariable Long id,
             @Valid @RequestBody UpdateStructureRequestDTO request,
-            @RequestHeader("Authorization") String authHeader,
+            @CurrentUser AuthenticatedUser currentUser,
             HttpServletRequest httpRequest) {
 
         String clientIp = getClientIp(httpRequest);
@@ -154,8 +154,8 @@ public class StructureInterneController {
 
         try {
             log.info("=== MISE À JOUR STRUCTURE ID: {} ===", id);
-            adminId = getAdminIdFromToken(authHeader);
-            adminEmail = getAdminEmailFromToken(authHeader);
+            adminId = getAdminId(currentUser);
+            adminEmail = currentUser.getEmail();
 
             // Récupérer l'ancien nom pour l'audit
             try {
@@ -237,7 +237,7 @@ public class StructureInterneController {
     @PreAuthorize("hasRole('ADMIN')")
     public ResponseEntity<?> deleteStructureHard(
             @PathVariable Long id,
-            @RequestHeader("Authorization") String authHeader,
+            @CurrentUser AuthenticatedUser currentUser,
             HttpServletRequest httpRequest) {
 
         String clientIp = getClientIp(httpRequest);
@@ -247,8 +247,8 @@ public class StructureInterneController {
 
         try {
             log.info("=== SUPPRESSION PHYSIQUE STRUCTURE ID: {} ===", id);
-            adminId = getAdminIdFromToken(authHeader);
-            adminEmail = getAdminEmailFromToken(authHeader);
+            adminId = getAdminId(currentUser);
+            adminEmail = currentUser.getEmail();
 
             // Récupérer le nom pour l'audit
             try {
@@ -326,7 +326,7 @@ public class StructureInterneController {
     @PreAuthorize("hasRole('ADMIN')")
     public ResponseEntity<?> deactivateStructure(
             @PathVariable Long id,
-            @RequestHeader("Authorization") String authHeader,
+            @CurrentUser AuthenticatedUser currentUser,
             HttpServletRequest httpRequest) {
 
         String clientIp = getClientIp(httpRequest);
@@ -336,8 +336,8 @@ public class StructureInterneController {
 
         try {
             log.info("=== DÉSACTIVATION STRUCTURE ID: {} ===", id);
-            adminId = getAdminIdFromToken(authHeader);
-            adminEmail = getAdminEmailFromToken(authHeader);
+            adminId = getAdminId(currentUser);
+            adminEmail = currentUser.getEmail();
 
             // Récupérer le nom pour l'audit
             try {
@@ -416,7 +416,7 @@ public class StructureInterneController {
     @PreAuthorize("hasRole('ADMIN')")
     public ResponseEntity<?> reactivateStructure(
             @PathVariable Long id,
-            @RequestHeader("Authorization") String authHeader,
+            @CurrentUser AuthenticatedUser currentUser,
             HttpServletRequest httpRequest) {
 
         String clientIp = getClientIp(httpRequest);
@@ -426,8 +426,8 @@ public class StructureInterneController {
 
         try {
             log.info("=== RÉACTIVATION STRUCTURE ID: {} ===", id);
-            adminId = getAdminIdFromToken(authHeader);
-            adminEmail = getAdminEmailFromToken(authHeader);
+            adminId = getAdminId(currentUser);
+            adminEmail = currentUser.getEmail();
 
             // Récupérer le nom pour l'audit
             try {
@@ -505,7 +505,7 @@ public class StructureInterneController {
     @GetMapping
     @PreAuthorize("hasRole('ADMIN')")
     public ResponseEntity<?> getAllStructures(
-            @RequestHeader("Authorization") String authHeader,
+            @CurrentUser AuthenticatedUser currentUser,
             HttpServletRequest httpRequest) {
 
         String clientIp = getClientIp(httpRequest);
@@ -514,10 +514,10 @@ public class StructureInterneController {
 
         try {
             log.info("=== RÉCUPÉRATION DE TOUTES LES STRUCTURES ===");
-            adminId = getAdminIdFromToken(authHeader);
-            adminEmail = getAdminEmailFromToken(authHeader);
+            adminId = getAdminId(currentUser);
+            adminEmail = currentUser.getEmail();
 
-            validateAdmin(authHeader);
+            validateAdmin(currentUser);
 
             List<StructureInterneDTO> structures = structureService.getAllStructures();
 
@@ -580,7 +580,7 @@ public class StructureInterneController {
     @GetMapping("/active")
     @PreAuthorize("hasRole('ADMIN')")
     public ResponseEntity<?> getActiveStructures(
-            @RequestHeader("Authorization") String authHeader,
+            @CurrentUser AuthenticatedUser currentUser,
             HttpServletRequest httpRequest) {
 
         String clientIp = getClientIp(httpRequest);
@@ -589,10 +589,10 @@ public class StructureInterneController {
 
         try {
             log.info("=== RÉCUPÉRATION DES STRUCTURES ACTIVES ===");
-            adminId = getAdminIdFromToken(authHeader);
-            adminEmail = getAdminEmailFromToken(authHeader);
+            adminId = getAdminId(currentUser);
+            adminEmail = currentUser.getEmail();
 
-            validateAdmin(authHeader);
+            validateAdmin(currentUser);
 
             List<StructureInterneDTO> structures = structureService.getAllActiveStructures();
 
@@ -639,7 +639,7 @@ public class StructureInterneController {
     @PreAuthorize("hasRole('ADMIN')")
     public ResponseEntity<?> getStructureById(
             @PathVariable Long id,
-            @RequestHeader("Authorization") String authHeader,
+            @CurrentUser AuthenticatedUser currentUser,
             HttpServletRequest httpRequest) {
 
         String clientIp = getClientIp(httpRequest);
@@ -648,10 +648,10 @@ public class StructureInterneController {
 
         try {
             log.info("=== RÉCUPÉRATION STRUCTURE ID: {} ===", id);
-            adminId = getAdminIdFromToken(authHeader);
-            adminEmail = getAdminEmailFromToken(authHeader);
+            adminId = getAdminId(currentUser);
+            adminEmail = currentUser.getEmail();
 
-            validateAdmin(authHeader);
+            validateAdmin(currentUser);
 
             StructureInterneDTO structure = structureService.getStructureById(id);
 
@@ -703,7 +703,7 @@ public class StructureInterneController {
     @PreAuthorize("hasRole('ADMIN')")
     public ResponseEntity<?> getStructuresByType(
             @PathVariable StructureType type,
-            @RequestHeader("Authorization") String authHeader,
+            @CurrentUser AuthenticatedUser currentUser,
             HttpServletRequest httpRequest) {
 
         String clientIp = getClientIp(httpRequest);
@@ -712,10 +712,10 @@ public class StructureInterneController {
 
         try {
             log.info("=== RÉCUPÉRATION STRUCTURES PAR TYPE: {} ===", type);
-            adminId = getAdminIdFromToken(authHeader);
-            adminEmail = getAdminEmailFromToken(authHeader);
+            adminId = getAdminId(currentUser);
+            adminEmail = currentUser.getEmail();
 
-            validateAdmin(authHeader);
+            validateAdmin(currentUser);
 
             List<StructureInterneDTO> structures = structureService.getStructuresByType(type);
 
@@ -759,29 +759,14 @@ public class StructureInterneController {
 
     // ==================== MÉTHODES PRIVÉES ====================
 
-    private String getAdminEmailFromToken(String authHeader) {
-        String token = extractToken(authHeader);
-        return jwtUtil.extractUsername(token);
+    private void validateAdmin(AuthenticatedUser currentUser) {
+        getAdminId(currentUser);
     }
 
-    private void validateAdmin(String authHeader) {
-        getAdminIdFromToken(authHeader);
-    }
-
-    private Long getAdminIdFromToken(String authHeader) {
-        String token = extractToken(authHeader);
-        String email = jwtUtil.extractUsername(token);
-
-        Administrateur admin = administrateurRepository.findByEmail(email)
-                .orElseThrow(() -> new RuntimeException("Administrateur non trouvé avec l'email: " + email));
-
-        return admin.getId();
-    }
-
-    private String extractToken(String authHeader) {
-        if (authHeader == null || !authHeader.startsWith("Bearer ")) {
-            throw new RuntimeException("Token d'authentification manquant ou invalide");
+    private Long getAdminId(AuthenticatedUser currentUser) {
+        if (!currentUser.isUserType("ADMIN")) {
+            throw new RuntimeException("Administrateur non trouvé avec l'email: " + currentUser.getEmail());
         }
-        return authHeader.substring(7);
+        return currentUser.getId();
     }
-}
\ No newline at end of file
+}
@@ -1,43 +1,61 @@
 package com.tunisia.commerce.controller;
 
+import com.tunisia.commerce.dto.tax.TaxBatchRequest;
 import com.tunisia.commerce.dto.tax.TaxRequest;
 import com.tunisia.commerce.dto.tax.TaxResponse;
-import com.tunisia.commerce.entity.NgpCode;
-import com.tunisia.commerce.entity.Country;
+import com.tunisia.commerce.service.impl.TariffEngine;
 import com.tunisia.commerce.service.impl.TaxCalculatorService;
-import com.tunisia.commerce.service.impl.NgpCodeService;
-import com.tunisia.commerce.service.impl.CountryService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.List;
+import java.util.Map;
+
 
 @RestController
 @RequestMapping("/api/taxes")
 @CrossOrigin(origins = "*")
 public class TaxCalculatorController {
 
-    @Autowired
-    private TaxCalculatorService taxCalculatorService;
-
-    @Autowired
-    private NgpCodeService ngpCodeService;
+    private static final int MAX_BATCH_LINES = 1000;
 
     @Autowired
-    private CountryService countryService;
+    private TaxCalculatorService taxCalculatorService;
 
     @PostMapping("/calculate")
     public TaxResponse calculate(@RequestBody TaxRequest request) {
-        // Récupérer les données NGP et Country
-        NgpCode ngpData = ngpCodeService.getNgpData(request.getHsCode());
-        Country country = countryService.getCountryData(request.getCountryCode() != null ?
-                request.getCountryCode() : "FR");
-
-        // Calculer les taxes
+        // Résolution NGP / pays en mémoire (moteur tarifaire), puis calcul des taxes
         return taxCalculatorService.calculateTaxes(
                 request.getValue(),
                 request.getCurrency(),
-                ngpData,
-                country
+                request.getHsCode(),
+                request.getCountryCode() != null ? request.getCountryCode() : TariffEngine.DEFAULT_COUNTRY_CODE
         );
     }
-}
\ No newline at end of file
+
+    /**
+     * Cotation d'un lot de lignes (devis multi-articles) en un seul appel.
+     */
+    @PostMapping("/calculate/batch")
+    public ResponseEntity<?> calculateBatch(@RequestBody TaxBatchRequest request) {
+        List<TaxRequest> lines = request.getLines();
+        if (lines == null || lines.isEmpty()) {
+            return ResponseEntity.badRequest()
+                    .body(Map.of("error", "La liste des lignes à coter est requise"));
+        }
+        if (lines.size() > MAX_BATCH_LINES) {
+            return ResponseEntity.badRequest()
+                    .body(Map.of("error", "Nombre maximum de lignes par lot: " + MAX_BATCH_LINES));
+        }
+        for (int i = 0; i < lines.size(); i++) {
+            TaxRequest line = lines.get(i);
+            if (line == null || line.getValue() == null || line.getCurrency() == null) {
+                return ResponseEntity.badRequest()
+                        .body(Map.of("error", "Ligne " + (i + 1) + ": valeur et devise requises"));
+            }
+        }
+
+        return ResponseEntity.ok(taxCalculatorService.calculateTaxesBatch(lines));
+    }
+}
@@ -11,6 +11,8 @@ import com.tunisia.commerce.enums.ActionType;
 import com.tunisia.commerce.enums.EntityType;
 import com.tunisia.commerce.repository.ExportateurRepository;
 import com.tunisia.commerce.repository.UserRepository;
+import com.tunisia.commerce.security.AuthenticatedUser;
+import com.tunisia.commerce.security.CurrentUser;
 import com.tunisia.commerce.service.UserService;
 import com.tunisia.commerce.service.impl.AuditService;
 import jakarta.servlet.http.HttpServletRequest;
@@ -62,7 +64,7 @@ public class TwoFactorAuthController {
 
     @PostMapping("/setup")
     public ResponseEntity<?> setup2FA(
-            @RequestHeader("Authorization") String authHeader,
+            @CurrentUser(required = false) AuthenticatedUser currentUser,
             HttpServletRequest httpRequest) {
 
         String clientIp = getClientIp(httpRequest);
@@ -71,26 +73,16 @@ public class TwoFactorAuthController {
         String userRole = null;
 
         try {
-            if (authHeader == null || !authHeader.startsWith("Bearer ")) {
-                return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
-                        .body(Map.of("error", "Token d'authentification manquant"));
-            }
-
-            String token = authHeader.substring(7);
-            if (!jwtUtil.validateToken(token)) {
+            if (currentUser == null) {
                 return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
                         .body(Map.of("error", "Token invalide ou expiré"));
             }
 
-            String email = jwtUtil.extractUsername(token);
+            String email = currentUser.getEmail();
             userEmail = email;
 
-            // Récupérer l'utilisateur pour l'audit
-            User user = userRepository.findByEmail(email).orElse(null);
-            if (user != null) {
-                userId = user.getId();
-                userRole = user.getRole().name();
-            }
+            userId = currentUser.getId();
+            userRole = currentUser.getRole().name();
 
             TwoFactorSetupResponse response = userService.setupTwoFactorAuth(email);
 
@@ -130,7 +122,7 @@ public class TwoFactorAuthController {
 
     @PostMapping("/enable")
     public ResponseEntity<?> enable2FA(
-            @RequestHeader("Authorization") String authHeader,
+            @CurrentUser(required = false) AuthenticatedUser currentUser,
             @RequestBody TwoFactorVerifyRequest request,
             HttpServletRequest httpRequest) {
 
@@ -140,18 +132,12 @@ public class TwoFactorAuthController {
         String userRole = null;
 
         try {
-            if (authHeader == null || !authHeader.startsWith("Bearer ")) {
-                return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
-                        .body(Map.of("error", "Token d'authentification manquant"));
-            }
-
-            String token = authHeader.substring(7);
-            if (!jwtUtil.validateToken(token)) {
+            if (currentUser == null) {
                 return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
                         .body(Map.of("error", "Token invalide ou expiré"));
             }
 
-            String email = jwtUtil.extractUsername(token);
+            String email = currentUser.getEmail();
             userEmail = email;
 
             if (!email.equals(request.getEmail())) {
@@ -159,12 +145,8 @@ public class TwoFactorAuthController {
                         .body(Map.of("error", "Email ne correspond pas au token"));
             }
 
-            // Récupérer l'utilisateur pour l'audit
-            User user = userRepository.findByEmail(email).orElse(null);
-            if (user != null) {
-                userId = user.getId();
-                userRole = user.getRole().name();
-            }
+            userId = currentUser.getId();
+            userRole = currentUser.getRole().name();
 
             boolean enabled = userService.enableTwoFactorAuth(email, request.getCode());
 
@@ -219,7 +201,7 @@ public class TwoFactorAuthController {
 
     @PostMapping("/disable")
     public ResponseEntity<?> disable2FA(
-            @RequestHeader("Authorization") String authHeader,
+            @CurrentUser(required = false) AuthenticatedUser currentUser,
             @RequestBody TwoFactorVerifyRequest request,
             HttpServletRequest httpRequest) {
 
@@ -229,18 +211,12 @@ public class TwoFactorAuthController {
         String userRole = null;
 
         try {
-            if (authHeader == null || !authHeader.startsWith("Bearer ")) {
-                return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
-                        .body(Map.of("error", "Token d'authentification manquant"));
-            }
-
-            String token = authHeader.substring(7);
-            if (!jwtUtil.validateToken(token)) {
+            if (currentUser == null) {
                 return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
                         .body(Map.of("error", "Token invalide ou expiré"));
             }
 
-            String email = jwtUtil.extractUsername(token);
+            String email = currentUser.getEmail();
             userEmail = email;
 
             if (!email.equals(request.getEmail())) {
@@ -248,12 +224,8 @@ public class TwoFactorAuthController {
                         .body(Map.of("error", "Email ne correspond pas au token"));
             }
 
-            // Récupérer l'utilisateur pour l'audit
-            User user = userRepository.findByEmail(email).orElse(null);
-            if (user != null) {
-                userId = user.getId();
-                userRole = user.getRole().name();
-            }
+            userId = currentUser.getId();
+            userRole = currentUser.getRole().name();
 
             boolean disabled = userService.disableTwoFactorAuth(email, request.getCode());
 
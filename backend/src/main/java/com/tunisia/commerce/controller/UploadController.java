@@ -0,0 +1,199 @@
+package com.tunisia.commerce.controller;
+
+import com.tunisia.commerce.dto.upload.UploadSessionDTO;
+import com.tunisia.commerce.dto.upload.UploadSessionRequestDTO;
+import com.tunisia.commerce.enums.ActionType;
+import com.tunisia.commerce.enums.EntityType;
+import com.tunisia.commerce.enums.UploadTarget;
+import com.tunisia.commerce.enums.UserRole;
+import com.tunisia.commerce.exception.UploadException;
+import com.tunisia.commerce.security.AuthenticatedUser;
+import com.tunisia.commerce.security.CurrentUser;
+import com.tunisia.commerce.service.impl.AuditService;
+import com.tunisia.commerce.service.impl.ChunkedUploadService;
+import jakarta.servlet.http.HttpServletRequest;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Téléversement reprenable par morceaux (documents et images produit).
+ *
+ * 1. POST   /api/uploads/sessions                      → sessionId, offset = 0
+ * 2. PUT    /api/uploads/sessions/{id}/chunks?offset=N  corps binaire, en-tête X-Chunk-Sha256
+ * 3. GET    /api/uploads/sessions/{id}                  → offset de reprise après une coupure
+ * 4. POST   /api/uploads/sessions/{id}/complete         → document créé ou URL de l'image
+ */
+@RestController
+@RequestMapping("/api/uploads")
+@RequiredArgsConstructor
+@Slf4j
+@CrossOrigin(origins = "*")
+public class UploadController {
+
+    private final ChunkedUploadService chunkedUploadService;
+    private final AuditService auditService;
+
+    @PostMapping("/sessions")
+    public ResponseEntity<?> createSession(
+            @RequestBody UploadSessionRequestDTO request,
+            @CurrentUser AuthenticatedUser user) {
+
+        try {
+            if (!canUploadTo(user, request.getTarget())) {
+                throw UploadException.forbidden();
+            }
+            return ResponseEntity.ok(Map.of(
+                    "success", true,
+                    "data", chunkedUploadService.createSession(user.getId(), request)
+            ));
+        } catch (UploadException e) {
+            return error(e);
+        }
+    }
+
+    @GetMapping("/sessions/{sessionId}")
+    public ResponseEntity<?> getSession(
+            @PathVariable String sessionId,
+            @CurrentUser AuthenticatedUser user) {
+
+        try {
+            UploadSessionDTO session = chunkedUploadService.getSession(sessionId, user.getId());
+            return ResponseEntity.ok()
+                    .header("Upload-Offset", String.valueOf(session.getOffset()))
+                    .body(Map.of("success", true, "data", session));
+        } catch (UploadException e) {
+            return error(e);
+        }
+    }
+
+    @PutMapping(value = "/sessions/{sessionId}/chunks", consumes = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+    public ResponseEntity<?> uploadChunk(
+            @PathVariable String sessionId,
+            @RequestParam long offset,
+            @RequestHeader(value = "X-Chunk-Sha256", required = false) String chunkSha256,
+            @CurrentUser AuthenticatedUser user,
+            HttpServletRequest httpRequest) {
+
+        try {
+            UploadSessionDTO session = chunkedUploadService.appendChunk(
+                    sessionId, user.getId(), offset, httpRequest.getInputStream(), chunkSha256);
+            return ResponseEntity.ok()
+                    .header("Upload-Offset", String.valueOf(session.getOffset()))
+                    .body(Map.of("success", true, "data", session));
+        } catch (UploadException e) {
+            return error(e);
+        } catch (Exception e) {
+            log.error("Erreur lors de la réception du morceau ({}): {}", sessionId, e.getMessage());
+            return ResponseEntity.internalServerError().body(Map.of(
+                    "success", false,
+                    "error", "UPLOAD_CHUNK_FAILED",
+                    "message", "Erreur lors de la réception du morceau"
+            ));
+        }
+    }
+
+    @PostMapping("/sessions/{sessionId}/complete")
+    public ResponseEntity<?> complete(
+            @PathVariable String sessionId,
+            @CurrentUser AuthenticatedUser user,
+            HttpServletRequest httpRequest) {
+
+        String clientIp = getClientIp(httpRequest);
+
+        try {
+            UploadSessionDTO session = chunkedUploadService.complete(sessionId, user.getId());
+
+            // AUDIT: Upload document
+            auditService.log(
+                    AuditService.AuditLogBuilder.builder()
+                            .action("UPLOAD_REPRENABLE_TERMINE")
+                            .actionType(ActionType.UPLOAD)
+                            .description("Téléversement par morceaux terminé")
+                            .entity(EntityType.DOCUMENT, session.getDocumentId(), session.getFileName())
+                            .user(user.getId(), user.getEmail(), user.getUserType())
+                            .success()
+                            .detail("session_id", sessionId)
+                            .detail("target", session.getTarget().name())
+                            .detail("file_size", session.getTotalSize())
+                            .detail("ip_address", clientIp)
+            );
+
+            return ResponseEntity.ok(Map.of("success", true, "data", session));
+
+        } catch (UploadException e) {
+            return error(e);
+        } catch (Exception e) {
+            auditService.log(
+                    AuditService.AuditLogBuilder.builder()
+                            .action("UPLOAD_REPRENABLE_TERMINE")
+                            .actionType(ActionType.UPLOAD)
+                            .description("Échec de la finalisation d'un téléversement par morceaux")
+                            .user(user.getId(), user.getEmail(), user.getUserType())
+                            .failure(e.getMessage())
+                            .detail("session_id", sessionId)
+                            .detail("ip_address", clientIp)
+            );
+
+            return ResponseEntity.badRequest().body(Map.of(
+                    "success", false,
+                    "error", "UPLOAD_COMPLETE_FAILED",
+                    "message", e.getMessage() != null ? e.getMessage() : "Erreur lors de la finalisation"
+            ));
+        }
+    }
+
+    @DeleteMapping("/sessions/{sessionId}")
+    public ResponseEntity<?> cancel(
+            @PathVariable String sessionId,
+            @CurrentUser AuthenticatedUser user) {
+
+        try {
+            chunkedUploadService.cancel(sessionId, user.getId());
+            return ResponseEntity.ok(Map.of("success", true));
+        } catch (UploadException e) {
+            return error(e);
+        }
+    }
+
+    // ==================== MÉTHODES PRIVÉES ====================
+
+    private boolean canUploadTo(AuthenticatedUser user, UploadTarget target) {
+        if (target == null) {
+            return true; // Rejeté par la validation de la requête
+        }
+        return target == UploadTarget.IMPORT_DOCUMENT
+                ? user.isUserType("IMPORTATEUR") || user.hasRole(UserRole.IMPORTATEUR)
+                : user.isUserType("EXPORTATEUR") || user.hasRole(UserRole.EXPORTATEUR);
+    }
+
+    private ResponseEntity<?> error(UploadException e) {
+        Map<String, Object> body = new HashMap<>();
+        body.put("success", false);
+        body.put("error", e.getErrorCode());
+        body.put("message", e.getMessage());
+        if (e.getExpectedOffset() != null) {
+            body.put("offset", e.getExpectedOffset());
+            return ResponseEntity.status(e.getStatus())
+                    .header("Upload-Offset", String.valueOf(e.getExpectedOffset()))
+                    .body(body);
+        }
+        return ResponseEntity.status(e.getStatus()).body(body);
+    }
+
+    private String getClientIp(HttpServletRequest request) {
+        String ip = request.getHeader("X-Forwarded-For");
+        if (ip == null || ip.isEmpty() || "unknown".equalsIgnoreCase(ip)) {
+            ip = request.getRemoteAddr();
+        }
+        if (ip != null && ip.contains(",")) {
+            ip = ip.split(",")[0].trim();
+        }
+        return ip;
+    }
+}
@@ -11,9 +11,11 @@ import com.tunisia.commerce.enums.UserRole;
 import com.tunisia.commerce.exception.ValidationException;
 import com.tunisia.commerce.repository.DemandeEnregistrementRepository;
 import com.tunisia.commerce.repository.DemandeValidateurRepository;
-import com.tunisia.commerce.repository.UserRepository;
+import com.tunisia.commerce.security.AuthenticatedUser;
+import com.tunisia.commerce.security.CurrentUser;
 import com.tunisia.commerce.service.ValidationService;
 import com.tunisia.commerce.service.impl.AuditService;
+import com.tunisia.commerce.service.impl.PrincipalCacheService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.tags.Tag;
@@ -42,10 +44,10 @@ public class ValidationController {
 
     private final JwtUtil jwtUtil;
     private final ValidationService validationService;
-    private final UserRepository userRepository;
     private final DemandeEnregistrementRepository demandeRepository;
     private final DemandeValidateurRepository demandeValidateurRepository;
     private final AuditService auditService;
+    private final PrincipalCacheService principalCacheService;
 
 
     private String getClientIp(HttpServletRequest request) {
@@ -80,7 +82,7 @@ public class ValidationController {
     public ResponseEntity<?> getAllDemandes(
             @RequestParam(required = false) String type,
             @RequestParam(required = false) String status,
-            @RequestHeader("Authorization") String authHeader,
+            @CurrentUser AuthenticatedUser principal,
             HttpServletRequest httpRequest) {
 
         String clientIp = getClientIp(httpRequest);
@@ -92,24 +94,18 @@ public class ValidationController {
         log.info("Type: {}, Status: {}", type, status);
 
         try {
-            String token = extractToken(authHeader);
-            String email = jwtUtil.extractUsername(token);
-            userEmail = email;
-
-            User user = userRepository.findByEmail(email)
-                    .orElseThrow(() -> new RuntimeException("Utilisateur non trouvé"));
-            userId = user.getId();
-            userRole = user.getRole().name();
+            userEmail = principal.getEmail();
+            userId = principal.getId();
+            userRole = principal.getRole().name();
 
             List<DemandeEnregistrementDTO> demandes;
 
-            if (user.getRole() == UserRole.ADMIN) {
+            if (principal.hasRole(UserRole.ADMIN)) {
                 log.info("👑 Accès ADMIN - Toutes les demandes");
                 demandes = validationService.getAllDemandes(type, status);
-            } else if (user.getRole() == UserRole.INSTANCE_VALIDATION) {
+            } else if (principal.hasRole(UserRole.INSTANCE_VALIDATION)) {
                 log.info("👤 Accès INSTANCE - Demandes assignées à l'instance");
-                InstanceValidation instance = (InstanceValidation) user;
-                demandes = validationService.getDemandesByInstance(instance.getId(), type, status);
+                demandes = validationService.getDemandesByInstance(principal.getId(), type, status);
             } else {
                 return ResponseEntity.status(HttpStatus.FORBIDDEN).body(Map.of(
                         "success", false,
@@ -137,9 +133,8 @@ public class ValidationController {
             response.put("data", demandes);
             response.put("count", demandes.size());
 
-            if (user.getRole() == UserRole.INSTANCE_VALIDATION) {
-                InstanceValidation instance = (InstanceValidation) user;
-                long pendingCount = validationService.countPendingDemandesByInstance(instance.getId());
+            if (principal.hasRole(UserRole.INSTANCE_VALIDATION)) {
+                long pendingCount = validationService.countPendingDemandesByInstance(principal.getId());
                 response.put("pendingCount", pendingCount);
             }
 
@@ -185,14 +180,11 @@ public class ValidationController {
         log.info("========== APPROBATION DEMANDE ID: {} ==========", id);
 
         try {
-            agentId = getCurrentAgentId();
-
-            // Récupérer l'agent pour l'audit
-            User agent = userRepository.findById(agentId).orElse(null);
-            if (agent != null) {
-                agentEmail = agent.getEmail();
-                agentRole = agent.getRole().name();
-            }
+            // Agent courant (principal en cache) : identifiant et informations d'audit
+            AuthenticatedUser agent = getCurrentAgent();
+            agentId = agent.getId();
+            agentEmail = agent.getEmail();
+            agentRole = agent.getRole().name();
 
             // Récupérer la demande pour l'audit
             DemandeEnregistrement demande = demandeRepository.findById(id).orElse(null);
@@ -269,14 +261,11 @@ public class ValidationController {
         log.info("========== REJET DEMANDE ID: {} ==========", id);
 
         try {
-            agentId = getCurrentAgentId();
-
-            // Récupérer l'agent pour l'audit
-            User agent = userRepository.findById(agentId).orElse(null);
-            if (agent != null) {
-                agentEmail = agent.getEmail();
-                agentRole = agent.getRole().name();
-            }
+            // Agent courant (principal en cache) : identifiant et informations d'audit
+            AuthenticatedUser agent = getCurrentAgent();
+            agentId = agent.getId();
+            agentEmail = agent.getEmail();
+            agentRole = agent.getRole().name();
 
             // Récupérer la demande pour l'audit
             DemandeEnregistrement demande = demandeRepository.findById(id).orElse(null);
@@ -348,14 +337,11 @@ public class ValidationController {
         log.info("========== DEMANDE D'INFOS SUPPLÉMENTAIRES ID: {} ==========", id);
 
         try {
-            agentId = getCurrentAgentId();
-
-            // Récupérer l'agent pour l'audit
-            User agent = userRepository.findById(agentId).orElse(null);
-            if (agent != null) {
-                agentEmail = agent.getEmail();
-                agentRole = agent.getRole().name();
-            }
+            // Agent courant (principal en cache) : identifiant et informations d'audit
+            AuthenticatedUser agent = getCurrentAgent();
+            agentId = agent.getId();
+            agentEmail = agent.getEmail();
+            agentRole = agent.getRole().name();
 
             // Récupérer la demande pour l'audit
             DemandeEnregistrement demande = demandeRepository.findById(id).orElse(null);
@@ -430,14 +416,11 @@ public class ValidationController {
         log.info("Statut: {}, Commentaire: {}", request.getStatus(), request.getComment());
 
         try {
-            agentId = getCurrentAgentId();
-
-            // Récupérer l'agent pour l'audit
-            User agent = userRepository.findById(agentId).orElse(null);
-            if (agent != null) {
-                agentEmail = agent.getEmail();
-                agentRole = agent.getRole().name();
-            }
+            // Agent courant (principal en cache) : identifiant et informations d'audit
+            AuthenticatedUser agent = getCurrentAgent();
+            agentId = agent.getId();
+            agentEmail = agent.getEmail();
+            agentRole = agent.getRole().name();
 
             // Récupérer le document pour l'audit (optionnel, selon votre repository)
             // Document document = documentRepository.findById(documentId).orElse(null);
@@ -507,7 +490,7 @@ public class ValidationController {
     /**
      * Récupère l'ID de l'utilisateur actuellement authentifié
      */
-    private Long getCurrentAgentId() {
+    private AuthenticatedUser getCurrentAgent() {
         // Récupérer l'authentification depuis le SecurityContext
         Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
 
@@ -519,14 +502,15 @@ public class ValidationController {
         String email = authentication.getName();
         log.info("Utilisateur authentifié: email={}", email);
 
-        // Récupérer l'utilisateur depuis la base de données
-        User user = userRepository.findByEmail(email)
-                .orElseThrow(() -> new ValidationException("USER_NOT_FOUND",
-                        "Utilisateur non trouvé avec l'email: " + email));
+        // Principal en cache : pas de chargement de l'entité User
+        AuthenticatedUser agent = principalCacheService.resolve(email);
+        if (agent == null) {
+            throw new ValidationException("USER_NOT_FOUND", "Utilisateur non trouvé avec l'email: " + email);
+        }
 
-        log.info("Agent trouvé: ID={}, Nom={}, Rôle={}", user.getId(), user.getNom(), user.getRole());
+        log.debug("Agent trouvé: ID={}, Rôle={}", agent.getId(), agent.getRole());
 
-        return user.getId();
+        return agent;
     }
 
     private String extractToken(String authHeader) {
@@ -68,7 +68,8 @@ public class FraudDetectionResponse {
         return 0.0;
     }
 
-    // Helper pour obtenir les raisons
+    // Helper pour obtenir les raisons (sérialisé seulement : relire un résultat mémorisé ne doit pas l'alimenter)
+    @JsonProperty(access = JsonProperty.Access.READ_ONLY)
     public List<String> getReasons() {
         if (finalDecision != null && finalDecision.getReasons() != null && !finalDecision.getReasons().isEmpty()) {
             return finalDecision.getReasons();
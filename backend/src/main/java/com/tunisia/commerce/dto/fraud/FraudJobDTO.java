@@ -0,0 +1,32 @@
+package com.tunisia.commerce.dto.fraud;
+
+import com.tunisia.commerce.enums.FraudJobStatus;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class FraudJobDTO {
+    private String jobId;
+    private FraudJobStatus status;
+    private Long documentId;
+    private String contentHash;
+    // Résultat servi depuis la mémoire des analyses, sans appel au service ML
+    private Boolean cached;
+    private LocalDateTime submittedAt;
+    private LocalDateTime startedAt;
+    private LocalDateTime finishedAt;
+    private String error;
+
+    // Durées par phase (ms)
+    private Long queueWaitMs;
+    private Long analysisMs;
+
+    private FraudDetectionResponse result;
+}
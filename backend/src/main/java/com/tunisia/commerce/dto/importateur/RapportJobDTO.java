@@ -0,0 +1,29 @@
+package com.tunisia.commerce.dto.importateur;
+
+import com.tunisia.commerce.enums.RapportJobStatus;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class RapportJobDTO {
+    private String jobId;
+    private RapportJobStatus status;
+    private LocalDateTime submittedAt;
+    private LocalDateTime startedAt;
+    private LocalDateTime finishedAt;
+    private LocalDateTime expiresAt;
+    private Long fileSize;
+    private String error;
+
+    // Durées par phase (ms)
+    private Long queueWaitMs;
+    private Long renderMs;
+    private Long storeMs;
+}
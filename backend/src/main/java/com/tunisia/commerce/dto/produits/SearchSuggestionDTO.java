@@ -0,0 +1,16 @@
+package com.tunisia.commerce.dto.produits;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class SearchSuggestionDTO {
+    private String type;   // "PRODUIT" ou "HS_CODE"
+    private String value;  // Texte à insérer dans le champ de recherche
+    private String label;  // Information complémentaire (catégorie, nom du produit)
+}
@@ -0,0 +1,9 @@
+package com.tunisia.commerce.dto.tax;
+
+import lombok.Data;
+import java.util.List;
+
+@Data
+public class TaxBatchRequest {
+    private List<TaxRequest> lines;
+}
@@ -0,0 +1,20 @@
+package com.tunisia.commerce.dto.tax;
+
+import lombok.*;
+import java.math.BigDecimal;
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class TaxBatchResponse {
+    private List<TaxResponse> lines;
+    private int count;
+    private BigDecimal totalCustomsDuty;
+    private BigDecimal totalVat;
+    private BigDecimal totalOtherTaxes;
+    private BigDecimal total;
+    private String currency;
+    private Long exchangeRateVersion;
+}
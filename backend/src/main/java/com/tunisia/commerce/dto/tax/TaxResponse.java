@@ -13,4 +13,5 @@ public class TaxResponse {
     private BigDecimal otherTaxes;
     private BigDecimal total;
     private String currency;
+    private Long exchangeRateVersion;  // Version de la table des taux de change utilisée
 }
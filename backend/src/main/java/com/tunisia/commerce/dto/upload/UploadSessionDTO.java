@@ -0,0 +1,29 @@
+package com.tunisia.commerce.dto.upload;
+
+import com.tunisia.commerce.enums.UploadSessionStatus;
+import com.tunisia.commerce.enums.UploadTarget;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class UploadSessionDTO {
+    private String sessionId;
+    private UploadTarget target;
+    private UploadSessionStatus status;
+    private String fileName;
+    private Long totalSize;
+    private Long offset;           // Position à laquelle envoyer le prochain morceau
+    private Integer maxChunkSize;
+    private LocalDateTime expiresAt;
+
+    // Renseignés une fois la session terminée
+    private Long documentId;
+    private String url;
+}
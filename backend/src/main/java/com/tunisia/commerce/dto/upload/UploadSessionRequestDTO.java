@@ -0,0 +1,22 @@
+package com.tunisia.commerce.dto.upload;
+
+import com.tunisia.commerce.enums.UploadTarget;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class UploadSessionRequestDTO {
+    private UploadTarget target;
+    private Long demandeId;
+    private Long productId;        // PRODUCT_DECLARATION_DOCUMENT et PRODUCT_IMAGE
+    private String documentType;   // Documents uniquement
+    private String fileName;
+    private String contentType;
+    private Long totalSize;
+    private String sha256;         // SHA-256 hexadécimal du fichier complet (optionnel)
+}
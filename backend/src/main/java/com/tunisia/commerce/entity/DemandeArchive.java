@@ -0,0 +1,95 @@
+package com.tunisia.commerce.entity;
+
+import com.tunisia.commerce.enums.ArchiveType;
+import com.tunisia.commerce.enums.DemandeStatus;
+import com.tunisia.commerce.enums.PaymentStatus;
+import com.tunisia.commerce.enums.TypeDemande;
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.hibernate.annotations.JdbcTypeCode;
+import org.hibernate.type.SqlTypes;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * Demande archivée déplacée hors de la table active (stockage froid).
+ *
+ * La ligne d'origine est conservée telle quelle dans {@code payload} (JSONB) et restaurée par
+ * jsonb_populate_record ; les colonnes à plat ne servent qu'aux listes et aux recherches.
+ * Alimentée et vidée uniquement par les requêtes ensemblistes de DemandeArchiveRepository.
+ */
+@Entity
+@Table(name = "demandes_enregistrement_archive",
+        indexes = {
+                @Index(name = "idx_demande_archive_exportateur", columnList = "exportateur_id"),
+                @Index(name = "idx_demande_archive_importateur", columnList = "importateur_id"),
+                @Index(name = "idx_demande_archive_archived_at", columnList = "archived_at")
+        })
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class DemandeArchive {
+
+    // Identifiant d'origine, conservé pour la restauration
+    @Id
+    private Long id;
+
+    private String reference;
+
+    @Enumerated(EnumType.STRING)
+    private DemandeStatus status;
+
+    @Column(name = "type_demande")
+    @Enumerated(EnumType.STRING)
+    private TypeDemande typeDemande;
+
+    @Column(name = "payment_status")
+    @Enumerated(EnumType.STRING)
+    private PaymentStatus paymentStatus;
+
+    @Column(name = "submitted_at")
+    private LocalDateTime submittedAt;
+
+    @Column(name = "decision_date")
+    private LocalDateTime decisionDate;
+
+    @Column(name = "numero_agrement")
+    private String numeroAgrement;
+
+    @Column(name = "date_agrement")
+    private LocalDate dateAgrement;
+
+    @Column(name = "exportateur_id")
+    private Long exportateurId;
+
+    @Column(name = "importateur_id")
+    private Long importateurId;
+
+    @Column(name = "archived_at")
+    private LocalDateTime archivedAt;
+
+    @Column(name = "archived_by")
+    private String archivedBy;
+
+    @Column(name = "archive_reason")
+    private String archiveReason;
+
+    @Column(name = "archive_type")
+    @Enumerated(EnumType.STRING)
+    private ArchiveType archiveType;
+
+    @Column(name = "can_be_restored")
+    private boolean canBeRestored;
+
+    @Column(name = "moved_at", nullable = false)
+    private LocalDateTime movedAt;
+
+    @JdbcTypeCode(SqlTypes.JSON)
+    @Column(nullable = false, columnDefinition = "jsonb")
+    private String payload;
+}
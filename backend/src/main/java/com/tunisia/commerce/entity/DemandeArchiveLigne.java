@@ -0,0 +1,40 @@
+package com.tunisia.commerce.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.hibernate.annotations.JdbcTypeCode;
+import org.hibernate.type.SqlTypes;
+
+/**
+ * Ligne dépendante d'une demande archivée en stockage froid (détails importateur, produits,
+ * documents, validateurs), conservée en JSONB avec le nom de sa table d'origine.
+ */
+@Entity
+@Table(name = "demandes_archive_lignes",
+        indexes = @Index(name = "idx_demande_archive_ligne_demande", columnList = "demande_id, source_table"))
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class DemandeArchiveLigne {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "demande_id", nullable = false)
+    private Long demandeId;
+
+    @Column(name = "source_table", nullable = false, length = 50)
+    private String sourceTable;
+
+    @Column(name = "source_id", nullable = false)
+    private Long sourceId;
+
+    @JdbcTypeCode(SqlTypes.JSON)
+    @Column(nullable = false, columnDefinition = "jsonb")
+    private String payload;
+}
@@ -1,6 +1,7 @@
 package com.tunisia.commerce.entity;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.tunisia.commerce.entity.listener.DemandeEnregistrementListener;
 import com.tunisia.commerce.enums.*;
 import jakarta.persistence.*;
 import lombok.*;
@@ -15,6 +16,7 @@ import java.util.List;
 @Entity
 @Table(name = "demandes_enregistrement")
 @Inheritance(strategy = InheritanceType.JOINED)
+@EntityListeners(DemandeEnregistrementListener.class)
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -1,5 +1,6 @@
 package com.tunisia.commerce.entity;
 
+import com.tunisia.commerce.entity.listener.DemandeProduitListener;
 import com.tunisia.commerce.enums.TypeDemandeur;
 import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
@@ -10,6 +11,7 @@ import lombok.NoArgsConstructor;
 import java.time.LocalDateTime;
 
 @Entity
+@EntityListeners(DemandeProduitListener.class)
 @Table(name = "demande_produit")
 @Data
 @NoArgsConstructor
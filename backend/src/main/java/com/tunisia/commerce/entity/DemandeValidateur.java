@@ -1,5 +1,6 @@
 package com.tunisia.commerce.entity;
 
+import com.tunisia.commerce.entity.listener.DemandeValidateurListener;
 import com.tunisia.commerce.enums.ValidationStatus;
 import jakarta.persistence.*;
 import lombok.*;
@@ -7,6 +8,7 @@ import lombok.*;
 import java.time.LocalDateTime;
 
 @Entity
+@EntityListeners(DemandeValidateurListener.class)
 @Table(name = "demande_validateur",
         uniqueConstraints = {
                 @UniqueConstraint(name = "uk_demande_instance", columnNames = {"demande_id", "instance_id"})
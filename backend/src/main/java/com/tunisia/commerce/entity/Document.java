@@ -1,6 +1,7 @@
 package com.tunisia.commerce.entity;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.tunisia.commerce.entity.listener.DocumentListener;
 import com.tunisia.commerce.enums.DocumentStatus;
 import com.tunisia.commerce.enums.DocumentType;
 import jakarta.persistence.*;
@@ -9,6 +10,7 @@ import lombok.*;
 import java.time.LocalDateTime;
 
 @Entity
+@EntityListeners(DocumentListener.class)
 @Table(name = "documents")
 @Data
 @NoArgsConstructor
@@ -34,6 +36,10 @@ public class Document {
     @Column(name = "file_hash", length = 255)
     private String fileHash;
 
+    // Blob référencé dans stored_blobs (null pour les fichiers de l'ancien format)
+    @Column(name = "blob_hash", length = 64)
+    private String blobHash;
+
     @Enumerated(EnumType.STRING)
     @Column(nullable = false)
     private DocumentType documentType; // RC_CERT, SANITARY_CERT, etc.
@@ -52,6 +58,19 @@ public class Document {
     @Column(name = "validated_at")
     private LocalDateTime validatedAt;
 
+    // Dernière analyse de fraude (détail dans fraud_analyses)
+    @Column(name = "fraud_analysis_key", length = 64)
+    private String fraudAnalysisKey;
+
+    @Column(name = "fraud_decision", length = 20)
+    private String fraudDecision;
+
+    @Column(name = "fraud_confidence")
+    private Double fraudConfidence;
+
+    @Column(name = "fraud_analyzed_at")
+    private LocalDateTime fraudAnalyzedAt;
+
     @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "exportateur_id", nullable = true)
     @JsonIgnore
@@ -0,0 +1,50 @@
+package com.tunisia.commerce.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.hibernate.annotations.CreationTimestamp;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * Taux de change vers le TND. Chaque import (fichier ou téléversement admin) publie
+ * une table complète sous un nouveau numéro de version ; les versions ne sont jamais modifiées.
+ */
+@Entity
+@Table(name = "exchange_rates",
+        uniqueConstraints = @UniqueConstraint(name = "uk_exchange_rate_version_currency",
+                columnNames = {"version", "currency_code"}),
+        indexes = @Index(name = "idx_exchange_rate_version", columnList = "version"))
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ExchangeRate {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false)
+    private Long version;
+
+    @Column(name = "currency_code", nullable = false, length = 3)
+    private String currencyCode;  // Code ISO 4217 (EUR, USD, ...)
+
+    @Column(name = "rate_to_tnd", nullable = false, precision = 19, scale = 6)
+    private BigDecimal rateToTnd;
+
+    @Column(length = 20)
+    private String source;  // FICHIER ou ADMIN
+
+    @Column(name = "created_by")
+    private String createdBy;
+
+    @CreationTimestamp
+    @Column(name = "created_at", updatable = false)
+    private LocalDateTime createdAt;
+}
@@ -1,5 +1,6 @@
 package com.tunisia.commerce.entity;
 
+import com.tunisia.commerce.entity.listener.ExportateurEtrangerListener;
 import com.tunisia.commerce.enums.SiteType;
 import com.tunisia.commerce.enums.StatutAgrement;
 import jakarta.persistence.*;
@@ -15,6 +16,7 @@ import java.util.List;
 @Table(name = "exportateurs")
 @PrimaryKeyJoinColumn(name = "id")
 @DiscriminatorValue("EXPORTATEUR")
+@EntityListeners(ExportateurEtrangerListener.class)
 @Data
 @SuperBuilder
 @EqualsAndHashCode(callSuper = true)
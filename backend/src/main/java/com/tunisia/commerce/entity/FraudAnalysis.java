@@ -0,0 +1,49 @@
+package com.tunisia.commerce.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Résultat d'analyse de fraude mémorisé par contenu : un même fichier (SHA-256), soumis avec
+ * le même contexte de demande, n'est envoyé qu'une seule fois au service ML.
+ */
+@Entity
+@Table(name = "fraud_analyses",
+        indexes = {
+                @Index(name = "idx_fraud_analyses_content", columnList = "content_hash")
+        })
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class FraudAnalysis {
+
+    // SHA-256 de l'empreinte du contenu et du contexte transmis au modèle
+    @Id
+    @Column(name = "analysis_key", length = 64)
+    private String analysisKey;
+
+    // SHA-256 du contenu en clair, en hexadécimal
+    @Column(name = "content_hash", nullable = false, length = 64)
+    private String contentHash;
+
+    @Column(length = 20)
+    private String decision; // FRAUDE, AUTHENTIQUE
+
+    private Double confidence;
+
+    // Réponse complète du service ML, en JSON
+    @Column(name = "result_json", nullable = false, columnDefinition = "TEXT")
+    private String resultJson;
+
+    @Column(name = "duration_ms")
+    private Long durationMs;
+
+    @Column(name = "analyzed_at", nullable = false)
+    private LocalDateTime analyzedAt;
+}
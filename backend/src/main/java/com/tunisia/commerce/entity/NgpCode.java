@@ -1,15 +1,20 @@
 package com.tunisia.commerce.entity;
 
+import com.tunisia.commerce.cache.ReferenceCacheRegions;
 import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
 
 @Entity
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = ReferenceCacheRegions.NGP_CODE)
 @Table(name = "ngp_codes",
         uniqueConstraints = @UniqueConstraint(name = "uk_ngp_code", columnNames = "ngp_code"))
 @Data
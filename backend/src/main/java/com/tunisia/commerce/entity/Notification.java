@@ -1,5 +1,6 @@
 package com.tunisia.commerce.entity;
 
+import com.tunisia.commerce.entity.listener.NotificationListener;
 import com.tunisia.commerce.enums.NotificationAction;
 import com.tunisia.commerce.enums.NotificationStatus;
 import com.tunisia.commerce.enums.NotificationType;
@@ -24,6 +25,7 @@ import java.util.Map;
                 @Index(name = "idx_created_at", columnList = "created_at"),
                 @Index(name = "idx_target_entity", columnList = "target_entity_type, target_entity_id")
         })
+@EntityListeners(NotificationListener.class)
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -85,4 +87,8 @@ public class Notification {
     @Column(name = "sms_sent_at")
     private LocalDateTime smsSentAt;
 
+    // Statut lu en base, pour détecter les passages lu / non lu (voir NotificationListener)
+    @Transient
+    private NotificationStatus loadedStatus;
+
 }
\ No newline at end of file
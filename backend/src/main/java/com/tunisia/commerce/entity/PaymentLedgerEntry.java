@@ -0,0 +1,104 @@
+package com.tunisia.commerce.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.hibernate.annotations.UpdateTimestamp;
+
+import java.time.LocalDateTime;
+
+/**
+ * Copie locale d'un PaymentIntent Stripe, alimentée par les webhooks et la réconciliation.
+ * Les consultations de transactions sont servies depuis cette table, sans appel à Stripe.
+ */
+@Entity
+@Table(name = "payment_ledger",
+        uniqueConstraints = @UniqueConstraint(name = "uk_payment_ledger_intent", columnNames = "payment_intent_id"),
+        indexes = {
+                @Index(name = "idx_payment_ledger_user", columnList = "user_id, created_at"),
+                @Index(name = "idx_payment_ledger_demande", columnList = "demande_id"),
+                @Index(name = "idx_payment_ledger_status", columnList = "status, created_at"),
+                @Index(name = "idx_payment_ledger_created", columnList = "created_at")
+        })
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class PaymentLedgerEntry {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "payment_intent_id", nullable = false, length = 64)
+    private String paymentIntentId;
+
+    @Column(name = "charge_id", length = 64)
+    private String chargeId;
+
+    @Column(name = "amount_minor", nullable = false)
+    private Long amountMinor;  // Montant en centimes, comme chez Stripe
+
+    @Column(length = 3)
+    private String currency;
+
+    @Column(nullable = false, length = 40)
+    private String status;  // Statut Stripe (succeeded, processing, canceled...)
+
+    private String description;
+
+    @Column(name = "customer_email")
+    private String customerEmail;
+
+    @Column(name = "customer_name")
+    private String customerName;
+
+    @Column(name = "payment_method_type", length = 40)
+    private String paymentMethodType;
+
+    @Column(name = "card_brand", length = 40)
+    private String cardBrand;
+
+    @Column(name = "card_last4", length = 4)
+    private String cardLast4;
+
+    @Column(name = "failure_code", length = 100)
+    private String failureCode;
+
+    @Column(name = "failure_message", length = 500)
+    private String failureMessage;
+
+    @Column(name = "demande_id")
+    private Long demandeId;
+
+    @Column(name = "demande_reference", length = 100)
+    private String demandeReference;
+
+    @Column(name = "user_id")
+    private Long userId;
+
+    @Column(name = "user_role", length = 30)
+    private String userRole;
+
+    @Column(columnDefinition = "TEXT")
+    private String metadata;  // Métadonnées Stripe (JSON)
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;  // Date de création chez Stripe
+
+    @Column(name = "paid_at")
+    private LocalDateTime paidAt;
+
+    // Horodatage Stripe de la dernière information appliquée : les événements plus anciens sont ignorés
+    @Column(name = "stripe_updated_at", nullable = false)
+    private Long stripeUpdatedAt;
+
+    @Column(length = 20)
+    private String source;  // APPLICATION, WEBHOOK ou RECONCILIATION
+
+    @UpdateTimestamp
+    @Column(name = "synced_at")
+    private LocalDateTime syncedAt;
+}
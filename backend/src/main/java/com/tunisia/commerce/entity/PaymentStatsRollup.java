@@ -0,0 +1,48 @@
+package com.tunisia.commerce.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Agrégat des paiements du registre local, par période, statut, moyen de paiement et devise.
+ *
+ * La période vaut « TOTAL » (tout l'historique) ou une date ISO (aaaa-mm-jj) : les bornes
+ * de dates se comparent comme des chaînes et excluent naturellement la ligne TOTAL.
+ */
+@Entity
+@Table(name = "payment_stats_rollup",
+        uniqueConstraints = @UniqueConstraint(name = "uk_payment_stats_rollup_key",
+                columnNames = {"bucket", "status", "payment_method_type", "currency"}))
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class PaymentStatsRollup {
+
+    public static final String BUCKET_TOTAL = "TOTAL";
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false, length = 10)
+    private String bucket;
+
+    @Column(nullable = false, length = 40)
+    private String status;
+
+    @Column(name = "payment_method_type", nullable = false, length = 40)
+    private String paymentMethodType;  // Chaîne vide si inconnu
+
+    @Column(nullable = false, length = 3)
+    private String currency;
+
+    @Column(name = "tx_count", nullable = false)
+    private Long txCount;
+
+    @Column(name = "amount_minor", nullable = false)
+    private Long amountMinor;
+}
@@ -0,0 +1,59 @@
+package com.tunisia.commerce.entity;
+
+import com.tunisia.commerce.enums.ScanVerdict;
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Contenu de fichier stocké une seule fois, sous son empreinte SHA-256.
+ * Les documents y font référence par {@code blob_hash} ; le compteur de références
+ * est tenu dans la même transaction que l'ajout ou la suppression du document.
+ */
+@Entity
+@Table(name = "stored_blobs",
+        indexes = {
+                @Index(name = "idx_stored_blobs_gc", columnList = "ref_count, zero_ref_since")
+        })
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class StoredBlob {
+
+    // SHA-256 du contenu en clair, en hexadécimal
+    @Id
+    @Column(length = 64)
+    private String hash;
+
+    @Column(name = "storage_path", nullable = false, length = 500)
+    private String storagePath;
+
+    @Column(nullable = false)
+    private Long size;
+
+    @Column(name = "ref_count", nullable = false)
+    private Integer refCount;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+
+    // Date à laquelle le compteur est tombé à zéro (candidat au ramasse-miettes)
+    @Column(name = "zero_ref_since")
+    private LocalDateTime zeroRefSince;
+
+    // Verdict antivirus du contenu : un contenu déjà analysé n'est jamais réanalysé
+    @Enumerated(EnumType.STRING)
+    @Column(name = "scan_verdict", length = 20)
+    private ScanVerdict scanVerdict;
+
+    @Column(name = "scan_signature", length = 255)
+    private String scanSignature;
+
+    @Column(name = "scanned_at")
+    private LocalDateTime scannedAt;
+}
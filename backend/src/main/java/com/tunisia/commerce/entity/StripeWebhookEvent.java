@@ -0,0 +1,68 @@
+package com.tunisia.commerce.entity;
+
+import com.tunisia.commerce.enums.WebhookEventStatus;
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Événement webhook Stripe reçu, conservé brut avant traitement asynchrone.
+ * L'identifiant Stripe de l'événement est unique : une relivraison n'est jamais traitée deux fois.
+ */
+@Entity
+@Table(name = "stripe_webhook_inbox",
+        uniqueConstraints = @UniqueConstraint(name = "uk_stripe_webhook_event", columnNames = "event_id"),
+        indexes = {
+                @Index(name = "idx_stripe_webhook_status", columnList = "status, id"),
+                @Index(name = "idx_stripe_webhook_received", columnList = "received_at")
+        })
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class StripeWebhookEvent {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "event_id", nullable = false, length = 100)
+    private String eventId;
+
+    @Column(name = "event_type", nullable = false, length = 100)
+    private String eventType;
+
+    // Clé d'ordonnancement : les événements d'un même PaymentIntent sont traités dans l'ordre de réception
+    @Column(name = "ordering_key", nullable = false, length = 100)
+    private String orderingKey;
+
+    @Column(nullable = false, columnDefinition = "TEXT")
+    private String payload;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 20)
+    private WebhookEventStatus status;
+
+    @Column(nullable = false)
+    private Integer attempts;
+
+    // Prise en charge par un worker (EN_COURS) ; au-delà du bail, l'événement est remis en file
+    @Column(name = "claimed_at")
+    private LocalDateTime claimedAt;
+
+    @Column(name = "next_attempt_at")
+    private LocalDateTime nextAttemptAt;
+
+    @Column(name = "last_error", length = 1000)
+    private String lastError;
+
+    @Column(name = "received_at", nullable = false)
+    private LocalDateTime receivedAt;
+
+    @Column(name = "processed_at")
+    private LocalDateTime processedAt;
+}
@@ -1,14 +1,19 @@
 // StructureCompetence.java
 package com.tunisia.commerce.entity;
 
+import com.tunisia.commerce.cache.ReferenceCacheRegions;
 import com.tunisia.commerce.enums.ProductCategory;
 import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 
 @Entity
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = ReferenceCacheRegions.STRUCTURE_COMPETENCE)
 @Table(name = "structure_competences",
         uniqueConstraints = {
                 @UniqueConstraint(columnNames = {"structure_id", "product_category"})
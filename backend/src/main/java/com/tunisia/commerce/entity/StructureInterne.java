@@ -1,16 +1,21 @@
 package com.tunisia.commerce.entity;
 
+import com.tunisia.commerce.cache.ReferenceCacheRegions;
 import com.tunisia.commerce.enums.StructureType;
 import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 import org.hibernate.annotations.CreationTimestamp;
 import org.hibernate.annotations.UpdateTimestamp;
 import java.time.LocalDateTime;
 
 @Entity
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = ReferenceCacheRegions.STRUCTURE)
 @Table(name = "structures_internes",
         uniqueConstraints = {
                 @UniqueConstraint(name = "uk_structure_official_name", columnNames = "official_name"),
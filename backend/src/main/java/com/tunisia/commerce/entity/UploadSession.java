@@ -0,0 +1,89 @@
+package com.tunisia.commerce.entity;
+
+import com.tunisia.commerce.enums.DocumentType;
+import com.tunisia.commerce.enums.UploadSessionStatus;
+import com.tunisia.commerce.enums.UploadTarget;
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Téléversement reprenable : le fichier est reçu par morceaux dans un fichier partiel,
+ * {@code received_bytes} donnant la position à laquelle le client doit reprendre.
+ */
+@Entity
+@Table(name = "upload_sessions",
+        indexes = {
+                @Index(name = "idx_upload_sessions_owner", columnList = "owner_id, status"),
+                @Index(name = "idx_upload_sessions_expires", columnList = "status, expires_at")
+        })
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class UploadSession {
+
+    @Id
+    @Column(length = 36)
+    private String id;
+
+    @Column(name = "owner_id", nullable = false)
+    private Long ownerId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 40)
+    private UploadTarget target;
+
+    @Column(name = "demande_id", nullable = false)
+    private Long demandeId;
+
+    @Column(name = "product_id")
+    private Long productId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "document_type", length = 50)
+    private DocumentType documentType;
+
+    @Column(name = "file_name", nullable = false)
+    private String fileName;
+
+    @Column(name = "content_type", nullable = false, length = 100)
+    private String contentType;
+
+    @Column(name = "total_size", nullable = false)
+    private Long totalSize;
+
+    @Column(name = "received_bytes", nullable = false)
+    private Long receivedBytes;
+
+    // SHA-256 hexadécimal annoncé par le client pour le fichier complet (optionnel)
+    @Column(name = "expected_sha256", length = 64)
+    private String expectedSha256;
+
+    @Column(name = "part_path", nullable = false, length = 500)
+    private String partPath;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 20)
+    private UploadSessionStatus status;
+
+    // Document créé (documents) ou URL de l'image (images produit)
+    @Column(name = "result_document_id")
+    private Long resultDocumentId;
+
+    @Column(name = "result_url", length = 500)
+    private String resultUrl;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+
+    @Column(name = "updated_at", nullable = false)
+    private LocalDateTime updatedAt;
+
+    @Column(name = "expires_at", nullable = false)
+    private LocalDateTime expiresAt;
+}
@@ -1,5 +1,6 @@
 package com.tunisia.commerce.entity;
 
+import com.tunisia.commerce.entity.listener.UserListener;
 import com.tunisia.commerce.enums.UserRole;
 import com.tunisia.commerce.enums.UserStatus;
 import jakarta.persistence.*;
@@ -12,6 +13,7 @@ import java.time.LocalDateTime;
 @Table(name = "users")
 @Inheritance(strategy = InheritanceType.JOINED)
 @DiscriminatorColumn(name = "user_type", discriminatorType = DiscriminatorType.STRING)
+@EntityListeners(UserListener.class)
 @Data
 @SuperBuilder
 @NoArgsConstructor
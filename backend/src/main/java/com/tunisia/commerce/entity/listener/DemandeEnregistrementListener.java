@@ -0,0 +1,52 @@
+package com.tunisia.commerce.entity.listener;
+
+import com.tunisia.commerce.cache.ReadModelCaches;
+import com.tunisia.commerce.cache.TwoLevelCacheManager;
+import com.tunisia.commerce.entity.DemandeEnregistrement;
+import com.tunisia.commerce.service.impl.DouaneService;
+import com.tunisia.commerce.service.impl.ImportateurDashboardService;
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.stereotype.Component;
+
+/**
+ * Invalide le cache du tableau de bord de l'importateur à chaque écriture d'une de ses demandes
+ * (création, changement de statut ou de paiement, archivage, suppression), ainsi que la réponse
+ * de vérification douane de la référence. Les produits d'un exportateur étant lus à travers ses
+ * demandes, la liste des exportateurs validés est aussi invalidée.
+ */
+@Component
+public class DemandeEnregistrementListener {
+
+    // Résolus à la demande : le listener est instancié par Hibernate avant les services
+    private final ObjectProvider<ImportateurDashboardService> importateurDashboardService;
+    private final ObjectProvider<DouaneService> douaneService;
+    private final ObjectProvider<TwoLevelCacheManager> cacheManager;
+
+    public DemandeEnregistrementListener(ObjectProvider<ImportateurDashboardService> importateurDashboardService,
+                                         ObjectProvider<DouaneService> douaneService,
+                                         ObjectProvider<TwoLevelCacheManager> cacheManager) {
+        this.importateurDashboardService = importateurDashboardService;
+        this.douaneService = douaneService;
+        this.cacheManager = cacheManager;
+    }
+
+    @PostPersist
+    @PostUpdate
+    @PostRemove
+    public void onDemandeChanged(DemandeEnregistrement demande) {
+        douaneService.ifAvailable(service ->
+                service.onDemandeChangedAfterCommit(demande.getReference(), demande.getStatus()));
+
+        if (demande.getImportateur() != null) {
+            Long importateurId = demande.getImportateur().getId();
+            importateurDashboardService.ifAvailable(service -> service.invalidateAfterCommit(importateurId));
+        }
+
+        if (demande.getExportateur() != null) {
+            cacheManager.ifAvailable(manager -> manager.clear(ReadModelCaches.EXPORTATEURS_VALIDES));
+        }
+    }
+}
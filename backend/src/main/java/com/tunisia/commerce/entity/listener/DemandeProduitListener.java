@@ -0,0 +1,37 @@
+package com.tunisia.commerce.entity.listener;
+
+import com.tunisia.commerce.cache.ReadModelCaches;
+import com.tunisia.commerce.cache.TwoLevelCacheManager;
+import com.tunisia.commerce.entity.DemandeProduit;
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostRemove;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.stereotype.Component;
+
+/**
+ * Invalide la liste de produits en cache de l'exportateur à chaque ajout ou retrait d'un produit
+ * dans une de ses demandes.
+ */
+@Component
+public class DemandeProduitListener {
+
+    // Résolu à la demande : le listener est instancié par Hibernate avant les services
+    private final ObjectProvider<TwoLevelCacheManager> cacheManager;
+
+    public DemandeProduitListener(ObjectProvider<TwoLevelCacheManager> cacheManager) {
+        this.cacheManager = cacheManager;
+    }
+
+    @PostPersist
+    @PostRemove
+    public void onProduitLinked(DemandeProduit demandeProduit) {
+        if (demandeProduit.getDemande() == null || demandeProduit.getDemande().getExportateur() == null) {
+            return;
+        }
+        Long exportateurId = demandeProduit.getDemande().getExportateur().getId();
+        cacheManager.ifAvailable(manager -> {
+            manager.evict(ReadModelCaches.PRODUITS_EXPORTATEUR, exportateurId);
+            manager.clear(ReadModelCaches.EXPORTATEURS_VALIDES);
+        });
+    }
+}
@@ -0,0 +1,37 @@
+package com.tunisia.commerce.entity.listener;
+
+import com.tunisia.commerce.cache.ReadModelCaches;
+import com.tunisia.commerce.cache.TwoLevelCacheManager;
+import com.tunisia.commerce.entity.DemandeValidateur;
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.stereotype.Component;
+
+/**
+ * Invalide le nombre de demandes en attente de l'instance à chaque routage, décision ou retrait
+ * d'une demande qui lui est assignée.
+ */
+@Component
+public class DemandeValidateurListener {
+
+    // Résolu à la demande : le listener est instancié par Hibernate avant les services
+    private final ObjectProvider<TwoLevelCacheManager> cacheManager;
+
+    public DemandeValidateurListener(ObjectProvider<TwoLevelCacheManager> cacheManager) {
+        this.cacheManager = cacheManager;
+    }
+
+    @PostPersist
+    @PostUpdate
+    @PostRemove
+    public void onAssignmentChanged(DemandeValidateur assignment) {
+        if (assignment.getInstance() == null) {
+            return;
+        }
+        // Identifiant lu sur le proxy sans charger l'instance
+        Long instanceId = assignment.getInstance().getId();
+        cacheManager.ifAvailable(manager -> manager.evict(ReadModelCaches.DEMANDES_EN_ATTENTE_INSTANCE, instanceId));
+    }
+}
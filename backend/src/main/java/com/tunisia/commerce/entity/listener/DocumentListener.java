@@ -0,0 +1,32 @@
+package com.tunisia.commerce.entity.listener;
+
+import com.tunisia.commerce.cache.ReadModelCaches;
+import com.tunisia.commerce.cache.TwoLevelCacheManager;
+import com.tunisia.commerce.entity.Document;
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostRemove;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.stereotype.Component;
+
+/**
+ * Invalide la liste des exportateurs validés en cache (nombre de documents) à chaque dépôt ou
+ * suppression d'un document d'exportateur.
+ */
+@Component
+public class DocumentListener {
+
+    // Résolu à la demande : le listener est instancié par Hibernate avant les services
+    private final ObjectProvider<TwoLevelCacheManager> cacheManager;
+
+    public DocumentListener(ObjectProvider<TwoLevelCacheManager> cacheManager) {
+        this.cacheManager = cacheManager;
+    }
+
+    @PostPersist
+    @PostRemove
+    public void onDocumentAddedOrRemoved(Document document) {
+        if (document.getExportateur() != null) {
+            cacheManager.ifAvailable(manager -> manager.clear(ReadModelCaches.EXPORTATEURS_VALIDES));
+        }
+    }
+}
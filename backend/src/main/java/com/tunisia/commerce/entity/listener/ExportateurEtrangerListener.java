@@ -0,0 +1,37 @@
+package com.tunisia.commerce.entity.listener;
+
+import com.tunisia.commerce.cache.ReadModelCaches;
+import com.tunisia.commerce.cache.TwoLevelCacheManager;
+import com.tunisia.commerce.entity.ExportateurEtranger;
+import com.tunisia.commerce.service.impl.ExporterStatisticsSnapshotService;
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.stereotype.Component;
+
+/**
+ * Signale à l'instantané des statistiques toute inscription, modification (statut, vérification
+ * de l'email, pays) ou suppression d'un exportateur, et invalide la liste des exportateurs validés.
+ */
+@Component
+public class ExportateurEtrangerListener {
+
+    // Résolus à la demande : le listener est instancié par Hibernate avant les services
+    private final ObjectProvider<ExporterStatisticsSnapshotService> snapshotService;
+    private final ObjectProvider<TwoLevelCacheManager> cacheManager;
+
+    public ExportateurEtrangerListener(ObjectProvider<ExporterStatisticsSnapshotService> snapshotService,
+                                       ObjectProvider<TwoLevelCacheManager> cacheManager) {
+        this.snapshotService = snapshotService;
+        this.cacheManager = cacheManager;
+    }
+
+    @PostPersist
+    @PostUpdate
+    @PostRemove
+    public void onExportateurChanged(ExportateurEtranger exportateur) {
+        snapshotService.ifAvailable(ExporterStatisticsSnapshotService::markDirtyAfterCommit);
+        cacheManager.ifAvailable(manager -> manager.clear(ReadModelCaches.EXPORTATEURS_VALIDES));
+    }
+}
@@ -0,0 +1,48 @@
+package com.tunisia.commerce.entity.listener;
+
+import com.tunisia.commerce.entity.Notification;
+import com.tunisia.commerce.enums.NotificationStatus;
+import com.tunisia.commerce.service.impl.NotificationStreamService;
+import jakarta.persistence.PostLoad;
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostUpdate;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.stereotype.Component;
+
+/**
+ * Transmet au flux temps réel toute création de notification et tout passage lu / non lu,
+ * quel que soit le service qui enregistre la notification.
+ */
+@Component
+public class NotificationListener {
+
+    // Résolu à la demande : le listener est instancié par Hibernate avant les services
+    private final ObjectProvider<NotificationStreamService> streamService;
+
+    public NotificationListener(ObjectProvider<NotificationStreamService> streamService) {
+        this.streamService = streamService;
+    }
+
+    @PostLoad
+    public void onLoaded(Notification notification) {
+        notification.setLoadedStatus(notification.getStatus());
+    }
+
+    @PostPersist
+    public void onCreated(Notification notification) {
+        notification.setLoadedStatus(notification.getStatus());
+        streamService.ifAvailable(service -> service.notificationCreated(notification));
+    }
+
+    @PostUpdate
+    public void onUpdated(Notification notification) {
+        NotificationStatus before = notification.getLoadedStatus();
+        NotificationStatus after = notification.getStatus();
+        notification.setLoadedStatus(after);
+        if (before == null || before == after || notification.getReceiver() == null) {
+            return;
+        }
+        Long receiverId = notification.getReceiver().getId();
+        streamService.ifAvailable(service -> service.statusChanged(receiverId, before, after));
+    }
+}
@@ -0,0 +1,34 @@
+package com.tunisia.commerce.entity.listener;
+
+import com.tunisia.commerce.cache.ReadModelCaches;
+import com.tunisia.commerce.cache.TwoLevelCacheManager;
+import com.tunisia.commerce.entity.Product;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.stereotype.Component;
+
+/**
+ * Invalide les listes de produits en cache à toute modification ou suppression d'un produit.
+ * Le produit peut figurer dans les demandes de plusieurs exportateurs : les listes sont vidées
+ * entièrement plutôt que de parcourir ses liens.
+ */
+@Component
+public class ProductListener {
+
+    // Résolu à la demande : le listener est instancié par Hibernate avant les services
+    private final ObjectProvider<TwoLevelCacheManager> cacheManager;
+
+    public ProductListener(ObjectProvider<TwoLevelCacheManager> cacheManager) {
+        this.cacheManager = cacheManager;
+    }
+
+    @PostUpdate
+    @PostRemove
+    public void onProductChanged(Product product) {
+        cacheManager.ifAvailable(manager -> {
+            manager.clear(ReadModelCaches.PRODUITS_EXPORTATEUR);
+            manager.clear(ReadModelCaches.EXPORTATEURS_VALIDES);
+        });
+    }
+}
@@ -0,0 +1,29 @@
+package com.tunisia.commerce.entity.listener;
+
+import com.tunisia.commerce.entity.User;
+import com.tunisia.commerce.service.impl.PrincipalCacheService;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.stereotype.Component;
+
+/**
+ * Invalide le principal en cache de tout utilisateur modifié (statut, rôle, email) ou supprimé.
+ * Hérité par toutes les sous-classes de User.
+ */
+@Component
+public class UserListener {
+
+    // Résolu à la demande : le listener est instancié par Hibernate avant les services
+    private final ObjectProvider<PrincipalCacheService> principalCacheService;
+
+    public UserListener(ObjectProvider<PrincipalCacheService> principalCacheService) {
+        this.principalCacheService = principalCacheService;
+    }
+
+    @PostUpdate
+    @PostRemove
+    public void onUserChanged(User user) {
+        principalCacheService.ifAvailable(service -> service.invalidateAfterCommit(user.getId(), user.getEmail()));
+    }
+}
@@ -4,5 +4,6 @@ public enum DocumentStatus {
     EN_ATTENTE,
     VALIDE,
     REJETE,
-    A_COMPLETER
+    A_COMPLETER,
+    QUARANTAINE                // En attente d'analyse antivirus, invisible pour la validation
 }
@@ -0,0 +1,9 @@
+package com.tunisia.commerce.enums;
+
+public enum EmailOutboxStatus {
+    EN_ATTENTE,                // Écrit, en attente d'envoi
+    EN_COURS,                  // Pris en charge par un worker
+    ENVOYE,                    // Accepté par le serveur SMTP
+    EN_ERREUR,                 // Échec, nouvelle tentative planifiée
+    ECHOUE                     // Tentatives épuisées
+}
@@ -0,0 +1,8 @@
+package com.tunisia.commerce.enums;
+
+public enum FraudJobStatus {
+    EN_ATTENTE,                // Dans la file d'analyse
+    EN_COURS,                  // Appel au service ML en cours
+    TERMINE,                   // Résultat disponible (analysé ou mémorisé)
+    ECHEC                      // Service ML en erreur ou indisponible
+}
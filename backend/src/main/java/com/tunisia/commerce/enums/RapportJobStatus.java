@@ -0,0 +1,9 @@
+package com.tunisia.commerce.enums;
+
+public enum RapportJobStatus {
+    EN_ATTENTE,                // Dans la file de génération
+    EN_COURS,                  // Rendu en cours
+    TERMINE,                   // PDF disponible (jusqu'à expiration)
+    ECHEC,                     // Erreur de génération
+    EXPIRE                     // PDF supprimé après expiration
+}
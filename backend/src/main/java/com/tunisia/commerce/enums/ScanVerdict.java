@@ -0,0 +1,6 @@
+package com.tunisia.commerce.enums;
+
+public enum ScanVerdict {
+    SAIN,                      // Aucune signature détectée par clamd
+    INFECTE                    // Signature détectée : documents rejetés, téléchargement bloqué
+}
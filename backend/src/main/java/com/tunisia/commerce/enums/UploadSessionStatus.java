@@ -0,0 +1,8 @@
+package com.tunisia.commerce.enums;
+
+public enum UploadSessionStatus {
+    EN_COURS,                  // Morceaux en cours de réception
+    TERMINEE,                  // Fichier assemblé et remis au stockage
+    ANNULEE,                   // Annulée par l'utilisateur
+    EXPIREE                    // Abandonnée, fichier partiel supprimé
+}
@@ -0,0 +1,8 @@
+package com.tunisia.commerce.enums;
+
+public enum UploadTarget {
+    REGISTRATION_DOCUMENT,     // Document du dossier d'agrément exportateur
+    PRODUCT_DECLARATION_DOCUMENT, // Document d'une déclaration produit
+    PRODUCT_IMAGE,             // Image d'un produit déclaré
+    IMPORT_DOCUMENT            // Document d'une demande d'importation
+}
@@ -0,0 +1,9 @@
+package com.tunisia.commerce.enums;
+
+public enum WebhookEventStatus {
+    EN_ATTENTE,                // Reçu, en attente de traitement
+    EN_COURS,                  // Pris en charge par un worker
+    TRAITE,                    // Traité avec succès
+    EN_ERREUR,                 // Échec, nouvelle tentative planifiée
+    REJETE                     // Tentatives épuisées (lettre morte)
+}
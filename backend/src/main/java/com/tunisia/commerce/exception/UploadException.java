@@ -0,0 +1,66 @@
+package com.tunisia.commerce.exception;
+
+import lombok.Getter;
+import org.springframework.http.HttpStatus;
+
+@Getter
+public class UploadException extends RuntimeException {
+    private final String errorCode;
+    private final HttpStatus status;
+    // Position attendue par le serveur, renvoyée au client pour reprendre
+    private final Long expectedOffset;
+
+    public UploadException(String message, String errorCode, HttpStatus status, Long expectedOffset) {
+        super(message);
+        this.errorCode = errorCode;
+        this.status = status;
+        this.expectedOffset = expectedOffset;
+    }
+
+    public UploadException(String message, String errorCode, HttpStatus status) {
+        this(message, errorCode, status, null);
+    }
+
+    public static UploadException sessionNotFound(String sessionId) {
+        return new UploadException("Session de téléversement introuvable: " + sessionId,
+                "UPLOAD_SESSION_NOT_FOUND", HttpStatus.NOT_FOUND);
+    }
+
+    public static UploadException notActive(String sessionId) {
+        return new UploadException("La session de téléversement n'est plus active: " + sessionId,
+                "UPLOAD_SESSION_CLOSED", HttpStatus.GONE);
+    }
+
+    public static UploadException offsetMismatch(long expectedOffset) {
+        return new UploadException("Position de morceau inattendue, reprendre à " + expectedOffset,
+                "UPLOAD_OFFSET_MISMATCH", HttpStatus.CONFLICT, expectedOffset);
+    }
+
+    public static UploadException chunkTooLarge(long maxBytes, long expectedOffset) {
+        return new UploadException("Morceau trop volumineux (maximum " + maxBytes + " octets)",
+                "UPLOAD_CHUNK_TOO_LARGE", HttpStatus.PAYLOAD_TOO_LARGE, expectedOffset);
+    }
+
+    public static UploadException chunkChecksumMismatch(long expectedOffset) {
+        return new UploadException("Empreinte SHA-256 du morceau invalide",
+                "UPLOAD_CHUNK_CHECKSUM", HttpStatus.UNPROCESSABLE_ENTITY, expectedOffset);
+    }
+
+    public static UploadException fileChecksumMismatch() {
+        return new UploadException("Empreinte SHA-256 du fichier assemblé invalide",
+                "UPLOAD_FILE_CHECKSUM", HttpStatus.UNPROCESSABLE_ENTITY);
+    }
+
+    public static UploadException incomplete(long receivedBytes, long totalSize) {
+        return new UploadException(String.format("Téléversement incomplet: %d/%d octets reçus", receivedBytes, totalSize),
+                "UPLOAD_INCOMPLETE", HttpStatus.CONFLICT, receivedBytes);
+    }
+
+    public static UploadException invalidRequest(String message) {
+        return new UploadException(message, "UPLOAD_INVALID_REQUEST", HttpStatus.BAD_REQUEST);
+    }
+
+    public static UploadException forbidden() {
+        return new UploadException("Accès non autorisé à cette demande", "UPLOAD_FORBIDDEN", HttpStatus.FORBIDDEN);
+    }
+}
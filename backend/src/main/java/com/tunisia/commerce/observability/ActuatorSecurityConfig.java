@@ -0,0 +1,76 @@
+package com.tunisia.commerce.observability;
+
+import com.tunisia.commerce.config.JwtAuthenticationFilter;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.annotation.Order;
+import org.springframework.security.authorization.AuthorizationDecision;
+import org.springframework.security.config.annotation.web.builders.HttpSecurity;
+import org.springframework.security.config.http.SessionCreationPolicy;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.web.SecurityFilterChain;
+import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter;
+import org.springframework.security.web.util.matcher.IpAddressMatcher;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Chaîne de sécurité des endpoints actuator, évaluée avant la chaîne principale.
+ *
+ * /health reste public (sondes). Les autres endpoints (prometheus, metrics, info) sont réservés
+ * aux adresses de {@code app.management.allowed-networks} (collecteur Prometheus, par défaut la
+ * machine locale) ou à un administrateur authentifié par JWT. L'adresse retenue est celle de la
+ * connexion, jamais un en-tête X-Forwarded-For fourni par le client.
+ */
+@Configuration
+public class ActuatorSecurityConfig {
+
+    private final String basePath;
+    private final List<IpAddressMatcher> allowedNetworks;
+
+    public ActuatorSecurityConfig(@Value("${management.endpoints.web.base-path:/actuator}") String basePath,
+                                  @Value("${app.management.allowed-networks:127.0.0.1/32,::1/128}") String allowedNetworks) {
+        this.basePath = basePath;
+        this.allowedNetworks = Arrays.stream(allowedNetworks.split(","))
+                .map(String::trim)
+                .filter(network -> !network.isEmpty())
+                .map(IpAddressMatcher::new)
+                .toList();
+    }
+
+    @Bean
+    @Order(0)
+    public SecurityFilterChain actuatorFilterChain(HttpSecurity http,
+                                                   JwtAuthenticationFilter jwtAuthenticationFilter) throws Exception {
+        http
+                .securityMatcher(basePath + "/**")
+                .csrf(csrf -> csrf.disable())
+                .sessionManagement(session -> session
+                        .sessionCreationPolicy(SessionCreationPolicy.STATELESS)
+                )
+                .authorizeHttpRequests(auth -> auth
+                        .requestMatchers(basePath + "/health", basePath + "/health/**").permitAll()
+                        .anyRequest().access((authentication, context) ->
+                                decide(authentication.get(), context.getRequest()))
+                )
+                .addFilterBefore(jwtAuthenticationFilter, UsernamePasswordAuthenticationFilter.class);
+
+        return http.build();
+    }
+
+    AuthorizationDecision decide(Authentication authentication, HttpServletRequest request) {
+        boolean allowedNetwork = allowedNetworks.stream().anyMatch(network -> network.matches(request));
+        return new AuthorizationDecision(allowedNetwork || isAdmin(authentication));
+    }
+
+    private static boolean isAdmin(Authentication authentication) {
+        return authentication != null && authentication.isAuthenticated()
+                && authentication.getAuthorities().stream()
+                .map(GrantedAuthority::getAuthority)
+                .anyMatch("ADMIN"::equals);
+    }
+}
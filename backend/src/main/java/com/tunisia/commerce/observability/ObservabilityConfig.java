@@ -0,0 +1,24 @@
+package com.tunisia.commerce.observability;
+
+import org.hibernate.cfg.AvailableSettings;
+import org.springframework.boot.hibernate.autoconfigure.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.PropertySource;
+
+/**
+ * Surface d'observabilité : endpoint Prometheus, histogrammes de percentiles des contrôleurs,
+ * dépôts et clients sortants, métriques Hibernate, et comptage SQL par requête HTTP.
+ *
+ * Les réglages par défaut sont dans observability.properties ; application.properties reste
+ * prioritaire pour les surcharger.
+ */
+@Configuration
+@PropertySource("classpath:observability.properties")
+public class ObservabilityConfig {
+
+    @Bean
+    public HibernatePropertiesCustomizer sqlCountingHibernateProperties() {
+        return properties -> properties.put(AvailableSettings.STATEMENT_INSPECTOR, new SqlCountingStatementInspector());
+    }
+}
@@ -0,0 +1,74 @@
+package com.tunisia.commerce.observability;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Mesure des appels vers les services externes (Gemini, Stripe, ip-api, service ML, SMTP).
+ *
+ * Chaque appel alimente le timer {@code outbound.calls} (histogramme de percentiles, étiqueté
+ * client, opération et issue) et le détail des appels sortants de la requête HTTP en cours.
+ */
+@Component
+public class OutboundCallMetrics {
+
+    private static final String METER = "outbound.calls";
+
+    private final MeterRegistry meterRegistry;
+
+    public OutboundCallMetrics(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * Appel bloquant ; l'exception éventuelle est propagée telle quelle.
+     */
+    @FunctionalInterface
+    public interface Call<T, E extends Exception> {
+        T execute() throws E;
+    }
+
+    public <T, E extends Exception> T record(String client, String operation, Call<T, E> call) throws E {
+        RequestProfile profile = RequestProfile.current();
+        long start = System.nanoTime();
+        String outcome = "erreur";
+        try {
+            T result = call.execute();
+            outcome = "succes";
+            return result;
+        } finally {
+            completed(profile, client, operation, outcome, System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Appel réactif : mesuré de l'abonnement au signal terminal, rattaché à la requête qui l'a émis.
+     */
+    public <T> Mono<T> record(String client, String operation, Mono<T> call) {
+        RequestProfile profile = RequestProfile.current();
+        return Mono.defer(() -> {
+            long start = System.nanoTime();
+            return call
+                    .doOnSuccess(result -> completed(profile, client, operation, "succes", System.nanoTime() - start))
+                    .doOnError(e -> completed(profile, client, operation, "erreur", System.nanoTime() - start));
+        });
+    }
+
+    private void completed(RequestProfile profile, String client, String operation, String outcome, long nanos) {
+        Timer.builder(METER)
+                .description("Durée des appels vers les services externes")
+                .tag("client", client)
+                .tag("operation", operation)
+                .tag("outcome", outcome)
+                .publishPercentileHistogram()
+                .register(meterRegistry)
+                .record(nanos, TimeUnit.NANOSECONDS);
+        if (profile != null) {
+            profile.externalCallCompleted(client, nanos);
+        }
+    }
+}
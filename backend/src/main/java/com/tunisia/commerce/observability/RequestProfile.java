@@ -0,0 +1,92 @@
+package com.tunisia.commerce.observability;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * Compteurs d'une requête HTTP en cours : requêtes SQL préparées et appels sortants par client.
+ *
+ * Ouvert et fermé par {@link RequestProfilingFilter} sur le thread de la requête. Les appels
+ * sortants terminés sur un autre thread (clients réactifs) sont rattachés au profil capturé
+ * au moment de l'appel, d'où des compteurs atomiques.
+ */
+public final class RequestProfile {
+
+    private static final ThreadLocal<RequestProfile> CURRENT = new ThreadLocal<>();
+
+    private final AtomicInteger sqlStatements = new AtomicInteger();
+    private final Map<String, ExternalCalls> externalCalls = new ConcurrentHashMap<>();
+
+    /**
+     * Appels vers un client externe : nombre et durée cumulée.
+     */
+    static final class ExternalCalls {
+        private final AtomicInteger count = new AtomicInteger();
+        private final AtomicLong nanos = new AtomicLong();
+
+        int getCount() {
+            return count.get();
+        }
+
+        long getMillis() {
+            return TimeUnit.NANOSECONDS.toMillis(nanos.get());
+        }
+    }
+
+    static RequestProfile start() {
+        RequestProfile profile = new RequestProfile();
+        CURRENT.set(profile);
+        return profile;
+    }
+
+    static void end() {
+        CURRENT.remove();
+    }
+
+    /**
+     * Profil de la requête servie par le thread courant, ou null hors requête HTTP
+     * (workers, tâches planifiées).
+     */
+    public static RequestProfile current() {
+        return CURRENT.get();
+    }
+
+    void sqlStatementPrepared() {
+        sqlStatements.incrementAndGet();
+    }
+
+    void externalCallCompleted(String client, long nanos) {
+        ExternalCalls calls = externalCalls.computeIfAbsent(client, c -> new ExternalCalls());
+        calls.count.incrementAndGet();
+        calls.nanos.addAndGet(nanos);
+    }
+
+    int getSqlStatements() {
+        return sqlStatements.get();
+    }
+
+    int getExternalCallCount() {
+        return externalCalls.values().stream().mapToInt(ExternalCalls::getCount).sum();
+    }
+
+    Map<String, ExternalCalls> getExternalCalls() {
+        return externalCalls;
+    }
+
+    /**
+     * Détail des appels sortants pour le journal : {@code stripe=2/340ms, ip-api=1/85ms}.
+     */
+    String describeExternalCalls() {
+        if (externalCalls.isEmpty()) {
+            return "aucun";
+        }
+        return new TreeMap<>(externalCalls).entrySet().stream()
+                .map(e -> e.getKey() + "=" + e.getValue().getCount() + "/" + e.getValue().getMillis() + "ms")
+                .collect(Collectors.joining(", "));
+    }
+}
@@ -0,0 +1,85 @@
+package com.tunisia.commerce.observability;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Profil de chaque requête HTTP : nombre de requêtes SQL et d'appels sortants par endpoint
+ * (distributions {@code http.server.requests.sql} et {@code http.server.requests.externes}),
+ * et journal des requêtes lentes avec leur détail.
+ *
+ * La durée des requêtes par endpoint est déjà mesurée par {@code http.server.requests} ;
+ * ce filtre y ajoute ce qui explique une requête lente. Placé en tête de chaîne pour couvrir
+ * aussi la sécurité et la résolution de l'utilisateur.
+ */
+@Slf4j
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE + 10)
+public class RequestProfilingFilter extends OncePerRequestFilter {
+
+    private final MeterRegistry meterRegistry;
+    private final long slowRequestMillis;
+
+    public RequestProfilingFilter(MeterRegistry meterRegistry,
+                                  @Value("${app.observability.slow-request-ms:1000}") long slowRequestMillis) {
+        this.meterRegistry = meterRegistry;
+        this.slowRequestMillis = slowRequestMillis;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request,
+                                    HttpServletResponse response,
+                                    FilterChain filterChain)
+            throws ServletException, IOException {
+
+        RequestProfile profile = RequestProfile.start();
+        long start = System.nanoTime();
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            RequestProfile.end();
+            record(request, response, profile, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        }
+    }
+
+    private void record(HttpServletRequest request, HttpServletResponse response,
+                        RequestProfile profile, long durationMillis) {
+        // Gabarit de l'endpoint (/api/demandes/{id}) : l'URI brute ferait exploser le nombre de séries
+        Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        String uri = pattern != null ? pattern.toString() : "UNKNOWN";
+
+        DistributionSummary.builder("http.server.requests.sql")
+                .description("Requêtes SQL préparées par requête HTTP")
+                .tag("method", request.getMethod())
+                .tag("uri", uri)
+                .publishPercentileHistogram()
+                .register(meterRegistry)
+                .record(profile.getSqlStatements());
+        DistributionSummary.builder("http.server.requests.externes")
+                .description("Appels vers les services externes par requête HTTP")
+                .tag("method", request.getMethod())
+                .tag("uri", uri)
+                .register(meterRegistry)
+                .record(profile.getExternalCallCount());
+
+        if (durationMillis >= slowRequestMillis) {
+            log.warn("🐢 Requête lente: {} {} -> {} en {} ms | SQL: {} | appels externes: {}",
+                    request.getMethod(), request.getRequestURI(), response.getStatus(), durationMillis,
+                    profile.getSqlStatements(), profile.describeExternalCalls());
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package com.tunisia.commerce.observability;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+
+/**
+ * Compte les requêtes SQL préparées par Hibernate pour la requête HTTP en cours.
+ * Le SQL est renvoyé tel quel.
+ */
+public class SqlCountingStatementInspector implements StatementInspector {
+
+    @Override
+    public String inspect(String sql) {
+        RequestProfile profile = RequestProfile.current();
+        if (profile != null) {
+            profile.sqlStatementPrepared();
+        }
+        return sql;
+    }
+}
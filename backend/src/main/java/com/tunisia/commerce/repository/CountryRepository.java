@@ -1,15 +1,25 @@
 package com.tunisia.commerce.repository;
 
+import com.tunisia.commerce.cache.ReferenceCacheRegions;
 import com.tunisia.commerce.entity.Country;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface CountryRepository extends JpaRepository<Country, String> {
 
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"),
+            @QueryHint(name = HibernateHints.HINT_CACHE_REGION, value = ReferenceCacheRegions.QUERIES)
+    })
     Optional<Country> findByCode(String code);
 
     List<Country> findByHasFreeTradeAgreement(boolean hasFreeTradeAgreement);
@@ -19,4 +29,7 @@ public interface CountryRepository extends JpaRepository<Country, String> {
     List<Country> findByRequiresCertificateOfOrigin(boolean requiresCertificateOfOrigin);
 
     boolean existsByCode(String code);
-}
\ No newline at end of file
+
+    @Query("SELECT MAX(c.updatedAt) FROM Country c")
+    LocalDateTime findLastUpdatedAt();
+}
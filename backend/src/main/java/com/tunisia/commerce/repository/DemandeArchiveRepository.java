@@ -0,0 +1,132 @@
+package com.tunisia.commerce.repository;
+
+import com.tunisia.commerce.entity.DemandeArchive;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Stockage froid des demandes archivées : déplacement et restauration ensemblistes
+ * (une requête par table et par lot d'identifiants).
+ */
+@Repository
+public interface DemandeArchiveRepository extends JpaRepository<DemandeArchive, Long> {
+
+    Page<DemandeArchive> findAllByOrderByArchivedAtDesc(Pageable pageable);
+
+    List<DemandeArchive> findByExportateurIdOrderByArchivedAtDesc(Long exportateurId);
+
+    List<DemandeArchive> findByImportateurIdOrderByArchivedAtDesc(Long importateurId);
+
+    @Query("SELECT a.id FROM DemandeArchive a WHERE a.id IN :ids AND a.canBeRestored = true")
+    List<Long> findRestorableIds(@Param("ids") Collection<Long> ids);
+
+    // ==================== DÉPLACEMENT VERS LE STOCKAGE FROID ====================
+
+    @Modifying
+    @Query(value = "INSERT INTO demandes_enregistrement_archive (id, reference, status, type_demande, payment_status, " +
+            "submitted_at, decision_date, numero_agrement, date_agrement, exportateur_id, importateur_id, archived_at, " +
+            "archived_by, archive_reason, archive_type, can_be_restored, moved_at, payload) " +
+            "SELECT d.id, d.reference, d.status, d.type_demande, d.payment_status, d.submitted_at, d.decision_date, " +
+            "d.numero_agrement, d.date_agrement, d.exportateur_id, d.importateur_id, d.archived_at, d.archived_by, " +
+            "d.archive_reason, d.archive_type, d.can_be_restored, :movedAt, to_jsonb(d) " +
+            "FROM demandes_enregistrement d WHERE d.id IN (:ids) AND d.is_archived = true", nativeQuery = true)
+    int copyDemandesToCold(@Param("ids") Collection<Long> ids, @Param("movedAt") LocalDateTime movedAt);
+
+    @Modifying
+    @Query(value = "INSERT INTO demandes_archive_lignes (demande_id, source_table, source_id, payload) " +
+            "SELECT t.id, 'demande_importateur', t.id, to_jsonb(t) FROM demande_importateur t WHERE t.id IN (:ids)",
+            nativeQuery = true)
+    int copyImportateurDetailsToCold(@Param("ids") Collection<Long> ids);
+
+    @Modifying
+    @Query(value = "INSERT INTO demandes_archive_lignes (demande_id, source_table, source_id, payload) " +
+            "SELECT t.demande_id, 'demande_produit', t.id, to_jsonb(t) FROM demande_produit t WHERE t.demande_id IN (:ids)",
+            nativeQuery = true)
+    int copyProduitsToCold(@Param("ids") Collection<Long> ids);
+
+    @Modifying
+    @Query(value = "INSERT INTO demandes_archive_lignes (demande_id, source_table, source_id, payload) " +
+            "SELECT t.demande_id, 'documents', t.id, to_jsonb(t) FROM documents t WHERE t.demande_id IN (:ids)",
+            nativeQuery = true)
+    int copyDocumentsToCold(@Param("ids") Collection<Long> ids);
+
+    @Modifying
+    @Query(value = "INSERT INTO demandes_archive_lignes (demande_id, source_table, source_id, payload) " +
+            "SELECT t.demande_id, 'demande_validateur', t.id, to_jsonb(t) FROM demande_validateur t WHERE t.demande_id IN (:ids)",
+            nativeQuery = true)
+    int copyValidateursToCold(@Param("ids") Collection<Long> ids);
+
+    @Modifying
+    @Query(value = "DELETE FROM demande_validateur WHERE demande_id IN (:ids)", nativeQuery = true)
+    int deleteHotValidateurs(@Param("ids") Collection<Long> ids);
+
+    @Modifying
+    @Query(value = "DELETE FROM documents WHERE demande_id IN (:ids)", nativeQuery = true)
+    int deleteHotDocuments(@Param("ids") Collection<Long> ids);
+
+    @Modifying
+    @Query(value = "DELETE FROM demande_produit WHERE demande_id IN (:ids)", nativeQuery = true)
+    int deleteHotProduits(@Param("ids") Collection<Long> ids);
+
+    @Modifying
+    @Query(value = "DELETE FROM demande_importateur WHERE id IN (:ids)", nativeQuery = true)
+    int deleteHotImportateurDetails(@Param("ids") Collection<Long> ids);
+
+    @Modifying
+    @Query(value = "DELETE FROM demandes_enregistrement WHERE id IN (:ids)", nativeQuery = true)
+    int deleteHotDemandes(@Param("ids") Collection<Long> ids);
+
+    // ==================== RESTAURATION ====================
+
+    // Reconstruction par nom de colonne : insensible à l'ordre des colonnes de la table active
+    @Modifying
+    @Query(value = "INSERT INTO demandes_enregistrement " +
+            "SELECT (jsonb_populate_record(CAST(NULL AS demandes_enregistrement), a.payload)).* " +
+            "FROM demandes_enregistrement_archive a WHERE a.id IN (:ids)", nativeQuery = true)
+    int restoreDemandesFromCold(@Param("ids") Collection<Long> ids);
+
+    @Modifying
+    @Query(value = "INSERT INTO demande_importateur " +
+            "SELECT (jsonb_populate_record(CAST(NULL AS demande_importateur), l.payload)).* " +
+            "FROM demandes_archive_lignes l WHERE l.source_table = 'demande_importateur' AND l.demande_id IN (:ids)",
+            nativeQuery = true)
+    int restoreImportateurDetailsFromCold(@Param("ids") Collection<Long> ids);
+
+    @Modifying
+    @Query(value = "INSERT INTO demande_produit " +
+            "SELECT (jsonb_populate_record(CAST(NULL AS demande_produit), l.payload)).* " +
+            "FROM demandes_archive_lignes l WHERE l.source_table = 'demande_produit' AND l.demande_id IN (:ids)",
+            nativeQuery = true)
+    int restoreProduitsFromCold(@Param("ids") Collection<Long> ids);
+
+    @Modifying
+    @Query(value = "INSERT INTO documents " +
+            "SELECT (jsonb_populate_record(CAST(NULL AS documents), l.payload)).* " +
+            "FROM demandes_archive_lignes l WHERE l.source_table = 'documents' AND l.demande_id IN (:ids)",
+            nativeQuery = true)
+    int restoreDocumentsFromCold(@Param("ids") Collection<Long> ids);
+
+    @Modifying
+    @Query(value = "INSERT INTO demande_validateur " +
+            "SELECT (jsonb_populate_record(CAST(NULL AS demande_validateur), l.payload)).* " +
+            "FROM demandes_archive_lignes l WHERE l.source_table = 'demande_validateur' AND l.demande_id IN (:ids)",
+            nativeQuery = true)
+    int restoreValidateursFromCold(@Param("ids") Collection<Long> ids);
+
+    @Modifying
+    @Query(value = "DELETE FROM demandes_archive_lignes WHERE demande_id IN (:ids)", nativeQuery = true)
+    int deleteColdLignes(@Param("ids") Collection<Long> ids);
+
+    @Modifying
+    @Query(value = "DELETE FROM demandes_enregistrement_archive WHERE id IN (:ids)", nativeQuery = true)
+    int deleteColdDemandes(@Param("ids") Collection<Long> ids);
+}
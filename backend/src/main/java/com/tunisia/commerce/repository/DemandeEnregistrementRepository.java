@@ -5,7 +5,9 @@ import com.tunisia.commerce.enums.DemandeStatus;
 import com.tunisia.commerce.enums.PaymentStatus;
 import com.tunisia.commerce.enums.TypeDemande;
 import com.tunisia.commerce.enums.TypeDemandeur;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
@@ -50,6 +52,55 @@ public interface DemandeEnregistrementRepository extends JpaRepository<DemandeEn
             LocalDate date
     );
 
+    // Archivage ensembliste : lots de [id, importateur_id] non archivés, parcourus par id croissant
+    @Query(value = "SELECT d.id, d.importateur_id FROM demandes_enregistrement d WHERE d.is_archived = false " +
+            "AND d.status IN (:statuses) AND d.decision_date < :before AND d.id > :afterId ORDER BY d.id LIMIT :limit",
+            nativeQuery = true)
+    List<Object[]> findArchivableByStatusAndDecisionDate(@Param("statuses") Collection<String> statuses,
+                                                         @Param("before") LocalDateTime before,
+                                                         @Param("afterId") long afterId,
+                                                         @Param("limit") int limit);
+
+    @Query(value = "SELECT d.id, d.importateur_id FROM demandes_enregistrement d WHERE d.is_archived = false " +
+            "AND d.payment_status = :paymentStatus AND d.submitted_at < :before AND d.id > :afterId ORDER BY d.id LIMIT :limit",
+            nativeQuery = true)
+    List<Object[]> findArchivableByPaymentStatus(@Param("paymentStatus") String paymentStatus,
+                                                 @Param("before") LocalDateTime before,
+                                                 @Param("afterId") long afterId,
+                                                 @Param("limit") int limit);
+
+    @Query(value = "SELECT d.id, d.importateur_id FROM demandes_enregistrement d WHERE d.is_archived = false " +
+            "AND d.status = :status AND d.date_agrement < :before AND d.id > :afterId ORDER BY d.id LIMIT :limit",
+            nativeQuery = true)
+    List<Object[]> findArchivableByDateAgrement(@Param("status") String status,
+                                                @Param("before") LocalDate before,
+                                                @Param("afterId") long afterId,
+                                                @Param("limit") int limit);
+
+    @Query(value = "SELECT d.id, d.importateur_id FROM demandes_enregistrement d WHERE d.id IN (:ids)", nativeQuery = true)
+    List<Object[]> findIdAndImportateurByIdIn(@Param("ids") Collection<Long> ids);
+
+    // Archivées depuis longtemps, à déplacer vers le stockage froid
+    @Query(value = "SELECT d.id, d.importateur_id FROM demandes_enregistrement d WHERE d.is_archived = true " +
+            "AND d.archived_at < :before ORDER BY d.id LIMIT :limit", nativeQuery = true)
+    List<Object[]> findArchivedBefore(@Param("before") LocalDateTime before, @Param("limit") int limit);
+
+    @Modifying
+    @Query(value = "UPDATE demandes_enregistrement SET is_archived = true, archived_at = :archivedAt, " +
+            "archived_by = :archivedBy, archive_reason = :reason, archive_type = :archiveType, can_be_restored = true " +
+            "WHERE id IN (:ids) AND is_archived = false", nativeQuery = true)
+    int archiveByIds(@Param("ids") Collection<Long> ids,
+                     @Param("archivedAt") LocalDateTime archivedAt,
+                     @Param("archivedBy") String archivedBy,
+                     @Param("reason") String reason,
+                     @Param("archiveType") String archiveType);
+
+    @Modifying
+    @Query(value = "UPDATE demandes_enregistrement SET is_archived = false, archived_at = NULL, archived_by = NULL, " +
+            "archive_reason = NULL, archive_type = NULL, can_be_restored = true " +
+            "WHERE id IN (:ids) AND is_archived = true AND can_be_restored = true", nativeQuery = true)
+    int unarchiveByIds(@Param("ids") Collection<Long> ids);
+
     // Pour la gestion des archives
     List<DemandeEnregistrement> findByArchivedTrue();
 
@@ -63,8 +114,41 @@ public interface DemandeEnregistrementRepository extends JpaRepository<DemandeEn
     // Nouvelle méthode pour les demandes actives
     List<DemandeEnregistrement> findByArchivedFalse();
     Optional<DemandeEnregistrement> findByReference(String reference);
+
+    // Vérification douane : références des dossiers vérifiables (filtre de Bloom)
+    @Query("SELECT d.reference FROM DemandeEnregistrement d WHERE d.status = :status AND d.typeDemande IN :types")
+    List<String> findReferencesByStatusAndTypeIn(@Param("status") DemandeStatus status,
+                                                 @Param("types") Collection<TypeDemande> types);
+
+    // Vérification douane : un lot de références en une requête, exportateur compris
+    @Query("SELECT d FROM DemandeEnregistrement d LEFT JOIN FETCH d.exportateur " +
+            "WHERE d.reference IN :references AND d.status = :status AND d.typeDemande IN :types")
+    List<DemandeEnregistrement> findVerifiableByReferenceIn(@Param("references") Collection<String> references,
+                                                            @Param("status") DemandeStatus status,
+                                                            @Param("types") Collection<TypeDemande> types);
     List<DemandeEnregistrement> findByImportateurId(Long importateurId);
 
+    // Tableau de bord importateur : agrégats calculés en base
+    @Query("SELECT d.status, COUNT(d), SUM(CASE WHEN d.submittedAt > :since THEN d.paymentAmount END) " +
+            "FROM DemandeEnregistrement d WHERE d.importateur.id = :importateurId GROUP BY d.status")
+    List<Object[]> aggregateStatusByImportateur(@Param("importateurId") Long importateurId,
+                                                @Param("since") LocalDateTime since);
+
+    @Query("SELECT CAST(d.submittedAt AS LocalDate), SUM(d.paymentAmount) FROM DemandeEnregistrement d " +
+            "WHERE d.importateur.id = :importateurId AND d.submittedAt >= :since " +
+            "GROUP BY CAST(d.submittedAt AS LocalDate)")
+    List<Object[]> aggregateDailyVolumeByImportateur(@Param("importateurId") Long importateurId,
+                                                     @Param("since") LocalDateTime since);
+
+    long countByImportateurId(Long importateurId);
+
+    // Lignes du rapport PDF, lues par lot (pagination par clé sur l'identifiant)
+    @Query("SELECT d.id, d.reference, d.submittedAt, d.paymentAmount, d.status FROM DemandeEnregistrement d " +
+            "WHERE d.importateur.id = :importateurId AND d.id > :afterId ORDER BY d.id")
+    List<Object[]> findRapportRowsByImportateur(@Param("importateurId") Long importateurId,
+                                                @Param("afterId") Long afterId,
+                                                Pageable pageable);
+
 
 }
 
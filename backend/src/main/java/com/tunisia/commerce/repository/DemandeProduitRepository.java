@@ -2,7 +2,10 @@ package com.tunisia.commerce.repository;
 
 import com.tunisia.commerce.entity.DemandeProduit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
+import java.util.Collection;
 import java.util.List;
 
 public interface DemandeProduitRepository extends JpaRepository<DemandeProduit, Long> {
@@ -10,4 +13,20 @@ public interface DemandeProduitRepository extends JpaRepository<DemandeProduit,
     List<DemandeProduit> findByProduitId(Long produitId);
     boolean existsByDemandeIdAndProduitId(Long demandeId, Long produitId);
     void deleteByDemandeIdAndProduitId(Long demandeId, Long produitId);
+
+    // Volume par catégorie et pays d'origine des demandes d'un importateur (une ligne par couple)
+    @Query("SELECT p.productType, p.originCountry, COUNT(dp), SUM(d.paymentAmount) FROM DemandeProduit dp " +
+            "JOIN dp.demande d JOIN dp.produit p " +
+            "WHERE d.importateur.id = :importateurId " +
+            "GROUP BY p.productType, p.originCountry")
+    List<Object[]> aggregateVolumeByImportateur(@Param("importateurId") Long importateurId);
+
+    // Pays d'origine des produits d'un lot de demandes, dans l'ordre d'association
+    @Query("SELECT dp.demande.id, p.originCountry FROM DemandeProduit dp JOIN dp.produit p " +
+            "WHERE dp.demande.id IN :demandeIds ORDER BY dp.id")
+    List<Object[]> findOriginCountriesByDemandeIds(@Param("demandeIds") Collection<Long> demandeIds);
+
+    // Produits d'un lot de demandes, chargés avec la demande-produit (vérification douane)
+    @Query("SELECT dp FROM DemandeProduit dp JOIN FETCH dp.produit WHERE dp.demande.id IN :demandeIds ORDER BY dp.id")
+    List<DemandeProduit> findWithProduitByDemandeIdIn(@Param("demandeIds") Collection<Long> demandeIds);
 }
@@ -3,9 +3,14 @@ package com.tunisia.commerce.repository;
 import com.tunisia.commerce.entity.Document;
 import com.tunisia.commerce.enums.DocumentStatus;
 import com.tunisia.commerce.enums.DocumentType;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
 
@@ -13,8 +18,39 @@ import java.util.Optional;
 public interface DocumentRepository extends JpaRepository<Document, Long> {
     List<Document> findByDemandeId(Long demandeId);
     List<Document> findByDemandeIdAndStatus(Long demandeId, DocumentStatus status);
+    boolean existsByDemandeIdAndStatus(Long demandeId, DocumentStatus status);
     Optional<Document> findByDemandeIdAndProductIdAndDocumentType(Long demandeId, Long productId, DocumentType documentType);
     List<Document> findByDemandeIdAndDocumentType(Long demandeId, DocumentType documentType);
 
+    // Documents de l'ancien format (fichier propre), à reprendre dans le stockage par contenu
+    @Query("SELECT d.id FROM Document d WHERE d.blobHash IS NULL AND d.filePath IS NOT NULL " +
+            "AND d.id > :afterId ORDER BY d.id")
+    List<Long> findLegacyDocumentIds(@Param("afterId") Long afterId, Pageable pageable);
+
+    // ==================== QUARANTAINE ANTIVIRUS ====================
+
+    @Query("SELECT DISTINCT d.blobHash FROM Document d WHERE d.status = com.tunisia.commerce.enums.DocumentStatus.QUARANTAINE " +
+            "AND d.blobHash IS NOT NULL AND d.uploadedAt < :before")
+    List<String> findQuarantinedBlobHashes(@Param("before") LocalDateTime before, Pageable pageable);
+
+    // Applique le verdict à tous les documents en quarantaine partageant ce contenu
+    @Modifying
+    @Query("UPDATE Document d SET d.status = :status, d.validationComment = COALESCE(:comment, d.validationComment) " +
+            "WHERE d.blobHash = :blobHash AND d.status = com.tunisia.commerce.enums.DocumentStatus.QUARANTAINE")
+    int releaseQuarantined(@Param("blobHash") String blobHash,
+                           @Param("status") DocumentStatus status,
+                           @Param("comment") String comment);
+
+    // ==================== ANALYSE DE FRAUDE ====================
+
+    @Modifying
+    @Query("UPDATE Document d SET d.fraudAnalysisKey = :analysisKey, d.fraudDecision = :decision, " +
+            "d.fraudConfidence = :confidence, d.fraudAnalyzedAt = :analyzedAt WHERE d.id = :documentId")
+    int recordFraudAnalysis(@Param("documentId") Long documentId,
+                            @Param("analysisKey") String analysisKey,
+                            @Param("decision") String decision,
+                            @Param("confidence") Double confidence,
+                            @Param("analyzedAt") LocalDateTime analyzedAt);
+
 }
 
@@ -0,0 +1,38 @@
+package com.tunisia.commerce.repository;
+
+import com.tunisia.commerce.entity.EmailOutboxMessage;
+import com.tunisia.commerce.enums.EmailOutboxStatus;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface EmailOutboxRepository extends JpaRepository<EmailOutboxMessage, Long> {
+
+    // Emails échus, verrouillés pour la transaction courante ; les lignes prises par une autre instance sont sautées
+    @Query(value = "SELECT * FROM email_outbox WHERE status IN ('EN_ATTENTE', 'EN_ERREUR') " +
+            "AND (next_attempt_at IS NULL OR next_attempt_at <= :now) " +
+            "ORDER BY id LIMIT :limit FOR UPDATE SKIP LOCKED", nativeQuery = true)
+    List<EmailOutboxMessage> lockDueMessages(@Param("now") LocalDateTime now, @Param("limit") int limit);
+
+    long countByStatusIn(Collection<EmailOutboxStatus> statuses);
+
+    Optional<EmailOutboxMessage> findFirstByStatusInOrderByIdAsc(Collection<EmailOutboxStatus> statuses);
+
+    @Modifying
+    @Query("UPDATE EmailOutboxMessage m SET m.status = com.tunisia.commerce.enums.EmailOutboxStatus.EN_ATTENTE " +
+            "WHERE m.status = com.tunisia.commerce.enums.EmailOutboxStatus.EN_COURS")
+    int releaseInProgress();
+
+    @Modifying
+    @Query("DELETE FROM EmailOutboxMessage m WHERE m.status = com.tunisia.commerce.enums.EmailOutboxStatus.ENVOYE " +
+            "AND m.sentAt < :before")
+    int deleteSentBefore(@Param("before") LocalDateTime before);
+}
@@ -0,0 +1,22 @@
+package com.tunisia.commerce.repository;
+
+import com.tunisia.commerce.entity.ExchangeRate;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface ExchangeRateRepository extends JpaRepository<ExchangeRate, Long> {
+
+    List<ExchangeRate> findByVersion(Long version);
+
+    @Query("SELECT MAX(e.version) FROM ExchangeRate e")
+    Long findLatestVersion();
+
+    // Verrou transactionnel PostgreSQL : sérialise les imports entre instances, libéré à la fin de la transaction
+    @Query(value = "SELECT 1 FROM pg_advisory_xact_lock(:key)", nativeQuery = true)
+    Integer lockImports(@Param("key") long key);
+}
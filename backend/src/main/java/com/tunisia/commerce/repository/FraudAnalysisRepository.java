@@ -0,0 +1,28 @@
+package com.tunisia.commerce.repository;
+
+import com.tunisia.commerce.entity.FraudAnalysis;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+
+@Repository
+public interface FraudAnalysisRepository extends JpaRepository<FraudAnalysis, String> {
+
+    // Deux analyses concurrentes du même contenu : la première enregistrée est conservée
+    @Modifying
+    @Query(value = "INSERT INTO fraud_analyses (analysis_key, content_hash, decision, confidence, result_json, duration_ms, analyzed_at) " +
+            "VALUES (:analysisKey, :contentHash, :decision, :confidence, :resultJson, :durationMs, :analyzedAt) " +
+            "ON CONFLICT (analysis_key) DO NOTHING",
+            nativeQuery = true)
+    int insertIfAbsent(@Param("analysisKey") String analysisKey,
+                       @Param("contentHash") String contentHash,
+                       @Param("decision") String decision,
+                       @Param("confidence") Double confidence,
+                       @Param("resultJson") String resultJson,
+                       @Param("durationMs") Long durationMs,
+                       @Param("analyzedAt") LocalDateTime analyzedAt);
+}
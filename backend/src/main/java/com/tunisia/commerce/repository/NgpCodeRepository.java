@@ -1,17 +1,26 @@
 package com.tunisia.commerce.repository;
 
+import com.tunisia.commerce.cache.ReferenceCacheRegions;
 import com.tunisia.commerce.entity.NgpCode;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface NgpCodeRepository extends JpaRepository<NgpCode, Long> {
 
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"),
+            @QueryHint(name = HibernateHints.HINT_CACHE_REGION, value = ReferenceCacheRegions.QUERIES)
+    })
     Optional<NgpCode> findByNgpCode(String ngpCode);
 
     List<NgpCode> findByCategoryCode(String categoryCode);
@@ -31,4 +40,7 @@ public interface NgpCodeRepository extends JpaRepository<NgpCode, Long> {
     List<NgpCode> findActiveByProductType(@Param("type") String productType);
 
     boolean existsByNgpCode(String ngpCode);
-}
\ No newline at end of file
+
+    @Query("SELECT MAX(n.updatedAt) FROM NgpCode n")
+    LocalDateTime findLastUpdatedAt();
+}
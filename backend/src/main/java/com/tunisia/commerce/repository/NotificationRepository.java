@@ -29,6 +29,14 @@ public interface NotificationRepository extends JpaRepository<Notification, Long
     // Compter les notifications non lues d'un utilisateur
     long countByReceiverIdAndStatus(Long receiverId, NotificationStatus status);
 
+    // Marquer toutes les notifications non lues d'un utilisateur comme lues
+    @Modifying
+    @Query("UPDATE Notification n SET n.status = :readStatus, n.readAt = :readAt WHERE n.receiver.id = :receiverId AND n.status = :unreadStatus")
+    int markAllAsRead(@Param("receiverId") Long receiverId,
+                      @Param("readStatus") NotificationStatus readStatus,
+                      @Param("readAt") LocalDateTime readAt,
+                      @Param("unreadStatus") NotificationStatus unreadStatus);
+
     // Supprimer les notifications plus anciennes qu'une date donnée
 
     List<Notification> findBySenderIdAndActionAndStatus(Long senderId, NotificationAction action, NotificationStatus status);
@@ -0,0 +1,57 @@
+package com.tunisia.commerce.repository;
+
+import com.tunisia.commerce.entity.PaymentLedgerEntry;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface PaymentLedgerRepository extends JpaRepository<PaymentLedgerEntry, Long> {
+
+    Optional<PaymentLedgerEntry> findByPaymentIntentId(String paymentIntentId);
+
+    // Écritures du registre : les écrivains concurrents d'un même PaymentIntent se succèdent sur ce verrou
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT l FROM PaymentLedgerEntry l WHERE l.paymentIntentId = :paymentIntentId")
+    Optional<PaymentLedgerEntry> lockByPaymentIntentId(@Param("paymentIntentId") String paymentIntentId);
+
+    // Ligne réservée avant la première écriture, complétée dans la même transaction :
+    // un second écrivain attend sa validation puis verrouille la ligne au lieu d'en insérer une autre
+    @Modifying
+    @Query(value = "INSERT INTO payment_ledger (payment_intent_id, amount_minor, status, created_at, stripe_updated_at) " +
+            "VALUES (:paymentIntentId, 0, 'reserved', CURRENT_TIMESTAMP, -1) " +
+            "ON CONFLICT (payment_intent_id) DO NOTHING", nativeQuery = true)
+    int reserve(@Param("paymentIntentId") String paymentIntentId);
+
+    List<PaymentLedgerEntry> findAllByOrderByCreatedAtDesc(Pageable pageable);
+
+    List<PaymentLedgerEntry> findByStatusOrderByCreatedAtDesc(String status, Pageable pageable);
+
+    List<PaymentLedgerEntry> findByUserIdOrderByCreatedAtDesc(Long userId);
+
+    Optional<PaymentLedgerEntry> findFirstByDemandeIdOrderByCreatedAtDesc(Long demandeId);
+
+    @Query("SELECT l FROM PaymentLedgerEntry l WHERE " +
+            "(:startDate IS NULL OR l.createdAt >= :startDate) AND " +
+            "(:endDate IS NULL OR l.createdAt <= :endDate) AND " +
+            "(:status IS NULL OR l.status = :status) AND " +
+            "(:paymentMethodType IS NULL OR l.paymentMethodType = :paymentMethodType) " +
+            "ORDER BY l.createdAt DESC")
+    List<PaymentLedgerEntry> findWithFilters(@Param("startDate") LocalDateTime startDate,
+                                             @Param("endDate") LocalDateTime endDate,
+                                             @Param("status") String status,
+                                             @Param("paymentMethodType") String paymentMethodType,
+                                             Pageable pageable);
+
+    @Query("SELECT MAX(l.createdAt) FROM PaymentLedgerEntry l")
+    LocalDateTime findLatestCreatedAt();
+}
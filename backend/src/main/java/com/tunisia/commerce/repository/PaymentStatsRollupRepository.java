@@ -0,0 +1,52 @@
+package com.tunisia.commerce.repository;
+
+import com.tunisia.commerce.entity.PaymentStatsRollup;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface PaymentStatsRollupRepository extends JpaRepository<PaymentStatsRollup, Long> {
+
+    List<PaymentStatsRollup> findByBucket(String bucket);
+
+    // Dates ISO : comparaison lexicographique = chronologique (la ligne TOTAL est hors bornes)
+    List<PaymentStatsRollup> findByBucketBetweenOrderByBucket(String fromBucket, String toBucket);
+
+    // Incrément atomique d'un agrégat, créé au besoin
+    @Modifying
+    @Query(value = "INSERT INTO payment_stats_rollup (bucket, status, payment_method_type, currency, tx_count, amount_minor) " +
+            "VALUES (:bucket, :status, :method, :currency, :countDelta, :amountDelta) " +
+            "ON CONFLICT (bucket, status, payment_method_type, currency) DO UPDATE SET " +
+            "tx_count = payment_stats_rollup.tx_count + EXCLUDED.tx_count, " +
+            "amount_minor = payment_stats_rollup.amount_minor + EXCLUDED.amount_minor", nativeQuery = true)
+    void increment(@Param("bucket") String bucket,
+                   @Param("status") String status,
+                   @Param("method") String method,
+                   @Param("currency") String currency,
+                   @Param("countDelta") long countDelta,
+                   @Param("amountDelta") long amountDelta);
+
+    // Reconstruction depuis le registre
+    @Modifying
+    @Query(value = "DELETE FROM payment_stats_rollup", nativeQuery = true)
+    void deleteAllRows();
+
+    @Modifying
+    @Query(value = "INSERT INTO payment_stats_rollup (bucket, status, payment_method_type, currency, tx_count, amount_minor) " +
+            "SELECT TO_CHAR(created_at, 'YYYY-MM-DD'), status, COALESCE(payment_method_type, ''), COALESCE(LOWER(currency), ''), " +
+            "COUNT(*), SUM(amount_minor) FROM payment_ledger " +
+            "GROUP BY TO_CHAR(created_at, 'YYYY-MM-DD'), status, COALESCE(payment_method_type, ''), COALESCE(LOWER(currency), '')",
+            nativeQuery = true)
+    void rebuildDailyFromLedger();
+
+    @Modifying
+    @Query(value = "INSERT INTO payment_stats_rollup (bucket, status, payment_method_type, currency, tx_count, amount_minor) " +
+            "SELECT 'TOTAL', status, payment_method_type, currency, SUM(tx_count), SUM(amount_minor) " +
+            "FROM payment_stats_rollup GROUP BY status, payment_method_type, currency", nativeQuery = true)
+    void rebuildTotalsFromDaily();
+}
@@ -1,10 +1,13 @@
 package com.tunisia.commerce.repository;
 
 import com.tunisia.commerce.entity.Product;
+import com.tunisia.commerce.enums.DemandeStatus;
+import com.tunisia.commerce.enums.TypeDemandeur;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
+import java.util.Collection;
 import java.util.List;
 
 public interface ProductRepository extends JpaRepository<Product, Long> {
@@ -104,4 +107,39 @@ public interface ProductRepository extends JpaRepository<Product, Long> {
             "WHERE (d.status = 'SOUMISE' OR d.status = 'VALIDEE') " +
             "AND p.productType = :productType")
     List<Object[]> findProductsByTypeWithExporter(@Param("productType") String productType);
+
+    /**
+     * Entrées de l'index de recherche : produit, exportateur et état de la demande porteuse
+     */
+    @Query("SELECT p, e, d.status, d.paymentStatus FROM Product p " +
+            "JOIN p.demandeProduits dp " +
+            "JOIN dp.demande d " +
+            "JOIN d.exportateur e " +
+            "WHERE d.status IN :statuses AND dp.type = :type")
+    List<Object[]> findCatalogueEntries(@Param("statuses") Collection<DemandeStatus> statuses,
+                                        @Param("type") TypeDemandeur type);
+
+    /**
+     * Entrées de l'index pour une demande donnée (mise à jour incrémentale)
+     */
+    @Query("SELECT p, e, d.status, d.paymentStatus FROM Product p " +
+            "JOIN p.demandeProduits dp " +
+            "JOIN dp.demande d " +
+            "JOIN d.exportateur e " +
+            "WHERE d.id = :demandeId AND dp.type = :type")
+    List<Object[]> findCatalogueEntriesByDemandeId(@Param("demandeId") Long demandeId,
+                                                   @Param("type") TypeDemandeur type);
+
+    /**
+     * Entrées du catalogue des produits donnés, toutes demandes confondues (un produit peut
+     * figurer dans plusieurs demandes)
+     */
+    @Query("SELECT p, e, d.status, d.paymentStatus FROM Product p " +
+            "JOIN p.demandeProduits dp " +
+            "JOIN dp.demande d " +
+            "JOIN d.exportateur e " +
+            "WHERE p.id IN :productIds AND d.status IN :statuses AND dp.type = :type")
+    List<Object[]> findCatalogueEntriesByProductIds(@Param("productIds") Collection<Long> productIds,
+                                                    @Param("statuses") Collection<DemandeStatus> statuses,
+                                                    @Param("type") TypeDemandeur type);
 }
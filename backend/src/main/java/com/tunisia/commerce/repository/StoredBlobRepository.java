@@ -0,0 +1,68 @@
+package com.tunisia.commerce.repository;
+
+import com.tunisia.commerce.entity.StoredBlob;
+import com.tunisia.commerce.enums.ScanVerdict;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface StoredBlobRepository extends JpaRepository<StoredBlob, String> {
+
+    // Crée le blob ou incrémente son compteur ; le verrou de ligne est tenu jusqu'à la fin de la transaction
+    @Modifying
+    @Query(value = "INSERT INTO stored_blobs (hash, storage_path, size, ref_count, created_at, zero_ref_since) " +
+            "VALUES (:hash, :storagePath, :size, 1, :now, NULL) " +
+            "ON CONFLICT (hash) DO UPDATE SET ref_count = stored_blobs.ref_count + 1, zero_ref_since = NULL",
+            nativeQuery = true)
+    int acquire(@Param("hash") String hash,
+                @Param("storagePath") String storagePath,
+                @Param("size") long size,
+                @Param("now") LocalDateTime now);
+
+    // Indexe sans référence un fichier resté sur disque, pour que le ramasse-miettes le reprenne
+    @Modifying
+    @Query(value = "INSERT INTO stored_blobs (hash, storage_path, size, ref_count, created_at, zero_ref_since) " +
+            "VALUES (:hash, :storagePath, :size, 0, :now, :now) ON CONFLICT (hash) DO NOTHING",
+            nativeQuery = true)
+    int registerUnreferenced(@Param("hash") String hash,
+                             @Param("storagePath") String storagePath,
+                             @Param("size") long size,
+                             @Param("now") LocalDateTime now);
+
+    @Modifying
+    @Query(value = "UPDATE stored_blobs SET ref_count = ref_count - 1, " +
+            "zero_ref_since = CASE WHEN ref_count = 1 THEN :now ELSE zero_ref_since END " +
+            "WHERE hash = :hash AND ref_count > 0", nativeQuery = true)
+    int release(@Param("hash") String hash, @Param("now") LocalDateTime now);
+
+    @Query(value = "SELECT hash FROM stored_blobs WHERE ref_count = 0 AND zero_ref_since < :cutoff " +
+            "ORDER BY zero_ref_since LIMIT :limit FOR UPDATE SKIP LOCKED", nativeQuery = true)
+    List<String> lockCollectable(@Param("cutoff") LocalDateTime cutoff, @Param("limit") int limit);
+
+    @Modifying
+    @Query("DELETE FROM StoredBlob b WHERE b.hash IN :hashes AND b.refCount = 0")
+    int deleteUnreferenced(@Param("hashes") Collection<String> hashes);
+
+    long countByRefCount(Integer refCount);
+
+    // ==================== VERDICTS ANTIVIRUS ====================
+
+    @Query("SELECT b.scanVerdict FROM StoredBlob b WHERE b.hash = :hash")
+    Optional<ScanVerdict> findScanVerdict(@Param("hash") String hash);
+
+    @Modifying
+    @Query("UPDATE StoredBlob b SET b.scanVerdict = :verdict, b.scanSignature = :signature, b.scannedAt = :scannedAt " +
+            "WHERE b.hash = :hash")
+    int recordScanVerdict(@Param("hash") String hash,
+                          @Param("verdict") ScanVerdict verdict,
+                          @Param("signature") String signature,
+                          @Param("scannedAt") LocalDateTime scannedAt);
+}
@@ -0,0 +1,60 @@
+package com.tunisia.commerce.repository;
+
+import com.tunisia.commerce.entity.StripeWebhookEvent;
+import com.tunisia.commerce.enums.WebhookEventStatus;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface StripeWebhookEventRepository extends JpaRepository<StripeWebhookEvent, Long> {
+
+    // Insertion dédupliquée sur l'identifiant Stripe : 0 ligne si l'événement est déjà connu
+    @Modifying
+    @Transactional
+    @Query(value = "INSERT INTO stripe_webhook_inbox (event_id, event_type, ordering_key, payload, status, attempts, received_at) " +
+            "VALUES (:eventId, :eventType, :orderingKey, :payload, 'EN_ATTENTE', 0, :receivedAt) " +
+            "ON CONFLICT (event_id) DO NOTHING", nativeQuery = true)
+    int insertIfAbsent(@Param("eventId") String eventId,
+                       @Param("eventType") String eventType,
+                       @Param("orderingKey") String orderingKey,
+                       @Param("payload") String payload,
+                       @Param("receivedAt") LocalDateTime receivedAt);
+
+    List<StripeWebhookEvent> findByStatusInOrderByIdAsc(Collection<WebhookEventStatus> statuses, Pageable pageable);
+
+    List<StripeWebhookEvent> findByStatusOrderByIdDesc(WebhookEventStatus status, Pageable pageable);
+
+    long countByStatus(WebhookEventStatus status);
+
+    // Prise en charge exclusive (plusieurs instances possibles), datée pour le bail
+    @Modifying
+    @Transactional
+    @Query("UPDATE StripeWebhookEvent e SET e.status = com.tunisia.commerce.enums.WebhookEventStatus.EN_COURS, " +
+            "e.attempts = e.attempts + 1, e.claimedAt = :now WHERE e.id = :id AND e.status IN :claimable")
+    int claim(@Param("id") Long id,
+              @Param("claimable") Collection<WebhookEventStatus> claimable,
+              @Param("now") LocalDateTime now);
+
+    // Remise en file des seules prises en charge dont le bail a expiré (instance arrêtée pendant le traitement)
+    @Modifying
+    @Transactional
+    @Query("UPDATE StripeWebhookEvent e SET e.status = com.tunisia.commerce.enums.WebhookEventStatus.EN_ATTENTE, " +
+            "e.claimedAt = NULL WHERE e.status = com.tunisia.commerce.enums.WebhookEventStatus.EN_COURS " +
+            "AND (e.claimedAt IS NULL OR e.claimedAt < :before)")
+    int releaseClaimedBefore(@Param("before") LocalDateTime before);
+
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM StripeWebhookEvent e WHERE e.status = com.tunisia.commerce.enums.WebhookEventStatus.TRAITE " +
+            "AND e.processedAt < :before")
+    int deleteProcessedBefore(@Param("before") LocalDateTime before);
+}
@@ -1,10 +1,14 @@
 // StructureCompetenceRepository.java
 package com.tunisia.commerce.repository;
 
+import com.tunisia.commerce.cache.ReferenceCacheRegions;
 import com.tunisia.commerce.entity.StructureCompetence;
 import com.tunisia.commerce.entity.StructureInterne;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import java.util.List;
 import java.util.Set;
@@ -12,16 +16,32 @@ import java.util.Set;
 public interface StructureCompetenceRepository extends JpaRepository<StructureCompetence, Long> {
 
     // Trouver les structures qui peuvent valider une catégorie spécifique
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"),
+            @QueryHint(name = HibernateHints.HINT_CACHE_REGION, value = ReferenceCacheRegions.QUERIES)
+    })
     List<StructureCompetence> findByStructure(StructureInterne structure);
 
     // Trouver les structures compétentes pour plusieurs catégories
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"),
+            @QueryHint(name = HibernateHints.HINT_CACHE_REGION, value = ReferenceCacheRegions.QUERIES)
+    })
     @Query("SELECT sc FROM StructureCompetence sc WHERE sc.productCategory IN :categories AND sc.isActive = true")
     List<StructureCompetence> findByProductCategories(@Param("categories") Set<String> categories);
 
     // Trouver les compétences d'une structure
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"),
+            @QueryHint(name = HibernateHints.HINT_CACHE_REGION, value = ReferenceCacheRegions.QUERIES)
+    })
     List<StructureCompetence> findByStructureAndIsActiveTrue(StructureInterne structure);
 
     // Trouver le validateur par défaut (compétence 'default')
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"),
+            @QueryHint(name = HibernateHints.HINT_CACHE_REGION, value = ReferenceCacheRegions.QUERIES)
+    })
     @Query("SELECT sc FROM StructureCompetence sc WHERE sc.productCategory = 'default' AND sc.isActive = true")
     List<StructureCompetence> findDefaultValidators();
 }
\ No newline at end of file
@@ -1,9 +1,13 @@
 package com.tunisia.commerce.repository;
 
 
+import com.tunisia.commerce.cache.ReferenceCacheRegions;
 import com.tunisia.commerce.entity.StructureInterne;
 import com.tunisia.commerce.enums.StructureType;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
@@ -12,8 +16,16 @@ import java.util.Optional;
 @Repository
 public interface StructureInterneRepository extends JpaRepository<StructureInterne, Long> {
 
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"),
+            @QueryHint(name = HibernateHints.HINT_CACHE_REGION, value = ReferenceCacheRegions.QUERIES)
+    })
     Optional<StructureInterne> findByOfficialName(String name);
     List<StructureInterne> findByOfficialNameContaining(String name);
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"),
+            @QueryHint(name = HibernateHints.HINT_CACHE_REGION, value = ReferenceCacheRegions.QUERIES)
+    })
     List<StructureInterne> findByIsActiveTrue();
 
     List<StructureInterne> findByType(StructureType type);
@@ -0,0 +1,38 @@
+package com.tunisia.commerce.repository;
+
+import com.tunisia.commerce.entity.UploadSession;
+import com.tunisia.commerce.enums.UploadSessionStatus;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface UploadSessionRepository extends JpaRepository<UploadSession, String> {
+
+    // Finalisation et annulation : sérialisées avec l'ajout d'un morceau en cours de validation
+    @Query(value = "SELECT * FROM upload_sessions WHERE id = :id FOR UPDATE", nativeQuery = true)
+    Optional<UploadSession> lockById(@Param("id") String id);
+
+    // Avance la position seulement si elle n'a pas bougé depuis la vérification (0 ligne : position périmée)
+    @Modifying
+    @Query("UPDATE UploadSession s SET s.receivedBytes = :received, s.updatedAt = :now, s.expiresAt = :expiresAt " +
+            "WHERE s.id = :id AND s.receivedBytes = :expected " +
+            "AND s.status = com.tunisia.commerce.enums.UploadSessionStatus.EN_COURS")
+    int advance(@Param("id") String id,
+                @Param("expected") long expected,
+                @Param("received") long received,
+                @Param("now") LocalDateTime now,
+                @Param("expiresAt") LocalDateTime expiresAt);
+
+    @Query(value = "SELECT * FROM upload_sessions WHERE status = 'EN_COURS' AND expires_at < :now " +
+            "ORDER BY expires_at LIMIT :limit FOR UPDATE SKIP LOCKED", nativeQuery = true)
+    List<UploadSession> lockExpired(@Param("now") LocalDateTime now, @Param("limit") int limit);
+
+    long countByOwnerIdAndStatus(Long ownerId, UploadSessionStatus status);
+}
@@ -38,4 +38,8 @@ public interface UserRepository extends JpaRepository<User, Long> {
 
     @Query(value = "SELECT last_failed_login_attempt FROM users WHERE email = :email", nativeQuery = true)
     LocalDateTime getLastFailedAttempt(@Param("email") String email);
+
+    // Principal authentifié : table users seule, sans les jointures de l'héritage
+    @Query(value = "SELECT id, email, user_role, user_type, user_statut FROM users WHERE email = :email", nativeQuery = true)
+    List<Object[]> findPrincipalByEmail(@Param("email") String email);
 }
\ No newline at end of file
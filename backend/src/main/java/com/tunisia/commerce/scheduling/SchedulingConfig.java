@@ -0,0 +1,20 @@
+package com.tunisia.commerce.scheduling;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.PropertySource;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+/**
+ * Active les tâches {@code @Scheduled} : distribution des webhooks Stripe et de l'outbox e-mail,
+ * rapprochement du registre de paiements, sonde du disjoncteur ML, purges et ramasse-miettes
+ * du stockage, archivage nocturne, etc.
+ *
+ * Les tâches s'exécutent sur le planificateur de Spring Boot ; sa taille par défaut est dans
+ * scheduling.properties (un seul thread laisserait un archivage ou un rapprochement long
+ * bloquer les files à intervalle court). application.properties reste prioritaire.
+ */
+@Configuration
+@EnableScheduling
+@PropertySource("classpath:scheduling.properties")
+public class SchedulingConfig {
+}
@@ -0,0 +1,46 @@
+package com.tunisia.commerce.security;
+
+import com.tunisia.commerce.enums.UserRole;
+import com.tunisia.commerce.enums.UserStatus;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * Utilisateur authentifié de la requête courante, résolu une fois par le filtre
+ * (voir PrincipalResolutionFilter) depuis le cache des principaux.
+ * Ne contient que ce que les contrôleurs vérifient : identité, rôle, sous-type et statut.
+ */
+@Getter
+@AllArgsConstructor
+@ToString
+public class AuthenticatedUser {
+
+    private final Long id;
+    private final String email;
+    private final UserRole role;
+    // Valeur du discriminant user_type (ADMIN, DOUANE, EXPORTATEUR, INSTANCE_VALIDATION, ...)
+    private final String userType;
+    private final UserStatus status;
+
+    public boolean hasRole(UserRole expected) {
+        return role == expected;
+    }
+
+    public boolean hasAnyRole(UserRole... expected) {
+        for (UserRole candidate : expected) {
+            if (role == candidate) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public boolean isUserType(String expected) {
+        return expected.equals(userType);
+    }
+
+    public boolean isActive() {
+        return status == UserStatus.ACTIF;
+    }
+}
@@ -0,0 +1,17 @@
+package com.tunisia.commerce.security;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Injecte l'utilisateur authentifié ({@link AuthenticatedUser}) dans un paramètre de contrôleur.
+ * Sans utilisateur authentifié, la requête est rejetée (401) sauf si {@code required = false}.
+ */
+@Target(ElementType.PARAMETER)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface CurrentUser {
+
+    boolean required() default true;
+}
@@ -0,0 +1,34 @@
+package com.tunisia.commerce.security;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.annotation.Order;
+import org.springframework.security.config.Customizer;
+import org.springframework.security.config.annotation.web.builders.HttpSecurity;
+import org.springframework.security.config.http.SessionCreationPolicy;
+import org.springframework.security.web.SecurityFilterChain;
+
+/**
+ * Chaîne dédiée au flux SSE des notifications, évaluée avant la chaîne principale.
+ *
+ * EventSource ne peut pas envoyer le token JWT : la requête est authentifiée par le ticket
+ * à usage unique qu'elle porte, vérifié par NotificationController (401 sinon).
+ */
+@Configuration
+public class NotificationStreamSecurityConfig {
+
+    @Bean
+    @Order(1)
+    public SecurityFilterChain notificationStreamFilterChain(HttpSecurity http) throws Exception {
+        http
+                .securityMatcher("/api/notifications/stream")
+                .cors(Customizer.withDefaults())
+                .csrf(csrf -> csrf.disable())
+                .sessionManagement(session -> session
+                        .sessionCreationPolicy(SessionCreationPolicy.STATELESS)
+                )
+                .authorizeHttpRequests(auth -> auth.anyRequest().permitAll());
+
+        return http.build();
+    }
+}
@@ -0,0 +1,76 @@
+package com.tunisia.commerce.security;
+
+import com.tunisia.commerce.config.JwtUtil;
+import com.tunisia.commerce.service.impl.PrincipalCacheService;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.security.authentication.AnonymousAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+
+/**
+ * Résout une fois par requête l'utilisateur authentifié et le pose en attribut de requête.
+ *
+ * Enregistré après la chaîne Spring Security (ordre par défaut) : l'email est repris de
+ * l'authentification déjà établie par JwtAuthenticationFilter ; le token n'est relu que si
+ * aucune authentification n'est présente.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class PrincipalResolutionFilter extends OncePerRequestFilter {
+
+    public static final String PRINCIPAL_ATTRIBUTE = PrincipalResolutionFilter.class.getName() + ".PRINCIPAL";
+
+    private final PrincipalCacheService principalCacheService;
+    private final JwtUtil jwtUtil;
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request,
+                                    HttpServletResponse response,
+                                    FilterChain filterChain)
+            throws ServletException, IOException {
+
+        String email = resolveEmail(request);
+        if (email != null) {
+            try {
+                AuthenticatedUser principal = principalCacheService.resolve(email);
+                if (principal != null) {
+                    request.setAttribute(PRINCIPAL_ATTRIBUTE, principal);
+                }
+            } catch (Exception e) {
+                // Les contrôleurs qui exigent un utilisateur répondront 401
+                log.warn("Résolution de l'utilisateur {} impossible: {}", email, e.getMessage());
+            }
+        }
+
+        filterChain.doFilter(request, response);
+    }
+
+    private String resolveEmail(HttpServletRequest request) {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication != null && authentication.isAuthenticated()
+                && !(authentication instanceof AnonymousAuthenticationToken)) {
+            return authentication.getName();
+        }
+
+        String authHeader = request.getHeader("Authorization");
+        if (authHeader == null || !authHeader.startsWith("Bearer ")) {
+            return null;
+        }
+        String token = authHeader.substring(7);
+        try {
+            return jwtUtil.validateToken(token) && !jwtUtil.isTempToken(token) ? jwtUtil.extractUsername(token) : null;
+        } catch (Exception e) {
+            return null;
+        }
+    }
+}
@@ -1,12 +1,9 @@
 package com.tunisia.commerce.service;
 
 import com.tunisia.commerce.enums.ValidationNotificationType;
-import jakarta.mail.MessagingException;
-import jakarta.mail.internet.MimeMessage;
+import com.tunisia.commerce.service.impl.EmailOutboxService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.mail.javamail.JavaMailSender;
-import org.springframework.mail.javamail.MimeMessageHelper;
 import org.springframework.stereotype.Service;
 import org.thymeleaf.TemplateEngine;
 import org.thymeleaf.context.Context;
@@ -21,93 +18,54 @@ import java.util.logging.Logger;
 @RequiredArgsConstructor
 public class EmailService {
 
-    private final JavaMailSender mailSender;
+    private final EmailOutboxService emailOutboxService;
     private final TemplateEngine templateEngine;
     Logger logger = Logger.getLogger(getClass().getName());
 
-    @Value("${spring.mail.username}")
-    private String fromEmail;
-
     @Value("${app.frontend.url}")
     private String frontendUrl;
 
     // ==================== MÉTHODES EXISTANTES (INCHANGÉES) ====================
 
     public void sendVerificationEmail(String toEmail, String verificationToken, String companyName) {
-        try {
-            MimeMessage message = mailSender.createMimeMessage();
-            MimeMessageHelper helper = new MimeMessageHelper(message, true, "UTF-8");
-
-            helper.setFrom(fromEmail);
-            helper.setTo(toEmail);
-            helper.setSubject("Vérification de votre compte - Portail National Tunisien");
-
-            Context context = new Context();
-            context.setVariable("companyName", companyName);
-            context.setVariable("verificationUrl", frontendUrl + "/#/login?token=" + verificationToken);
-            context.setVariable("supportEmail", "support@tunisia-commerce.gov.tn");
-
-            String htmlContent = templateEngine.process("email/verification", context);
-            helper.setText(htmlContent, true);
+        String subject = "Vérification de votre compte - Portail National Tunisien";
 
-            mailSender.send(message);
-            logger.info("Email de vérification envoyé à: " + toEmail);
+        Context context = new Context();
+        context.setVariable("companyName", companyName);
+        context.setVariable("verificationUrl", frontendUrl + "/#/login?token=" + verificationToken);
+        context.setVariable("supportEmail", "support@tunisia-commerce.gov.tn");
 
-        } catch (MessagingException e) {
-            throw new RuntimeException("Erreur lors de l'envoi de l'email de vérification", e);
-        }
+        String htmlContent = templateEngine.process("email/verification", context);
+        emailOutboxService.enqueue(toEmail, subject, htmlContent, "email/verification");
+        logger.info("Email de vérification mis en file pour: " + toEmail);
     }
 
     public void sendPasswordResetEmail(String toEmail, String resetToken, String companyName) {
-        try {
-            MimeMessage message = mailSender.createMimeMessage();
-            MimeMessageHelper helper = new MimeMessageHelper(message, true, "UTF-8");
-
-            helper.setFrom(fromEmail);
-            helper.setTo(toEmail);
-            helper.setSubject("Réinitialisation de votre mot de passe - Portail National Tunisien");
-
-            Context context = new Context();
-            context.setVariable("companyName", companyName);
-            context.setVariable("resetUrl", frontendUrl + "/#/reset-password?token=" + resetToken);
-            context.setVariable("supportEmail", "support@tunisia-commerce.gov.tn");
-            context.setVariable("expiryHours", 24);
+        String subject = "Réinitialisation de votre mot de passe - Portail National Tunisien";
 
-            String htmlContent = templateEngine.process("email/password-reset", context);
-            helper.setText(htmlContent, true);
-            mailSender.send(message);
+        Context context = new Context();
+        context.setVariable("companyName", companyName);
+        context.setVariable("resetUrl", frontendUrl + "/#/reset-password?token=" + resetToken);
+        context.setVariable("supportEmail", "support@tunisia-commerce.gov.tn");
+        context.setVariable("expiryHours", 24);
 
-            logger.info("Email de réinitialisation envoyé à: " + toEmail);
-
-        } catch (MessagingException e) {
-            throw new RuntimeException("Erreur lors de l'envoi de l'email de réinitialisation", e);
-        }
+        String htmlContent = templateEngine.process("email/password-reset", context);
+        emailOutboxService.enqueue(toEmail, subject, htmlContent, "email/password-reset");
+        logger.info("Email de réinitialisation mis en file pour: " + toEmail);
     }
 
     public void sendPasswordChangeNotification(String toEmail, String companyName) {
-        try {
-            MimeMessage message = mailSender.createMimeMessage();
-            MimeMessageHelper helper = new MimeMessageHelper(message, true, "UTF-8");
-
-            helper.setFrom(fromEmail);
-            helper.setTo(toEmail);
-            helper.setSubject("Confirmation de changement de mot de passe - Portail National Tunisien");
-
-            Context context = new Context();
-            context.setVariable("companyName", companyName);
-            context.setVariable("supportEmail", "support@tunisia-commerce.gov.tn");
-            context.setVariable("loginUrl", frontendUrl + "/#/login");
-            context.setVariable("currentDate", LocalDate.now().toString());
+        String subject = "Confirmation de changement de mot de passe - Portail National Tunisien";
 
-            String htmlContent = templateEngine.process("email/password-change-notification", context);
-            helper.setText(htmlContent, true);
-            mailSender.send(message);
+        Context context = new Context();
+        context.setVariable("companyName", companyName);
+        context.setVariable("supportEmail", "support@tunisia-commerce.gov.tn");
+        context.setVariable("loginUrl", frontendUrl + "/#/login");
+        context.setVariable("currentDate", LocalDate.now().toString());
 
-            logger.info("Notification de changement de mot de passe envoyée à: " + toEmail);
-
-        } catch (MessagingException e) {
-            throw new RuntimeException("Erreur lors de l'envoi de la notification de changement de mot de passe", e);
-        }
+        String htmlContent = templateEngine.process("email/password-change-notification", context);
+        emailOutboxService.enqueue(toEmail, subject, htmlContent, "email/password-change-notification");
+        logger.info("Notification de changement de mot de passe mise en file pour: " + toEmail);
     }
 
     // ==================== UNE SEULE MÉTHODE GÉNÉRIQUE POUR LES NOTIFICATIONS DE VALIDATION ====================
@@ -122,35 +80,23 @@ public class EmailService {
     public void sendValidationNotification(String toEmail, String companyName,
                                            ValidationNotificationType type,
                                            Map<String, Object> additionalParams) {
-        try {
-            MimeMessage message = mailSender.createMimeMessage();
-            MimeMessageHelper helper = new MimeMessageHelper(message, true, "UTF-8");
-
-            helper.setFrom(fromEmail);
-            helper.setTo(toEmail);
-            helper.setSubject(getSubjectForType(type));
-
-            Context context = new Context();
-            context.setVariable("companyName", companyName);
-            context.setVariable("supportEmail", "support@tunisia-commerce.gov.tn");
-            context.setVariable("frontendUrl", frontendUrl);
-            context.setVariable("currentDate", LocalDate.now().toString());
-
-            // Ajouter les paramètres supplémentaires
-            if (additionalParams != null) {
-                additionalParams.forEach(context::setVariable);
-            }
-
-            String templateName = getTemplateForType(type);
-            String htmlContent = templateEngine.process(templateName, context);
-            helper.setText(htmlContent, true);
-
-            mailSender.send(message);
-            logger.info("Notification de validation (" + type + ") envoyée à: " + toEmail);
-
-        } catch (MessagingException e) {
-            throw new RuntimeException("Erreur lors de l'envoi de la notification de validation", e);
+        String subject = getSubjectForType(type);
+
+        Context context = new Context();
+        context.setVariable("companyName", companyName);
+        context.setVariable("supportEmail", "support@tunisia-commerce.gov.tn");
+        context.setVariable("frontendUrl", frontendUrl);
+        context.setVariable("currentDate", LocalDate.now().toString());
+
+        // Ajouter les paramètres supplémentaires
+        if (additionalParams != null) {
+            additionalParams.forEach(context::setVariable);
         }
+
+        String templateName = getTemplateForType(type);
+        String htmlContent = templateEngine.process(templateName, context);
+        emailOutboxService.enqueue(toEmail, subject, htmlContent, templateName);
+        logger.info("Notification de validation (" + type + ") mise en file pour: " + toEmail);
     }
 
     /**
@@ -284,59 +230,35 @@ public class EmailService {
      * @param code Code 2FA à 6 chiffres
      */
     public void sendTwoFactorCode(String toEmail, String companyName, String code) {
-        try {
-            MimeMessage message = mailSender.createMimeMessage();
-            MimeMessageHelper helper = new MimeMessageHelper(message, true, "UTF-8");
-
-            helper.setFrom(fromEmail);
-            helper.setTo(toEmail);
-            helper.setSubject("Code de vérification 2FA - Portail National Tunisien");
-
-            Context context = new Context();
-            context.setVariable("companyName", companyName);
-            context.setVariable("code", code);
-            context.setVariable("supportEmail", "support@tunisia-commerce.gov.tn");
-            context.setVariable("currentDate", LocalDate.now().toString());
-            context.setVariable("codeValidityMinutes", 5); // Validité de 5 minutes
-
-            String htmlContent = templateEngine.process("email/two-factor-code", context);
-            helper.setText(htmlContent, true);
-
-            mailSender.send(message);
-            logger.info("Code 2FA envoyé à: " + toEmail);
-
-        } catch (MessagingException e) {
-            throw new RuntimeException("Erreur lors de l'envoi du code 2FA", e);
-        }
+        String subject = "Code de vérification 2FA - Portail National Tunisien";
+
+        Context context = new Context();
+        context.setVariable("companyName", companyName);
+        context.setVariable("code", code);
+        context.setVariable("supportEmail", "support@tunisia-commerce.gov.tn");
+        context.setVariable("currentDate", LocalDate.now().toString());
+        context.setVariable("codeValidityMinutes", 5); // Validité de 5 minutes
+
+        String htmlContent = templateEngine.process("email/two-factor-code", context);
+        emailOutboxService.enqueue(toEmail, subject, htmlContent, "email/two-factor-code");
+        logger.info("Code 2FA mis en file pour: " + toEmail);
     }
 
     /**
      * Envoie un code 2FA avec expiration
      */
     public void sendTwoFactorCodeWithExpiry(String toEmail, String companyName, String code, int expiryMinutes) {
-        try {
-            MimeMessage message = mailSender.createMimeMessage();
-            MimeMessageHelper helper = new MimeMessageHelper(message, true, "UTF-8");
-
-            helper.setFrom(fromEmail);
-            helper.setTo(toEmail);
-            helper.setSubject("Code de vérification 2FA - Portail National Tunisien");
-
-            Context context = new Context();
-            context.setVariable("companyName", companyName);
-            context.setVariable("code", code);
-            context.setVariable("supportEmail", "support@tunisia-commerce.gov.tn");
-            context.setVariable("currentDate", LocalDate.now().toString());
-            context.setVariable("codeValidityMinutes", expiryMinutes);
-
-            String htmlContent = templateEngine.process("email/two-factor-code", context);
-            helper.setText(htmlContent, true);
-
-            mailSender.send(message);
-            logger.info("Code 2FA envoyé à: " + toEmail + " (valide " + expiryMinutes + " minutes)");
-
-        } catch (MessagingException e) {
-            throw new RuntimeException("Erreur lors de l'envoi du code 2FA", e);
-        }
+        String subject = "Code de vérification 2FA - Portail National Tunisien";
+
+        Context context = new Context();
+        context.setVariable("companyName", companyName);
+        context.setVariable("code", code);
+        context.setVariable("supportEmail", "support@tunisia-commerce.gov.tn");
+        context.setVariable("currentDate", LocalDate.now().toString());
+        context.setVariable("codeValidityMinutes", expiryMinutes);
+
+        String htmlContent = templateEngine.process("email/two-factor-code", context);
+        emailOutboxService.enqueue(toEmail, subject, htmlContent, "email/two-factor-code");
+        logger.info("Code 2FA mis en file pour: " + toEmail + " (valide " + expiryMinutes + " minutes)");
     }
 }
\ No newline at end of file
@@ -18,6 +18,11 @@ public interface NotificationService {
      */
     //NotificationResponseDTO createNotification(NotificationRequestDTO requestDTO);
 
+    /**
+     * Créer une notification système (sans action attendue) adressée à un utilisateur
+     */
+    NotificationResponseDTO createSystemNotification(Long receiverId, String title, String targetEntityType);
+
     /**
      * Récupérer toutes les notifications d'un utilisateur
      */
@@ -41,7 +46,7 @@ public interface NotificationService {
     /**
      * Marquer toutes les notifications d'un utilisateur comme lues
      */
-    //void markAllAsRead(Long userId);
+    void markAllAsRead(Long userId);
 
     /**
      * Traiter une action sur une notification (accepter/rejeter)
@@ -3,14 +3,9 @@ package com.tunisia.commerce.service;
 import com.ibm.icu.text.ArabicShaping;
 import com.ibm.icu.text.ArabicShapingException;
 import com.ibm.icu.text.Bidi;
-import com.itextpdf.io.font.FontProgram;
-import com.itextpdf.io.font.FontProgramFactory;
-import com.itextpdf.io.font.PdfEncodings;
-import com.itextpdf.kernel.font.PdfFontFactory.EmbeddingStrategy;
 import com.itextpdf.io.image.ImageDataFactory;
 import com.itextpdf.kernel.colors.DeviceRgb;
 import com.itextpdf.kernel.font.PdfFont;
-import com.itextpdf.kernel.font.PdfFontFactory;
 import com.itextpdf.kernel.geom.PageSize;
 import com.itextpdf.kernel.pdf.PdfDocument;
 import com.itextpdf.kernel.pdf.PdfWriter;
@@ -23,20 +18,23 @@ import com.itextpdf.layout.properties.HorizontalAlignment;
 import com.itextpdf.layout.properties.TextAlignment;
 import com.itextpdf.layout.properties.UnitValue;
 import com.itextpdf.layout.properties.VerticalAlignment;
-import com.tunisia.commerce.entity.DemandeEnregistrement;
-import com.tunisia.commerce.entity.DemandeProduit;
 import com.tunisia.commerce.entity.ImportateurTunisien;
+import com.tunisia.commerce.enums.DemandeStatus;
 import com.tunisia.commerce.repository.DemandeEnregistrementRepository;
 import com.tunisia.commerce.repository.DemandeProduitRepository;
 import com.tunisia.commerce.repository.ImportateurRepository;
+import com.tunisia.commerce.service.impl.PdfFontCache;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
 
-import java.io.ByteArrayOutputStream;
-import java.io.InputStream;
+import java.io.OutputStream;
+import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -49,6 +47,7 @@ public class RapportPDFService {
     private final DemandeProduitRepository demandeProduitRepository;
     private final ImportateurRepository importateurRepository;
     private final ImportateurService importateurService;
+    private final PdfFontCache pdfFontCache;
 
     // ─── Palette sobre ───────────────────────────────────────────────────────
     /** Rouge tunisien — uniquement pour en-tête, filets et barre de section */
@@ -68,28 +67,36 @@ public class RapportPDFService {
     /** Blanc */
     private static final DeviceRgb BLANC        = new DeviceRgb(255, 255, 255);
 
+    /** Lignes du tableau des demandes lues et écrites par lot (mémoire constante) */
+    private static final int DEMANDES_BATCH_SIZE = 200;
+
+    private static final DateTimeFormatter DATE_TABLE = DateTimeFormatter.ofPattern("dd/MM/yyyy");
+
     private static final String COAT_OF_ARMS_URL =
             "https://upload.wikimedia.org/wikipedia/commons/thumb/7/76/" +
                     "Coat_of_arms_of_Tunisia.svg/200px-Coat_of_arms_of_Tunisia.svg.png";
 
     // ────────────────────────────────────────────────────────────────────────
 
-    public byte[] generateRapportPDF(Long importateurId) {
+    /**
+     * Rend le rapport directement dans le flux fourni (réponse HTTP ou fichier temporaire) :
+     * les pages sont écrites au fur et à mesure, sans tampon du document complet en mémoire.
+     */
+    public void generateRapportPDF(Long importateurId, OutputStream out) {
         log.info("Génération du rapport PDF officiel pour importateur ID: {}", importateurId);
         try {
-            Map<String, Object>         stats       = importateurService.getDashboardStats(importateurId);
-            List<DemandeEnregistrement> demandes    = demandeRepository.findByImportateurId(importateurId);
-            ImportateurTunisien         importateur = importateurRepository.findById(importateurId).orElse(null);
+            Map<String, Object>         stats         = importateurService.getDashboardStats(importateurId);
+            long                        totalDemandes = demandeRepository.countByImportateurId(importateurId);
+            ImportateurTunisien         importateur   = importateurRepository.findById(importateurId).orElse(null);
 
-            ByteArrayOutputStream out      = new ByteArrayOutputStream();
             PdfDocument           pdfDoc   = new PdfDocument(new PdfWriter(out));
             Document              document = new Document(pdfDoc, PageSize.A4);
             document.setMargins(40, 50, 40, 50);
 
-            PdfFont fontRegular = PdfFontFactory.createFont("Helvetica");
-            PdfFont fontBold    = PdfFontFactory.createFont("Helvetica-Bold");
-            PdfFont fontItalic  = PdfFontFactory.createFont("Helvetica-Oblique");
-            PdfFont fontArabic  = loadArabicFont();
+            PdfFont fontRegular = pdfFontCache.regular();
+            PdfFont fontBold    = pdfFontCache.bold();
+            PdfFont fontItalic  = pdfFontCache.italic();
+            PdfFont fontArabic  = pdfFontCache.arabic();
 
             String reference = "REF-" + LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss"));
             String dateGen   = LocalDateTime.now().format(DateTimeFormatter.ofPattern("dd/MM/yyyy à HH:mm"));
@@ -97,15 +104,13 @@ public class RapportPDFService {
             addOfficialHeader(document, fontBold, fontRegular, fontArabic);
             addDocumentTitle(document, fontBold, fontItalic, reference, dateGen);
             if (importateur != null) addImporteurSection(document, fontBold, fontRegular, importateur);
-            addKpiSection(document, fontBold, fontRegular, stats, demandes);
+            addKpiSection(document, fontBold, fontRegular, stats, totalDemandes);
             addCategoriesSection(document, fontBold, fontRegular, stats);
-            addDemandesTable(document, fontBold, fontRegular, demandes);
+            addDemandesTable(document, fontBold, fontRegular, importateurId);
             addOfficialFooter(document, fontItalic, pdfDoc, dateGen);
 
             document.close();
-            byte[] pdfBytes = out.toByteArray();
-            log.info("PDF officiel généré : {} bytes", pdfBytes.length);
-            return pdfBytes;
+            log.info("PDF officiel généré : {} page(s), {} demande(s)", pdfDoc.getNumberOfPages(), totalDemandes);
 
         } catch (Exception e) {
             log.error("Erreur génération PDF : {}", e.getMessage(), e);
@@ -113,42 +118,6 @@ public class RapportPDFService {
         }
     }
 
-    // ────────────────────────────────────────────────────────────────────────
-    // Chargement police arabe
-    // Placez NotoSansArabic-Regular.ttf dans src/main/resources/fonts/
-    // Téléchargement : https://fonts.google.com/noto/specimen/Noto+Sans+Arabic
-    // ────────────────────────────────────────────────────────────────────────
-    private PdfFont loadArabicFont() {
-        // 1) Classpath embarqué (recommandé)
-        // Placez NotoSansArabic-Regular.ttf dans src/main/resources/fonts/
-        // Téléchargement : https://fonts.google.com/noto/specimen/Noto+Sans+Arabic
-        try (InputStream is = getClass().getResourceAsStream("/fonts/NotoSansArabic-Regular.ttf")) {
-            if (is != null) {
-                byte[] fontBytes = is.readAllBytes();
-                FontProgram fp = FontProgramFactory.createFont(fontBytes);
-                return PdfFontFactory.createFont(fp, PdfEncodings.IDENTITY_H, EmbeddingStrategy.FORCE_EMBEDDED);
-            }
-        } catch (Exception ignored) {}
-
-        // 2) Système Linux
-        try {
-            FontProgram fp = FontProgramFactory.createFont(
-                    "/usr/share/fonts/truetype/noto/NotoSansArabic-Regular.ttf");
-            return PdfFontFactory.createFont(fp, PdfEncodings.IDENTITY_H, EmbeddingStrategy.FORCE_EMBEDDED);
-        } catch (Exception ignored) {}
-
-        // 3) Système Windows
-        try {
-            FontProgram fp = FontProgramFactory.createFont("C:/Windows/Fonts/arial.ttf");
-            return PdfFontFactory.createFont(fp, PdfEncodings.IDENTITY_H, EmbeddingStrategy.FORCE_EMBEDDED);
-        } catch (Exception ignored) {}
-
-        // 4) Fallback sans crash
-        log.warn("Police arabe introuvable — placez NotoSansArabic-Regular.ttf dans src/main/resources/fonts/");
-        try { return PdfFontFactory.createFont("Helvetica"); }
-        catch (Exception e) { throw new RuntimeException(e); }
-    }
-
     // ────────────────────────────────────────────────────────────────────────
     // 1. En-tête officiel - Français à gauche, Armoiries centre, Arabe à droite
     // ────────────────────────────────────────────────────────────────────────
@@ -341,13 +310,13 @@ public class RapportPDFService {
                                PdfFont fontBold,
                                PdfFont fontRegular,
                                Map<String, Object> stats,
-                               List<DemandeEnregistrement> demandes) throws Exception {
+                               long totalDemandes) throws Exception {
         addSectionTitle(doc, fontBold, "II.  INDICATEURS CLÉS");
 
         String[][] kpiData = {
                 {"Volume Mensuel",       stats.get("volumeMensuel")    != null ? stats.get("volumeMensuel")    + " TND" : "0 TND"},
                 {"Score de Performance", stats.get("performanceScore") != null ? stats.get("performanceScore") + " %"  : "0 %"},
-                {"Total des Demandes",   String.valueOf(demandes.size())}
+                {"Total des Demandes",   String.valueOf(totalDemandes)}
         };
 
         Table kpiTable = new Table(UnitValue.createPercentArray(new float[]{33, 33, 34}));
@@ -418,11 +387,13 @@ public class RapportPDFService {
     private void addDemandesTable(Document doc,
                                   PdfFont fontBold,
                                   PdfFont fontRegular,
-                                  List<DemandeEnregistrement> demandes) throws Exception {
+                                  Long importateurId) throws Exception {
         addSectionTitle(doc, fontBold, "IV.  LISTE DES DEMANDES D'ENREGISTREMENT");
 
-        Table table = new Table(UnitValue.createPercentArray(new float[]{22, 14, 17, 16, 31}));
+        // Tableau « large » : les lignes sont mises en page et écrites par lot
+        Table table = new Table(UnitValue.createPercentArray(new float[]{22, 14, 17, 16, 31}), true);
         table.setWidth(UnitValue.createPercentValue(100)).setMarginBottom(20);
+        doc.add(table);
 
         for (String h : new String[]{"RÉFÉRENCE", "DATE", "MONTANT (TND)", "STATUT", "PAYS D'ORIGINE"}) {
             table.addCell(new Cell()
@@ -433,29 +404,60 @@ public class RapportPDFService {
         }
 
         boolean alt = false;
-        for (DemandeEnregistrement d : demandes) {
-            List<DemandeProduit> dp = demandeProduitRepository.findByDemandeId(d.getId());
-            String pays    = dp.isEmpty() ? "N/A" : dp.get(0).getProduit().getOriginCountry();
-            String status  = d.getStatus() != null ? d.getStatus().toString() : "N/A";
-            DeviceRgb bg   = alt ? GRIS_ALTERNE : BLANC;
-
-            String ref     = d.getReference()     != null ? d.getReference() : "N/A";
-            String date    = d.getSubmittedAt()   != null
-                    ? d.getSubmittedAt().format(DateTimeFormatter.ofPattern("dd/MM/yyyy")) : "N/A";
-            String montant = d.getPaymentAmount() != null ? d.getPaymentAmount().toString() : "0";
-
-            table.addCell(cellData(ref,     fontRegular, TEXTE,    bg));
-            table.addCell(cellData(date,    fontRegular, TEXTE,    bg));
-            table.addCell(cellData(montant, fontBold,    BLEU_OFF, bg));
-            table.addCell(new Cell()
-                    .add(new Paragraph(status).setFont(fontBold).setFontSize(7)
-                            .setFontColor(getStatusColor(status)).setTextAlignment(TextAlignment.CENTER))
-                    .setBackgroundColor(bg).setBorder(Border.NO_BORDER)
-                    .setBorderBottom(new SolidBorder(GRIS_ALTERNE, 0.5f)).setPadding(6));
-            table.addCell(cellData(pays, fontRegular, TEXTE, bg));
-            alt = !alt;
+        long afterId = 0L;
+        while (true) {
+            // Projection par lot (pagination par clé) : aucune entité gérée ne s'accumule
+            List<Object[]> rows = demandeRepository.findRapportRowsByImportateur(
+                    importateurId, afterId, PageRequest.of(0, DEMANDES_BATCH_SIZE));
+            if (rows.isEmpty()) {
+                break;
+            }
+
+            List<Long> ids = new ArrayList<>(rows.size());
+            for (Object[] row : rows) {
+                ids.add((Long) row[0]);
+            }
+            // Pays d'origine du premier produit de chaque demande
+            Map<Long, String> paysParDemande = new HashMap<>();
+            for (Object[] row : demandeProduitRepository.findOriginCountriesByDemandeIds(ids)) {
+                paysParDemande.putIfAbsent((Long) row[0], (String) row[1]);
+            }
+
+            for (Object[] row : rows) {
+                Long          id          = (Long) row[0];
+                String        reference   = (String) row[1];
+                LocalDateTime submittedAt = (LocalDateTime) row[2];
+                BigDecimal    amount      = (BigDecimal) row[3];
+                DemandeStatus demandeStatus = (DemandeStatus) row[4];
+
+                String pays    = paysParDemande.containsKey(id) && paysParDemande.get(id) != null
+                        ? paysParDemande.get(id) : "N/A";
+                String status  = demandeStatus != null ? demandeStatus.toString() : "N/A";
+                DeviceRgb bg   = alt ? GRIS_ALTERNE : BLANC;
+
+                String ref     = reference   != null ? reference : "N/A";
+                String date    = submittedAt != null ? submittedAt.format(DATE_TABLE) : "N/A";
+                String montant = amount      != null ? amount.toString() : "0";
+
+                table.addCell(cellData(ref,     fontRegular, TEXTE,    bg));
+                table.addCell(cellData(date,    fontRegular, TEXTE,    bg));
+                table.addCell(cellData(montant, fontBold,    BLEU_OFF, bg));
+                table.addCell(new Cell()
+                        .add(new Paragraph(status).setFont(fontBold).setFontSize(7)
+                                .setFontColor(getStatusColor(status)).setTextAlignment(TextAlignment.CENTER))
+                        .setBackgroundColor(bg).setBorder(Border.NO_BORDER)
+                        .setBorderBottom(new SolidBorder(GRIS_ALTERNE, 0.5f)).setPadding(6));
+                table.addCell(cellData(pays, fontRegular, TEXTE, bg));
+                alt = !alt;
+                afterId = id;
+            }
+
+            table.flush();
+            if (rows.size() < DEMANDES_BATCH_SIZE) {
+                break;
+            }
         }
-        doc.add(table);
+        table.complete();
     }
 
     // ────────────────────────────────────────────────────────────────────────
@@ -0,0 +1,25 @@
+package com.tunisia.commerce.service;
+
+import com.stripe.exception.StripeException;
+import com.stripe.model.PaymentIntent;
+import com.stripe.model.PaymentIntentCollection;
+
+/**
+ * Lectures Stripe utilisées par le registre local des paiements.
+ * Isolées derrière une interface pour pouvoir substituer un Stripe local dans les tests.
+ */
+public interface StripeGateway {
+
+    /**
+     * Une page de PaymentIntents (du plus récent au plus ancien), charge associée développée.
+     *
+     * @param createdFrom   borne basse de création (epoch secondes), ou null pour tout l'historique
+     * @param startingAfter identifiant du dernier PaymentIntent de la page précédente, ou null
+     */
+    PaymentIntentCollection listPaymentIntents(Long createdFrom, String startingAfter, long limit) throws StripeException;
+
+    /**
+     * Un PaymentIntent, charge associée développée.
+     */
+    PaymentIntent retrievePaymentIntent(String paymentIntentId) throws StripeException;
+}
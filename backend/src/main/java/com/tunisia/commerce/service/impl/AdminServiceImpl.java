@@ -32,6 +32,7 @@ public class AdminServiceImpl {
     private final DemandeProduitRepository demandeProduitRepository;
     private final DocumentRepository documentRepository;
     private final SecureStorageService secureStorageService;
+    private final DocumentScanService documentScanService;
 
     private static final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ofPattern("dd/MM/yyyy HH:mm");
     private static final DateTimeFormatter DATE_ONLY_FORMATTER = DateTimeFormatter.ofPattern("dd/MM/yyyy");
@@ -202,6 +203,8 @@ public class AdminServiceImpl {
 
     @Transactional
     public byte[] getDocumentContent(Document document) throws IOException {
+        // Jamais de lecture d'un document en quarantaine ou infecté
+        documentScanService.assertDownloadable(document);
         Path filePath = Paths.get(document.getFilePath());
 
         // ✅ Utiliser SecureStorageService pour déchiffrer
@@ -1,31 +1,67 @@
 package com.tunisia.commerce.service.impl;
 
 import com.tunisia.commerce.dto.archive.ArchiveDemandeDTO;
+import com.tunisia.commerce.entity.DemandeArchive;
 import com.tunisia.commerce.entity.DemandeEnregistrement;
 import com.tunisia.commerce.enums.*;
+import com.tunisia.commerce.repository.DemandeArchiveRepository;
 import com.tunisia.commerce.repository.DemandeEnregistrementRepository;
-import lombok.RequiredArgsConstructor;
+import com.tunisia.commerce.security.AuthenticatedUser;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.time.LocalDate;
 import java.time.LocalDateTime;
-import java.util.ArrayList;
-import java.util.List;
+import java.util.*;
+import java.util.function.LongFunction;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
 
+/**
+ * Archivage des demandes.
+ *
+ * L'archivage et la restauration en masse procèdent par lots : une requête UPDATE par lot
+ * d'identifiants, chaque lot dans sa propre transaction. Les demandes archivées depuis plus de
+ * {@code app.archive.cold-after-days} jours sont ensuite déplacées, avec leurs produits, documents,
+ * validateurs et détails importateur, vers les tables froides (voir DemandeArchiveRepository) :
+ * les tables actives ne contiennent plus que les demandes en cours et les archives récentes.
+ */
 @Service
-@RequiredArgsConstructor
 public class ArchiveService {
 
     private final DemandeEnregistrementRepository demandeRepository;
+    private final DemandeArchiveRepository archiveRepository;
+    private final PrincipalCacheService principalCacheService;
+    private final ImportateurDashboardService importateurDashboardService;
+    private final TransactionTemplate transactionTemplate;
+    private final int chunkSize;
+    private final long coldAfterDays;
     private final Logger logger = Logger.getLogger(getClass().getName());
 
+    public ArchiveService(DemandeEnregistrementRepository demandeRepository,
+                          DemandeArchiveRepository archiveRepository,
+                          PrincipalCacheService principalCacheService,
+                          ImportateurDashboardService importateurDashboardService,
+                          PlatformTransactionManager transactionManager,
+                          @Value("${app.archive.chunk-size:500}") int chunkSize,
+                          @Value("${app.archive.cold-after-days:180}") long coldAfterDays) {
+        this.demandeRepository = demandeRepository;
+        this.archiveRepository = archiveRepository;
+        this.principalCacheService = principalCacheService;
+        this.importateurDashboardService = importateurDashboardService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.chunkSize = chunkSize;
+        this.coldAfterDays = coldAfterDays;
+    }
+
     // 1. Archivage automatique (tous les jours à 2h du matin)
     @Scheduled(cron = "0 0 2 * * ?")
-    @Transactional
     public void automaticArchive() {
         logger.info("=== DÉBUT ARCHIVAGE AUTOMATIQUE ===");
 
@@ -79,23 +115,28 @@ public class ArchiveService {
     }
 
     // 4. Archivage multiple par l'admin
-    @Transactional
-    public void bulkArchive(List<Long> demandeIds, String adminEmail, String reason) {
+    public int bulkArchive(List<Long> demandeIds, String adminEmail, String reason) {
         int archivedCount = 0;
-        for (Long id : demandeIds) {
-            try {
-                manualArchive(id, adminEmail, reason);
-                archivedCount++;
-            } catch (Exception e) {
-                logger.warning("Erreur lors de l'archivage de la demande " + id + ": " + e.getMessage());
-            }
+        for (List<Long> chunk : partition(demandeIds)) {
+            archivedCount += archiveChunk(demandeRepository.findIdAndImportateurByIdIn(chunk),
+                    ArchiveType.MANUAL_ADMIN, adminEmail, reason);
         }
         logger.info(archivedCount + " demandes archivées sur " + demandeIds.size());
+        return archivedCount;
     }
 
     // 5. Restauration d'une demande archivée
     @Transactional
     public void restoreDemande(Long demandeId, String adminEmail) {
+        if (!demandeRepository.existsById(demandeId)) {
+            DemandeArchive archive = archiveRepository.findById(demandeId)
+                    .orElseThrow(() -> new RuntimeException("Demande non trouvée"));
+            if (!archive.isCanBeRestored()) {
+                throw new RuntimeException("Cette demande ne peut pas être restaurée");
+            }
+            restoreFromCold(List.of(demandeId));
+        }
+
         DemandeEnregistrement demande = demandeRepository.findById(demandeId)
                 .orElseThrow(() -> new RuntimeException("Demande non trouvée"));
 
@@ -118,109 +159,233 @@ public class ArchiveService {
         logger.info("Demande " + demandeId + " restaurée par " + adminEmail);
     }
 
+    // 5 bis. Restauration multiple (tables actives et stockage froid)
+    public int bulkRestore(List<Long> demandeIds, String adminEmail) {
+        int restoredCount = 0;
+        for (List<Long> chunk : partition(demandeIds)) {
+            Integer restored = transactionTemplate.execute(status -> {
+                restoreFromCold(chunk);
+                int count = demandeRepository.unarchiveByIds(chunk);
+                invalidateDashboards(demandeRepository.findIdAndImportateurByIdIn(chunk));
+                return count;
+            });
+            restoredCount += restored != null ? restored : 0;
+        }
+        logger.info(restoredCount + " demandes restaurées sur " + demandeIds.size() + " par " + adminEmail);
+        return restoredCount;
+    }
+
     // 6. Récupérer toutes les demandes archivées
     public List<DemandeEnregistrement> getArchivedDemandes() {
         return demandeRepository.findByArchivedTrue();
     }
 
-    // 7. Récupérer les demandes archivées par utilisateur
+    // 7. Récupérer les demandes archivées par utilisateur (tables actives puis stockage froid)
     public List<ArchiveDemandeDTO> getArchivedDemandesByUser(String userEmail, String userRole) {
         logger.info("Recherche des demandes archivées pour: " + userEmail + " avec rôle: " + userRole);
 
-        List<DemandeEnregistrement> allArchived = demandeRepository.findByArchivedTrue();
-
-        List<DemandeEnregistrement> filteredDemandes = new ArrayList<>();
-
-        for (DemandeEnregistrement demande : allArchived) {
-            if ("EXPORTATEUR".equals(userRole)) {
-                // L'exportateur voit ses propres demandes, mais PAS les demandes d'importation
-                boolean isOwnDemande = demande.getExportateur() != null &&
-                        userEmail.equals(demande.getExportateur().getEmail()) &&
-                        demande.getTypeDemande() != TypeDemande.IMPORT;  // ← Exclure IMPORT
-
-                if (isOwnDemande) {
-                    filteredDemandes.add(demande);
-                    logger.info("✅ Demande " + demande.getId() + " ajoutée pour exportateur (type: " + demande.getTypeDemande() + ")");
-                } else {
-                    logger.info("❌ Demande " + demande.getId() + " ignorée pour exportateur (type: " + demande.getTypeDemande() + ")");
-                }
-
-            } else if ("IMPORTATEUR".equals(userRole)) {
-                // L'importateur voit ses propres demandes d'importation
-                boolean isOwnImport = demande.getImportateur() != null &&
-                        userEmail.equals(demande.getImportateur().getEmail());
-
-                if (isOwnImport) {
-                    filteredDemandes.add(demande);
-                    logger.info("✅ Demande " + demande.getId() + " ajoutée pour importateur (type: " + demande.getTypeDemande() + ")");
-                }
+        List<ArchiveDemandeDTO> result = new ArrayList<>();
+        AuthenticatedUser principal = principalCacheService.resolve(userEmail);
+        Long userId = principal != null ? principal.getId() : null;
+
+        if ("EXPORTATEUR".equals(userRole)) {
+            // L'exportateur voit ses propres demandes, mais PAS les demandes d'importation
+            demandeRepository.findArchivedByExportateurEmail(userEmail).stream()
+                    .filter(demande -> demande.getTypeDemande() != TypeDemande.IMPORT)
+                    .map(this::convertToArchiveDTO)
+                    .forEach(result::add);
+            if (userId != null) {
+                archiveRepository.findByExportateurIdOrderByArchivedAtDesc(userId).stream()
+                        .filter(archive -> archive.getTypeDemande() != TypeDemande.IMPORT)
+                        .map(this::convertToArchiveDTO)
+                        .forEach(result::add);
+            }
+
+        } else if ("IMPORTATEUR".equals(userRole)) {
+            // L'importateur voit ses propres demandes d'importation
+            demandeRepository.findArchivedByImportateurEmail(userEmail).stream()
+                    .map(this::convertToArchiveDTO)
+                    .forEach(result::add);
+            if (userId != null) {
+                archiveRepository.findByImportateurIdOrderByArchivedAtDesc(userId).stream()
+                        .map(this::convertToArchiveDTO)
+                        .forEach(result::add);
             }
         }
 
-        logger.info("Total demandes filtrées pour " + userRole + ": " + filteredDemandes.size());
+        logger.info("Total demandes filtrées pour " + userRole + ": " + result.size());
+        return result;
+    }
 
-        return filteredDemandes.stream()
-                .map(this::convertToArchiveDTO)
-                .collect(Collectors.toList());
+    // 7 bis. Demandes en stockage froid (admin)
+    public Page<ArchiveDemandeDTO> getColdArchivedDemandes(int page, int size) {
+        return archiveRepository.findAllByOrderByArchivedAtDesc(PageRequest.of(page, Math.min(size, 200)))
+                .map(this::convertToArchiveDTO);
     }
 
     // Méthodes privées d'archivage
     private void archiveCompletedDemandes() {
         LocalDateTime thresholdDate = LocalDateTime.now().minusDays(90);
-        List<DemandeEnregistrement> demandes = demandeRepository.findByStatusInAndDecisionDateBefore(
-                List.of(DemandeStatus.VALIDEE, DemandeStatus.REJETEE),
-                thresholdDate
-        );
-
-        for (DemandeEnregistrement demande : demandes) {
-            if (!demande.isArchived()) {
-                archiveDemande(demande, ArchiveType.AUTOMATIC, "SYSTEM",
-                        "Archivage automatique après 90 jours");
-            }
-        }
-        logger.info(demandes.size() + " demandes terminées archivées");
+        List<String> statuses = List.of(DemandeStatus.VALIDEE.name(), DemandeStatus.REJETEE.name());
+
+        int count = archiveInChunks(afterId -> demandeRepository.findArchivableByStatusAndDecisionDate(
+                        statuses, thresholdDate, afterId, chunkSize),
+                ArchiveType.AUTOMATIC, "SYSTEM", "Archivage automatique après 90 jours");
+        logger.info(count + " demandes terminées archivées");
     }
 
     private void archiveFailedPaymentDemandes() {
         LocalDateTime thresholdDate = LocalDateTime.now().minusDays(30);
-        List<DemandeEnregistrement> demandes = demandeRepository.findByPaymentStatusAndSubmittedAtBefore(
-                PaymentStatus.ECHEC,
-                thresholdDate
-        );
-
-        for (DemandeEnregistrement demande : demandes) {
-            if (!demande.isArchived()) {
-                archiveDemande(demande, ArchiveType.AUTOMATIC, "SYSTEM",
-                        "Archivage automatique - paiement échoué depuis 30 jours");
-            }
-        }
-        logger.info(demandes.size() + " demandes à paiement échoué archivées");
+
+        int count = archiveInChunks(afterId -> demandeRepository.findArchivableByPaymentStatus(
+                        PaymentStatus.ECHEC.name(), thresholdDate, afterId, chunkSize),
+                ArchiveType.AUTOMATIC, "SYSTEM", "Archivage automatique - paiement échoué depuis 30 jours");
+        logger.info(count + " demandes à paiement échoué archivées");
     }
 
     private void archiveExpiredAgrementDemandes() {
         LocalDate expiryDate = LocalDate.now().minusMonths(12);
-        List<DemandeEnregistrement> demandes = demandeRepository.findByStatusAndDateAgrementBefore(
-                DemandeStatus.VALIDEE,
-                expiryDate
-        );
-
-        for (DemandeEnregistrement demande : demandes) {
-            if (!demande.isArchived()) {
-                archiveDemande(demande, ArchiveType.EXPIRED_AGRMENT, "SYSTEM",
-                        "Archivage automatique - agrément expiré depuis plus d'un an");
+
+        int count = archiveInChunks(afterId -> demandeRepository.findArchivableByDateAgrement(
+                        DemandeStatus.VALIDEE.name(), expiryDate, afterId, chunkSize),
+                ArchiveType.EXPIRED_AGRMENT, "SYSTEM", "Archivage automatique - agrément expiré depuis plus d'un an");
+        logger.info(count + " demandes avec agrément expiré archivées");
+    }
+
+    /**
+     * Parcourt les demandes à archiver par lots (curseur sur l'id) et archive chaque lot en une requête.
+     */
+    private int archiveInChunks(LongFunction<List<Object[]>> nextChunk, ArchiveType type,
+                                String archivedBy, String reason) {
+        int total = 0;
+        long afterId = 0;
+        while (true) {
+            List<Object[]> rows = nextChunk.apply(afterId);
+            if (rows.isEmpty()) {
+                break;
+            }
+            total += archiveChunk(rows, type, archivedBy, reason);
+            afterId = ((Number) rows.get(rows.size() - 1)[0]).longValue();
+            if (rows.size() < chunkSize) {
+                break;
+            }
+        }
+        return total;
+    }
+
+    private int archiveChunk(List<Object[]> rows, ArchiveType type, String archivedBy, String reason) {
+        if (rows.isEmpty()) {
+            return 0;
+        }
+        List<Long> ids = idsOf(rows);
+        Integer archived = transactionTemplate.execute(status -> {
+            int count = demandeRepository.archiveByIds(ids, LocalDateTime.now(), archivedBy, reason, type.name());
+            invalidateDashboards(rows);
+            return count;
+        });
+        return archived != null ? archived : 0;
+    }
+
+    // ==================== STOCKAGE FROID ====================
+
+    /**
+     * Déplace vers les tables froides les demandes archivées depuis plus de
+     * {@code app.archive.cold-after-days} jours (tous les jours à 2h30, après l'archivage automatique).
+     */
+    @Scheduled(cron = "${app.archive.cold-move-cron:0 30 2 * * ?}")
+    public int moveToColdStorage() {
+        LocalDateTime before = LocalDateTime.now().minusDays(coldAfterDays);
+        int moved = 0;
+        while (true) {
+            List<Object[]> rows = demandeRepository.findArchivedBefore(before, chunkSize);
+            if (rows.isEmpty()) {
+                break;
+            }
+            moved += moveChunkToCold(rows);
+            if (rows.size() < chunkSize) {
+                break;
             }
         }
-        logger.info(demandes.size() + " demandes avec agrément expiré archivées");
+        logger.info(moved + " demandes archivées déplacées vers le stockage froid");
+        return moved;
+    }
+
+    private int moveChunkToCold(List<Object[]> rows) {
+        List<Long> ids = idsOf(rows);
+        Integer moved = transactionTemplate.execute(status -> {
+            int count = archiveRepository.copyDemandesToCold(ids, LocalDateTime.now());
+            archiveRepository.copyImportateurDetailsToCold(ids);
+            archiveRepository.copyProduitsToCold(ids);
+            archiveRepository.copyDocumentsToCold(ids);
+            archiveRepository.copyValidateursToCold(ids);
+
+            archiveRepository.deleteHotValidateurs(ids);
+            archiveRepository.deleteHotDocuments(ids);
+            archiveRepository.deleteHotProduits(ids);
+            archiveRepository.deleteHotImportateurDetails(ids);
+            archiveRepository.deleteHotDemandes(ids);
+
+            invalidateDashboards(rows);
+            return count;
+        });
+        return moved != null ? moved : 0;
+    }
+
+    /**
+     * Remet dans les tables actives (toujours archivées) les demandes restaurables du lot présentes
+     * en stockage froid. Doit être appelée dans une transaction.
+     */
+    private int restoreFromCold(Collection<Long> ids) {
+        List<Long> restorable = archiveRepository.findRestorableIds(ids);
+        if (restorable.isEmpty()) {
+            return 0;
+        }
+        // Parent d'abord, puis les lignes qui le référencent
+        archiveRepository.restoreDemandesFromCold(restorable);
+        archiveRepository.restoreImportateurDetailsFromCold(restorable);
+        archiveRepository.restoreProduitsFromCold(restorable);
+        archiveRepository.restoreDocumentsFromCold(restorable);
+        archiveRepository.restoreValidateursFromCold(restorable);
+
+        archiveRepository.deleteColdLignes(restorable);
+        archiveRepository.deleteColdDemandes(restorable);
+        return restorable.size();
+    }
+
+    private void invalidateDashboards(List<Object[]> rows) {
+        rows.stream()
+                .map(row -> row[1])
+                .filter(Objects::nonNull)
+                .map(importateurId -> ((Number) importateurId).longValue())
+                .distinct()
+                .forEach(importateurDashboardService::invalidateAfterCommit);
+    }
+
+    private static List<Long> idsOf(List<Object[]> rows) {
+        return rows.stream().map(row -> ((Number) row[0]).longValue()).collect(Collectors.toList());
+    }
+
+    private List<List<Long>> partition(List<Long> ids) {
+        List<Long> distinct = new ArrayList<>(new LinkedHashSet<>(ids));
+        List<List<Long>> chunks = new ArrayList<>();
+        for (int i = 0; i < distinct.size(); i += chunkSize) {
+            chunks.add(distinct.subList(i, Math.min(i + chunkSize, distinct.size())));
+        }
+        return chunks;
     }
 
     // Ajoute cette méthode dans ArchiveService
 
     // 8. Vérifier si une demande est archivée
     public boolean isDemandeArchived(Long demandeId) {
-        DemandeEnregistrement demande = demandeRepository.findById(demandeId)
-                .orElseThrow(() -> new RuntimeException("Demande non trouvée avec l'id: " + demandeId));
-
-        return demande.isArchived();
+        Optional<DemandeEnregistrement> demande = demandeRepository.findById(demandeId);
+        if (demande.isPresent()) {
+            return demande.get().isArchived();
+        }
+        if (archiveRepository.existsById(demandeId)) {
+            return true;
+        }
+        throw new RuntimeException("Demande non trouvée avec l'id: " + demandeId);
     }
 
     private void archiveDemande(DemandeEnregistrement demande, ArchiveType type, String archivedBy, String reason) {
@@ -275,4 +440,28 @@ public class ArchiveService {
 
         return builder.build();
     }
-}
\ No newline at end of file
+
+    private ArchiveDemandeDTO convertToArchiveDTO(DemandeArchive archive) {
+        return ArchiveDemandeDTO.builder()
+                .id(archive.getId())
+                .reference(archive.getReference())
+                .status(archive.getStatus())
+                .submittedAt(archive.getSubmittedAt())
+                .paymentStatus(archive.getPaymentStatus())
+                .decisionDate(archive.getDecisionDate())
+                .numeroAgrement(archive.getNumeroAgrement())
+                .dateAgrement(archive.getDateAgrement())
+                .type(archive.getTypeDemande())
+                .applicantType(archive.getExportateurId() != null ? TypeDemandeur.EXPORTATEUR
+                        : archive.getImportateurId() != null ? TypeDemandeur.IMPORTATEUR : null)
+                .exportateurId(archive.getExportateurId())
+                .importateurId(archive.getImportateurId())
+                .archived(true)
+                .archivedAt(archive.getArchivedAt())
+                .archivedBy(archive.getArchivedBy())
+                .archiveReason(archive.getArchiveReason())
+                .archiveType(archive.getArchiveType())
+                .canBeRestored(archive.isCanBeRestored())
+                .build();
+    }
+}
@@ -0,0 +1,228 @@
+package com.tunisia.commerce.service.impl;
+
+import com.tunisia.commerce.config.StorageConfig;
+import com.tunisia.commerce.repository.StoredBlobRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Stockage adressé par contenu : chaque contenu est écrit une seule fois sous
+ * {@code <base>/blobs/ab/cd/<sha256>}, quel que soit le nombre de documents qui le référencent.
+ *
+ * Ordre des opérations : la ligne stored_blobs est créée ou incrémentée (verrou de ligne)
+ * avant l'écriture du fichier, et le ramasse-miettes supprime le fichier sous ce même verrou
+ * avant de supprimer la ligne. Un dépôt et une collecte du même contenu ne peuvent donc pas
+ * s'entrelacer.
+ *
+ * Le fichier est écrit avant la validation de la transaction appelante. Si elle est annulée,
+ * la ligne disparaît mais pas le fichier : il est alors réindexé sans référence, dans une
+ * transaction séparée, et le ramasse-miettes le supprime après le délai de grâce.
+ */
+@Service
+@Slf4j
+public class BlobStoreService {
+
+    private static final String BLOB_DIRECTORY = "blobs";
+
+    private final StoredBlobRepository blobRepository;
+    private final StorageConfig storageConfig;
+    private final TransactionTemplate transactionTemplate;
+    private final TransactionTemplate rollbackIndexTemplate;
+    private final long gracePeriodHours;
+    private final int gcBatchSize;
+    private final int gcMaxPerRun;
+
+    public BlobStoreService(StoredBlobRepository blobRepository,
+                            StorageConfig storageConfig,
+                            PlatformTransactionManager transactionManager,
+                            @Value("${app.storage.blob-gc-grace-hours:24}") long gracePeriodHours,
+                            @Value("${app.storage.blob-gc-batch-size:200}") int gcBatchSize,
+                            @Value("${app.storage.blob-gc-max-per-run:5000}") int gcMaxPerRun) {
+        this.blobRepository = blobRepository;
+        this.storageConfig = storageConfig;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.rollbackIndexTemplate = new TransactionTemplate(transactionManager);
+        this.rollbackIndexTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.gracePeriodHours = gracePeriodHours;
+        this.gcBatchSize = gcBatchSize;
+        this.gcMaxPerRun = gcMaxPerRun;
+    }
+
+    /**
+     * Contenu à écrire sur disque (déjà chiffré le cas échéant). N'est évalué que si le blob
+     * n'existe pas encore : un dépôt en double ne coûte ni chiffrement ni écriture.
+     */
+    @FunctionalInterface
+    public interface BlobContent {
+        byte[] get() throws Exception;
+    }
+
+    /**
+     * Variante en flux de {@link BlobContent}, pour les fichiers qui ne doivent pas passer par le tas.
+     * Le flux fourni peut être fermé par l'écrivain (nécessaire pour finaliser un CipherOutputStream).
+     */
+    @FunctionalInterface
+    public interface BlobWriter {
+        void writeTo(OutputStream out) throws Exception;
+    }
+
+    /**
+     * Ajoute une référence au blob {@code hash}, en l'écrivant s'il n'existe pas.
+     * Participe à la transaction de l'appelant : la référence disparaît si elle est annulée.
+     */
+    @Transactional
+    public Path acquire(String hash, long size, BlobContent content) throws Exception {
+        return acquireStreaming(hash, size, out -> out.write(content.get()));
+    }
+
+    @Transactional
+    public Path acquireStreaming(String hash, long size, BlobWriter writer) throws Exception {
+        Path path = pathFor(hash);
+        blobRepository.acquire(hash, path.toString(), size, LocalDateTime.now());
+
+        if (!Files.exists(path)) {
+            write(path, writer);
+            indexOnRollback(hash, path, size);
+            log.debug("Nouveau blob écrit: {}", hash);
+        } else {
+            log.debug("Blob existant réutilisé: {}", hash);
+        }
+        return path;
+    }
+
+    /**
+     * Retire une référence. Le fichier n'est supprimé que par le ramasse-miettes, après le délai de grâce.
+     */
+    @Transactional
+    public void release(String hash) {
+        if (blobRepository.release(hash, LocalDateTime.now()) == 0) {
+            log.warn("Libération d'un blob inconnu ou déjà sans référence: {}", hash);
+        }
+    }
+
+    public Path pathFor(String hash) {
+        return rootDirectory()
+                .resolve(hash.substring(0, 2))
+                .resolve(hash.substring(2, 4))
+                .resolve(hash);
+    }
+
+    public Path rootDirectory() {
+        return storageConfig.getBasePath().resolve(BLOB_DIRECTORY);
+    }
+
+    // ==================== RAMASSE-MIETTES ====================
+
+    /**
+     * Supprime par lots les blobs sans référence depuis plus de {@code app.storage.blob-gc-grace-hours}.
+     * Ne parcourt que l'index (ref_count, zero_ref_since), jamais l'arborescence.
+     */
+    public int collectGarbage() {
+        LocalDateTime cutoff = LocalDateTime.now().minusHours(gracePeriodHours);
+        int collected = 0;
+
+        while (collected < gcMaxPerRun) {
+            Integer batch = transactionTemplate.execute(status -> collectBatch(cutoff));
+            if (batch == null || batch == 0) {
+                break;
+            }
+            collected += batch;
+            if (batch < gcBatchSize) {
+                break;
+            }
+        }
+        return collected;
+    }
+
+    private int collectBatch(LocalDateTime cutoff) {
+        List<String> hashes = blobRepository.lockCollectable(cutoff, gcBatchSize);
+        if (hashes.isEmpty()) {
+            return 0;
+        }
+
+        List<String> deleted = new ArrayList<>(hashes.size());
+        for (String hash : hashes) {
+            try {
+                Files.deleteIfExists(pathFor(hash));
+                deleted.add(hash);
+            } catch (IOException e) {
+                // La ligne est conservée : le blob sera repris au prochain passage
+                log.warn("Impossible de supprimer le blob {}: {}", hash, e.getMessage());
+            }
+        }
+        if (!deleted.isEmpty()) {
+            blobRepository.deleteUnreferenced(deleted);
+        }
+        return hashes.size();
+    }
+
+    public long countUnreferenced() {
+        return blobRepository.countByRefCount(0);
+    }
+
+    // ==================== MÉTHODES PRIVÉES ====================
+
+    // Le fichier n'est pas supprimé ici : un dépôt concurrent du même contenu, en attente sur la ligne,
+    // peut l'avoir déjà trouvé et réutilisé. Seul le ramasse-miettes le supprime, sous le verrou de ligne.
+    private void indexOnRollback(String hash, Path path, long size) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status != STATUS_ROLLED_BACK) {
+                    return;
+                }
+                try {
+                    rollbackIndexTemplate.executeWithoutResult(tx ->
+                            blobRepository.registerUnreferenced(hash, path.toString(), size, LocalDateTime.now()));
+                } catch (Exception e) {
+                    log.warn("Blob {} écrit par une transaction annulée non réindexé: {}", hash, e.getMessage());
+                }
+            }
+        });
+    }
+
+    // Écriture dans un fichier temporaire puis renommage atomique : un lecteur ne voit jamais un blob partiel
+    private void write(Path path, BlobWriter writer) throws Exception {
+        Path directory = path.getParent();
+        if (!Files.exists(directory)) {
+            Files.createDirectories(directory);
+            try {
+                Files.setPosixFilePermissions(directory, PosixFilePermissions.fromString("rwx------"));
+            } catch (Exception e) {
+                log.warn("Impossible de définir les permissions: {}", e.getMessage());
+            }
+        }
+
+        Path temp = directory.resolve(path.getFileName() + "." + UUID.randomUUID() + ".tmp");
+        try {
+            try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(temp))) {
+                writer.writeTo(out);
+            }
+            Files.move(temp, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+}
@@ -0,0 +1,467 @@
+package com.tunisia.commerce.service.impl;
+
+import com.tunisia.commerce.dto.produits.ProduitDTO;
+import com.tunisia.commerce.dto.produits.SearchSuggestionDTO;
+import com.tunisia.commerce.enums.DemandeStatus;
+import com.tunisia.commerce.enums.PaymentStatus;
+import com.tunisia.commerce.enums.StatutAgrement;
+import com.tunisia.commerce.util.TextNormalizer;
+
+import java.util.*;
+import java.util.function.Predicate;
+
+/**
+ * Index inversé en mémoire du catalogue produits.
+ *
+ * Champs indexés (avec pondération) : nom du produit, code SH, catégorie, pays d'origine,
+ * raison sociale de l'exportateur. Classement BM25F, expansion par préfixe du dernier terme
+ * et trie des codes SH pour les recherches numériques.
+ *
+ * Non thread-safe : la synchronisation est assurée par {@link CatalogueSearchService}.
+ */
+public class CatalogueSearchIndex {
+
+    // Paramètres BM25
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+
+    // Pondération des champs
+    private static final float WEIGHT_NAME = 3.0f;
+    private static final float WEIGHT_HS_CODE = 2.5f;
+    private static final float WEIGHT_CATEGORY = 1.5f;
+    private static final float WEIGHT_BRAND = 1.2f;
+    private static final float WEIGHT_ORIGIN = 1.0f;
+    private static final float WEIGHT_EXPORTER = 1.0f;
+
+    // Un terme expansé par préfixe compte un peu moins qu'un terme exact
+    private static final double PREFIX_MATCH_FACTOR = 0.8;
+    private static final int MAX_PREFIX_EXPANSIONS = 64;
+    private static final int MIN_PREFIX_LENGTH = 2;
+
+    private final Map<Long, Entry> entries = new HashMap<>();
+    private final TreeMap<String, Map<Long, Float>> postings = new TreeMap<>();
+    private final HsCodeTrie hsCodeTrie = new HsCodeTrie();
+    private double totalLength;
+
+    // ==================== DOCUMENTS ====================
+
+    /**
+     * Document indexé : un produit et l'état de la demande exportateur qui le porte.
+     */
+    public static final class Entry {
+        private final ProduitDTO produit;
+        private final DemandeStatus demandeStatus;
+        private final PaymentStatus paymentStatus;
+        private final StatutAgrement statutAgrement;
+        private final String hsDigits;
+        // Nom et catégorie pliés, pour la recherche par sous-chaîne
+        private final String foldedText;
+        private final Map<String, Float> termFrequencies;
+        private final float length;
+
+        public Entry(ProduitDTO produit, DemandeStatus demandeStatus, PaymentStatus paymentStatus,
+                     StatutAgrement statutAgrement) {
+            this.produit = produit;
+            this.demandeStatus = demandeStatus;
+            this.paymentStatus = paymentStatus;
+            this.statutAgrement = statutAgrement;
+            this.hsDigits = TextNormalizer.digitsOnly(produit.getHsCode());
+            this.foldedText = TextNormalizer.fold(produit.getProductName()) + "\n" + TextNormalizer.fold(produit.getCategory());
+
+            Map<String, Float> tf = new HashMap<>();
+            addField(tf, produit.getProductName(), WEIGHT_NAME);
+            addField(tf, produit.getHsCode(), WEIGHT_HS_CODE);
+            addField(tf, produit.getCategory(), WEIGHT_CATEGORY);
+            addField(tf, produit.getCommercialBrandName(), WEIGHT_BRAND);
+            addField(tf, produit.getOriginCountry(), WEIGHT_ORIGIN);
+            addField(tf, produit.getExporterName(), WEIGHT_EXPORTER);
+            this.termFrequencies = tf;
+
+            float len = 0f;
+            for (float f : tf.values()) {
+                len += f;
+            }
+            this.length = len;
+        }
+
+        private static void addField(Map<String, Float> tf, String value, float weight) {
+            for (String token : TextNormalizer.tokenize(value)) {
+                tf.merge(token, weight, Float::sum);
+            }
+        }
+
+        public Long getProductId() {
+            return produit.getId();
+        }
+
+        public Long getExporterId() {
+            return produit.getExporterId();
+        }
+
+        public DemandeStatus getDemandeStatus() {
+            return demandeStatus;
+        }
+
+        public PaymentStatus getPaymentStatus() {
+            return paymentStatus;
+        }
+
+        public StatutAgrement getStatutAgrement() {
+            return statutAgrement;
+        }
+
+        public String getHsDigits() {
+            return hsDigits;
+        }
+
+        /**
+         * Copie du DTO : les résultats renvoyés aux contrôleurs ne partagent pas l'état de l'index.
+         */
+        public ProduitDTO toProduitDTO() {
+            return ProduitDTO.builder()
+                    .id(produit.getId())
+                    .productType(produit.getProductType())
+                    .category(produit.getCategory())
+                    .hsCode(produit.getHsCode())
+                    .productName(produit.getProductName())
+                    .isLinkedToBrand(produit.getIsLinkedToBrand())
+                    .brandName(produit.getBrandName())
+                    .isBrandOwner(produit.getIsBrandOwner())
+                    .hasBrandLicense(produit.getHasBrandLicense())
+                    .productState(produit.getProductState())
+                    .originCountry(produit.getOriginCountry())
+                    .annualQuantityValue(produit.getAnnualQuantityValue())
+                    .annualQuantityUnit(produit.getAnnualQuantityUnit())
+                    .commercialBrandName(produit.getCommercialBrandName())
+                    .productImage(produit.getProductImage())
+                    .processingType(produit.getProcessingType())
+                    .annualExportCapacity(produit.getAnnualExportCapacity())
+                    .exporterId(produit.getExporterId())
+                    .exporterName(produit.getExporterName())
+                    .exporterCountry(produit.getExporterCountry())
+                    .build();
+        }
+    }
+
+    public record ScoredEntry(Entry entry, double score) {
+    }
+
+    // ==================== MISE À JOUR ====================
+
+    public void upsert(Entry entry) {
+        remove(entry.getProductId());
+
+        entries.put(entry.getProductId(), entry);
+        for (Map.Entry<String, Float> tf : entry.termFrequencies.entrySet()) {
+            postings.computeIfAbsent(tf.getKey(), k -> new HashMap<>())
+                    .put(entry.getProductId(), tf.getValue());
+        }
+        if (!entry.hsDigits.isEmpty()) {
+            hsCodeTrie.insert(entry.hsDigits, entry.getProductId());
+        }
+        totalLength += entry.length;
+    }
+
+    public void remove(Long productId) {
+        Entry previous = entries.remove(productId);
+        if (previous == null) {
+            return;
+        }
+
+        for (String term : previous.termFrequencies.keySet()) {
+            Map<Long, Float> docs = postings.get(term);
+            if (docs != null) {
+                docs.remove(productId);
+                if (docs.isEmpty()) {
+                    postings.remove(term);
+                }
+            }
+        }
+        if (!previous.hsDigits.isEmpty()) {
+            hsCodeTrie.remove(previous.hsDigits, productId);
+        }
+        totalLength -= previous.length;
+    }
+
+    public Entry get(Long productId) {
+        return entries.get(productId);
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public Collection<Entry> entries() {
+        return Collections.unmodifiableCollection(entries.values());
+    }
+
+    // ==================== RECHERCHE ====================
+
+    /**
+     * Recherche classée : tous les termes de la requête doivent correspondre (ET) ;
+     * si aucun document ne les couvre tous, on retombe sur un OU classé.
+     */
+    public List<ScoredEntry> search(String query, Predicate<Entry> filter, int limit) {
+        List<String> terms = TextNormalizer.tokenize(query);
+        if (terms.isEmpty() || entries.isEmpty()) {
+            return List.of();
+        }
+
+        double avgLength = totalLength / entries.size();
+        Map<Long, Double> scores = new HashMap<>();
+        Map<Long, Integer> matchedTerms = new HashMap<>();
+
+        for (int i = 0; i < terms.size(); i++) {
+            String term = terms.get(i);
+            boolean allowPrefix = i == terms.size() - 1 || !postings.containsKey(term);
+            Map<Long, Double> termScores = scoreTerm(term, allowPrefix, avgLength);
+
+            for (Map.Entry<Long, Double> s : termScores.entrySet()) {
+                scores.merge(s.getKey(), s.getValue(), Double::sum);
+                matchedTerms.merge(s.getKey(), 1, Integer::sum);
+            }
+        }
+
+        List<ScoredEntry> all = new ArrayList<>();
+        List<ScoredEntry> complete = new ArrayList<>();
+        for (Map.Entry<Long, Double> s : scores.entrySet()) {
+            Entry entry = entries.get(s.getKey());
+            if (entry == null || (filter != null && !filter.test(entry))) {
+                continue;
+            }
+            ScoredEntry scored = new ScoredEntry(entry, s.getValue());
+            all.add(scored);
+            if (matchedTerms.get(s.getKey()) == terms.size()) {
+                complete.add(scored);
+            }
+        }
+
+        List<ScoredEntry> results = complete.isEmpty() ? all : complete;
+        results.sort(Comparator.comparingDouble(ScoredEntry::score).reversed()
+                .thenComparing(s -> s.entry().getProductId()));
+        return results.size() > limit ? results.subList(0, limit) : results;
+    }
+
+    /**
+     * Recherche par sous-chaîne (nom, catégorie, code SH), sans classement, pour les saisies qui ne
+     * contiennent aucun terme indexable (vide, mot vide, lettre isolée) : même résultat que
+     * l'ancienne recherche LIKE, une saisie vide correspondant à tout le catalogue.
+     */
+    public List<ScoredEntry> searchContaining(String query, Predicate<Entry> filter, int limit) {
+        String folded = TextNormalizer.fold(query).trim();
+        String raw = query == null ? "" : query.trim();
+
+        List<ScoredEntry> results = new ArrayList<>();
+        for (Entry entry : entries.values()) {
+            if (filter != null && !filter.test(entry)) {
+                continue;
+            }
+            String hsCode = entry.produit.getHsCode();
+            if (entry.foldedText.contains(folded) || (hsCode != null && hsCode.contains(raw))) {
+                results.add(new ScoredEntry(entry, 0));
+            }
+        }
+        results.sort(Comparator.comparing(s -> s.entry().getProductId()));
+        return results.size() > limit ? results.subList(0, limit) : results;
+    }
+
+    /**
+     * Score BM25 d'un terme de requête sur tous les documents qui le contiennent :
+     * terme exact, termes commençant par ce préfixe, et préfixe de code SH pour les nombres.
+     */
+    private Map<Long, Double> scoreTerm(String term, boolean allowPrefix, double avgLength) {
+        Map<Long, Double> termScores = new HashMap<>();
+
+        Map<Long, Float> exact = postings.get(term);
+        if (exact != null) {
+            accumulate(termScores, exact, 1.0, avgLength);
+        }
+
+        if (allowPrefix && term.length() >= MIN_PREFIX_LENGTH) {
+            int expansions = 0;
+            for (Map.Entry<String, Map<Long, Float>> e : postings.tailMap(term, false).entrySet()) {
+                if (!e.getKey().startsWith(term) || expansions++ >= MAX_PREFIX_EXPANSIONS) {
+                    break;
+                }
+                accumulate(termScores, e.getValue(), PREFIX_MATCH_FACTOR, avgLength);
+            }
+        }
+
+        if (TextNormalizer.isNumeric(term)) {
+            Set<Long> hsMatches = hsCodeTrie.findByPrefix(term);
+            if (!hsMatches.isEmpty()) {
+                double idf = idf(hsMatches.size());
+                for (Long productId : hsMatches) {
+                    Entry entry = entries.get(productId);
+                    // Plus le préfixe couvre le code, plus la correspondance est précise
+                    double coverage = (double) term.length() / Math.max(term.length(), entry.hsDigits.length());
+                    double score = idf * WEIGHT_HS_CODE * coverage;
+                    termScores.merge(productId, score, Math::max);
+                }
+            }
+        }
+
+        return termScores;
+    }
+
+    private void accumulate(Map<Long, Double> termScores, Map<Long, Float> docs, double factor, double avgLength) {
+        double idf = idf(docs.size());
+        for (Map.Entry<Long, Float> d : docs.entrySet()) {
+            Entry entry = entries.get(d.getKey());
+            double tf = d.getValue();
+            double norm = K1 * (1 - B + B * entry.length / avgLength);
+            double score = factor * idf * (tf * (K1 + 1)) / (tf + norm);
+            termScores.merge(d.getKey(), score, Math::max);
+        }
+    }
+
+    private double idf(int documentFrequency) {
+        int n = entries.size();
+        return Math.log(1 + (n - documentFrequency + 0.5) / (documentFrequency + 0.5));
+    }
+
+    // ==================== AUTOCOMPLÉTION ====================
+
+    /**
+     * Suggestions pour la saisie en cours : codes SH si la saisie est numérique,
+     * sinon noms de produits les mieux classés.
+     */
+    public List<SearchSuggestionDTO> suggest(String prefix, Predicate<Entry> filter, int limit) {
+        List<SearchSuggestionDTO> suggestions = new ArrayList<>();
+        String digits = TextNormalizer.digitsOnly(prefix);
+        String folded = TextNormalizer.fold(prefix).trim();
+
+        if (!digits.isEmpty() && digits.length() == folded.replaceAll("[.\\-\\s]", "").length()) {
+            for (String code : hsCodeTrie.codesByPrefix(digits, limit)) {
+                hsCodeTrie.findExact(code).stream()
+                        .map(entries::get)
+                        .filter(e -> e != null && (filter == null || filter.test(e)))
+                        .findFirst()
+                        .ifPresent(e -> suggestions.add(new SearchSuggestionDTO("HS_CODE",
+                                e.produit.getHsCode(), e.produit.getProductName())));
+            }
+            return suggestions;
+        }
+
+        Set<String> seen = new HashSet<>();
+        for (ScoredEntry scored : search(prefix, filter, limit * 4)) {
+            String name = scored.entry().produit.getProductName();
+            if (name != null && seen.add(TextNormalizer.fold(name))) {
+                suggestions.add(new SearchSuggestionDTO("PRODUIT", name, scored.entry().produit.getCategory()));
+                if (suggestions.size() >= limit) {
+                    break;
+                }
+            }
+        }
+        return suggestions;
+    }
+
+    // ==================== TRIE DES CODES SH ====================
+
+    /**
+     * Trie sur les chiffres des codes SH/NGP (10 fils par nœud).
+     */
+    private static final class HsCodeTrie {
+
+        private static final class Node {
+            private final Node[] children = new Node[10];
+            private final Set<Long> productIds = new HashSet<>();
+            private int subtreeSize;
+        }
+
+        private final Node root = new Node();
+
+        void insert(String digits, Long productId) {
+            Node node = root;
+            node.subtreeSize++;
+            for (int i = 0; i < digits.length(); i++) {
+                int d = digits.charAt(i) - '0';
+                if (node.children[d] == null) {
+                    node.children[d] = new Node();
+                }
+                node = node.children[d];
+                node.subtreeSize++;
+            }
+            node.productIds.add(productId);
+        }
+
+        void remove(String digits, Long productId) {
+            Node[] path = new Node[digits.length() + 1];
+            path[0] = root;
+            Node node = root;
+            for (int i = 0; i < digits.length(); i++) {
+                node = node.children[digits.charAt(i) - '0'];
+                if (node == null) {
+                    return;
+                }
+                path[i + 1] = node;
+            }
+            if (!node.productIds.remove(productId)) {
+                return;
+            }
+            for (int i = digits.length(); i >= 0; i--) {
+                path[i].subtreeSize--;
+                if (i > 0 && path[i].subtreeSize == 0) {
+                    path[i - 1].children[digits.charAt(i - 1) - '0'] = null;
+                }
+            }
+        }
+
+        Set<Long> findByPrefix(String digits) {
+            Node node = find(digits);
+            if (node == null) {
+                return Set.of();
+            }
+            Set<Long> result = new HashSet<>();
+            collectIds(node, result);
+            return result;
+        }
+
+        Set<Long> findExact(String digits) {
+            Node node = find(digits);
+            return node == null ? Set.of() : node.productIds;
+        }
+
+        List<String> codesByPrefix(String digits, int limit) {
+            Node node = find(digits);
+            List<String> codes = new ArrayList<>();
+            if (node != null) {
+                collectCodes(node, new StringBuilder(digits), codes, limit);
+            }
+            return codes;
+        }
+
+        private Node find(String digits) {
+            Node node = root;
+            for (int i = 0; i < digits.length() && node != null; i++) {
+                node = node.children[digits.charAt(i) - '0'];
+            }
+            return node;
+        }
+
+        private void collectIds(Node node, Set<Long> out) {
+            out.addAll(node.productIds);
+            for (Node child : node.children) {
+                if (child != null) {
+                    collectIds(child, out);
+                }
+            }
+        }
+
+        private void collectCodes(Node node, StringBuilder code, List<String> out, int limit) {
+            if (out.size() >= limit) {
+                return;
+            }
+            if (!node.productIds.isEmpty()) {
+                out.add(code.toString());
+            }
+            for (int d = 0; d < 10; d++) {
+                if (node.children[d] != null) {
+                    code.append((char) ('0' + d));
+                    collectCodes(node.children[d], code, out, limit);
+                    code.setLength(code.length() - 1);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,311 @@
+package com.tunisia.commerce.service.impl;
+
+import com.tunisia.commerce.dto.produits.ProduitDTO;
+import com.tunisia.commerce.dto.produits.SearchSuggestionDTO;
+import com.tunisia.commerce.entity.ExportateurEtranger;
+import com.tunisia.commerce.entity.Product;
+import com.tunisia.commerce.enums.DemandeStatus;
+import com.tunisia.commerce.enums.PaymentStatus;
+import com.tunisia.commerce.enums.StatutAgrement;
+import com.tunisia.commerce.enums.TypeDemandeur;
+import com.tunisia.commerce.repository.ProductRepository;
+import com.tunisia.commerce.util.TextNormalizer;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+/**
+ * Recherche catalogue servie depuis un index inversé en mémoire.
+ *
+ * L'index est construit au démarrage, reconstruit périodiquement et mis à jour
+ * incrémentalement après chaque soumission / décision sur une demande.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class CatalogueSearchService {
+
+    private final ProductRepository productRepository;
+
+    // Statuts de demande dont les produits sont visibles dans le catalogue
+    private static final Set<DemandeStatus> INDEXED_STATUSES = EnumSet.of(DemandeStatus.SOUMISE, DemandeStatus.VALIDEE);
+
+    private static final int MAX_RESULTS = 200;
+    private static final int MAX_SUGGESTIONS = 10;
+
+    private static final Predicate<CatalogueSearchIndex.Entry> EXPORTATEUR_VALIDE = entry ->
+            entry.getDemandeStatus() == DemandeStatus.VALIDEE
+                    && entry.getPaymentStatus() == PaymentStatus.REUSSI
+                    && entry.getStatutAgrement() == StatutAgrement.VALIDE;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private volatile CatalogueSearchIndex index = new CatalogueSearchIndex();
+    private volatile boolean ready = false;
+
+    // Demandes mises à jour pendant une reconstruction, rejouées sur le nouvel index (null hors reconstruction)
+    private Set<Long> refreshedDuringRebuild;
+
+    // ==================== CONSTRUCTION DE L'INDEX ====================
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        rebuildIndex();
+    }
+
+    /**
+     * Reconstruction complète (rattrape les changements hors des points d'accroche :
+     * modification de profil exportateur, archivage, etc.). Les mises à jour incrémentales
+     * arrivées pendant la lecture sont rejouées sur le nouvel index après la bascule.
+     */
+    @Scheduled(fixedDelayString = "${app.search.rebuild-interval-ms:1800000}",
+            initialDelayString = "${app.search.rebuild-interval-ms:1800000}")
+    public synchronized void rebuildIndex() {
+        long start = System.currentTimeMillis();
+        Set<Long> replay = Set.of();
+
+        lock.writeLock().lock();
+        try {
+            refreshedDuringRebuild = new HashSet<>();
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        try {
+            CatalogueSearchIndex fresh = new CatalogueSearchIndex();
+            for (CatalogueSearchIndex.Entry entry : preferredEntries(
+                    productRepository.findCatalogueEntries(INDEXED_STATUSES, TypeDemandeur.EXPORTATEUR)).values()) {
+                fresh.upsert(entry);
+            }
+
+            lock.writeLock().lock();
+            try {
+                index = fresh;
+                ready = true;
+                replay = refreshedDuringRebuild;
+            } finally {
+                refreshedDuringRebuild = null;
+                lock.writeLock().unlock();
+            }
+            log.info("🔎 Index catalogue reconstruit: {} produit(s) en {} ms",
+                    fresh.size(), System.currentTimeMillis() - start);
+        } catch (Exception e) {
+            lock.writeLock().lock();
+            try {
+                refreshedDuringRebuild = null;
+            } finally {
+                lock.writeLock().unlock();
+            }
+            log.error("❌ Erreur lors de la reconstruction de l'index catalogue: {}", e.getMessage(), e);
+        }
+
+        replay.forEach(this::refreshDemande);
+    }
+
+    /**
+     * Met à jour l'index pour les produits d'une demande, une fois la transaction courante validée.
+     */
+    public void refreshDemandeAfterCommit(Long demandeId) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    refreshDemande(demandeId);
+                }
+            });
+        } else {
+            refreshDemande(demandeId);
+        }
+    }
+
+    /**
+     * Réindexe les produits d'une demande. Un produit peut figurer dans plusieurs demandes :
+     * il n'est retiré que si aucune de ses demandes n'est plus dans un statut indexé.
+     */
+    public void refreshDemande(Long demandeId) {
+        try {
+            Set<Long> productIds = new HashSet<>();
+            for (Object[] row : productRepository.findCatalogueEntriesByDemandeId(demandeId, TypeDemandeur.EXPORTATEUR)) {
+                productIds.add(((Product) row[0]).getId());
+            }
+            Map<Long, CatalogueSearchIndex.Entry> indexed = productIds.isEmpty() ? Map.of()
+                    : preferredEntries(productRepository.findCatalogueEntriesByProductIds(
+                            productIds, INDEXED_STATUSES, TypeDemandeur.EXPORTATEUR));
+
+            lock.writeLock().lock();
+            try {
+                for (Long productId : productIds) {
+                    CatalogueSearchIndex.Entry entry = indexed.get(productId);
+                    if (entry != null) {
+                        index.upsert(entry);
+                    } else {
+                        index.remove(productId);
+                    }
+                }
+                if (refreshedDuringRebuild != null) {
+                    refreshedDuringRebuild.add(demandeId);
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+            log.debug("Index catalogue mis à jour pour la demande {} ({} produit(s))", demandeId, productIds.size());
+        } catch (Exception e) {
+            log.error("Erreur lors de la mise à jour de l'index pour la demande {}: {}", demandeId, e.getMessage());
+        }
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    // ==================== RECHERCHE ====================
+
+    /**
+     * Recherche classée dans le catalogue importateur (demandes soumises ou validées).
+     */
+    public List<ProduitDTO> searchCatalogue(String keyword) {
+        lock.readLock().lock();
+        try {
+            return search(keyword, null).stream()
+                    .map(scored -> scored.entry().toProduitDTO())
+                    .collect(Collectors.toList());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Suggestions d'autocomplétion (noms de produits ou codes SH).
+     */
+    public List<SearchSuggestionDTO> suggest(String prefix) {
+        lock.readLock().lock();
+        try {
+            return index.suggest(prefix, null, MAX_SUGGESTIONS);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Exportateurs agréés dont au moins un produit validé et payé correspond à la recherche,
+     * par ordre de pertinence.
+     */
+    public List<Long> findExportateursValidesByProduit(String searchTerm) {
+        lock.readLock().lock();
+        try {
+            LinkedHashSet<Long> exporterIds = new LinkedHashSet<>();
+            for (CatalogueSearchIndex.ScoredEntry scored : search(searchTerm, EXPORTATEUR_VALIDE)) {
+                if (scored.entry().getExporterId() != null) {
+                    exporterIds.add(scored.entry().getExporterId());
+                }
+            }
+            return new ArrayList<>(exporterIds);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Classe une liste de produits déjà chargée (ex. produits d'un exportateur, brouillons compris)
+     * avec le même analyseur que le catalogue.
+     */
+    public List<Product> rankProducts(List<Product> products, String keyword) {
+        CatalogueSearchIndex local = new CatalogueSearchIndex();
+        Map<Long, Product> byId = new HashMap<>();
+        for (Product product : products) {
+            byId.put(product.getId(), product);
+            local.upsert(new CatalogueSearchIndex.Entry(toProduitDTO(product, null), null, null, null));
+        }
+        return local.search(keyword, null, MAX_RESULTS).stream()
+                .map(scored -> byId.get(scored.entry().getProductId()))
+                .collect(Collectors.toList());
+    }
+
+    // Saisie sans terme indexable (vide, mot vide, lettre isolée) : recherche par sous-chaîne comme l'ancien LIKE
+    private List<CatalogueSearchIndex.ScoredEntry> search(String keyword, Predicate<CatalogueSearchIndex.Entry> filter) {
+        return TextNormalizer.tokenize(keyword).isEmpty()
+                ? index.searchContaining(keyword, filter, MAX_RESULTS)
+                : index.search(keyword, filter, MAX_RESULTS);
+    }
+
+    // ==================== MAPPING ====================
+
+    // Une entrée par produit : celle de sa demande la plus avancée (validée et payée, puis validée)
+    private Map<Long, CatalogueSearchIndex.Entry> preferredEntries(List<Object[]> rows) {
+        Map<Long, CatalogueSearchIndex.Entry> entries = new HashMap<>();
+        for (Object[] row : rows) {
+            CatalogueSearchIndex.Entry entry = toEntry(row);
+            entries.merge(entry.getProductId(), entry,
+                    (current, candidate) -> rank(candidate) > rank(current) ? candidate : current);
+        }
+        return entries;
+    }
+
+    private static int rank(CatalogueSearchIndex.Entry entry) {
+        if (EXPORTATEUR_VALIDE.test(entry)) {
+            return 2;
+        }
+        return entry.getDemandeStatus() == DemandeStatus.VALIDEE ? 1 : 0;
+    }
+
+    private CatalogueSearchIndex.Entry toEntry(Object[] row) {
+        Product product = (Product) row[0];
+        ExportateurEtranger exportateur = (ExportateurEtranger) row[1];
+        DemandeStatus status = (DemandeStatus) row[2];
+        PaymentStatus paymentStatus = (PaymentStatus) row[3];
+
+        return new CatalogueSearchIndex.Entry(
+                toProduitDTO(product, exportateur),
+                status,
+                paymentStatus,
+                exportateur != null ? exportateur.getStatutAgrement() : null
+        );
+    }
+
+    private ProduitDTO toProduitDTO(Product product, ExportateurEtranger exportateur) {
+        ProduitDTO dto = ProduitDTO.builder()
+                .id(product.getId())
+                .productType(product.getProductType())
+                .category(product.getCategory())
+                .hsCode(product.getHsCode())
+                .productName(product.getProductName())
+                .isLinkedToBrand(product.getIsLinkedToBrand())
+                .brandName(product.getBrandName())
+                .isBrandOwner(product.getIsBrandOwner())
+                .hasBrandLicense(product.getHasBrandLicense())
+                .productState(product.getProductState())
+                .originCountry(product.getOriginCountry())
+                .annualQuantityValue(product.getAnnualQuantityValue())
+                .annualQuantityUnit(product.getAnnualQuantityUnit())
+                .commercialBrandName(product.getCommercialBrandName())
+                .productImage(product.getProductImage())
+                .processingType(product.getProductState())
+                .annualExportCapacity(product.getAnnualQuantityValue() != null &&
+                        product.getAnnualQuantityUnit() != null ?
+                        product.getAnnualQuantityValue() + " " + product.getAnnualQuantityUnit() : null)
+                .build();
+
+        if (exportateur != null) {
+            dto.setExporterId(exportateur.getId());
+            String exporterFullName = exportateur.getRaisonSociale();
+            if (exporterFullName == null || exporterFullName.isEmpty()) {
+                exporterFullName = (exportateur.getNom() != null ? exportateur.getNom() : "") +
+                        " " + (exportateur.getPrenom() != null ? exportateur.getPrenom() : "");
+                exporterFullName = exporterFullName.trim();
+            }
+            dto.setExporterName(exporterFullName);
+            dto.setExporterCountry(exportateur.getPaysOrigine());
+        }
+        return dto;
+    }
+}
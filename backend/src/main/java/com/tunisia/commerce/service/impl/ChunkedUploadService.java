@@ -0,0 +1,491 @@
+package com.tunisia.commerce.service.impl;
+
+import com.tunisia.commerce.config.StorageConfig;
+import com.tunisia.commerce.dto.upload.UploadSessionDTO;
+import com.tunisia.commerce.dto.upload.UploadSessionRequestDTO;
+import com.tunisia.commerce.dto.validation.DocumentDTO;
+import com.tunisia.commerce.entity.DemandeEnregistrement;
+import com.tunisia.commerce.entity.UploadSession;
+import com.tunisia.commerce.enums.DocumentType;
+import com.tunisia.commerce.enums.UploadSessionStatus;
+import com.tunisia.commerce.enums.UploadTarget;
+import com.tunisia.commerce.exception.UploadException;
+import com.tunisia.commerce.repository.DemandeEnregistrementRepository;
+import com.tunisia.commerce.repository.UploadSessionRepository;
+import com.tunisia.commerce.util.PathMultipartFile;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.time.LocalDateTime;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Téléversement reprenable par morceaux des documents et images produit.
+ *
+ * Protocole : création d'une session (taille et type annoncés), envoi des morceaux dans l'ordre
+ * à la position {@code offset} renvoyée par le serveur, chacun accompagné de son SHA-256, puis
+ * finalisation. Après une coupure, le client relit la session et reprend à {@code offset}.
+ *
+ * Un morceau est reçu hors transaction dans un fichier de transit (FileChannel, tampon de 64 Ko)
+ * et vérifié ; il n'est recopié dans le fichier partiel qu'une fois la position avancée par une
+ * mise à jour conditionnelle. Un client lent n'occupe donc ni connexion ni verrou pendant le
+ * transfert réseau, et un envoi concurrent du même morceau ne touche jamais au fichier partiel.
+ * Le fichier assemblé est vérifié puis remis aux chemins de téléversement existants sous forme de
+ * {@link PathMultipartFile}, sans jamais être chargé en mémoire.
+ */
+@Service
+@Slf4j
+public class ChunkedUploadService {
+
+    private static final int COPY_BUFFER_SIZE = 64 * 1024;
+    private static final String PART_DIRECTORY = "uploads-tmp";
+
+    private final UploadSessionRepository sessionRepository;
+    private final DemandeEnregistrementRepository demandeRepository;
+    private final ExportateurDossierService exportateurDossierService;
+    private final DemandeEnregistrementService demandeEnregistrementService;
+    private final DemandeImportationService demandeImportationService;
+    private final StorageConfig storageConfig;
+    private final TransactionTemplate transactionTemplate;
+    private final int maxChunkBytes;
+    private final long sessionTtlHours;
+    private final int maxOpenSessions;
+
+    public ChunkedUploadService(UploadSessionRepository sessionRepository,
+                                DemandeEnregistrementRepository demandeRepository,
+                                ExportateurDossierService exportateurDossierService,
+                                DemandeEnregistrementService demandeEnregistrementService,
+                                DemandeImportationService demandeImportationService,
+                                StorageConfig storageConfig,
+                                PlatformTransactionManager transactionManager,
+                                @Value("${app.upload.max-chunk-bytes:8388608}") int maxChunkBytes,
+                                @Value("${app.upload.session-ttl-hours:24}") long sessionTtlHours,
+                                @Value("${app.upload.max-open-sessions:20}") int maxOpenSessions) {
+        this.sessionRepository = sessionRepository;
+        this.demandeRepository = demandeRepository;
+        this.exportateurDossierService = exportateurDossierService;
+        this.demandeEnregistrementService = demandeEnregistrementService;
+        this.demandeImportationService = demandeImportationService;
+        this.storageConfig = storageConfig;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.maxChunkBytes = maxChunkBytes;
+        this.sessionTtlHours = sessionTtlHours;
+        this.maxOpenSessions = maxOpenSessions;
+    }
+
+    // ==================== SESSIONS ====================
+
+    public UploadSessionDTO createSession(Long ownerId, UploadSessionRequestDTO request) {
+        validateRequest(request);
+
+        DocumentType documentType = null;
+        if (request.getTarget() != UploadTarget.PRODUCT_IMAGE) {
+            try {
+                documentType = DocumentType.valueOf(request.getDocumentType());
+            } catch (IllegalArgumentException e) {
+                throw UploadException.invalidRequest("Type de document inconnu: " + request.getDocumentType());
+            }
+        }
+
+        DocumentType finalDocumentType = documentType;
+        UploadSession session = transactionTemplate.execute(status -> {
+            checkDemandeOwnership(request.getTarget(), request.getDemandeId(), ownerId);
+            if (sessionRepository.countByOwnerIdAndStatus(ownerId, UploadSessionStatus.EN_COURS) >= maxOpenSessions) {
+                throw UploadException.invalidRequest("Trop de téléversements en cours (maximum " + maxOpenSessions + ")");
+            }
+
+            String sessionId = UUID.randomUUID().toString();
+            Path partPath = createPartFile(sessionId);
+            LocalDateTime now = LocalDateTime.now();
+
+            return sessionRepository.save(UploadSession.builder()
+                    .id(sessionId)
+                    .ownerId(ownerId)
+                    .target(request.getTarget())
+                    .demandeId(request.getDemandeId())
+                    .productId(request.getProductId())
+                    .documentType(finalDocumentType)
+                    .fileName(request.getFileName())
+                    .contentType(request.getContentType())
+                    .totalSize(request.getTotalSize())
+                    .receivedBytes(0L)
+                    .expectedSha256(request.getSha256() != null ? request.getSha256().toLowerCase() : null)
+                    .partPath(partPath.toString())
+                    .status(UploadSessionStatus.EN_COURS)
+                    .createdAt(now)
+                    .updatedAt(now)
+                    .expiresAt(now.plusHours(sessionTtlHours))
+                    .build());
+        });
+
+        log.info("Session de téléversement {} créée ({}, demande {}, {} octets)",
+                session.getId(), session.getTarget(), session.getDemandeId(), session.getTotalSize());
+        return toDTO(session);
+    }
+
+    public UploadSessionDTO getSession(String sessionId, Long ownerId) {
+        UploadSession session = sessionRepository.findById(sessionId)
+                .orElseThrow(() -> UploadException.sessionNotFound(sessionId));
+        checkOwner(session, ownerId);
+        return toDTO(session);
+    }
+
+    // ==================== MORCEAUX ====================
+
+    /**
+     * Ajoute un morceau à la position {@code offset}, en trois temps : vérification de la position,
+     * réception et contrôle du morceau sans transaction ouverte, puis avancée conditionnelle de la
+     * position et recopie du morceau. Deux envois concurrents du même morceau : le second trouve
+     * la position déjà avancée et reçoit {@code UPLOAD_OFFSET_MISMATCH}.
+     *
+     * @param chunkSha256 SHA-256 hexadécimal du morceau, vérifié avant d'avancer la position
+     */
+    public UploadSessionDTO appendChunk(String sessionId, Long ownerId, long offset,
+                                        InputStream body, String chunkSha256) {
+        if (chunkSha256 == null || chunkSha256.isBlank()) {
+            throw UploadException.invalidRequest("Empreinte SHA-256 du morceau manquante");
+        }
+
+        UploadSession session = activeSession(sessionId, ownerId);
+        if (offset != session.getReceivedBytes()) {
+            throw UploadException.offsetMismatch(session.getReceivedBytes());
+        }
+
+        long maxBytes = Math.min(maxChunkBytes, session.getTotalSize() - offset);
+        Path staging = Paths.get(session.getPartPath() + "." + offset + "." + UUID.randomUUID() + ".chunk");
+        try {
+            long written = stageChunk(staging, body, maxBytes, offset, chunkSha256.trim().toLowerCase());
+
+            LocalDateTime now = LocalDateTime.now();
+            transactionTemplate.executeWithoutResult(status -> {
+                if (sessionRepository.advance(sessionId, offset, offset + written, now, now.plusHours(sessionTtlHours)) == 0) {
+                    throw staleOffset(sessionId, ownerId);
+                }
+                // La ligne reste verrouillée par la mise à jour jusqu'à la fin de la recopie (disque local)
+                appendStaged(Paths.get(session.getPartPath()), offset, staging);
+            });
+
+            session.setReceivedBytes(offset + written);
+            session.setUpdatedAt(now);
+            session.setExpiresAt(now.plusHours(sessionTtlHours));
+        } finally {
+            deleteQuietly(staging);
+        }
+
+        log.debug("Session {}: {}/{} octets reçus", sessionId, session.getReceivedBytes(), session.getTotalSize());
+        return toDTO(session);
+    }
+
+    // ==================== FINALISATION ====================
+
+    /**
+     * Vérifie le fichier assemblé et le remet au chemin de téléversement de la cible.
+     * Le document et la clôture de la session sont validés dans la même transaction.
+     */
+    public UploadSessionDTO complete(String sessionId, Long ownerId) {
+        UploadSession session = transactionTemplate.execute(status -> {
+            UploadSession locked = lockActiveSession(sessionId, ownerId);
+            if (!locked.getReceivedBytes().equals(locked.getTotalSize())) {
+                throw UploadException.incomplete(locked.getReceivedBytes(), locked.getTotalSize());
+            }
+
+            Path partPath = Paths.get(locked.getPartPath());
+            if (locked.getExpectedSha256() != null && !locked.getExpectedSha256().equals(sha256Hex(partPath))) {
+                throw UploadException.fileChecksumMismatch();
+            }
+
+            PathMultipartFile file;
+            try {
+                file = new PathMultipartFile(partPath, locked.getFileName(), locked.getContentType());
+            } catch (IOException e) {
+                throw new IllegalStateException("Fichier partiel illisible: " + e.getMessage(), e);
+            }
+            handOver(locked, file);
+
+            locked.setStatus(UploadSessionStatus.TERMINEE);
+            locked.setUpdatedAt(LocalDateTime.now());
+            deletePartAfterCommit(partPath);
+            return sessionRepository.save(locked);
+        });
+
+        log.info("Session de téléversement {} terminée ({} octets)", sessionId, session.getTotalSize());
+        return toDTO(session);
+    }
+
+    public void cancel(String sessionId, Long ownerId) {
+        transactionTemplate.executeWithoutResult(status -> {
+            UploadSession locked = lockActiveSession(sessionId, ownerId);
+            locked.setStatus(UploadSessionStatus.ANNULEE);
+            locked.setUpdatedAt(LocalDateTime.now());
+            sessionRepository.save(locked);
+            deletePartAfterCommit(Paths.get(locked.getPartPath()));
+        });
+        log.info("Session de téléversement {} annulée", sessionId);
+    }
+
+    /**
+     * Expire les sessions abandonnées et supprime leurs fichiers partiels.
+     */
+    @Scheduled(fixedDelayString = "${app.upload.cleanup-interval-ms:900000}")
+    public void expireAbandonedSessions() {
+        int expired = 0;
+        while (true) {
+            Integer batch = transactionTemplate.execute(status -> {
+                List<UploadSession> sessions = sessionRepository.lockExpired(LocalDateTime.now(), 100);
+                for (UploadSession session : sessions) {
+                    session.setStatus(UploadSessionStatus.EXPIREE);
+                    session.setUpdatedAt(LocalDateTime.now());
+                    deletePartAfterCommit(Paths.get(session.getPartPath()));
+                }
+                sessionRepository.saveAll(sessions);
+                return sessions.size();
+            });
+            if (batch == null || batch == 0) {
+                break;
+            }
+            expired += batch;
+        }
+        if (expired > 0) {
+            log.info("{} session(s) de téléversement expirée(s)", expired);
+        }
+    }
+
+    // ==================== MÉTHODES PRIVÉES ====================
+
+    private void handOver(UploadSession session, PathMultipartFile file) {
+        String documentType = session.getDocumentType() != null ? session.getDocumentType().name() : null;
+        switch (session.getTarget()) {
+            case REGISTRATION_DOCUMENT -> {
+                DocumentDTO document = exportateurDossierService.uploadDocument(
+                        session.getDemandeId(), session.getOwnerId(), file, documentType);
+                session.setResultDocumentId(document.getId());
+            }
+            case PRODUCT_DECLARATION_DOCUMENT -> {
+                DocumentDTO document = demandeEnregistrementService.uploadDocument(
+                        session.getDemandeId(), session.getOwnerId(), file, documentType, session.getProductId());
+                session.setResultDocumentId(document.getId());
+            }
+            case IMPORT_DOCUMENT -> {
+                DocumentDTO document = demandeImportationService.uploadDocument(
+                        session.getDemandeId(), session.getOwnerId(), file, documentType);
+                session.setResultDocumentId(document.getId());
+            }
+            case PRODUCT_IMAGE -> session.setResultUrl(demandeEnregistrementService.uploadProductImage(
+                    session.getDemandeId(), session.getProductId(), file, session.getFileName()));
+        }
+    }
+
+    // Réception du corps de la requête dans le fichier de transit, hachée au passage
+    private long stageChunk(Path staging, InputStream body, long maxBytes, long offset, String expectedSha256) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            long written = 0;
+
+            try (FileChannel channel = FileChannel.open(staging, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+                 ReadableByteChannel source = Channels.newChannel(body)) {
+                ByteBuffer buffer = ByteBuffer.allocate(COPY_BUFFER_SIZE);
+
+                int read;
+                while ((read = source.read(buffer)) != -1) {
+                    written += read;
+                    if (written > maxBytes) {
+                        throw UploadException.chunkTooLarge(maxBytes, offset);
+                    }
+                    buffer.flip();
+                    digest.update(buffer.duplicate());
+                    while (buffer.hasRemaining()) {
+                        channel.write(buffer);
+                    }
+                    buffer.clear();
+                }
+            }
+
+            if (written == 0) {
+                throw UploadException.invalidRequest("Morceau vide");
+            }
+            if (!HexFormat.of().formatHex(digest.digest()).equals(expectedSha256)) {
+                throw UploadException.chunkChecksumMismatch(offset);
+            }
+            return written;
+        } catch (UploadException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IllegalStateException("Écriture du morceau impossible: " + e.getMessage(), e);
+        }
+    }
+
+    // Recopie du morceau vérifié à sa position ; un reste d'écriture interrompue au-delà est retiré
+    private void appendStaged(Path partPath, long offset, Path staging) {
+        try (FileChannel target = FileChannel.open(partPath, StandardOpenOption.WRITE);
+             FileChannel source = FileChannel.open(staging, StandardOpenOption.READ)) {
+            long size = source.size();
+            long copied = 0;
+            while (copied < size) {
+                copied += target.transferFrom(source, offset + copied, size - copied);
+            }
+            target.truncate(offset + size);
+            target.force(false);
+        } catch (IOException e) {
+            throw new IllegalStateException("Écriture du morceau impossible: " + e.getMessage(), e);
+        }
+    }
+
+    // Mise à jour conditionnelle sans effet : position avancée entre-temps, ou session close
+    private UploadException staleOffset(String sessionId, Long ownerId) {
+        try {
+            return UploadException.offsetMismatch(activeSession(sessionId, ownerId).getReceivedBytes());
+        } catch (UploadException e) {
+            return e;
+        }
+    }
+
+    private void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            log.warn("Fichier de transit {} non supprimé: {}", path, e.getMessage());
+        }
+    }
+
+    private String sha256Hex(Path path) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            try (InputStream in = new DigestInputStream(Files.newInputStream(path), digest)) {
+                in.transferTo(OutputStream.nullOutputStream());
+            }
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (Exception e) {
+            throw new IllegalStateException("Lecture du fichier assemblé impossible: " + e.getMessage(), e);
+        }
+    }
+
+    private UploadSession lockActiveSession(String sessionId, Long ownerId) {
+        return checkActive(sessionRepository.lockById(sessionId)
+                .orElseThrow(() -> UploadException.sessionNotFound(sessionId)), ownerId);
+    }
+
+    // Lecture sans verrou, hors transaction : contrôle de la position avant la réception d'un morceau
+    private UploadSession activeSession(String sessionId, Long ownerId) {
+        return checkActive(sessionRepository.findById(sessionId)
+                .orElseThrow(() -> UploadException.sessionNotFound(sessionId)), ownerId);
+    }
+
+    private UploadSession checkActive(UploadSession session, Long ownerId) {
+        checkOwner(session, ownerId);
+        if (session.getStatus() != UploadSessionStatus.EN_COURS
+                || session.getExpiresAt().isBefore(LocalDateTime.now())) {
+            throw UploadException.notActive(session.getId());
+        }
+        return session;
+    }
+
+    private void checkOwner(UploadSession session, Long ownerId) {
+        if (!session.getOwnerId().equals(ownerId)) {
+            // Même réponse qu'une session inexistante : les identifiants ne sont pas énumérables
+            throw UploadException.sessionNotFound(session.getId());
+        }
+    }
+
+    private void checkDemandeOwnership(UploadTarget target, Long demandeId, Long ownerId) {
+        DemandeEnregistrement demande = demandeRepository.findById(demandeId)
+                .orElseThrow(() -> UploadException.invalidRequest("Demande non trouvée: " + demandeId));
+
+        boolean owner = target == UploadTarget.IMPORT_DOCUMENT
+                ? demande.getImportateur() != null && demande.getImportateur().getId().equals(ownerId)
+                : demande.getExportateur() != null && demande.getExportateur().getId().equals(ownerId);
+        if (!owner) {
+            throw UploadException.forbidden();
+        }
+    }
+
+    private void validateRequest(UploadSessionRequestDTO request) {
+        if (request.getTarget() == null || request.getDemandeId() == null) {
+            throw UploadException.invalidRequest("Cible et demande obligatoires");
+        }
+        if (request.getFileName() == null || request.getFileName().isBlank()
+                || request.getContentType() == null || request.getContentType().isBlank()) {
+            throw UploadException.invalidRequest("Nom et type du fichier obligatoires");
+        }
+        if (request.getTotalSize() == null || request.getTotalSize() <= 0) {
+            throw UploadException.invalidRequest("Taille du fichier invalide");
+        }
+        // Contrôles anticipés : le fichier complet est de toute façon revalidé à la finalisation
+        if (request.getTotalSize() > storageConfig.getMaxFileSize()) {
+            throw UploadException.invalidRequest(String.format("Fichier trop volumineux: %d bytes (max: %d)",
+                    request.getTotalSize(), storageConfig.getMaxFileSize()));
+        }
+        if (!storageConfig.getAllowedContentTypes().contains(request.getContentType())) {
+            throw UploadException.invalidRequest("Type MIME non autorisé: " + request.getContentType());
+        }
+        if (request.getTarget() != UploadTarget.PRODUCT_IMAGE && request.getDocumentType() == null) {
+            throw UploadException.invalidRequest("Type de document obligatoire");
+        }
+        if ((request.getTarget() == UploadTarget.PRODUCT_IMAGE
+                || request.getTarget() == UploadTarget.PRODUCT_DECLARATION_DOCUMENT)
+                && request.getProductId() == null) {
+            throw UploadException.invalidRequest("Produit obligatoire pour cette cible");
+        }
+        if (request.getSha256() != null && !request.getSha256().matches("(?i)[0-9a-f]{64}")) {
+            throw UploadException.invalidRequest("Empreinte SHA-256 invalide");
+        }
+    }
+
+    private Path createPartFile(String sessionId) {
+        try {
+            Path directory = storageConfig.getBasePath().resolve(PART_DIRECTORY);
+            Files.createDirectories(directory);
+            return Files.createFile(directory.resolve(sessionId + ".part"));
+        } catch (IOException e) {
+            throw new IllegalStateException("Création du fichier partiel impossible: " + e.getMessage(), e);
+        }
+    }
+
+    private void deletePartAfterCommit(Path partPath) {
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                try {
+                    Files.deleteIfExists(partPath);
+                } catch (IOException e) {
+                    log.warn("Fichier partiel {} non supprimé: {}", partPath, e.getMessage());
+                }
+            }
+        });
+    }
+
+    private UploadSessionDTO toDTO(UploadSession session) {
+        return UploadSessionDTO.builder()
+                .sessionId(session.getId())
+                .target(session.getTarget())
+                .status(session.getStatus())
+                .fileName(session.getFileName())
+                .totalSize(session.getTotalSize())
+                .offset(session.getReceivedBytes())
+                .maxChunkSize(maxChunkBytes)
+                .expiresAt(session.getExpiresAt())
+                .documentId(session.getResultDocumentId())
+                .url(session.getResultUrl())
+                .build();
+    }
+}
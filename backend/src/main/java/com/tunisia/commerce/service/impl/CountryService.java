@@ -13,6 +13,8 @@ import java.util.Optional;
 public class CountryService {
 
     private final CountryRepository countryRepository;
+    private final TariffEngine tariffEngine;
+    private final ExchangeRateService exchangeRateService;
 
     public Optional<Country> findByCode(String code) {
         return countryRepository.findByCode(code);
@@ -20,41 +22,15 @@ public class CountryService {
 
     public Country getCountryData(String countryCode) {
         if (countryCode == null || countryCode.isEmpty()) {
-            return getDefaultCountry();
+            return tariffEngine.getDefaultCountry();
         }
 
-        return countryRepository.findByCode(countryCode.toUpperCase())
-                .orElseGet(this::getDefaultCountry);
+        return tariffEngine.findCountry(countryCode)
+                .orElseGet(tariffEngine::getDefaultCountry);
     }
 
     public BigDecimal getExchangeRate(String countryCode, String currency) {
-        Optional<Country> country = countryRepository.findByCode(countryCode);
-        if (country.isPresent() && country.get().getExchangeRateToTnd() != null) {
-            return country.get().getExchangeRateToTnd();
-        }
-
-        // Taux par devise par défaut
-        switch (currency.toUpperCase()) {
-            case "EUR": return new BigDecimal("3.30");
-            case "USD": return new BigDecimal("3.10");
-            case "GBP": return new BigDecimal("3.90");
-            case "CHF": return new BigDecimal("3.50");
-            case "TRY": return new BigDecimal("0.11");
-            case "CNY": return new BigDecimal("0.43");
-            default: return BigDecimal.ONE;
-        }
-    }
-
-    private Country getDefaultCountry() {
-        return Country.builder()
-                .code("FR")
-                .name("France")
-                .dialCode("+33")
-                .exchangeRateToTnd(new BigDecimal("3.30"))
-                .hasFreeTradeAgreement(true)
-                .preferentialDutyRate(BigDecimal.ZERO)
-                .isEuMember(true)
-                .requiresCertificateOfOrigin(false)
-                .build();
+        Country country = countryCode != null ? tariffEngine.findCountry(countryCode).orElse(null) : null;
+        return exchangeRateService.current().resolve(currency, country);
     }
-}
\ No newline at end of file
+}
@@ -1,5 +1,6 @@
 package com.tunisia.commerce.service.impl;
 
+import com.tunisia.commerce.cache.ReadModelCaches;
 import com.tunisia.commerce.dto.produits.*;
 import com.tunisia.commerce.dto.user.UserDTO;
 import com.tunisia.commerce.dto.validation.DocumentDTO;
@@ -9,15 +10,18 @@ import com.tunisia.commerce.exception.ProductDeclarationException;
 import com.tunisia.commerce.repository.*;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.cache.annotation.Cacheable;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
+import java.nio.file.FileAlreadyExistsException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.*;
@@ -37,6 +41,8 @@ public class DemandeEnregistrementService {
     private final DemandeRoutingService demandeRoutingService;
     private final DocumentStorageFacade documentStorageFacade;
     private final SecureStorageService secureStorageService;
+    private final DocumentScanService documentScanService;
+    private final CatalogueSearchService catalogueSearchService;
 
 
 
@@ -171,8 +177,9 @@ public class DemandeEnregistrementService {
     /**
      * Récupérer tous les produits de l'exportateur connecté
      * @param exportateurId ID de l'exportateur
-     * @return Liste des produits
+     * @return Liste des produits (invalidée par les listeners des produits et des liens demande-produit)
      */
+    @Cacheable(cacheNames = ReadModelCaches.PRODUITS_EXPORTATEUR, key = "#exportateurId", sync = true)
     public List<ProduitDTO> getProductsByExportateur(Long exportateurId) {
         log.info("Récupération des produits pour l'exportateur ID: {}", exportateurId);
 
@@ -391,7 +398,9 @@ public class DemandeEnregistrementService {
         log.info("Recherche de produits pour exportateur {} avec mot-clé: {}", exportateurId, keyword);
 
         try {
-            List<Product> products = productRepository.searchProductsByExportateurId(exportateurId, keyword);
+            // Classement en mémoire sur les produits de l'exportateur (brouillons compris)
+            List<Product> products = catalogueSearchService.rankProducts(
+                    productRepository.findProductsByExportateurId(exportateurId), keyword);
             return products.stream()
                     .map(this::mapProductToProduitDTO)
                     .collect(Collectors.toList());
@@ -460,6 +469,12 @@ public class DemandeEnregistrementService {
     public List<ProduitDTO> searchProductsInCatalogue(String keyword) {
         log.info("Recherche dans le catalogue avec mot-clé: {}", keyword);
 
+        if (catalogueSearchService.isReady()) {
+            List<ProduitDTO> products = catalogueSearchService.searchCatalogue(keyword);
+            log.info("{} produit(s) trouvé(s) via l'index catalogue", products.size());
+            return products;
+        }
+
         try {
             List<Object[]> results = productRepository.searchProductsInCatalogueWithExporter(keyword);
 
@@ -732,10 +747,11 @@ public class DemandeEnregistrementService {
                     .fileName(storageResult.getFileName())
                     .filePath(storageResult.getFilePath())
                     .fileHash(storageResult.getFileHash())
+                    .blobHash(storageResult.getBlobHash())
                     .fileSize(storageResult.getFileSize())
                     .fileType(file.getContentType())
                     .documentType(documentType)
-                    .status(DocumentStatus.EN_ATTENTE)
+                    .status(documentScanService.initialStatus(storageResult.getBlobHash()))
                     .uploadedAt(LocalDateTime.now())
                     .exportateur(demande.getExportateur())
                     .demande(demande)
@@ -743,6 +759,7 @@ public class DemandeEnregistrementService {
                     .build();
 
             document = documentRepository.save(document);
+            documentScanService.scanAfterCommit(document);
 
             log.info("Document de déclaration produit stocké avec ID: {}", document.getId());
 
@@ -799,6 +816,7 @@ public class DemandeEnregistrementService {
             demande.setSubmittedAt(LocalDateTime.now());
 
             demande = demandeRepository.save(demande);  // ✅ 1. Sauvegarde de la demande
+            catalogueSearchService.refreshDemandeAfterCommit(demande.getId());
 
 
             // ✅ 2. AJOUTER ICI - Après la sauvegarde et avant l'historique
@@ -929,14 +947,12 @@ public class DemandeEnregistrementService {
                 Files.write(filePath, fileBytes);
 
                 if (existingDoc != null) {
-                    // Supprimer l'ancien fichier
-                    Path oldPath = Paths.get(existingDoc.getFilePath());
-                    if (Files.exists(oldPath)) {
-                        Files.deleteIfExists(oldPath);
-                    }
+                    // Libérer l'ancien contenu (éventuellement partagé avec d'autres documents)
+                    secureStorageService.releaseDocument(existingDoc);
                     // Mettre à jour le document existant
                     existingDoc.setFileName(docUpload.getFileName());
                     existingDoc.setFilePath(filePath.toString());
+                    existingDoc.setBlobHash(null);
                     existingDoc.setFileType(docUpload.getFileType());
                     existingDoc.setUploadedAt(LocalDateTime.now());
                     documentRepository.save(existingDoc);
@@ -1134,24 +1150,26 @@ public class DemandeEnregistrementService {
                 fileName = "product_" + productId + "_" + System.currentTimeMillis() + "." + extension;
             }
 
-            Path filePath = uploadPath.resolve(fileName);
+            String nameWithoutExt = fileName;
+            String ext = "." + extension;
+            int lastDot = fileName.lastIndexOf('.');
+            if (lastDot > 0) {
+                nameWithoutExt = fileName.substring(0, lastDot);
+                ext = fileName.substring(lastDot);
+            }
+
+            // Création exclusive (CREATE_NEW) : pas de sonde Files.exists ni de course entre deux envois du même nom
             String finalFileName = fileName;
             int counter = 1;
-
-            while (Files.exists(filePath)) {
-                String nameWithoutExt = fileName;
-                String ext = "." + extension;
-                int lastDot = fileName.lastIndexOf('.');
-                if (lastDot > 0) {
-                    nameWithoutExt = fileName.substring(0, lastDot);
-                    ext = fileName.substring(lastDot);
+            while (true) {
+                try {
+                    Files.write(uploadPath.resolve(finalFileName), imageBytes, StandardOpenOption.CREATE_NEW);
+                    break;
+                } catch (FileAlreadyExistsException e) {
+                    finalFileName = nameWithoutExt + "_" + counter + ext;
+                    counter++;
                 }
-                finalFileName = nameWithoutExt + "_" + counter + ext;
-                filePath = uploadPath.resolve(finalFileName);
-                counter++;
             }
-
-            Files.write(filePath, imageBytes);
             log.info("Image sauvegardée: {}", finalFileName);
 
             return "/uploads/" + demandeId + "/products/" + productId + "/images/" + finalFileName;
@@ -1226,8 +1244,9 @@ public class DemandeEnregistrementService {
                 }
             }
 
-            // 7. Supprimer les documents
+            // 7. Supprimer les documents et libérer leur contenu
             List<Document> documents = documentRepository.findByDemandeId(demandeId);
+            documents.forEach(secureStorageService::releaseDocument);
             documentRepository.deleteAll(documents);
             log.info("Supprimé {} document(s) pour la demande {}", documents.size(), demandeId);
 
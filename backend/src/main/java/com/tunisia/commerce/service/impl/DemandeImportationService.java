@@ -39,6 +39,7 @@ public class DemandeImportationService {
     private final DemandeImportateurRepository demandeImportateurRepository;
     private final DemandeRoutingService demandeRoutingService;
     private final SecureStorageService secureStorageService;
+    private final DocumentScanService documentScanService;
     private final DocumentStorageFacade documentStorageFacade;
 
     private static final String REFERENCE_PREFIX = "IMP-";
@@ -314,22 +315,8 @@ public class DemandeImportationService {
      * Supprimer un document en toute sécurité (fichier physique + base de données)
      */
     private void deleteDocumentSafely(Document document) {
-        try {
-            // Supprimer le fichier physique
-            String filePath = document.getFilePath();
-            if (filePath != null && !filePath.isEmpty()) {
-                Path path = Paths.get(filePath);
-                if (Files.exists(path)) {
-                    Files.delete(path);
-                    log.info("Fichier physique supprimé: {}", filePath);
-                } else {
-                    log.warn("Fichier physique non trouvé: {}", filePath);
-                }
-            }
-        } catch (IOException e) {
-            log.error("Erreur lors de la suppression du fichier {}: {}", document.getFilePath(), e.getMessage());
-            // On continue même si la suppression physique échoue
-        }
+        // Libérer le contenu (le blob peut être partagé avec d'autres documents)
+        secureStorageService.releaseDocument(document);
 
         // Supprimer de la base de données
         documentRepository.delete(document);
@@ -349,19 +336,8 @@ public class DemandeImportationService {
                 throw new RuntimeException("Le document n'appartient pas à cette demande");
             }
 
-            // Supprimer le fichier physique
-            try {
-                String filePath = document.getFilePath();
-                if (filePath != null && !filePath.isEmpty()) {
-                    Path path = Paths.get(filePath);
-                    if (Files.exists(path)) {
-                        Files.delete(path);
-                        log.info("Fichier physique supprimé: {}", filePath);
-                    }
-                }
-            } catch (IOException e) {
-                log.error("Erreur lors de la suppression du fichier: {}", e.getMessage());
-            }
+            // Libérer le contenu du document
+            secureStorageService.releaseDocument(document);
 
             // Supprimer de la base de données
             documentRepository.delete(document);
@@ -393,7 +369,7 @@ public class DemandeImportationService {
             throw new RuntimeException("Impossible de supprimer une demande qui n'est pas en brouillon. Statut actuel: " + demande.getStatus());
         }
 
-        // 4. Récupérer et supprimer les documents physiques
+        // 4. Récupérer les documents et libérer leur contenu
         List<Document> documents = documentRepository.findByDemandeId(demandeId);
         deletePhysicalDocuments(documents);
 
@@ -421,25 +397,11 @@ public class DemandeImportationService {
     }
 
     /**
-     * Supprimer les fichiers physiques des documents
+     * Libérer le contenu des documents (références aux blobs ou fichiers de l'ancien format)
      */
     private void deletePhysicalDocuments(List<Document> documents) {
         for (Document document : documents) {
-            try {
-                String filePath = document.getFilePath();
-                if (filePath != null && !filePath.isEmpty()) {
-                    Path path = Paths.get(filePath);
-                    if (Files.exists(path)) {
-                        Files.delete(path);
-                        log.info("Fichier physique supprimé: {}", filePath);
-                    } else {
-                        log.warn("Fichier physique non trouvé: {}", filePath);
-                    }
-                }
-            } catch (IOException e) {
-                log.error("Erreur lors de la suppression du fichier {}: {}", document.getFilePath(), e.getMessage());
-                // On continue la suppression même si un fichier pose problème
-            }
+            secureStorageService.releaseDocument(document);
         }
     }
 
@@ -672,15 +634,17 @@ public class DemandeImportationService {
                     .fileName(storageResult.getFileName())
                     .filePath(storageResult.getFilePath())
                     .fileHash(storageResult.getFileHash())
+                    .blobHash(storageResult.getBlobHash())
                     .fileSize(storageResult.getFileSize())
                     .fileType(file.getContentType())
                     .documentType(documentType)
-                    .status(DocumentStatus.EN_ATTENTE)
+                    .status(documentScanService.initialStatus(storageResult.getBlobHash()))
                     .uploadedAt(LocalDateTime.now())
                     .demande(demande)
                     .build();
 
             document = documentRepository.save(document);
+            documentScanService.scanAfterCommit(document);
 
             return convertToDocumentDTO(document);
 
@@ -0,0 +1,113 @@
+package com.tunisia.commerce.service.impl;
+
+import com.tunisia.commerce.entity.Document;
+import com.tunisia.commerce.repository.DocumentRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+
+/**
+ * Reprise des documents de l'ancien format (un fichier UUID + sidecar .hash par document)
+ * dans le stockage adressé par contenu. Les doublons sont regroupés sur un même blob ;
+ * l'ancien fichier est supprimé après validation de la transaction du document.
+ *
+ * Désactivée par défaut ({@code app.storage.blob-migration.enabled}) ; traite un lot par passage.
+ */
+@Service
+@Slf4j
+public class DocumentBlobMigrationService {
+
+    private final DocumentRepository documentRepository;
+    private final SecureStorageService secureStorageService;
+    private final TransactionTemplate transactionTemplate;
+    private final boolean enabled;
+    private final int batchSize;
+
+    private volatile long lastDocumentId = 0;
+    private volatile boolean completed = false;
+
+    public DocumentBlobMigrationService(DocumentRepository documentRepository,
+                                        SecureStorageService secureStorageService,
+                                        PlatformTransactionManager transactionManager,
+                                        @Value("${app.storage.blob-migration.enabled:false}") boolean enabled,
+                                        @Value("${app.storage.blob-migration.batch-size:100}") int batchSize) {
+        this.documentRepository = documentRepository;
+        this.secureStorageService = secureStorageService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.enabled = enabled;
+        this.batchSize = batchSize;
+    }
+
+    @Scheduled(fixedDelayString = "${app.storage.blob-migration.interval-ms:60000}")
+    public void migrateNextBatch() {
+        if (!enabled || completed) {
+            return;
+        }
+
+        List<Long> documentIds = documentRepository.findLegacyDocumentIds(lastDocumentId, PageRequest.of(0, batchSize));
+        if (documentIds.isEmpty()) {
+            completed = true;
+            log.info("Migration vers le stockage par contenu terminée");
+            return;
+        }
+
+        int migrated = 0;
+        for (Long documentId : documentIds) {
+            try {
+                Boolean done = transactionTemplate.execute(status -> migrate(documentId));
+                if (Boolean.TRUE.equals(done)) {
+                    migrated++;
+                }
+            } catch (Exception e) {
+                // Fichier absent ou corrompu : le document reste à l'ancien format
+                log.warn("Document {} non migré: {}", documentId, e.getMessage());
+            }
+            lastDocumentId = documentId;
+        }
+        log.info("Migration stockage par contenu: {}/{} document(s) repris", migrated, documentIds.size());
+    }
+
+    private boolean migrate(Long documentId) {
+        Document document = documentRepository.findById(documentId).orElse(null);
+        if (document == null || document.getBlobHash() != null) {
+            return false;
+        }
+
+        Path legacyPath = Paths.get(document.getFilePath());
+        SecureStorageService.StorageResult result;
+        try {
+            result = secureStorageService.adoptLegacyFile(legacyPath, document.getFileHash());
+        } catch (Exception e) {
+            throw new IllegalStateException(e.getMessage(), e);
+        }
+
+        document.setFilePath(result.getFilePath());
+        document.setBlobHash(result.getBlobHash());
+        if (document.getFileHash() == null) {
+            document.setFileHash(result.getFileHash());
+        }
+        documentRepository.save(document);
+
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                try {
+                    secureStorageService.secureDelete(legacyPath);
+                } catch (Exception e) {
+                    log.warn("Ancien fichier {} non supprimé: {}", legacyPath, e.getMessage());
+                }
+            }
+        });
+        return true;
+    }
+}
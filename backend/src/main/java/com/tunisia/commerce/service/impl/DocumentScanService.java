@@ -0,0 +1,289 @@
+package com.tunisia.commerce.service.impl;
+
+import com.tunisia.commerce.entity.Document;
+import com.tunisia.commerce.enums.DocumentStatus;
+import com.tunisia.commerce.enums.ScanVerdict;
+import com.tunisia.commerce.repository.DocumentRepository;
+import com.tunisia.commerce.repository.StoredBlobRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import jakarta.annotation.PreDestroy;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import xyz.capybara.clamav.ClamavClient;
+import xyz.capybara.clamav.commands.scan.result.ScanResult;
+
+import java.io.InputStream;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Analyse antivirus asynchrone des documents téléversés.
+ *
+ * Un document dont le contenu n'a jamais été analysé est créé en QUARANTAINE (invisible pour la
+ * validation, non téléchargeable). Après validation de la transaction, son blob est confié à un
+ * pool borné de workers qui l'envoient à clamd (commande INSTREAM, par morceaux) ; le verdict est
+ * enregistré sur le blob puis appliqué à tous les documents en quarantaine qui le partagent :
+ * EN_ATTENTE si sain, REJETE si infecté.
+ *
+ * Le verdict est mis en cache par empreinte (stored_blobs) : un contenu déjà analysé n'est
+ * jamais renvoyé à clamd. File pleine, clamd indisponible ou redémarrage : les documents restent
+ * en quarantaine et sont repris par le balayage périodique.
+ *
+ * Désactivée par défaut ({@code app.antivirus.enabled}) : les documents sont alors créés EN_ATTENTE.
+ */
+@Slf4j
+@Service
+public class DocumentScanService {
+
+    private final DocumentRepository documentRepository;
+    private final StoredBlobRepository blobRepository;
+    private final SecureStorageService secureStorageService;
+    private final BlobStoreService blobStoreService;
+    private final TransactionTemplate transactionTemplate;
+    private final ClamavClient clamavClient;
+    private final boolean enabled;
+    private final int sweepBatchSize;
+
+    private final ThreadPoolExecutor executor;
+    // Empreintes en cours d'analyse : deux documents au même contenu ne déclenchent qu'une analyse
+    private final Set<String> inFlight = ConcurrentHashMap.newKeySet();
+
+    // Métriques
+    private final Timer scanTimer;
+    private final Counter cleanCounter;
+    private final Counter infectedCounter;
+    private final Counter errorCounter;
+    private final Counter cacheHitCounter;
+
+    public DocumentScanService(DocumentRepository documentRepository,
+                               StoredBlobRepository blobRepository,
+                               SecureStorageService secureStorageService,
+                               BlobStoreService blobStoreService,
+                               PlatformTransactionManager transactionManager,
+                               MeterRegistry meterRegistry,
+                               @Value("${app.antivirus.enabled:false}") boolean enabled,
+                               @Value("${app.antivirus.host:localhost}") String host,
+                               @Value("${app.antivirus.port:3310}") int port,
+                               @Value("${app.antivirus.workers:2}") int workers,
+                               @Value("${app.antivirus.queue-capacity:200}") int queueCapacity,
+                               @Value("${app.antivirus.sweep-batch-size:100}") int sweepBatchSize) {
+        this.documentRepository = documentRepository;
+        this.blobRepository = blobRepository;
+        this.secureStorageService = secureStorageService;
+        this.blobStoreService = blobStoreService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.clamavClient = new ClamavClient(host, port);
+        this.enabled = enabled;
+        this.sweepBatchSize = sweepBatchSize;
+
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(workers, workers, 60L, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "antivirus-scan-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+        new ExecutorServiceMetrics(executor, "antivirus", Tags.empty()).bindTo(meterRegistry);
+
+        this.scanTimer = Timer.builder("antivirus.analyse")
+                .description("Durée d'analyse d'un contenu par clamd")
+                .register(meterRegistry);
+        this.cleanCounter = Counter.builder("antivirus.verdicts").tag("verdict", "SAIN")
+                .description("Contenus analysés par verdict")
+                .register(meterRegistry);
+        this.infectedCounter = Counter.builder("antivirus.verdicts").tag("verdict", "INFECTE")
+                .description("Contenus analysés par verdict")
+                .register(meterRegistry);
+        this.errorCounter = Counter.builder("antivirus.erreurs")
+                .description("Analyses en échec (clamd indisponible, fichier illisible)")
+                .register(meterRegistry);
+        this.cacheHitCounter = Counter.builder("antivirus.cache")
+                .description("Verdicts servis depuis le cache par empreinte, sans analyse")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Verdict d'une analyse : signature détectée, null si le contenu est sain.
+     */
+    @Getter
+    @AllArgsConstructor
+    public static class Verdict {
+        private final ScanVerdict verdict;
+        private final String signature;
+    }
+
+    // ==================== ENTRÉE EN QUARANTAINE ====================
+
+    /**
+     * Statut initial d'un nouveau document : le verdict connu de son contenu, sinon QUARANTAINE.
+     */
+    public DocumentStatus initialStatus(String blobHash) {
+        if (!enabled || blobHash == null) {
+            return DocumentStatus.EN_ATTENTE;
+        }
+        ScanVerdict known = blobRepository.findScanVerdict(blobHash).orElse(null);
+        if (known == null) {
+            return DocumentStatus.QUARANTAINE;
+        }
+        cacheHitCounter.increment();
+        return known == ScanVerdict.SAIN ? DocumentStatus.EN_ATTENTE : DocumentStatus.REJETE;
+    }
+
+    /**
+     * Planifie l'analyse d'un document en quarantaine, après validation de la transaction de création.
+     */
+    public void scanAfterCommit(Document document) {
+        if (!enabled || document.getStatus() != DocumentStatus.QUARANTAINE || document.getBlobHash() == null) {
+            return;
+        }
+        String blobHash = document.getBlobHash();
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    submit(blobHash);
+                }
+            });
+        } else {
+            submit(blobHash);
+        }
+    }
+
+    /**
+     * Refuse la lecture d'un document non encore analysé ou infecté.
+     */
+    public void assertDownloadable(Document document) {
+        if (document.getStatus() == DocumentStatus.QUARANTAINE) {
+            throw new SecurityException("Document en cours d'analyse antivirus");
+        }
+        if (enabled && document.getBlobHash() != null
+                && blobRepository.findScanVerdict(document.getBlobHash()).orElse(null) == ScanVerdict.INFECTE) {
+            throw new SecurityException("Document bloqué: contenu infecté");
+        }
+    }
+
+    // ==================== ANALYSE ====================
+
+    /**
+     * Reprend les documents restés en quarantaine (file pleine, clamd indisponible, redémarrage).
+     */
+    @Scheduled(fixedDelayString = "${app.antivirus.sweep-interval-ms:60000}")
+    public void sweepQuarantine() {
+        if (!enabled) {
+            return;
+        }
+        // Marge d'une minute : les documents tout juste créés sont déjà confiés aux workers
+        List<String> hashes = documentRepository.findQuarantinedBlobHashes(
+                LocalDateTime.now().minusMinutes(1), PageRequest.of(0, sweepBatchSize));
+        hashes.forEach(this::submit);
+        if (!hashes.isEmpty()) {
+            log.info("Balayage quarantaine: {} contenu(s) à analyser", hashes.size());
+        }
+    }
+
+    private void submit(String blobHash) {
+        if (!inFlight.add(blobHash)) {
+            return;
+        }
+        try {
+            executor.execute(() -> {
+                try {
+                    processBlob(blobHash);
+                } finally {
+                    inFlight.remove(blobHash);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            inFlight.remove(blobHash);
+            log.debug("File d'analyse pleine, {} repris au prochain balayage", blobHash);
+        }
+    }
+
+    /**
+     * Applique le verdict d'un contenu, en l'analysant seulement s'il est inconnu.
+     */
+    void processBlob(String blobHash) {
+        try {
+            ScanVerdict known = blobRepository.findScanVerdict(blobHash).orElse(null);
+            Verdict verdict;
+            if (known != null) {
+                cacheHitCounter.increment();
+                verdict = new Verdict(known, null);
+            } else {
+                verdict = scanTimer.recordCallable(() -> {
+                    try (InputStream content = secureStorageService.openDecryptedStream(blobStoreService.pathFor(blobHash))) {
+                        return scan(content);
+                    }
+                });
+                (verdict.getVerdict() == ScanVerdict.SAIN ? cleanCounter : infectedCounter).increment();
+            }
+            applyVerdict(blobHash, verdict, known == null);
+        } catch (Exception e) {
+            // Le document reste en quarantaine : jamais de libération sans verdict
+            errorCounter.increment();
+            log.warn("Analyse antivirus de {} impossible: {}", blobHash, e.getMessage());
+        }
+    }
+
+    /**
+     * Envoie un contenu à clamd (INSTREAM : le client découpe le flux en morceaux préfixés de leur taille).
+     */
+    Verdict scan(InputStream content) {
+        ScanResult result = clamavClient.scan(content);
+        if (result instanceof ScanResult.VirusFound virusFound) {
+            return new Verdict(ScanVerdict.INFECTE, firstSignature(virusFound.getFoundViruses()));
+        }
+        return new Verdict(ScanVerdict.SAIN, null);
+    }
+
+    private void applyVerdict(String blobHash, Verdict verdict, boolean record) {
+        Integer released = transactionTemplate.execute(status -> {
+            if (record) {
+                blobRepository.recordScanVerdict(blobHash, verdict.getVerdict(), verdict.getSignature(), LocalDateTime.now());
+            }
+            return verdict.getVerdict() == ScanVerdict.SAIN
+                    ? documentRepository.releaseQuarantined(blobHash, DocumentStatus.EN_ATTENTE, null)
+                    : documentRepository.releaseQuarantined(blobHash, DocumentStatus.REJETE,
+                    "Fichier rejeté par l'analyse antivirus"
+                            + (verdict.getSignature() != null ? ": " + verdict.getSignature() : ""));
+        });
+
+        if (verdict.getVerdict() == ScanVerdict.INFECTE) {
+            log.warn("Contenu infecté {} ({}): {} document(s) rejeté(s)", blobHash, verdict.getSignature(), released);
+        } else {
+            log.debug("Contenu sain {}: {} document(s) libéré(s)", blobHash, released);
+        }
+    }
+
+    private String firstSignature(Map<String, Collection<String>> foundViruses) {
+        return foundViruses.values().stream()
+                .flatMap(Collection::stream)
+                .findFirst()
+                .orElse("signature inconnue");
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+}
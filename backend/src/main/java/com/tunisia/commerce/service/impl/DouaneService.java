@@ -8,61 +8,342 @@ import com.tunisia.commerce.entity.Product;
 import com.tunisia.commerce.enums.DemandeStatus;
 import com.tunisia.commerce.enums.TypeDemande;
 import com.tunisia.commerce.repository.DemandeEnregistrementRepository;
-import lombok.RequiredArgsConstructor;
+import com.tunisia.commerce.repository.DemandeProduitRepository;
+import com.tunisia.commerce.util.BloomFilter;
+import jakarta.annotation.PostConstruct;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.stream.Collectors;
 
+/**
+ * Vérification des références de dossiers par la douane.
+ *
+ * Trois niveaux, du moins au plus coûteux :
+ * 1. un filtre de Bloom des références vérifiables écarte les références inconnues sans requête ;
+ * 2. un cache borné des réponses par référence (réponses négatives comprises) ;
+ * 3. un chargement par lot : une requête pour les demandes et leur exportateur, une pour les produits.
+ *
+ * Le filtre est reconstruit au démarrage puis périodiquement ; une demande qui passe à VALIDEE
+ * y est ajoutée après validation de la transaction (voir DemandeEnregistrementListener). Les
+ * ajouts faits pendant une reconstruction sont rejoués dans le nouveau filtre.
+ *
+ * Filtre et cache sont propres à chaque instance : chaque changement de demande est diffusé sur
+ * un canal Redis, pour que les autres instances invalident leur réponse et complètent leur filtre.
+ */
 @Service
-@RequiredArgsConstructor
-public class DouaneService {
+public class DouaneService implements MessageListener {
 
     private static final Logger log = LoggerFactory.getLogger(DouaneService.class);
 
+    private static final String CHANNEL = "douane:reference:changed";
+
+    private static final List<TypeDemande> VERIFIABLE_TYPES =
+            List.of(TypeDemande.REGISTRATION, TypeDemande.PRODUCT_DECLARATION);
+
     private final DemandeEnregistrementRepository demandeRepository;
+    private final DemandeProduitRepository demandeProduitRepository;
+    private final StringRedisTemplate redisTemplate;
+    private final RedisMessageListenerContainer listenerContainer;
+    private final long cacheTtlMinutes;
+    private final double bloomFalsePositiveRate;
+    private final boolean redisInvalidation;
+    // Identifiant de l'instance : ses propres messages sont ignorés
+    private final String nodeId = UUID.randomUUID().toString();
+
+    // Null tant que le premier chargement n'est pas terminé : toutes les références passent alors en base
+    private final AtomicReference<BloomFilter> referenceFilter = new AtomicReference<>();
+    // Références ajoutées pendant une reconstruction (null hors reconstruction), sous filterLock
+    private final Object filterLock = new Object();
+    private Set<String> addedDuringRebuild;
+    private final Map<String, CachedVerification> cache;
+    // Un chargement commencé avant une invalidation n'est pas mis en cache
+    private final AtomicLong generation = new AtomicLong();
+
+    public DouaneService(DemandeEnregistrementRepository demandeRepository,
+                         DemandeProduitRepository demandeProduitRepository,
+                         StringRedisTemplate redisTemplate,
+                         RedisMessageListenerContainer listenerContainer,
+                         @Value("${app.douane.cache-max-entries:20000}") int cacheMaxEntries,
+                         @Value("${app.douane.cache-ttl-minutes:30}") long cacheTtlMinutes,
+                         @Value("${app.douane.bloom-false-positive-rate:0.001}") double bloomFalsePositiveRate,
+                         @Value("${app.douane.redis-invalidation:true}") boolean redisInvalidation) {
+        this.demandeRepository = demandeRepository;
+        this.demandeProduitRepository = demandeProduitRepository;
+        this.redisTemplate = redisTemplate;
+        this.listenerContainer = listenerContainer;
+        this.cacheTtlMinutes = cacheTtlMinutes;
+        this.bloomFalsePositiveRate = bloomFalsePositiveRate;
+        this.redisInvalidation = redisInvalidation;
+        this.cache = new LinkedHashMap<>(1024, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedVerification> eldest) {
+                return size() > cacheMaxEntries;
+            }
+        };
+    }
+
+    private static class CachedVerification {
+        private final DouaneVerificationResponse response;
+        private final Instant cachedAt;
+
+        CachedVerification(DouaneVerificationResponse response) {
+            this.response = response;
+            this.cachedAt = Instant.now();
+        }
+
+        boolean isExpired(long ttlMinutes) {
+            return Duration.between(cachedAt, Instant.now()).toMinutes() >= ttlMinutes;
+        }
+    }
+
+    // ==================== VÉRIFICATION ====================
 
     /**
      * Vérifie une référence de dossier (Demande d'enregistrement exportateur ou Déclaration produit)
      * Accessible par ADMIN et DOUANE
      * Ne retourne que les dossiers validés (status = VALIDEE)
      */
-    @Transactional(readOnly = true)
     public DouaneVerificationResponse verifyReference(String reference) {
         log.info("=== VÉRIFICATION RÉFÉRENCE DOUANE: {} ===", reference);
+        return verifyReferences(List.of(reference)).get(reference.trim());
+    }
+
+    /**
+     * Vérifie un lot de références (manifeste). La réponse conserve l'ordre des références ;
+     * la valeur est null pour une référence inconnue ou non validée.
+     */
+    public Map<String, DouaneVerificationResponse> verifyReferences(Collection<String> references) {
+        Map<String, DouaneVerificationResponse> results = new LinkedHashMap<>();
+        List<String> toLoad = new ArrayList<>();
+        BloomFilter filter = referenceFilter.get();
+
+        for (String raw : references) {
+            if (raw == null || raw.isBlank()) {
+                continue;
+            }
+            String reference = raw.trim();
+            if (results.containsKey(reference)) {
+                continue;
+            }
+            if (filter != null && !filter.mightContain(reference)) {
+                results.put(reference, null);
+                continue;
+            }
+            CachedVerification cached = cacheGet(reference);
+            if (cached != null) {
+                results.put(reference, cached.response);
+                continue;
+            }
+            results.put(reference, null);
+            toLoad.add(reference);
+        }
+
+        if (!toLoad.isEmpty()) {
+            long loadGeneration = generation.get();
+            Map<String, DouaneVerificationResponse> loaded = loadVerifiable(toLoad);
+            for (String reference : toLoad) {
+                DouaneVerificationResponse response = loaded.get(reference);
+                results.put(reference, response);
+                cachePut(reference, response, loadGeneration);
+            }
+        }
+
+        log.debug("Vérification douane: {} référence(s), {} chargée(s) en base", results.size(), toLoad.size());
+        return results;
+    }
+
+    // ==================== INDEX ====================
+
+    @PostConstruct
+    public void subscribe() {
+        if (!redisInvalidation) {
+            return;
+        }
+        listenerContainer.addMessageListener(this, new ChannelTopic(CHANNEL));
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        rebuildReferenceFilter();
+    }
+
+    /**
+     * Reconstruit le filtre de Bloom (les références qui ne sont plus vérifiables en sortent).
+     * Les validations reçues entre la lecture des références et la publication du nouveau filtre
+     * y sont rejouées : sinon elles n'iraient que dans l'ancien filtre et seraient perdues.
+     */
+    @Scheduled(fixedDelayString = "${app.douane.bloom-rebuild-ms:3600000}",
+            initialDelayString = "${app.douane.bloom-rebuild-ms:3600000}")
+    public synchronized void rebuildReferenceFilter() {
+        synchronized (filterLock) {
+            addedDuringRebuild = new HashSet<>();
+        }
+        try {
+            List<String> references = demandeRepository.findReferencesByStatusAndTypeIn(
+                    DemandeStatus.VALIDEE, VERIFIABLE_TYPES);
+            // Marge pour les validations à venir avant la prochaine reconstruction
+            BloomFilter filter = BloomFilter.create(Math.max(1024, references.size() * 2L), bloomFalsePositiveRate);
+            references.stream().filter(Objects::nonNull).forEach(filter::put);
+            int replayed;
+            synchronized (filterLock) {
+                addedDuringRebuild.forEach(filter::put);
+                replayed = addedDuringRebuild.size();
+                referenceFilter.set(filter);
+            }
+            log.info("Filtre des références douane reconstruit: {} référence(s) (+{} pendant la reconstruction), {} bits",
+                    references.size(), replayed, filter.bitCount());
+        } catch (Exception e) {
+            log.error("Reconstruction du filtre des références douane impossible: {}", e.getMessage());
+        } finally {
+            synchronized (filterLock) {
+                addedDuringRebuild = null;
+            }
+        }
+    }
+
+    /**
+     * Appelé à chaque écriture d'une demande : invalide sa réponse en cache et, si elle est
+     * désormais validée, l'ajoute au filtre après validation de la transaction. Le changement
+     * est ensuite diffusé aux autres instances.
+     */
+    public void onDemandeChangedAfterCommit(String reference, DemandeStatus status) {
+        if (reference == null) {
+            return;
+        }
+        invalidate(reference);
+        Runnable afterCommit = () -> {
+            applyChange(reference, status);
+            broadcast(reference, status);
+        };
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    afterCommit.run();
+                }
+            });
+        } else {
+            afterCommit.run();
+        }
+    }
 
-        // Rechercher la demande par référence
-        DemandeEnregistrement demande = demandeRepository.findByReference(reference)
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String[] parts = new String(message.getBody(), StandardCharsets.UTF_8).split("\\|", 3);
+        if (parts.length < 3 || parts[0].equals(nodeId)) {
+            return;
+        }
+        // Statut inconnu ou absent : la réponse en cache est tout de même invalidée
+        DemandeStatus status = Arrays.stream(DemandeStatus.values())
+                .filter(s -> s.name().equals(parts[1]))
+                .findFirst()
                 .orElse(null);
+        applyChange(parts[2], status);
+    }
+
+    // ==================== MÉTHODES PRIVÉES ====================
 
-        // Vérifier si la demande existe et est validée
-        if (demande == null) {
-            log.warn("Référence non trouvée: {}", reference);
-            return null;
+    private void applyChange(String reference, DemandeStatus status) {
+        invalidate(reference);
+        if (status == DemandeStatus.VALIDEE) {
+            synchronized (filterLock) {
+                BloomFilter filter = referenceFilter.get();
+                if (filter != null) {
+                    filter.put(reference);
+                }
+                if (addedDuringRebuild != null) {
+                    addedDuringRebuild.add(reference);
+                }
+            }
         }
+    }
 
-        if (demande.getStatus() != DemandeStatus.VALIDEE) {
-            log.warn("Demande trouvée mais non validée. Statut actuel: {}", demande.getStatus());
-            return null;
+    private void broadcast(String reference, DemandeStatus status) {
+        if (!redisInvalidation) {
+            return;
+        }
+        try {
+            redisTemplate.convertAndSend(CHANNEL, nodeId + "|" + status + "|" + reference);
+        } catch (Exception e) {
+            // Les autres instances retrouveront la référence à leur prochaine reconstruction
+            log.warn("Diffusion du changement de la référence douane {} impossible: {}", reference, e.getMessage());
         }
+    }
 
-        // Vérifier que le type est REGISTRATION ou PRODUCT_DECLARATION
-        if (demande.getTypeDemande() != TypeDemande.REGISTRATION &&
-                demande.getTypeDemande() != TypeDemande.PRODUCT_DECLARATION) {
-            log.warn("Type de demande non supporté: {}", demande.getTypeDemande());
-            return null;
+    private CachedVerification cacheGet(String reference) {
+        synchronized (cache) {
+            CachedVerification cached = cache.get(reference);
+            return cached != null && !cached.isExpired(cacheTtlMinutes) ? cached : null;
         }
+    }
 
-        // Construire la réponse
-        return buildResponse(demande);
+    private void cachePut(String reference, DouaneVerificationResponse response, long loadGeneration) {
+        synchronized (cache) {
+            if (generation.get() == loadGeneration) {
+                cache.put(reference, new CachedVerification(response));
+            }
+        }
+    }
+
+    private void invalidate(String reference) {
+        generation.incrementAndGet();
+        synchronized (cache) {
+            cache.remove(reference);
+        }
+    }
+
+    private Map<String, DouaneVerificationResponse> loadVerifiable(List<String> references) {
+        List<DemandeEnregistrement> demandes = demandeRepository.findVerifiableByReferenceIn(
+                references, DemandeStatus.VALIDEE, VERIFIABLE_TYPES);
+        if (demandes.isEmpty()) {
+            return Map.of();
+        }
+
+        // Produits des déclarations du lot : une seule requête
+        List<Long> declarationIds = demandes.stream()
+                .filter(d -> d.getTypeDemande() == TypeDemande.PRODUCT_DECLARATION)
+                .map(DemandeEnregistrement::getId)
+                .collect(Collectors.toList());
+        Map<Long, List<DouaneVerificationResponse.ProductInfo>> productsByDemande = new HashMap<>();
+        if (!declarationIds.isEmpty()) {
+            for (DemandeProduit demandeProduit : demandeProduitRepository.findWithProduitByDemandeIdIn(declarationIds)) {
+                productsByDemande.computeIfAbsent(demandeProduit.getDemande().getId(), id -> new ArrayList<>())
+                        .add(toProductInfo(demandeProduit.getProduit()));
+            }
+        }
+
+        Map<String, DouaneVerificationResponse> responses = new HashMap<>();
+        for (DemandeEnregistrement demande : demandes) {
+            responses.put(demande.getReference(), buildResponse(demande,
+                    productsByDemande.getOrDefault(demande.getId(), Collections.emptyList())));
+        }
+        return responses;
     }
 
     /**
      * Construit la réponse selon le type de demande
      */
-    private DouaneVerificationResponse buildResponse(DemandeEnregistrement demande) {
+    private DouaneVerificationResponse buildResponse(DemandeEnregistrement demande,
+                                                     List<DouaneVerificationResponse.ProductInfo> products) {
         ExportateurEtranger exportateur = demande.getExportateur();
 
         DouaneVerificationResponse.DouaneVerificationResponseBuilder builder = DouaneVerificationResponse.builder()
@@ -91,38 +372,23 @@ public class DouaneService {
 
         // Si c'est une déclaration produit, ajouter les produits
         if (demande.getTypeDemande() == TypeDemande.PRODUCT_DECLARATION) {
-            builder.products(buildProductsInfo(demande));
+            builder.products(products);
         }
 
         return builder.build();
     }
 
-    /**
-     * Construit la liste des produits associés à la demande
-     */
-    private java.util.List<DouaneVerificationResponse.ProductInfo> buildProductsInfo(DemandeEnregistrement demande) {
-        if (demande.getDemandeProduits() == null || demande.getDemandeProduits().isEmpty()) {
-            return java.util.Collections.emptyList();
-        }
-
-        return demande.getDemandeProduits().stream()
-                .map(demandeProduit -> {
-                    Product product = demandeProduit.getProduit();
-                    if (product == null) return null;
-
-                    return DouaneVerificationResponse.ProductInfo.builder()
-                            .id(product.getId())
-                            .productName(product.getProductName())
-                            .productType(product.getProductType())
-                            .hsCode(product.getHsCode())
-                            .category(product.getCategory())
-                            .originCountry(product.getOriginCountry())
-                            .brandName(product.getBrandName())
-                            .annualQuantityValue(product.getAnnualQuantityValue())
-                            .annualQuantityUnit(product.getAnnualQuantityUnit())
-                            .build();
-                })
-                .filter(p -> p != null)
-                .collect(Collectors.toList());
+    private DouaneVerificationResponse.ProductInfo toProductInfo(Product product) {
+        return DouaneVerificationResponse.ProductInfo.builder()
+                .id(product.getId())
+                .productName(product.getProductName())
+                .productType(product.getProductType())
+                .hsCode(product.getHsCode())
+                .category(product.getCategory())
+                .originCountry(product.getOriginCountry())
+                .brandName(product.getBrandName())
+                .annualQuantityValue(product.getAnnualQuantityValue())
+                .annualQuantityUnit(product.getAnnualQuantityUnit())
+                .build();
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,225 @@
+package com.tunisia.commerce.service.impl;
+
+import com.google.zxing.BarcodeFormat;
+import com.google.zxing.client.j2se.MatrixToImageWriter;
+import com.google.zxing.common.BitMatrix;
+import com.google.zxing.qrcode.QRCodeWriter;
+import com.tunisia.commerce.dto.admin.DouaneVerificationResponse;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.*;
+import java.security.spec.PKCS8EncodedKeySpec;
+import java.security.spec.X509EncodedKeySpec;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Base64;
+
+/**
+ * Jetons de vérification hors ligne pour la douane.
+ *
+ * Un jeton signé (Ed25519) embarque l'essentiel de la réponse de vérification ; il est imprimé
+ * en QR code sur le document et vérifié au poste frontière avec la seule clé publique, sans appel
+ * au serveur. Format : {@code DV1.<payload base64url>.<signature base64url>}, le payload étant
+ * les champs séparés par '|'.
+ *
+ * Sans clé configurée ({@code app.douane.token.private-key} / {@code public-key}), une paire
+ * éphémère est générée au démarrage : les jetons émis ne survivent alors pas à un redémarrage.
+ */
+@Service
+@Slf4j
+public class DouaneTokenService {
+
+    private static final String PREFIX = "DV1";
+    private static final String ALGORITHM = "Ed25519";
+    private static final String SEPARATOR = "|";
+    private static final int PAYLOAD_FIELDS = 9;
+    private static final Base64.Encoder B64 = Base64.getUrlEncoder().withoutPadding();
+    private static final Base64.Decoder B64_DECODER = Base64.getUrlDecoder();
+
+    private final PrivateKey privateKey;
+    private final PublicKey publicKey;
+    private final String keyId;
+    private final Duration ttl;
+
+    public DouaneTokenService(@Value("${app.douane.token.private-key:}") String privateKeyBase64,
+                              @Value("${app.douane.token.public-key:}") String publicKeyBase64,
+                              @Value("${app.douane.token.ttl-hours:72}") long ttlHours) throws GeneralSecurityException {
+        if (privateKeyBase64.isBlank() || publicKeyBase64.isBlank()) {
+            log.warn("Aucune clé de signature douane configurée : paire Ed25519 éphémère générée");
+            KeyPair keyPair = KeyPairGenerator.getInstance(ALGORITHM).generateKeyPair();
+            this.privateKey = keyPair.getPrivate();
+            this.publicKey = keyPair.getPublic();
+        } else {
+            KeyFactory keyFactory = KeyFactory.getInstance(ALGORITHM);
+            this.privateKey = keyFactory.generatePrivate(
+                    new PKCS8EncodedKeySpec(Base64.getDecoder().decode(privateKeyBase64.trim())));
+            this.publicKey = keyFactory.generatePublic(
+                    new X509EncodedKeySpec(Base64.getDecoder().decode(publicKeyBase64.trim())));
+        }
+        this.keyId = computeKeyId(publicKey);
+        this.ttl = Duration.ofHours(ttlHours);
+    }
+
+    /**
+     * Contenu vérifié d'un jeton.
+     */
+    @Data
+    @AllArgsConstructor
+    public static class VerifiedToken {
+        private String keyId;
+        private String reference;
+        private String typeDemande;
+        private String numeroAgrement;
+        private String dateAgrement;
+        private String exportateurRaisonSociale;
+        private String exportateurPaysOrigine;
+        private Instant issuedAt;
+        private Instant expiresAt;
+    }
+
+    // ==================== ÉMISSION ====================
+
+    /**
+     * Signe un jeton pour un dossier validé.
+     */
+    public String issue(DouaneVerificationResponse response) {
+        Instant now = Instant.now();
+        String payload = String.join(SEPARATOR,
+                keyId,
+                clean(response.getReference()),
+                clean(response.getTypeDemande()),
+                clean(response.getNumeroAgrement()),
+                response.getDateAgrement() != null ? response.getDateAgrement().toString() : "",
+                clean(response.getExportateurRaisonSociale()),
+                clean(response.getExportateurPaysOrigine()),
+                String.valueOf(now.getEpochSecond()),
+                String.valueOf(now.plus(ttl).getEpochSecond()));
+
+        String signingInput = PREFIX + "." + B64.encodeToString(payload.getBytes(StandardCharsets.UTF_8));
+        try {
+            Signature signer = Signature.getInstance(ALGORITHM);
+            signer.initSign(privateKey);
+            signer.update(signingInput.getBytes(StandardCharsets.US_ASCII));
+            return signingInput + "." + B64.encodeToString(signer.sign());
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Signature du jeton douane impossible: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * QR code PNG (Base64) portant le jeton.
+     */
+    public String toQrCode(String token) {
+        try {
+            QRCodeWriter qrCodeWriter = new QRCodeWriter();
+            BitMatrix bitMatrix = qrCodeWriter.encode(token, BarcodeFormat.QR_CODE, 300, 300);
+
+            ByteArrayOutputStream pngOutputStream = new ByteArrayOutputStream();
+            MatrixToImageWriter.writeToStream(bitMatrix, "PNG", pngOutputStream);
+            return Base64.getEncoder().encodeToString(pngOutputStream.toByteArray());
+        } catch (Exception e) {
+            log.error("Erreur lors de la génération du QR code du jeton douane", e);
+            return null;
+        }
+    }
+
+    // ==================== VÉRIFICATION ====================
+
+    public VerifiedToken verify(String token) {
+        return verify(token, publicKey, Instant.now());
+    }
+
+    /**
+     * Vérification autonome (clé publique seule), utilisable telle quelle par un poste hors ligne.
+     *
+     * @throws SecurityException si le jeton est mal formé, mal signé ou expiré
+     */
+    public static VerifiedToken verify(String token, PublicKey publicKey, Instant now) {
+        if (token == null) {
+            throw new SecurityException("Jeton absent");
+        }
+        String[] parts = token.trim().split("\\.");
+        if (parts.length != 3 || !PREFIX.equals(parts[0])) {
+            throw new SecurityException("Format de jeton invalide");
+        }
+
+        byte[] payloadBytes;
+        byte[] signature;
+        try {
+            payloadBytes = B64_DECODER.decode(parts[1]);
+            signature = B64_DECODER.decode(parts[2]);
+        } catch (IllegalArgumentException e) {
+            throw new SecurityException("Encodage du jeton invalide");
+        }
+
+        try {
+            Signature verifier = Signature.getInstance(ALGORITHM);
+            verifier.initVerify(publicKey);
+            verifier.update((parts[0] + "." + parts[1]).getBytes(StandardCharsets.US_ASCII));
+            if (!verifier.verify(signature)) {
+                throw new SecurityException("Signature du jeton invalide");
+            }
+        } catch (GeneralSecurityException e) {
+            throw new SecurityException("Signature du jeton invalide");
+        }
+
+        String[] fields = new String(payloadBytes, StandardCharsets.UTF_8).split("\\|", -1);
+        if (fields.length != PAYLOAD_FIELDS) {
+            throw new SecurityException("Contenu du jeton invalide");
+        }
+        if (!computeKeyId(publicKey).equals(fields[0])) {
+            throw new SecurityException("Jeton signé par une autre clé");
+        }
+
+        Instant issuedAt;
+        Instant expiresAt;
+        try {
+            issuedAt = Instant.ofEpochSecond(Long.parseLong(fields[7]));
+            expiresAt = Instant.ofEpochSecond(Long.parseLong(fields[8]));
+        } catch (NumberFormatException e) {
+            throw new SecurityException("Dates du jeton invalides");
+        }
+        if (!now.isBefore(expiresAt)) {
+            throw new SecurityException("Jeton expiré");
+        }
+
+        return new VerifiedToken(fields[0], fields[1], fields[2], fields[3], fields[4],
+                fields[5], fields[6], issuedAt, expiresAt);
+    }
+
+    // ==================== CLÉ PUBLIQUE ====================
+
+    public String publicKeyBase64() {
+        return Base64.getEncoder().encodeToString(publicKey.getEncoded());
+    }
+
+    public String keyId() {
+        return keyId;
+    }
+
+    public String algorithm() {
+        return ALGORITHM;
+    }
+
+    // ==================== MÉTHODES PRIVÉES ====================
+
+    private static String computeKeyId(PublicKey key) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(key.getEncoded());
+            return B64.encodeToString(Arrays.copyOf(digest, 8));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String clean(String value) {
+        return value == null ? "" : value.replace(SEPARATOR, " ");
+    }
+}
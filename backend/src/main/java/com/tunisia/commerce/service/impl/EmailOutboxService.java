@@ -0,0 +1,364 @@
+package com.tunisia.commerce.service.impl;
+
+import com.tunisia.commerce.entity.EmailOutboxMessage;
+import com.tunisia.commerce.enums.EmailOutboxStatus;
+import com.tunisia.commerce.observability.OutboundCallMetrics;
+import com.tunisia.commerce.repository.EmailOutboxRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import jakarta.annotation.PreDestroy;
+import jakarta.mail.MessagingException;
+import jakarta.mail.internet.MimeMessage;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.mail.MailException;
+import org.springframework.mail.MailSendException;
+import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.mail.javamail.MimeMessageHelper;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Boîte d'envoi des emails.
+ *
+ * Les emails sont écrits dans la table email_outbox, dans la transaction de l'appelant, puis envoyés
+ * après validation par un petit pool de workers : aucun appel SMTP sur le fil de la requête, et un
+ * rollback n'envoie rien. Chaque worker prend un lot d'emails échus (verrouillés en SKIP LOCKED,
+ * plusieurs instances possibles) et l'envoie sur une seule connexion SMTP. Les échecs sont
+ * replanifiés avec un délai croissant, puis abandonnés (ECHOUE) après le nombre maximal de tentatives.
+ */
+@Slf4j
+@Service
+public class EmailOutboxService {
+
+    private static final List<EmailOutboxStatus> PENDING =
+            List.of(EmailOutboxStatus.EN_ATTENTE, EmailOutboxStatus.EN_ERREUR);
+
+    private final EmailOutboxRepository outboxRepository;
+    private final JavaMailSender mailSender;
+    private final OutboundCallMetrics outboundCallMetrics;
+    private final TransactionTemplate transactionTemplate;
+    private final TransactionTemplate newTransactionTemplate;
+    private final String fromEmail;
+    private final int workers;
+    private final int batchSize;
+    private final int maxAttempts;
+    private final long retryBaseSeconds;
+    private final long retryMaxSeconds;
+    private final long retentionDays;
+
+    private final ThreadPoolExecutor executor;
+    private final AtomicInteger activeDrains = new AtomicInteger();
+
+    // Métriques
+    private final Counter sentCounter;
+    private final Counter failedAttemptCounter;
+    private final Counter abandonedCounter;
+    private final Timer batchTimer;
+    private final Timer deliveryLagTimer;
+    private final AtomicLong backlog = new AtomicLong();
+    private final AtomicLong oldestPendingSeconds = new AtomicLong();
+
+    public EmailOutboxService(EmailOutboxRepository outboxRepository,
+                              JavaMailSender mailSender,
+                              OutboundCallMetrics outboundCallMetrics,
+                              PlatformTransactionManager transactionManager,
+                              MeterRegistry meterRegistry,
+                              @Value("${spring.mail.username}") String fromEmail,
+                              @Value("${app.mail.outbox.workers:2}") int workers,
+                              @Value("${app.mail.outbox.batch-size:50}") int batchSize,
+                              @Value("${app.mail.outbox.max-attempts:6}") int maxAttempts,
+                              @Value("${app.mail.outbox.retry-base-seconds:60}") long retryBaseSeconds,
+                              @Value("${app.mail.outbox.retry-max-seconds:3600}") long retryMaxSeconds,
+                              @Value("${app.mail.outbox.retention-days:14}") long retentionDays) {
+        this.outboxRepository = outboxRepository;
+        this.mailSender = mailSender;
+        this.outboundCallMetrics = outboundCallMetrics;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.newTransactionTemplate = new TransactionTemplate(transactionManager);
+        this.newTransactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.fromEmail = fromEmail;
+        this.workers = workers;
+        this.batchSize = batchSize;
+        this.maxAttempts = maxAttempts;
+        this.retryBaseSeconds = retryBaseSeconds;
+        this.retryMaxSeconds = retryMaxSeconds;
+        this.retentionDays = retentionDays;
+
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(workers, workers, 60L, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(workers),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "email-outbox-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+        new ExecutorServiceMetrics(executor, "email-outbox", Tags.empty()).bindTo(meterRegistry);
+
+        this.sentCounter = Counter.builder("mail.outbox.envoyes")
+                .description("Emails acceptés par le serveur SMTP")
+                .register(meterRegistry);
+        this.failedAttemptCounter = Counter.builder("mail.outbox.echecs")
+                .description("Tentatives d'envoi en échec")
+                .register(meterRegistry);
+        this.abandonedCounter = Counter.builder("mail.outbox.abandonnes")
+                .description("Emails abandonnés après épuisement des tentatives")
+                .register(meterRegistry);
+        this.batchTimer = Timer.builder("mail.outbox.lot")
+                .description("Durée d'envoi d'un lot sur une connexion SMTP")
+                .register(meterRegistry);
+        this.deliveryLagTimer = Timer.builder("mail.outbox.delai")
+                .description("Délai entre l'écriture d'un email et son envoi")
+                .register(meterRegistry);
+        Gauge.builder("mail.outbox.en_attente", backlog, AtomicLong::get)
+                .description("Emails en attente d'envoi")
+                .register(meterRegistry);
+        Gauge.builder("mail.outbox.retard_secondes", oldestPendingSeconds, AtomicLong::get)
+                .description("Âge du plus ancien email en attente")
+                .register(meterRegistry);
+    }
+
+    // ==================== ÉCRITURE ====================
+
+    /**
+     * Écrit un email rendu dans la boîte d'envoi. Dans une transaction en écriture, l'email n'est
+     * visible (et envoyé) qu'à sa validation ; sinon il est enregistré dans sa propre transaction.
+     */
+    public void enqueue(String recipient, String subject, String htmlBody, String template) {
+        EmailOutboxMessage message = EmailOutboxMessage.builder()
+                .recipient(recipient)
+                .subject(subject)
+                .htmlBody(htmlBody)
+                .template(template)
+                .status(EmailOutboxStatus.EN_ATTENTE)
+                .attempts(0)
+                .createdAt(LocalDateTime.now())
+                .build();
+
+        if (TransactionSynchronizationManager.isActualTransactionActive()
+                && TransactionSynchronizationManager.isSynchronizationActive()
+                && !TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            outboxRepository.save(message);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    wake();
+                }
+            });
+        } else {
+            newTransactionTemplate.executeWithoutResult(status -> outboxRepository.save(message));
+            wake();
+        }
+    }
+
+    // ==================== ENVOI ====================
+
+    /**
+     * Filet de sécurité : emails replanifiés et réveils manqués.
+     */
+    @Scheduled(fixedDelayString = "${app.mail.outbox.poll-interval-ms:2000}")
+    public void poll() {
+        wake();
+    }
+
+    /**
+     * Démarre un worker de vidage si tous ne sont pas déjà occupés.
+     */
+    void wake() {
+        int active;
+        do {
+            active = activeDrains.get();
+            if (active >= workers) {
+                return;
+            }
+        } while (!activeDrains.compareAndSet(active, active + 1));
+
+        try {
+            executor.execute(this::drain);
+        } catch (RejectedExecutionException e) {
+            activeDrains.decrementAndGet();
+        }
+    }
+
+    private void drain() {
+        try {
+            List<EmailOutboxMessage> batch;
+            while (!(batch = claimBatch()).isEmpty()) {
+                deliver(batch);
+            }
+        } catch (Exception e) {
+            log.error("❌ Erreur lors de l'envoi des emails en attente: {}", e.getMessage(), e);
+        } finally {
+            activeDrains.decrementAndGet();
+        }
+    }
+
+    private List<EmailOutboxMessage> claimBatch() {
+        return transactionTemplate.execute(status -> {
+            List<EmailOutboxMessage> batch = outboxRepository.lockDueMessages(LocalDateTime.now(), batchSize);
+            for (EmailOutboxMessage message : batch) {
+                message.setStatus(EmailOutboxStatus.EN_COURS);
+                message.setAttempts(message.getAttempts() + 1);
+            }
+            return outboxRepository.saveAll(batch);
+        });
+    }
+
+    /**
+     * Envoie un lot déjà pris en charge en un seul appel (une connexion SMTP pour tout le lot)
+     * et enregistre le résultat de chaque email.
+     */
+    void deliver(List<EmailOutboxMessage> batch) {
+        // Ordre du lot conservé ; MimeMessage ne redéfinit pas equals/hashCode, les clés restent par identité
+        Map<MimeMessage, EmailOutboxMessage> prepared = new LinkedHashMap<>();
+        for (EmailOutboxMessage message : batch) {
+            try {
+                prepared.put(toMimeMessage(message), message);
+            } catch (MessagingException e) {
+                recordFailure(message, e);
+            }
+        }
+
+        Map<Object, Exception> failures = Map.of();
+        Exception batchFailure = null;
+        if (!prepared.isEmpty()) {
+            long start = System.nanoTime();
+            try {
+                MimeMessage[] messages = prepared.keySet().toArray(new MimeMessage[0]);
+                outboundCallMetrics.record("smtp", "envoi-lot", () -> {
+                    mailSender.send(messages);
+                    return messages.length;
+                });
+            } catch (MailSendException e) {
+                failures = e.getFailedMessages();
+                if (failures.isEmpty()) {
+                    batchFailure = e;
+                }
+            } catch (MailException e) {
+                batchFailure = e;
+            } finally {
+                batchTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            }
+        }
+
+        for (Map.Entry<MimeMessage, EmailOutboxMessage> entry : prepared.entrySet()) {
+            Exception failure = batchFailure != null ? batchFailure : failures.get(entry.getKey());
+            if (failure == null) {
+                recordSent(entry.getValue());
+            } else {
+                recordFailure(entry.getValue(), failure);
+            }
+        }
+        outboxRepository.saveAll(batch);
+    }
+
+    private MimeMessage toMimeMessage(EmailOutboxMessage message) throws MessagingException {
+        MimeMessage mimeMessage = mailSender.createMimeMessage();
+        MimeMessageHelper helper = new MimeMessageHelper(mimeMessage, true, "UTF-8");
+        helper.setFrom(fromEmail);
+        helper.setTo(message.getRecipient());
+        helper.setSubject(message.getSubject());
+        helper.setText(message.getHtmlBody(), true);
+        return mimeMessage;
+    }
+
+    private void recordSent(EmailOutboxMessage message) {
+        LocalDateTime now = LocalDateTime.now();
+        message.setStatus(EmailOutboxStatus.ENVOYE);
+        message.setSentAt(now);
+        message.setNextAttemptAt(null);
+        message.setLastError(null);
+        sentCounter.increment();
+        deliveryLagTimer.record(Duration.between(message.getCreatedAt(), now));
+        log.info("Email ({}) envoyé à: {}", message.getTemplate(), message.getRecipient());
+    }
+
+    private void recordFailure(EmailOutboxMessage message, Exception failure) {
+        String error = failure.getMessage() != null ? failure.getMessage() : failure.getClass().getSimpleName();
+        message.setLastError(error.length() > 1000 ? error.substring(0, 1000) : error);
+        failedAttemptCounter.increment();
+
+        if (message.getAttempts() >= maxAttempts) {
+            message.setStatus(EmailOutboxStatus.ECHOUE);
+            message.setNextAttemptAt(null);
+            abandonedCounter.increment();
+            log.error("❌ Email ({}) à {} abandonné après {} tentatives: {}",
+                    message.getTemplate(), message.getRecipient(), message.getAttempts(), error);
+        } else {
+            long delay = backoffSeconds(message.getAttempts());
+            message.setStatus(EmailOutboxStatus.EN_ERREUR);
+            message.setNextAttemptAt(LocalDateTime.now().plusSeconds(delay));
+            log.warn("Envoi de l'email ({}) à {} en échec (tentative {}), nouvel essai dans {} s: {}",
+                    message.getTemplate(), message.getRecipient(), message.getAttempts(), delay, error);
+        }
+    }
+
+    long backoffSeconds(int attempt) {
+        long delay = retryBaseSeconds << Math.min(Math.max(attempt - 1, 0), 20);
+        return Math.min(delay, retryMaxSeconds);
+    }
+
+    // ==================== MAINTENANCE ====================
+
+    /**
+     * Au démarrage : les emails restés EN_COURS (arrêt pendant l'envoi) repassent en attente.
+     * Un email peut alors partir deux fois si l'arrêt a eu lieu juste après son acceptation SMTP.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void releaseInterrupted() {
+        try {
+            Integer released = transactionTemplate.execute(status -> outboxRepository.releaseInProgress());
+            if (released != null && released > 0) {
+                log.info("{} email(s) interrompu(s) remis en file", released);
+            }
+            wake();
+        } catch (Exception e) {
+            log.warn("Remise en file des emails interrompus impossible: {}", e.getMessage());
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${app.mail.outbox.metrics-interval-ms:30000}")
+    public void refreshBacklogMetrics() {
+        try {
+            backlog.set(outboxRepository.countByStatusIn(PENDING));
+            oldestPendingSeconds.set(outboxRepository.findFirstByStatusInOrderByIdAsc(PENDING)
+                    .map(message -> Math.max(0, Duration.between(message.getCreatedAt(), LocalDateTime.now()).getSeconds()))
+                    .orElse(0L));
+        } catch (Exception e) {
+            log.debug("Métriques de la boîte d'envoi indisponibles: {}", e.getMessage());
+        }
+    }
+
+    @Scheduled(cron = "${app.mail.outbox.purge-cron:0 45 4 * * *}")
+    public void purgeSent() {
+        Integer deleted = transactionTemplate.execute(status ->
+                outboxRepository.deleteSentBefore(LocalDateTime.now().minusDays(retentionDays)));
+        if (deleted != null && deleted > 0) {
+            log.info("{} email(s) envoyé(s) purgé(s) de la boîte d'envoi", deleted);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+}
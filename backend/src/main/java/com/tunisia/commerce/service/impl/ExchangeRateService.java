@@ -0,0 +1,353 @@
+package com.tunisia.commerce.service.impl;
+
+import com.tunisia.commerce.entity.Country;
+import com.tunisia.commerce.entity.ExchangeRate;
+import com.tunisia.commerce.repository.ExchangeRateRepository;
+import com.tunisia.commerce.util.FixedPoint;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Table versionnée des taux de change vers le TND.
+ *
+ * Chaque import (fichier local ou téléversement admin) est persisté sous un nouveau numéro
+ * de version, puis publié en mémoire comme instantané immuable remplacé atomiquement.
+ * Les cotations lisent un seul instantané et renvoient sa version, ce qui les rend reproductibles.
+ */
+@Slf4j
+@Service
+public class ExchangeRateService {
+
+    public static final String SOURCE_FICHIER = "FICHIER";
+    public static final String SOURCE_ADMIN = "ADMIN";
+
+    private static final String DEFAULT_RATES_RESOURCE = "/exchange-rates.csv";
+
+    // Clé du verrou consultatif PostgreSQL des imports (« EXCH »)
+    private static final long IMPORT_LOCK_KEY = 0x45584348L;
+
+    private final ExchangeRateRepository exchangeRateRepository;
+    private final TransactionTemplate transactionTemplate;
+
+    // Fichier externe optionnel ; à défaut, la ressource exchange-rates.csv du classpath
+    @Value("${app.exchange-rates.file:}")
+    private String ratesFile;
+
+    // Avant le premier chargement : taux du fichier par défaut, version 0
+    private final AtomicReference<RateSnapshot> snapshot =
+            new AtomicReference<>(new RateSnapshot(0L, SOURCE_FICHIER, loadDefaultRates()));
+
+    public ExchangeRateService(ExchangeRateRepository exchangeRateRepository,
+                               PlatformTransactionManager transactionManager) {
+        this.exchangeRateRepository = exchangeRateRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    // ==================== INSTANTANÉ ====================
+
+    /**
+     * Instantané immuable d'une version de la table. Les recherches par devise indexent
+     * directement un tableau (code ISO sur 3 lettres), sans allocation.
+     */
+    public static final class RateSnapshot {
+        private static final int SLOTS = 26 * 26 * 26;
+
+        private final long version;
+        private final String source;
+        private final LocalDateTime loadedAt;
+        private final BigDecimal[] rates = new BigDecimal[SLOTS];
+        private final FixedPoint.Rate[] fixedRates = new FixedPoint.Rate[SLOTS];
+        private final Map<String, BigDecimal> asMap;
+
+        RateSnapshot(long version, String source, Map<String, BigDecimal> ratesByCurrency) {
+            this.version = version;
+            this.source = source;
+            this.loadedAt = LocalDateTime.now();
+            Map<String, BigDecimal> sorted = new TreeMap<>();
+            for (Map.Entry<String, BigDecimal> entry : ratesByCurrency.entrySet()) {
+                int slot = slot(entry.getKey());
+                if (slot < 0) {
+                    continue;
+                }
+                rates[slot] = entry.getValue();
+                try {
+                    fixedRates[slot] = FixedPoint.Rate.of(entry.getValue());
+                } catch (ArithmeticException e) {
+                    fixedRates[slot] = null;
+                }
+                sorted.put(entry.getKey().toUpperCase(Locale.ROOT), entry.getValue());
+            }
+            this.asMap = Collections.unmodifiableMap(sorted);
+        }
+
+        public long getVersion() {
+            return version;
+        }
+
+        public String getSource() {
+            return source;
+        }
+
+        public LocalDateTime getLoadedAt() {
+            return loadedAt;
+        }
+
+        public Map<String, BigDecimal> getRates() {
+            return asMap;
+        }
+
+        /**
+         * Taux de la devise, ou null si elle n'est pas dans la table.
+         */
+        public BigDecimal rate(String currency) {
+            int slot = slot(currency);
+            return slot >= 0 ? rates[slot] : null;
+        }
+
+        /**
+         * Taux de la devise en virgule fixe, ou null (devise absente ou taux non représentable).
+         */
+        public FixedPoint.Rate fixedRate(String currency) {
+            int slot = slot(currency);
+            return slot >= 0 ? fixedRates[slot] : null;
+        }
+
+        /**
+         * Taux appliqué à une cotation : table des taux pour la devise, sinon taux du pays
+         * d'origine (données historiques), sinon 1.
+         */
+        public BigDecimal resolve(String currency, Country country) {
+            BigDecimal rate = rate(currency);
+            if (rate != null) {
+                return rate;
+            }
+            if (country != null && country.getExchangeRateToTnd() != null) {
+                return country.getExchangeRateToTnd();
+            }
+            return BigDecimal.ONE;
+        }
+
+        private static int slot(String currency) {
+            if (currency == null || currency.length() != 3) {
+                return -1;
+            }
+            int slot = 0;
+            for (int i = 0; i < 3; i++) {
+                char c = currency.charAt(i);
+                int letter;
+                if (c >= 'A' && c <= 'Z') {
+                    letter = c - 'A';
+                } else if (c >= 'a' && c <= 'z') {
+                    letter = c - 'a';
+                } else {
+                    return -1;
+                }
+                slot = slot * 26 + letter;
+            }
+            return slot;
+        }
+    }
+
+    public RateSnapshot current() {
+        return snapshot.get();
+    }
+
+    public long getVersion() {
+        return snapshot.get().version;
+    }
+
+    // ==================== CHARGEMENT ====================
+
+    /**
+     * Au démarrage : publie la dernière version persistée, ou importe le fichier local si la table est vide.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        try {
+            Long latest = exchangeRateRepository.findLatestVersion();
+            if (latest == null) {
+                log.info("Table des taux de change vide, import du fichier local");
+                importInitialRates();
+                return;
+            }
+            publish(latest);
+        } catch (Exception e) {
+            log.error("❌ Erreur lors du chargement des taux de change: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Publie une version persistée de la table.
+     */
+    public void publish(long version) {
+        List<ExchangeRate> rows = exchangeRateRepository.findByVersion(version);
+        if (rows.isEmpty()) {
+            throw new IllegalArgumentException("Version de taux de change introuvable: " + version);
+        }
+        Map<String, BigDecimal> rates = new HashMap<>();
+        for (ExchangeRate row : rows) {
+            rates.put(row.getCurrencyCode(), row.getRateToTnd());
+        }
+        snapshot.set(new RateSnapshot(version, rows.get(0).getSource(), rates));
+        log.info("✅ Taux de change publiés (v{}): {} devise(s)", version, rates.size());
+    }
+
+    /**
+     * Persiste une nouvelle version complète de la table et la publie après validation de la transaction.
+     * Les imports sont sérialisés par un verrou consultatif en base, y compris entre instances.
+     */
+    public long importRates(Map<String, BigDecimal> rates, String source, String createdBy) {
+        if (rates.isEmpty()) {
+            throw new IllegalArgumentException("La table des taux de change est vide");
+        }
+        return transactionTemplate.execute(status -> {
+            exchangeRateRepository.lockImports(IMPORT_LOCK_KEY);
+            return persist(rates, source, createdBy);
+        });
+    }
+
+    /**
+     * Premier import au démarrage ; sans effet si une autre instance a importé entre-temps.
+     */
+    private void importInitialRates() throws IOException {
+        Map<String, BigDecimal> rates = readRatesFile();
+        if (rates.isEmpty()) {
+            throw new IllegalArgumentException("La table des taux de change est vide");
+        }
+        Long imported = transactionTemplate.execute(status -> {
+            exchangeRateRepository.lockImports(IMPORT_LOCK_KEY);
+            Long latest = exchangeRateRepository.findLatestVersion();
+            return latest != null ? null : persist(rates, SOURCE_FICHIER, null);
+        });
+        if (imported == null) {
+            publish(exchangeRateRepository.findLatestVersion());
+        }
+    }
+
+    /**
+     * Écrit la version suivante ; appelé sous le verrou des imports, dans la transaction.
+     */
+    private long persist(Map<String, BigDecimal> rates, String source, String createdBy) {
+        Map<String, BigDecimal> complete = new HashMap<>(rates);
+        complete.putIfAbsent("TND", BigDecimal.ONE);
+
+        Long latest = exchangeRateRepository.findLatestVersion();
+        long version = latest != null ? latest + 1 : 1L;
+
+        List<ExchangeRate> rows = new ArrayList<>();
+        for (Map.Entry<String, BigDecimal> entry : complete.entrySet()) {
+            rows.add(ExchangeRate.builder()
+                    .version(version)
+                    .currencyCode(entry.getKey())
+                    .rateToTnd(entry.getValue())
+                    .source(source)
+                    .createdBy(createdBy)
+                    .build());
+        }
+        exchangeRateRepository.saveAll(rows);
+
+        RateSnapshot fresh = new RateSnapshot(version, source, complete);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    // Le verrou est déjà libéré : ne pas écraser une version plus récente publiée entre-temps
+                    snapshot.accumulateAndGet(fresh, (current, next) -> next.version > current.version ? next : current);
+                }
+            });
+        } else {
+            snapshot.set(fresh);
+        }
+
+        log.info("✅ Nouvelle version des taux de change (v{}, {}): {} devise(s)", version, source, complete.size());
+        return version;
+    }
+
+    /**
+     * Relit le fichier local (app.exchange-rates.file ou ressource par défaut).
+     */
+    public Map<String, BigDecimal> readRatesFile() throws IOException {
+        if (ratesFile != null && !ratesFile.isBlank()) {
+            Path path = Paths.get(ratesFile);
+            try (InputStream in = Files.newInputStream(path)) {
+                return parseRates(in);
+            }
+        }
+        try (InputStream in = ExchangeRateService.class.getResourceAsStream(DEFAULT_RATES_RESOURCE)) {
+            if (in == null) {
+                throw new IOException("Ressource introuvable: " + DEFAULT_RATES_RESOURCE);
+            }
+            return parseRates(in);
+        }
+    }
+
+    /**
+     * Lit une table au format « DEVISE;taux » (ou « DEVISE,taux »), une devise par ligne,
+     * lignes vides et commentaires (#) ignorés.
+     */
+    public Map<String, BigDecimal> parseRates(InputStream in) throws IOException {
+        Map<String, BigDecimal> rates = new LinkedHashMap<>();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+        String line;
+        int lineNumber = 0;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            String[] parts = line.split("[;,]");
+            if (parts.length != 2) {
+                throw new IllegalArgumentException("Ligne " + lineNumber + " invalide: " + line);
+            }
+            String currency = parts[0].trim().toUpperCase(Locale.ROOT);
+            if (!currency.matches("[A-Z]{3}")) {
+                throw new IllegalArgumentException("Ligne " + lineNumber + ": code devise invalide: " + parts[0]);
+            }
+            BigDecimal rate;
+            try {
+                rate = new BigDecimal(parts[1].trim());
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Ligne " + lineNumber + ": taux invalide: " + parts[1]);
+            }
+            if (rate.signum() <= 0) {
+                throw new IllegalArgumentException("Ligne " + lineNumber + ": le taux doit être positif");
+            }
+            rates.put(currency, rate);
+        }
+        return rates;
+    }
+
+    private Map<String, BigDecimal> loadDefaultRates() {
+        try (InputStream in = ExchangeRateService.class.getResourceAsStream(DEFAULT_RATES_RESOURCE)) {
+            if (in == null) {
+                log.warn("Ressource {} introuvable, aucun taux par défaut", DEFAULT_RATES_RESOURCE);
+                return Map.of("TND", BigDecimal.ONE);
+            }
+            return parseRates(in);
+        } catch (Exception e) {
+            log.error("Erreur de lecture des taux par défaut: {}", e.getMessage());
+            return Map.of("TND", BigDecimal.ONE);
+        }
+    }
+}
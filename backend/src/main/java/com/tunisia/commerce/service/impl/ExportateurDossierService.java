@@ -40,6 +40,7 @@ public class ExportateurDossierService {
     private final ProductRepository productRepository;
     private final DemandeRoutingService demandeRoutingService;
     private final SecureStorageService secureStorageService;
+    private final DocumentScanService documentScanService;
     private final DocumentStorageFacade documentStorageFacade;
 
 
@@ -203,16 +204,18 @@ public class ExportateurDossierService {
                     .fileName(storageResult.getFileName())
                     .filePath(storageResult.getFilePath())
                     .fileHash(storageResult.getFileHash())  // ✅ Stocker le hash
+                    .blobHash(storageResult.getBlobHash())
                     .fileSize(storageResult.getFileSize())
                     .fileType(file.getContentType())
                     .documentType(documentType)
-                    .status(DocumentStatus.EN_ATTENTE)
+                    .status(documentScanService.initialStatus(storageResult.getBlobHash()))
                     .uploadedAt(LocalDateTime.now())
                     .exportateur(demande.getExportateur())
                     .demande(demande)
                     .build();
 
             document = documentRepository.save(document);
+            documentScanService.scanAfterCommit(document);
             logger.info("Document stocké sécurisé avec ID: "+ document.getId());
 
             return convertToDTO(document);
@@ -233,6 +236,8 @@ public class ExportateurDossierService {
                 throw new RuntimeException("Accès non autorisé");
             }
 
+            // Jamais de lecture d'un document en quarantaine ou infecté
+            documentScanService.assertDownloadable(document);
             Path filePath = Paths.get(document.getFilePath());
 
             // Récupérer et vérifier l'intégrité
@@ -6,6 +6,7 @@ import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 
+import java.text.Normalizer;
 import java.time.LocalDateTime;
 import java.time.YearMonth;
 import java.util.*;
@@ -23,73 +24,76 @@ public class ExporterStatisticsService {
         String flagCode;
         String countryCode;
         String name;  // ✅ AJOUTÉ: nom complet du pays
+        String englishName;
 
-        CountryCoordinates(double latitude, double longitude, String flagCode, String countryCode, String name) {
+        CountryCoordinates(double latitude, double longitude, String flagCode, String countryCode,
+                           String name, String englishName) {
             this.latitude = latitude;
             this.longitude = longitude;
             this.flagCode = flagCode;
             this.countryCode = countryCode;
             this.name = name;
+            this.englishName = englishName;
         }
     }
 
-    // ✅ Map avec clés = codes pays ET noms complets
-    private static final Map<String, CountryCoordinates> COUNTRY_COORDINATES = new HashMap<>();
+    // Format: (latitude, longitude, flagCode, countryCode, nom français, nom anglais)
+    private static final List<CountryCoordinates> COUNTRIES = List.of(
+            new CountryCoordinates(46.603354, 1.888334, "fr", "FR", "France", "France"),
+            new CountryCoordinates(41.87194, 12.56738, "it", "IT", "Italie", "Italy"),
+            new CountryCoordinates(40.463667, -3.74922, "es", "ES", "Espagne", "Spain"),
+            new CountryCoordinates(38.963745, 35.243322, "tr", "TR", "Turquie", "Turkey"),
+            new CountryCoordinates(51.165691, 10.451526, "de", "DE", "Allemagne", "Germany"),
+            new CountryCoordinates(31.791702, -7.09262, "ma", "MA", "Maroc", "Morocco"),
+            new CountryCoordinates(33.886917, 9.537499, "tn", "TN", "Tunisie", "Tunisia"),
+            new CountryCoordinates(28.033886, 1.659626, "dz", "DZ", "Algérie", "Algeria"),
+            new CountryCoordinates(26.820553, 30.802498, "eg", "EG", "Égypte", "Egypt"),
+            new CountryCoordinates(35.86166, 104.195397, "cn", "CN", "Chine", "China"),
+            new CountryCoordinates(20.593684, 78.96288, "in", "IN", "Inde", "India"),
+            new CountryCoordinates(-14.235004, -51.92528, "br", "BR", "Brésil", "Brazil"),
+            new CountryCoordinates(37.09024, -95.712891, "us", "US", "États-Unis", "United States"),
+            new CountryCoordinates(51.5074, -0.1278, "gb", "GB", "Royaume-Uni", "United Kingdom"),
+            new CountryCoordinates(56.1304, -106.3468, "ca", "CA", "Canada", "Canada"),
+            new CountryCoordinates(52.1326, 5.2913, "nl", "NL", "Pays-Bas", "Netherlands"),
+            new CountryCoordinates(50.8503, 4.3517, "be", "BE", "Belgique", "Belgium"),
+            new CountryCoordinates(46.8182, 8.2275, "ch", "CH", "Suisse", "Switzerland"),
+            new CountryCoordinates(26.3351, 17.2283, "ly", "LY", "Libye", "Libya"),
+            new CountryCoordinates(23.8859, 45.0792, "sa", "SA", "Arabie Saoudite", "Saudi Arabia"),
+            new CountryCoordinates(23.4241, 53.8478, "ae", "AE", "Émirats Arabes Unis", "United Arab Emirates")
+    );
+
+    // ✅ Index des alias (code, nom français, nom anglais), clés normalisées : une seule recherche par pays
+    private static final Map<String, CountryCoordinates> COUNTRY_ALIASES = new HashMap<>();
 
     static {
-        // Format: (latitude, longitude, flagCode, countryCode, name)
-        // Clés par NOM
-        COUNTRY_COORDINATES.put("France", new CountryCoordinates(46.603354, 1.888334, "fr", "FR", "France"));
-        COUNTRY_COORDINATES.put("Italie", new CountryCoordinates(41.87194, 12.56738, "it", "IT", "Italie"));
-        COUNTRY_COORDINATES.put("Espagne", new CountryCoordinates(40.463667, -3.74922, "es", "ES", "Espagne"));
-        COUNTRY_COORDINATES.put("Turquie", new CountryCoordinates(38.963745, 35.243322, "tr", "TR", "Turquie"));
-        COUNTRY_COORDINATES.put("Allemagne", new CountryCoordinates(51.165691, 10.451526, "de", "DE", "Allemagne"));
-        COUNTRY_COORDINATES.put("Maroc", new CountryCoordinates(31.791702, -7.09262, "ma", "MA", "Maroc"));
-        COUNTRY_COORDINATES.put("Tunisie", new CountryCoordinates(33.886917, 9.537499, "tn", "TN", "Tunisie"));
-        COUNTRY_COORDINATES.put("Algérie", new CountryCoordinates(28.033886, 1.659626, "dz", "DZ", "Algérie"));
-        COUNTRY_COORDINATES.put("Égypte", new CountryCoordinates(26.820553, 30.802498, "eg", "EG", "Égypte"));
-        COUNTRY_COORDINATES.put("Chine", new CountryCoordinates(35.86166, 104.195397, "cn", "CN", "Chine"));
-        COUNTRY_COORDINATES.put("Inde", new CountryCoordinates(20.593684, 78.96288, "in", "IN", "Inde"));
-        COUNTRY_COORDINATES.put("Brésil", new CountryCoordinates(-14.235004, -51.92528, "br", "BR", "Brésil"));
-        COUNTRY_COORDINATES.put("États-Unis", new CountryCoordinates(37.09024, -95.712891, "us", "US", "États-Unis"));
-        COUNTRY_COORDINATES.put("Royaume-Uni", new CountryCoordinates(51.5074, -0.1278, "gb", "GB", "Royaume-Uni"));
-        COUNTRY_COORDINATES.put("Canada", new CountryCoordinates(56.1304, -106.3468, "ca", "CA", "Canada"));
-        COUNTRY_COORDINATES.put("Pays-Bas", new CountryCoordinates(52.1326, 5.2913, "nl", "NL", "Pays-Bas"));
-        COUNTRY_COORDINATES.put("Belgique", new CountryCoordinates(50.8503, 4.3517, "be", "BE", "Belgique"));
-        COUNTRY_COORDINATES.put("Suisse", new CountryCoordinates(46.8182, 8.2275, "ch", "CH", "Suisse"));
-        COUNTRY_COORDINATES.put("Libye", new CountryCoordinates(26.3351, 17.2283, "ly", "LY", "Libye"));
-        COUNTRY_COORDINATES.put("Arabie Saoudite", new CountryCoordinates(23.8859, 45.0792, "sa", "SA", "Arabie Saoudite"));
-        COUNTRY_COORDINATES.put("Émirats Arabes Unis", new CountryCoordinates(23.4241, 53.8478, "ae", "AE", "Émirats Arabes Unis"));
-
-        // ✅ AJOUT DES CLÉS PAR CODE PAYS (pour les valeurs comme "CN", "FR", etc.)
-        COUNTRY_COORDINATES.put("FR", new CountryCoordinates(46.603354, 1.888334, "fr", "FR", "France"));
-        COUNTRY_COORDINATES.put("IT", new CountryCoordinates(41.87194, 12.56738, "it", "IT", "Italie"));
-        COUNTRY_COORDINATES.put("ES", new CountryCoordinates(40.463667, -3.74922, "es", "ES", "Espagne"));
-        COUNTRY_COORDINATES.put("TR", new CountryCoordinates(38.963745, 35.243322, "tr", "TR", "Turquie"));
-        COUNTRY_COORDINATES.put("DE", new CountryCoordinates(51.165691, 10.451526, "de", "DE", "Allemagne"));
-        COUNTRY_COORDINATES.put("MA", new CountryCoordinates(31.791702, -7.09262, "ma", "MA", "Maroc"));
-        COUNTRY_COORDINATES.put("TN", new CountryCoordinates(33.886917, 9.537499, "tn", "TN", "Tunisie"));
-        COUNTRY_COORDINATES.put("DZ", new CountryCoordinates(28.033886, 1.659626, "dz", "DZ", "Algérie"));
-        COUNTRY_COORDINATES.put("EG", new CountryCoordinates(26.820553, 30.802498, "eg", "EG", "Égypte"));
-        COUNTRY_COORDINATES.put("CN", new CountryCoordinates(35.86166, 104.195397, "cn", "CN", "Chine"));
-        COUNTRY_COORDINATES.put("IN", new CountryCoordinates(20.593684, 78.96288, "in", "IN", "Inde"));
-        COUNTRY_COORDINATES.put("BR", new CountryCoordinates(-14.235004, -51.92528, "br", "BR", "Brésil"));
-        COUNTRY_COORDINATES.put("US", new CountryCoordinates(37.09024, -95.712891, "us", "US", "États-Unis"));
-        COUNTRY_COORDINATES.put("GB", new CountryCoordinates(51.5074, -0.1278, "gb", "GB", "Royaume-Uni"));
-        COUNTRY_COORDINATES.put("CA", new CountryCoordinates(56.1304, -106.3468, "ca", "CA", "Canada"));
-        COUNTRY_COORDINATES.put("NL", new CountryCoordinates(52.1326, 5.2913, "nl", "NL", "Pays-Bas"));
-        COUNTRY_COORDINATES.put("BE", new CountryCoordinates(50.8503, 4.3517, "be", "BE", "Belgique"));
-        COUNTRY_COORDINATES.put("CH", new CountryCoordinates(46.8182, 8.2275, "ch", "CH", "Suisse"));
-        COUNTRY_COORDINATES.put("LY", new CountryCoordinates(26.3351, 17.2283, "ly", "LY", "Libye"));
-        COUNTRY_COORDINATES.put("SA", new CountryCoordinates(23.8859, 45.0792, "sa", "SA", "Arabie Saoudite"));
-        COUNTRY_COORDINATES.put("AE", new CountryCoordinates(23.4241, 53.8478, "ae", "AE", "Émirats Arabes Unis"));
+        for (CountryCoordinates country : COUNTRIES) {
+            COUNTRY_ALIASES.put(normalizeAlias(country.countryCode), country);
+            COUNTRY_ALIASES.put(normalizeAlias(country.name), country);
+            COUNTRY_ALIASES.put(normalizeAlias(country.englishName), country);
+        }
+    }
+
+    /**
+     * Clé d'alias insensible à la casse, aux accents et aux espaces superflus ("ALGERIE" = "Algérie").
+     */
+    private static String normalizeAlias(String value) {
+        String stripped = Normalizer.normalize(value.trim(), Normalizer.Form.NFD).replaceAll("\\p{M}", "");
+        return stripped.toLowerCase(Locale.ROOT);
+    }
+
+    private static CountryCoordinates resolveCountry(String pays) {
+        return pays != null ? COUNTRY_ALIASES.get(normalizeAlias(pays)) : null;
     }
 
     private static final Long DENSITE_ELEVEE_SEUIL = 15L;
     private static final Long DENSITE_MOYENNE_SEUIL = 5L;
 
-    public ExporterStatisticsDTO getExporterStatistics() {
-        log.info("=== RÉCUPÉRATION STATISTIQUES EXPORTATEURS ===");
+    /**
+     * Calcule les statistiques complètes. Appelé par ExporterStatisticsSnapshotService,
+     * qui sert le résultat depuis la mémoire.
+     */
+    public ExporterStatisticsDTO computeExporterStatistics() {
+        log.info("=== CALCUL STATISTIQUES EXPORTATEURS ===");
 
         List<CountryExporterDTO> countries = getCountriesWithExporters();
         GlobalStatsDTO globalStats = calculateGlobalStats(countries);
@@ -98,9 +102,9 @@ public class ExporterStatisticsService {
 
         return ExporterStatisticsDTO.builder()
                 .globalStats(globalStats)
-                .countries(countries)
-                .monthlyEvolution(monthlyEvolution)
-                .densityMap(densityMap)
+                .countries(List.copyOf(countries))
+                .monthlyEvolution(List.copyOf(monthlyEvolution))
+                .densityMap(Map.copyOf(densityMap))
                 .build();
     }
 
@@ -108,30 +112,28 @@ public class ExporterStatisticsService {
         List<Object[]> results = statisticsRepository.getExportateurCountByPays();
         List<CountryExporterDTO> countries = new ArrayList<>();
 
-        System.out.println("=== RÉSULTATS BRUTS DE LA BDD ===");
-        for (Object[] row : results) {
-            System.out.println("Pays: " + row[0] + " - Nombre: " + row[1]);
-        }
-
+        // ✅ "CN", "Chine", "china" ou "CHINE" résolvent le même pays : leurs comptes sont regroupés
+        Map<String, Long> countsByCountry = new LinkedHashMap<>();
+        Map<String, CountryCoordinates> coordsByCountry = new HashMap<>();
         for (Object[] row : results) {
             String paysBrut = (String) row[0];
             Long count = ((Number) row[1]).longValue();
 
-            System.out.println("Recherche de: '" + paysBrut + "' - Map contient: " + COUNTRY_COORDINATES.containsKey(paysBrut));
-
-            // ✅ Maintenant la recherche fonctionne avec "CN" ou "Chine"
-            CountryCoordinates coords = COUNTRY_COORDINATES.get(paysBrut);
-
-            // Si toujours pas trouvé, essayer de trouver par correspondance
+            CountryCoordinates coords = resolveCountry(paysBrut);
             if (coords == null) {
-                for (Map.Entry<String, CountryCoordinates> entry : COUNTRY_COORDINATES.entrySet()) {
-                    if (entry.getValue().countryCode.equalsIgnoreCase(paysBrut) ||
-                            entry.getValue().name.equalsIgnoreCase(paysBrut)) {
-                        coords = entry.getValue();
-                        break;
-                    }
-                }
+                log.debug("Pays sans coordonnées connues: '{}'", paysBrut);
             }
+            String key = coords != null ? coords.countryCode : paysBrut;
+            countsByCountry.merge(key, count, Long::sum);
+            if (coords != null) {
+                coordsByCountry.put(key, coords);
+            }
+        }
+
+        for (Map.Entry<String, Long> entry : countsByCountry.entrySet()) {
+            String paysBrut = entry.getKey();
+            Long count = entry.getValue();
+            CountryCoordinates coords = coordsByCountry.get(paysBrut);
 
             Double latitude = coords != null ? coords.latitude : 33.8869;
             Double longitude = coords != null ? coords.longitude : 9.5375;
@@ -154,10 +156,7 @@ public class ExporterStatisticsService {
 
         countries.sort((a, b) -> b.getCount().compareTo(a.getCount()));
 
-        System.out.println("=== PAYS TRAITÉS ===");
-        for (CountryExporterDTO c : countries) {
-            System.out.println(c.getName() + " (" + c.getCode() + ") - " + c.getCount());
-        }
+        log.debug("{} pays traités pour {} ligne(s) brute(s)", countries.size(), results.size());
 
         return countries;
     }
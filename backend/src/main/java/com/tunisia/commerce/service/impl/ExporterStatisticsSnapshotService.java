@@ -0,0 +1,105 @@
+package com.tunisia.commerce.service.impl;
+
+import com.tunisia.commerce.dto.statistics.ExporterStatisticsDTO;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Instantané des statistiques exportateurs servi depuis la mémoire.
+ *
+ * L'instantané est recalculé périodiquement et, de façon regroupée, peu après toute
+ * inscription ou modification d'exportateur (voir ExportateurEtrangerListener).
+ * Les requêtes HTTP ne déclenchent plus aucune requête SQL.
+ */
+@Slf4j
+@Service
+public class ExporterStatisticsSnapshotService {
+
+    private final ExporterStatisticsService statisticsService;
+
+    private final AtomicReference<ExporterStatisticsDTO> snapshot = new AtomicReference<>();
+    private final AtomicBoolean dirty = new AtomicBoolean(false);
+
+    public ExporterStatisticsSnapshotService(ExporterStatisticsService statisticsService) {
+        this.statisticsService = statisticsService;
+    }
+
+    // ==================== LECTURE ====================
+
+    public ExporterStatisticsDTO getExporterStatistics() {
+        ExporterStatisticsDTO current = snapshot.get();
+        if (current != null) {
+            return current;
+        }
+        // Appel avant le premier calcul (démarrage) : calcul synchrone
+        return refresh();
+    }
+
+    // ==================== RAFRAÎCHISSEMENT ====================
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        refreshQuietly();
+    }
+
+    @Scheduled(fixedDelayString = "${app.statistics.refresh-interval-ms:900000}",
+            initialDelayString = "${app.statistics.refresh-interval-ms:900000}")
+    public void scheduledRefresh() {
+        refreshQuietly();
+    }
+
+    /**
+     * Recalcule l'instantané si des exportateurs ont changé depuis le dernier passage ;
+     * une rafale d'inscriptions ne donne lieu qu'à un seul recalcul.
+     */
+    @Scheduled(fixedDelayString = "${app.statistics.dirty-check-ms:5000}")
+    public void refreshIfDirty() {
+        if (dirty.getAndSet(false) && !refreshQuietly()) {
+            dirty.set(true);
+        }
+    }
+
+    /**
+     * Signale un changement d'exportateur, pris en compte après validation de la transaction courante.
+     */
+    public void markDirtyAfterCommit() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    dirty.set(true);
+                }
+            });
+        } else {
+            dirty.set(true);
+        }
+    }
+
+    public synchronized ExporterStatisticsDTO refresh() {
+        long start = System.currentTimeMillis();
+        ExporterStatisticsDTO fresh = statisticsService.computeExporterStatistics();
+        snapshot.set(fresh);
+        log.info("✅ Instantané des statistiques exportateurs recalculé en {} ms ({} pays)",
+                System.currentTimeMillis() - start, fresh.getCountries().size());
+        return fresh;
+    }
+
+    private boolean refreshQuietly() {
+        try {
+            refresh();
+            return true;
+        } catch (Exception e) {
+            // L'instantané précédent reste servi
+            log.error("❌ Erreur lors du calcul des statistiques exportateurs: {}", e.getMessage(), e);
+            return false;
+        }
+    }
+}
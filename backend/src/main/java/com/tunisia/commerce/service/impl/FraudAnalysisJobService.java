@@ -0,0 +1,558 @@
+package com.tunisia.commerce.service.impl;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.tunisia.commerce.dto.fraud.FraudDetectionResponse;
+import com.tunisia.commerce.dto.fraud.FraudJobDTO;
+import com.tunisia.commerce.entity.Document;
+import com.tunisia.commerce.entity.FraudAnalysis;
+import com.tunisia.commerce.enums.FraudJobStatus;
+import com.tunisia.commerce.repository.DocumentRepository;
+import com.tunisia.commerce.repository.FraudAnalysisRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Base64;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+/**
+ * Analyse de fraude asynchrone : la soumission renvoie un identifiant de job, l'appel au
+ * service ML est fait par un pool borné de workers, jamais par un thread de requête.
+ *
+ * Le fichier est copié en flux dans un répertoire de transit pendant le calcul de son SHA-256.
+ * Un contenu déjà analysé avec le même contexte est servi depuis fraud_analyses sans appel ML ;
+ * une soumission identique déjà en file ou en cours rejoint le job existant. Le résultat est
+ * reporté sur le document analysé, à condition que le fichier soumis soit exactement son
+ * contenu stocké : un fichier sain ne peut pas certifier un autre document.
+ *
+ * Contre-pression : file pleine → refus immédiat (503). Disjoncteur : après
+ * {@code ml.service.circuit.failure-threshold} échecs consécutifs, les soumissions sont refusées
+ * et les jobs en file échouent sans appel pendant {@code ml.service.circuit.open-seconds}. Passé ce
+ * délai, le disjoncteur est demi-ouvert : les appels reprennent, un succès le referme et un échec
+ * le rouvre aussitôt. Une sonde périodique ({@code isMlServiceHealthy}) peut aussi le refermer
+ * avant toute nouvelle soumission.
+ */
+@Slf4j
+@Service
+public class FraudAnalysisJobService {
+
+    private static final String SPOOL_DIRECTORY = "fraude-transit";
+
+    private final FraudDetectionService fraudDetectionService;
+    private final FraudAnalysisRepository analysisRepository;
+    private final DocumentRepository documentRepository;
+    private final ObjectMapper objectMapper;
+    private final TransactionTemplate transactionTemplate;
+
+    private final ThreadPoolExecutor executor;
+    private final Path spoolDirectory;
+    private final Duration timeout;
+    private final long ttlMinutes;
+    private final int failureThreshold;
+    private final long openMillis;
+
+    private final Map<String, FraudJob> jobs = new ConcurrentHashMap<>();
+    // Job en file ou en cours par clé d'analyse (déduplication)
+    private final Map<String, FraudJob> inFlight = new ConcurrentHashMap<>();
+
+    // Disjoncteur : 0 = fermé, sinon fin (ms) de l'ouverture ; au-delà, demi-ouvert
+    private final AtomicInteger consecutiveFailures = new AtomicInteger();
+    private volatile long openUntil = 0;
+
+    // Métriques
+    private final Timer queueWaitTimer;
+    private final Timer analysisTimer;
+    private final Counter succeededCounter;
+    private final Counter failedCounter;
+    private final Counter memoizedCounter;
+    private final Counter deduplicatedCounter;
+    private final Counter rejectedCounter;
+
+    public FraudAnalysisJobService(FraudDetectionService fraudDetectionService,
+                                   FraudAnalysisRepository analysisRepository,
+                                   DocumentRepository documentRepository,
+                                   ObjectMapper objectMapper,
+                                   PlatformTransactionManager transactionManager,
+                                   MeterRegistry meterRegistry,
+                                   @Value("${ml.service.workers:4}") int workers,
+                                   @Value("${ml.service.queue-capacity:50}") int queueCapacity,
+                                   @Value("${ml.service.timeout-seconds:120}") long timeoutSeconds,
+                                   @Value("${ml.service.jobs.ttl-minutes:60}") long ttlMinutes,
+                                   @Value("${ml.service.circuit.failure-threshold:5}") int failureThreshold,
+                                   @Value("${ml.service.circuit.open-seconds:30}") long openSeconds) {
+        this.fraudDetectionService = fraudDetectionService;
+        this.analysisRepository = analysisRepository;
+        this.documentRepository = documentRepository;
+        this.objectMapper = objectMapper;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.spoolDirectory = Path.of(System.getProperty("java.io.tmpdir"), SPOOL_DIRECTORY);
+        this.timeout = Duration.ofSeconds(timeoutSeconds);
+        this.ttlMinutes = ttlMinutes;
+        this.failureThreshold = failureThreshold;
+        this.openMillis = TimeUnit.SECONDS.toMillis(openSeconds);
+
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(workers, workers, 60L, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "fraude-worker-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+        new ExecutorServiceMetrics(executor, "fraude", Tags.empty()).bindTo(meterRegistry);
+
+        this.queueWaitTimer = Timer.builder("fraude.job.attente")
+                .description("Temps passé dans la file avant l'appel au service ML")
+                .register(meterRegistry);
+        this.analysisTimer = Timer.builder("fraude.job.analyse")
+                .description("Durée de l'appel au service ML")
+                .register(meterRegistry);
+        this.succeededCounter = Counter.builder("fraude.job.termines").register(meterRegistry);
+        this.failedCounter = Counter.builder("fraude.job.echecs").register(meterRegistry);
+        this.memoizedCounter = Counter.builder("fraude.job.memorises")
+                .description("Résultats servis depuis la mémoire des analyses, sans appel ML")
+                .register(meterRegistry);
+        this.deduplicatedCounter = Counter.builder("fraude.job.dedupliques").register(meterRegistry);
+        this.rejectedCounter = Counter.builder("fraude.job.refuses")
+                .description("Soumissions refusées (file pleine ou disjoncteur ouvert)")
+                .register(meterRegistry);
+        Gauge.builder("fraude.job.file", executor, e -> e.getQueue().size())
+                .description("Jobs en attente d'analyse")
+                .register(meterRegistry);
+        Gauge.builder("fraude.circuit.ouvert", this, s -> s.isCircuitOpen() ? 1 : 0)
+                .description("1 si le disjoncteur du service ML est ouvert")
+                .register(meterRegistry);
+    }
+
+    // ==================== MODÈLE ====================
+
+    /**
+     * Job d'analyse : état et durées par phase. Les champs sont écrits par le worker
+     * et lus par les requêtes de suivi.
+     */
+    public static final class FraudJob {
+        private final String id;
+        private final String analysisKey;
+        private final String contentHash;
+        private final Long documentId;
+        private final LocalDateTime submittedAt = LocalDateTime.now();
+        private final long submittedNanos = System.nanoTime();
+        private final CompletableFuture<FraudJob> completion = new CompletableFuture<>();
+
+        private volatile FraudJobStatus status = FraudJobStatus.EN_ATTENTE;
+        private volatile boolean cached;
+        private volatile LocalDateTime startedAt;
+        private volatile LocalDateTime finishedAt;
+        private volatile FraudDetectionResponse result;
+        private volatile String error;
+        private volatile Long queueWaitMs;
+        private volatile Long analysisMs;
+
+        FraudJob(String id, String analysisKey, String contentHash, Long documentId) {
+            this.id = id;
+            this.analysisKey = analysisKey;
+            this.contentHash = contentHash;
+            this.documentId = documentId;
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        public FraudJobStatus getStatus() {
+            return status;
+        }
+
+        public FraudDetectionResponse getResult() {
+            return result;
+        }
+
+        public String getError() {
+            return error;
+        }
+
+        public boolean isCached() {
+            return cached;
+        }
+
+        public CompletableFuture<FraudJob> getCompletion() {
+            return completion;
+        }
+
+        boolean isFinished() {
+            return status == FraudJobStatus.TERMINE || status == FraudJobStatus.ECHEC;
+        }
+    }
+
+    // ==================== SOUMISSION ====================
+
+    /**
+     * Soumet l'analyse d'un fichier. Renvoie un job déjà terminé si ce contenu a été analysé
+     * avec le même contexte, ou le job en cours pour une soumission identique.
+     *
+     * @throws IllegalStateException si la file est pleine ou le service ML indisponible
+     * @throws SecurityException si le fichier n'est pas le contenu du document {@code documentId}
+     */
+    public FraudJob submit(MultipartFile file, Long documentId,
+                           FraudDetectionService.AnalysisContext context) throws IOException {
+        Files.createDirectories(spoolDirectory);
+        Path spooled = Files.createTempFile(spoolDirectory, "fraude-", ".bin");
+        String contentHash;
+        try {
+            contentHash = spool(file, spooled);
+            if (documentId != null) {
+                assertContentOf(documentId, contentHash);
+            }
+        } catch (IOException | RuntimeException e) {
+            deleteQuietly(spooled);
+            throw e;
+        }
+        String analysisKey = sha256Hex(contentHash + "\n" + context.fingerprint());
+
+        // Contenu déjà analysé : aucun appel au service ML
+        Optional<FraudJob> memoized = fromMemory(analysisKey, contentHash, documentId);
+        if (memoized.isPresent()) {
+            deleteQuietly(spooled);
+            return memoized.get();
+        }
+
+        if (isCircuitOpen()) {
+            deleteQuietly(spooled);
+            rejectedCounter.increment();
+            throw new IllegalStateException("Service d'analyse de fraude indisponible, réessayez dans quelques instants");
+        }
+
+        AtomicBoolean created = new AtomicBoolean(false);
+        FraudJob job = inFlight.compute(analysisKey, (key, existing) -> {
+            if (existing != null && !existing.isFinished()) {
+                return existing;
+            }
+            created.set(true);
+            return new FraudJob(UUID.randomUUID().toString(), key, contentHash, documentId);
+        });
+
+        if (!created.get()) {
+            deleteQuietly(spooled);
+            deduplicatedCounter.increment();
+            if (documentId != null && !documentId.equals(job.documentId)) {
+                job.completion.thenAccept(done -> recordOnDocument(documentId, done));
+            }
+            log.info("Analyse identique déjà en cours (job {}), soumission rattachée", job.id);
+            return job;
+        }
+
+        jobs.put(job.id, job);
+        String fileName = file.getOriginalFilename();
+        try {
+            executor.execute(() -> analyze(job, spooled, fileName, context));
+        } catch (RejectedExecutionException e) {
+            jobs.remove(job.id);
+            inFlight.remove(analysisKey, job);
+            deleteQuietly(spooled);
+            rejectedCounter.increment();
+            throw new IllegalStateException("File d'analyse de fraude saturée, réessayez dans quelques instants");
+        }
+
+        log.info("Job fraude {} soumis (document: {}, file: {})", job.id, documentId, executor.getQueue().size());
+        return job;
+    }
+
+    /**
+     * Le verdict sera écrit sur le document : le fichier soumis doit avoir l'empreinte de son
+     * contenu stocké (blob, ou empreinte Base64 des documents de l'ancien format).
+     */
+    private void assertContentOf(Long documentId, String contentHash) {
+        Document document = documentRepository.findById(documentId)
+                .orElseThrow(() -> new SecurityException("Document introuvable: " + documentId));
+        String storedHash = document.getBlobHash() != null
+                ? document.getBlobHash()
+                : document.getFileHash() != null
+                ? HexFormat.of().formatHex(Base64.getDecoder().decode(document.getFileHash()))
+                : null;
+        if (!contentHash.equalsIgnoreCase(storedHash)) {
+            log.warn("Analyse fraude refusée : le fichier soumis ({}) n'est pas le contenu du document {}",
+                    contentHash, documentId);
+            throw new SecurityException("Le fichier soumis ne correspond pas au document " + documentId);
+        }
+    }
+
+    private Optional<FraudJob> fromMemory(String analysisKey, String contentHash, Long documentId) {
+        FraudAnalysis analysis = analysisRepository.findById(analysisKey).orElse(null);
+        if (analysis == null) {
+            return Optional.empty();
+        }
+        FraudDetectionResponse result;
+        try {
+            result = objectMapper.readValue(analysis.getResultJson(), FraudDetectionResponse.class);
+        } catch (Exception e) {
+            log.warn("Résultat mémorisé illisible pour {}, nouvelle analyse: {}", analysisKey, e.getMessage());
+            return Optional.empty();
+        }
+
+        FraudJob job = new FraudJob(UUID.randomUUID().toString(), analysisKey, contentHash, documentId);
+        job.cached = true;
+        job.result = result;
+        job.startedAt = job.submittedAt;
+        job.finishedAt = LocalDateTime.now();
+        job.status = FraudJobStatus.TERMINE;
+        jobs.put(job.id, job);
+        memoizedCounter.increment();
+        if (documentId != null) {
+            recordOnDocument(documentId, job);
+        }
+        job.completion.complete(job);
+
+        log.info("Analyse fraude servie depuis la mémoire (contenu {}, document {})", contentHash, documentId);
+        return Optional.of(job);
+    }
+
+    // ==================== ANALYSE ====================
+
+    private void analyze(FraudJob job, Path spooled, String fileName, FraudDetectionService.AnalysisContext context) {
+        long start = System.nanoTime();
+        job.startedAt = LocalDateTime.now();
+        job.status = FraudJobStatus.EN_COURS;
+        job.queueWaitMs = TimeUnit.NANOSECONDS.toMillis(start - job.submittedNanos);
+        queueWaitTimer.record(start - job.submittedNanos, TimeUnit.NANOSECONDS);
+
+        boolean called = false;
+        try {
+            // Disjoncteur ouvert pendant l'attente : la file se vide sans solliciter le service
+            if (isCircuitOpen()) {
+                throw new IllegalStateException("Service d'analyse de fraude indisponible");
+            }
+
+            called = true;
+            FraudDetectionResponse result = fraudDetectionService.analyze(spooled, fileName, context).block(timeout);
+            long analyzed = System.nanoTime();
+            job.analysisMs = TimeUnit.NANOSECONDS.toMillis(analyzed - start);
+            analysisTimer.record(analyzed - start, TimeUnit.NANOSECONDS);
+
+            if (result == null || "error".equalsIgnoreCase(result.getStatus())) {
+                throw new IllegalStateException("Réponse en erreur du service ML"
+                        + (result != null && result.getRecommendation() != null ? ": " + result.getRecommendation() : ""));
+            }
+            recordSuccess();
+
+            job.result = result;
+            remember(job, result);
+            job.finishedAt = LocalDateTime.now();
+            job.status = FraudJobStatus.TERMINE;
+            succeededCounter.increment();
+
+            log.info("✅ Job fraude {} terminé : {} (attente {} ms, analyse {} ms)",
+                    job.id, result.getDecision(), job.queueWaitMs, job.analysisMs);
+        } catch (Exception e) {
+            if (called) {
+                recordFailure();
+            }
+            job.error = e.getMessage();
+            job.finishedAt = LocalDateTime.now();
+            job.status = FraudJobStatus.ECHEC;
+            failedCounter.increment();
+            log.error("❌ Échec du job fraude {}: {}", job.id, e.getMessage());
+        } finally {
+            deleteQuietly(spooled);
+            inFlight.remove(job.analysisKey, job);
+            job.completion.complete(job);
+        }
+    }
+
+    /**
+     * Mémorise le résultat par contenu et le reporte sur le document analysé.
+     */
+    private void remember(FraudJob job, FraudDetectionResponse result) {
+        try {
+            String json = objectMapper.writeValueAsString(result);
+            LocalDateTime now = LocalDateTime.now();
+            transactionTemplate.executeWithoutResult(status -> {
+                analysisRepository.insertIfAbsent(job.analysisKey, job.contentHash, result.getDecision(),
+                        result.getConfidence(), json, job.analysisMs, now);
+                if (job.documentId != null) {
+                    documentRepository.recordFraudAnalysis(job.documentId, job.analysisKey,
+                            result.getDecision(), result.getConfidence(), now);
+                }
+            });
+        } catch (Exception e) {
+            // Le résultat reste disponible via le job ; seule la mémorisation est perdue
+            log.warn("Enregistrement du résultat du job fraude {} impossible: {}", job.id, e.getMessage());
+        }
+    }
+
+    private void recordOnDocument(Long documentId, FraudJob job) {
+        if (job.status != FraudJobStatus.TERMINE || job.result == null) {
+            return;
+        }
+        try {
+            transactionTemplate.executeWithoutResult(status -> documentRepository.recordFraudAnalysis(
+                    documentId, job.analysisKey, job.result.getDecision(), job.result.getConfidence(),
+                    LocalDateTime.now()));
+        } catch (Exception e) {
+            log.warn("Report de l'analyse fraude sur le document {} impossible: {}", documentId, e.getMessage());
+        }
+    }
+
+    // ==================== DISJONCTEUR ====================
+
+    /**
+     * Vrai pendant le délai d'ouverture uniquement : une fois celui-ci écoulé, le disjoncteur est
+     * demi-ouvert et laisse passer les appels, sans attendre la sonde.
+     */
+    public boolean isCircuitOpen() {
+        long until = openUntil;
+        return until != 0 && System.currentTimeMillis() < until;
+    }
+
+    private void recordSuccess() {
+        consecutiveFailures.set(0);
+        if (openUntil != 0) {
+            openUntil = 0;
+            log.info("Service ML de nouveau disponible, disjoncteur refermé");
+        }
+    }
+
+    private synchronized void recordFailure() {
+        int failures = consecutiveFailures.incrementAndGet();
+        long until = openUntil;
+        if (until != 0 && System.currentTimeMillis() >= until) {
+            // Appel d'essai en demi-ouverture : échec, nouvelle période d'ouverture
+            openUntil = System.currentTimeMillis() + openMillis;
+            log.warn("⚠️ Service ML toujours en échec, disjoncteur rouvert");
+        } else if (until == 0 && failures >= failureThreshold) {
+            openUntil = System.currentTimeMillis() + openMillis;
+            log.warn("⚠️ Disjoncteur du service ML ouvert après {} échecs consécutifs", failures);
+        }
+    }
+
+    /**
+     * Sonde le service ML une fois le délai d'ouverture écoulé, et referme le disjoncteur s'il répond.
+     */
+    @Scheduled(fixedDelayString = "${ml.service.circuit.probe-interval-ms:10000}")
+    public void probeCircuit() {
+        long until = openUntil;
+        if (until == 0 || System.currentTimeMillis() < until) {
+            return;
+        }
+        if (fraudDetectionService.isMlServiceHealthy()) {
+            recordSuccess();
+        } else {
+            recordFailure();
+        }
+    }
+
+    // ==================== SUIVI ====================
+
+    public Optional<FraudJob> findJob(String jobId) {
+        return Optional.ofNullable(jobs.get(jobId));
+    }
+
+    public FraudJobDTO toDTO(FraudJob job) {
+        return FraudJobDTO.builder()
+                .jobId(job.id)
+                .status(job.status)
+                .documentId(job.documentId)
+                .contentHash(job.contentHash)
+                .cached(job.cached)
+                .submittedAt(job.submittedAt)
+                .startedAt(job.startedAt)
+                .finishedAt(job.finishedAt)
+                .error(job.error)
+                .queueWaitMs(job.queueWaitMs)
+                .analysisMs(job.analysisMs)
+                .result(job.result)
+                .build();
+    }
+
+    // ==================== EXPIRATION ====================
+
+    @Scheduled(fixedDelayString = "${ml.service.jobs.cleanup-interval-ms:300000}")
+    public void purgeExpired() {
+        LocalDateTime limit = LocalDateTime.now().minusMinutes(ttlMinutes);
+        jobs.values().removeIf(job -> job.isFinished() && job.finishedAt != null && job.finishedAt.isBefore(limit));
+    }
+
+    /**
+     * Les jobs ne survivent pas à un redémarrage : on supprime les fichiers en transit orphelins.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void purgeOrphans() {
+        if (!Files.isDirectory(spoolDirectory)) {
+            return;
+        }
+        try (Stream<Path> files = Files.list(spoolDirectory)) {
+            files.filter(Files::isRegularFile).forEach(this::deleteQuietly);
+        } catch (IOException e) {
+            log.warn("Nettoyage des fichiers d'analyse orphelins impossible: {}", e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    // ==================== MÉTHODES PRIVÉES ====================
+
+    /**
+     * Copie le fichier en flux vers le répertoire de transit et renvoie son SHA-256.
+     */
+    private String spool(MultipartFile file, Path target) throws IOException {
+        MessageDigest digest = newSha256();
+        try (InputStream in = new DigestInputStream(file.getInputStream(), digest)) {
+            Files.copy(in, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    private static String sha256Hex(String value) {
+        return HexFormat.of().formatHex(newSha256().digest(value.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private static MessageDigest newSha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            log.warn("Suppression du fichier en transit {} impossible: {}", path, e.getMessage());
+        }
+    }
+}
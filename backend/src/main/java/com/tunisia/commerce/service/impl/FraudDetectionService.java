@@ -1,119 +1,99 @@
 package com.tunisia.commerce.service.impl;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.tunisia.commerce.dto.fraud.FraudDetectionResponse;
+import com.tunisia.commerce.observability.OutboundCallMetrics;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.FileSystemResource;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.client.MultipartBodyBuilder;
 import org.springframework.stereotype.Service;
-import org.springframework.web.multipart.MultipartFile;
 import org.springframework.web.reactive.function.client.WebClient;
 import reactor.core.publisher.Mono;
 
-import java.io.IOException;
+import java.nio.file.Path;
 import java.time.Duration;
-import java.util.List;
 import java.util.Map;
 
+/**
+ * Client du service ML de détection de fraude documentaire.
+ *
+ * Les appels ne sont jamais bloqués sur un thread de requête : ils passent par
+ * {@link FraudAnalysisJobService}, qui borne la concurrence et mémorise les résultats.
+ */
 @Slf4j
 @Service
 public class FraudDetectionService {
 
     private final WebClient webClient;
-    private final ObjectMapper objectMapper;
+    private final OutboundCallMetrics outboundCallMetrics;
+    private final String mlServiceUrl;
 
-    @Value("${ml.service.url:http://localhost:5000}")
-    private String mlServiceUrl;
-
-    public FraudDetectionService(WebClient webClient, ObjectMapper objectMapper) {
+    public FraudDetectionService(WebClient webClient,
+                                 OutboundCallMetrics outboundCallMetrics,
+                                 @Value("${ml.service.url:http://localhost:5000}") String mlServiceUrl) {
         this.webClient = webClient;
-        this.objectMapper = objectMapper;
+        this.outboundCallMetrics = outboundCallMetrics;
+        this.mlServiceUrl = mlServiceUrl;
     }
 
-    public FraudDetectionResponse analyzeDocument(MultipartFile file, Long documentId, Long demandeId) {
-        log.info("=== ANALYSE FRAUDE DOCUMENT ===");
-        log.info("Document ID: {}, Nom: {}, Taille: {} bytes", documentId, file.getOriginalFilename(), file.getSize());
-
-        try {
-            return analyzeDocumentAsync(file)
-                    .block(Duration.ofSeconds(120));
-        } catch (Exception e) {
-            log.error("❌ Erreur analyse: {}", e.getMessage(), e);
-            return FraudDetectionResponse.builder()
-                    .status("error")
-                    .confidence(0.0)
-                    .recommendation("Erreur: " + e.getMessage())
-                    .build();
+    /**
+     * Contexte de la demande transmis au modèle (tous les champs sont optionnels).
+     */
+    @Getter
+    @AllArgsConstructor
+    public static class AnalysisContext {
+        private final String demandeType;
+        private final String soumissionnaireType;
+        private final String soumissionnaireNom;
+        private final String soumissionnairePays;
+
+        public static AnalysisContext none() {
+            return new AnalysisContext(null, null, null, null);
         }
-    }
-
-    public FraudDetectionResponse analyzeDocumentWithContext(
-            MultipartFile file,
-            Long documentId,
-            Long demandeId,
-            String demandeType,
-            String soumissionnaireType,
-            String soumissionnaireNom,
-            String soumissionnairePays) {
 
-        log.info("=== ANALYSE FRAUDE AVEC CONTEXTE ===");
-        log.info("Demande Type: {}, Soumissionnaire: {}", demandeType, soumissionnaireType);
-
-        try {
-            return analyzeDocumentAsyncWithContext(file, demandeType, soumissionnaireType, soumissionnaireNom, soumissionnairePays)
-                    .block(Duration.ofSeconds(120));
-        } catch (Exception e) {
-            log.error("❌ Erreur analyse: {}", e.getMessage(), e);
-            return FraudDetectionResponse.builder()
-                    .status("error")
-                    .confidence(0.0)
-                    .recommendation("Erreur: " + e.getMessage())
-                    .build();
+        /**
+         * Représentation stable du contexte, intégrée à la clé de mémorisation.
+         */
+        String fingerprint() {
+            return String.join("\n",
+                    String.valueOf(demandeType), String.valueOf(soumissionnaireType),
+                    String.valueOf(soumissionnaireNom), String.valueOf(soumissionnairePays));
         }
     }
 
-    public Mono<FraudDetectionResponse> analyzeDocumentAsyncWithContext(
-            MultipartFile file,
-            String demandeType,
-            String soumissionnaireType,
-            String soumissionnaireNom,
-            String soumissionnairePays) {
-
+    /**
+     * Envoie un fichier au service ML. Le contenu est lu en flux depuis le disque.
+     */
+    public Mono<FraudDetectionResponse> analyze(Path file, String fileName, AnalysisContext context) {
         String url = mlServiceUrl + "/analyze";
 
         MultipartBodyBuilder bodyBuilder = new MultipartBodyBuilder();
+        bodyBuilder.part("file", new FileSystemResource(file))
+                .filename(fileName != null ? fileName : file.getFileName().toString())
+                .contentType(MediaType.APPLICATION_OCTET_STREAM);
 
-        try {
-            byte[] fileBytes = file.getBytes();
-            bodyBuilder.part("file", fileBytes)
-                    .filename(file.getOriginalFilename())
-                    .contentType(MediaType.APPLICATION_OCTET_STREAM);
-
-            // Ajouter les paramètres de contexte
-            if (demandeType != null) {
-                bodyBuilder.part("demande_type", demandeType);
-            }
-            if (soumissionnaireType != null) {
-                bodyBuilder.part("soumissionnaire_type", soumissionnaireType);
-            }
-            if (soumissionnaireNom != null) {
-                bodyBuilder.part("soumissionnaire_nom", soumissionnaireNom);
-            }
-            if (soumissionnairePays != null) {
-                bodyBuilder.part("soumissionnaire_pays", soumissionnairePays);
-            }
-
-        } catch (IOException e) {
-            log.error("Erreur lecture fichier: {}", e.getMessage());
-            return Mono.error(e);
+        // Ajouter les paramètres de contexte
+        if (context.getDemandeType() != null) {
+            bodyBuilder.part("demande_type", context.getDemandeType());
+        }
+        if (context.getSoumissionnaireType() != null) {
+            bodyBuilder.part("soumissionnaire_type", context.getSoumissionnaireType());
+        }
+        if (context.getSoumissionnaireNom() != null) {
+            bodyBuilder.part("soumissionnaire_nom", context.getSoumissionnaireNom());
+        }
+        if (context.getSoumissionnairePays() != null) {
+            bodyBuilder.part("soumissionnaire_pays", context.getSoumissionnairePays());
         }
 
-        log.info("📡 Appel WebClient vers: {} avec contexte demandeType={}", url, demandeType);
+        log.info("📡 Appel WebClient vers: {} avec contexte demandeType={}", url, context.getDemandeType());
         long startTime = System.currentTimeMillis();
 
-        return webClient.post()
+        Mono<FraudDetectionResponse> call = webClient.post()
                 .uri(url)
                 .contentType(MediaType.MULTIPART_FORM_DATA)
                 .bodyValue(bodyBuilder.build())
@@ -123,83 +103,48 @@ public class FraudDetectionService {
                     return Mono.error(new RuntimeException("Erreur service ML: " + response.statusCode()));
                 })
                 .bodyToMono(FraudDetectionResponse.class)
-                .timeout(Duration.ofSeconds(120))
                 .doOnSuccess(result -> {
                     long duration = System.currentTimeMillis() - startTime;
                     log.info("⏱️ Réponse reçue en {} ms", duration);
-                    log.info("Décision: {}, Confiance: {}%",
-                            result.getDecision(),
-                            result.getConfidence() != null ? result.getConfidence() * 100 : "N/A");
+                    logResult(result);
                 })
                 .doOnError(error -> {
                     log.error("❌ Échec analyse: {}", error.getMessage());
                 });
+        return outboundCallMetrics.record("ml", "analyse", call);
     }
 
-    public Mono<FraudDetectionResponse> analyzeDocumentAsync(MultipartFile file) {
-        String url = mlServiceUrl + "/analyze";
-
-        MultipartBodyBuilder bodyBuilder = new MultipartBodyBuilder();
+    private void logResult(FraudDetectionResponse result) {
+        if (result == null) {
+            return;
+        }
+        log.info("========== RÉSULTAT DÉTAILLÉ ==========");
+        log.info("Décision: {}", result.getDecision());
+        log.info("Confiance: {}%", result.getConfidence() != null ? result.getConfidence() * 100 : "N/A");
+        log.info("Recommandation: {}", result.getRecommendation());
 
-        try {
-            byte[] fileBytes = file.getBytes();
-            bodyBuilder.part("file", fileBytes)
-                    .filename(file.getOriginalFilename())
-                    .contentType(MediaType.APPLICATION_OCTET_STREAM);
-        } catch (IOException e) {
-            log.error("Erreur lecture fichier: {}", e.getMessage());
-            return Mono.error(e);
+        if (result.getFinalDecision() != null) {
+            log.info("Raisons finales: {}", result.getFinalDecision().getReasons());
         }
 
-        log.info("📡 Appel WebClient vers: {}", url);
-        long startTime = System.currentTimeMillis();
+        if (result.getGeminiAnalysis() != null) {
+            log.info("Gemini - Exportateur: {}", result.getGeminiAnalysis().getExportateur());
+            log.info("Gemini - Importateur: {}", result.getGeminiAnalysis().getImportateur());
+            if (result.getGeminiAnalysis().getAnomalies() != null) {
+                for (var anomaly : result.getGeminiAnalysis().getAnomalies()) {
+                    log.info("Gemini Anomalie [{}]: {}", anomaly.getSeverity(), anomaly.getDescription());
+                }
+            }
+        }
 
-        return webClient.post()
-                .uri(url)
-                .contentType(MediaType.MULTIPART_FORM_DATA)
-                .bodyValue(bodyBuilder.build())
-                .retrieve()
-                .onStatus(status -> status != HttpStatus.OK, response -> {
-                    log.error("Erreur ML service: {}", response.statusCode());
-                    return Mono.error(new RuntimeException("Erreur service ML: " + response.statusCode()));
-                })
-                .bodyToMono(FraudDetectionResponse.class)
-                .timeout(Duration.ofSeconds(120))
-                .doOnSuccess(result -> {
-                    long duration = System.currentTimeMillis() - startTime;
-                    log.info("⏱️ Réponse reçue en {} ms", duration);
-                    log.info("========== RÉSULTAT DÉTAILLÉ ==========");
-                    log.info("isFraud: {}", result.getIsFraud());
-                    log.info("Décision: {}", result.getDecision());
-                    log.info("Confiance: {}%", result.getConfidence() != null ? result.getConfidence() * 100 : "N/A");
-                    log.info("Recommandation: {}", result.getRecommendation());
-
-                    if (result.getFinalDecision() != null) {
-                        log.info("Raisons finales: {}", result.getFinalDecision().getReasons());
-                    }
-
-                    if (result.getGeminiAnalysis() != null) {
-                        log.info("Gemini - Exportateur: {}", result.getGeminiAnalysis().getExportateur());
-                        log.info("Gemini - Importateur: {}", result.getGeminiAnalysis().getImportateur());
-                        if (result.getGeminiAnalysis().getAnomalies() != null) {
-                            for (var anomaly : result.getGeminiAnalysis().getAnomalies()) {
-                                log.info("Gemini Anomalie [{}]: {}", anomaly.getSeverity(), anomaly.getDescription());
-                            }
-                        }
-                    }
-
-                    if (result.getTextAnalysis() != null) {
-                        log.info("OCR - Warnings: {}", result.getTextAnalysis().getWarnings());
-                        if (result.getTextAnalysis().getExtractedInfo() != null) {
-                            log.info("OCR - Sociétés: {}", result.getTextAnalysis().getExtractedInfo().getCompanies());
-                            log.info("OCR - Document Tunisien: {}", result.getTextAnalysis().getExtractedInfo().getIsTunisianDocument());
-                        }
-                    }
-                    log.info("=========================================");
-                })
-                .doOnError(error -> {
-                    log.error("❌ Échec analyse: {}", error.getMessage());
-                });
+        if (result.getTextAnalysis() != null) {
+            log.info("OCR - Warnings: {}", result.getTextAnalysis().getWarnings());
+            if (result.getTextAnalysis().getExtractedInfo() != null) {
+                log.info("OCR - Sociétés: {}", result.getTextAnalysis().getExtractedInfo().getCompanies());
+                log.info("OCR - Document Tunisien: {}", result.getTextAnalysis().getExtractedInfo().getIsTunisianDocument());
+            }
+        }
+        log.info("=========================================");
     }
 
     public boolean isMlServiceHealthy() {
@@ -235,4 +180,4 @@ public class FraudDetectionService {
             return Map.of("error", e.getMessage(), "loaded", false);
         }
     }
-}
\ No newline at end of file
+}
@@ -4,9 +4,12 @@ import com.google.genai.Client;
 import com.google.genai.types.Content;
 import com.google.genai.types.GenerateContentConfig;
 import com.google.genai.types.GenerateContentResponse;
+import com.google.genai.types.HttpOptions;
 import com.google.genai.types.Part;
 import com.tunisia.commerce.dto.chatbot.ChatbotRequest;
 import com.tunisia.commerce.dto.chatbot.ChatbotResponse;
+import com.tunisia.commerce.observability.OutboundCallMetrics;
+import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
@@ -20,6 +23,7 @@ import java.util.concurrent.atomic.AtomicInteger;
 
 @Service
 @Slf4j
+@RequiredArgsConstructor
 public class GeminiChatbotService {
 
     @Value("${gemini.api.key}")
@@ -28,9 +32,14 @@ public class GeminiChatbotService {
     @Value("${gemini.model}")
     private String modelName;
 
+    // Vide en production ; pointé sur un bouchon local pour les tests de charge
+    @Value("${gemini.base-url:}")
+    private String baseUrl;
+
     @Value("${gemini.max.tokens:4096}")
     private int maxOutputTokens;
     private Client geminiClient;
+    private final OutboundCallMetrics outboundCallMetrics;
 
     // ==================== CACHE ====================
     private final Map<String, CachedResponse> cache = new ConcurrentHashMap<>();
@@ -144,9 +153,11 @@ public class GeminiChatbotService {
     @PostConstruct
     public void init() {
         try {
-            this.geminiClient = Client.builder()
-                    .apiKey(apiKey)
-                    .build();
+            Client.Builder builder = Client.builder().apiKey(apiKey);
+            if (!baseUrl.isBlank()) {
+                builder.httpOptions(HttpOptions.builder().baseUrl(baseUrl).build());
+            }
+            this.geminiClient = builder.build();
             log.info("✅ Gemini Flash model initialized successfully with model: {}", modelName);
 
             // Démarrer le nettoyage périodique du cache
@@ -219,11 +230,8 @@ public class GeminiChatbotService {
                     .maxOutputTokens(maxOutputTokens)
                     .build();
 
-            GenerateContentResponse response = geminiClient.models.generateContent(
-                    modelName,
-                    List.of(content),
-                    config
-            );
+            GenerateContentResponse response = outboundCallMetrics.record("gemini", "chatbot",
+                    () -> geminiClient.models.generateContent(modelName, List.of(content), config));
 
             String aiReply = extractTextFromResponse(response);
             List<String> suggestions = generateSuggestions(request.getMessage(), request.getContext());
@@ -0,0 +1,268 @@
+package com.tunisia.commerce.service.impl;
+
+import com.tunisia.commerce.enums.DemandeStatus;
+import com.tunisia.commerce.repository.DemandeEnregistrementRepository;
+import com.tunisia.commerce.repository.DemandeProduitRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * Statistiques du tableau de bord importateur, calculées par agrégation en base
+ * (nombre de requêtes constant) et mises en cache par importateur (LRU borné,
+ * {@code app.dashboard.cache-max-entries}). Les statistiques en cache sont en lecture seule
+ * à toute profondeur et partagées entre les requêtes.
+ *
+ * Le cache d'un importateur est invalidé après validation de toute transaction
+ * modifiant l'une de ses demandes (voir DemandeEnregistrementListener).
+ */
+@Slf4j
+@Service
+public class ImportateurDashboardService {
+
+    private final DemandeEnregistrementRepository demandeRepository;
+    private final DemandeProduitRepository demandeProduitRepository;
+
+    // Filet de sécurité si une modification échappe à l'invalidation
+    @Value("${app.dashboard.cache-ttl-minutes:10}")
+    private long cacheTtlMinutes;
+
+    private final Map<Long, CachedStats> cache;
+    // Un calcul commencé avant une invalidation n'est pas mis en cache
+    private final AtomicLong generation = new AtomicLong();
+
+    private static final String[] JOURS = {"Lun", "Mar", "Mer", "Jeu", "Ven", "Sam", "Dim"};
+
+    public ImportateurDashboardService(DemandeEnregistrementRepository demandeRepository,
+                                       DemandeProduitRepository demandeProduitRepository,
+                                       @Value("${app.dashboard.cache-max-entries:5000}") int maxEntries) {
+        this.demandeRepository = demandeRepository;
+        this.demandeProduitRepository = demandeProduitRepository;
+        this.cache = new LinkedHashMap<>(256, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, CachedStats> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    private static class CachedStats {
+        private final Map<String, Object> stats;
+        private final Instant cachedAt;
+
+        CachedStats(Map<String, Object> stats) {
+            this.stats = stats;
+            this.cachedAt = Instant.now();
+        }
+
+        boolean isExpired(long ttlMinutes) {
+            return Duration.between(cachedAt, Instant.now()).toMinutes() >= ttlMinutes;
+        }
+    }
+
+    // ==================== CACHE ====================
+
+    /**
+     * Statistiques de l'importateur, en lecture seule.
+     */
+    public Map<String, Object> getDashboardStats(Long importateurId) {
+        synchronized (cache) {
+            CachedStats cached = cache.get(importateurId);
+            if (cached != null && !cached.isExpired(cacheTtlMinutes)) {
+                log.debug("Statistiques dashboard servies depuis le cache pour importateur ID: {}", importateurId);
+                return cached.stats;
+            }
+        }
+
+        long loadGeneration = generation.get();
+        Map<String, Object> stats = freeze(computeDashboardStats(importateurId));
+        synchronized (cache) {
+            if (generation.get() == loadGeneration) {
+                cache.put(importateurId, new CachedStats(stats));
+            }
+        }
+        return stats;
+    }
+
+    public void invalidate(Long importateurId) {
+        if (importateurId == null) {
+            return;
+        }
+        generation.incrementAndGet();
+        synchronized (cache) {
+            cache.remove(importateurId);
+        }
+    }
+
+    /**
+     * Invalide le cache de l'importateur une fois la transaction courante validée.
+     */
+    public void invalidateAfterCommit(Long importateurId) {
+        if (importateurId == null) {
+            return;
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            // Invalidation immédiate (lectures concurrentes) puis après validation (lectures pendant la transaction)
+            invalidate(importateurId);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    invalidate(importateurId);
+                }
+            });
+        } else {
+            invalidate(importateurId);
+        }
+    }
+
+    // ==================== AGRÉGATION ====================
+
+    private Map<String, Object> computeDashboardStats(Long importateurId) {
+        log.info("Calcul des statistiques dashboard pour importateur ID: {}", importateurId);
+
+        Map<String, Object> stats = new HashMap<>();
+        LocalDateTime now = LocalDateTime.now();
+
+        // 1. Volume mensuel et score de performance (taux de validation) : une ligne par statut
+        long totalDemandes = 0;
+        long demandesValidees = 0;
+        BigDecimal volumeMensuel = BigDecimal.ZERO;
+        for (Object[] row : demandeRepository.aggregateStatusByImportateur(importateurId, now.minusMonths(1))) {
+            DemandeStatus status = (DemandeStatus) row[0];
+            long count = ((Number) row[1]).longValue();
+            totalDemandes += count;
+            if (status == DemandeStatus.VALIDEE) {
+                demandesValidees += count;
+            }
+            if (row[2] != null) {
+                volumeMensuel = volumeMensuel.add((BigDecimal) row[2]);
+            }
+        }
+
+        stats.put("volumeMensuel", volumeMensuel);
+        int performanceScore = totalDemandes > 0 ? (int) ((demandesValidees * 100) / totalDemandes) : 0;
+        stats.put("performanceScore", performanceScore);
+
+        // 2. Volume par catégorie et par pays d'origine : une ligne par couple (catégorie, pays)
+        Map<String, BigDecimal> volumeParCategorie = new HashMap<>();
+        Map<String, BigDecimal> volumeParPays = new HashMap<>();
+        Map<String, Map<String, BigDecimal>> categoriesParPays = new HashMap<>();
+
+        for (Object[] row : demandeProduitRepository.aggregateVolumeByImportateur(importateurId)) {
+            String category = row[0] != null ? (String) row[0] : "AUTRE";
+            String country = (String) row[1];
+            BigDecimal amount = row[3] != null ? (BigDecimal) row[3] : BigDecimal.ZERO;
+
+            volumeParCategorie.merge(category, amount, BigDecimal::add);
+            if (country != null && !country.isEmpty()) {
+                volumeParPays.merge(country, amount, BigDecimal::add);
+                categoriesParPays.computeIfAbsent(country, k -> new HashMap<>())
+                        .merge(category, amount, BigDecimal::add);
+            }
+        }
+
+        BigDecimal totalVolume = volumeParCategorie.values().stream()
+                .reduce(BigDecimal.ZERO, BigDecimal::add);
+
+        List<Map<String, Object>> volumeParCategorieList = new ArrayList<>();
+        for (Map.Entry<String, BigDecimal> entry : volumeParCategorie.entrySet()) {
+            Map<String, Object> cat = new HashMap<>();
+            cat.put("name", getCategoryName(entry.getKey()));
+            int percentage = totalVolume.compareTo(BigDecimal.ZERO) > 0 ?
+                    entry.getValue().multiply(BigDecimal.valueOf(100)).divide(totalVolume, 0, RoundingMode.HALF_UP).intValue() : 0;
+            cat.put("value", percentage);
+            volumeParCategorieList.add(cat);
+        }
+        volumeParCategorieList.sort((a, b) -> ((Integer) b.get("value")).compareTo((Integer) a.get("value")));
+        stats.put("volumeParCategorie", volumeParCategorieList);
+
+        List<Map<String, Object>> volumeParPaysList = new ArrayList<>();
+        for (Map.Entry<String, BigDecimal> entry : volumeParPays.entrySet()) {
+            Map<String, Object> pays = new HashMap<>();
+            pays.put("name", entry.getKey());
+            pays.put("value", entry.getValue());
+            volumeParPaysList.add(pays);
+        }
+        volumeParPaysList.sort((a, b) -> ((BigDecimal) b.get("value")).compareTo((BigDecimal) a.get("value")));
+        stats.put("volumeParPays", volumeParPaysList.stream().limit(4).collect(Collectors.toList()));
+
+        // 3. Volume des 7 derniers jours : une ligne par jour
+        LocalDate firstDay = now.toLocalDate().minusDays(6);
+        Map<LocalDate, BigDecimal> volumeParJour = new HashMap<>();
+        for (Object[] row : demandeRepository.aggregateDailyVolumeByImportateur(importateurId, firstDay.atStartOfDay())) {
+            if (row[0] != null && row[1] != null) {
+                volumeParJour.put((LocalDate) row[0], (BigDecimal) row[1]);
+            }
+        }
+
+        List<Map<String, Object>> volumeHebdomadaire = new ArrayList<>();
+        for (int i = 6; i >= 0; i--) {
+            LocalDate jour = now.toLocalDate().minusDays(i);
+            Map<String, Object> jourData = new HashMap<>();
+            jourData.put("name", JOURS[jour.getDayOfWeek().getValue() - 1]);
+            jourData.put("volume", volumeParJour.getOrDefault(jour, BigDecimal.ZERO));
+            volumeHebdomadaire.add(jourData);
+        }
+        stats.put("volumeHebdomadaire", volumeHebdomadaire);
+
+        // 4. Top partenaire et sa catégorie principale
+        if (!volumeParPaysList.isEmpty()) {
+            String topCountry = (String) volumeParPaysList.get(0).get("name");
+            String mainCategory = categoriesParPays.getOrDefault(topCountry, Map.of()).entrySet().stream()
+                    .max(Map.Entry.comparingByValue())
+                    .map(entry -> getCategoryName(entry.getKey()))
+                    .orElse("produits");
+
+            stats.put("topPartenaire", topCountry);
+            stats.put("topPartenaireMessage", String.format(
+                    "%s reste le partenaire principal pour vos importations de %s.",
+                    topCountry, mainCategory.toLowerCase()
+            ));
+        } else {
+            stats.put("topPartenaire", "Aucun");
+            stats.put("topPartenaireMessage", "Aucune importation enregistrée pour le moment.");
+        }
+
+        return stats;
+    }
+
+    /**
+     * Copie en lecture seule des cartes et listes imbriquées ; les feuilles (String, BigDecimal, Integer) sont immuables.
+     */
+    @SuppressWarnings("unchecked")
+    static <T> T freeze(T value) {
+        if (value instanceof Map<?, ?> map) {
+            Map<Object, Object> copy = new LinkedHashMap<>();
+            map.forEach((key, nested) -> copy.put(key, freeze(nested)));
+            return (T) Collections.unmodifiableMap(copy);
+        }
+        if (value instanceof List<?> list) {
+            return (T) list.stream().map(ImportateurDashboardService::freeze).toList();
+        }
+        return value;
+    }
+
+    private String getCategoryName(String productType) {
+        if (productType == null) return "Autre";
+        switch (productType.toLowerCase()) {
+            case "alimentaire": return "Alimentaire";
+            case "industriel": return "Industriel";
+            case "textile": return "Textile";
+            case "electronique": return "Électronique";
+            case "chimique": return "Chimique";
+            default: return "Autre";
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package com.tunisia.commerce.service.impl;
 
+import com.tunisia.commerce.cache.ReadModelCaches;
 import com.tunisia.commerce.dto.importateur.ImportateurStatutsDTO;
 import com.tunisia.commerce.dto.produits.ProduitDTO;
 import com.tunisia.commerce.dto.user.UserDTO;
@@ -10,6 +11,8 @@ import com.tunisia.commerce.repository.*;
 import com.tunisia.commerce.service.ImportateurService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.cache.annotation.Cacheable;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.util.StringUtils;
@@ -47,6 +50,10 @@ public class ImportateurServiceImpl implements ImportateurService {
     private final NotificationRepository notificationRepository;
     private final DemandeEnregistrementRepository demandeRepository;
     private final ImportateurRepository importateurRepository;
+    private final CatalogueSearchService catalogueSearchService;
+    private final ImportateurDashboardService importateurDashboardService;
+    // Proxy du service : un appel interne sur this contournerait le cache de getAllExportateursValides
+    private final ObjectProvider<ImportateurService> self;
 
     @Override
     public List<UserDTO> rechercherExportateursValides(String searchTerm) {
@@ -55,7 +62,7 @@ public class ImportateurServiceImpl implements ImportateurService {
 
         try {
             if (!StringUtils.hasText(searchTerm)) {
-                return getAllExportateursValides();
+                return self.getObject().getAllExportateursValides();
             }
 
             String searchTermLower = searchTerm.toLowerCase().trim();
@@ -66,30 +73,20 @@ public class ImportateurServiceImpl implements ImportateurService {
 
             log.info("Exportateurs trouvés par recherche directe: {}", exportateurs.size());
 
-            // Si pas de résultats, recherche dans les produits via demandes validées
+            // Si pas de résultats, recherche dans l'index catalogue (produits validés et payés)
             if (exportateurs.isEmpty()) {
-                List<Product> produits = productRepository.findByProductNameContainingIgnoreCaseOrHsCodeContaining(
-                        searchTermLower
-                );
-
-                log.info("Produits trouvés par recherche: {}", produits.size());
-
-                exportateurs = produits.stream()
-                        .flatMap(product -> demandeProduitRepository.findByProduitId(product.getId()).stream())
-                        .map(DemandeProduit::getDemande)
-                        .filter(demande -> demande != null &&
-                                demande.getExportateur() != null &&
-                                demande.getStatus() == DemandeStatus.VALIDEE &&
-                                demande.getPaymentStatus() == PaymentStatus.REUSSI)
-                        .map(DemandeEnregistrement::getExportateur)
-                        .filter(exportateur ->
-                                exportateur != null &&
-                                        exportateur.getStatutAgrement() == StatutAgrement.VALIDE
-                        )
-                        .distinct()
-                        .collect(Collectors.toList());
+                List<Long> exportateurIds = catalogueSearchService.findExportateursValidesByProduit(searchTermLower);
+                log.info("Exportateurs trouvés via l'index produits: {}", exportateurIds.size());
+
+                Map<Long, ExportateurEtranger> byId = exportateurRepository.findAllById(exportateurIds).stream()
+                        .filter(exportateur -> exportateur.getStatutAgrement() == StatutAgrement.VALIDE)
+                        .collect(Collectors.toMap(ExportateurEtranger::getId, e -> e));
 
-                log.info("Exportateurs trouvés via produits: {}", exportateurs.size());
+                // Conserver l'ordre de pertinence de l'index
+                exportateurs = exportateurIds.stream()
+                        .map(byId::get)
+                        .filter(Objects::nonNull)
+                        .collect(Collectors.toList());
             }
 
             List<UserDTO> resultats = exportateurs.stream()
@@ -108,7 +105,11 @@ public class ImportateurServiceImpl implements ImportateurService {
     }
 
 
+    /**
+     * Invalidée par les listeners des exportateurs, demandes, produits et documents.
+     */
     @Override
+    @Cacheable(cacheNames = ReadModelCaches.EXPORTATEURS_VALIDES, key = "'tous'", sync = true)
     public List<UserDTO> getAllExportateursValides() {
         log.info("========== LISTE TOUS EXPORTATEURS VALIDÉS ==========");
 
@@ -362,152 +363,12 @@ public class ImportateurServiceImpl implements ImportateurService {
     }
     @Override
     public Map<String, Object> getDashboardStats(Long importateurId) {
-        log.info("Calcul des statistiques dashboard pour importateur ID: {}", importateurId);
-
-        Map<String, Object> stats = new HashMap<>();
-
         try {
-            // 1. Récupérer toutes les demandes de l'importateur
-            List<DemandeEnregistrement> demandes = demandeRepository.findByImportateurId(importateurId);
-
-            // 2. Calculer le volume mensuel (dernier mois)
-            LocalDateTime unMoisAvant = LocalDateTime.now().minusMonths(1);
-            BigDecimal volumeMensuel = demandes.stream()
-                    .filter(d -> d.getSubmittedAt() != null && d.getSubmittedAt().isAfter(unMoisAvant))
-                    .map(DemandeEnregistrement::getPaymentAmount)
-                    .filter(Objects::nonNull)
-                    .reduce(BigDecimal.ZERO, BigDecimal::add);
-
-            stats.put("volumeMensuel", volumeMensuel);
-
-            // 3. Calculer le score de performance (taux de validation)
-            long totalDemandes = demandes.size();
-            long demandesValidees = demandes.stream()
-                    .filter(d -> d.getStatus() == DemandeStatus.VALIDEE)
-                    .count();
-
-            int performanceScore = totalDemandes > 0 ? (int) ((demandesValidees * 100) / totalDemandes) : 0;
-            stats.put("performanceScore", performanceScore);
-
-            // 4. Volume par catégorie de produit
-            Map<String, BigDecimal> volumeParCategorie = new HashMap<>();
-            Map<String, Integer> countParCategorie = new HashMap<>();
-
-            for (DemandeEnregistrement demande : demandes) {
-                List<DemandeProduit> demandeProduits = demandeProduitRepository.findByDemandeId(demande.getId());
-                for (DemandeProduit dp : demandeProduits) {
-                    Product product = dp.getProduit();
-                    String category = product.getProductType();
-                    if (category == null) category = "AUTRE";
-
-                    BigDecimal amount = demande.getPaymentAmount() != null ? demande.getPaymentAmount() : BigDecimal.ZERO;
-                    volumeParCategorie.merge(category, amount, BigDecimal::add);
-                    countParCategorie.merge(category, 1, Integer::sum);
-                }
-            }
-
-            // Calculer les pourcentages
-            BigDecimal totalVolume = volumeParCategorie.values().stream()
-                    .reduce(BigDecimal.ZERO, BigDecimal::add);
-
-            List<Map<String, Object>> volumeParCategorieList = new ArrayList<>();
-            for (Map.Entry<String, BigDecimal> entry : volumeParCategorie.entrySet()) {
-                Map<String, Object> cat = new HashMap<>();
-                cat.put("name", getCategoryName(entry.getKey()));
-                int percentage = totalVolume.compareTo(BigDecimal.ZERO) > 0 ?
-                        entry.getValue().multiply(BigDecimal.valueOf(100)).divide(totalVolume, 0, java.math.RoundingMode.HALF_UP).intValue() : 0;
-                cat.put("value", percentage);
-                volumeParCategorieList.add(cat);
-            }
-
-            // Trier par valeur décroissante
-            volumeParCategorieList.sort((a, b) -> ((Integer) b.get("value")).compareTo((Integer) a.get("value")));
-            stats.put("volumeParCategorie", volumeParCategorieList);
-
-            // 5. Volume par pays d'origine
-            Map<String, BigDecimal> volumeParPays = new HashMap<>();
-            for (DemandeEnregistrement demande : demandes) {
-                List<DemandeProduit> demandeProduits = demandeProduitRepository.findByDemandeId(demande.getId());
-                for (DemandeProduit dp : demandeProduits) {
-                    Product product = dp.getProduit();
-                    String country = product.getOriginCountry();
-                    if (country != null && !country.isEmpty()) {
-                        BigDecimal amount = demande.getPaymentAmount() != null ? demande.getPaymentAmount() : BigDecimal.ZERO;
-                        volumeParPays.merge(country, amount, BigDecimal::add);
-                    }
-                }
-            }
-
-            List<Map<String, Object>> volumeParPaysList = new ArrayList<>();
-            for (Map.Entry<String, BigDecimal> entry : volumeParPays.entrySet()) {
-                Map<String, Object> pays = new HashMap<>();
-                pays.put("name", entry.getKey());
-                pays.put("value", entry.getValue());
-                volumeParPaysList.add(pays);
-            }
-
-            // Trier par volume décroissant et prendre top 4
-            volumeParPaysList.sort((a, b) -> ((BigDecimal) b.get("value")).compareTo((BigDecimal) a.get("value")));
-            stats.put("volumeParPays", volumeParPaysList.stream().limit(4).collect(Collectors.toList()));
-
-            // 6. Volume hebdomadaire
-            List<Map<String, Object>> volumeHebdomadaire = new ArrayList<>();
-            String[] jours = {"Lun", "Mar", "Mer", "Jeu", "Ven", "Sam", "Dim"};
-            LocalDateTime now = LocalDateTime.now();
-
-            for (int i = 6; i >= 0; i--) {
-                LocalDateTime jour = now.minusDays(i);
-                String jourNom = jours[jour.getDayOfWeek().getValue() - 1];
-
-                BigDecimal volumeJour = demandes.stream()
-                        .filter(d -> d.getSubmittedAt() != null &&
-                                d.getSubmittedAt().toLocalDate().equals(jour.toLocalDate()))
-                        .map(DemandeEnregistrement::getPaymentAmount)
-                        .filter(Objects::nonNull)
-                        .reduce(BigDecimal.ZERO, BigDecimal::add);
-
-                Map<String, Object> jourData = new HashMap<>();
-                jourData.put("name", jourNom);
-                jourData.put("volume", volumeJour);
-                volumeHebdomadaire.add(jourData);
-            }
-
-            stats.put("volumeHebdomadaire", volumeHebdomadaire);
-
-            // 7. Top partenaire message
-            if (!volumeParPaysList.isEmpty()) {
-                Map<String, Object> topPays = volumeParPaysList.get(0);
-                String topCountry = (String) topPays.get("name");
-
-                // Déterminer la catégorie principale du top pays
-                String mainCategory = "produits";
-                for (DemandeEnregistrement demande : demandes) {
-                    List<DemandeProduit> demandeProduits = demandeProduitRepository.findByDemandeId(demande.getId());
-                    for (DemandeProduit dp : demandeProduits) {
-                        Product product = dp.getProduit();
-                        if (topCountry.equals(product.getOriginCountry())) {
-                            mainCategory = getCategoryName(product.getProductType());
-                            break;
-                        }
-                    }
-                }
-
-                stats.put("topPartenaire", topCountry);
-                stats.put("topPartenaireMessage", String.format(
-                        "%s reste le partenaire principal pour vos importations de %s.",
-                        topCountry, mainCategory.toLowerCase()
-                ));
-            } else {
-                stats.put("topPartenaire", "Aucun");
-                stats.put("topPartenaireMessage", "Aucune importation enregistrée pour le moment.");
-            }
-
+            return importateurDashboardService.getDashboardStats(importateurId);
         } catch (Exception e) {
             log.error("Erreur lors du calcul des statistiques: {}", e.getMessage(), e);
             throw new RuntimeException("Erreur lors du calcul des statistiques", e);
         }
-
-        return stats;
     }
 
     @Override
@@ -635,16 +496,4 @@ public class ImportateurServiceImpl implements ImportateurService {
             throw new RuntimeException("Erreur lors de la génération du rapport PDF", e);
         }
     }
-
-    private String getCategoryName(String productType) {
-        if (productType == null) return "Autre";
-        switch (productType.toLowerCase()) {
-            case "alimentaire": return "Alimentaire";
-            case "industriel": return "Industriel";
-            case "textile": return "Textile";
-            case "electronique": return "Électronique";
-            case "chimique": return "Chimique";
-            default: return "Autre";
-        }
-    }
 }
\ No newline at end of file
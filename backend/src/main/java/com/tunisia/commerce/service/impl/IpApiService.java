@@ -1,6 +1,8 @@
 package com.tunisia.commerce.service.impl;
 
+import com.tunisia.commerce.observability.OutboundCallMetrics;
 import lombok.Data;
+import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
@@ -10,9 +12,11 @@ import java.util.List;
 
 @Service
 @Slf4j
+@RequiredArgsConstructor
 public class IpApiService {
 
     private final RestTemplate restTemplate = new RestTemplate();
+    private final OutboundCallMetrics outboundCallMetrics;
 
     // API Keys (à configurer dans application.properties)
     @Value("${ipinfo.token:}")
@@ -24,20 +28,32 @@ public class IpApiService {
     @Value("${numverify.token:}")
     private String numverifyToken;
 
+    // Adresses des API (surchargées par les environnements de test de charge)
+    @Value("${ip-api.base-url:http://ip-api.com}")
+    private String ipApiBaseUrl;
+
+    @Value("${ipinfo.base-url:https://ipinfo.io}")
+    private String ipInfoBaseUrl;
+
+    @Value("${abstractapi.email.base-url:https://emailvalidation.abstractapi.com}")
+    private String abstractApiEmailBaseUrl;
+
+    @Value("${numverify.base-url:http://apilayer.net}")
+    private String numverifyBaseUrl;
+
     // API ip-api.com - GRATUITE, sans clé, 45 req/min
-    private static final String IP_GEOLOCATION_URL =
-            "http://ip-api.com/json/{ip}?fields=status,country,countryCode,city,lat,lon,proxy,isp,org,as,mobile,hosting,query";
+    private static final String IP_GEOLOCATION_PATH =
+            "/json/{ip}?fields=status,country,countryCode,city,lat,lon,proxy,isp,org,as,mobile,hosting,query";
 
     // API ipinfo.io - 50k req/mois gratuit avec token
-    private static final String IPINFO_URL = "https://ipinfo.io/{ip}/json?token={token}";
+    private static final String IPINFO_PATH = "/{ip}/json?token={token}";
 
     // API AbstractAPI - 250 req/mois gratuit
-    private static final String ABSTRACT_EMAIL_URL =
-            "https://emailvalidation.abstractapi.com/v1/?api_key={apiKey}&email={email}";
+    private static final String ABSTRACT_EMAIL_PATH = "/v1/?api_key={apiKey}&email={email}";
 
     // API Numverify - 100 req/mois gratuit
-    private static final String NUMVERIFY_URL =
-            "http://apilayer.net/api/validate?access_key={accessKey}&number={number}&country_code={countryCode}&format=1";
+    private static final String NUMVERIFY_PATH =
+            "/api/validate?access_key={accessKey}&number={number}&country_code={countryCode}&format=1";
 
     // ==================== IP GEOLOCATION METHODS ====================
 
@@ -51,8 +67,9 @@ public class IpApiService {
         }
 
         try {
-            String url = IP_GEOLOCATION_URL.replace("{ip}", ipAddress);
-            IpApiResponse response = restTemplate.getForObject(url, IpApiResponse.class);
+            String url = (ipApiBaseUrl + IP_GEOLOCATION_PATH).replace("{ip}", ipAddress);
+            IpApiResponse response = outboundCallMetrics.record("ip-api", "geolocalisation",
+                    () -> restTemplate.getForObject(url, IpApiResponse.class));
 
             if (response != null && "success".equals(response.getStatus())) {
                 log.info("IP {} -> Pays: {}, Proxy: {}, ISP: {}",
@@ -134,10 +151,11 @@ public class IpApiService {
      */
     private IpInfoResponse getIpInfo(String ipAddress) {
         try {
-            String url = IPINFO_URL
+            String url = (ipInfoBaseUrl + IPINFO_PATH)
                     .replace("{ip}", ipAddress)
                     .replace("{token}", ipInfoToken);
-            return restTemplate.getForObject(url, IpInfoResponse.class);
+            return outboundCallMetrics.record("ipinfo", "geolocalisation",
+                    () -> restTemplate.getForObject(url, IpInfoResponse.class));
         } catch (Exception e) {
             log.warn("Erreur getIpInfo: {}", e.getMessage());
             return null;
@@ -164,10 +182,11 @@ public class IpApiService {
         if (abstractApiEmailToken != null && !abstractApiEmailToken.isEmpty()
                 && !"VOTRE_TOKEN_ABSTRACTAPI".equals(abstractApiEmailToken)) {
             try {
-                String url = ABSTRACT_EMAIL_URL
+                String url = (abstractApiEmailBaseUrl + ABSTRACT_EMAIL_PATH)
                         .replace("{apiKey}", abstractApiEmailToken)
                         .replace("{email}", email);
-                AbstractEmailResponse apiResponse = restTemplate.getForObject(url, AbstractEmailResponse.class);
+                AbstractEmailResponse apiResponse = outboundCallMetrics.record("abstractapi", "validation-email",
+                        () -> restTemplate.getForObject(url, AbstractEmailResponse.class));
 
                 if (apiResponse != null) {
                     response.setDeliverable(apiResponse.isDeliverable());
@@ -284,11 +303,12 @@ public class IpApiService {
         if (numverifyToken != null && !numverifyToken.isEmpty()
                 && !"VOTRE_TOKEN_NUMVERIFY".equals(numverifyToken)) {
             try {
-                String url = NUMVERIFY_URL
+                String url = (numverifyBaseUrl + NUMVERIFY_PATH)
                         .replace("{accessKey}", numverifyToken)
                         .replace("{number}", phoneNumber)
                         .replace("{countryCode}", countryCode != null ? countryCode : "");
-                NumverifyResponse apiResponse = restTemplate.getForObject(url, NumverifyResponse.class);
+                NumverifyResponse apiResponse = outboundCallMetrics.record("numverify", "validation-telephone",
+                        () -> restTemplate.getForObject(url, NumverifyResponse.class));
 
                 if (apiResponse != null) {
                     response.setValid(apiResponse.isValid());
@@ -13,6 +13,7 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
@@ -27,6 +28,8 @@ public class NotificationServiceImpl implements NotificationService {
 
     private final NotificationRepository notificationRepository;
     private final UserRepository userRepository;
+    private final NotificationUnreadCounter unreadCounter;
+    private final NotificationStreamService streamService;
 
     @Override
     public NotificationResponseDTO createProductAdditionNotification(ProductAdditionNotificationDTO productAdditionDTO) {
@@ -84,6 +87,28 @@ public class NotificationServiceImpl implements NotificationService {
         return NotificationResponseDTO.fromEntity(savedNotification);
     }
 
+    @Override
+    public NotificationResponseDTO createSystemNotification(Long receiverId, String title, String targetEntityType) {
+        User receiver = userRepository.findById(receiverId)
+                .orElseThrow(() -> new RuntimeException("Destinataire non trouvé avec ID: " + receiverId));
+
+        Notification notification = Notification.builder()
+                .sender(receiver)
+                .receiver(receiver)
+                .title(title)
+                .notificationType(NotificationType.SYSTEME)
+                .status(NotificationStatus.NON_LU)
+                .targetEntityType(targetEntityType)
+                .isEmailSent(false)
+                .isSmsSent(false)
+                .build();
+
+        Notification savedNotification = notificationRepository.save(notification);
+        log.info("Notification système créée: ID {} pour l'utilisateur {}", savedNotification.getId(), receiverId);
+
+        return NotificationResponseDTO.fromEntity(savedNotification);
+    }
+
     /*@Override
     public NotificationResponseDTO createNotification(NotificationRequestDTO requestDTO) {
         log.info("Création d'une notification générique");
@@ -145,13 +170,10 @@ public class NotificationServiceImpl implements NotificationService {
     }
 
     @Override
-    @Transactional(readOnly = true)
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
     public long getUnreadCount(Long userId) {
-        // Vérifier que l'utilisateur existe
-        if (!userRepository.existsById(userId)) {
-            return 0;
-        }
-        return notificationRepository.countByReceiverIdAndStatus(userId, NotificationStatus.NON_LU);
+        // Compteur Redis : aucune requête SQL tant qu'il est chargé (0 pour un utilisateur inconnu)
+        return unreadCounter.get(userId);
     }
 
     @Override
@@ -168,7 +190,7 @@ public class NotificationServiceImpl implements NotificationService {
         log.info("Notification {} marquée comme lue", notificationId);
     }
 
-    /*@Override
+    @Override
     public void markAllAsRead(Long userId) {
         log.info("Marquage de toutes les notifications comme lues pour l'utilisateur: {}", userId);
 
@@ -183,8 +205,9 @@ public class NotificationServiceImpl implements NotificationService {
                 LocalDateTime.now(),
                 NotificationStatus.NON_LU
         );
+        streamService.allRead(userId);
         log.info("Toutes les notifications de l'utilisateur {} ont été marquées comme lues", userId);
-    }*/
+    }
 
     @Override
     public void handleNotificationAction(NotificationActionDTO actionDTO) {
@@ -0,0 +1,268 @@
+package com.tunisia.commerce.service.impl;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.tunisia.commerce.entity.Notification;
+import com.tunisia.commerce.enums.NotificationStatus;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArraySet;
+
+/**
+ * Diffusion des notifications en temps réel (Server-Sent Events).
+ *
+ * Chaque création ou changement de statut d'une notification (voir NotificationListener)
+ * met à jour le compteur de non lues puis est publié sur un canal Redis : chaque instance
+ * reçoit le message et le transmet aux flux SSE ouverts localement par le destinataire.
+ * Le frontend n'interroge plus la base à intervalle régulier.
+ *
+ * EventSource ne peut pas envoyer l'en-tête Authorization : le client obtient d'abord, avec son
+ * token, un ticket d'accès à usage unique et de courte durée, puis ouvre le flux avec ce ticket.
+ * Les tickets sont tenus dans Redis pour être utilisables depuis n'importe quelle instance.
+ */
+@Slf4j
+@Service
+public class NotificationStreamService implements MessageListener {
+
+    private static final String CHANNEL = "notifications:events";
+    private static final String TICKET_PREFIX = "notifications:stream-ticket:";
+    static final String EVENT_NOTIFICATION = "notification";
+    static final String EVENT_UNREAD_COUNT = "unread-count";
+
+    private final StringRedisTemplate redisTemplate;
+    private final RedisMessageListenerContainer listenerContainer;
+    private final NotificationUnreadCounter unreadCounter;
+    private final long emitterTimeoutMs;
+    private final Duration ticketTtl;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    // Flux ouverts sur cette instance, par destinataire (plusieurs onglets possibles)
+    private final Map<Long, Set<SseEmitter>> emitters = new ConcurrentHashMap<>();
+
+    public NotificationStreamService(StringRedisTemplate redisTemplate,
+                                     RedisMessageListenerContainer listenerContainer,
+                                     NotificationUnreadCounter unreadCounter,
+                                     @Value("${app.notifications.sse-timeout-ms:1800000}") long emitterTimeoutMs,
+                                     @Value("${app.notifications.stream-ticket-ttl-seconds:30}") long ticketTtlSeconds) {
+        this.redisTemplate = redisTemplate;
+        this.listenerContainer = listenerContainer;
+        this.unreadCounter = unreadCounter;
+        this.emitterTimeoutMs = emitterTimeoutMs;
+        this.ticketTtl = Duration.ofSeconds(ticketTtlSeconds);
+    }
+
+    @PostConstruct
+    public void subscribe() {
+        listenerContainer.addMessageListener(this, new ChannelTopic(CHANNEL));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        emitters.values().forEach(userEmitters -> userEmitters.forEach(SseEmitter::complete));
+        emitters.clear();
+    }
+
+    // ==================== TICKETS D'ACCÈS ====================
+
+    /**
+     * Délivre à l'utilisateur authentifié un ticket d'ouverture de flux.
+     */
+    public StreamTicket issueTicket(Long userId) {
+        String ticket = UUID.randomUUID().toString();
+        redisTemplate.opsForValue().set(TICKET_PREFIX + ticket, String.valueOf(userId), ticketTtl);
+        return new StreamTicket(ticket, ticketTtl.toSeconds());
+    }
+
+    /**
+     * Consomme le ticket et renvoie l'utilisateur auquel il a été délivré,
+     * null s'il est inconnu, expiré ou déjà utilisé.
+     */
+    public Long redeemTicket(String ticket) {
+        if (ticket == null || ticket.isBlank()) {
+            return null;
+        }
+        String userId = redisTemplate.opsForValue().getAndDelete(TICKET_PREFIX + ticket);
+        return userId != null ? Long.valueOf(userId) : null;
+    }
+
+    public record StreamTicket(String ticket, long expiresIn) {
+    }
+
+    // ==================== FLUX SSE ====================
+
+    /**
+     * Ouvre un flux pour l'utilisateur ; le premier événement porte le nombre de notifications non lues.
+     */
+    public SseEmitter openStream(Long userId) {
+        SseEmitter emitter = createEmitter();
+        emitters.computeIfAbsent(userId, id -> new CopyOnWriteArraySet<>()).add(emitter);
+
+        emitter.onCompletion(() -> removeEmitter(userId, emitter));
+        emitter.onTimeout(() -> removeEmitter(userId, emitter));
+        emitter.onError(e -> removeEmitter(userId, emitter));
+
+        send(userId, emitter, EVENT_UNREAD_COUNT, Map.of("count", unreadCounter.get(userId)));
+        return emitter;
+    }
+
+    /**
+     * Commentaire SSE périodique : maintient les connexions à travers les proxys
+     * et libère les flux dont le client est parti.
+     */
+    @Scheduled(fixedDelayString = "${app.notifications.heartbeat-ms:25000}")
+    public void heartbeat() {
+        emitters.forEach((userId, userEmitters) -> userEmitters.forEach(emitter -> {
+            try {
+                emitter.send(SseEmitter.event().comment("ping"));
+            } catch (Exception e) {
+                removeEmitter(userId, emitter);
+            }
+        }));
+    }
+
+    SseEmitter createEmitter() {
+        return new SseEmitter(emitterTimeoutMs);
+    }
+
+    private void removeEmitter(Long userId, SseEmitter emitter) {
+        emitters.computeIfPresent(userId, (id, userEmitters) -> {
+            userEmitters.remove(emitter);
+            return userEmitters.isEmpty() ? null : userEmitters;
+        });
+    }
+
+    // ==================== ÉVÉNEMENTS ====================
+
+    /**
+     * Nouvelle notification : compteur et diffusion après validation de la transaction.
+     */
+    public void notificationCreated(Notification notification) {
+        if (notification.getReceiver() == null) {
+            return;
+        }
+        Long receiverId = notification.getReceiver().getId();
+        boolean unread = notification.getStatus() == NotificationStatus.NON_LU;
+        // Résumé construit maintenant : les associations ne sont plus chargeables après la transaction
+        Map<String, Object> summary = summarize(notification);
+
+        afterCommit(() -> {
+            long count = unread ? unreadCounter.adjust(receiverId, 1) : unreadCounter.get(receiverId);
+            Map<String, Object> data = new HashMap<>();
+            data.put("notification", summary);
+            data.put("unreadCount", count);
+            publish(receiverId, EVENT_NOTIFICATION, data);
+        });
+    }
+
+    public void statusChanged(Long receiverId, NotificationStatus before, NotificationStatus after) {
+        int delta = (after == NotificationStatus.NON_LU ? 1 : 0) - (before == NotificationStatus.NON_LU ? 1 : 0);
+        if (delta == 0) {
+            return;
+        }
+        afterCommit(() -> publish(receiverId, EVENT_UNREAD_COUNT,
+                Map.of("count", unreadCounter.adjust(receiverId, delta))));
+    }
+
+    public void allRead(Long userId) {
+        afterCommit(() -> {
+            unreadCounter.reset(userId);
+            publish(userId, EVENT_UNREAD_COUNT, Map.of("count", 0L));
+        });
+    }
+
+    private Map<String, Object> summarize(Notification notification) {
+        Map<String, Object> summary = new HashMap<>();
+        summary.put("id", notification.getId());
+        summary.put("senderId", notification.getSender() != null ? notification.getSender().getId() : null);
+        summary.put("title", notification.getTitle());
+        summary.put("notificationType", notification.getNotificationType());
+        summary.put("status", notification.getStatus());
+        summary.put("action", notification.getAction());
+        summary.put("createdAt", notification.getCreatedAt() != null ? notification.getCreatedAt().toString() : null);
+        summary.put("targetEntityType", notification.getTargetEntityType());
+        summary.put("targetEntityId", notification.getTargetEntityId());
+        summary.put("isUnread", notification.getStatus() == NotificationStatus.NON_LU);
+        return summary;
+    }
+
+    private void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    runQuietly(action);
+                }
+            });
+        } else {
+            runQuietly(action);
+        }
+    }
+
+    private void runQuietly(Runnable action) {
+        try {
+            action.run();
+        } catch (Exception e) {
+            log.warn("Diffusion de notification impossible: {}", e.getMessage());
+        }
+    }
+
+    // ==================== PUB/SUB ====================
+
+    private void publish(Long userId, String event, Map<String, Object> data) {
+        Map<String, Object> message = Map.of("userId", userId, "event", event, "data", data);
+        try {
+            redisTemplate.convertAndSend(CHANNEL, objectMapper.writeValueAsString(message));
+        } catch (Exception e) {
+            // Redis indisponible : au moins les flux de cette instance
+            log.warn("Publication Redis impossible, diffusion locale uniquement: {}", e.getMessage());
+            deliver(userId, event, data);
+        }
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        try {
+            Map<String, Object> payload = objectMapper.readValue(
+                    new String(message.getBody(), StandardCharsets.UTF_8), new TypeReference<>() {});
+            Long userId = ((Number) payload.get("userId")).longValue();
+            if (emitters.containsKey(userId)) {
+                deliver(userId, (String) payload.get("event"), payload.get("data"));
+            }
+        } catch (Exception e) {
+            log.warn("Message de notification illisible: {}", e.getMessage());
+        }
+    }
+
+    private void deliver(Long userId, String event, Object data) {
+        Set<SseEmitter> userEmitters = emitters.get(userId);
+        if (userEmitters == null) {
+            return;
+        }
+        userEmitters.forEach(emitter -> send(userId, emitter, event, data));
+    }
+
+    private void send(Long userId, SseEmitter emitter, String event, Object data) {
+        try {
+            emitter.send(SseEmitter.event().name(event).data(data));
+        } catch (Exception e) {
+            removeEmitter(userId, emitter);
+        }
+    }
+}
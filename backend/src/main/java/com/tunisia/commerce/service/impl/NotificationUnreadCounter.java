@@ -0,0 +1,100 @@
+package com.tunisia.commerce.service.impl;
+
+import com.tunisia.commerce.enums.NotificationStatus;
+import com.tunisia.commerce.repository.NotificationRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Compteurs de notifications non lues, tenus dans Redis par incréments atomiques.
+ *
+ * Un compteur absent est chargé depuis la base à la première lecture ; il expire ensuite
+ * au bout de {@code app.notifications.unread-ttl-minutes}, ce qui corrige tout écart éventuel.
+ * Si Redis est indisponible, la lecture retombe sur le comptage en base.
+ */
+@Slf4j
+@Service
+public class NotificationUnreadCounter {
+
+    private static final String KEY_PREFIX = "notifications:unread:";
+
+    // Incrément seulement si le compteur est déjà chargé ; un compteur négatif (écart) est supprimé
+    private static final DefaultRedisScript<Long> ADJUST_IF_PRESENT = new DefaultRedisScript<>(
+            "if redis.call('EXISTS', KEYS[1]) == 0 then return nil end " +
+            "local value = redis.call('INCRBY', KEYS[1], ARGV[1]) " +
+            "if value < 0 then redis.call('DEL', KEYS[1]) return nil end " +
+            "return value", Long.class);
+
+    private final StringRedisTemplate redisTemplate;
+    private final NotificationRepository notificationRepository;
+    private final Duration ttl;
+
+    public NotificationUnreadCounter(StringRedisTemplate redisTemplate,
+                                     NotificationRepository notificationRepository,
+                                     @Value("${app.notifications.unread-ttl-minutes:60}") long ttlMinutes) {
+        this.redisTemplate = redisTemplate;
+        this.notificationRepository = notificationRepository;
+        this.ttl = Duration.ofMinutes(ttlMinutes);
+    }
+
+    public long get(Long userId) {
+        try {
+            String value = redisTemplate.opsForValue().get(key(userId));
+            if (value != null) {
+                return Long.parseLong(value);
+            }
+        } catch (Exception e) {
+            log.warn("Compteur de notifications indisponible pour {}: {}", userId, e.getMessage());
+            return countInDatabase(userId);
+        }
+        return load(userId);
+    }
+
+    /**
+     * Applique une variation (appelé après validation de la transaction) et renvoie la nouvelle valeur.
+     */
+    public long adjust(Long userId, long delta) {
+        try {
+            Long value = redisTemplate.execute(ADJUST_IF_PRESENT, List.of(key(userId)), String.valueOf(delta));
+            if (value != null) {
+                return value;
+            }
+        } catch (Exception e) {
+            log.warn("Compteur de notifications non mis à jour pour {}: {}", userId, e.getMessage());
+            return countInDatabase(userId);
+        }
+        return load(userId);
+    }
+
+    public void reset(Long userId) {
+        try {
+            redisTemplate.opsForValue().set(key(userId), "0", ttl);
+        } catch (Exception e) {
+            log.warn("Compteur de notifications non réinitialisé pour {}: {}", userId, e.getMessage());
+        }
+    }
+
+    private long load(Long userId) {
+        long count = countInDatabase(userId);
+        try {
+            redisTemplate.opsForValue().setIfAbsent(key(userId), String.valueOf(count), ttl);
+        } catch (Exception e) {
+            log.warn("Compteur de notifications non enregistré pour {}: {}", userId, e.getMessage());
+        }
+        return count;
+    }
+
+    private long countInDatabase(Long userId) {
+        return notificationRepository.countByReceiverIdAndStatus(userId, NotificationStatus.NON_LU);
+    }
+
+    private static String key(Long userId) {
+        return KEY_PREFIX + userId;
+    }
+}
@@ -0,0 +1,122 @@
+package com.tunisia.commerce.service.impl;
+
+import com.stripe.exception.StripeException;
+import com.stripe.model.PaymentIntent;
+import com.stripe.model.PaymentIntentCollection;
+import com.tunisia.commerce.repository.PaymentLedgerRepository;
+import com.tunisia.commerce.service.StripeGateway;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Réconciliation du registre local avec l'historique Stripe, en arrière-plan.
+ *
+ * Une passe incrémentale fréquente relit les PaymentIntents récents (fenêtre de recouvrement
+ * pour rattraper les webhooks perdus) ; une passe complète quotidienne parcourt tout l'historique.
+ */
+@Slf4j
+@Service
+public class PaymentLedgerReconciliationService {
+
+    static final long PAGE_SIZE = 100L;
+
+    private final StripeGateway stripeGateway;
+    private final PaymentLedgerService ledgerService;
+    private final PaymentLedgerRepository ledgerRepository;
+
+    @Value("${app.payments.reconciliation-overlap-hours:72}")
+    private long overlapHours = 72;
+
+    private final AtomicBoolean running = new AtomicBoolean(false);
+
+    public PaymentLedgerReconciliationService(StripeGateway stripeGateway,
+                                              PaymentLedgerService ledgerService,
+                                              PaymentLedgerRepository ledgerRepository) {
+        this.stripeGateway = stripeGateway;
+        this.ledgerService = ledgerService;
+        this.ledgerRepository = ledgerRepository;
+    }
+
+    public record ReconciliationResult(int pages, int synced, int failed, boolean complete) {
+    }
+
+    @Scheduled(fixedDelayString = "${app.payments.reconciliation-interval-ms:900000}",
+            initialDelayString = "${app.payments.reconciliation-initial-delay-ms:60000}")
+    public void reconcileRecent() {
+        LocalDateTime latest = ledgerRepository.findLatestCreatedAt();
+        // Registre vide : premier import de tout l'historique
+        Long createdFrom = latest != null
+                ? latest.minusHours(overlapHours).atZone(ZoneId.systemDefault()).toEpochSecond()
+                : null;
+        reconcile(createdFrom);
+    }
+
+    @Scheduled(cron = "${app.payments.full-reconciliation-cron:0 30 3 * * *}")
+    public void reconcileFullHistory() {
+        reconcile(null);
+    }
+
+    /**
+     * Parcourt les PaymentIntents créés depuis {@code createdFrom} (tout l'historique si null),
+     * page par page, et les enregistre. Une seule passe à la fois.
+     */
+    public ReconciliationResult reconcile(Long createdFrom) {
+        if (!running.compareAndSet(false, true)) {
+            log.info("Réconciliation des paiements déjà en cours, passe ignorée");
+            return new ReconciliationResult(0, 0, 0, false);
+        }
+
+        long start = System.currentTimeMillis();
+        int pages = 0;
+        int synced = 0;
+        int failed = 0;
+        boolean complete = false;
+        try {
+            String startingAfter = null;
+            while (true) {
+                // Horodatage de lecture : un webhook plus récent déjà appliqué l'emporte
+                long observedAt = Instant.now().getEpochSecond();
+                PaymentIntentCollection page = stripeGateway.listPaymentIntents(createdFrom, startingAfter, PAGE_SIZE);
+                List<PaymentIntent> data = page.getData();
+                if (data == null || data.isEmpty()) {
+                    complete = true;
+                    break;
+                }
+                pages++;
+
+                for (PaymentIntent paymentIntent : data) {
+                    try {
+                        ledgerService.recordPaymentIntent(paymentIntent, observedAt, PaymentLedgerService.SOURCE_RECONCILIATION);
+                        synced++;
+                    } catch (Exception e) {
+                        failed++;
+                        log.warn("Réconciliation de {} impossible: {}", paymentIntent.getId(), e.getMessage());
+                    }
+                }
+
+                if (!Boolean.TRUE.equals(page.getHasMore())) {
+                    complete = true;
+                    break;
+                }
+                startingAfter = data.get(data.size() - 1).getId();
+            }
+        } catch (StripeException e) {
+            log.error("❌ Réconciliation des paiements interrompue: {}", e.getMessage());
+        } finally {
+            running.set(false);
+        }
+
+        log.info("Réconciliation des paiements ({}) : {} page(s), {} synchronisé(s), {} échec(s) en {} ms",
+                createdFrom != null ? "incrémentale" : "complète", pages, synced, failed,
+                System.currentTimeMillis() - start);
+        return new ReconciliationResult(pages, synced, failed, complete);
+    }
+}
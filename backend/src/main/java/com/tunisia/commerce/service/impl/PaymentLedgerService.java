@@ -0,0 +1,378 @@
+package com.tunisia.commerce.service.impl;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.stripe.exception.StripeException;
+import com.stripe.model.Charge;
+import com.stripe.model.PaymentIntent;
+import com.tunisia.commerce.dto.payment.PaymentTransactionDTO;
+import com.tunisia.commerce.entity.ExportateurEtranger;
+import com.tunisia.commerce.entity.ImportateurTunisien;
+import com.tunisia.commerce.entity.PaymentLedgerEntry;
+import com.tunisia.commerce.entity.User;
+import com.tunisia.commerce.repository.DemandeEnregistrementRepository;
+import com.tunisia.commerce.repository.PaymentLedgerRepository;
+import com.tunisia.commerce.repository.UserRepository;
+import com.tunisia.commerce.service.StripeGateway;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * Registre local des paiements Stripe.
+ *
+ * Chaque PaymentIntent est recopié dans payment_ledger à partir des réponses de l'API
+ * (création, confirmation), des webhooks et de la réconciliation. Chaque écriture porte
+ * l'horodatage Stripe de l'information appliquée : une information plus ancienne que
+ * celle déjà enregistrée est ignorée, quel que soit l'ordre d'arrivée des événements ;
+ * à la même seconde, un statut ne recule pas (succeeded n'est pas remplacé par processing).
+ *
+ * Les écritures d'un même PaymentIntent (confirmation synchrone, worker des webhooks,
+ * réconciliation) sont sérialisées par un verrou sur sa ligne, pris avant la lecture : les
+ * statistiques pré-agrégées (PaymentStatsService) sont déplacées sous ce verrou, dans la
+ * même transaction.
+ */
+@Slf4j
+@Service
+public class PaymentLedgerService {
+
+    public static final String SOURCE_APPLICATION = "APPLICATION";
+    public static final String SOURCE_WEBHOOK = "WEBHOOK";
+    public static final String SOURCE_RECONCILIATION = "RECONCILIATION";
+
+    private static final int MAX_RESULTS = 1000;
+
+    // Horodatage de la ligne réservée par PaymentLedgerRepository.reserve, pas encore écrite
+    private static final long RESERVED = -1L;
+
+    // Ordre de progression d'un PaymentIntent : départage deux informations de la même seconde
+    private static final List<String> STATUS_PROGRESSION = List.of(
+            "requires_payment_method", "requires_confirmation", "requires_action",
+            "processing", "requires_capture", "canceled", "succeeded");
+
+    private final PaymentLedgerRepository ledgerRepository;
+    private final DemandeEnregistrementRepository demandeRepository;
+    private final UserRepository userRepository;
+    private final StripeGateway stripeGateway;
+    private final PaymentStatsService paymentStatsService;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    public PaymentLedgerService(PaymentLedgerRepository ledgerRepository,
+                                DemandeEnregistrementRepository demandeRepository,
+                                UserRepository userRepository,
+                                StripeGateway stripeGateway,
+                                PaymentStatsService paymentStatsService) {
+        this.ledgerRepository = ledgerRepository;
+        this.demandeRepository = demandeRepository;
+        this.userRepository = userRepository;
+        this.stripeGateway = stripeGateway;
+        this.paymentStatsService = paymentStatsService;
+    }
+
+    // ==================== ÉCRITURE ====================
+
+    /**
+     * Enregistre l'état d'un PaymentIntent observé à {@code observedAt} (epoch secondes).
+     * Transaction propre : un échec du registre n'annule pas le traitement du paiement.
+     */
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    public PaymentLedgerEntry recordPaymentIntent(PaymentIntent paymentIntent, long observedAt, String source) {
+        PaymentLedgerEntry entry = lockOrReserve(paymentIntent.getId());
+        String status = normalize(paymentIntent.getStatus());
+        if (isStale(entry, observedAt, status)) {
+            log.debug("Information Stripe périmée ignorée pour {} ({} {} <= {} {})",
+                    paymentIntent.getId(), observedAt, status, entry.getStripeUpdatedAt(), entry.getStatus());
+            return entry;
+        }
+        PaymentStatsService.Bucket before = isReserved(entry) ? null : PaymentStatsService.Bucket.of(entry);
+
+        Map<String, String> metadata = paymentIntent.getMetadata() != null
+                ? paymentIntent.getMetadata() : Map.of();
+
+        entry.setAmountMinor(paymentIntent.getAmount() != null ? paymentIntent.getAmount() : 0L);
+        entry.setCurrency(paymentIntent.getCurrency());
+        entry.setStatus(status);
+        entry.setDescription(paymentIntent.getDescription());
+        entry.setCustomerEmail(paymentIntent.getReceiptEmail() != null
+                ? paymentIntent.getReceiptEmail() : metadata.get("email"));
+        entry.setMetadata(writeMetadata(metadata));
+        entry.setCreatedAt(toLocalDateTime(paymentIntent.getCreated()));
+        entry.setStripeUpdatedAt(observedAt);
+        entry.setSource(source);
+
+        applyOwner(entry, parseId(metadata.get("demandeId")), parseId(metadata.get("userId")));
+
+        Charge charge = paymentIntent.getLatestChargeObject();
+        if (charge != null) {
+            applyCharge(entry, charge);
+        } else if (paymentIntent.getLatestCharge() != null) {
+            entry.setChargeId(paymentIntent.getLatestCharge());
+        }
+
+        PaymentLedgerEntry saved = ledgerRepository.save(entry);
+        paymentStatsService.apply(before, PaymentStatsService.Bucket.of(saved));
+        return saved;
+    }
+
+    /**
+     * Complète le registre avec les détails d'une charge (moyen de paiement, carte, échec).
+     * Si l'événement de charge précède celui du PaymentIntent, le PaymentIntent est relu chez Stripe.
+     *
+     * Une charge plus ancienne que l'état enregistré est ignorée, comme un échec de charge de
+     * la même seconde qu'un paiement réussi. Une charge ne fait pas avancer l'horodatage du
+     * registre : elle n'apporte pas le statut du PaymentIntent.
+     */
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    public void recordCharge(Charge charge, long observedAt) {
+        String paymentIntentId = charge.getPaymentIntent();
+        if (paymentIntentId == null) {
+            return;
+        }
+
+        Optional<PaymentLedgerEntry> existing = ledgerRepository.lockByPaymentIntentId(paymentIntentId);
+        if (existing.isPresent()) {
+            PaymentLedgerEntry entry = existing.get();
+            if (isStale(entry, observedAt, Boolean.FALSE.equals(charge.getPaid()) ? "requires_payment_method" : null)) {
+                log.debug("Charge périmée ignorée pour {} ({} <= {})",
+                        paymentIntentId, observedAt, entry.getStripeUpdatedAt());
+                return;
+            }
+            PaymentStatsService.Bucket before = PaymentStatsService.Bucket.of(entry);
+            applyCharge(entry, charge);
+            PaymentLedgerEntry saved = ledgerRepository.save(entry);
+            paymentStatsService.apply(before, PaymentStatsService.Bucket.of(saved));
+            return;
+        }
+
+        try {
+            recordPaymentIntent(stripeGateway.retrievePaymentIntent(paymentIntentId), observedAt, SOURCE_WEBHOOK);
+        } catch (StripeException e) {
+            log.warn("PaymentIntent {} introuvable pour la charge {}: {}", paymentIntentId, charge.getId(), e.getMessage());
+        }
+    }
+
+    /**
+     * Ligne du PaymentIntent verrouillée jusqu'à la fin de la transaction, réservée si elle n'existe pas.
+     */
+    private PaymentLedgerEntry lockOrReserve(String paymentIntentId) {
+        Optional<PaymentLedgerEntry> entry = ledgerRepository.lockByPaymentIntentId(paymentIntentId);
+        if (entry.isPresent()) {
+            return entry.get();
+        }
+        ledgerRepository.reserve(paymentIntentId);
+        return ledgerRepository.lockByPaymentIntentId(paymentIntentId)
+                .orElseThrow(() -> new IllegalStateException("Ligne du registre introuvable après réservation: " + paymentIntentId));
+    }
+
+    private static boolean isReserved(PaymentLedgerEntry entry) {
+        return entry.getStripeUpdatedAt() == null || entry.getStripeUpdatedAt() == RESERVED;
+    }
+
+    /**
+     * Information plus ancienne que l'état enregistré, ou de la même seconde avec un statut
+     * moins avancé ({@code status} null : information sans statut, jamais en recul).
+     */
+    private static boolean isStale(PaymentLedgerEntry entry, long observedAt, String status) {
+        if (isReserved(entry)) {
+            return false;
+        }
+        long recordedAt = entry.getStripeUpdatedAt();
+        if (recordedAt != observedAt) {
+            return recordedAt > observedAt;
+        }
+        return status != null && progression(status) < progression(entry.getStatus());
+    }
+
+    private static int progression(String status) {
+        return STATUS_PROGRESSION.indexOf(status);
+    }
+
+    private void applyOwner(PaymentLedgerEntry entry, Long demandeId, Long userId) {
+        // Référence et nom résolus une seule fois, à l'écriture : aucune jointure à la lecture
+        if (demandeId != null && (!demandeId.equals(entry.getDemandeId()) || entry.getDemandeReference() == null)) {
+            entry.setDemandeId(demandeId);
+            demandeRepository.findById(demandeId).ifPresent(demande -> entry.setDemandeReference(demande.getReference()));
+        }
+        if (userId != null && (!userId.equals(entry.getUserId()) || entry.getCustomerName() == null)) {
+            entry.setUserId(userId);
+            userRepository.findById(userId).ifPresent(user -> {
+                entry.setUserRole(user.getRole().name());
+                entry.setCustomerName(displayName(user));
+            });
+        }
+    }
+
+    private void applyCharge(PaymentLedgerEntry entry, Charge charge) {
+        entry.setChargeId(charge.getId());
+
+        if (Boolean.TRUE.equals(charge.getPaid()) && charge.getCreated() != null) {
+            entry.setPaidAt(toLocalDateTime(charge.getCreated()));
+        }
+
+        if (charge.getPaymentMethodDetails() != null) {
+            entry.setPaymentMethodType(normalize(charge.getPaymentMethodDetails().getType()));
+            if (charge.getPaymentMethodDetails().getCard() != null) {
+                entry.setCardBrand(charge.getPaymentMethodDetails().getCard().getBrand());
+                entry.setCardLast4(charge.getPaymentMethodDetails().getCard().getLast4());
+            }
+        }
+
+        if (charge.getFailureCode() != null && !charge.getFailureCode().isEmpty()) {
+            entry.setFailureCode(charge.getFailureCode());
+            entry.setFailureMessage(charge.getFailureMessage());
+        }
+    }
+
+    // ==================== CONSULTATION ====================
+
+    @Transactional(readOnly = true)
+    public List<PaymentTransactionDTO> findAll(int limit, String status) {
+        PageRequest page = PageRequest.of(0, clampLimit(limit));
+        List<PaymentLedgerEntry> entries = status != null && !status.isEmpty()
+                ? ledgerRepository.findByStatusOrderByCreatedAtDesc(normalize(status), page)
+                : ledgerRepository.findAllByOrderByCreatedAtDesc(page);
+        return toDTOs(entries);
+    }
+
+    @Transactional(readOnly = true)
+    public List<PaymentTransactionDTO> findByUser(Long userId) {
+        return toDTOs(ledgerRepository.findByUserIdOrderByCreatedAtDesc(userId));
+    }
+
+    @Transactional(readOnly = true)
+    public PaymentTransactionDTO findByDemande(Long demandeId) {
+        return ledgerRepository.findFirstByDemandeIdOrderByCreatedAtDesc(demandeId)
+                .map(this::toDTO)
+                .orElse(null);
+    }
+
+    @Transactional(readOnly = true)
+    public List<PaymentTransactionDTO> findWithFilters(LocalDateTime startDate,
+                                                       LocalDateTime endDate,
+                                                       String status,
+                                                       String paymentMethodType,
+                                                       Integer limit) {
+        return toDTOs(ledgerRepository.findWithFilters(
+                startDate,
+                endDate,
+                status != null && !status.isEmpty() ? normalize(status) : null,
+                paymentMethodType != null && !paymentMethodType.isEmpty() ? normalize(paymentMethodType) : null,
+                PageRequest.of(0, clampLimit(limit != null ? limit : 100))));
+    }
+
+    // ==================== MAPPING ====================
+
+    private List<PaymentTransactionDTO> toDTOs(List<PaymentLedgerEntry> entries) {
+        return entries.stream().map(this::toDTO).collect(Collectors.toList());
+    }
+
+    public PaymentTransactionDTO toDTO(PaymentLedgerEntry entry) {
+        return PaymentTransactionDTO.builder()
+                .paymentIntentId(entry.getPaymentIntentId())
+                .transactionId(entry.getPaymentIntentId())
+                .chargeId(entry.getChargeId())
+                .amount(entry.getAmountMinor() / 100.0)
+                .currency(entry.getCurrency())
+                .status(entry.getStatus())
+                .description(entry.getDescription())
+                .customerEmail(entry.getCustomerEmail())
+                .customerName(entry.getCustomerName())
+                .paymentMethod(paymentMethodLabel(entry.getPaymentMethodType()))
+                .paymentMethodType(entry.getPaymentMethodType())
+                .cardBrand(entry.getCardBrand())
+                .cardLast4(entry.getCardLast4())
+                .failureCode(entry.getFailureCode())
+                .failureMessage(entry.getFailureMessage())
+                .created(entry.getCreatedAt())
+                .paidAt(entry.getPaidAt())
+                .demandeReference(entry.getDemandeReference())
+                .demandeId(entry.getDemandeId())
+                .userRole(entry.getUserRole())
+                .userId(entry.getUserId())
+                .metadata(readMetadata(entry.getMetadata()))
+                .build();
+    }
+
+    private String paymentMethodLabel(String paymentMethodType) {
+        if (paymentMethodType == null) {
+            return null;
+        }
+        switch (paymentMethodType) {
+            case "card":
+                return "Carte Bancaire";
+            case "link":
+                return "Link (Stripe)";
+            case "cashapp":
+                return "Cash App";
+            default:
+                return paymentMethodType;
+        }
+    }
+
+    private String displayName(User user) {
+        if (user instanceof ExportateurEtranger) {
+            ExportateurEtranger exportateur = (ExportateurEtranger) user;
+            return exportateur.getRaisonSociale() != null ?
+                    exportateur.getRaisonSociale() : exportateur.getNom() + " " + exportateur.getPrenom();
+        } else if (user instanceof ImportateurTunisien) {
+            ImportateurTunisien importateur = (ImportateurTunisien) user;
+            return importateur.getRaisonSociale() != null ?
+                    importateur.getRaisonSociale() : importateur.getNom() + " " + importateur.getPrenom();
+        }
+        return user.getEmail();
+    }
+
+    private String writeMetadata(Map<String, String> metadata) {
+        try {
+            return objectMapper.writeValueAsString(metadata);
+        } catch (Exception e) {
+            log.warn("Métadonnées Stripe non sérialisables: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    private Map<String, String> readMetadata(String json) {
+        if (json == null || json.isEmpty()) {
+            return Map.of();
+        }
+        try {
+            return objectMapper.readValue(json, new TypeReference<Map<String, String>>() {});
+        } catch (Exception e) {
+            log.warn("Métadonnées illisibles dans le registre des paiements: {}", e.getMessage());
+            return Map.of();
+        }
+    }
+
+    private static Long parseId(String value) {
+        if (value == null || value.isEmpty()) {
+            return null;
+        }
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static String normalize(String value) {
+        return value != null ? value.toLowerCase(Locale.ROOT) : null;
+    }
+
+    private static int clampLimit(int limit) {
+        return Math.max(1, Math.min(limit, MAX_RESULTS));
+    }
+
+    private static LocalDateTime toLocalDateTime(Long epochSeconds) {
+        return Instant.ofEpochSecond(epochSeconds != null ? epochSeconds : 0L)
+                .atZone(ZoneId.systemDefault())
+                .toLocalDateTime();
+    }
+}
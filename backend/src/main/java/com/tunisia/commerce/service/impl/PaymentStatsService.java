@@ -0,0 +1,186 @@
+package com.tunisia.commerce.service.impl;
+
+import com.tunisia.commerce.entity.PaymentLedgerEntry;
+import com.tunisia.commerce.entity.PaymentStatsRollup;
+import com.tunisia.commerce.repository.PaymentLedgerRepository;
+import com.tunisia.commerce.repository.PaymentStatsRollupRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDate;
+import java.util.*;
+
+/**
+ * Statistiques de paiement pré-agrégées (par jour et sur tout l'historique), tenues à jour
+ * à chaque écriture du registre local des paiements, dans la même transaction.
+ *
+ * Une demande de statistiques lit les seules lignes TOTAL (quelques dizaines au plus) :
+ * aucun appel à Stripe, coût indépendant du nombre de paiements.
+ */
+@Slf4j
+@Service
+public class PaymentStatsService {
+
+    private static final Set<String> FAILED_STATUSES = Set.of("requires_payment_method", "canceled");
+
+    private final PaymentStatsRollupRepository rollupRepository;
+    private final PaymentLedgerRepository ledgerRepository;
+
+    public PaymentStatsService(PaymentStatsRollupRepository rollupRepository,
+                               PaymentLedgerRepository ledgerRepository) {
+        this.rollupRepository = rollupRepository;
+        this.ledgerRepository = ledgerRepository;
+    }
+
+    /**
+     * Agrégat auquel contribue un paiement du registre.
+     */
+    public record Bucket(LocalDate day, String status, String paymentMethodType, String currency, long amountMinor) {
+
+        public static Bucket of(PaymentLedgerEntry entry) {
+            return new Bucket(
+                    entry.getCreatedAt().toLocalDate(),
+                    entry.getStatus(),
+                    entry.getPaymentMethodType() != null ? entry.getPaymentMethodType() : "",
+                    entry.getCurrency() != null ? entry.getCurrency().toLowerCase(Locale.ROOT) : "",
+                    entry.getAmountMinor() != null ? entry.getAmountMinor() : 0L);
+        }
+    }
+
+    // ==================== MISE À JOUR ====================
+
+    /**
+     * Déplace un paiement de l'agrégat {@code before} (null pour un nouveau paiement) vers {@code after}.
+     * {@code before} doit avoir été lu sous le verrou de la ligne du registre (PaymentLedgerService) :
+     * deux écrivains partant du même état appliqueraient deux fois le même déplacement.
+     */
+    @Transactional
+    public void apply(Bucket before, Bucket after) {
+        if (Objects.equals(before, after)) {
+            return;
+        }
+        if (before != null) {
+            add(before, -1L, -before.amountMinor());
+        }
+        if (after != null) {
+            add(after, 1L, after.amountMinor());
+        }
+    }
+
+    private void add(Bucket bucket, long countDelta, long amountDelta) {
+        rollupRepository.increment(bucket.day().toString(), bucket.status(), bucket.paymentMethodType(),
+                bucket.currency(), countDelta, amountDelta);
+        rollupRepository.increment(PaymentStatsRollup.BUCKET_TOTAL, bucket.status(), bucket.paymentMethodType(),
+                bucket.currency(), countDelta, amountDelta);
+    }
+
+    /**
+     * Au démarrage : construit les agrégats si le registre contient déjà des paiements
+     * (registre alimenté avant l'introduction des agrégats).
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional
+    public void rebuildIfEmpty() {
+        try {
+            if (rollupRepository.count() == 0 && ledgerRepository.count() > 0) {
+                rebuildRollups();
+            }
+        } catch (Exception e) {
+            log.error("❌ Erreur lors de la construction des statistiques de paiement: {}", e.getMessage(), e);
+        }
+    }
+
+    @Transactional
+    public void rebuild() {
+        rebuildRollups();
+    }
+
+    private void rebuildRollups() {
+        long start = System.currentTimeMillis();
+        rollupRepository.deleteAllRows();
+        rollupRepository.rebuildDailyFromLedger();
+        rollupRepository.rebuildTotalsFromDaily();
+        log.info("✅ Statistiques de paiement reconstruites depuis le registre en {} ms",
+                System.currentTimeMillis() - start);
+    }
+
+    // ==================== CONSULTATION ====================
+
+    @Transactional(readOnly = true)
+    public Map<String, Object> getStatistics() {
+        long totalTransactions = 0;
+        long succeededTransactions = 0;
+        long failedTransactions = 0;
+        long totalAmountMinor = 0;
+        long succeededAmountMinor = 0;
+        Map<String, Long> paymentMethodStats = new HashMap<>();
+        Map<String, Long> statusStats = new HashMap<>();
+        Map<String, Double> amountByCurrency = new TreeMap<>();
+
+        for (PaymentStatsRollup row : rollupRepository.findByBucket(PaymentStatsRollup.BUCKET_TOTAL)) {
+            long count = row.getTxCount();
+            if (count <= 0) {
+                continue;
+            }
+            totalTransactions += count;
+            totalAmountMinor += row.getAmountMinor();
+            statusStats.merge(row.getStatus(), count, Long::sum);
+            if (!row.getPaymentMethodType().isEmpty()) {
+                paymentMethodStats.merge(row.getPaymentMethodType(), count, Long::sum);
+            }
+            if (!row.getCurrency().isEmpty()) {
+                amountByCurrency.merge(row.getCurrency(), row.getAmountMinor() / 100.0, Double::sum);
+            }
+
+            if ("succeeded".equals(row.getStatus())) {
+                succeededTransactions += count;
+                succeededAmountMinor += row.getAmountMinor();
+            } else if (FAILED_STATUSES.contains(row.getStatus())) {
+                failedTransactions += count;
+            }
+        }
+
+        double totalAmount = totalAmountMinor / 100.0;
+
+        Map<String, Object> statistics = new HashMap<>();
+        statistics.put("totalTransactions", totalTransactions);
+        statistics.put("succeededTransactions", succeededTransactions);
+        statistics.put("failedTransactions", failedTransactions);
+        statistics.put("successRate", totalTransactions > 0 ?
+                (succeededTransactions * 100.0 / totalTransactions) : 0);
+        statistics.put("totalAmount", totalAmount);
+        statistics.put("succeededAmount", succeededAmountMinor / 100.0);
+        statistics.put("averageAmount", totalTransactions > 0 ?
+                (totalAmount / totalTransactions) : 0);
+        statistics.put("paymentMethodStats", paymentMethodStats);
+        statistics.put("statusStats", statusStats);
+        statistics.put("amountByCurrency", amountByCurrency);
+        return statistics;
+    }
+
+    /**
+     * Agrégats journaliers entre deux dates incluses.
+     */
+    @Transactional(readOnly = true)
+    public List<Map<String, Object>> getDailyStatistics(LocalDate startDate, LocalDate endDate) {
+        List<Map<String, Object>> days = new ArrayList<>();
+        for (PaymentStatsRollup row : rollupRepository.findByBucketBetweenOrderByBucket(
+                startDate.toString(), endDate.toString())) {
+            if (row.getTxCount() <= 0) {
+                continue;
+            }
+            Map<String, Object> day = new HashMap<>();
+            day.put("date", row.getBucket());
+            day.put("status", row.getStatus());
+            day.put("paymentMethodType", row.getPaymentMethodType().isEmpty() ? null : row.getPaymentMethodType());
+            day.put("currency", row.getCurrency());
+            day.put("count", row.getTxCount());
+            day.put("amount", row.getAmountMinor() / 100.0);
+            days.add(day);
+        }
+        return days;
+    }
+}
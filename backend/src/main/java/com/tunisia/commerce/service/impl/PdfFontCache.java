@@ -0,0 +1,96 @@
+package com.tunisia.commerce.service.impl;
+
+import com.itextpdf.io.font.FontProgram;
+import com.itextpdf.io.font.FontProgramFactory;
+import com.itextpdf.io.font.PdfEncodings;
+import com.itextpdf.io.font.constants.StandardFonts;
+import com.itextpdf.kernel.font.PdfFont;
+import com.itextpdf.kernel.font.PdfFontFactory;
+import com.itextpdf.kernel.font.PdfFontFactory.EmbeddingStrategy;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Programmes de police partagés par tous les rendus PDF.
+ *
+ * Les fichiers de police sont lus et analysés une seule fois au démarrage. Un PdfFont
+ * ne peut pas être partagé entre documents : chaque rendu en crée un, à partir du programme
+ * en cache, sans relecture ni nouvelle analyse.
+ */
+@Component
+@Slf4j
+public class PdfFontCache {
+
+    // Placez NotoSansArabic-Regular.ttf dans src/main/resources/fonts/
+    // Téléchargement : https://fonts.google.com/noto/specimen/Noto+Sans+Arabic
+    private static final String ARABIC_FONT_RESOURCE = "/fonts/NotoSansArabic-Regular.ttf";
+    private static final String[] ARABIC_FONT_SYSTEM_PATHS = {
+            "/usr/share/fonts/truetype/noto/NotoSansArabic-Regular.ttf",
+            "C:/Windows/Fonts/arial.ttf"
+    };
+
+    private FontProgram helvetica;
+    private FontProgram helveticaBold;
+    private FontProgram helveticaOblique;
+    private FontProgram arabic;  // null si aucune police arabe n'est disponible
+
+    @PostConstruct
+    public void load() throws IOException {
+        long start = System.currentTimeMillis();
+        helvetica = FontProgramFactory.createFont(StandardFonts.HELVETICA);
+        helveticaBold = FontProgramFactory.createFont(StandardFonts.HELVETICA_BOLD);
+        helveticaOblique = FontProgramFactory.createFont(StandardFonts.HELVETICA_OBLIQUE);
+        arabic = loadArabicProgram();
+        log.info("Polices PDF chargées en {} ms (arabe: {})",
+                System.currentTimeMillis() - start, arabic != null ? "oui" : "non");
+    }
+
+    public PdfFont regular() throws IOException {
+        return PdfFontFactory.createFont(helvetica, PdfEncodings.WINANSI);
+    }
+
+    public PdfFont bold() throws IOException {
+        return PdfFontFactory.createFont(helveticaBold, PdfEncodings.WINANSI);
+    }
+
+    public PdfFont italic() throws IOException {
+        return PdfFontFactory.createFont(helveticaOblique, PdfEncodings.WINANSI);
+    }
+
+    /**
+     * Police arabe embarquée ; Helvetica si aucune police arabe n'a été trouvée au démarrage.
+     */
+    public PdfFont arabic() throws IOException {
+        if (arabic == null) {
+            return regular();
+        }
+        return PdfFontFactory.createFont(arabic, PdfEncodings.IDENTITY_H, EmbeddingStrategy.FORCE_EMBEDDED);
+    }
+
+    private FontProgram loadArabicProgram() {
+        // 1) Classpath embarqué (recommandé)
+        try (InputStream is = getClass().getResourceAsStream(ARABIC_FONT_RESOURCE)) {
+            if (is != null) {
+                return FontProgramFactory.createFont(is.readAllBytes());
+            }
+        } catch (Exception e) {
+            log.warn("Police arabe du classpath illisible: {}", e.getMessage());
+        }
+
+        // 2) Polices système (Linux, Windows)
+        for (String path : ARABIC_FONT_SYSTEM_PATHS) {
+            try {
+                return FontProgramFactory.createFont(path);
+            } catch (Exception ignored) {
+            }
+        }
+
+        // 3) Repli sans crash
+        log.warn("Police arabe introuvable — placez NotoSansArabic-Regular.ttf dans src/main/resources/fonts/");
+        return null;
+    }
+}
@@ -6,9 +6,11 @@ import com.google.genai.Client;
 import com.google.genai.types.Content;
 import com.google.genai.types.GenerateContentConfig;
 import com.google.genai.types.GenerateContentResponse;
+import com.google.genai.types.HttpOptions;
 import com.google.genai.types.Part;
 import com.tunisia.commerce.dto.validation.PredictiveDashboardDTO;
 import com.tunisia.commerce.entity.DemandeEnregistrement;
+import com.tunisia.commerce.observability.OutboundCallMetrics;
 import com.tunisia.commerce.repository.DemandeEnregistrementRepository;
 import jakarta.annotation.PostConstruct;
 import lombok.extern.slf4j.Slf4j;
@@ -30,12 +32,18 @@ public class PredictiveAnalyticsService {
     @Value("${gemini.model}")
     private String modelName;
 
+    @Value("${gemini.base-url:}")
+    private String baseUrl;
+
     private final DemandeEnregistrementRepository demandeRepository;
+    private final OutboundCallMetrics outboundCallMetrics;
     private Client geminiClient;
     private final ObjectMapper objectMapper = new ObjectMapper();
 
-    public PredictiveAnalyticsService(DemandeEnregistrementRepository demandeRepository) {
+    public PredictiveAnalyticsService(DemandeEnregistrementRepository demandeRepository,
+                                      OutboundCallMetrics outboundCallMetrics) {
         this.demandeRepository = demandeRepository;
+        this.outboundCallMetrics = outboundCallMetrics;
     }
 
     @PostConstruct
@@ -45,7 +53,11 @@ public class PredictiveAnalyticsService {
                 log.warn("⚠️ Gemini API key not configured. Using fallback mode.");
                 return;
             }
-            this.geminiClient = Client.builder().apiKey(apiKey).build();
+            Client.Builder builder = Client.builder().apiKey(apiKey);
+            if (!baseUrl.isBlank()) {
+                builder.httpOptions(HttpOptions.builder().baseUrl(baseUrl).build());
+            }
+            this.geminiClient = builder.build();
             log.info("✅ Gemini initialized for predictive analytics with model: {}", modelName);
         } catch (Exception e) {
             log.error("❌ Failed to initialize Gemini: {}", e.getMessage());
@@ -361,8 +373,8 @@ public class PredictiveAnalyticsService {
                     .maxOutputTokens(2048)
                     .build();
 
-            GenerateContentResponse response = geminiClient.models.generateContent(
-                    modelName, List.of(content), config);
+            GenerateContentResponse response = outboundCallMetrics.record("gemini", "analyse-predictive",
+                    () -> geminiClient.models.generateContent(modelName, List.of(content), config));
 
             return extractTextFromResponse(response);
 
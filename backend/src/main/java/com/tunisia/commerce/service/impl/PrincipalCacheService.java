@@ -0,0 +1,136 @@
+package com.tunisia.commerce.service.impl;
+
+import com.tunisia.commerce.enums.UserRole;
+import com.tunisia.commerce.enums.UserStatus;
+import com.tunisia.commerce.repository.UserRepository;
+import com.tunisia.commerce.security.AuthenticatedUser;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cache borné (LRU) des principaux authentifiés, indexé par email.
+ *
+ * Invalidé après validation de toute transaction modifiant ou supprimant un utilisateur
+ * (voir UserListener) et après les mises à jour natives du statut (verrouillage de compte).
+ * La durée de vie ({@code app.security.principal-cache.ttl-minutes}) n'est qu'un filet de sécurité.
+ */
+@Slf4j
+@Service
+public class PrincipalCacheService {
+
+    private final UserRepository userRepository;
+    private final long ttlMinutes;
+    private final Map<String, CachedPrincipal> cache;
+
+    // Un chargement commencé avant une invalidation n'est pas mis en cache
+    private final AtomicLong generation = new AtomicLong();
+
+    public PrincipalCacheService(UserRepository userRepository,
+                                 @Value("${app.security.principal-cache.max-entries:10000}") int maxEntries,
+                                 @Value("${app.security.principal-cache.ttl-minutes:15}") long ttlMinutes) {
+        this.userRepository = userRepository;
+        this.ttlMinutes = ttlMinutes;
+        this.cache = new LinkedHashMap<>(256, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedPrincipal> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    private static class CachedPrincipal {
+        private final AuthenticatedUser principal;
+        private final Instant cachedAt;
+
+        CachedPrincipal(AuthenticatedUser principal) {
+            this.principal = principal;
+            this.cachedAt = Instant.now();
+        }
+
+        boolean isExpired(long ttlMinutes) {
+            return Duration.between(cachedAt, Instant.now()).toMinutes() >= ttlMinutes;
+        }
+    }
+
+    // ==================== CACHE ====================
+
+    /**
+     * Principal de l'utilisateur {@code email}, ou null s'il n'existe pas.
+     */
+    public AuthenticatedUser resolve(String email) {
+        synchronized (cache) {
+            CachedPrincipal cached = cache.get(email);
+            if (cached != null && !cached.isExpired(ttlMinutes)) {
+                return cached.principal;
+            }
+        }
+
+        long loadGeneration = generation.get();
+        AuthenticatedUser principal = load(email);
+        if (principal != null) {
+            synchronized (cache) {
+                if (generation.get() == loadGeneration) {
+                    cache.put(email, new CachedPrincipal(principal));
+                }
+            }
+        }
+        return principal;
+    }
+
+    public void invalidate(Long userId, String email) {
+        generation.incrementAndGet();
+        synchronized (cache) {
+            if (email != null) {
+                cache.remove(email);
+            }
+            // L'email a pu changer : retirer aussi l'ancienne entrée du même utilisateur
+            if (userId != null) {
+                cache.values().removeIf(cached -> userId.equals(cached.principal.getId()));
+            }
+        }
+    }
+
+    /**
+     * Invalide immédiatement puis après la fin de la transaction courante (lectures pendant la transaction).
+     */
+    public void invalidateAfterCommit(Long userId, String email) {
+        invalidate(userId, email);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    invalidate(userId, email);
+                }
+            });
+        }
+    }
+
+    // ==================== CHARGEMENT ====================
+
+    private AuthenticatedUser load(String email) {
+        List<Object[]> rows = userRepository.findPrincipalByEmail(email);
+        if (rows.isEmpty()) {
+            log.debug("Aucun utilisateur pour le principal: {}", email);
+            return null;
+        }
+
+        Object[] row = rows.get(0);
+        return new AuthenticatedUser(
+                ((Number) row[0]).longValue(),
+                (String) row[1],
+                row[2] != null ? UserRole.valueOf((String) row[2]) : null,
+                (String) row[3],
+                row[4] != null ? UserStatus.valueOf((String) row[4]) : null
+        );
+    }
+}
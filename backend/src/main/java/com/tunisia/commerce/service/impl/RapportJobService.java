@@ -0,0 +1,359 @@
+package com.tunisia.commerce.service.impl;
+
+import com.tunisia.commerce.dto.importateur.RapportJobDTO;
+import com.tunisia.commerce.enums.RapportJobStatus;
+import com.tunisia.commerce.service.NotificationService;
+import com.tunisia.commerce.service.RapportPDFService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedOutputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+/**
+ * Génération asynchrone des rapports PDF importateur.
+ *
+ * Les demandes sont rendues par un pool borné ; une demande identique (même importateur)
+ * déjà en file ou en cours est réutilisée. Le PDF est stocké chiffré via SecureStorageService
+ * puis supprimé à expiration. Le client interroge l'état du job et reçoit une notification
+ * lorsque le rapport est prêt.
+ */
+@Service
+@Slf4j
+public class RapportJobService {
+
+    private static final String STORAGE_DIRECTORY = "rapports";
+
+    private final RapportPDFService rapportPDFService;
+    private final SecureStorageService secureStorageService;
+    private final NotificationService notificationService;
+
+    private final ThreadPoolExecutor executor;
+    private final long ttlMinutes;
+
+    private final Map<String, RapportJob> jobs = new ConcurrentHashMap<>();
+    // Job en file ou en cours par importateur (déduplication)
+    private final Map<Long, RapportJob> inFlight = new ConcurrentHashMap<>();
+
+    // Métriques
+    private final Timer queueWaitTimer;
+    private final Timer renderTimer;
+    private final Timer storeTimer;
+    private final Counter succeededCounter;
+    private final Counter failedCounter;
+    private final Counter deduplicatedCounter;
+
+    public RapportJobService(RapportPDFService rapportPDFService,
+                             SecureStorageService secureStorageService,
+                             NotificationService notificationService,
+                             MeterRegistry meterRegistry,
+                             @Value("${app.reports.workers:2}") int workers,
+                             @Value("${app.reports.queue-capacity:20}") int queueCapacity,
+                             @Value("${app.reports.ttl-minutes:60}") long ttlMinutes) {
+        this.rapportPDFService = rapportPDFService;
+        this.secureStorageService = secureStorageService;
+        this.notificationService = notificationService;
+        this.ttlMinutes = ttlMinutes;
+
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(workers, workers, 60L, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "rapport-worker-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+        new ExecutorServiceMetrics(executor, "rapports", Tags.empty()).bindTo(meterRegistry);
+
+        this.queueWaitTimer = Timer.builder("rapports.job.attente")
+                .description("Temps passé dans la file avant rendu")
+                .register(meterRegistry);
+        this.renderTimer = Timer.builder("rapports.job.rendu")
+                .description("Durée du rendu PDF")
+                .register(meterRegistry);
+        this.storeTimer = Timer.builder("rapports.job.stockage")
+                .description("Durée du chiffrement et du stockage")
+                .register(meterRegistry);
+        this.succeededCounter = Counter.builder("rapports.job.termines").register(meterRegistry);
+        this.failedCounter = Counter.builder("rapports.job.echecs").register(meterRegistry);
+        this.deduplicatedCounter = Counter.builder("rapports.job.dedupliques").register(meterRegistry);
+        Gauge.builder("rapports.job.file", executor, e -> e.getQueue().size())
+                .description("Jobs en attente de rendu")
+                .register(meterRegistry);
+    }
+
+    // ==================== MODÈLE ====================
+
+    /**
+     * Job de génération : état et durées par phase. Les champs sont écrits par le worker
+     * et lus par les requêtes de suivi.
+     */
+    public static final class RapportJob {
+        private final String id;
+        private final Long importateurId;
+        private final LocalDateTime submittedAt = LocalDateTime.now();
+        private final long submittedNanos = System.nanoTime();
+        private final CompletableFuture<RapportJob> completion = new CompletableFuture<>();
+
+        private volatile RapportJobStatus status = RapportJobStatus.EN_ATTENTE;
+        private volatile LocalDateTime startedAt;
+        private volatile LocalDateTime finishedAt;
+        private volatile String filePath;
+        private volatile String fileHash;
+        private volatile Long fileSize;
+        private volatile String error;
+        private volatile Long queueWaitMs;
+        private volatile Long renderMs;
+        private volatile Long storeMs;
+
+        RapportJob(String id, Long importateurId) {
+            this.id = id;
+            this.importateurId = importateurId;
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        public Long getImportateurId() {
+            return importateurId;
+        }
+
+        public RapportJobStatus getStatus() {
+            return status;
+        }
+
+        public CompletableFuture<RapportJob> getCompletion() {
+            return completion;
+        }
+
+        boolean isFinished() {
+            return status == RapportJobStatus.TERMINE
+                    || status == RapportJobStatus.ECHEC
+                    || status == RapportJobStatus.EXPIRE;
+        }
+    }
+
+    // ==================== SOUMISSION ====================
+
+    /**
+     * Soumet la génération du rapport d'un importateur ; renvoie le job déjà en cours s'il existe.
+     *
+     * @throws IllegalStateException si la file de génération est pleine
+     */
+    public RapportJob submit(Long importateurId) {
+        AtomicBoolean created = new AtomicBoolean(false);
+        RapportJob job = inFlight.compute(importateurId, (id, existing) -> {
+            if (existing != null && !existing.isFinished()) {
+                return existing;
+            }
+            created.set(true);
+            return new RapportJob(UUID.randomUUID().toString(), id);
+        });
+
+        if (!created.get()) {
+            deduplicatedCounter.increment();
+            log.info("Rapport déjà en cours pour importateur ID: {}, job {}", importateurId, job.id);
+            return job;
+        }
+
+        jobs.put(job.id, job);
+        try {
+            executor.execute(() -> render(job));
+        } catch (RejectedExecutionException e) {
+            jobs.remove(job.id);
+            inFlight.remove(importateurId, job);
+            throw new IllegalStateException("File de génération des rapports saturée, réessayez dans quelques instants");
+        }
+
+        log.info("Job rapport {} soumis pour importateur ID: {} (file: {})",
+                job.id, importateurId, executor.getQueue().size());
+        return job;
+    }
+
+    private void render(RapportJob job) {
+        long start = System.nanoTime();
+        job.startedAt = LocalDateTime.now();
+        job.status = RapportJobStatus.EN_COURS;
+        job.queueWaitMs = TimeUnit.NANOSECONDS.toMillis(start - job.submittedNanos);
+        queueWaitTimer.record(start - job.submittedNanos, TimeUnit.NANOSECONDS);
+
+        Path tempFile = null;
+        try {
+            // Rendu en flux vers un fichier temporaire, puis chiffrement en flux vers le stockage
+            tempFile = Files.createTempFile("rapport-", ".pdf");
+            try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(tempFile))) {
+                rapportPDFService.generateRapportPDF(job.importateurId, out);
+            }
+            long rendered = System.nanoTime();
+            job.renderMs = TimeUnit.NANOSECONDS.toMillis(rendered - start);
+            renderTimer.record(rendered - start, TimeUnit.NANOSECONDS);
+
+            SecureStorageService.StorageResult stored = secureStorageService.storeGeneratedFile(
+                    tempFile, STORAGE_DIRECTORY, "rapport_" + job.importateurId + "_" + job.id + ".pdf");
+            long storedAt = System.nanoTime();
+            job.storeMs = TimeUnit.NANOSECONDS.toMillis(storedAt - rendered);
+            storeTimer.record(storedAt - rendered, TimeUnit.NANOSECONDS);
+
+            job.filePath = stored.getFilePath();
+            job.fileHash = stored.getFileHash();
+            job.fileSize = stored.getFileSize();
+            job.finishedAt = LocalDateTime.now();
+            job.status = RapportJobStatus.TERMINE;
+            succeededCounter.increment();
+
+            log.info("✅ Rapport {} généré : {} bytes (attente {} ms, rendu {} ms, stockage {} ms)",
+                    job.id, job.fileSize, job.queueWaitMs, job.renderMs, job.storeMs);
+            notifyReady(job);
+        } catch (Exception e) {
+            job.error = e.getMessage();
+            job.finishedAt = LocalDateTime.now();
+            job.status = RapportJobStatus.ECHEC;
+            failedCounter.increment();
+            log.error("❌ Échec du job rapport {}: {}", job.id, e.getMessage(), e);
+        } finally {
+            if (tempFile != null) {
+                try {
+                    Files.deleteIfExists(tempFile);
+                } catch (Exception e) {
+                    log.warn("Suppression du fichier temporaire {} impossible: {}", tempFile, e.getMessage());
+                }
+            }
+            inFlight.remove(job.importateurId, job);
+            job.completion.complete(job);
+        }
+    }
+
+    private void notifyReady(RapportJob job) {
+        try {
+            notificationService.createSystemNotification(job.importateurId,
+                    "Votre rapport d'importation est prêt", "RAPPORT");
+        } catch (Exception e) {
+            log.warn("Notification du rapport {} impossible: {}", job.id, e.getMessage());
+        }
+    }
+
+    // ==================== SUIVI ====================
+
+    /**
+     * Job appartenant à l'importateur (un autre importateur ne peut pas le consulter).
+     */
+    public Optional<RapportJob> findJob(String jobId, Long importateurId) {
+        RapportJob job = jobs.get(jobId);
+        if (job == null || !job.importateurId.equals(importateurId)) {
+            return Optional.empty();
+        }
+        return Optional.of(job);
+    }
+
+    /**
+     * @throws IllegalStateException si le rapport du job n'est pas (ou plus) téléchargeable
+     */
+    public void ensureAvailable(RapportJob job) {
+        if (job.status != RapportJobStatus.TERMINE) {
+            throw new IllegalStateException("Rapport non disponible (statut: " + job.status + ")");
+        }
+    }
+
+    /**
+     * Écrit en flux le PDF déchiffré d'un job terminé.
+     */
+    public void writeResult(RapportJob job, OutputStream out) throws Exception {
+        ensureAvailable(job);
+        secureStorageService.copyDocument(Paths.get(job.filePath), job.fileHash, out);
+    }
+
+    public Long getResultSize(RapportJob job) {
+        return job.fileSize;
+    }
+
+    public RapportJobDTO toDTO(RapportJob job) {
+        return RapportJobDTO.builder()
+                .jobId(job.id)
+                .status(job.status)
+                .submittedAt(job.submittedAt)
+                .startedAt(job.startedAt)
+                .finishedAt(job.finishedAt)
+                .expiresAt(job.status == RapportJobStatus.TERMINE ? job.finishedAt.plusMinutes(ttlMinutes) : null)
+                .fileSize(job.fileSize)
+                .error(job.error)
+                .queueWaitMs(job.queueWaitMs)
+                .renderMs(job.renderMs)
+                .storeMs(job.storeMs)
+                .build();
+    }
+
+    // ==================== EXPIRATION ====================
+
+    @Scheduled(fixedDelayString = "${app.reports.cleanup-interval-ms:300000}")
+    public void purgeExpired() {
+        LocalDateTime limit = LocalDateTime.now().minusMinutes(ttlMinutes);
+        for (RapportJob job : jobs.values()) {
+            if (!job.isFinished() || job.finishedAt == null || job.finishedAt.isAfter(limit)) {
+                continue;
+            }
+            if (job.filePath != null) {
+                try {
+                    secureStorageService.secureDelete(Paths.get(job.filePath));
+                } catch (Exception e) {
+                    log.warn("Suppression du rapport {} impossible: {}", job.id, e.getMessage());
+                    continue;
+                }
+            }
+            job.status = RapportJobStatus.EXPIRE;
+            jobs.remove(job.id);
+        }
+    }
+
+    /**
+     * Les jobs ne survivent pas à un redémarrage : on supprime les rapports orphelins.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void purgeOrphans() {
+        try {
+            Path directory = secureStorageService.getGeneratedFilesPath(STORAGE_DIRECTORY);
+            if (!Files.isDirectory(directory)) {
+                return;
+            }
+            try (Stream<Path> files = Files.list(directory)) {
+                files.filter(Files::isRegularFile)
+                        .filter(path -> path.getFileName().toString().endsWith(".pdf"))
+                        .forEach(path -> {
+                            try {
+                                secureStorageService.secureDelete(path);
+                            } catch (Exception e) {
+                                log.warn("Suppression du rapport orphelin {} impossible: {}", path, e.getMessage());
+                            }
+                        });
+            }
+        } catch (Exception e) {
+            log.warn("Nettoyage des rapports orphelins impossible: {}", e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
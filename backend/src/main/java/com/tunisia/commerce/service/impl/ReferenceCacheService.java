@@ -0,0 +1,178 @@
+package com.tunisia.commerce.service.impl;
+
+import com.tunisia.commerce.cache.ReferenceCacheRegions;
+import com.tunisia.commerce.entity.Country;
+import com.tunisia.commerce.entity.NgpCode;
+import com.tunisia.commerce.entity.StructureCompetence;
+import com.tunisia.commerce.entity.StructureInterne;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.persistence.EntityManagerFactory;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.CacheRegionStatistics;
+import org.hibernate.stat.Statistics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.function.ToDoubleFunction;
+import java.util.stream.Collectors;
+
+/**
+ * Invalidation et métriques du cache de second niveau des tables de référence.
+ *
+ * Hibernate invalide déjà les entrées modifiées sur l'instance qui écrit ; les autres instances
+ * gardent leur copie locale jusqu'à expiration. Les écritures d'administration appellent donc
+ * {@link #evictAfterCommit} : après validation, les régions concernées et les résultats de
+ * requêtes de référence sont vidés localement, puis l'éviction est diffusée sur un canal Redis
+ * à toutes les instances.
+ */
+@Slf4j
+@Service
+public class ReferenceCacheService implements MessageListener {
+
+    private static final String CHANNEL = "cache:reference:evict";
+
+    // Entités acceptées dans les messages d'éviction (nom simple → classe)
+    private static final Map<String, Class<?>> REFERENCE_ENTITIES = Map.of(
+            Country.class.getSimpleName(), Country.class,
+            NgpCode.class.getSimpleName(), NgpCode.class,
+            StructureInterne.class.getSimpleName(), StructureInterne.class,
+            StructureCompetence.class.getSimpleName(), StructureCompetence.class);
+
+    private final EntityManagerFactory entityManagerFactory;
+    private final StringRedisTemplate redisTemplate;
+    private final RedisMessageListenerContainer listenerContainer;
+    private final boolean redisInvalidation;
+    // Identifiant de l'instance : ses propres messages sont ignorés
+    private final String nodeId = UUID.randomUUID().toString();
+
+    public ReferenceCacheService(EntityManagerFactory entityManagerFactory,
+                                 StringRedisTemplate redisTemplate,
+                                 RedisMessageListenerContainer listenerContainer,
+                                 MeterRegistry meterRegistry,
+                                 @Value("${app.cache.reference.redis-invalidation:true}") boolean redisInvalidation) {
+        this.entityManagerFactory = entityManagerFactory;
+        this.redisTemplate = redisTemplate;
+        this.listenerContainer = listenerContainer;
+        this.redisInvalidation = redisInvalidation;
+        registerMetrics(meterRegistry);
+    }
+
+    @PostConstruct
+    public void subscribe() {
+        if (!redisInvalidation) {
+            return;
+        }
+        listenerContainer.addMessageListener(this, new ChannelTopic(CHANNEL));
+    }
+
+    // ==================== ÉVICTION ====================
+
+    /**
+     * Vide les régions des entités données après validation de la transaction en cours
+     * (immédiatement hors transaction), sur cette instance et sur les autres.
+     */
+    public void evictAfterCommit(Class<?>... entityClasses) {
+        List<Class<?>> classes = List.of(entityClasses);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    evict(classes);
+                }
+            });
+        } else {
+            evict(classes);
+        }
+    }
+
+    private void evict(List<Class<?>> classes) {
+        evictLocally(classes);
+        if (!redisInvalidation) {
+            return;
+        }
+        String names = classes.stream().map(Class::getSimpleName).collect(Collectors.joining(","));
+        try {
+            redisTemplate.convertAndSend(CHANNEL, nodeId + "|" + names);
+        } catch (Exception e) {
+            // Les autres instances retrouveront des données à jour à l'expiration des entrées
+            log.warn("Diffusion de l'éviction du cache de référence impossible ({}): {}", names, e.getMessage());
+        }
+    }
+
+    void evictLocally(Collection<Class<?>> classes) {
+        classes.forEach(entityManagerFactory.getCache()::evict);
+        entityManagerFactory.unwrap(SessionFactory.class).getCache().evictQueryRegion(ReferenceCacheRegions.QUERIES);
+        log.debug("Cache de référence vidé: {}", classes.stream().map(Class::getSimpleName).toList());
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String body = new String(message.getBody(), StandardCharsets.UTF_8);
+        int separator = body.indexOf('|');
+        if (separator < 0 || body.substring(0, separator).equals(nodeId)) {
+            return;
+        }
+        List<Class<?>> classes = Arrays.stream(body.substring(separator + 1).split(","))
+                .map(REFERENCE_ENTITIES::get)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
+        if (!classes.isEmpty()) {
+            evictLocally(classes);
+        }
+    }
+
+    // ==================== MÉTRIQUES ====================
+
+    /**
+     * Hits, misses et taux de succès par région, lus dans les statistiques Hibernate.
+     */
+    private void registerMetrics(MeterRegistry meterRegistry) {
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        List<String> regions = new ArrayList<>(ReferenceCacheRegions.ENTITY_REGIONS);
+        regions.add(ReferenceCacheRegions.QUERIES);
+
+        for (String region : regions) {
+            FunctionCounter.builder("cache.reference.gets", statistics,
+                            regionStat(region, CacheRegionStatistics::getHitCount))
+                    .tag("region", region).tag("result", "hit")
+                    .description("Lectures du cache de second niveau par région")
+                    .register(meterRegistry);
+            FunctionCounter.builder("cache.reference.gets", statistics,
+                            regionStat(region, CacheRegionStatistics::getMissCount))
+                    .tag("region", region).tag("result", "miss")
+                    .description("Lectures du cache de second niveau par région")
+                    .register(meterRegistry);
+            Gauge.builder("cache.reference.hit.ratio", statistics, stats -> {
+                        CacheRegionStatistics regionStatistics = stats.getCacheRegionStatistics(region);
+                        if (regionStatistics == null) {
+                            return 0.0;
+                        }
+                        long total = regionStatistics.getHitCount() + regionStatistics.getMissCount();
+                        return total == 0 ? 0.0 : (double) regionStatistics.getHitCount() / total;
+                    })
+                    .tag("region", region)
+                    .description("Taux de succès du cache de second niveau par région")
+                    .register(meterRegistry);
+        }
+    }
+
+    private static ToDoubleFunction<Statistics> regionStat(String region, ToDoubleFunction<CacheRegionStatistics> value) {
+        return stats -> {
+            CacheRegionStatistics regionStatistics = stats.getCacheRegionStatistics(region);
+            return regionStatistics == null ? 0.0 : value.applyAsDouble(regionStatistics);
+        };
+    }
+}
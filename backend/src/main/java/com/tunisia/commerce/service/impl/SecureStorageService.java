@@ -1,6 +1,7 @@
 package com.tunisia.commerce.service.impl;
 
 import com.tunisia.commerce.config.StorageConfig;
+import com.tunisia.commerce.entity.Document;
 import com.tunisia.commerce.enums.DocumentType;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -9,17 +10,25 @@ import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 
 import javax.crypto.Cipher;
+import javax.crypto.CipherInputStream;
+import javax.crypto.CipherOutputStream;
 import javax.crypto.SecretKey;
 import javax.crypto.spec.GCMParameterSpec;
 import javax.crypto.spec.SecretKeySpec;
+import java.io.BufferedOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.nio.file.attribute.PosixFilePermissions;
+import java.security.DigestInputStream;
 import java.security.MessageDigest;
 import java.security.SecureRandom;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.Base64;
+import java.util.HexFormat;
 import java.util.UUID;
 
 @Service
@@ -28,6 +37,7 @@ import java.util.UUID;
 public class SecureStorageService {
 
     private final StorageConfig storageConfig;
+    private final BlobStoreService blobStoreService;
 
     @Value("${app.storage.encryption-key}")
     private String encryptionKey;
@@ -67,7 +77,8 @@ public class SecureStorageService {
         }
     }
 
-    // ✅ Stockage avec nom sécurisé et chiffrement AES/GCM
+    // ✅ Stockage adressé par contenu et chiffrement AES/GCM : un contenu déjà connu n'est ni
+    // rechiffré ni réécrit, le document référence simplement le blob existant
     public StorageResult storeDocument(
             MultipartFile file,
             StorageConfig.DocumentCategory category,
@@ -78,48 +89,165 @@ public class SecureStorageService {
         // Valider le fichier
         validateFile(file);
 
-        // Créer un nom de fichier sécurisé
+        // Nom affiché du document (le fichier physique est nommé par son empreinte)
         String safeFileName = generateSecureFileName(file.getOriginalFilename(), demandeId, documentType);
 
-        // Obtenir le chemin de destination
-        Path targetDir = storageConfig.getDocumentsPath(category, demandeId, entityId);
+        StorageResult result = storeAsBlob(file, safeFileName);
+        log.info("Document {} stocké ({}): blob {}", safeFileName, category, result.getBlobHash());
+        return result;
+    }
 
-        // Créer le répertoire avec permissions restrictives
-        if (!Files.exists(targetDir)) {
-            Files.createDirectories(targetDir);
-            try {
-                Files.setPosixFilePermissions(targetDir, PosixFilePermissions.fromString("rwx------"));
-            } catch (Exception e) {
-                log.warn("Impossible de définir les permissions: {}", e.getMessage());
-            }
+    // ✅ Libère le contenu d'un document supprimé, dans la transaction de la suppression
+    public void releaseDocument(Document document) {
+        if (document.getBlobHash() != null) {
+            blobStoreService.release(document.getBlobHash());
+            return;
         }
 
-        Path targetPath = targetDir.resolve(safeFileName);
+        // Ancien format : fichier propre au document
+        String filePath = document.getFilePath();
+        if (filePath == null || filePath.isEmpty()) {
+            return;
+        }
+        try {
+            secureDelete(Paths.get(filePath));
+        } catch (Exception e) {
+            log.error("Erreur lors de la suppression du fichier {}: {}", filePath, e.getMessage());
+        }
+    }
+
+    // ✅ Migration : reprend un fichier de l'ancien format (vérifié contre son hash) dans le stockage par contenu
+    public StorageResult adoptLegacyFile(Path legacyPath, String expectedHash) throws Exception {
+        byte[] content = retrieveDocument(legacyPath, expectedHash);
+        return storeAsBlob(content, legacyPath.getFileName().toString());
+    }
 
-        // Stocker avec vérification d'intégrité
-        byte[] fileBytes = file.getBytes();
-        String fileHash = computeSHA256(fileBytes);
+    // Deux lectures du flux (empreinte puis écriture) : le fichier ne passe jamais par le tas,
+    // et la seconde n'a lieu que si le contenu est nouveau
+    private StorageResult storeAsBlob(MultipartFile file, String fileName) throws Exception {
+        MessageDigest digest = MessageDigest.getInstance("SHA-256");
+        try (InputStream in = new DigestInputStream(file.getInputStream(), digest)) {
+            in.transferTo(OutputStream.nullOutputStream());
+        }
+        byte[] hash = digest.digest();
+        String blobHash = HexFormat.of().formatHex(hash);
+
+        Path blobPath = blobStoreService.acquireStreaming(blobHash, file.getSize(), out -> {
+            try (InputStream in = file.getInputStream(); OutputStream target = encryptingStream(out)) {
+                in.transferTo(target);
+            }
+        });
 
-        // Chiffrer le fichier si activé (avec IV)
+        return StorageResult.builder()
+                .fileName(fileName)
+                .filePath(blobPath.toString())
+                .fileHash(Base64.getEncoder().encodeToString(hash))
+                .blobHash(blobHash)
+                .fileSize(file.getSize())
+                .build();
+    }
+
+    private StorageResult storeAsBlob(byte[] content, String fileName) throws Exception {
+        byte[] digest = MessageDigest.getInstance("SHA-256").digest(content);
+        String blobHash = HexFormat.of().formatHex(digest);
+
+        Path blobPath = blobStoreService.acquire(blobHash, content.length,
+                () -> storageConfig.isEncryptionEnabled() ? encryptWithIV(content) : content);
+
+        return StorageResult.builder()
+                .fileName(fileName)
+                .filePath(blobPath.toString())
+                .fileHash(Base64.getEncoder().encodeToString(digest))
+                .blobHash(blobHash)
+                .fileSize(content.length)
+                .build();
+    }
+
+    // ✅ Stockage d'un fichier généré par l'application (rapports), chiffré comme les documents
+    public StorageResult storeGeneratedFile(byte[] content, String subDirectory, String fileName) throws Exception {
+        Path targetPath = resolveGeneratedTarget(subDirectory, fileName);
+
+        String fileHash = computeSHA256(content);
         byte[] bytesToStore = storageConfig.isEncryptionEnabled()
-                ? encryptWithIV(fileBytes)
-                : fileBytes;
+                ? encryptWithIV(content)
+                : content;
 
         Files.write(targetPath, bytesToStore);
+        storeFileHash(targetPath, fileHash);
+
+        log.debug("Fichier généré stocké: {}", targetPath);
 
-        // Stocker également le hash pour vérification future
+        return StorageResult.builder()
+                .fileName(targetPath.getFileName().toString())
+                .filePath(targetPath.toString())
+                .fileHash(fileHash)
+                .fileSize(content.length)
+                .build();
+    }
+
+    // ✅ Variante en flux : le fichier source est haché et chiffré par blocs, sans être chargé en mémoire.
+    // Même format sur disque que encryptWithIV (IV puis ciphertext + tag GCM).
+    public StorageResult storeGeneratedFile(Path source, String subDirectory, String fileName) throws Exception {
+        Path targetPath = resolveGeneratedTarget(subDirectory, fileName);
+
+        MessageDigest digest = MessageDigest.getInstance("SHA-256");
+        try (InputStream in = new DigestInputStream(Files.newInputStream(source), digest);
+             OutputStream out = openGeneratedOutput(targetPath)) {
+            in.transferTo(out);
+        }
+        String fileHash = Base64.getEncoder().encodeToString(digest.digest());
         storeFileHash(targetPath, fileHash);
 
-        log.info("Document stocké avec succès: {}", targetPath);
+        log.debug("Fichier généré stocké: {}", targetPath);
 
         return StorageResult.builder()
-                .fileName(safeFileName)
+                .fileName(targetPath.getFileName().toString())
                 .filePath(targetPath.toString())
                 .fileHash(fileHash)
-                .fileSize(file.getSize())
+                .fileSize(Files.size(source))
                 .build();
     }
 
+    private Path resolveGeneratedTarget(String subDirectory, String fileName) throws Exception {
+        Path targetDir = getGeneratedFilesPath(subDirectory);
+
+        if (!Files.exists(targetDir)) {
+            Files.createDirectories(targetDir);
+            try {
+                Files.setPosixFilePermissions(targetDir, PosixFilePermissions.fromString("rwx------"));
+            } catch (Exception e) {
+                log.warn("Impossible de définir les permissions: {}", e.getMessage());
+            }
+        }
+
+        String safeFileName = fileName.replaceAll("[^a-zA-Z0-9._-]", "_");
+        return targetDir.resolve(safeFileName);
+    }
+
+    private OutputStream openGeneratedOutput(Path targetPath) throws Exception {
+        return encryptingStream(new BufferedOutputStream(Files.newOutputStream(targetPath)));
+    }
+
+    // Chiffrement en flux si activé ; fermer le flux retourné écrit le tag GCM
+    private OutputStream encryptingStream(OutputStream out) throws Exception {
+        if (!storageConfig.isEncryptionEnabled()) {
+            return out;
+        }
+
+        byte[] iv = new byte[GCM_IV_LENGTH];
+        new SecureRandom().nextBytes(iv);
+
+        Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+        cipher.init(Cipher.ENCRYPT_MODE, getEncryptionKey(), new GCMParameterSpec(GCM_TAG_LENGTH, iv));
+
+        out.write(iv);
+        return new CipherOutputStream(out, cipher);
+    }
+
+    public Path getGeneratedFilesPath(String subDirectory) {
+        return storageConfig.getBasePath().resolve(subDirectory);
+    }
+
     // ✅ Chiffrement AES/GCM avec IV (vecteur d'initialisation)
     private byte[] encryptWithIV(byte[] plaintext) throws Exception {
         SecretKey key = getEncryptionKey();
@@ -219,6 +347,50 @@ public class SecureStorageService {
         }
     }
 
+    // ✅ Contenu en clair sous forme d'InputStream (analyse antivirus). Ce n'est pas une lecture en
+    // flux : en GCM, le fournisseur JCE ne libère le clair qu'après vérification du tag, le chiffré
+    // entier est donc conservé en mémoire avant que le premier octet soit lu (mémoire de l'ordre du fichier).
+    // Le format chiffré (un seul segment GCM par fichier) ne permet pas mieux sans migration.
+    public InputStream openDecryptedStream(Path filePath) throws Exception {
+        InputStream file = Files.newInputStream(filePath);
+        if (!storageConfig.isEncryptionEnabled()) {
+            return file;
+        }
+
+        byte[] iv = file.readNBytes(GCM_IV_LENGTH);
+        if (iv.length < GCM_IV_LENGTH) {
+            file.close();
+            throw new SecurityException("Fichier chiffré invalide: données trop courtes");
+        }
+
+        Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+        cipher.init(Cipher.DECRYPT_MODE, getEncryptionKey(), new GCMParameterSpec(GCM_TAG_LENGTH, iv));
+        return new CipherInputStream(file, cipher);
+    }
+
+    // ✅ Copie en flux du contenu en clair vers out, l'empreinte étant vérifiée en fin de lecture.
+    // Aucun tableau de la taille du fichier côté application ; en chiffré, le tag GCM est vérifié
+    // avant la libération du premier octet (voir openDecryptedStream).
+    public long copyDocument(Path filePath, String expectedHash, OutputStream out) throws Exception {
+        if (!Files.exists(filePath)) {
+            throw new RuntimeException("Fichier non trouvé: " + filePath);
+        }
+
+        MessageDigest digest = MessageDigest.getInstance("SHA-256");
+        long copied;
+        try (InputStream in = new DigestInputStream(openDecryptedStream(filePath), digest)) {
+            copied = in.transferTo(out);
+        }
+
+        if (expectedHash != null && !expectedHash.isEmpty()
+                && !Base64.getEncoder().encodeToString(digest.digest()).equals(expectedHash)) {
+            throw new SecurityException("L'intégrité du fichier est compromise pour: " + filePath);
+        }
+
+        log.debug("Document copié en flux: {} (taille: {} bytes)", filePath, copied);
+        return copied;
+    }
+
     // ✅ Récupérer un fichier avec vérification d'intégrité et déchiffrement
     public byte[] retrieveDocument(Path filePath, String expectedHash) throws Exception {
         if (!Files.exists(filePath)) {
@@ -314,15 +486,13 @@ public class SecureStorageService {
 
         Path targetPath = targetDir.resolve(safeFileName);
 
-        // Stocker avec vérification d'intégrité
-        byte[] fileBytes = file.getBytes();
-        String fileHash = computeSHA256(fileBytes);
-
-        byte[] bytesToStore = storageConfig.isEncryptionEnabled()
-                ? encryptWithIV(fileBytes)
-                : fileBytes;
-
-        Files.write(targetPath, bytesToStore);
+        // Stocker avec vérification d'intégrité (haché et chiffré en flux)
+        MessageDigest digest = MessageDigest.getInstance("SHA-256");
+        try (InputStream in = new DigestInputStream(file.getInputStream(), digest);
+             OutputStream out = openGeneratedOutput(targetPath)) {
+            in.transferTo(out);
+        }
+        String fileHash = Base64.getEncoder().encodeToString(digest.digest());
         storeFileHash(targetPath, fileHash);
 
         log.info("Image produit stockée avec succès: {}", targetPath);
@@ -357,6 +527,8 @@ public class SecureStorageService {
         private String fileName;
         private String filePath;
         private String fileHash;
+        // SHA-256 hexadécimal du blob référencé (documents uniquement)
+        private String blobHash;
         private long fileSize;
     }
 }
\ No newline at end of file
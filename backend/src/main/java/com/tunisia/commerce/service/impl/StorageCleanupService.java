@@ -14,14 +14,35 @@ import java.time.LocalDateTime;
 import java.time.ZoneId;
 import java.time.temporal.ChronoUnit;
 
+/**
+ * Nettoyage du stockage :
+ * - les fichiers des documents sont des blobs adressés par contenu, supprimés par lots dès que
+ *   plus aucun document ne les référence (après le délai de grâce). Seul l'index des blobs sans
+ *   référence est parcouru ;
+ * - les dossiers de brouillon expirés sont supprimés chaque nuit. L'arborescence des blobs est
+ *   exclue de ce parcours : ses fichiers ne sont supprimés que par le ramasse-miettes.
+ */
 @Component
 @RequiredArgsConstructor
 @Slf4j
 public class StorageCleanupService {
 
+    private final BlobStoreService blobStoreService;
     private final SecureStorageService storageService;
     private final StorageConfig storageConfig;
 
+    @Scheduled(fixedDelayString = "${app.storage.blob-gc-interval-ms:600000}")
+    public void collectUnreferencedBlobs() {
+        try {
+            int collected = blobStoreService.collectGarbage();
+            if (collected > 0) {
+                log.info("{} blob(s) sans référence supprimé(s)", collected);
+            }
+        } catch (Exception e) {
+            log.error("Erreur inattendue lors du nettoyage des blobs: {}", e.getMessage(), e);
+        }
+    }
+
     @Scheduled(cron = "0 0 2 * * ?") // Tous les jours à 2h du matin
     public void cleanupExpiredDrafts() {
         if (!storageConfig.isAutoDeleteExpiredDrafts()) {
@@ -39,18 +60,23 @@ public class StorageCleanupService {
                 return;
             }
 
-            Files.walk(basePath)
-                    .filter(Files::isDirectory)
-                    .filter(path -> isDraftDirectory(path))
-                    .filter(path -> {
-                        try {
-                            return isExpired(path);
-                        } catch (IOException e) {
-                            log.warn("Erreur lors de la vérification d'expiration du dossier {}: {}", path, e.getMessage());
-                            return false;
-                        }
-                    })
-                    .forEach(this::deleteDirectorySafely);
+            Path blobRoot = blobStoreService.rootDirectory();
+            try (var directories = Files.walk(basePath)) {
+                directories
+                        .filter(Files::isDirectory)
+                        .filter(path -> !path.startsWith(blobRoot))
+                        .filter(path -> isDraftDirectory(basePath.relativize(path)))
+                        .filter(path -> {
+                            try {
+                                return isExpired(path);
+                            } catch (IOException e) {
+                                log.warn("Erreur lors de la vérification d'expiration du dossier {}: {}", path, e.getMessage());
+                                return false;
+                            }
+                        })
+                        .toList()
+                        .forEach(this::deleteDirectorySafely);
+            }
 
         } catch (IOException e) {
             log.error("Erreur lors du parcours des dossiers: {}", e.getMessage());
@@ -59,6 +85,15 @@ public class StorageCleanupService {
         }
     }
 
+    /**
+     * Méthode manuelle pour forcer le nettoyage (utile pour les tests ou l'administration)
+     */
+    public void forceCleanup() {
+        log.info("Nettoyage forcé des brouillons expirés et des blobs sans référence...");
+        cleanupExpiredDrafts();
+        collectUnreferencedBlobs();
+    }
+
     private boolean isDraftDirectory(Path path) {
         // Logique pour identifier les dossiers de brouillon
         String pathStr = path.toString().toLowerCase();
@@ -92,19 +127,20 @@ public class StorageCleanupService {
 
             log.info("Suppression du dossier expiré: {}", path);
 
-            Files.walk(path)
-                    .sorted((a, b) -> b.compareTo(a)) // Supprimer les fichiers avant les dossiers
-                    .forEach(file -> {
-                        try {
-                            if (Files.isRegularFile(file)) {
-                                storageService.secureDelete(file);
-                            } else {
-                                Files.deleteIfExists(file);
+            try (var files = Files.walk(path)) {
+                files.sorted((a, b) -> b.compareTo(a)) // Supprimer les fichiers avant les dossiers
+                        .forEach(file -> {
+                            try {
+                                if (Files.isRegularFile(file)) {
+                                    storageService.secureDelete(file);
+                                } else {
+                                    Files.deleteIfExists(file);
+                                }
+                            } catch (Exception e) {
+                                log.error("Erreur lors de la suppression de {}: {}", file, e.getMessage());
                             }
-                        } catch (Exception e) {
-                            log.error("Erreur lors de la suppression de {}: {}", file, e.getMessage());
-                        }
-                    });
+                        });
+            }
 
             log.info("Dossier expiré supprimé avec succès: {}", path);
 
@@ -112,12 +148,4 @@ public class StorageCleanupService {
             log.error("Erreur lors de la suppression du dossier {}: {}", path, e.getMessage());
         }
     }
-
-    /**
-     * Méthode manuelle pour forcer le nettoyage (utile pour les tests ou l'administration)
-     */
-    public void forceCleanup() {
-        log.info("Nettoyage forcé des brouillons expirés...");
-        cleanupExpiredDrafts();
-    }
-}
\ No newline at end of file
+}
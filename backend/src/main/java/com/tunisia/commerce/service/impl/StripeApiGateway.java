@@ -0,0 +1,39 @@
+package com.tunisia.commerce.service.impl;
+
+import com.stripe.exception.StripeException;
+import com.stripe.model.PaymentIntent;
+import com.stripe.model.PaymentIntentCollection;
+import com.stripe.param.PaymentIntentListParams;
+import com.stripe.param.PaymentIntentRetrieveParams;
+import com.tunisia.commerce.service.StripeGateway;
+import org.springframework.stereotype.Component;
+
+/**
+ * Accès à l'API Stripe (clé initialisée par StripePaymentService).
+ */
+@Component
+public class StripeApiGateway implements StripeGateway {
+
+    private static final String EXPAND_LATEST_CHARGE = "latest_charge";
+
+    @Override
+    public PaymentIntentCollection listPaymentIntents(Long createdFrom, String startingAfter, long limit)
+            throws StripeException {
+        PaymentIntentListParams.Builder params = PaymentIntentListParams.builder()
+                .setLimit(Math.min(limit, 100L))
+                .addExpand("data." + EXPAND_LATEST_CHARGE);
+        if (createdFrom != null) {
+            params.setCreated(PaymentIntentListParams.Created.builder().setGte(createdFrom).build());
+        }
+        if (startingAfter != null) {
+            params.setStartingAfter(startingAfter);
+        }
+        return PaymentIntent.list(params.build());
+    }
+
+    @Override
+    public PaymentIntent retrievePaymentIntent(String paymentIntentId) throws StripeException {
+        return PaymentIntent.retrieve(paymentIntentId,
+                PaymentIntentRetrieveParams.builder().addExpand(EXPAND_LATEST_CHARGE).build(), null);
+    }
+}
@@ -2,13 +2,10 @@ package com.tunisia.commerce.service.impl;
 
 import com.stripe.Stripe;
 import com.stripe.exception.CardException;
-import com.stripe.exception.SignatureVerificationException;
 import com.stripe.exception.StripeException;
 import com.stripe.model.*;
-import com.stripe.net.Webhook;
 import com.stripe.param.PaymentIntentCreateParams;
 import com.stripe.param.PaymentIntentConfirmParams;
-import com.stripe.param.PaymentIntentListParams;
 import com.tunisia.commerce.dto.payment.CreatePaymentIntentRequest;
 import com.tunisia.commerce.dto.payment.CreatePaymentIntentResponse;
 import com.tunisia.commerce.dto.payment.PaymentResponseDTO;
@@ -21,6 +18,7 @@ import com.tunisia.commerce.enums.DemandeStatus;
 import com.tunisia.commerce.enums.PaymentStatus;
 import com.tunisia.commerce.enums.ValidationNotificationType;
 import com.tunisia.commerce.exception.PaymentException;
+import com.tunisia.commerce.observability.OutboundCallMetrics;
 import com.tunisia.commerce.repository.DemandeEnregistrementRepository;
 import com.tunisia.commerce.repository.ExportateurRepository;
 import com.tunisia.commerce.repository.ImportateurRepository;
@@ -35,14 +33,12 @@ import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
 import java.time.Instant;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
-import java.time.ZoneId;
-import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.logging.Logger;
-import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
@@ -53,8 +49,9 @@ public class StripePaymentService {
     @Value("${stripe.api.key}")
     private String stripeApiKey;
 
-    @Value("${stripe.webhook.secret}")
-    private String webhookSecret;
+    // Vide en production ; pointé sur un bouchon local pour les tests de charge
+    @Value("${stripe.api-base:}")
+    private String stripeApiBase;
 
     @Value("${app.dossier.fees}")
     private double dossierFees;
@@ -67,6 +64,9 @@ public class StripePaymentService {
     private final ImportateurRepository importateurRepository;
     private final UserRepository userRepository;
     private final EmailService emailService;
+    private final PaymentLedgerService paymentLedgerService;
+    private final PaymentStatsService paymentStatsService;
+    private final OutboundCallMetrics outboundCallMetrics;
 
     private static final Logger logger = Logger.getLogger(ExportateurDossierService.class.getName());
 
@@ -74,6 +74,10 @@ public class StripePaymentService {
     @PostConstruct
     public void init() {
         Stripe.apiKey = stripeApiKey;
+        if (!stripeApiBase.isBlank()) {
+            Stripe.overrideApiBase(stripeApiBase);
+            log.warn("⚠️ API Stripe redirigée vers {}", stripeApiBase);
+        }
         log.info("Stripe API initialisé avec la clé: {}", stripeApiKey.substring(0, 8) + "...");
     }
 
@@ -131,9 +135,11 @@ public class StripePaymentService {
                     .setCaptureMethod(PaymentIntentCreateParams.CaptureMethod.AUTOMATIC)
                     .build();
 
-            PaymentIntent paymentIntent = PaymentIntent.create(params);
+            PaymentIntent paymentIntent = outboundCallMetrics.record("stripe", "payment-intent.create",
+                    () -> PaymentIntent.create(params));
 
             log.info("✅ PaymentIntent créé: {} pour la demande {}", paymentIntent.getId(), demande.getId());
+            recordInLedger(paymentIntent);
 
             // 7. Mettre à jour la demande
             demande.setPaymentStatus(PaymentStatus.INITIE);
@@ -174,7 +180,8 @@ public class StripePaymentService {
                     paymentIntentId, paymentMethodId, userRole);
 
             // 1. Récupérer le PaymentIntent depuis Stripe
-            PaymentIntent paymentIntent = PaymentIntent.retrieve(paymentIntentId);
+            PaymentIntent retrieved = outboundCallMetrics.record("stripe", "payment-intent.retrieve",
+                    () -> PaymentIntent.retrieve(paymentIntentId));
 
             // 2. Confirmer le PaymentIntent avec le PaymentMethod ID
             PaymentIntentConfirmParams confirmParams = PaymentIntentConfirmParams.builder()
@@ -182,7 +189,9 @@ public class StripePaymentService {
                     .setReceiptEmail(receiptEmail)
                     .build();
 
-            paymentIntent = paymentIntent.confirm(confirmParams);
+            PaymentIntent paymentIntent = outboundCallMetrics.record("stripe", "payment-intent.confirm",
+                    () -> retrieved.confirm(confirmParams));
+            recordInLedger(paymentIntent);
 
             // 3. Vérifier le statut du paiement
             if ("succeeded".equals(paymentIntent.getStatus())) {
@@ -300,6 +309,60 @@ public class StripePaymentService {
         }
     }
 
+    // ==================== WEBHOOKS ====================
+
+    /**
+     * Traite un événement webhook Stripe déjà vérifié et enregistré par la boîte de réception :
+     * mise à jour du registre local des paiements, puis effets métier (demande payée, email de
+     * confirmation). Toute exception remonte à la boîte de réception, qui replanifie l'événement.
+     */
+    public void processWebhookEvent(Event event) {
+        log.info("Traitement du webhook Stripe: {} ({})", event.getType(), event.getId());
+        long observedAt = event.getCreated() != null ? event.getCreated() : Instant.now().getEpochSecond();
+
+        switch (event.getType()) {
+            case "payment_intent.succeeded":
+                recordEventInLedger(event, observedAt);
+                handlePaymentIntentSucceeded(event);
+                break;
+            case "payment_intent.created":
+            case "payment_intent.processing":
+            case "payment_intent.requires_action":
+            case "payment_intent.payment_failed":
+            case "payment_intent.canceled":
+            case "payment_intent.amount_capturable_updated":
+                recordEventInLedger(event, observedAt);
+                break;
+            case "charge.succeeded":
+            case "charge.failed":
+            case "charge.updated":
+            case "charge.refunded":
+                Charge charge = getStripeObjectFromEvent(event, Charge.class);
+                if (charge != null) {
+                    paymentLedgerService.recordCharge(charge, observedAt);
+                }
+                break;
+            default:
+                log.debug("Événement Stripe ignoré: {}", event.getType());
+        }
+    }
+
+    private void recordEventInLedger(Event event, long observedAt) {
+        PaymentIntent paymentIntent = getPaymentIntentFromEvent(event);
+        if (paymentIntent != null) {
+            paymentLedgerService.recordPaymentIntent(paymentIntent, observedAt, PaymentLedgerService.SOURCE_WEBHOOK);
+        }
+    }
+
+    private void recordInLedger(PaymentIntent paymentIntent) {
+        try {
+            paymentLedgerService.recordPaymentIntent(paymentIntent, Instant.now().getEpochSecond(),
+                    PaymentLedgerService.SOURCE_APPLICATION);
+        } catch (Exception e) {
+            log.warn("Registre des paiements non mis à jour pour {}: {}", paymentIntent.getId(), e.getMessage());
+        }
+    }
+
     private void handlePaymentIntentSucceeded(Event event) {
         PaymentIntent paymentIntent = getPaymentIntentFromEvent(event);
         if (paymentIntent == null) return;
@@ -309,7 +372,8 @@ public class StripePaymentService {
             Long demandeId = Long.parseLong(demandeIdStr);
             DemandeEnregistrement demande = demandeRepository.findById(demandeId).orElse(null);
 
-            if (demande != null) {
+            // Déjà traité par la confirmation synchrone : pas de second email
+            if (demande != null && demande.getPaymentStatus() != PaymentStatus.REUSSI) {
                 demande.setPaymentStatus(PaymentStatus.REUSSI);
                 demandeRepository.save(demande);
 
@@ -336,11 +400,15 @@ public class StripePaymentService {
      * Extraire PaymentIntent de l'événement
      */
     private PaymentIntent getPaymentIntentFromEvent(Event event) {
+        return getStripeObjectFromEvent(event, PaymentIntent.class);
+    }
+
+    private <T extends StripeObject> T getStripeObjectFromEvent(Event event, Class<T> type) {
         EventDataObjectDeserializer dataObjectDeserializer = event.getDataObjectDeserializer();
         if (dataObjectDeserializer.getObject().isPresent()) {
             StripeObject stripeObject = dataObjectDeserializer.getObject().get();
-            if (stripeObject instanceof PaymentIntent) {
-                return (PaymentIntent) stripeObject;
+            if (type.isInstance(stripeObject)) {
+                return type.cast(stripeObject);
             }
         }
         return null;
@@ -421,35 +489,14 @@ public class StripePaymentService {
     }
 
     /**
-     * Récupérer toutes les transactions Stripe (accessible par ADMIN et BANQUE)
+     * Récupérer toutes les transactions (accessible par ADMIN et BANQUE), depuis le registre local
      */
+    @Transactional(readOnly = true)
     public List<PaymentTransactionDTO> getAllTransactions(int limit, String statusFilter) {
         try {
-            log.info("📊 Récupération de l'historique des transactions Stripe - limit: {}, status: {}", limit, statusFilter);
-
-            PaymentIntentListParams.Builder paramsBuilder = PaymentIntentListParams.builder()
-                    .setLimit((long) Math.min(limit, 100));
-
-            // Filtrer par statut si spécifié - Utilisation correcte de l'API Stripe
-            if (statusFilter != null && !statusFilter.isEmpty()) {
-                // Note: La méthode setStatus n'existe pas dans cette version
-                // On filtre après récupération
-                log.info("Filtre par statut: {} (appliqué après récupération)", statusFilter);
-            }
+            log.info("📊 Récupération de l'historique des transactions - limit: {}, status: {}", limit, statusFilter);
 
-            PaymentIntentCollection paymentIntents = PaymentIntent.list(paramsBuilder.build());
-
-            List<PaymentTransactionDTO> transactions = new ArrayList<>();
-
-            for (PaymentIntent paymentIntent : paymentIntents.getData()) {
-                // Appliquer le filtre de statut manuellement si nécessaire
-                if (statusFilter != null && !statusFilter.isEmpty() &&
-                        !paymentIntent.getStatus().equalsIgnoreCase(statusFilter)) {
-                    continue;
-                }
-                PaymentTransactionDTO dto = mapPaymentIntentToDTO(paymentIntent);
-                transactions.add(dto);
-            }
+            List<PaymentTransactionDTO> transactions = paymentLedgerService.findAll(limit, statusFilter);
 
             log.info("✅ {} transactions récupérées", transactions.size());
             return transactions;
@@ -463,31 +510,17 @@ public class StripePaymentService {
     /**
      * Récupérer les transactions par utilisateur
      */
+    @Transactional(readOnly = true)
     public List<PaymentTransactionDTO> getTransactionsByUser(Long userId) {
         try {
             log.info("📊 Récupération des transactions pour l'utilisateur: {}", userId);
 
-            User user = userRepository.findById(userId)
-                    .orElseThrow(() -> new RuntimeException("Utilisateur non trouvé"));
-
-            PaymentIntentListParams params = PaymentIntentListParams.builder()
-                    .setLimit(100L)
-                    .build();
-
-            PaymentIntentCollection paymentIntents = PaymentIntent.list(params);
-
-            List<PaymentTransactionDTO> userTransactions = new ArrayList<>();
-
-            for (PaymentIntent paymentIntent : paymentIntents.getData()) {
-                Map<String, String> metadata = paymentIntent.getMetadata();
-                String metadataUserId = metadata.get("userId");
-
-                if (metadataUserId != null && metadataUserId.equals(userId.toString())) {
-                    PaymentTransactionDTO dto = mapPaymentIntentToDTO(paymentIntent);
-                    userTransactions.add(dto);
-                }
+            if (!userRepository.existsById(userId)) {
+                throw new RuntimeException("Utilisateur non trouvé");
             }
 
+            List<PaymentTransactionDTO> userTransactions = paymentLedgerService.findByUser(userId);
+
             log.info("✅ {} transactions trouvées pour l'utilisateur {}", userTransactions.size(), userId);
             return userTransactions;
 
@@ -500,27 +533,16 @@ public class StripePaymentService {
     /**
      * Récupérer les transactions par demande
      */
+    @Transactional(readOnly = true)
     public PaymentTransactionDTO getTransactionByDemande(Long demandeId) {
         try {
             log.info("📊 Récupération de la transaction pour la demande: {}", demandeId);
 
-            PaymentIntentListParams params = PaymentIntentListParams.builder()
-                    .setLimit(100L)
-                    .build();
-
-            PaymentIntentCollection paymentIntents = PaymentIntent.list(params);
-
-            for (PaymentIntent paymentIntent : paymentIntents.getData()) {
-                Map<String, String> metadata = paymentIntent.getMetadata();
-                String metadataDemandeId = metadata.get("demandeId");
-
-                if (metadataDemandeId != null && metadataDemandeId.equals(demandeId.toString())) {
-                    return mapPaymentIntentToDTO(paymentIntent);
-                }
+            PaymentTransactionDTO transaction = paymentLedgerService.findByDemande(demandeId);
+            if (transaction == null) {
+                log.warn("Aucune transaction trouvée pour la demande: {}", demandeId);
             }
-
-            log.warn("Aucune transaction trouvée pour la demande: {}", demandeId);
-            return null;
+            return transaction;
 
         } catch (Exception e) {
             log.error("❌ Erreur lors de la récupération de la transaction pour la demande {}", demandeId, e);
@@ -531,6 +553,7 @@ public class StripePaymentService {
     /**
      * Récupérer les transactions avec filtres avancés
      */
+    @Transactional(readOnly = true)
     public List<PaymentTransactionDTO> getTransactionsWithFilters(
             LocalDateTime startDate,
             LocalDateTime endDate,
@@ -541,33 +564,8 @@ public class StripePaymentService {
         try {
             log.info("📊 Récupération des transactions avec filtres");
 
-            PaymentIntentListParams.Builder paramsBuilder = PaymentIntentListParams.builder()
-                    .setLimit((long) Math.min(limit != null ? limit : 100, 100));
-
-            PaymentIntentCollection paymentIntents = PaymentIntent.list(paramsBuilder.build());
-
-            List<PaymentTransactionDTO> filteredTransactions = paymentIntents.getData().stream()
-                    .map(this::mapPaymentIntentToDTO)
-                    .filter(dto -> {
-                        if (startDate != null && dto.getCreated().isBefore(startDate)) {
-                            return false;
-                        }
-                        if (endDate != null && dto.getCreated().isAfter(endDate)) {
-                            return false;
-                        }
-                        if (status != null && !status.isEmpty() &&
-                                dto.getStatus() != null &&
-                                !dto.getStatus().equalsIgnoreCase(status)) {
-                            return false;
-                        }
-                        if (paymentMethodType != null && !paymentMethodType.isEmpty() &&
-                                dto.getPaymentMethodType() != null &&
-                                !dto.getPaymentMethodType().equalsIgnoreCase(paymentMethodType)) {
-                            return false;
-                        }
-                        return true;
-                    })
-                    .collect(Collectors.toList());
+            List<PaymentTransactionDTO> filteredTransactions = paymentLedgerService.findWithFilters(
+                    startDate, endDate, status, paymentMethodType, limit);
 
             log.info("✅ {} transactions trouvées avec les filtres", filteredTransactions.size());
             return filteredTransactions;
@@ -579,73 +577,16 @@ public class StripePaymentService {
     }
 
     /**
-     * Statistiques des transactions
+     * Statistiques des transactions, lues dans les agrégats pré-calculés (aucun appel Stripe)
      */
+    @Transactional(readOnly = true)
     public Map<String, Object> getTransactionStatistics() {
         try {
-            log.info("📊 Calcul des statistiques des transactions");
+            log.info("📊 Récupération des statistiques des transactions");
 
-            PaymentIntentListParams params = PaymentIntentListParams.builder()
-                    .setLimit(100L)
-                    .build();
+            Map<String, Object> statistics = paymentStatsService.getStatistics();
 
-            PaymentIntentCollection paymentIntents = PaymentIntent.list(params);
-
-            long totalTransactions = 0;
-            long succeededTransactions = 0;
-            long failedTransactions = 0;
-            double totalAmount = 0;
-            double succeededAmount = 0;
-            Map<String, Long> paymentMethodStats = new HashMap<>();
-            Map<String, Long> statusStats = new HashMap<>();
-
-            for (PaymentIntent paymentIntent : paymentIntents.getData()) {
-                totalTransactions++;
-                String status = paymentIntent.getStatus();
-                statusStats.merge(status, 1L, Long::sum);
-
-                if ("succeeded".equals(status)) {
-                    succeededTransactions++;
-                    double amount = paymentIntent.getAmount() / 100.0;
-                    succeededAmount += amount;
-                    totalAmount += amount;
-                } else if ("requires_payment_method".equals(status) || "canceled".equals(status)) {
-                    failedTransactions++;
-                    totalAmount += paymentIntent.getAmount() / 100.0;
-                } else {
-                    totalAmount += paymentIntent.getAmount() / 100.0;
-                }
-
-                // Note: getCharges() peut ne pas être disponible directement
-                // On utilise getLatestCharge() à la place
-                try {
-                    String latestChargeId = paymentIntent.getLatestCharge();
-                    if (latestChargeId != null) {
-                        Charge charge = Charge.retrieve(latestChargeId);
-                        if (charge.getPaymentMethodDetails() != null) {
-                            String paymentMethodType = charge.getPaymentMethodDetails().getType();
-                            paymentMethodStats.merge(paymentMethodType, 1L, Long::sum);
-                        }
-                    }
-                } catch (Exception e) {
-                    log.debug("Impossible de récupérer les détails de la charge pour {}", paymentIntent.getId());
-                }
-            }
-
-            Map<String, Object> statistics = new HashMap<>();
-            statistics.put("totalTransactions", totalTransactions);
-            statistics.put("succeededTransactions", succeededTransactions);
-            statistics.put("failedTransactions", failedTransactions);
-            statistics.put("successRate", totalTransactions > 0 ?
-                    (succeededTransactions * 100.0 / totalTransactions) : 0);
-            statistics.put("totalAmount", totalAmount);
-            statistics.put("succeededAmount", succeededAmount);
-            statistics.put("averageAmount", totalTransactions > 0 ?
-                    (totalAmount / totalTransactions) : 0);
-            statistics.put("paymentMethodStats", paymentMethodStats);
-            statistics.put("statusStats", statusStats);
-
-            log.info("✅ Statistiques calculées: {} transactions totales", totalTransactions);
+            log.info("✅ Statistiques: {} transactions totales", statistics.get("totalTransactions"));
             return statistics;
 
         } catch (Exception e) {
@@ -655,100 +596,10 @@ public class StripePaymentService {
     }
 
     /**
-     * Mapper PaymentIntent vers DTO
+     * Statistiques journalières (par statut, moyen de paiement et devise)
      */
-    private PaymentTransactionDTO mapPaymentIntentToDTO(PaymentIntent paymentIntent) {
-        PaymentTransactionDTO.PaymentTransactionDTOBuilder builder = PaymentTransactionDTO.builder()
-                .paymentIntentId(paymentIntent.getId())
-                .transactionId(paymentIntent.getId())
-                .amount(paymentIntent.getAmount() / 100.0)
-                .currency(paymentIntent.getCurrency())
-                .status(paymentIntent.getStatus())
-                .description(paymentIntent.getDescription())
-                .customerEmail(paymentIntent.getReceiptEmail())
-                .metadata(paymentIntent.getMetadata())
-                .created(Instant.ofEpochSecond(paymentIntent.getCreated())
-                        .atZone(ZoneId.systemDefault())
-                        .toLocalDateTime());
-
-        Map<String, String> metadata = paymentIntent.getMetadata();
-        if (metadata != null) {
-            String demandeIdStr = metadata.get("demandeId");
-            if (demandeIdStr != null) {
-                builder.demandeId(Long.parseLong(demandeIdStr));
-                demandeRepository.findById(Long.parseLong(demandeIdStr)).ifPresent(demande -> {
-                    builder.demandeReference(demande.getReference());
-                });
-            }
-
-            String userIdStr = metadata.get("userId");
-            if (userIdStr != null) {
-                builder.userId(Long.parseLong(userIdStr));
-                userRepository.findById(Long.parseLong(userIdStr)).ifPresent(user -> {
-                    builder.userRole(user.getRole().name());
-                    if (user instanceof ExportateurEtranger) {
-                        ExportateurEtranger exportateur = (ExportateurEtranger) user;
-                        builder.customerName(exportateur.getRaisonSociale() != null ?
-                                exportateur.getRaisonSociale() :
-                                exportateur.getNom() + " " + exportateur.getPrenom());
-                    } else if (user instanceof ImportateurTunisien) {
-                        ImportateurTunisien importateur = (ImportateurTunisien) user;
-                        builder.customerName(importateur.getRaisonSociale() != null ?
-                                importateur.getRaisonSociale() :
-                                importateur.getNom() + " " + importateur.getPrenom());
-                    } else {
-                        builder.customerName(user.getEmail());
-                    }
-                });
-            }
-        }
-
-        // Récupérer les détails de la charge en utilisant getLatestCharge()
-        try {
-            String latestChargeId = paymentIntent.getLatestCharge();
-            if (latestChargeId != null && !latestChargeId.isEmpty()) {
-                Charge charge = Charge.retrieve(latestChargeId);
-                builder.chargeId(charge.getId());
-
-                if (charge.getPaid() != null && charge.getPaid()) {
-                    builder.paidAt(Instant.ofEpochSecond(charge.getCreated())
-                            .atZone(ZoneId.systemDefault())
-                            .toLocalDateTime());
-                }
-
-                if (charge.getPaymentMethodDetails() != null) {
-                    String paymentMethodType = charge.getPaymentMethodDetails().getType();
-                    builder.paymentMethodType(paymentMethodType);
-
-                    switch (paymentMethodType) {
-                        case "card":
-                            builder.paymentMethod("Carte Bancaire");
-                            if (charge.getPaymentMethodDetails().getCard() != null) {
-                                var card = charge.getPaymentMethodDetails().getCard();
-                                builder.cardBrand(card.getBrand());
-                                builder.cardLast4(card.getLast4());
-                            }
-                            break;
-                        case "link":
-                            builder.paymentMethod("Link (Stripe)");
-                            break;
-                        case "cashapp":
-                            builder.paymentMethod("Cash App");
-                            break;
-                        default:
-                            builder.paymentMethod(paymentMethodType);
-                    }
-                }
-
-                if (charge.getFailureCode() != null && !charge.getFailureCode().isEmpty()) {
-                    builder.failureCode(charge.getFailureCode());
-                    builder.failureMessage(charge.getFailureMessage());
-                }
-            }
-        } catch (Exception e) {
-            log.debug("Impossible de récupérer les détails de la charge pour {}", paymentIntent.getId());
-        }
-
-        return builder.build();
+    @Transactional(readOnly = true)
+    public List<Map<String, Object>> getDailyTransactionStatistics(LocalDate startDate, LocalDate endDate) {
+        return paymentStatsService.getDailyStatistics(startDate, endDate);
     }
 }
\ No newline at end of file
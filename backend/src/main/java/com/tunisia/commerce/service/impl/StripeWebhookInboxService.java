@@ -0,0 +1,283 @@
+package com.tunisia.commerce.service.impl;
+
+import com.stripe.exception.SignatureVerificationException;
+import com.stripe.model.Charge;
+import com.stripe.model.Event;
+import com.stripe.model.PaymentIntent;
+import com.stripe.model.StripeObject;
+import com.stripe.net.ApiResource;
+import com.stripe.net.Webhook;
+import com.tunisia.commerce.entity.StripeWebhookEvent;
+import com.tunisia.commerce.enums.WebhookEventStatus;
+import com.tunisia.commerce.repository.StripeWebhookEventRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Boîte de réception des webhooks Stripe.
+ *
+ * La réception vérifie la signature, persiste l'événement brut (dédupliqué sur son identifiant)
+ * et rend la main immédiatement. Un pool de workers traite ensuite les événements :
+ * ceux d'un même PaymentIntent l'un après l'autre, dans l'ordre de réception, avec nouvelles
+ * tentatives espacées exponentiellement puis mise en lettre morte (REJETE).
+ *
+ * Une prise en charge (EN_COURS) est un bail de {@code app.webhooks.claim-lease-seconds} : passé
+ * ce délai, l'instance est considérée arrêtée et l'événement est remis en file. Les prises en
+ * charge récentes des autres instances ne sont jamais touchées.
+ */
+@Slf4j
+@Service
+public class StripeWebhookInboxService {
+
+    private static final List<WebhookEventStatus> PENDING =
+            List.of(WebhookEventStatus.EN_ATTENTE, WebhookEventStatus.EN_ERREUR);
+    private static final int DISPATCH_BATCH_SIZE = 500;
+
+    private final StripeWebhookEventRepository inboxRepository;
+    private final StripePaymentService stripePaymentService;
+    private final String webhookSecret;
+    private final int maxAttempts;
+    private final long retryBaseSeconds;
+    private final long retryMaxSeconds;
+    private final long retentionDays;
+    private final long claimLeaseSeconds;
+
+    private final ExecutorService workers;
+    // Clés d'ordonnancement en cours de traitement : au plus un worker par PaymentIntent
+    private final Set<String> activeKeys = ConcurrentHashMap.newKeySet();
+
+    public StripeWebhookInboxService(StripeWebhookEventRepository inboxRepository,
+                                     StripePaymentService stripePaymentService,
+                                     MeterRegistry meterRegistry,
+                                     @Value("${stripe.webhook.secret}") String webhookSecret,
+                                     @Value("${app.webhooks.workers:4}") int workerCount,
+                                     @Value("${app.webhooks.max-attempts:8}") int maxAttempts,
+                                     @Value("${app.webhooks.retry-base-seconds:30}") long retryBaseSeconds,
+                                     @Value("${app.webhooks.retry-max-seconds:3600}") long retryMaxSeconds,
+                                     @Value("${app.webhooks.retention-days:30}") long retentionDays,
+                                     @Value("${app.webhooks.claim-lease-seconds:900}") long claimLeaseSeconds) {
+        this.inboxRepository = inboxRepository;
+        this.stripePaymentService = stripePaymentService;
+        this.webhookSecret = webhookSecret;
+        this.maxAttempts = maxAttempts;
+        this.retryBaseSeconds = retryBaseSeconds;
+        this.retryMaxSeconds = retryMaxSeconds;
+        this.retentionDays = retentionDays;
+        this.claimLeaseSeconds = claimLeaseSeconds;
+
+        AtomicInteger threadCount = new AtomicInteger();
+        this.workers = Executors.newFixedThreadPool(workerCount, runnable -> {
+            Thread thread = new Thread(runnable, "stripe-webhook-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        new ExecutorServiceMetrics(workers, "stripe-webhook", Tags.empty()).bindTo(meterRegistry);
+    }
+
+    // ==================== RÉCEPTION ====================
+
+    /**
+     * Vérifie et enregistre un événement. Renvoie false si l'événement avait déjà été reçu.
+     *
+     * @throws SecurityException si la signature est invalide
+     */
+    public boolean receive(String payload, String sigHeader) {
+        Event event;
+        try {
+            event = Webhook.constructEvent(payload, sigHeader, webhookSecret);
+        } catch (SignatureVerificationException e) {
+            log.warn("⚠️ Signature webhook Stripe invalide");
+            throw new SecurityException("Signature Stripe invalide");
+        }
+
+        boolean inserted = inboxRepository.insertIfAbsent(event.getId(), event.getType(),
+                orderingKey(event), payload, LocalDateTime.now()) == 1;
+        if (inserted) {
+            log.info("📩 Webhook Stripe reçu: {} ({})", event.getType(), event.getId());
+        } else {
+            log.info("Webhook Stripe déjà reçu, ignoré: {}", event.getId());
+        }
+        return inserted;
+    }
+
+    /**
+     * PaymentIntent concerné (le sien, ou celui de la charge), sinon l'événement lui-même.
+     * La clé ne dépend d'aucun état local : les événements d'un même paiement gardent la même
+     * clé avant et après la création de sa ligne au registre.
+     */
+    String orderingKey(Event event) {
+        StripeObject object = event.getDataObjectDeserializer().getObject().orElse(null);
+        if (object instanceof PaymentIntent) {
+            return "pi:" + ((PaymentIntent) object).getId();
+        }
+        if (object instanceof Charge && ((Charge) object).getPaymentIntent() != null) {
+            return "pi:" + ((Charge) object).getPaymentIntent();
+        }
+        return "event:" + event.getId();
+    }
+
+    // ==================== TRAITEMENT ====================
+
+    /**
+     * Distribue aux workers, pour chaque demande libre, son plus ancien événement en attente
+     * s'il est échu ; les événements suivants de la même demande attendent leur tour.
+     */
+    @Scheduled(fixedDelayString = "${app.webhooks.poll-interval-ms:500}")
+    public void dispatch() {
+        List<StripeWebhookEvent> pending;
+        try {
+            pending = inboxRepository.findByStatusInOrderByIdAsc(PENDING, PageRequest.of(0, DISPATCH_BATCH_SIZE));
+        } catch (Exception e) {
+            log.error("❌ Lecture de la boîte de réception Stripe impossible: {}", e.getMessage());
+            return;
+        }
+
+        LocalDateTime now = LocalDateTime.now();
+        Set<String> seenKeys = new HashSet<>();
+        for (StripeWebhookEvent event : pending) {
+            if (!seenKeys.add(event.getOrderingKey())) {
+                continue;
+            }
+            if (event.getNextAttemptAt() != null && event.getNextAttemptAt().isAfter(now)) {
+                continue;
+            }
+            if (!activeKeys.add(event.getOrderingKey())) {
+                continue;
+            }
+            try {
+                workers.execute(() -> processKey(event));
+            } catch (RejectedExecutionException e) {
+                activeKeys.remove(event.getOrderingKey());
+                return;
+            }
+        }
+    }
+
+    private void processKey(StripeWebhookEvent event) {
+        try {
+            if (inboxRepository.claim(event.getId(), PENDING, LocalDateTime.now()) == 0) {
+                return;  // Pris par une autre instance
+            }
+            process(event);
+        } finally {
+            activeKeys.remove(event.getOrderingKey());
+        }
+    }
+
+    private void process(StripeWebhookEvent inboxEvent) {
+        int attempt = inboxEvent.getAttempts() + 1;
+        try {
+            Event event = ApiResource.GSON.fromJson(inboxEvent.getPayload(), Event.class);
+            stripePaymentService.processWebhookEvent(event);
+
+            inboxEvent.setStatus(WebhookEventStatus.TRAITE);
+            inboxEvent.setAttempts(attempt);
+            inboxEvent.setProcessedAt(LocalDateTime.now());
+            inboxEvent.setNextAttemptAt(null);
+            inboxEvent.setLastError(null);
+            inboxRepository.save(inboxEvent);
+            log.debug("Webhook {} traité (tentative {})", inboxEvent.getEventId(), attempt);
+
+        } catch (Exception e) {
+            String error = e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName();
+            inboxEvent.setAttempts(attempt);
+            inboxEvent.setLastError(error.length() > 1000 ? error.substring(0, 1000) : error);
+
+            if (attempt >= maxAttempts) {
+                inboxEvent.setStatus(WebhookEventStatus.REJETE);
+                inboxEvent.setNextAttemptAt(null);
+                log.error("❌ Webhook {} ({}) rejeté après {} tentatives: {}",
+                        inboxEvent.getEventId(), inboxEvent.getEventType(), attempt, error, e);
+            } else {
+                long delay = backoffSeconds(attempt);
+                inboxEvent.setStatus(WebhookEventStatus.EN_ERREUR);
+                inboxEvent.setNextAttemptAt(LocalDateTime.now().plusSeconds(delay));
+                log.warn("Webhook {} en échec (tentative {}), nouvel essai dans {} s: {}",
+                        inboxEvent.getEventId(), attempt, delay, error);
+            }
+            inboxRepository.save(inboxEvent);
+        }
+    }
+
+    long backoffSeconds(int attempt) {
+        long delay = retryBaseSeconds << Math.min(attempt - 1, 20);
+        return Math.min(delay, retryMaxSeconds);
+    }
+
+    // ==================== LETTRES MORTES ====================
+
+    public List<StripeWebhookEvent> findRejected(int limit) {
+        return inboxRepository.findByStatusOrderByIdDesc(WebhookEventStatus.REJETE,
+                PageRequest.of(0, Math.max(1, Math.min(limit, 500))));
+    }
+
+    public Map<WebhookEventStatus, Long> countByStatus() {
+        Map<WebhookEventStatus, Long> counts = new EnumMap<>(WebhookEventStatus.class);
+        for (WebhookEventStatus status : WebhookEventStatus.values()) {
+            counts.put(status, inboxRepository.countByStatus(status));
+        }
+        return counts;
+    }
+
+    /**
+     * Remet un événement rejeté en file pour un nouveau cycle de tentatives.
+     */
+    public boolean replay(Long id) {
+        StripeWebhookEvent event = inboxRepository.findById(id).orElse(null);
+        if (event == null || event.getStatus() != WebhookEventStatus.REJETE) {
+            return false;
+        }
+        event.setStatus(WebhookEventStatus.EN_ATTENTE);
+        event.setAttempts(0);
+        event.setNextAttemptAt(null);
+        inboxRepository.save(event);
+        log.info("Webhook {} remis en file", event.getEventId());
+        return true;
+    }
+
+    // ==================== MAINTENANCE ====================
+
+    /**
+     * Au démarrage puis périodiquement : les événements EN_COURS dont le bail a expiré (instance
+     * arrêtée pendant le traitement) repassent en attente.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(fixedDelayString = "${app.webhooks.lease-check-interval-ms:60000}")
+    public void releaseInterrupted() {
+        try {
+            int released = inboxRepository.releaseClaimedBefore(LocalDateTime.now().minusSeconds(claimLeaseSeconds));
+            if (released > 0) {
+                log.info("{} webhook(s) interrompu(s) remis en file", released);
+            }
+        } catch (Exception e) {
+            log.warn("Remise en file des webhooks interrompus impossible: {}", e.getMessage());
+        }
+    }
+
+    @Scheduled(cron = "${app.webhooks.purge-cron:0 15 4 * * *}")
+    public void purgeProcessed() {
+        int deleted = inboxRepository.deleteProcessedBefore(LocalDateTime.now().minusDays(retentionDays));
+        if (deleted > 0) {
+            log.info("{} webhook(s) traité(s) purgé(s)", deleted);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        workers.shutdown();
+    }
+}
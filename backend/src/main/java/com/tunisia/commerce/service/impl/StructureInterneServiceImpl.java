@@ -1,10 +1,12 @@
 package com.tunisia.commerce.service.impl;
 
+import com.tunisia.commerce.cache.ReadModelCaches;
 import com.tunisia.commerce.dto.structure.CreateStructureRequestDTO;
 import com.tunisia.commerce.dto.structure.StructureInterneDTO;
 import com.tunisia.commerce.dto.structure.UpdateStructureRequestDTO;
 import com.tunisia.commerce.dto.user.UserDTO;
 import com.tunisia.commerce.entity.Administrateur;
+import com.tunisia.commerce.entity.StructureCompetence;
 import com.tunisia.commerce.entity.StructureInterne;
 import com.tunisia.commerce.enums.StructureType;
 import com.tunisia.commerce.enums.UserRole;
@@ -13,6 +15,8 @@ import com.tunisia.commerce.repository.AdministrateurRepository;
 import com.tunisia.commerce.repository.StructureInterneRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.Cacheable;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -28,11 +32,13 @@ public class StructureInterneServiceImpl {
 
     private final StructureInterneRepository structureRepository;
     private final AdministrateurRepository administrateurRepository;
+    private final ReferenceCacheService referenceCacheService;
 
     /**
      * Créer une nouvelle structure interne
      */
     @Transactional
+    @CacheEvict(cacheNames = ReadModelCaches.STRUCTURES, allEntries = true)
     public StructureInterneDTO createStructure(CreateStructureRequestDTO request, Long adminId) {
         log.info("Création d'une nouvelle structure: {}", request.getOfficialName());
 
@@ -75,6 +81,7 @@ public class StructureInterneServiceImpl {
                 .build();
 
         structure = structureRepository.save(structure);
+        evictReferenceCache();
         log.info("Structure créée avec succès - ID: {}, Code: {}", structure.getId(), structure.getCode());
 
         return mapToDTO(structure);
@@ -84,6 +91,7 @@ public class StructureInterneServiceImpl {
      * Mettre à jour une structure interne
      */
     @Transactional
+    @CacheEvict(cacheNames = ReadModelCaches.STRUCTURES, allEntries = true)
     public StructureInterneDTO updateStructure(Long id, UpdateStructureRequestDTO request, Long adminId) {
         log.info("Mise à jour de la structure ID: {}", id);
 
@@ -112,6 +120,7 @@ public class StructureInterneServiceImpl {
         structure.setUpdatedAt(LocalDateTime.now());
 
         structure = structureRepository.save(structure);
+        evictReferenceCache();
         log.info("Structure ID: {} mise à jour avec succès", id);
 
         return mapToDTO(structure);
@@ -121,6 +130,7 @@ public class StructureInterneServiceImpl {
      * Supprimer une structure interne (suppression physique)
      */
     @Transactional
+    @CacheEvict(cacheNames = ReadModelCaches.STRUCTURES, allEntries = true)
     public void deleteStructureHard(Long id, Long adminId) {
         log.info("Suppression physique de la structure ID: {}", id);
 
@@ -132,6 +142,7 @@ public class StructureInterneServiceImpl {
                 .orElseThrow(() -> new RuntimeException("Administrateur non trouvé"));
 
         structureRepository.delete(structure);
+        evictReferenceCache();
         log.info("Structure ID: {} supprimée définitivement", id);
     }
 
@@ -139,6 +150,7 @@ public class StructureInterneServiceImpl {
      * Désactiver une structure interne (suppression logique)
      */
     @Transactional
+    @CacheEvict(cacheNames = ReadModelCaches.STRUCTURES, allEntries = true)
     public StructureInterneDTO deactivateStructure(Long id, Long adminId) {
         log.info("Désactivation de la structure ID: {}", id);
 
@@ -153,6 +165,7 @@ public class StructureInterneServiceImpl {
         structure.setUpdatedAt(LocalDateTime.now());
 
         structure = structureRepository.save(structure);
+        evictReferenceCache();
         log.info("Structure ID: {} désactivée", id);
 
         return mapToDTO(structure);
@@ -162,6 +175,7 @@ public class StructureInterneServiceImpl {
      * Réactiver une structure interne
      */
     @Transactional
+    @CacheEvict(cacheNames = ReadModelCaches.STRUCTURES, allEntries = true)
     public StructureInterneDTO reactivateStructure(Long id, Long adminId) {
         log.info("Réactivation de la structure ID: {}", id);
 
@@ -176,6 +190,7 @@ public class StructureInterneServiceImpl {
         structure.setUpdatedAt(LocalDateTime.now());
 
         structure = structureRepository.save(structure);
+        evictReferenceCache();
         log.info("Structure ID: {} réactivée", id);
 
         return mapToDTO(structure);
@@ -184,6 +199,7 @@ public class StructureInterneServiceImpl {
     /**
      * Récupérer toutes les structures internes
      */
+    @Cacheable(cacheNames = ReadModelCaches.STRUCTURES, key = "'toutes'", sync = true)
     public List<StructureInterneDTO> getAllStructures() {
         log.info("Récupération de toutes les structures");
         return structureRepository.findAll().stream()
@@ -194,6 +210,7 @@ public class StructureInterneServiceImpl {
     /**
      * Récupérer toutes les structures actives
      */
+    @Cacheable(cacheNames = ReadModelCaches.STRUCTURES, key = "'actives'", sync = true)
     public List<StructureInterneDTO> getAllActiveStructures() {
         log.info("Récupération des structures actives");
         return structureRepository.findByIsActiveTrue().stream()
@@ -261,6 +278,13 @@ public class StructureInterneServiceImpl {
         return String.format("%s_%s_%s", typePrefix, namePart, randomPart);
     }
 
+    /**
+     * Routage et validation lisent les structures et leurs compétences depuis le cache de second niveau
+     */
+    private void evictReferenceCache() {
+        referenceCacheService.evictAfterCommit(StructureInterne.class, StructureCompetence.class);
+    }
+
     /**
      * Mapper Entity vers DTO
      */
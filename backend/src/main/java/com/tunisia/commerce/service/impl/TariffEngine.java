@@ -0,0 +1,532 @@
+package com.tunisia.commerce.service.impl;
+
+import com.tunisia.commerce.entity.Country;
+import com.tunisia.commerce.entity.NgpCode;
+import com.tunisia.commerce.repository.CountryRepository;
+import com.tunisia.commerce.repository.NgpCodeRepository;
+import com.tunisia.commerce.util.FixedPoint;
+import com.tunisia.commerce.util.TextNormalizer;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Moteur tarifaire en mémoire : nomenclature NGP et préférences pays chargées une fois
+ * dans un instantané immuable, remplacé atomiquement lorsque les tables changent.
+ *
+ * Les taux effectifs sont précalculés : TVA par code NGP, droit de douane par code NGP
+ * et par classe de préférence pays (ALE, UE, SPG, droit commun). Les entités NGP et pays
+ * de l'instantané sont partagées entre les requêtes : seules des copies sont exposées.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class TariffEngine {
+
+    private final NgpCodeRepository ngpCodeRepository;
+    private final CountryRepository countryRepository;
+
+    public static final String DEFAULT_COUNTRY_CODE = "FR";
+
+    // Réduction SPG (Système de Préférences Généralisées) : 33%
+    private static final BigDecimal GSP_FACTOR = new BigDecimal("0.67");
+    private static final BigDecimal REDUCED_VAT_RATE = new BigDecimal("0.07");
+    private static final BigDecimal STANDARD_VAT_RATE = new BigDecimal("0.19");
+
+    // Pays éligibles au SPG
+    private static final Set<String> GSP_COUNTRIES = Set.of(
+            "CN", "IN", "VN", "BD", "KH", "PK", "PH", "LK", "ID", "MM", "NP", "LA"
+    );
+
+    // Catégories de produits à TVA réduite (7%) : produits de première nécessité
+    private static final Set<String> REDUCED_VAT_CATEGORIES = Set.of(
+            "01", "02", "03", "04", "05", "06", "07", "08", "09", "10",
+            "11", "12", "13", "14", "15", "16"
+    );
+
+    // Codes à TVA réduite : livres et fournitures scolaires
+    private static final Set<String> REDUCED_VAT_CODES = Set.of("49");
+
+    private static final NgpCode DEFAULT_NGP_CODE = NgpCode.builder()
+            .ngpCode("DEFAULT")
+            .categoryCode("99")
+            .productNameFr("Produits divers")
+            .productNameAr("منتجات متنوعة")
+            .productNameEn("Miscellaneous products")
+            .productType("INDUSTRIEL")
+            .dutyRate(new BigDecimal("0.15"))
+            .vatRate(new BigDecimal("0.19"))
+            .additionalTaxesRate(new BigDecimal("0.02"))
+            .isActive(true)
+            .build();
+
+    private static final Country DEFAULT_COUNTRY = Country.builder()
+            .code(DEFAULT_COUNTRY_CODE)
+            .name("France")
+            .dialCode("+33")
+            .exchangeRateToTnd(new BigDecimal("3.30"))
+            .hasFreeTradeAgreement(true)
+            .preferentialDutyRate(BigDecimal.ZERO)
+            .isEuMember(true)
+            .requiresCertificateOfOrigin(false)
+            .build();
+
+    private final AtomicReference<TariffSnapshot> snapshot = new AtomicReference<>(TariffSnapshot.EMPTY);
+
+    // Délai avant une nouvelle tentative de chargement à la demande après un échec
+    @Value("${app.tariff.load-retry-ms:30000}")
+    private long loadRetryMs = 30000;
+
+    private volatile long nextLoadAttemptAt;
+
+    // ==================== MODÈLE ====================
+
+    /**
+     * Classe de préférence tarifaire d'un pays d'origine.
+     */
+    enum DutyPreference {
+        FIXED,     // Accord de libre-échange ou UE : taux fixe (préférentiel ou zéro)
+        GSP,       // SPG : droit commun réduit de 33%
+        STANDARD   // Droit commun
+    }
+
+    /**
+     * Code NGP avec ses taux effectifs précalculés.
+     */
+    public static final class TariffEntry {
+        private final NgpCode ngpCode;
+        private final BigDecimal standardDutyRate;
+        private final BigDecimal gspDutyRate;
+        private final BigDecimal vatRate;
+        // Mêmes taux en virgule fixe (null si non représentables : repli BigDecimal)
+        private final FixedPoint.Rate standardDutyRateFixed;
+        private final FixedPoint.Rate gspDutyRateFixed;
+        private final FixedPoint.Rate vatRateFixed;
+
+        TariffEntry(NgpCode ngpCode) {
+            this.ngpCode = ngpCode;
+            this.standardDutyRate = ngpCode.getDutyRate() != null ? ngpCode.getDutyRate() : BigDecimal.ZERO;
+            this.gspDutyRate = standardDutyRate.multiply(GSP_FACTOR).setScale(4, RoundingMode.HALF_UP);
+            this.vatRate = computeVatRate(ngpCode);
+            this.standardDutyRateFixed = toFixedRate(standardDutyRate);
+            this.gspDutyRateFixed = toFixedRate(gspDutyRate);
+            this.vatRateFixed = toFixedRate(vatRate);
+        }
+
+        public NgpCode getNgpCode() {
+            return ngpCode;
+        }
+
+        public BigDecimal getVatRate() {
+            return vatRate;
+        }
+    }
+
+    /**
+     * Pays d'origine avec sa classe de préférence précalculée.
+     */
+    public static final class CountryTariff {
+        private final Country country;
+        private final DutyPreference preference;
+        private final BigDecimal fixedDutyRate;
+        private final FixedPoint.Rate fixedDutyRateFixed;
+
+        CountryTariff(Country country) {
+            this.country = country;
+            if (Boolean.TRUE.equals(country.getHasFreeTradeAgreement())) {
+                this.preference = DutyPreference.FIXED;
+                this.fixedDutyRate = country.getPreferentialDutyRate() != null
+                        ? country.getPreferentialDutyRate() : BigDecimal.ZERO;
+            } else if (Boolean.TRUE.equals(country.getIsEuMember())) {
+                this.preference = DutyPreference.FIXED;
+                this.fixedDutyRate = BigDecimal.ZERO;
+            } else if (country.getCode() != null && GSP_COUNTRIES.contains(country.getCode())) {
+                this.preference = DutyPreference.GSP;
+                this.fixedDutyRate = null;
+            } else {
+                this.preference = DutyPreference.STANDARD;
+                this.fixedDutyRate = null;
+            }
+            this.fixedDutyRateFixed = toFixedRate(fixedDutyRate);
+        }
+
+        public Country getCountry() {
+            return country;
+        }
+    }
+
+    /**
+     * Résultat d'une résolution tarifaire (code NGP x pays d'origine).
+     */
+    public record TariffLine(NgpCode ngpCode, Country country, BigDecimal dutyRate, BigDecimal vatRate,
+                             FixedPoint.Rate dutyRateFixed, FixedPoint.Rate vatRateFixed,
+                             long snapshotVersion) {
+
+        @Override
+        public NgpCode ngpCode() {
+            return copyOf(ngpCode);
+        }
+
+        @Override
+        public Country country() {
+            return copyOf(country);
+        }
+    }
+
+    /**
+     * Instantané immuable des tables tarifaires.
+     */
+    static final class TariffSnapshot {
+        static final TariffSnapshot EMPTY = new TariffSnapshot(0L, new TrieNode(), Map.of(), Map.of(),
+                new TariffEntry(DEFAULT_NGP_CODE), new CountryTariff(DEFAULT_COUNTRY), null);
+
+        private final long version;
+        private final TrieNode root;
+        private final Map<String, TariffEntry> byCategory;
+        private final Map<String, CountryTariff> countries;
+        private final TariffEntry defaultEntry;
+        private final CountryTariff defaultCountry;
+        private final TableFingerprint fingerprint;
+
+        TariffSnapshot(long version, TrieNode root, Map<String, TariffEntry> byCategory,
+                       Map<String, CountryTariff> countries, TariffEntry defaultEntry,
+                       CountryTariff defaultCountry, TableFingerprint fingerprint) {
+            this.version = version;
+            this.root = root;
+            this.byCategory = byCategory;
+            this.countries = countries;
+            this.defaultEntry = defaultEntry;
+            this.defaultCountry = defaultCountry;
+            this.fingerprint = fingerprint;
+        }
+
+        /**
+         * Plus long préfixe connu du code SH/NGP ; à défaut, premier code du chapitre (2 chiffres).
+         */
+        TariffEntry lookup(String hsCode) {
+            String digits = TextNormalizer.digitsOnly(hsCode);
+            TrieNode node = root;
+            TariffEntry best = null;
+            for (int i = 0; i < digits.length(); i++) {
+                node = node.children[digits.charAt(i) - '0'];
+                if (node == null) {
+                    break;
+                }
+                if (node.entry != null) {
+                    best = node.entry;
+                }
+            }
+            if (best != null) {
+                return best;
+            }
+            if (digits.length() >= 2) {
+                return byCategory.get(digits.substring(0, 2));
+            }
+            return null;
+        }
+
+        CountryTariff country(String countryCode) {
+            if (countryCode == null || countryCode.isEmpty()) {
+                return null;
+            }
+            return countries.get(countryCode.trim().toUpperCase(Locale.ROOT));
+        }
+    }
+
+    private static final class TrieNode {
+        private final TrieNode[] children = new TrieNode[10];
+        private TariffEntry entry;
+    }
+
+    /**
+     * Empreinte bon marché des tables (cardinalité et dernière mise à jour) pour détecter les changements.
+     */
+    record TableFingerprint(long ngpCount, LocalDateTime ngpUpdatedAt,
+                            long countryCount, LocalDateTime countryUpdatedAt) {
+    }
+
+    // ==================== CHARGEMENT ====================
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        reload();
+    }
+
+    /**
+     * Recharge l'instantané si les tables NGP ou pays ont changé depuis le dernier chargement.
+     */
+    @Scheduled(fixedDelayString = "${app.tariff.refresh-interval-ms:300000}",
+            initialDelayString = "${app.tariff.refresh-interval-ms:300000}")
+    public void reloadIfChanged() {
+        try {
+            TableFingerprint current = readFingerprint();
+            if (!current.equals(snapshot.get().fingerprint)) {
+                log.info("Tables tarifaires modifiées, rechargement du moteur tarifaire");
+                reload();
+            }
+        } catch (Exception e) {
+            log.error("Erreur lors de la vérification des tables tarifaires: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Construit un nouvel instantané et le publie atomiquement. Les calculs en cours
+     * terminent sur l'ancien instantané.
+     */
+    public synchronized long reload() {
+        long start = System.currentTimeMillis();
+        try {
+            TableFingerprint fingerprint = readFingerprint();
+            List<NgpCode> ngpCodes = new ArrayList<>(ngpCodeRepository.findAll());
+            List<Country> countryList = countryRepository.findAll();
+
+            TrieNode root = new TrieNode();
+            Map<String, TariffEntry> byCategory = new HashMap<>();
+            // Ordre déterministe : en cas de doublon de préfixe, le plus ancien code gagne
+            ngpCodes.sort(Comparator.comparing(NgpCode::getId, Comparator.nullsLast(Comparator.naturalOrder())));
+
+            int indexed = 0;
+            for (NgpCode ngpCode : ngpCodes) {
+                // Un code désactivé ne doit plus masquer un préfixe plus court ni servir de repli de chapitre
+                if (Boolean.FALSE.equals(ngpCode.getIsActive())) {
+                    continue;
+                }
+                indexed++;
+                TariffEntry entry = new TariffEntry(ngpCode);
+                String digits = TextNormalizer.digitsOnly(ngpCode.getNgpCode());
+                if (!digits.isEmpty()) {
+                    TrieNode node = root;
+                    for (int i = 0; i < digits.length(); i++) {
+                        int d = digits.charAt(i) - '0';
+                        if (node.children[d] == null) {
+                            node.children[d] = new TrieNode();
+                        }
+                        node = node.children[d];
+                    }
+                    if (node.entry == null) {
+                        node.entry = entry;
+                    }
+                }
+                if (ngpCode.getCategoryCode() != null) {
+                    byCategory.putIfAbsent(ngpCode.getCategoryCode(), entry);
+                }
+            }
+
+            Map<String, CountryTariff> countries = new HashMap<>();
+            for (Country country : countryList) {
+                if (country.getCode() != null) {
+                    countries.put(country.getCode().toUpperCase(Locale.ROOT), new CountryTariff(country));
+                }
+            }
+            CountryTariff defaultCountry = countries.getOrDefault(DEFAULT_COUNTRY_CODE, new CountryTariff(DEFAULT_COUNTRY));
+
+            long version = snapshot.get().version + 1;
+            TariffSnapshot fresh = new TariffSnapshot(version, root, byCategory, countries,
+                    new TariffEntry(DEFAULT_NGP_CODE), defaultCountry, fingerprint);
+            snapshot.set(fresh);
+            nextLoadAttemptAt = 0L;
+
+            log.info("✅ Moteur tarifaire chargé (v{}): {} codes NGP actifs sur {}, {} pays en {} ms",
+                    version, indexed, ngpCodes.size(), countries.size(), System.currentTimeMillis() - start);
+            return version;
+        } catch (Exception e) {
+            log.error("❌ Erreur lors du chargement du moteur tarifaire: {}", e.getMessage(), e);
+            nextLoadAttemptAt = System.currentTimeMillis() + loadRetryMs;
+            return snapshot.get().version;
+        }
+    }
+
+    private TableFingerprint readFingerprint() {
+        return new TableFingerprint(
+                ngpCodeRepository.count(), ngpCodeRepository.findLastUpdatedAt(),
+                countryRepository.count(), countryRepository.findLastUpdatedAt());
+    }
+
+    // ==================== RÉSOLUTION ====================
+
+    /**
+     * Résout code NGP, pays et taux effectifs pour une ligne de cotation, sans accès base.
+     */
+    public TariffLine resolve(String hsCode, String countryCode) {
+        TariffSnapshot current = currentSnapshot();
+
+        TariffEntry entry = current.lookup(hsCode);
+        if (entry == null) {
+            entry = current.defaultEntry;
+        }
+        CountryTariff country = current.country(countryCode);
+        if (country == null) {
+            country = current.defaultCountry;
+        }
+
+        // Entités partagées : copiées à la lecture par les accesseurs de TariffLine
+        return new TariffLine(entry.ngpCode, country.country, effectiveDutyRate(entry, country),
+                entry.vatRate, effectiveDutyRateFixed(entry, country), entry.vatRateFixed, current.version);
+    }
+
+    public Optional<NgpCode> findNgpCode(String hsCode) {
+        TariffEntry entry = currentSnapshot().lookup(hsCode);
+        return entry != null ? Optional.of(copyOf(entry.ngpCode)) : Optional.empty();
+    }
+
+    public Optional<Country> findCountry(String countryCode) {
+        CountryTariff country = currentSnapshot().country(countryCode);
+        return country != null ? Optional.of(copyOf(country.country)) : Optional.empty();
+    }
+
+    public NgpCode getDefaultNgpCode() {
+        return copyOf(DEFAULT_NGP_CODE);
+    }
+
+    public Country getDefaultCountry() {
+        return copyOf(currentSnapshot().defaultCountry.country);
+    }
+
+    public long getVersion() {
+        return snapshot.get().version;
+    }
+
+    /**
+     * Instantané courant ; chargement à la demande si une cotation arrive avant la fin du démarrage.
+     * Après un échec de chargement, les cotations échouent immédiatement jusqu'au délai
+     * {@code app.tariff.load-retry-ms} au lieu de relancer chacune un rechargement.
+     */
+    private TariffSnapshot currentSnapshot() {
+        TariffSnapshot current = snapshot.get();
+        if (current.version != 0L) {
+            return current;
+        }
+        if (System.currentTimeMillis() < nextLoadAttemptAt) {
+            throw unavailable();
+        }
+        return loadOnDemand();
+    }
+
+    /**
+     * Un seul appelant charge ; ceux qui attendaient le verrou réutilisent son résultat.
+     */
+    private synchronized TariffSnapshot loadOnDemand() {
+        if (snapshot.get().version == 0L && System.currentTimeMillis() >= nextLoadAttemptAt) {
+            reload();
+        }
+        TariffSnapshot current = snapshot.get();
+        if (current.version == 0L) {
+            throw unavailable();
+        }
+        return current;
+    }
+
+    private static IllegalStateException unavailable() {
+        return new IllegalStateException("Moteur tarifaire indisponible : tables tarifaires non chargées");
+    }
+
+    private static BigDecimal effectiveDutyRate(TariffEntry entry, CountryTariff country) {
+        switch (country.preference) {
+            case FIXED:
+                return country.fixedDutyRate;
+            case GSP:
+                return entry.gspDutyRate;
+            default:
+                return entry.standardDutyRate;
+        }
+    }
+
+    private static FixedPoint.Rate effectiveDutyRateFixed(TariffEntry entry, CountryTariff country) {
+        switch (country.preference) {
+            case FIXED:
+                return country.fixedDutyRateFixed;
+            case GSP:
+                return entry.gspDutyRateFixed;
+            default:
+                return entry.standardDutyRateFixed;
+        }
+    }
+
+    private static NgpCode copyOf(NgpCode ngpCode) {
+        return NgpCode.builder()
+                .id(ngpCode.getId())
+                .ngpCode(ngpCode.getNgpCode())
+                .categoryCode(ngpCode.getCategoryCode())
+                .productNameFr(ngpCode.getProductNameFr())
+                .productNameAr(ngpCode.getProductNameAr())
+                .productNameEn(ngpCode.getProductNameEn())
+                .productType(ngpCode.getProductType())
+                .dutyRate(ngpCode.getDutyRate())
+                .vatRate(ngpCode.getVatRate())
+                .additionalTaxesRate(ngpCode.getAdditionalTaxesRate())
+                .isActive(ngpCode.getIsActive())
+                .requiresAuthorization(ngpCode.getRequiresAuthorization())
+                .createdAt(ngpCode.getCreatedAt())
+                .updatedAt(ngpCode.getUpdatedAt())
+                .build();
+    }
+
+    private static Country copyOf(Country country) {
+        return Country.builder()
+                .code(country.getCode())
+                .name(country.getName())
+                .dialCode(country.getDialCode())
+                .exchangeRateToTnd(country.getExchangeRateToTnd())
+                .hasFreeTradeAgreement(country.getHasFreeTradeAgreement())
+                .preferentialDutyRate(country.getPreferentialDutyRate())
+                .isEuMember(country.getIsEuMember())
+                .requiresCertificateOfOrigin(country.getRequiresCertificateOfOrigin())
+                .updatedAt(country.getUpdatedAt())
+                .build();
+    }
+
+    private static FixedPoint.Rate toFixedRate(BigDecimal rate) {
+        try {
+            return FixedPoint.Rate.of(rate);
+        } catch (ArithmeticException e) {
+            return null;
+        }
+    }
+
+    // ==================== RÈGLES ====================
+
+    /**
+     * Taux de droit effectif pour un couple NGP / pays arbitraire (hors instantané).
+     */
+    public static BigDecimal computeDutyRate(NgpCode ngpCode, Country country) {
+        return effectiveDutyRate(new TariffEntry(ngpCode), new CountryTariff(country));
+    }
+
+    /**
+     * Taux de TVA effectif : 7% pour les produits de première nécessité, les livres
+     * et le matériel médical ; sinon le taux du code NGP (19% par défaut).
+     */
+    public static BigDecimal computeVatRate(NgpCode ngpCode) {
+        String categoryCode = ngpCode.getCategoryCode();
+        String ngpCodeStr = ngpCode.getNgpCode();
+        String productNameFr = ngpCode.getProductNameFr();
+
+        if (categoryCode != null && REDUCED_VAT_CATEGORIES.contains(categoryCode)) {
+            return REDUCED_VAT_RATE;
+        }
+
+        if (ngpCodeStr != null && ngpCodeStr.length() >= 2
+                && REDUCED_VAT_CODES.contains(ngpCodeStr.substring(0, 2))) {
+            return REDUCED_VAT_RATE;
+        }
+
+        if (productNameFr != null &&
+                (productNameFr.contains("chirurgical") ||
+                        productNameFr.contains("médical") ||
+                        productNameFr.contains("surgical"))) {
+            return REDUCED_VAT_RATE;
+        }
+
+        return ngpCode.getVatRate() != null ? ngpCode.getVatRate() : STANDARD_VAT_RATE;
+    }
+}
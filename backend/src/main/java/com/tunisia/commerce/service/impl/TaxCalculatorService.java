@@ -1,28 +1,28 @@
 package com.tunisia.commerce.service.impl;
 
+import com.tunisia.commerce.dto.tax.TaxBatchResponse;
+import com.tunisia.commerce.dto.tax.TaxRequest;
 import com.tunisia.commerce.dto.tax.TaxResponse;
 import com.tunisia.commerce.entity.Country;
 import com.tunisia.commerce.entity.NgpCode;
 import com.tunisia.commerce.entity.DemandeImportateur;
 import com.tunisia.commerce.entity.Product;
-import com.tunisia.commerce.repository.CountryRepository;
-import com.tunisia.commerce.repository.NgpCodeRepository;
+import com.tunisia.commerce.util.FixedPoint;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
 
 import java.math.BigDecimal;
 import java.math.RoundingMode;
-import java.util.Arrays;
-import java.util.HashSet;
-import java.util.Optional;
-import java.util.Set;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Service
 @RequiredArgsConstructor
 public class TaxCalculatorService {
 
-    private final NgpCodeRepository ngpCodeRepository;
-    private final CountryRepository countryRepository;
+    private final TariffEngine tariffEngine;
+    private final ExchangeRateService exchangeRateService;
 
     // Taux fixes tunisiens
     private static final BigDecimal FODEC_RATE = new BigDecimal("0.0025");  // 0.25%
@@ -30,42 +30,27 @@ public class TaxCalculatorService {
     private static final BigDecimal TVA_RECOVERY_RATE = new BigDecimal("0.01"); // 1%
     private static final BigDecimal MIN_FODEC_AMOUNT = new BigDecimal("1.0");
 
-    // Taux de change par défaut
-    private static final BigDecimal DEFAULT_EUR_TO_TND = new BigDecimal("3.30");
-    private static final BigDecimal DEFAULT_USD_TO_TND = new BigDecimal("3.10");
-    private static final BigDecimal DEFAULT_GBP_TO_TND = new BigDecimal("3.90");
+    // Mêmes taux en virgule fixe (millimes)
+    private static final FixedPoint.Rate FODEC_RATE_FIXED = FixedPoint.Rate.of(FODEC_RATE);
+    private static final FixedPoint.Rate CCC_RATE_FIXED = FixedPoint.Rate.of(CCC_RATE);
+    private static final FixedPoint.Rate TVA_RECOVERY_RATE_FIXED = FixedPoint.Rate.of(TVA_RECOVERY_RATE);
+    private static final long MIN_FODEC_MILLIMES = FixedPoint.toMillimes(MIN_FODEC_AMOUNT);
 
-    // Pays éligibles au SPG (Système de Préférences Généralisées)
-    private static final Set<String> GSP_COUNTRIES = new HashSet<>(Arrays.asList(
-            "CN", "IN", "VN", "BD", "KH", "PK", "PH", "LK", "ID", "MM", "NP", "LA"
-    ));
-
-    // Catégories de produits à TVA réduite (7%)
-    private static final Set<String> REDUCED_VAT_CATEGORIES = new HashSet<>(Arrays.asList(
-            "01", "02", "03", "04", "05", "06", "07", "08", "09", "10",
-            "11", "12", "13", "14", "15", "16"
-    ));
-
-    // Codes à TVA réduite
-    private static final Set<String> REDUCED_VAT_CODES = new HashSet<>(Arrays.asList(
-            "49"  // Livres et fournitures scolaires
-    ));
+    // Au-delà, les lignes d'un lot sont cotées en parallèle
+    private static final int BATCH_PARALLEL_THRESHOLD = 256;
 
     public TaxResponse calculateTaxesForDemande(DemandeImportateur demande, Product product, String countryCode) {
-        // Récupérer le pays depuis la base de données
-        Country country = countryRepository.findById(countryCode)
-                .orElseGet(() -> countryRepository.findById("FR").orElse(null));
-
-        // Récupérer le code NGP depuis la base de données
-        String hsCode = product.getHsCode();
-        NgpCode ngpCode = ngpCodeRepository.findByNgpCode(hsCode)
-                .orElseGet(() -> ngpCodeRepository.findByCategoryCode(hsCode.length() >= 2 ? hsCode.substring(0, 2) : "99")
-                        .stream().findFirst().orElse(null));
-
         BigDecimal value = BigDecimal.valueOf(demande.getAmount());
-        String currency = demande.getCurrency();
+        return calculateTaxes(value, demande.getCurrency(), product.getHsCode(), countryCode);
+    }
 
-        return calculateTaxes(value, currency, ngpCode, country);
+    /**
+     * Cotation à partir des codes SH et pays : résolution tarifaire en mémoire via le moteur tarifaire.
+     */
+    public TaxResponse calculateTaxes(BigDecimal value, String currency, String hsCode, String countryCode) {
+        TariffEngine.TariffLine line = tariffEngine.resolve(hsCode, countryCode);
+        return computeTaxes(exchangeRateService.current(), value, currency, line.country(),
+                line.dutyRate(), line.vatRate());
     }
 
     public TaxResponse calculateTaxes(BigDecimal value, String currency,
@@ -74,18 +59,166 @@ public class TaxCalculatorService {
 
         // Si ngpCode est null, utiliser des valeurs par défaut
         if (ngpCode == null) {
-            ngpCode = createDefaultNgpCode();
+            ngpCode = tariffEngine.getDefaultNgpCode();
+        }
+
+        if (country == null) {
+            country = tariffEngine.getDefaultCountry();
+        }
+
+        return computeTaxes(exchangeRateService.current(), value, currency, country,
+                TariffEngine.computeDutyRate(ngpCode, country),
+                TariffEngine.computeVatRate(ngpCode));
+    }
+
+    // ==================== COTATION PAR LOT ====================
+
+    /**
+     * Cote un lot de lignes (ordre conservé) via le calcul en virgule fixe, avec totaux du lot en TND.
+     */
+    public TaxBatchResponse calculateTaxesBatch(List<TaxRequest> lines) {
+        // Un seul instantané de taux de change pour tout le lot
+        ExchangeRateService.RateSnapshot rates = exchangeRateService.current();
+        Stream<TaxRequest> stream = lines.size() >= BATCH_PARALLEL_THRESHOLD
+                ? lines.parallelStream()
+                : lines.stream();
+
+        List<TaxResponse> responses = stream
+                .map(line -> calculateTaxesFixedPoint(
+                        rates,
+                        line.getValue(),
+                        line.getCurrency(),
+                        line.getHsCode(),
+                        line.getCountryCode() != null ? line.getCountryCode() : TariffEngine.DEFAULT_COUNTRY_CODE))
+                .collect(Collectors.toList());
+
+        BigDecimal totalCustomsDuty = BigDecimal.ZERO.setScale(3);
+        BigDecimal totalVat = BigDecimal.ZERO.setScale(3);
+        BigDecimal totalOtherTaxes = BigDecimal.ZERO.setScale(3);
+        for (TaxResponse response : responses) {
+            totalCustomsDuty = totalCustomsDuty.add(response.getCustomsDuty());
+            totalVat = totalVat.add(response.getVat());
+            totalOtherTaxes = totalOtherTaxes.add(response.getOtherTaxes());
+        }
+
+        return TaxBatchResponse.builder()
+                .lines(responses)
+                .count(responses.size())
+                .totalCustomsDuty(totalCustomsDuty)
+                .totalVat(totalVat)
+                .totalOtherTaxes(totalOtherTaxes)
+                .total(totalCustomsDuty.add(totalVat).add(totalOtherTaxes))
+                .currency("TND")
+                .exchangeRateVersion(rates.getVersion())
+                .build();
+    }
+
+    /**
+     * Variante en virgule fixe de {@link #calculateTaxes(BigDecimal, String, String, String)} :
+     * résultats identiques, sans BigDecimal intermédiaire.
+     */
+    public TaxResponse calculateTaxesFixedPoint(BigDecimal value, String currency, String hsCode, String countryCode) {
+        return calculateTaxesFixedPoint(exchangeRateService.current(), value, currency, hsCode, countryCode);
+    }
+
+    private TaxResponse calculateTaxesFixedPoint(ExchangeRateService.RateSnapshot rates, BigDecimal value,
+                                                 String currency, String hsCode, String countryCode) {
+        TariffEngine.TariffLine line = tariffEngine.resolve(hsCode, countryCode);
+        return computeTaxesFixedPoint(rates, value, currency, line.country(), line.dutyRate(), line.vatRate(),
+                line.dutyRateFixed(), line.vatRateFixed());
+    }
+
+    /**
+     * Variante en virgule fixe de {@link #calculateTaxes(BigDecimal, String, NgpCode, Country)}.
+     */
+    public TaxResponse calculateTaxesFixedPoint(BigDecimal value, String currency, NgpCode ngpCode, Country country) {
+        if (ngpCode == null) {
+            ngpCode = tariffEngine.getDefaultNgpCode();
         }
 
         if (country == null) {
-            country = createDefaultCountry();
+            country = tariffEngine.getDefaultCountry();
+        }
+
+        BigDecimal dutyRate = TariffEngine.computeDutyRate(ngpCode, country);
+        BigDecimal vatRate = TariffEngine.computeVatRate(ngpCode);
+        return computeTaxesFixedPoint(exchangeRateService.current(), value, currency, country, dutyRate, vatRate,
+                toFixedRate(dutyRate), toFixedRate(vatRate));
+    }
+
+    /**
+     * Même calcul que {@link #computeTaxes} en millimes (long), arrondis HALF_UP à 3 décimales
+     * à chaque étape. Repli sur le calcul BigDecimal si un montant sort de la plage représentable
+     * ou si une valeur en TND porte plus de 3 décimales.
+     */
+    private TaxResponse computeTaxesFixedPoint(ExchangeRateService.RateSnapshot rates,
+                                               BigDecimal value, String currency, Country country,
+                                               BigDecimal dutyRate, BigDecimal vatRate,
+                                               FixedPoint.Rate dutyRateFixed, FixedPoint.Rate vatRateFixed) {
+        if (dutyRateFixed == null || vatRateFixed == null) {
+            return computeTaxes(rates, value, currency, country, dutyRate, vatRate);
         }
 
+        try {
+            long valueInTnd = convertToTndMillimes(rates, value, currency, country);
+
+            long customsDuty = FixedPoint.multiply(valueInTnd, dutyRateFixed);
+
+            long fodec = FixedPoint.productLessThan(valueInTnd, FODEC_RATE_FIXED, MIN_FODEC_MILLIMES)
+                    ? MIN_FODEC_MILLIMES
+                    : FixedPoint.multiply(valueInTnd, FODEC_RATE_FIXED);
+            long ccc = FixedPoint.multiply(valueInTnd, CCC_RATE_FIXED);
+            long paf = FixedPoint.multiply(valueInTnd, TVA_RECOVERY_RATE_FIXED);
+
+            long vatBase = Math.addExact(Math.addExact(valueInTnd, customsDuty), fodec);
+            long vat = FixedPoint.multiply(vatBase, vatRateFixed);
+
+            long otherTaxes = Math.addExact(Math.addExact(fodec, ccc), paf);
+            long total = Math.addExact(Math.addExact(customsDuty, vat), otherTaxes);
+
+            return TaxResponse.builder()
+                    .customsDuty(FixedPoint.toBigDecimal(customsDuty))
+                    .vat(FixedPoint.toBigDecimal(vat))
+                    .otherTaxes(FixedPoint.toBigDecimal(otherTaxes))
+                    .total(FixedPoint.toBigDecimal(total))
+                    .currency("TND")
+                    .exchangeRateVersion(rates.getVersion())
+                    .build();
+        } catch (ArithmeticException e) {
+            return computeTaxes(rates, value, currency, country, dutyRate, vatRate);
+        }
+    }
+
+    private long convertToTndMillimes(ExchangeRateService.RateSnapshot rates, BigDecimal value,
+                                      String currency, Country country) {
+        if ("TND".equalsIgnoreCase(currency)) {
+            return FixedPoint.toMillimes(value);
+        }
+
+        FixedPoint.Rate exchangeRate = rates.fixedRate(currency);
+        if (exchangeRate == null) {
+            exchangeRate = FixedPoint.Rate.of(rates.resolve(currency, country));
+        }
+        return FixedPoint.multiplyToMillimes(value, exchangeRate);
+    }
+
+    private static FixedPoint.Rate toFixedRate(BigDecimal rate) {
+        try {
+            return FixedPoint.Rate.of(rate);
+        } catch (ArithmeticException e) {
+            return null;
+        }
+    }
+
+    // ==================== CALCUL DE RÉFÉRENCE (BigDecimal) ====================
+
+    private TaxResponse computeTaxes(ExchangeRateService.RateSnapshot rates,
+                                     BigDecimal value, String currency, Country country,
+                                     BigDecimal dutyRate, BigDecimal vatRate) {
         // Conversion en TND
-        BigDecimal valueInTnd = convertToTnd(value, currency, country);
+        BigDecimal valueInTnd = convertToTnd(rates, value, currency, country);
 
         // Taux de droit de douane (avec préférences selon pays d'origine)
-        BigDecimal dutyRate = getEffectiveDutyRate(ngpCode, country);
         BigDecimal customsDuty = valueInTnd.multiply(dutyRate).setScale(3, RoundingMode.HALF_UP);
 
         // Taxes additionnelles
@@ -95,7 +228,6 @@ public class TaxCalculatorService {
 
         // TVA
         BigDecimal vatBase = valueInTnd.add(customsDuty).add(fodec);
-        BigDecimal vatRate = getEffectiveVatRate(ngpCode);
         BigDecimal vat = vatBase.multiply(vatRate).setScale(3, RoundingMode.HALF_UP);
 
         // Autres taxes
@@ -110,64 +242,10 @@ public class TaxCalculatorService {
                 .otherTaxes(otherTaxes)
                 .total(total)
                 .currency("TND")
+                .exchangeRateVersion(rates.getVersion())
                 .build();
     }
 
-    private BigDecimal getEffectiveDutyRate(NgpCode ngpCode, Country country) {
-        BigDecimal standardRate = ngpCode.getDutyRate();
-
-        // Application des préférences tarifaires selon l'origine
-        if (Boolean.TRUE.equals(country.getHasFreeTradeAgreement())) {
-            // Accord de libre-échange avec la Tunisie
-            if (country.getPreferentialDutyRate() != null) {
-                return country.getPreferentialDutyRate();
-            }
-            return BigDecimal.ZERO;
-        }
-
-        // Pays de l'UE (accord ALECA)
-        if (Boolean.TRUE.equals(country.getIsEuMember())) {
-            return BigDecimal.ZERO;
-        }
-
-        // Pays bénéficiant du Système de Préférences Généralisées (SPG)
-        if (isGspEligible(country)) {
-            return standardRate.multiply(new BigDecimal("0.67")).setScale(4, RoundingMode.HALF_UP); // Réduction de 33%
-        }
-
-        return standardRate;
-    }
-
-    private BigDecimal getEffectiveVatRate(NgpCode ngpCode) {
-        String categoryCode = ngpCode.getCategoryCode();
-        String ngpCodeStr = ngpCode.getNgpCode();
-        String productNameFr = ngpCode.getProductNameFr();
-
-        // Produits de première nécessité : TVA 7%
-        if (REDUCED_VAT_CATEGORIES.contains(categoryCode)) {
-            return new BigDecimal("0.07");
-        }
-
-        // Codes spécifiques à TVA réduite
-        if (ngpCodeStr != null && ngpCodeStr.length() >= 2) {
-            String prefix = ngpCodeStr.substring(0, 2);
-            if (REDUCED_VAT_CODES.contains(prefix)) {
-                return new BigDecimal("0.07");
-            }
-        }
-
-        // Équipements médicaux : TVA 7%
-        if (productNameFr != null &&
-                (productNameFr.contains("chirurgical") ||
-                        productNameFr.contains("médical") ||
-                        productNameFr.contains("surgical"))) {
-            return new BigDecimal("0.07");
-        }
-
-        // Taux normal 19%
-        return ngpCode.getVatRate() != null ? ngpCode.getVatRate() : new BigDecimal("0.19");
-    }
-
     private BigDecimal calculateFodec(BigDecimal value) {
         BigDecimal fodec = value.multiply(FODEC_RATE);
         if (fodec.compareTo(MIN_FODEC_AMOUNT) < 0) {
@@ -176,79 +254,13 @@ public class TaxCalculatorService {
         return fodec.setScale(3, RoundingMode.HALF_UP);
     }
 
-    private BigDecimal convertToTnd(BigDecimal value, String currency, Country country) {
+    private BigDecimal convertToTnd(ExchangeRateService.RateSnapshot rates, BigDecimal value,
+                                    String currency, Country country) {
         if ("TND".equalsIgnoreCase(currency)) {
             return value;
         }
 
-        BigDecimal exchangeRate = getExchangeRate(country, currency);
+        BigDecimal exchangeRate = rates.resolve(currency, country);
         return value.multiply(exchangeRate).setScale(3, RoundingMode.HALF_UP);
     }
-
-    private BigDecimal getExchangeRate(Country country, String currency) {
-        // D'abord essayer le taux du pays
-        if (country != null && country.getExchangeRateToTnd() != null) {
-            return country.getExchangeRateToTnd();
-        }
-
-        // Sinon taux par défaut selon la devise
-        switch (currency.toUpperCase()) {
-            case "EUR":
-                return DEFAULT_EUR_TO_TND;
-            case "USD":
-                return DEFAULT_USD_TO_TND;
-            case "GBP":
-                return DEFAULT_GBP_TO_TND;
-            case "CHF":
-                return new BigDecimal("3.50");
-            case "TRY":
-                return new BigDecimal("0.11");
-            case "CNY":
-                return new BigDecimal("0.43");
-            case "AED":
-                return new BigDecimal("0.84");
-            case "SAR":
-                return new BigDecimal("0.83");
-            case "MAD":
-                return new BigDecimal("0.31");
-            case "DZD":
-                return new BigDecimal("0.023");
-            case "LYD":
-                return new BigDecimal("0.64");
-            default:
-                return BigDecimal.ONE;
-        }
-    }
-
-    private boolean isGspEligible(Country country) {
-        return GSP_COUNTRIES.contains(country.getCode());
-    }
-
-    private NgpCode createDefaultNgpCode() {
-        return NgpCode.builder()
-                .ngpCode("DEFAULT")
-                .categoryCode("99")
-                .productNameFr("Produits divers")
-                .productNameAr("منتجات متنوعة")
-                .productNameEn("Miscellaneous products")
-                .productType("INDUSTRIEL")
-                .dutyRate(new BigDecimal("0.15"))
-                .vatRate(new BigDecimal("0.19"))
-                .additionalTaxesRate(new BigDecimal("0.02"))
-                .isActive(true)
-                .build();
-    }
-
-    private Country createDefaultCountry() {
-        return Country.builder()
-                .code("FR")
-                .name("France")
-                .dialCode("+33")
-                .exchangeRateToTnd(new BigDecimal("3.30"))
-                .hasFreeTradeAgreement(true)
-                .preferentialDutyRate(BigDecimal.ZERO)
-                .isEuMember(true)
-                .requiresCertificateOfOrigin(false)
-                .build();
-    }
-}
\ No newline at end of file
+}
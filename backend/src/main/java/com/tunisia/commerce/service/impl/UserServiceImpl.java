@@ -47,6 +47,7 @@ public class UserServiceImpl implements UserService {
     private final StructureInterneRepository structureRepository;
     private final BanqueRepository banqueRepository;
     private final DouaneRepository douaneRepository;
+    private final PrincipalCacheService principalCacheService;
 
 
 
@@ -392,6 +393,7 @@ public class UserServiceImpl implements UserService {
                     LocalDateTime unlockTime = lastAttempt.plusMinutes(30);
                     if (LocalDateTime.now().isAfter(unlockTime)) {
                         userRepository.lockAccount(request.getEmail(), UserStatus.ACTIF.name());
+                        principalCacheService.invalidateAfterCommit(null, request.getEmail());
                         logger.info("Compte automatiquement débloqué pour: "+ request.getEmail());
                     } else {
                         long minutesRemaining = Duration.between(LocalDateTime.now(), unlockTime).toMinutes();
@@ -459,6 +461,7 @@ public class UserServiceImpl implements UserService {
                 if (currentAttempts >= 5) {
                     userRepository.lockAccount(request.getEmail(), UserStatus.INACTIF.name());
                     userRepository.flush();
+                    principalCacheService.invalidateAfterCommit(null, request.getEmail());
                     logger.info("⚠️ Compte désactivé après "+ currentAttempts+" tentatives");
                     throw AuthException.maxAttemptsExceeded(30);
                 }
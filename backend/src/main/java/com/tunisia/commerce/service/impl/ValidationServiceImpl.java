@@ -1,5 +1,6 @@
 package com.tunisia.commerce.service.impl;
 
+import com.tunisia.commerce.cache.ReadModelCaches;
 import com.tunisia.commerce.dto.produits.DemandeEnregistrementDTO;
 import com.tunisia.commerce.dto.produits.ProduitDTO;
 import com.tunisia.commerce.dto.validation.DocumentDTO;
@@ -11,6 +12,7 @@ import com.tunisia.commerce.repository.*;
 import com.tunisia.commerce.service.ValidationService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.cache.annotation.Cacheable;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -30,6 +32,7 @@ public class ValidationServiceImpl implements ValidationService {
     private final InstanceValidationRepository instanceValidationRepository;
     private final DemandeValidateurRepository demandeValidateurRepository;
     private final StructureCompetenceRepository structureCompetenceRepository;
+    private final CatalogueSearchService catalogueSearchService;
 
     // ==================== MÉTHODES PRINCIPALES ====================
 
@@ -190,6 +193,7 @@ public class ValidationServiceImpl implements ValidationService {
      * ✅ NOUVELLE MÉTHODE : Compter les demandes en attente pour une instance
      */
     @Override
+    @Cacheable(cacheNames = ReadModelCaches.DEMANDES_EN_ATTENTE_INSTANCE, key = "#instanceId", sync = true)
     public long countPendingDemandesByInstance(Long instanceId) {
         return demandeValidateurRepository.countByInstanceIdAndValidationStatus(instanceId, ValidationStatus.EN_ATTENTE);
     }
@@ -267,6 +271,12 @@ public class ValidationServiceImpl implements ValidationService {
                     "La demande est déjà " + demande.getStatus());
         }
 
+        // Pas d'approbation tant qu'une pièce attend le verdict antivirus
+        if (documentRepository.existsByDemandeIdAndStatus(demandeId, DocumentStatus.QUARANTAINE)) {
+            throw new ValidationException("DOCUMENTS_IN_QUARANTINE",
+                    "Des documents de la demande sont en cours d'analyse antivirus");
+        }
+
         // ✅ Valider les documents autorisés IMMÉDIATEMENT
         Set<String> allowedDocTypes = getAllowedDocumentTypesForStructure(agent.getStructure());
         validateVisibleDocumentsForDemande(demandeId, agentId, DocumentStatus.VALIDE,
@@ -306,6 +316,7 @@ public class ValidationServiceImpl implements ValidationService {
         }
 
         demande = demandeRepository.save(demande);
+        catalogueSearchService.refreshDemandeAfterCommit(demande.getId());
         return mapToDTO(demande);
     }
 
@@ -348,6 +359,7 @@ public class ValidationServiceImpl implements ValidationService {
         demande.setDecisionComment("Rejeté par " + agent.getStructure().getOfficialName() + ": " + reason);
 
         demande = demandeRepository.save(demande);
+        catalogueSearchService.refreshDemandeAfterCommit(demande.getId());
 
 
         return mapToDTO(demande);
@@ -385,6 +397,7 @@ public class ValidationServiceImpl implements ValidationService {
         demande.setStatus(DemandeStatus.EN_ATTENTE_INFO);
         demande.setDecisionComment(comment);
         demande = demandeRepository.save(demande);
+        catalogueSearchService.refreshDemandeAfterCommit(demande.getId());
 
 
         return mapToDTO(demande);
@@ -411,6 +424,14 @@ public class ValidationServiceImpl implements ValidationService {
             throw new ValidationException("INVALID_STATUS", "Statut invalide: " + status);
         }
 
+        // Seul le verdict antivirus (DocumentScanService) fait entrer ou sortir un document de quarantaine
+        if (document.getStatus() == DocumentStatus.QUARANTAINE) {
+            throw new ValidationException("DOCUMENT_IN_QUARANTINE", "Document en cours d'analyse antivirus");
+        }
+        if (newStatus == DocumentStatus.QUARANTAINE) {
+            throw new ValidationException("INVALID_STATUS", "Statut réservé à l'analyse antivirus: " + status);
+        }
+
         document.setStatus(newStatus);
         document.setValidationComment(comment);
         document.setValidatedAt(LocalDateTime.now());
@@ -0,0 +1,111 @@
+package com.tunisia.commerce.util;
+
+import java.math.BigDecimal;
+
+/**
+ * Arithmétique en virgule fixe pour les montants en millimes (TND à l'échelle 3).
+ *
+ * Les arrondis reproduisent exactement {@code setScale(3, RoundingMode.HALF_UP)} :
+ * à égale distance, on s'éloigne de zéro. Tout dépassement de capacité lève une
+ * {@link ArithmeticException}, l'appelant repasse alors sur le calcul BigDecimal.
+ */
+public final class FixedPoint {
+
+    public static final int SCALE = 3;
+
+    private static final long[] POW10 = new long[19];
+
+    static {
+        POW10[0] = 1L;
+        for (int i = 1; i < POW10.length; i++) {
+            POW10[i] = POW10[i - 1] * 10L;
+        }
+    }
+
+    private FixedPoint() {
+    }
+
+    /**
+     * Taux décimal sous forme entière : valeur = unscaled / 10^scale.
+     */
+    public record Rate(long unscaled, int scale) {
+
+        public static Rate of(BigDecimal rate) {
+            if (rate == null) {
+                return null;
+            }
+            BigDecimal r = rate.scale() < 0 ? rate.setScale(0) : rate;
+            if (r.scale() >= POW10.length) {
+                throw new ArithmeticException("Échelle de taux non supportée: " + r.scale());
+            }
+            return new Rate(r.unscaledValue().longValueExact(), r.scale());
+        }
+
+        public BigDecimal toBigDecimal() {
+            return BigDecimal.valueOf(unscaled, scale);
+        }
+    }
+
+    /**
+     * Montant exact en millimes ; échoue si la valeur a plus de 3 décimales.
+     */
+    public static long toMillimes(BigDecimal value) {
+        BigDecimal v = value.scale() < 0 ? value.setScale(0) : value;
+        if (v.scale() > SCALE) {
+            throw new ArithmeticException("Montant avec plus de 3 décimales: " + value);
+        }
+        return Math.multiplyExact(v.unscaledValue().longValueExact(), POW10[SCALE - v.scale()]);
+    }
+
+    /**
+     * {@code value × rate} arrondi HALF_UP à l'échelle 3, en millimes.
+     */
+    public static long multiplyToMillimes(BigDecimal value, Rate rate) {
+        BigDecimal v = value.scale() < 0 ? value.setScale(0) : value;
+        long product = Math.multiplyExact(v.unscaledValue().longValueExact(), rate.unscaled());
+        int productScale = v.scale() + rate.scale();
+        if (productScale >= SCALE) {
+            return divideHalfUp(product, pow10(productScale - SCALE));
+        }
+        return Math.multiplyExact(product, POW10[SCALE - productScale]);
+    }
+
+    /**
+     * {@code millimes × rate} arrondi HALF_UP à l'échelle 3.
+     */
+    public static long multiply(long millimes, Rate rate) {
+        return divideHalfUp(Math.multiplyExact(millimes, rate.unscaled()), POW10[rate.scale()]);
+    }
+
+    /**
+     * Vrai si {@code millimes × rate} (non arrondi) est strictement inférieur à {@code thresholdMillimes}.
+     */
+    public static boolean productLessThan(long millimes, Rate rate, long thresholdMillimes) {
+        return Math.multiplyExact(millimes, rate.unscaled())
+                < Math.multiplyExact(thresholdMillimes, POW10[rate.scale()]);
+    }
+
+    public static BigDecimal toBigDecimal(long millimes) {
+        return BigDecimal.valueOf(millimes, SCALE);
+    }
+
+    private static long pow10(int exponent) {
+        if (exponent >= POW10.length) {
+            throw new ArithmeticException("Échelle non supportée: " + exponent);
+        }
+        return POW10[exponent];
+    }
+
+    private static long divideHalfUp(long numerator, long divisor) {
+        if (divisor == 1L) {
+            return numerator;
+        }
+        long quotient = numerator / divisor;
+        long remainder = numerator % divisor;
+        // |reste| >= diviseur / 2 : on s'éloigne de zéro (sans débordement, diviseur <= 10^18)
+        if (Math.abs(remainder) >= divisor - Math.abs(remainder)) {
+            quotient += Long.signum(numerator);
+        }
+        return quotient;
+    }
+}
@@ -0,0 +1,117 @@
+package com.tunisia.commerce.util;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Normalisation de texte pour la recherche : minuscules, suppression des accents
+ * français et des signes diacritiques arabes (harakat, hamza, tatweel).
+ */
+public final class TextNormalizer {
+
+    private static final Pattern DIACRITICS = Pattern.compile("\\p{M}+");
+    private static final Pattern TOKEN_SEPARATORS = Pattern.compile("[^\\p{L}\\p{N}]+");
+    // "0901.21" ou "0901 21" -> "090121" (codes SH/NGP saisis avec séparateurs)
+    private static final Pattern DIGIT_SEPARATORS = Pattern.compile("(?<=\\d)[.\\-\\s](?=\\d)");
+    private static final Pattern NON_DIGITS = Pattern.compile("\\D+");
+
+    private static final Set<String> STOP_WORDS = Set.of(
+            "de", "du", "des", "la", "le", "les", "un", "une", "et", "en", "au", "aux",
+            "pour", "par", "sur", "avec", "the", "of", "and", "for"
+    );
+
+    private TextNormalizer() {
+    }
+
+    /**
+     * Plie un texte : minuscules sans accents, lettres arabes unifiées.
+     */
+    public static String fold(String text) {
+        if (text == null || text.isEmpty()) {
+            return "";
+        }
+
+        String decomposed = Normalizer.normalize(text, Normalizer.Form.NFD);
+        String stripped = DIACRITICS.matcher(decomposed).replaceAll("");
+
+        StringBuilder sb = new StringBuilder(stripped.length());
+        for (int i = 0; i < stripped.length(); i++) {
+            char c = stripped.charAt(i);
+            switch (c) {
+                case 'ـ': // tatweel
+                    break;
+                case 'ة': // ta marbuta
+                    sb.append('ه');
+                    break;
+                case 'ى': // alif maqsura
+                    sb.append('ي');
+                    break;
+                case 'œ':
+                case 'Œ':
+                    sb.append("oe");
+                    break;
+                case 'æ':
+                case 'Æ':
+                    sb.append("ae");
+                    break;
+                default:
+                    if (c >= '٠' && c <= '٩') {        // chiffres arabes-indiens
+                        sb.append((char) ('0' + (c - '٠')));
+                    } else if (c >= '۰' && c <= '۹') { // chiffres persans
+                        sb.append((char) ('0' + (c - '۰')));
+                    } else {
+                        sb.append(c);
+                    }
+            }
+        }
+        return sb.toString().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Découpe un texte plié en termes indexables (mots vides et lettres isolées exclus).
+     */
+    public static List<String> tokenize(String text) {
+        List<String> tokens = new ArrayList<>();
+        String folded = DIGIT_SEPARATORS.matcher(fold(text)).replaceAll("");
+        if (folded.isEmpty()) {
+            return tokens;
+        }
+
+        for (String token : TOKEN_SEPARATORS.split(folded)) {
+            if (token.isEmpty() || STOP_WORDS.contains(token)) {
+                continue;
+            }
+            if (token.length() == 1 && !Character.isDigit(token.charAt(0))) {
+                continue;
+            }
+            tokens.add(token);
+        }
+        return tokens;
+    }
+
+    /**
+     * Ne conserve que les chiffres d'un code SH/NGP ("0901.21.00" -> "09012100").
+     */
+    public static String digitsOnly(String code) {
+        if (code == null) {
+            return "";
+        }
+        return NON_DIGITS.matcher(fold(code)).replaceAll("");
+    }
+
+    public static boolean isNumeric(String token) {
+        if (token == null || token.isEmpty()) {
+            return false;
+        }
+        for (int i = 0; i < token.length(); i++) {
+            if (!Character.isDigit(token.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,63 @@
+package com.tunisia.commerce.benchmark;
+
+import com.tunisia.commerce.entity.AuditLog;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sérialisation JSON des détails d'une entrée d'audit, écrite à chaque action tracée,
+ * et relecture telle que faite par l'analyse des patterns d'audit.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AuditLogBenchmark {
+
+    private Map<String, Object> details;
+    private AuditLog serialized;
+
+    @Setup
+    public void setUp() {
+        details = new LinkedHashMap<>();
+        details.put("demandeId", 12345L);
+        details.put("ancienStatut", "SOUMISE");
+        details.put("nouveauStatut", "VALIDEE");
+        details.put("commentaire", "Dossier complet, conformité vérifiée par l'instance de validation");
+        details.put("dateDecision", LocalDateTime.of(2026, 3, 14, 10, 30));
+        details.put("produits", List.of("08051000", "15091000", "61091000"));
+        details.put("montantTotal", 48_750.125);
+        details.put("contexte", Map.of("ip", "196.203.10.10", "navigateur", "Firefox", "mobile", false));
+
+        serialized = new AuditLog();
+        serialized.setDetailsMap(details);
+    }
+
+    @Benchmark
+    public String serialize() {
+        AuditLog auditLog = new AuditLog();
+        auditLog.setDetailsMap(details);
+        return auditLog.getDetails();
+    }
+
+    @Benchmark
+    public Map<String, Object> deserialize() {
+        return serialized.getDetailsMap();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(AuditLogBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
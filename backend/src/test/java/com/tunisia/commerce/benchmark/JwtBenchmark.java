@@ -0,0 +1,50 @@
+package com.tunisia.commerce.benchmark;
+
+import com.tunisia.commerce.config.JwtUtil;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Émission et validation d'un jeton JWT (HS256), exécutées à chaque connexion
+ * et à chaque requête authentifiée.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JwtBenchmark {
+
+    private JwtUtil jwtUtil;
+    private String token;
+
+    @Setup
+    public void setUp() {
+        jwtUtil = new JwtUtil();
+        ReflectionTestUtils.setField(jwtUtil, "secret", "cle-de-benchmark-hs256-au-moins-256-bits-0123456789");
+        ReflectionTestUtils.setField(jwtUtil, "expiration", 86_400_000L);
+        token = jwtUtil.generateToken("exportateur@example.com", "EXPORTATEUR");
+    }
+
+    @Benchmark
+    public String generate() {
+        return jwtUtil.generateToken("exportateur@example.com", "EXPORTATEUR");
+    }
+
+    @Benchmark
+    public boolean validate() {
+        return jwtUtil.validateToken(token);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(JwtBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
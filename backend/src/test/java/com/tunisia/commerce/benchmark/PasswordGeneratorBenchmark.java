@@ -0,0 +1,85 @@
+package com.tunisia.commerce.benchmark;
+
+import com.tunisia.commerce.entity.ExportateurEtranger;
+import com.tunisia.commerce.entity.InstanceValidation;
+import com.tunisia.commerce.entity.StructureInterne;
+import com.tunisia.commerce.entity.User;
+import com.tunisia.commerce.enums.StructureType;
+import com.tunisia.commerce.enums.UserRole;
+import com.tunisia.commerce.util.PasswordGenerator;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Génération des mots de passe initiaux pour chaque type de compte créé par l'administration.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PasswordGeneratorBenchmark {
+
+    private ExportateurEtranger exportateur;
+    private InstanceValidation instance;
+    private User admin;
+
+    @Setup
+    public void setUp() {
+        exportateur = ExportateurEtranger.builder()
+                .email("contact@exportateur.fr")
+                .role(UserRole.EXPORTATEUR)
+                .raisonSociale("Société Méditerranéenne d'Export")
+                .numeroRegistreCommerce("RCS-PARIS-123456789")
+                .paysOrigine("FR")
+                .dateCreation(LocalDateTime.of(2024, 5, 2, 9, 0))
+                .build();
+        instance = InstanceValidation.builder()
+                .email("validation@ministere.tn")
+                .role(UserRole.INSTANCE_VALIDATION)
+                .structure(StructureInterne.builder()
+                        .officialName("Ministère du Commerce")
+                        .code("MCE_DGCE")
+                        .type(StructureType.MINISTRY)
+                        .build())
+                .slaTraitementJours(5)
+                .dateCreation(LocalDateTime.of(2024, 5, 2, 9, 0))
+                .build();
+        admin = User.builder()
+                .email("admin@commerce.tn")
+                .role(UserRole.ADMIN)
+                .build();
+    }
+
+    @Benchmark
+    public String exportateur() {
+        return PasswordGenerator.generatePasswordForUser(exportateur);
+    }
+
+    @Benchmark
+    public String instanceValidation() {
+        return PasswordGenerator.generatePasswordForUser(instance);
+    }
+
+    @Benchmark
+    public String admin() {
+        return PasswordGenerator.generatePasswordForUser(admin);
+    }
+
+    @Benchmark
+    public String simple() {
+        return PasswordGenerator.generateSimplePassword();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(PasswordGeneratorBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,110 @@
+package com.tunisia.commerce.benchmark;
+
+import com.tunisia.commerce.repository.ExportateurRepository;
+import com.tunisia.commerce.service.impl.IpApiService;
+import com.tunisia.commerce.service.impl.RiskAnalysisService;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Calcul du score de risque d'un exportateur à partir de données IP, email et téléphone
+ * figées : seules les règles de scoring sont mesurées, sans appel réseau ni base.
+ *
+ * Le profil « suspect » déclenche la plupart des règles (VPN, pays à risque, email jetable,
+ * numéro invalide), le profil « sain » n'en déclenche aucune.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RiskAnalysisBenchmark {
+
+    private static final String IP_SAINE = "196.203.10.10";
+    private static final String IP_SUSPECTE = "185.220.101.1";
+
+    private RiskAnalysisService service;
+
+    /**
+     * Réponses figées du client ip-api, sans appel réseau.
+     */
+    private static class StubIpApiService extends IpApiService {
+
+        StubIpApiService() {
+            super(null);
+        }
+
+        @Override
+        public EnhancedIpAnalysis getEnhancedIpAnalysis(String ipAddress) {
+            boolean suspect = IP_SUSPECTE.equals(ipAddress);
+            EnhancedIpAnalysis analysis = new EnhancedIpAnalysis();
+            analysis.setIpAddress(ipAddress);
+            analysis.setCountry(suspect ? "Iran" : "France");
+            analysis.setCountryCode(suspect ? "IR" : "FR");
+            analysis.setCity(suspect ? "Tehran" : "Paris");
+            analysis.setVpn(suspect);
+            analysis.setProxyDetected(suspect);
+            analysis.setHosting(suspect);
+            analysis.setIsp(suspect ? "Hosting Ltd" : "Orange");
+            analysis.setRiskScore(suspect ? 80 : 0);
+            return analysis;
+        }
+
+        @Override
+        public EmailValidationResponse validateEmail(String email) {
+            boolean suspect = email.endsWith("@mailinator.com");
+            EmailValidationResponse response = new EmailValidationResponse();
+            response.setEmail(email);
+            response.setValidSyntax(true);
+            response.setDeliverable(!suspect);
+            response.setDisposable(suspect);
+            response.setQualityScore(suspect ? 10 : 90);
+            return response;
+        }
+
+        @Override
+        public PhoneValidationResponse validatePhone(String phoneNumber, String countryCode) {
+            boolean suspect = phoneNumber.length() < 8;
+            PhoneValidationResponse response = new PhoneValidationResponse();
+            response.setPhoneNumber(phoneNumber);
+            response.setValid(!suspect);
+            response.setCountryCode(countryCode);
+            response.setLineType(suspect ? "voip" : "mobile");
+            return response;
+        }
+    }
+
+    @Setup
+    public void setUp() {
+        ExportateurRepository exportateurRepository = mock(ExportateurRepository.class);
+        when(exportateurRepository.findByEmail(anyString())).thenReturn(Optional.empty());
+        // Exportateur inconnu : le critère audit n'est pas évalué et le service n'est jamais appelé
+        service = new RiskAnalysisService(new StubIpApiService(), null, exportateurRepository);
+    }
+
+    @Benchmark
+    public Object profilSain() {
+        return service.analyzeExporter(IP_SAINE, "FR", "contact@exportateur.fr", "+33612345678");
+    }
+
+    @Benchmark
+    public Object profilSuspect() {
+        return service.analyzeExporter(IP_SUSPECTE, "DE", "x@mailinator.com", "+4912");
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(RiskAnalysisBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
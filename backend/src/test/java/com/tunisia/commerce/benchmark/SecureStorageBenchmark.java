@@ -0,0 +1,84 @@
+package com.tunisia.commerce.benchmark;
+
+import com.tunisia.commerce.service.impl.SecureStorageService;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.util.ReflectionUtils;
+
+import java.lang.reflect.Method;
+import java.util.Base64;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Chiffrement AES/GCM, déchiffrement et empreinte SHA-256 d'un document en mémoire,
+ * pour des tailles allant de la pièce jointe légère au scan volumineux.
+ *
+ * Les primitives sont privées au service : elles sont appelées par réflexion, la méthode
+ * étant résolue une seule fois à l'initialisation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SecureStorageBenchmark {
+
+    @Param({"1024", "65536", "1048576", "8388608"})
+    private int size;
+
+    private SecureStorageService service;
+    private Method encrypt;
+    private Method decrypt;
+    private Method sha256;
+    private byte[] plaintext;
+    private byte[] encrypted;
+
+    @Setup
+    public void setUp() throws Exception {
+        Random random = new Random(42L);
+        byte[] key = new byte[32];
+        random.nextBytes(key);
+        service = new SecureStorageService(null, null);
+        ReflectionTestUtils.setField(service, "encryptionKey", Base64.getEncoder().encodeToString(key));
+
+        encrypt = privateMethod("encryptWithIV");
+        decrypt = privateMethod("decryptWithIV");
+        sha256 = privateMethod("computeSHA256");
+
+        plaintext = new byte[size];
+        random.nextBytes(plaintext);
+        encrypted = (byte[]) encrypt.invoke(service, (Object) plaintext);
+    }
+
+    @Benchmark
+    public Object encrypt() throws Exception {
+        return encrypt.invoke(service, (Object) plaintext);
+    }
+
+    @Benchmark
+    public Object decrypt() throws Exception {
+        return decrypt.invoke(service, (Object) encrypted);
+    }
+
+    @Benchmark
+    public Object sha256() throws Exception {
+        return sha256.invoke(service, (Object) plaintext);
+    }
+
+    private static Method privateMethod(String name) {
+        Method method = ReflectionUtils.findMethod(SecureStorageService.class, name, byte[].class);
+        ReflectionUtils.makeAccessible(method);
+        return method;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(SecureStorageBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
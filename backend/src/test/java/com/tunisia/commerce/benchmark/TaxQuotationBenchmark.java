@@ -0,0 +1,88 @@
+package com.tunisia.commerce.benchmark;
+
+import com.tunisia.commerce.dto.tax.TaxResponse;
+import com.tunisia.commerce.entity.Country;
+import com.tunisia.commerce.entity.NgpCode;
+import com.tunisia.commerce.service.impl.ExchangeRateService;
+import com.tunisia.commerce.service.impl.TariffEngine;
+import com.tunisia.commerce.service.impl.TaxCalculatorService;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.math.BigDecimal;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Débit de cotation d'un lot de 500 lignes : calcul BigDecimal de référence
+ * contre calcul en virgule fixe (millimes).
+ *
+ * Lancement : {@code mvn -Pbenchmark verify} pour toute la suite (résultats JSON dans
+ * {@code target/jmh-result.json}), ou {@link #main(String[])} avec le classpath de test.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TaxQuotationBenchmark {
+
+    private static final int LINES = 500;
+    private static final String[] CURRENCIES = {"TND", "EUR", "USD", "CNY"};
+
+    private TaxCalculatorService service;
+    private BigDecimal[] values;
+    private String[] currencies;
+    private NgpCode[] ngpCodes;
+    private Country[] countries;
+
+    @Setup
+    public void setUp() {
+        service = new TaxCalculatorService(new TariffEngine(null, null), new ExchangeRateService(null, null));
+        Random random = new Random(42L);
+        values = new BigDecimal[LINES];
+        currencies = new String[LINES];
+        ngpCodes = new NgpCode[LINES];
+        countries = new Country[LINES];
+        for (int i = 0; i < LINES; i++) {
+            values[i] = BigDecimal.valueOf(random.nextInt(50_000_000), random.nextInt(4));
+            currencies[i] = CURRENCIES[random.nextInt(CURRENCIES.length)];
+            ngpCodes[i] = NgpCode.builder()
+                    .ngpCode(String.format("%08d", random.nextInt(100_000_000)))
+                    .categoryCode(String.format("%02d", 1 + random.nextInt(97)))
+                    .dutyRate(BigDecimal.valueOf(random.nextInt(40), 2))
+                    .vatRate(new BigDecimal("0.19"))
+                    .build();
+            countries[i] = Country.builder()
+                    .code(i % 3 == 0 ? "CN" : "TR")
+                    .exchangeRateToTnd(BigDecimal.valueOf(100 + random.nextInt(4_000), 3))
+                    .build();
+        }
+    }
+
+    @Benchmark
+    public void bigDecimal(Blackhole blackhole) {
+        for (int i = 0; i < LINES; i++) {
+            TaxResponse response = service.calculateTaxes(values[i], currencies[i], ngpCodes[i], countries[i]);
+            blackhole.consume(response);
+        }
+    }
+
+    @Benchmark
+    public void fixedPoint(Blackhole blackhole) {
+        for (int i = 0; i < LINES; i++) {
+            TaxResponse response = service.calculateTaxesFixedPoint(values[i], currencies[i], ngpCodes[i], countries[i]);
+            blackhole.consume(response);
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(TaxQuotationBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
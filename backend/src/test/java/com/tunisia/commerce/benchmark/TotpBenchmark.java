@@ -0,0 +1,59 @@
+package com.tunisia.commerce.benchmark;
+
+import com.tunisia.commerce.service.impl.TwoFactorAuthService;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Vérification d'un code TOTP à la connexion en deux étapes : code valide et code erroné
+ * (le vérificateur parcourt alors toute la fenêtre de tolérance).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TotpBenchmark {
+
+    private TwoFactorAuthService service;
+    private String secret;
+    private String validCode;
+    private String wrongCode;
+
+    @Setup
+    public void setUp() {
+        service = new TwoFactorAuthService();
+        secret = service.generateSecret();
+    }
+
+    /**
+     * Code courant renouvelé à chaque itération : une itération (2 s) reste dans la
+     * fenêtre de tolérance du vérificateur même si la période de 30 s change entre-temps.
+     */
+    @Setup(Level.Iteration)
+    public void refreshCodes() {
+        validCode = service.generateCurrentCode(secret);
+        wrongCode = String.format("%06d", (Integer.parseInt(validCode) + 500_000) % 1_000_000);
+    }
+
+    @Benchmark
+    public boolean codeValide() {
+        return service.verifyCode(secret, validCode);
+    }
+
+    @Benchmark
+    public boolean codeErrone() {
+        return service.verifyCode(secret, wrongCode);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(TotpBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,128 @@
+package com.tunisia.commerce.cache;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.cache.Cache;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import org.springframework.data.redis.connection.DefaultMessage;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Caches à deux niveaux avec un tier partagé en mémoire à la place de Redis : remplissage des
+ * niveaux, invalidation diffusée et reçue, caches purement locaux et métriques par tier.
+ */
+class TwoLevelCacheManagerTest {
+
+    private static final String PARTAGE = "partage";
+    private static final String LOCAL = "local";
+
+    private ConcurrentMapCacheManager farCacheManager;
+    private StringRedisTemplate redisTemplate;
+    private SimpleMeterRegistry meterRegistry;
+    private TwoLevelCacheManager cacheManager;
+    private final AtomicInteger loads = new AtomicInteger();
+
+    @BeforeEach
+    void setUp() {
+        farCacheManager = new ConcurrentMapCacheManager(PARTAGE);
+        redisTemplate = mock(StringRedisTemplate.class);
+        meterRegistry = new SimpleMeterRegistry();
+        cacheManager = new TwoLevelCacheManager(Map.of(
+                PARTAGE, new ReadModelCaches.Policy(100, Duration.ofMinutes(1), Duration.ofMinutes(10)),
+                LOCAL, new ReadModelCaches.Policy(100, Duration.ofMinutes(1), Duration.ZERO)),
+                farCacheManager, redisTemplate, mock(RedisMessageListenerContainer.class), meterRegistry, true);
+        cacheManager.initializeCaches();
+    }
+
+    @Test
+    void missLoadsOnceAndFillsBothTiers() {
+        Cache cache = cacheManager.getCache(PARTAGE);
+
+        assertEquals(List.of("a"), cache.get(42L, this::load));
+        assertEquals(List.of("a"), cache.get(42L, this::load));
+
+        assertEquals(1, loads.get());
+        assertNotNull(farCacheManager.getCache(PARTAGE).get(42L));
+        // Un chargement n'est pas une modification : rien n'est diffusé
+        verifyNoInteractions(redisTemplate);
+    }
+
+    @Test
+    void remoteInvalidationRereadsTheSharedTier() {
+        Cache cache = cacheManager.getCache(PARTAGE);
+        cache.get(42L, this::load);
+        farCacheManager.getCache(PARTAGE).put(42L, List.of("b"));
+
+        cacheManager.onMessage(message("autre-instance|" + PARTAGE + "|42"), null);
+
+        assertEquals(List.of("b"), cache.get(42L, this::load));
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    void evictionClearsBothTiersAndIsBroadcast() {
+        Cache cache = cacheManager.getCache(PARTAGE);
+        cache.get(42L, this::load);
+
+        cache.evict(42L);
+
+        assertNull(farCacheManager.getCache(PARTAGE).get(42L));
+        assertNull(cache.get(42L));
+        ArgumentCaptor<String> sent = ArgumentCaptor.forClass(String.class);
+        verify(redisTemplate).convertAndSend(eq("cache:two-level:evict"), sent.capture());
+        assertTrue(sent.getValue().endsWith("|" + PARTAGE + "|42"));
+
+        // Son propre message est ignoré : le tier local n'est pas relu depuis le tier partagé
+        cache.get(42L, this::load);
+        farCacheManager.getCache(PARTAGE).put(42L, List.of("b"));
+        cacheManager.onMessage(message(sent.getValue()), null);
+        assertEquals(List.of("a"), cache.get(42L, this::load));
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    void clearFromAnotherNodeEmptiesLocalOnlyCache() {
+        Cache cache = cacheManager.getCache(LOCAL);
+        cache.get(1L, this::load);
+        cache.get(2L, this::load);
+
+        cacheManager.onMessage(message("autre-instance|" + LOCAL), null);
+
+        assertNull(cache.get(1L));
+        assertNull(cache.get(2L));
+        assertNull(farCacheManager.getCache(LOCAL));
+    }
+
+    @Test
+    void nearTierStatisticsArePublished() {
+        Cache cache = cacheManager.getCache(PARTAGE);
+        cache.get(42L, this::load);
+        cache.get(42L, this::load);
+
+        assertEquals(1.0, meterRegistry.get("cache.gets")
+                .tag("cache", PARTAGE).tag("tier", "near").tag("result", "hit").functionCounter().count());
+    }
+
+    private List<String> load() {
+        loads.incrementAndGet();
+        return List.of("a");
+    }
+
+    private static DefaultMessage message(String body) {
+        return new DefaultMessage("cache:two-level:evict".getBytes(StandardCharsets.UTF_8),
+                body.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,57 @@
+package com.tunisia.commerce.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Tableaux de bord de l'administration : une page par itération.
+ *
+ * L'analyse prédictive appelle Gemini et la liste des risques interroge ip-api, ipinfo,
+ * AbstractAPI et Numverify pour chaque exportateur : elles sont moins fréquentes que les
+ * statistiques servies par la base.
+ */
+final class AdminDashboardScenario implements Scenario {
+
+    private final List<String[]> pages = new ArrayList<>();
+
+    private LoadTestClient.Caller admin;
+
+    AdminDashboardScenario() {
+        page(3, "statistiques-demandes", "/api/admin/demandes-statistics");
+        page(3, "toutes-demandes", "/api/admin/all-demandes");
+        page(2, "utilisateurs", "/api/admin/users");
+        page(2, "statistiques-paiements", "/api/stripe-payment/statistics");
+        page(2, "carte-exportateurs", "/api/statistics/exporters/map");
+        page(2, "statistiques-audit", "/api/audit-logs/statistics");
+        page(2, "sante-systeme", "/api/admin/system-health");
+        page(1, "analyse-predictive", "/api/predictive/dashboard");
+        page(1, "risques-exportateurs", "/api/risk/exportateurs");
+    }
+
+    private void page(int weight, String step, String path) {
+        for (int i = 0; i < weight; i++) {
+            pages.add(new String[]{step, path});
+        }
+    }
+
+    @Override
+    public String name() {
+        return "admin-tableaux-de-bord";
+    }
+
+    @Override
+    public void prepare(LoadTestClient client) throws Exception {
+        JsonNode login = client.postJson("connexion", "/api/auth/login", LoadTestClient.Caller.anonymous("197.2.10.30"),
+                Map.of("email", LoadTestFixtures.ADMIN_EMAIL, "password", LoadTestFixtures.PASSWORD));
+        admin = new LoadTestClient.Caller(login.path("token").asText(), "197.2.10.30");
+    }
+
+    @Override
+    public void iteration(LoadTestClient client, long index) throws Exception {
+        String[] page = pages.get((int) (index % pages.size()));
+        client.get(page[0], page[1], admin);
+    }
+}
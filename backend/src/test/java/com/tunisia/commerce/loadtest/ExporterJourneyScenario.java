@@ -0,0 +1,171 @@
+package com.tunisia.commerce.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.regex.Pattern;
+
+/**
+ * Parcours complet d'un nouvel exportateur, une itération par exportateur :
+ * inscription, vérification de l'email (lien reçu par le bouchon SMTP), connexion, création du
+ * dossier, dépôt d'une pièce, soumission, paiement des frais (bouchon Stripe), puis analyse
+ * anti-fraude (bouchon ML) et approbation par l'agent du Ministère du Commerce.
+ */
+final class ExporterJourneyScenario implements Scenario {
+
+    private static final Pattern VERIFICATION_TOKEN = Pattern.compile("token=([0-9a-f]{32})");
+
+    private final SmtpSink smtp;
+    private final String runId = Long.toString(System.currentTimeMillis(), 36);
+    private final int documentBytes = Integer.getInteger("loadtest.document-ko", 200) * 1024;
+    private final Duration waitTimeout = Duration.ofSeconds(Integer.getInteger("loadtest.attente-s", 60));
+
+    private LoadTestClient.Caller agent;
+
+    ExporterJourneyScenario(SmtpSink smtp) {
+        this.smtp = smtp;
+    }
+
+    @Override
+    public String name() {
+        return "exportateur-parcours";
+    }
+
+    @Override
+    public void prepare(LoadTestClient client) throws Exception {
+        JsonNode login = client.postJson("connexion", "/api/auth/login", LoadTestClient.Caller.anonymous("197.2.10.40"),
+                Map.of("email", LoadTestFixtures.AGENT_EMAIL, "password", LoadTestFixtures.PASSWORD));
+        agent = new LoadTestClient.Caller(login.path("token").asText(), "197.2.10.40");
+    }
+
+    @Override
+    public void iteration(LoadTestClient client, long index) throws Exception {
+        String email = "exportateur-" + runId + "-" + index + "@loadtest.example.com";
+        LoadTestClient.Caller visitor = LoadTestClient.Caller.anonymous(publicIp(index));
+
+        // 1. Inscription, vérification de l'email et connexion
+        client.postJson("inscription", "/api/auth/signup/exporter", visitor, signup(email, index));
+        String verificationToken = awaitVerificationToken(client, email);
+        client.post("verification-email", "/api/auth/verify-email?token=" + verificationToken, visitor);
+        JsonNode login = client.postJson("connexion", "/api/auth/login", visitor,
+                Map.of("email", email, "password", LoadTestFixtures.PASSWORD));
+        LoadTestClient.Caller exporter = new LoadTestClient.Caller(login.path("token").asText(), visitor.ip());
+
+        // 2. Dossier, pièce justificative et soumission
+        JsonNode dossier = client.postJson("creation-dossier", "/api/exportateur/dossier/creer", exporter, dossier(index));
+        long demandeId = dossier.path("demandeId").asLong();
+        byte[] document = document(email);
+        JsonNode upload = client.postFile("depot-document", "/api/exportateur/dossier/" + demandeId + "/documents",
+                exporter, Map.of("documentType", "RC_CERT"), "registre-commerce.pdf", document);
+        client.post("soumission-dossier", "/api/exportateur/dossier/" + demandeId + "/soumettre", exporter);
+
+        // 3. Paiement des frais de dossier
+        JsonNode intent = client.postJson("creation-paiement", "/api/stripe-payment/create-intent", exporter,
+                Map.of("demandeId", demandeId));
+        client.postJson("confirmation-paiement", "/api/stripe-payment/confirm-payment", exporter, Map.of(
+                "paymentIntentId", intent.path("paymentIntentId").asText(),
+                "paymentMethodId", "pm_card_visa",
+                "cardHolderName", "Test Charge",
+                "receiptEmail", email));
+
+        // 4. Validation : analyse anti-fraude de la pièce puis approbation
+        JsonNode job = client.postFile("analyse-fraude", "/api/fraud/jobs", agent, Map.of(
+                        "documentId", upload.path("documentId").asText(),
+                        "demande_type", "REGISTRATION",
+                        "soumissionnaire_type", "EXPORTATEUR"),
+                "registre-commerce.pdf", document);
+        awaitFraudAnalysis(client, job);
+        client.postJson("approbation", "/api/validation/demandes/" + demandeId + "/approve", agent,
+                Map.of("approuve", true, "comment", "Dossier conforme (test de charge)"));
+    }
+
+    private String awaitVerificationToken(LoadTestClient client, String email) throws InterruptedException {
+        long start = System.nanoTime();
+        Optional<String> token = smtp.awaitMatch(email, VERIFICATION_TOKEN, waitTimeout);
+        client.getStats().waitCompleted("attente-email-verification", token.isPresent(), System.nanoTime() - start);
+        return token.orElseThrow(() -> new IllegalStateException("email de vérification non reçu"));
+    }
+
+    /**
+     * Suit le job jusqu'à son terme. Un échec de l'analyse est compté sur l'attente mais
+     * n'empêche pas l'approbation, comme pour un agent qui valide sans l'avis du modèle.
+     */
+    private void awaitFraudAnalysis(LoadTestClient client, JsonNode submitted) throws InterruptedException {
+        long start = System.nanoTime();
+        long deadline = start + waitTimeout.toNanos();
+        String jobId = submitted.path("jobId").asText();
+        String status = submitted.path("data").path("status").asText();
+        while (!"TERMINE".equals(status) && !"ECHEC".equals(status) && System.nanoTime() < deadline) {
+            Thread.sleep(200);
+            status = client.get("suivi-analyse-fraude", "/api/fraud/jobs/" + jobId, agent)
+                    .path("data").path("status").asText();
+        }
+        client.getStats().waitCompleted("attente-analyse-fraude", "TERMINE".equals(status), System.nanoTime() - start);
+    }
+
+    private static Map<String, Object> signup(String email, long index) {
+        Map<String, Object> request = new LinkedHashMap<>();
+        request.put("companyName", "Export Charge " + index);
+        request.put("country", "FR");
+        request.put("city", "Marseille");
+        request.put("address", index + " quai du Port");
+        request.put("website", "https://export-" + index + ".example.com");
+        request.put("phone", "+3361" + String.format("%07d", index % 10_000_000));
+        request.put("legalRep", "Claire Martin");
+        request.put("tinNumber", "LT" + Long.toString(System.nanoTime(), 36).toUpperCase() + index);
+        request.put("email", email);
+        request.put("password", LoadTestFixtures.PASSWORD);
+        request.put("numeroTVA", "FR" + String.format("%011d", index));
+        return request;
+    }
+
+    private static Map<String, Object> dossier(long index) {
+        Map<String, Object> produit = new LinkedHashMap<>();
+        produit.put("productType", "alimentaire");
+        produit.put("category", "15");
+        produit.put("hsCode", "15091000");
+        produit.put("productName", "Huile d'olive vierge extra");
+        produit.put("isLinkedToBrand", false);
+        produit.put("productState", "liquide");
+        produit.put("originCountry", "FR");
+        produit.put("annualQuantityValue", 120.0);
+        produit.put("annualQuantityUnit", "tonnes");
+
+        Map<String, Object> request = new LinkedHashMap<>();
+        request.put("raisonSociale", "Export Charge " + index);
+        request.put("adresseLegale", index + " quai du Port, Marseille");
+        request.put("ville", "Marseille");
+        request.put("paysOrigine", "FR");
+        request.put("telephone", "+3361" + String.format("%07d", index % 10_000_000));
+        request.put("representantLegal", "Claire Martin");
+        request.put("produits", List.of(produit));
+        return request;
+    }
+
+    /**
+     * PDF propre à chaque exportateur : l'analyse anti-fraude, mémorisée par empreinte du
+     * contenu, appelle alors réellement le service ML.
+     */
+    private byte[] document(String email) {
+        StringBuilder pdf = new StringBuilder("%PDF-1.4\n% Extrait du registre du commerce - ")
+                .append(email).append('\n');
+        while (pdf.length() < documentBytes) {
+            pdf.append("% ").append("0123456789abcdef".repeat(4)).append('\n');
+        }
+        pdf.append("%%EOF\n");
+        return pdf.toString().getBytes(StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * Adresse publique distincte par exportateur, enregistrée à l'inscription et analysée
+     * ensuite par le tableau de bord des risques.
+     */
+    private static String publicIp(long index) {
+        return "81." + ((index >> 16) & 0xff) + "." + ((index >> 8) & 0xff) + "." + Math.max(1, index & 0xff);
+    }
+}
@@ -0,0 +1,283 @@
+package com.tunisia.commerce.loadtest;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bouchons des services externes appelés par le backend : Stripe (PaymentIntent), Gemini,
+ * ip-api.com, ipinfo.io, AbstractAPI, Numverify, le service ML de détection de fraude et SMTP.
+ *
+ * Les réponses reprennent les champs lus par les clients du backend ; {@link #springArguments()}
+ * redirige ces clients vers les bouchons.
+ */
+final class ExternalStandIns {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private final List<StandInServer> servers = new ArrayList<>();
+    private final SmtpSink smtp;
+    private final Map<String, Map<String, Object>> paymentIntents = new ConcurrentHashMap<>();
+    private final AtomicLong sequence = new AtomicLong();
+
+    private final StandInServer stripe;
+    private final StandInServer gemini;
+    private final StandInServer ipApi;
+    private final StandInServer ipInfo;
+    private final StandInServer abstractApi;
+    private final StandInServer numverify;
+    private final StandInServer ml;
+
+    private ExternalStandIns() throws IOException {
+        stripe = register(StandInServer.start("stripe",
+                new StandInServer.Response(500, "{\"error\":{\"type\":\"api_error\",\"message\":\"Erreur injectée\"}}"),
+                this::stripe));
+        gemini = register(StandInServer.start("gemini",
+                new StandInServer.Response(503, "{\"error\":{\"code\":503,\"message\":\"Erreur injectée\",\"status\":\"UNAVAILABLE\"}}"),
+                request -> StandInServer.Response.ok(geminiResponse())));
+        ipApi = register(StandInServer.start("ip-api",
+                new StandInServer.Response(503, "{\"status\":\"fail\",\"message\":\"Erreur injectée\"}"),
+                this::ipApi));
+        ipInfo = register(StandInServer.start("ipinfo",
+                new StandInServer.Response(503, "{\"error\":\"Erreur injectée\"}"),
+                this::ipInfo));
+        abstractApi = register(StandInServer.start("abstractapi",
+                new StandInServer.Response(503, "{\"error\":\"Erreur injectée\"}"),
+                this::abstractApi));
+        numverify = register(StandInServer.start("numverify",
+                new StandInServer.Response(503, "{\"error\":\"Erreur injectée\"}"),
+                this::numverify));
+        ml = register(StandInServer.start("ml",
+                new StandInServer.Response(500, "{\"status\":\"error\",\"error\":\"Erreur injectée\"}"),
+                request -> StandInServer.Response.ok(mlResponse())));
+        smtp = SmtpSink.start(FaultProfile.forService("smtp"));
+    }
+
+    static ExternalStandIns start() throws IOException {
+        return new ExternalStandIns();
+    }
+
+    SmtpSink getSmtp() {
+        return smtp;
+    }
+
+    /**
+     * Arguments de démarrage du backend : priment sur application.properties.
+     */
+    List<String> springArguments() {
+        return List.of(
+                "--stripe.api-base=" + stripe.baseUrl(),
+                "--gemini.base-url=" + gemini.baseUrl(),
+                "--gemini.api.key=loadtest",
+                "--ip-api.base-url=" + ipApi.baseUrl(),
+                "--ipinfo.base-url=" + ipInfo.baseUrl(),
+                "--ipinfo.token=loadtest",
+                "--abstractapi.email.base-url=" + abstractApi.baseUrl(),
+                "--abstractapi.email.token=loadtest",
+                "--numverify.base-url=" + numverify.baseUrl(),
+                "--numverify.token=loadtest",
+                "--ml.service.url=" + ml.baseUrl(),
+                "--spring.mail.host=127.0.0.1",
+                "--spring.mail.port=" + smtp.getPort(),
+                "--spring.mail.properties.mail.smtp.starttls.enable=false",
+                "--spring.mail.properties.mail.smtp.starttls.required=false",
+                "--spring.mail.properties.mail.smtp.ssl.enable=false");
+    }
+
+    /**
+     * Appels reçus et erreurs injectées par service, pour le rapport.
+     */
+    Map<String, Object> summary() {
+        Map<String, Object> summary = new LinkedHashMap<>();
+        for (StandInServer server : servers) {
+            summary.put(server.getName(), Map.of(
+                    "profil", server.getFaults().toString(),
+                    "appels", server.getCalls(),
+                    "erreursInjectees", server.getInjectedErrors()));
+        }
+        summary.put("smtp", Map.of(
+                "profil", smtp.getFaults().toString(),
+                "messages", smtp.getMessageCount(),
+                "erreursInjectees", smtp.getInjectedErrors()));
+        return summary;
+    }
+
+    void stop() {
+        servers.forEach(StandInServer::stop);
+        smtp.stop();
+    }
+
+    private StandInServer register(StandInServer server) {
+        servers.add(server);
+        return server;
+    }
+
+    // ==================== STRIPE ====================
+
+    private StandInServer.Response stripe(StandInServer.Request request) throws JsonProcessingException {
+        String path = request.path();
+        if ("POST".equals(request.method()) && "/v1/payment_intents".equals(path)) {
+            Map<String, String> form = request.form();
+            String id = "pi_loadtest_" + sequence.incrementAndGet();
+            Map<String, Object> intent = new LinkedHashMap<>();
+            intent.put("id", id);
+            intent.put("object", "payment_intent");
+            intent.put("amount", Long.parseLong(form.getOrDefault("amount", "0")));
+            intent.put("currency", form.getOrDefault("currency", "usd"));
+            intent.put("status", "requires_payment_method");
+            intent.put("client_secret", id + "_secret_loadtest");
+            intent.put("created", Instant.now().getEpochSecond());
+            intent.put("description", form.get("description"));
+            intent.put("receipt_email", form.get("receipt_email"));
+            intent.put("capture_method", "automatic");
+            intent.put("livemode", false);
+            Map<String, String> metadata = new LinkedHashMap<>();
+            form.forEach((key, value) -> {
+                if (key.startsWith("metadata[") && key.endsWith("]")) {
+                    metadata.put(key.substring(9, key.length() - 1), value);
+                }
+            });
+            intent.put("metadata", metadata);
+            paymentIntents.put(id, intent);
+            return StandInServer.Response.ok(MAPPER.writeValueAsString(intent));
+        }
+
+        String[] segments = path.split("/");
+        // /v1/payment_intents/{id} et /v1/payment_intents/{id}/confirm
+        if (segments.length >= 4 && "payment_intents".equals(segments[2])) {
+            Map<String, Object> intent = paymentIntents.get(segments[3]);
+            if (intent == null) {
+                return new StandInServer.Response(404,
+                        "{\"error\":{\"type\":\"invalid_request_error\",\"code\":\"resource_missing\",\"message\":\"No such payment_intent\"}}");
+            }
+            if (segments.length == 5 && "confirm".equals(segments[4])) {
+                Map<String, String> form = request.form();
+                intent.put("status", "succeeded");
+                intent.put("payment_method", form.getOrDefault("payment_method", "pm_card_visa"));
+                intent.put("latest_charge", "ch_loadtest_" + sequence.incrementAndGet());
+                if (form.containsKey("receipt_email")) {
+                    intent.put("receipt_email", form.get("receipt_email"));
+                }
+            }
+            return StandInServer.Response.ok(MAPPER.writeValueAsString(intent));
+        }
+        return new StandInServer.Response(404, "{\"error\":{\"type\":\"invalid_request_error\",\"message\":\"Unrecognized request URL\"}}");
+    }
+
+    // ==================== GEMINI ====================
+
+    private static String geminiResponse() throws JsonProcessingException {
+        // Texte JSON : exploitable par l'analyse prédictive, affichable tel quel par le chatbot
+        String text = MAPPER.writeValueAsString(Map.of(
+                "predictedIncrease", "8",
+                "confidence", "70",
+                "summary", "Réponse simulée pour le test de charge."));
+        return MAPPER.writeValueAsString(Map.of(
+                "candidates", List.of(Map.of(
+                        "content", Map.of("role", "model", "parts", List.of(Map.of("text", text))),
+                        "finishReason", "STOP",
+                        "index", 0)),
+                "usageMetadata", Map.of("promptTokenCount", 200, "candidatesTokenCount", 40, "totalTokenCount", 240)));
+    }
+
+    // ==================== IP / EMAIL / TÉLÉPHONE ====================
+
+    /**
+     * Une adresse sur dix passe par un hébergeur avec proxy, pour exercer les règles de risque.
+     */
+    private static boolean suspicious(String ip) {
+        return Math.floorMod(ip.hashCode(), 10) == 0;
+    }
+
+    private StandInServer.Response ipApi(StandInServer.Request request) throws JsonProcessingException {
+        String ip = request.path().substring(request.path().lastIndexOf('/') + 1);
+        boolean suspicious = suspicious(ip);
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("status", "success");
+        body.put("country", suspicious ? "Netherlands" : "France");
+        body.put("countryCode", suspicious ? "NL" : "FR");
+        body.put("city", suspicious ? "Amsterdam" : "Paris");
+        body.put("lat", suspicious ? 52.37 : 48.85);
+        body.put("lon", suspicious ? 4.89 : 2.35);
+        body.put("proxy", suspicious);
+        body.put("isp", suspicious ? "Hosting BV" : "Orange");
+        body.put("org", suspicious ? "Hosting BV" : "Orange SA");
+        body.put("as", suspicious ? "AS60781" : "AS3215");
+        body.put("mobile", false);
+        body.put("hosting", suspicious);
+        body.put("query", ip);
+        return StandInServer.Response.ok(MAPPER.writeValueAsString(body));
+    }
+
+    private StandInServer.Response ipInfo(StandInServer.Request request) throws JsonProcessingException {
+        // /{ip}/json
+        String ip = request.path().split("/")[1];
+        boolean suspicious = suspicious(ip);
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("ip", ip);
+        body.put("city", suspicious ? "Amsterdam" : "Paris");
+        body.put("region", suspicious ? "North Holland" : "Île-de-France");
+        body.put("country", suspicious ? "NL" : "FR");
+        body.put("loc", suspicious ? "52.37,4.89" : "48.85,2.35");
+        body.put("org", suspicious ? "AS60781 Hosting BV" : "AS3215 Orange SA");
+        body.put("postal", suspicious ? "1012" : "75001");
+        body.put("timezone", suspicious ? "Europe/Amsterdam" : "Europe/Paris");
+        body.put("privacy", Map.of(
+                "vpn", suspicious, "tor", false, "relay", false,
+                "hosting", String.valueOf(suspicious), "service", ""));
+        return StandInServer.Response.ok(MAPPER.writeValueAsString(body));
+    }
+
+    private StandInServer.Response abstractApi(StandInServer.Request request) throws JsonProcessingException {
+        String email = request.query().getOrDefault("email", "");
+        boolean disposable = email.endsWith("@mailinator.com");
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("email", email);
+        body.put("deliverable", !disposable);
+        body.put("validSyntax", true);
+        body.put("disposable", disposable);
+        body.put("freeProvider", false);
+        body.put("roleAccount", email.startsWith("contact@"));
+        body.put("qualityScore", disposable ? 10 : 90);
+        return StandInServer.Response.ok(MAPPER.writeValueAsString(body));
+    }
+
+    private StandInServer.Response numverify(StandInServer.Request request) throws JsonProcessingException {
+        String number = request.query().getOrDefault("number", "");
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("valid", number.replaceAll("\\D", "").length() >= 8);
+        body.put("number", number);
+        body.put("internationalFormat", number);
+        body.put("countryCode", request.query().getOrDefault("country_code", "FR"));
+        body.put("carrier", "Orange");
+        body.put("lineType", "mobile");
+        return StandInServer.Response.ok(MAPPER.writeValueAsString(body));
+    }
+
+    // ==================== SERVICE ML ====================
+
+    private static String mlResponse() throws JsonProcessingException {
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("status", "success");
+        body.put("label", "authentique");
+        body.put("confidence", 0.91);
+        body.put("isFraud", false);
+        body.put("recommendation", "ACCEPTER");
+        body.put("method", "bouchon");
+        body.put("ocrSuccess", true);
+        body.put("final_decision", Map.of(
+                "confidence", 0.91,
+                "is_fraud", false,
+                "reasons", List.of(),
+                "summary", "Analyse simulée pour le test de charge."));
+        return MAPPER.writeValueAsString(body);
+    }
+}
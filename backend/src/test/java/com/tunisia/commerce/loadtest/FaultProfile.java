@@ -0,0 +1,45 @@
+package com.tunisia.commerce.loadtest;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Latence et taux d'erreur injectés par un bouchon de service externe.
+ *
+ * Lu depuis les propriétés système : {@code loadtest.<service>.latence-ms},
+ * {@code loadtest.<service>.gigue-ms} et {@code loadtest.<service>.erreurs} (fraction 0..1),
+ * avec repli sur les valeurs globales {@code loadtest.latence-ms}, {@code loadtest.gigue-ms}
+ * et {@code loadtest.erreurs}.
+ */
+record FaultProfile(long latencyMillis, long jitterMillis, double errorRate) {
+
+    static FaultProfile forService(String service) {
+        return new FaultProfile(
+                Long.parseLong(property(service, "latence-ms", "50")),
+                Long.parseLong(property(service, "gigue-ms", "20")),
+                Double.parseDouble(property(service, "erreurs", "0")));
+    }
+
+    private static String property(String service, String key, String defaultValue) {
+        return System.getProperty("loadtest." + service + "." + key,
+                System.getProperty("loadtest." + key, defaultValue));
+    }
+
+    /**
+     * Simule le temps de réponse du service distant.
+     */
+    void delay() throws InterruptedException {
+        long jitter = jitterMillis > 0 ? ThreadLocalRandom.current().nextLong(jitterMillis + 1) : 0;
+        if (latencyMillis + jitter > 0) {
+            Thread.sleep(latencyMillis + jitter);
+        }
+    }
+
+    boolean shouldFail() {
+        return errorRate > 0 && ThreadLocalRandom.current().nextDouble() < errorRate;
+    }
+
+    @Override
+    public String toString() {
+        return latencyMillis + "±" + jitterMillis + " ms, " + Math.round(errorRate * 1000) / 10.0 + " % d'erreurs";
+    }
+}
@@ -0,0 +1,54 @@
+package com.tunisia.commerce.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Consultation du catalogue par un importateur : une page par itération, dans les proportions
+ * d'une session de navigation (listes et recherches plus fréquentes que les suggestions).
+ */
+final class ImporterCatalogueScenario implements Scenario {
+
+    private final List<String[]> pages = new ArrayList<>();
+
+    private LoadTestClient.Caller importer;
+
+    ImporterCatalogueScenario() {
+        page(3, "catalogue", "/api/produits/catalogue-produits");
+        page(1, "catalogue-alimentaire", "/api/produits/catalogue-produits/alimentaire");
+        page(1, "catalogue-industriel", "/api/produits/catalogue-produits/industriel");
+        page(2, "recherche-produits", "/api/produits/catalogue-produits/recherche?keyword=huile&originCountry=FR");
+        page(1, "suggestions", "/api/produits/catalogue-produits/suggestions?q=hu");
+        page(2, "exportateurs", "/api/importateur/exportateurs");
+        page(1, "recherche-exportateurs", "/api/importateur/exportateurs/recherche?q=export");
+        page(1, "statuts-produits", "/api/importateur/produits/statuts");
+    }
+
+    private void page(int weight, String step, String path) {
+        for (int i = 0; i < weight; i++) {
+            pages.add(new String[]{step, path});
+        }
+    }
+
+    @Override
+    public String name() {
+        return "importateur-catalogue";
+    }
+
+    @Override
+    public void prepare(LoadTestClient client) throws Exception {
+        JsonNode login = client.postJson("connexion-mobile", "/api/auth/login/mobile",
+                LoadTestClient.Caller.anonymous("197.2.10.20"),
+                Map.of("matricule", LoadTestFixtures.IMPORTER_MATRICULE, "pin", LoadTestFixtures.IMPORTER_PIN));
+        importer = new LoadTestClient.Caller(login.path("token").asText(), "197.2.10.20");
+    }
+
+    @Override
+    public void iteration(LoadTestClient client, long index) throws Exception {
+        String[] page = pages.get((int) (index % pages.size()));
+        client.get(page[0], page[1], importer);
+    }
+}
@@ -0,0 +1,148 @@
+package com.tunisia.commerce.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Client HTTP des scénarios : chaque appel est chronométré comme une étape du scénario.
+ *
+ * Une réponse hors 2xx interrompt l'itération par une {@link StepFailure}. Sans statistiques
+ * (préparation des scénarios), les appels ne sont pas comptés.
+ */
+final class LoadTestClient {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    /**
+     * Identité de l'appelant : jeton JWT (peut être null) et adresse IP transmise en X-Forwarded-For.
+     */
+    record Caller(String token, String ip) {
+
+        static Caller anonymous(String ip) {
+            return new Caller(null, ip);
+        }
+    }
+
+    static final class StepFailure extends RuntimeException {
+        private final String failureCause;
+
+        StepFailure(String step, int status, String body) {
+            super(step + " -> HTTP " + status + (body != null && !body.isEmpty()
+                    ? " " + body.substring(0, Math.min(200, body.length())) : ""));
+            this.failureCause = step + " (" + (status == 0 ? "réseau/délai" : "HTTP " + status) + ")";
+        }
+
+        String getFailureCause() {
+            return failureCause;
+        }
+    }
+
+    private final HttpClient http;
+    private final String baseUrl;
+    private final ScenarioStats stats;
+    private final Duration timeout;
+
+    LoadTestClient(HttpClient http, String baseUrl, ScenarioStats stats, Duration timeout) {
+        this.http = http;
+        this.baseUrl = baseUrl;
+        this.stats = stats;
+        this.timeout = timeout;
+    }
+
+    ScenarioStats getStats() {
+        return stats;
+    }
+
+    JsonNode get(String step, String path, Caller caller) throws InterruptedException {
+        return send(step, request(path, caller).GET());
+    }
+
+    JsonNode postJson(String step, String path, Caller caller, Object body) throws InterruptedException {
+        try {
+            return send(step, request(path, caller)
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofByteArray(MAPPER.writeValueAsBytes(body))));
+        } catch (IOException e) {
+            throw new IllegalArgumentException(e);
+        }
+    }
+
+    JsonNode post(String step, String path, Caller caller) throws InterruptedException {
+        return send(step, request(path, caller).POST(HttpRequest.BodyPublishers.noBody()));
+    }
+
+    /**
+     * Envoi multipart d'un fichier PDF accompagné de champs texte.
+     */
+    JsonNode postFile(String step, String path, Caller caller, Map<String, String> fields,
+                      String fileName, byte[] content) throws InterruptedException {
+        String boundary = "----loadtest" + UUID.randomUUID();
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        fields.forEach((name, value) -> write(body, "--" + boundary + "\r\n"
+                + "Content-Disposition: form-data; name=\"" + name + "\"\r\n\r\n" + value + "\r\n"));
+        write(body, "--" + boundary + "\r\n"
+                + "Content-Disposition: form-data; name=\"file\"; filename=\"" + fileName + "\"\r\n"
+                + "Content-Type: application/pdf\r\n\r\n");
+        body.writeBytes(content);
+        write(body, "\r\n--" + boundary + "--\r\n");
+        return send(step, request(path, caller)
+                .header("Content-Type", "multipart/form-data; boundary=" + boundary)
+                .POST(HttpRequest.BodyPublishers.ofByteArray(body.toByteArray())));
+    }
+
+    private HttpRequest.Builder request(String path, Caller caller) {
+        HttpRequest.Builder builder = HttpRequest.newBuilder(URI.create(baseUrl + path))
+                .timeout(timeout)
+                .header("Accept", "application/json")
+                .header("User-Agent", "loadtest");
+        if (caller.token() != null) {
+            builder.header("Authorization", "Bearer " + caller.token());
+        }
+        if (caller.ip() != null) {
+            builder.header("X-Forwarded-For", caller.ip());
+        }
+        return builder;
+    }
+
+    private JsonNode send(String step, HttpRequest.Builder builder) throws InterruptedException {
+        long start = System.nanoTime();
+        int status = 0;
+        String body = null;
+        try {
+            HttpResponse<String> response = http.send(builder.build(),
+                    HttpResponse.BodyHandlers.ofString(StandardCharsets.UTF_8));
+            status = response.statusCode();
+            body = response.body();
+        } catch (IOException e) {
+            body = e.getClass().getSimpleName() + ": " + e.getMessage();
+        } finally {
+            if (stats != null) {
+                stats.stepCompleted(step, status, System.nanoTime() - start);
+            }
+        }
+        if (status < 200 || status >= 300) {
+            throw new StepFailure(step, status, body);
+        }
+        try {
+            return body == null || body.isEmpty() ? MAPPER.nullNode() : MAPPER.readTree(body);
+        } catch (IOException e) {
+            // Réponse non JSON (fichier, texte) : le contenu n'est pas exploité
+            return MAPPER.nullNode();
+        }
+    }
+
+    private static void write(ByteArrayOutputStream out, String text) {
+        out.writeBytes(text.getBytes(StandardCharsets.UTF_8));
+    }
+}
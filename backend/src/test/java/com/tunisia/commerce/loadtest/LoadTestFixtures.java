@@ -0,0 +1,142 @@
+package com.tunisia.commerce.loadtest;
+
+import com.tunisia.commerce.entity.Administrateur;
+import com.tunisia.commerce.entity.ImportateurTunisien;
+import com.tunisia.commerce.entity.InstanceValidation;
+import com.tunisia.commerce.entity.StructureInterne;
+import com.tunisia.commerce.entity.User;
+import com.tunisia.commerce.enums.StructureType;
+import com.tunisia.commerce.enums.UserRole;
+import com.tunisia.commerce.enums.UserStatus;
+import com.tunisia.commerce.repository.AdministrateurRepository;
+import com.tunisia.commerce.repository.ImportateurRepository;
+import com.tunisia.commerce.repository.InstanceValidationRepository;
+import com.tunisia.commerce.repository.StructureInterneRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationContext;
+import org.springframework.core.env.Environment;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Comptes utilisés par les scénarios, créés ou réactivés à chaque lancement : un administrateur,
+ * un importateur (Mobile ID) et un agent du Ministère du Commerce, qui reçoit les dossiers
+ * d'enregistrement soumis par le parcours exportateur.
+ *
+ * Refusé hors du schéma jetable de LoadTestRunner : les comptes existants seraient réactivés et leur
+ * mot de passe remplacé, et d'autres agents actifs du Ministère pourraient recevoir les dossiers.
+ */
+@Slf4j
+final class LoadTestFixtures {
+
+    static final String PASSWORD = "Charge#2026";
+
+    static final String ADMIN_EMAIL = "admin@loadtest.local";
+    static final String AGENT_EMAIL = "agent.commerce@loadtest.local";
+    static final String IMPORTER_EMAIL = "importateur@loadtest.local";
+    static final String IMPORTER_MATRICULE = "9900000001";
+    static final String IMPORTER_PIN = "246810";
+
+    private static final String COMMERCE = "Ministère du Commerce";
+
+    private LoadTestFixtures() {
+    }
+
+    static void seed(ApplicationContext context) {
+        requireThrowawaySchema(context.getEnvironment());
+        PasswordEncoder passwordEncoder = context.getBean(PasswordEncoder.class);
+        String passwordHash = passwordEncoder.encode(PASSWORD);
+        new TransactionTemplate(context.getBean(PlatformTransactionManager.class)).executeWithoutResult(status -> {
+            seedAdmin(context.getBean(AdministrateurRepository.class), passwordHash);
+            seedImporter(context.getBean(ImportateurRepository.class));
+            seedAgent(context.getBean(InstanceValidationRepository.class),
+                    commerceStructure(context.getBean(StructureInterneRepository.class)), passwordHash);
+        });
+        log.info("🧪 Comptes de test de charge prêts: {}, {}, {}", ADMIN_EMAIL, AGENT_EMAIL, IMPORTER_EMAIL);
+    }
+
+    private static void requireThrowawaySchema(Environment environment) {
+        String schema = environment.getProperty("loadtest.schema");
+        String url = environment.getProperty("spring.datasource.url", "");
+        if (schema == null || !url.contains("currentSchema=" + schema)) {
+            throw new IllegalStateException("Comptes de test de charge refusés hors d'un schéma loadtest_* "
+                    + "(lancer via LoadTestRunner avec -Dloadtest.datasource-url)");
+        }
+    }
+
+    private static void seedAdmin(AdministrateurRepository repository, String passwordHash) {
+        Administrateur admin = repository.findByEmail(ADMIN_EMAIL).orElseGet(() -> {
+            Administrateur created = new Administrateur();
+            created.setEmail(ADMIN_EMAIL);
+            created.setUsername("loadtest-admin");
+            created.setNom("Charge");
+            created.setPrenom("Admin");
+            created.setTelephone("+21670000001");
+            created.setRole(UserRole.ADMIN);
+            return created;
+        });
+        admin.setPasswordHash(passwordHash);
+        activate(admin);
+        repository.save(admin);
+    }
+
+    private static void seedImporter(ImportateurRepository repository) {
+        ImportateurTunisien importer = repository.findByMobileIdMatricule(IMPORTER_MATRICULE).orElseGet(() -> {
+            ImportateurTunisien created = new ImportateurTunisien();
+            created.setEmail(IMPORTER_EMAIL);
+            created.setNom("Charge");
+            created.setPrenom("Importateur");
+            created.setTelephone("+21670000002");
+            created.setRole(UserRole.IMPORTATEUR);
+            created.setRaisonSociale("Importations Test de Charge SARL");
+            created.setMobileIdMatricule(IMPORTER_MATRICULE);
+            return created;
+        });
+        importer.setMobileIdPin(IMPORTER_PIN);
+        importer.setMobileIdVerified(true);
+        activate(importer);
+        repository.save(importer);
+    }
+
+    private static void seedAgent(InstanceValidationRepository repository, StructureInterne structure,
+                                  String passwordHash) {
+        InstanceValidation agent = repository.findByEmail(AGENT_EMAIL).orElseGet(() -> {
+            InstanceValidation created = new InstanceValidation();
+            created.setEmail(AGENT_EMAIL);
+            created.setNom("Charge");
+            created.setPrenom("Agent");
+            created.setTelephone("+21670000003");
+            created.setRole(UserRole.INSTANCE_VALIDATION);
+            created.setPoste("Agent de validation (test de charge)");
+            created.setSlaTraitementJours(5);
+            return created;
+        });
+        agent.setStructure(structure);
+        agent.setPasswordHash(passwordHash);
+        agent.setEmailVerified(true);
+        activate(agent);
+        repository.save(agent);
+    }
+
+    /**
+     * Même recherche que le routage des demandes d'enregistrement ; la structure n'est créée
+     * que si la base n'en contient aucune.
+     */
+    private static StructureInterne commerceStructure(StructureInterneRepository repository) {
+        return repository.findByOfficialName(COMMERCE)
+                .or(() -> repository.findByOfficialNameContaining("Commerce").stream().findFirst())
+                .orElseGet(() -> repository.save(StructureInterne.builder()
+                        .type(StructureType.MINISTRY)
+                        .officialName(COMMERCE)
+                        .officialNameAr("وزارة التجارة")
+                        .code("MCOM_LOADTEST")
+                        .build()));
+    }
+
+    private static void activate(User user) {
+        user.setUserStatut(UserStatus.ACTIF);
+        user.setFailedLoginAttempts(0);
+        user.setLastFailedLoginAttempt(null);
+    }
+}
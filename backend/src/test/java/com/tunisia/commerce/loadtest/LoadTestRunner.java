@@ -0,0 +1,260 @@
+package com.tunisia.commerce.loadtest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.tunisia.commerce.BackendApplication;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.persistence.EntityManagerFactory;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.SessionFactory;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.core.env.Environment;
+
+import java.io.File;
+import java.net.http.HttpClient;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Test de charge hors ligne : démarre le backend sur un port libre avec tous les services
+ * externes remplacés par des bouchons locaux, puis joue chaque scénario l'un après l'autre en
+ * modèle ouvert (arrivées au débit cible, indépendantes des temps de réponse).
+ *
+ * Lancement : {@code mvn -Ploadtest verify -Dloadtest.datasource-url=jdbc:postgresql://...} (voir le
+ * profil pour les propriétés). La base est obligatoire et ne doit pas être celle de l'application :
+ * le parcours exportateur crée des comptes et des dossiers à chaque itération. Le backend y travaille
+ * dans un schéma jetable {@code loadtest_*}, créé au démarrage et supprimé à la fin. Redis reste
+ * celui d'application.properties.
+ *
+ * Propriétés système :
+ * <ul>
+ *   <li>{@code loadtest.datasource-url} (obligatoire), {@code loadtest.datasource-username},
+ *       {@code loadtest.datasource-password} : base dédiée ; {@code loadtest.conserver-schema=true}
+ *       garde le schéma pour analyse</li>
+ *   <li>{@code loadtest.scenarios} : exportateur, importateur, admin (tous par défaut)</li>
+ *   <li>{@code loadtest.debit} : itérations par seconde, {@code loadtest.<scenario>.debit} pour un scénario</li>
+ *   <li>{@code loadtest.duree-s}, {@code loadtest.concurrence-max}, {@code loadtest.timeout-s}</li>
+ *   <li>{@code loadtest.latence-ms}, {@code loadtest.gigue-ms}, {@code loadtest.erreurs} : profil des
+ *       bouchons, surchargeable par service ({@code loadtest.stripe.erreurs=0.05})</li>
+ *   <li>{@code loadtest.rapport} : rapport JSON</li>
+ * </ul>
+ *
+ * La latence d'une itération est mesurée depuis son instant d'arrivée prévu : un retard de
+ * planification compte dans le résultat au lieu de le masquer. Les arrivées au-delà de la
+ * concurrence maximale sont abandonnées et comptées comme telles.
+ */
+@Slf4j
+public final class LoadTestRunner {
+
+    private LoadTestRunner() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        String datasourceUrl = System.getProperty("loadtest.datasource-url", "");
+        if (datasourceUrl.isBlank()) {
+            throw new IllegalStateException("Base dédiée obligatoire : -Dloadtest.datasource-url=jdbc:postgresql://... "
+                    + "(le test de charge crée des comptes et des dossiers)");
+        }
+        String schema = "loadtest_" + Long.toString(System.currentTimeMillis(), 36);
+
+        ExternalStandIns standIns = ExternalStandIns.start();
+        ConfigurableApplicationContext context = null;
+        Environment environment = null;
+        try {
+            List<String> arguments = new ArrayList<>(standIns.springArguments());
+            arguments.addAll(datasourceArguments(datasourceUrl, schema));
+            arguments.add("--server.port=0");
+            arguments.add("--server.ssl.enabled=false");
+            // Pas de ClamAV dans l'environnement de test : le scan serait en échec à chaque dépôt
+            arguments.add("--app.antivirus.enabled=false");
+            arguments.addAll(List.of(args));
+            context = SpringApplication.run(BackendApplication.class, arguments.toArray(String[]::new));
+            environment = context.getEnvironment();
+
+            LoadTestFixtures.seed(context);
+            String baseUrl = "http://127.0.0.1:" + context.getEnvironment().getProperty("local.server.port");
+            HttpClient http = HttpClient.newBuilder()
+                    .connectTimeout(Duration.ofSeconds(5))
+                    .executor(Executors.newCachedThreadPool())
+                    .build();
+
+            List<Map<String, Object>> reports = new ArrayList<>();
+            for (Scenario scenario : scenarios(standIns)) {
+                ScenarioStats stats = run(scenario, context, http, baseUrl);
+                reports.add(stats.toReport());
+            }
+
+            Map<String, Object> report = new LinkedHashMap<>();
+            report.put("scenarios", reports);
+            report.put("servicesExternes", standIns.summary());
+            File output = new File(System.getProperty("loadtest.rapport", "target/loadtest-report.json"));
+            output.getAbsoluteFile().getParentFile().mkdirs();
+            new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT).writeValue(output, report);
+            log.info("📄 Rapport de charge: {}", output.getAbsolutePath());
+        } finally {
+            if (context != null) {
+                context.close();
+            }
+            standIns.stop();
+            if (environment != null && !Boolean.getBoolean("loadtest.conserver-schema")) {
+                dropSchema(environment, schema);
+            }
+        }
+    }
+
+    /**
+     * Redirige le backend vers la base dédiée, dans un schéma créé par Hibernate au démarrage.
+     * Les arguments de la ligne de commande sont prioritaires sur application.properties.
+     */
+    private static List<String> datasourceArguments(String datasourceUrl, String schema) {
+        List<String> arguments = new ArrayList<>();
+        // search_path sur le schéma jetable : requêtes natives comprises
+        arguments.add("--spring.datasource.url=" + datasourceUrl
+                + (datasourceUrl.contains("?") ? "&" : "?") + "currentSchema=" + schema);
+        String username = System.getProperty("loadtest.datasource-username");
+        if (username != null) {
+            arguments.add("--spring.datasource.username=" + username);
+        }
+        String password = System.getProperty("loadtest.datasource-password");
+        if (password != null) {
+            arguments.add("--spring.datasource.password=" + password);
+        }
+        arguments.add("--spring.jpa.hibernate.ddl-auto=create");
+        arguments.add("--spring.jpa.properties.hibernate.default_schema=" + schema);
+        arguments.add("--spring.jpa.properties.hibernate.hbm2ddl.create_namespaces=true");
+        arguments.add("--loadtest.schema=" + schema);
+        return arguments;
+    }
+
+    /**
+     * Supprimé après l'arrêt du backend : plus aucune tâche de fond ne tient de verrou sur ses tables.
+     */
+    private static void dropSchema(Environment environment, String schema) {
+        try (Connection connection = DriverManager.getConnection(
+                environment.getProperty("spring.datasource.url"),
+                environment.getProperty("spring.datasource.username"),
+                environment.getProperty("spring.datasource.password"));
+             Statement statement = connection.createStatement()) {
+            statement.execute("DROP SCHEMA IF EXISTS " + schema + " CASCADE");
+            log.info("🧹 Schéma de test de charge supprimé: {}", schema);
+        } catch (Exception e) {
+            log.warn("⚠️ Schéma {} non supprimé: {}", schema, e.getMessage());
+        }
+    }
+
+    private static List<Scenario> scenarios(ExternalStandIns standIns) {
+        List<Scenario> scenarios = new ArrayList<>();
+        for (String name : System.getProperty("loadtest.scenarios", "exportateur,importateur,admin").split(",")) {
+            switch (name.trim()) {
+                case "exportateur" -> scenarios.add(new ExporterJourneyScenario(standIns.getSmtp()));
+                case "importateur" -> scenarios.add(new ImporterCatalogueScenario());
+                case "admin" -> scenarios.add(new AdminDashboardScenario());
+                case "" -> { }
+                default -> throw new IllegalArgumentException("Scénario inconnu: " + name);
+            }
+        }
+        return scenarios;
+    }
+
+    private static ScenarioStats run(Scenario scenario, ConfigurableApplicationContext context,
+                                     HttpClient http, String baseUrl) throws Exception {
+        String key = scenario.name().substring(0, scenario.name().indexOf('-'));
+        double rate = Double.parseDouble(System.getProperty("loadtest." + key + ".debit",
+                System.getProperty("loadtest.debit", "2")));
+        Duration duration = Duration.ofSeconds(Long.getLong("loadtest.duree-s", 60));
+        int maxConcurrency = Integer.getInteger("loadtest.concurrence-max", 50);
+        Duration timeout = Duration.ofSeconds(Long.getLong("loadtest.timeout-s", 30));
+
+        scenario.prepare(new LoadTestClient(http, baseUrl, null, timeout));
+
+        ScenarioStats stats = new ScenarioStats(scenario.name(), rate);
+        LoadTestClient client = new LoadTestClient(http, baseUrl, stats, timeout);
+        MeterRegistry meterRegistry = context.getBean(MeterRegistry.class);
+        double[] sqlBefore = sqlInRequests(meterRegistry);
+        long sqlTotalBefore = sqlTotal(context);
+
+        log.info("🚀 Scénario {} : {} itérations/s pendant {} s (concurrence max {})",
+                scenario.name(), rate, duration.toSeconds(), maxConcurrency);
+
+        ExecutorService workers = Executors.newFixedThreadPool(maxConcurrency);
+        ScheduledExecutorService arrivals = Executors.newSingleThreadScheduledExecutor();
+        AtomicInteger inFlight = new AtomicInteger();
+        AtomicLong sequence = new AtomicLong();
+        long periodNanos = (long) (TimeUnit.SECONDS.toNanos(1) / rate);
+        long start = System.nanoTime();
+
+        arrivals.scheduleAtFixedRate(() -> {
+            long index = sequence.getAndIncrement();
+            long plannedAt = start + index * periodNanos;
+            if (inFlight.incrementAndGet() > maxConcurrency) {
+                inFlight.decrementAndGet();
+                stats.iterationDropped();
+                return;
+            }
+            stats.iterationStarted();
+            workers.execute(() -> {
+                try {
+                    scenario.iteration(client, index);
+                    stats.iterationSucceeded(System.nanoTime() - plannedAt);
+                } catch (LoadTestClient.StepFailure e) {
+                    stats.iterationFailed(e.getFailureCause(), System.nanoTime() - plannedAt);
+                } catch (Exception e) {
+                    stats.iterationFailed(e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName(),
+                            System.nanoTime() - plannedAt);
+                } finally {
+                    inFlight.decrementAndGet();
+                }
+            });
+        }, 0, periodNanos, TimeUnit.NANOSECONDS);
+
+        Thread.sleep(duration.toMillis());
+        arrivals.shutdownNow();
+        workers.shutdown();
+        if (!workers.awaitTermination(timeout.toSeconds() * 4, TimeUnit.SECONDS)) {
+            log.warn("⚠️ Itérations encore en cours à la fin du scénario {}", scenario.name());
+            workers.shutdownNow();
+        }
+        long elapsed = System.nanoTime() - start;
+
+        double[] sqlAfter = sqlInRequests(meterRegistry);
+        stats.finished(elapsed, (long) (sqlAfter[0] - sqlBefore[0]), (long) (sqlAfter[1] - sqlBefore[1]),
+                sqlTotal(context) - sqlTotalBefore);
+        log.info("✅ Scénario {} terminé: {}", scenario.name(), stats.toReport().get("iterations"));
+        return stats;
+    }
+
+    /**
+     * Requêtes SQL comptées dans les requêtes HTTP (tous endpoints) et nombre de requêtes HTTP servies.
+     */
+    private static double[] sqlInRequests(MeterRegistry meterRegistry) {
+        double statements = 0;
+        double requests = 0;
+        for (DistributionSummary summary : meterRegistry.find("http.server.requests.sql").summaries()) {
+            statements += summary.totalAmount();
+            requests += summary.count();
+        }
+        return new double[]{statements, requests};
+    }
+
+    /**
+     * Toutes les requêtes préparées par Hibernate, tâches de fond comprises (outbox, jobs d'analyse).
+     */
+    private static long sqlTotal(ConfigurableApplicationContext context) {
+        return context.getBean(EntityManagerFactory.class).unwrap(SessionFactory.class)
+                .getStatistics().getPrepareStatementCount();
+    }
+}
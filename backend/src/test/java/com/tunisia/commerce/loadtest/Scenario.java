@@ -0,0 +1,20 @@
+package com.tunisia.commerce.loadtest;
+
+/**
+ * Parcours joué en boucle au débit cible.
+ */
+interface Scenario {
+
+    String name();
+
+    /**
+     * Préparation hors mesure (connexion des comptes de test). Le client ne compte pas ces appels.
+     */
+    default void prepare(LoadTestClient client) throws Exception {
+    }
+
+    /**
+     * Une itération du parcours ; toute exception la compte comme échouée.
+     */
+    void iteration(LoadTestClient client, long index) throws Exception;
+}
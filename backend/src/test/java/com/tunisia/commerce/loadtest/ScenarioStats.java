@@ -0,0 +1,203 @@
+package com.tunisia.commerce.loadtest;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Mesures d'un scénario : latence de chaque étape et de l'itération complète, erreurs,
+ * itérations abandonnées faute de capacité, et requêtes SQL relevées côté backend.
+ *
+ * Les latences sont conservées en totalité : les percentiles sont exacts sur la durée du scénario.
+ */
+final class ScenarioStats {
+
+    private static final double[] PERCENTILES = {50, 90, 95, 99};
+
+    /**
+     * Durées enregistrées en nanosecondes.
+     */
+    static final class Series {
+        private long[] values = new long[1024];
+        private int size;
+
+        synchronized void record(long nanos) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = nanos;
+        }
+
+        synchronized int count() {
+            return size;
+        }
+
+        synchronized Map<String, Object> toReport() {
+            Map<String, Object> report = new LinkedHashMap<>();
+            if (size == 0) {
+                return report;
+            }
+            long[] sorted = Arrays.copyOf(values, size);
+            Arrays.sort(sorted);
+            for (double percentile : PERCENTILES) {
+                int rank = (int) Math.ceil(percentile / 100 * size) - 1;
+                report.put("p" + (int) percentile, millis(sorted[Math.max(0, rank)]));
+            }
+            report.put("max", millis(sorted[size - 1]));
+            report.put("moyenne", millis((long) Arrays.stream(sorted).average().orElse(0)));
+            return report;
+        }
+    }
+
+    static final class Step {
+        private final Series latency = new Series();
+        private final Map<Integer, AtomicLong> statuses = new ConcurrentHashMap<>();
+        private final AtomicLong errors = new AtomicLong();
+
+        Map<String, Object> toReport() {
+            Map<String, Object> report = new LinkedHashMap<>();
+            report.put("requetes", latency.count());
+            report.put("erreurs", errors.get());
+            Map<Integer, Long> byStatus = new TreeMap<>();
+            statuses.forEach((status, count) -> byStatus.put(status, count.get()));
+            report.put("statuts", byStatus);
+            report.put("latenceMs", latency.toReport());
+            return report;
+        }
+    }
+
+    private final String scenario;
+    private final double targetRate;
+    private final Map<String, Step> steps = new LinkedHashMap<>();
+    private final Series iterations = new Series();
+    private final AtomicLong started = new AtomicLong();
+    private final AtomicLong succeeded = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final Map<String, AtomicLong> failureCauses = new ConcurrentHashMap<>();
+    private final AtomicLong httpRequests = new AtomicLong();
+    private final AtomicLong httpErrors = new AtomicLong();
+
+    private long elapsedNanos;
+    private long sqlStatementsInRequests;
+    private long serverRequests;
+    private long sqlStatementsTotal;
+
+    ScenarioStats(String scenario, double targetRate) {
+        this.scenario = scenario;
+        this.targetRate = targetRate;
+    }
+
+    String getScenario() {
+        return scenario;
+    }
+
+    /**
+     * Étape HTTP terminée ; un statut 0 signale une erreur réseau ou un dépassement de délai.
+     */
+    void stepCompleted(String step, int status, long nanos) {
+        Step stats;
+        synchronized (steps) {
+            stats = steps.computeIfAbsent(step, s -> new Step());
+        }
+        stats.latency.record(nanos);
+        stats.statuses.computeIfAbsent(status, s -> new AtomicLong()).incrementAndGet();
+        httpRequests.incrementAndGet();
+        if (status < 200 || status >= 300) {
+            stats.errors.incrementAndGet();
+            httpErrors.incrementAndGet();
+        }
+    }
+
+    /**
+     * Attente hors HTTP (email reçu, job d'analyse terminé) : mesurée comme une étape, sans statut.
+     */
+    void waitCompleted(String step, boolean ok, long nanos) {
+        Step stats;
+        synchronized (steps) {
+            stats = steps.computeIfAbsent(step, s -> new Step());
+        }
+        stats.latency.record(nanos);
+        if (!ok) {
+            stats.errors.incrementAndGet();
+        }
+    }
+
+    void iterationStarted() {
+        started.incrementAndGet();
+    }
+
+    void iterationSucceeded(long nanos) {
+        succeeded.incrementAndGet();
+        iterations.record(nanos);
+    }
+
+    void iterationFailed(String cause, long nanos) {
+        failed.incrementAndGet();
+        iterations.record(nanos);
+        failureCauses.computeIfAbsent(cause, c -> new AtomicLong()).incrementAndGet();
+    }
+
+    void iterationDropped() {
+        dropped.incrementAndGet();
+    }
+
+    void finished(long elapsedNanos, long sqlStatementsInRequests, long serverRequests, long sqlStatementsTotal) {
+        this.elapsedNanos = elapsedNanos;
+        this.sqlStatementsInRequests = sqlStatementsInRequests;
+        this.serverRequests = serverRequests;
+        this.sqlStatementsTotal = sqlStatementsTotal;
+    }
+
+    Map<String, Object> toReport() {
+        double seconds = elapsedNanos / 1e9;
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("scenario", scenario);
+        report.put("debitCibleParSeconde", targetRate);
+        report.put("dureeSecondes", round(seconds));
+
+        Map<String, Object> iterationReport = new LinkedHashMap<>();
+        iterationReport.put("lancees", started.get());
+        iterationReport.put("reussies", succeeded.get());
+        iterationReport.put("echouees", failed.get());
+        iterationReport.put("abandonnees", dropped.get());
+        iterationReport.put("debitParSeconde", seconds > 0 ? round(succeeded.get() / seconds) : 0);
+        iterationReport.put("latenceMs", iterations.toReport());
+        report.put("iterations", iterationReport);
+
+        Map<String, Object> requestReport = new LinkedHashMap<>();
+        requestReport.put("total", httpRequests.get());
+        requestReport.put("erreurs", httpErrors.get());
+        requestReport.put("debitParSeconde", seconds > 0 ? round(httpRequests.get() / seconds) : 0);
+        report.put("requetesHttp", requestReport);
+
+        Map<String, Object> sqlReport = new LinkedHashMap<>();
+        sqlReport.put("requetesDansLesRequetesHttp", sqlStatementsInRequests);
+        sqlReport.put("parRequeteHttp", serverRequests > 0 ? round((double) sqlStatementsInRequests / serverRequests) : 0);
+        sqlReport.put("totalYComprisTachesDeFond", sqlStatementsTotal);
+        report.put("sql", sqlReport);
+
+        Map<String, Object> stepReport = new LinkedHashMap<>();
+        synchronized (steps) {
+            steps.forEach((name, step) -> stepReport.put(name, step.toReport()));
+        }
+        report.put("etapes", stepReport);
+
+        Map<String, Long> causes = new TreeMap<>();
+        failureCauses.forEach((cause, count) -> causes.put(cause, count.get()));
+        report.put("causesEchec", causes);
+        return report;
+    }
+
+    private static double millis(long nanos) {
+        return round(nanos / (double) TimeUnit.MILLISECONDS.toNanos(1));
+    }
+
+    private static double round(double value) {
+        return Math.round(value * 100) / 100.0;
+    }
+}
@@ -0,0 +1,223 @@
+package com.tunisia.commerce.loadtest;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Serveur SMTP minimal qui accepte et conserve les messages envoyés par la boîte d'envoi.
+ *
+ * Les scénarios y lisent les liens reçus par email (jeton de vérification d'inscription).
+ * Accepte AUTH PLAIN/LOGIN sans contrôle ; la latence et les erreurs (451) s'appliquent à DATA.
+ */
+@Slf4j
+final class SmtpSink {
+
+    private static final Pattern BASE64_PART = Pattern.compile(
+            "Content-Transfer-Encoding: base64\r\n(?:[^\r\n]+\r\n)*\r\n((?:[A-Za-z0-9+/=]+\r\n)+)",
+            Pattern.CASE_INSENSITIVE);
+
+    private final ServerSocket serverSocket;
+    private final FaultProfile faults;
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+    private final Map<String, List<String>> messagesByRecipient = new ConcurrentHashMap<>();
+    private final AtomicLong messageCount = new AtomicLong();
+    private final AtomicLong injectedErrors = new AtomicLong();
+
+    private SmtpSink(FaultProfile faults) throws IOException {
+        this.faults = faults;
+        this.serverSocket = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+    }
+
+    static SmtpSink start(FaultProfile faults) throws IOException {
+        SmtpSink sink = new SmtpSink(faults);
+        sink.executor.submit(sink::acceptLoop);
+        log.info("🧪 Bouchon smtp sur le port {} ({})", sink.getPort(), faults);
+        return sink;
+    }
+
+    int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    FaultProfile getFaults() {
+        return faults;
+    }
+
+    long getMessageCount() {
+        return messageCount.get();
+    }
+
+    long getInjectedErrors() {
+        return injectedErrors.get();
+    }
+
+    void stop() {
+        try {
+            serverSocket.close();
+        } catch (IOException ignored) {
+            // arrêt
+        }
+        executor.shutdownNow();
+    }
+
+    /**
+     * Attend un message adressé à {@code recipient} contenant le motif, et renvoie son premier groupe.
+     */
+    Optional<String> awaitMatch(String recipient, Pattern pattern, Duration timeout) throws InterruptedException {
+        long deadline = System.nanoTime() + timeout.toNanos();
+        String key = recipient.toLowerCase(Locale.ROOT);
+        while (System.nanoTime() < deadline) {
+            for (String message : messagesByRecipient.getOrDefault(key, List.of())) {
+                Matcher matcher = pattern.matcher(message);
+                if (matcher.find()) {
+                    return Optional.of(matcher.group(1));
+                }
+            }
+            Thread.sleep(50);
+        }
+        return Optional.empty();
+    }
+
+    private void acceptLoop() {
+        while (!serverSocket.isClosed()) {
+            try {
+                Socket socket = serverSocket.accept();
+                executor.submit(() -> session(socket));
+            } catch (SocketException e) {
+                return;
+            } catch (IOException e) {
+                log.warn("Bouchon smtp: {}", e.getMessage());
+            }
+        }
+    }
+
+    private void session(Socket socket) {
+        try (socket;
+             BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+             OutputStream out = socket.getOutputStream()) {
+
+            reply(out, "220 loadtest ESMTP");
+            List<String> recipients = new ArrayList<>();
+            String line;
+            while ((line = in.readLine()) != null) {
+                String command = line.toUpperCase(Locale.ROOT);
+                if (command.startsWith("EHLO")) {
+                    reply(out, "250-loadtest\r\n250-AUTH PLAIN LOGIN\r\n250-8BITMIME\r\n250 SMTPUTF8");
+                } else if (command.startsWith("AUTH LOGIN")) {
+                    reply(out, "334 VXNlcm5hbWU6");
+                    in.readLine();
+                    reply(out, "334 UGFzc3dvcmQ6");
+                    in.readLine();
+                    reply(out, "235 2.7.0 Authentication successful");
+                } else if (command.equals("AUTH PLAIN")) {
+                    reply(out, "334 ");
+                    in.readLine();
+                    reply(out, "235 2.7.0 Authentication successful");
+                } else if (command.startsWith("AUTH")) {
+                    reply(out, "235 2.7.0 Authentication successful");
+                } else if (command.startsWith("RCPT TO:")) {
+                    recipients.add(address(line.substring(8)));
+                    reply(out, "250 OK");
+                } else if (command.startsWith("DATA")) {
+                    reply(out, "354 End data with <CR><LF>.<CR><LF>");
+                    String message = readData(in);
+                    faults.delay();
+                    if (faults.shouldFail()) {
+                        injectedErrors.incrementAndGet();
+                        reply(out, "451 4.3.0 Erreur injectée");
+                    } else {
+                        store(recipients, message);
+                        reply(out, "250 OK");
+                    }
+                    recipients.clear();
+                } else if (command.startsWith("RSET")) {
+                    recipients.clear();
+                    reply(out, "250 OK");
+                } else if (command.startsWith("QUIT")) {
+                    reply(out, "221 Bye");
+                    return;
+                } else {
+                    // HELO, MAIL FROM, NOOP...
+                    reply(out, "250 OK");
+                }
+            }
+        } catch (IOException | InterruptedException e) {
+            log.debug("Bouchon smtp: session interrompue ({})", e.getMessage());
+        }
+    }
+
+    private void store(List<String> recipients, String message) {
+        String decoded = decodeBody(message);
+        for (String recipient : recipients) {
+            messagesByRecipient.computeIfAbsent(recipient, r -> new CopyOnWriteArrayList<>()).add(decoded);
+        }
+        messageCount.incrementAndGet();
+    }
+
+    /**
+     * Rend lisibles les parties encodées : base64 décodé, quoted-printable recollé
+     * (lignes coupées et '=' du HTML).
+     */
+    private static String decodeBody(String message) {
+        StringBuilder decoded = new StringBuilder(
+                message.replace("=\r\n", "").replace("=3D", "="));
+        Matcher base64 = BASE64_PART.matcher(message);
+        while (base64.find()) {
+            try {
+                decoded.append("\r\n").append(new String(
+                        Base64.getMimeDecoder().decode(base64.group(1)), StandardCharsets.UTF_8));
+            } catch (IllegalArgumentException ignored) {
+                // partie non décodable : laissée telle quelle
+            }
+        }
+        return decoded.toString();
+    }
+
+    private static String readData(BufferedReader in) throws IOException {
+        StringBuilder message = new StringBuilder();
+        String line;
+        while ((line = in.readLine()) != null && !line.equals(".")) {
+            // Transparence SMTP : un point en tête de ligne est doublé par le client
+            message.append(line.startsWith("..") ? line.substring(1) : line).append("\r\n");
+        }
+        return message.toString();
+    }
+
+    private static String address(String raw) {
+        String address = raw.trim();
+        int start = address.indexOf('<');
+        int end = address.indexOf('>');
+        if (start >= 0 && end > start) {
+            address = address.substring(start + 1, end);
+        }
+        return address.toLowerCase(Locale.ROOT);
+    }
+
+    private static void reply(OutputStream out, String response) throws IOException {
+        out.write((response + "\r\n").getBytes(StandardCharsets.UTF_8));
+        out.flush();
+    }
+}
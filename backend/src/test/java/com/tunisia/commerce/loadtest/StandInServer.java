@@ -0,0 +1,145 @@
+package com.tunisia.commerce.loadtest;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bouchon HTTP local d'un service externe, sur un port éphémère.
+ *
+ * Chaque appel subit la latence du {@link FaultProfile} puis, selon le taux d'erreur,
+ * reçoit la réponse d'erreur du service ou la réponse nominale du {@link Responder}.
+ */
+@Slf4j
+final class StandInServer {
+
+    /**
+     * Réponse nominale du service simulé.
+     */
+    @FunctionalInterface
+    interface Responder {
+        Response respond(Request request) throws Exception;
+    }
+
+    record Request(String method, String path, Map<String, String> query, byte[] body) {
+
+        /**
+         * Corps {@code application/x-www-form-urlencoded} (API Stripe).
+         */
+        Map<String, String> form() {
+            return parseParameters(new String(body, StandardCharsets.UTF_8));
+        }
+    }
+
+    record Response(int status, String json) {
+
+        static Response ok(String json) {
+            return new Response(200, json);
+        }
+    }
+
+    private final String name;
+    private final FaultProfile faults;
+    private final Response errorResponse;
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final AtomicLong calls = new AtomicLong();
+    private final AtomicLong injectedErrors = new AtomicLong();
+
+    private StandInServer(String name, FaultProfile faults, Response errorResponse, Responder responder)
+            throws IOException {
+        this.name = name;
+        this.faults = faults;
+        this.errorResponse = errorResponse;
+        this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        // Un thread par appel en cours : la latence simulée ne doit pas limiter le débit du bouchon
+        this.executor = Executors.newCachedThreadPool();
+        server.setExecutor(executor);
+        server.createContext("/", exchange -> handle(exchange, responder));
+    }
+
+    static StandInServer start(String name, Response errorResponse, Responder responder) throws IOException {
+        StandInServer standIn = new StandInServer(name, FaultProfile.forService(name), errorResponse, responder);
+        standIn.server.start();
+        log.info("🧪 Bouchon {} sur {} ({})", name, standIn.baseUrl(), standIn.faults);
+        return standIn;
+    }
+
+    String baseUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    String getName() {
+        return name;
+    }
+
+    long getCalls() {
+        return calls.get();
+    }
+
+    long getInjectedErrors() {
+        return injectedErrors.get();
+    }
+
+    FaultProfile getFaults() {
+        return faults;
+    }
+
+    void stop() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private void handle(HttpExchange exchange, Responder responder) throws IOException {
+        calls.incrementAndGet();
+        Response response;
+        try (InputStream in = exchange.getRequestBody()) {
+            byte[] body = in.readAllBytes();
+            faults.delay();
+            if (faults.shouldFail()) {
+                injectedErrors.incrementAndGet();
+                response = errorResponse;
+            } else {
+                response = responder.respond(new Request(exchange.getRequestMethod(),
+                        exchange.getRequestURI().getPath(),
+                        parseParameters(exchange.getRequestURI().getRawQuery()), body));
+            }
+        } catch (Exception e) {
+            log.error("❌ Bouchon {}: {}", name, e.getMessage());
+            response = new Response(500, "{\"error\":\"" + e.getClass().getSimpleName() + "\"}");
+        }
+
+        byte[] payload = response.json().getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(response.status(), payload.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(payload);
+        }
+    }
+
+    private static Map<String, String> parseParameters(String raw) {
+        Map<String, String> parameters = new HashMap<>();
+        if (raw == null || raw.isEmpty()) {
+            return parameters;
+        }
+        for (String pair : raw.split("&")) {
+            int separator = pair.indexOf('=');
+            String key = separator < 0 ? pair : pair.substring(0, separator);
+            String value = separator < 0 ? "" : pair.substring(separator + 1);
+            parameters.put(URLDecoder.decode(key, StandardCharsets.UTF_8), URLDecoder.decode(value, StandardCharsets.UTF_8));
+        }
+        return parameters;
+    }
+}
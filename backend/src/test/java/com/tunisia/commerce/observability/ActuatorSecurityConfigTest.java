@@ -0,0 +1,57 @@
+package com.tunisia.commerce.observability;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.security.authentication.TestingAuthenticationToken;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Accès aux endpoints actuator hors /health : réseaux autorisés ou administrateur.
+ */
+class ActuatorSecurityConfigTest {
+
+    private final ActuatorSecurityConfig config = new ActuatorSecurityConfig("/actuator", "127.0.0.1/32, 10.20.0.0/16");
+
+    @Test
+    void scraperOnAnAllowedNetworkNeedsNoToken() {
+        assertTrue(config.decide(null, request("10.20.3.4")).isGranted());
+        assertTrue(config.decide(null, request("127.0.0.1")).isGranted());
+    }
+
+    @Test
+    void otherAddressesAreRejectedEvenWithAForwardedHeader() {
+        MockHttpServletRequest request = request("203.0.113.9");
+        request.addHeader("X-Forwarded-For", "127.0.0.1");
+
+        assertFalse(config.decide(null, request).isGranted());
+    }
+
+    @Test
+    void onlyAnAdministratorMayReadFromElsewhere() {
+        MockHttpServletRequest request = request("203.0.113.9");
+
+        assertTrue(config.decide(authenticated("ADMIN"), request).isGranted());
+        assertFalse(config.decide(authenticated("EXPORTATEUR"), request).isGranted());
+        assertFalse(config.decide(new TestingAuthenticationToken("admin@test.tn", null, "ADMIN") {
+            @Override
+            public boolean isAuthenticated() {
+                return false;
+            }
+        }, request).isGranted());
+    }
+
+    private static MockHttpServletRequest request(String remoteAddr) {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/actuator/prometheus");
+        request.setRemoteAddr(remoteAddr);
+        return request;
+    }
+
+    private static UsernamePasswordAuthenticationToken authenticated(String role) {
+        return new UsernamePasswordAuthenticationToken("user@test.tn", null, List.of(new SimpleGrantedAuthority(role)));
+    }
+}
@@ -0,0 +1,72 @@
+package com.tunisia.commerce.observability;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.FilterChain;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Profil par requête : requêtes SQL et appels sortants comptés par endpoint, profil libéré en fin de requête.
+ */
+class RequestProfilingFilterTest {
+
+    private SimpleMeterRegistry meterRegistry;
+    private OutboundCallMetrics outboundCallMetrics;
+    private final SqlCountingStatementInspector inspector = new SqlCountingStatementInspector();
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        outboundCallMetrics = new OutboundCallMetrics(meterRegistry);
+    }
+
+    @Test
+    void sqlAndExternalCallsAreCountedPerEndpoint() throws Exception {
+        AtomicReference<String> breakdown = new AtomicReference<>();
+        FilterChain chain = (request, response) -> {
+            inspector.inspect("select * from demandes where id = ?");
+            inspector.inspect("select * from documents where demande_id = ?");
+            outboundCallMetrics.record("stripe", "payment-intent.retrieve", () -> "pi_1");
+            breakdown.set(RequestProfile.current().describeExternalCalls());
+            request.setAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE, "/api/demandes/{id}");
+        };
+
+        new RequestProfilingFilter(meterRegistry, 0).doFilter(
+                new MockHttpServletRequest("GET", "/api/demandes/42"), new MockHttpServletResponse(), chain);
+
+        DistributionSummary sql = meterRegistry.get("http.server.requests.sql")
+                .tag("method", "GET").tag("uri", "/api/demandes/{id}").summary();
+        assertEquals(1, sql.count());
+        assertEquals(2.0, sql.totalAmount());
+        assertEquals(1.0, meterRegistry.get("http.server.requests.externes")
+                .tag("uri", "/api/demandes/{id}").summary().totalAmount());
+        assertEquals(1, meterRegistry.get("outbound.calls")
+                .tag("client", "stripe").tag("outcome", "succes").timer().count());
+        assertTrue(breakdown.get().startsWith("stripe=1/"));
+        assertNull(RequestProfile.current());
+    }
+
+    @Test
+    void failedCallIsRecordedAndRethrown() {
+        assertThrows(IllegalStateException.class, () -> outboundCallMetrics.record("ip-api", "geolocalisation", () -> {
+            throw new IllegalStateException("hors service");
+        }));
+
+        assertEquals(1, meterRegistry.get("outbound.calls")
+                .tag("client", "ip-api").tag("outcome", "erreur").timer().count());
+    }
+
+    @Test
+    void statementsOutsideRequestsAreIgnored() {
+        assertEquals("select 1", inspector.inspect("select 1"));
+        assertNull(RequestProfile.current());
+    }
+}
@@ -0,0 +1,154 @@
+package com.tunisia.commerce.scheduling;
+
+import com.stripe.Stripe;
+import com.stripe.model.Event;
+import com.stripe.model.PaymentIntent;
+import com.stripe.model.PaymentIntentCollection;
+import com.tunisia.commerce.config.StorageConfig;
+import com.tunisia.commerce.entity.StripeWebhookEvent;
+import com.tunisia.commerce.enums.WebhookEventStatus;
+import com.tunisia.commerce.repository.DocumentRepository;
+import com.tunisia.commerce.repository.PaymentLedgerRepository;
+import com.tunisia.commerce.repository.StripeWebhookEventRepository;
+import com.tunisia.commerce.service.StripeGateway;
+import com.tunisia.commerce.service.impl.BlobStoreService;
+import com.tunisia.commerce.service.impl.DocumentBlobMigrationService;
+import com.tunisia.commerce.service.impl.PaymentLedgerReconciliationService;
+import com.tunisia.commerce.service.impl.PaymentLedgerService;
+import com.tunisia.commerce.service.impl.SecureStorageService;
+import com.tunisia.commerce.service.impl.StorageCleanupService;
+import com.tunisia.commerce.service.impl.StripePaymentService;
+import com.tunisia.commerce.service.impl.StripeWebhookInboxService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.runner.ApplicationContextRunner;
+import org.springframework.data.domain.Pageable;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Les tâches {@code @Scheduled} s'exécutent sans autre déclencheur que le planificateur
+ * activé par SchedulingConfig (contexte Spring réel, dépendances simulées).
+ */
+class SchedulingConfigTest {
+
+    private final ApplicationContextRunner contextRunner = new ApplicationContextRunner()
+            .withUserConfiguration(SchedulingConfig.class);
+
+    @Test
+    void webhookInboxIsDispatchedWithoutAnExplicitCall() {
+        StripeWebhookEventRepository inboxRepository = mock(StripeWebhookEventRepository.class);
+        StripePaymentService stripePaymentService = mock(StripePaymentService.class);
+        StripeWebhookEvent pending = StripeWebhookEvent.builder()
+                .id(1L)
+                .eventId("evt_1")
+                .eventType("payment_intent.succeeded")
+                .orderingKey("pi:pi_1")
+                .payload("{\"id\":\"evt_1\",\"object\":\"event\",\"api_version\":\"" + Stripe.API_VERSION + "\","
+                        + "\"type\":\"payment_intent.succeeded\",\"data\":{\"object\":{\"id\":\"pi_1\",\"object\":\"payment_intent\"}}}")
+                .status(WebhookEventStatus.EN_ATTENTE)
+                .attempts(0)
+                .receivedAt(LocalDateTime.now())
+                .build();
+        when(inboxRepository.findByStatusInOrderByIdAsc(anyCollection(), any(Pageable.class)))
+                .thenReturn(List.of(pending), List.of());
+        when(inboxRepository.claim(eq(1L), anyCollection(), any())).thenReturn(1);
+
+        contextRunner
+                .withPropertyValues("app.webhooks.poll-interval-ms=50")
+                .withBean(StripeWebhookInboxService.class, () -> new StripeWebhookInboxService(inboxRepository,
+                        stripePaymentService, new SimpleMeterRegistry(), "whsec_test", 1, 8, 30, 3600, 30, 900))
+                .run(context -> {
+                    verify(stripePaymentService, timeout(5000)).processWebhookEvent(any(Event.class));
+                    verify(inboxRepository, timeout(5000)).save(argThat(event ->
+                            event.getStatus() == WebhookEventStatus.TRAITE));
+                    // Bail des prises en charge contrôlé périodiquement, pas seulement au démarrage
+                    verify(inboxRepository, timeout(5000)).releaseClaimedBefore(any());
+                });
+    }
+
+    @Test
+    void emptyLedgerIsFilledByTheIncrementalReconciliation() throws Exception {
+        StripeGateway stripeGateway = mock(StripeGateway.class);
+        PaymentLedgerService ledgerService = mock(PaymentLedgerService.class);
+        PaymentLedgerRepository ledgerRepository = mock(PaymentLedgerRepository.class);
+        PaymentIntent paymentIntent = new PaymentIntent();
+        paymentIntent.setId("pi_1");
+        when(ledgerRepository.findLatestCreatedAt()).thenReturn(null);
+        when(stripeGateway.listPaymentIntents(any(), any(), anyLong())).thenReturn(page(paymentIntent));
+
+        contextRunner
+                .withPropertyValues(
+                        "app.payments.reconciliation-initial-delay-ms=50",
+                        "app.payments.reconciliation-interval-ms=60000")
+                .withBean(PaymentLedgerReconciliationService.class, () ->
+                        new PaymentLedgerReconciliationService(stripeGateway, ledgerService, ledgerRepository))
+                .run(context -> {
+                    // Registre vide : tout l'historique est importé
+                    verify(stripeGateway, timeout(5000)).listPaymentIntents(isNull(), isNull(), eq(100L));
+                    verify(ledgerService, timeout(5000)).recordPaymentIntent(same(paymentIntent), anyLong(),
+                            eq(PaymentLedgerService.SOURCE_RECONCILIATION));
+                });
+    }
+
+    @Test
+    void fullHistoryReconciliationRunsOnItsCron() throws Exception {
+        StripeGateway stripeGateway = mock(StripeGateway.class);
+        PaymentLedgerService ledgerService = mock(PaymentLedgerService.class);
+        PaymentLedgerRepository ledgerRepository = mock(PaymentLedgerRepository.class);
+        when(ledgerRepository.findLatestCreatedAt()).thenReturn(LocalDateTime.now());
+        when(stripeGateway.listPaymentIntents(any(), any(), anyLong())).thenReturn(page());
+
+        contextRunner
+                .withPropertyValues(
+                        "app.payments.reconciliation-initial-delay-ms=3600000",
+                        "app.payments.full-reconciliation-cron=* * * * * *")
+                .withBean(PaymentLedgerReconciliationService.class, () ->
+                        new PaymentLedgerReconciliationService(stripeGateway, ledgerService, ledgerRepository))
+                .run(context -> verify(stripeGateway, timeout(5000))
+                        .listPaymentIntents(isNull(), isNull(), anyLong()));
+    }
+
+    @Test
+    void unreferencedBlobsAreCollectedPeriodically() {
+        BlobStoreService blobStoreService = mock(BlobStoreService.class);
+        when(blobStoreService.collectGarbage()).thenReturn(2, 0);
+
+        contextRunner
+                .withPropertyValues("app.storage.blob-gc-interval-ms=50")
+                .withBean(StorageCleanupService.class, () -> new StorageCleanupService(blobStoreService,
+                        mock(SecureStorageService.class), mock(StorageConfig.class)))
+                .run(context -> verify(blobStoreService, timeout(5000).atLeast(2)).collectGarbage());
+    }
+
+    @Test
+    void legacyDocumentsAreMigratedBatchByBatchUntilNoneRemain() {
+        DocumentRepository documentRepository = mock(DocumentRepository.class);
+        when(documentRepository.findLegacyDocumentIds(anyLong(), any(Pageable.class)))
+                .thenReturn(List.of(7L), List.of());
+        when(documentRepository.findById(7L)).thenReturn(Optional.empty());
+
+        contextRunner
+                .withPropertyValues("app.storage.blob-migration.interval-ms=50")
+                .withBean(DocumentBlobMigrationService.class, () -> new DocumentBlobMigrationService(documentRepository,
+                        mock(SecureStorageService.class), mock(PlatformTransactionManager.class), true, 10))
+                .run(context -> {
+                    verify(documentRepository, timeout(5000)).findById(7L);
+                    // Lot suivant repris après le dernier document traité
+                    verify(documentRepository, timeout(5000)).findLegacyDocumentIds(eq(7L), any(Pageable.class));
+                });
+    }
+
+    private static PaymentIntentCollection page(PaymentIntent... paymentIntents) {
+        PaymentIntentCollection page = new PaymentIntentCollection();
+        page.setData(List.of(paymentIntents));
+        page.setHasMore(false);
+        return page;
+    }
+}
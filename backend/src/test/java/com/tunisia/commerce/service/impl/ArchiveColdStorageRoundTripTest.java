@@ -0,0 +1,277 @@
+package com.tunisia.commerce.service.impl;
+
+import com.tunisia.commerce.repository.DemandeArchiveRepository;
+import com.tunisia.commerce.repository.DemandeEnregistrementRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.sql.ResultSetMetaData;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Aller-retour tables actives → stockage froid → tables actives sur PostgreSQL, avec les requêtes
+ * natives telles qu'elles sont déclarées dans DemandeArchiveRepository et DemandeEnregistrementRepository
+ * (to_jsonb, jsonb_populate_record, UPDATE ensemblistes).
+ *
+ * Nécessite une base dédiée : {@code -Darchive.test.datasource-url=jdbc:postgresql://...}
+ * ({@code archive.test.datasource-username}, {@code archive.test.datasource-password}) ; ignoré sinon.
+ * Les tables sont créées dans un schéma jetable, supprimé à la fin de chaque test. Elles reprennent
+ * les noms et types de colonnes générés pour les entités, limités aux colonnes utiles au test.
+ */
+class ArchiveColdStorageRoundTripTest {
+
+    private static final String URL = System.getProperty("archive.test.datasource-url", "");
+
+    // Réinitialisées par la restauration : exclues de la comparaison colonne à colonne
+    private static final Set<String> ARCHIVE_COLUMNS = Set.of("is_archived", "archived_at", "archived_by",
+            "archive_reason", "archive_type");
+
+    private static final LocalDateTime ARCHIVED_AT = LocalDateTime.now().minusDays(400).withNano(123456000);
+
+    private String schema;
+    private DriverManagerDataSource dataSource;
+    private JdbcTemplate jdbc;
+    private ArchiveService archiveService;
+
+    @BeforeEach
+    void setUp() {
+        assumeTrue(!URL.isEmpty(), "archive.test.datasource-url non renseignée : test PostgreSQL ignoré");
+
+        schema = "archive_test_" + Long.toString(System.currentTimeMillis(), 36);
+        new JdbcTemplate(dataSource(URL)).execute("CREATE SCHEMA " + schema);
+        dataSource = dataSource(URL + (URL.contains("?") ? "&" : "?") + "currentSchema=" + schema);
+        jdbc = new JdbcTemplate(dataSource);
+        createTables();
+
+        NamedParameterJdbcTemplate namedJdbc = new NamedParameterJdbcTemplate(dataSource);
+        // Seule requête JPQL utilisée par le déplacement et la restauration
+        Map<String, String> jpql = Map.of("findRestorableIds",
+                "SELECT id FROM demandes_enregistrement_archive WHERE id IN (:ids) AND can_be_restored = true");
+        archiveService = new ArchiveService(
+                nativeRepository(DemandeEnregistrementRepository.class, namedJdbc, Map.of()),
+                nativeRepository(DemandeArchiveRepository.class, namedJdbc, jpql),
+                mock(PrincipalCacheService.class), mock(ImportateurDashboardService.class),
+                new DataSourceTransactionManager(dataSource), 2, 180);
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (schema != null) {
+            new JdbcTemplate(dataSource(URL)).execute("DROP SCHEMA IF EXISTS " + schema + " CASCADE");
+        }
+    }
+
+    @Test
+    void everyColumnSurvivesTheColdMoveAndTheRestore() {
+        insertDemande(1, true, true);
+        jdbc.update("INSERT INTO demande_importateur VALUES (1, 'FAC-2024-001', 15230.75, DATE '2024-02-29')");
+        jdbc.update("INSERT INTO demande_produit VALUES (10, 1, 501, 12), (11, 1, 502, NULL)");
+        jdbc.update("INSERT INTO documents VALUES (20, 1, 'registre « commerce ».pdf', '/blobs/ab/abcd', "
+                + "'abcd', 'abcd', 48213, TIMESTAMP '2024-03-01 10:15:30.654321')");
+        jdbc.update("INSERT INTO demande_validateur VALUES (30, 1, 9, 'APPROUVE', 'Dossier complet ; RAS', "
+                + "TIMESTAMP '2024-03-02 08:00:00')");
+        // Non restaurable, reste en stockage froid ; non archivée, reste active
+        insertDemande(2, true, false);
+        insertDemande(3, false, true);
+        Map<String, List<Map<String, Object>>> before = snapshot(1);
+
+        assertEquals(2, archiveService.moveToColdStorage());
+
+        assertEquals(0, count("demandes_enregistrement WHERE id IN (1, 2)"));
+        assertEquals(1, count("demandes_enregistrement WHERE id = 3"));
+        assertEquals(0, count("demande_produit") + count("documents") + count("demande_validateur")
+                + count("demande_importateur"));
+        assertEquals(5, count("demandes_archive_lignes WHERE demande_id = 1"));
+        Map<String, Object> cold = jdbc.queryForMap("SELECT * FROM demandes_enregistrement_archive WHERE id = 1");
+        for (String column : List.of("reference", "status", "type_demande", "payment_status", "submitted_at",
+                "decision_date", "numero_agrement", "date_agrement", "importateur_id", "archived_at", "archived_by",
+                "archive_reason", "archive_type", "can_be_restored")) {
+            assertEquals(before.get("demandes_enregistrement").get(0).get(column), cold.get(column), column);
+        }
+
+        // Colonne ajoutée après l'archivage : restaurée à NULL, les autres par leur nom
+        jdbc.execute("ALTER TABLE demandes_enregistrement ADD COLUMN priorite varchar(20)");
+
+        assertEquals(1, archiveService.bulkRestore(List.of(1L, 2L), "admin@test.tn"));
+
+        Map<String, List<Map<String, Object>>> after = snapshot(1);
+        before.forEach((table, rows) -> assertEquals(withoutArchiveColumns(rows),
+                withoutArchiveColumns(after.get(table)), table));
+        Map<String, Object> restored = after.get("demandes_enregistrement").get(0);
+        assertEquals(false, restored.get("is_archived"));
+        assertNull(restored.get("archived_at"));
+        assertNull(restored.get("archive_type"));
+        assertNull(restored.get("priorite"));
+        assertEquals(0, count("demandes_enregistrement_archive WHERE id = 1"));
+        assertEquals(0, count("demandes_archive_lignes WHERE demande_id = 1"));
+        assertEquals(1, count("demandes_enregistrement_archive WHERE id = 2"));
+    }
+
+    @Test
+    void coldMoveCrossesChunkBoundaries() {
+        for (long id = 1; id <= 5; id++) {
+            insertDemande(id, true, true);
+            jdbc.update("INSERT INTO demande_produit VALUES (?, ?, 500, 1)", 100 + id, id);
+        }
+
+        // Lots de 2 : 2 + 2 + 1
+        assertEquals(5, archiveService.moveToColdStorage());
+
+        assertEquals(0, count("demandes_enregistrement"));
+        assertEquals(5, count("demandes_enregistrement_archive"));
+        assertEquals(5, count("demandes_archive_lignes WHERE source_table = 'demande_produit'"));
+
+        assertEquals(5, archiveService.bulkRestore(List.of(5L, 4L, 3L, 2L, 1L), "admin@test.tn"));
+        assertEquals(5, count("demande_produit"));
+        assertEquals(0, count("demandes_enregistrement_archive"));
+    }
+
+    // ==================== DONNÉES ====================
+
+    private void createTables() {
+        jdbc.execute("CREATE TABLE demandes_enregistrement (id bigint PRIMARY KEY, reference varchar(255) UNIQUE, "
+                + "status varchar(255), submitted_at timestamp(6), payment_reference varchar(255), "
+                + "payment_amount numeric(38,2), payment_status varchar(255), decision_date timestamp(6), "
+                + "decision_comment varchar(255), numero_agrement varchar(255), date_agrement date, "
+                + "type_demande varchar(255), is_archived boolean, archived_at timestamp(6), archived_by varchar(255), "
+                + "archive_reason varchar(255), archive_type varchar(255), can_be_restored boolean, "
+                + "exportateur_id bigint, importateur_id bigint)");
+        jdbc.execute("CREATE TABLE demande_importateur (id bigint PRIMARY KEY REFERENCES demandes_enregistrement, "
+                + "invoice_number varchar(255), invoice_value numeric(38,2), invoice_date date)");
+        jdbc.execute("CREATE TABLE demande_produit (id bigint PRIMARY KEY, "
+                + "demande_id bigint REFERENCES demandes_enregistrement, produit_id bigint, quantite integer)");
+        jdbc.execute("CREATE TABLE documents (id bigint PRIMARY KEY, demande_id bigint REFERENCES demandes_enregistrement, "
+                + "file_name varchar(255), file_path varchar(255), file_hash varchar(255), blob_hash varchar(64), "
+                + "file_size bigint, uploaded_at timestamp(6))");
+        jdbc.execute("CREATE TABLE demande_validateur (id bigint PRIMARY KEY, "
+                + "demande_id bigint REFERENCES demandes_enregistrement, validateur_id bigint, decision varchar(255), "
+                + "commentaire text, decided_at timestamp(6))");
+        jdbc.execute("CREATE TABLE demandes_enregistrement_archive (id bigint PRIMARY KEY, reference varchar(255), "
+                + "status varchar(255), type_demande varchar(255), payment_status varchar(255), submitted_at timestamp(6), "
+                + "decision_date timestamp(6), numero_agrement varchar(255), date_agrement date, exportateur_id bigint, "
+                + "importateur_id bigint, archived_at timestamp(6), archived_by varchar(255), archive_reason varchar(255), "
+                + "archive_type varchar(255), can_be_restored boolean NOT NULL, moved_at timestamp(6) NOT NULL, "
+                + "payload jsonb NOT NULL)");
+        jdbc.execute("CREATE TABLE demandes_archive_lignes (id bigserial PRIMARY KEY, demande_id bigint NOT NULL, "
+                + "source_table varchar(50) NOT NULL, source_id bigint NOT NULL, payload jsonb NOT NULL)");
+    }
+
+    private void insertDemande(long id, boolean archived, boolean canBeRestored) {
+        jdbc.update("INSERT INTO demandes_enregistrement (id, reference, status, submitted_at, payment_reference, "
+                        + "payment_amount, payment_status, decision_date, decision_comment, numero_agrement, date_agrement, "
+                        + "type_demande, is_archived, archived_at, archived_by, archive_reason, archive_type, "
+                        + "can_be_restored, exportateur_id, importateur_id) "
+                        + "VALUES (?, ?, 'VALIDEE', ?, 'pi_3Nx', ?, 'REUSSI', ?, 'Conforme à l''annexe 2', 'AGR-2024-0042', "
+                        + "?, 'IMPORT', ?, ?, ?, ?, ?, ?, NULL, 77)",
+                id, "DEM-2024-" + id, LocalDateTime.of(2024, 1, 15, 9, 30, 12, 345678000), new BigDecimal("1250.50"),
+                LocalDateTime.of(2024, 2, 1, 14, 0), LocalDate.of(2024, 2, 1), archived,
+                archived ? ARCHIVED_AT : null, archived ? "SYSTEM" : null,
+                archived ? "Archivage automatique après 90 jours" : null, archived ? "AUTOMATIC" : null, canBeRestored);
+    }
+
+    private Map<String, List<Map<String, Object>>> snapshot(long demandeId) {
+        Map<String, List<Map<String, Object>>> tables = new LinkedHashMap<>();
+        tables.put("demandes_enregistrement", rowsOf("demandes_enregistrement WHERE id = ?", demandeId));
+        tables.put("demande_importateur", rowsOf("demande_importateur WHERE id = ?", demandeId));
+        for (String table : List.of("demande_produit", "documents", "demande_validateur")) {
+            tables.put(table, rowsOf(table + " WHERE demande_id = ?", demandeId));
+        }
+        return tables;
+    }
+
+    private List<Map<String, Object>> rowsOf(String from, long demandeId) {
+        List<Map<String, Object>> rows = jdbc.queryForList("SELECT * FROM " + from + " ORDER BY id", demandeId);
+        assertFalse(rows.isEmpty(), from);
+        return rows;
+    }
+
+    private static List<Map<String, Object>> withoutArchiveColumns(List<Map<String, Object>> rows) {
+        return rows.stream().map(row -> {
+            Map<String, Object> copy = new HashMap<>(row);
+            copy.keySet().removeAll(ARCHIVE_COLUMNS);
+            copy.remove("priorite");
+            return copy;
+        }).toList();
+    }
+
+    private int count(String from) {
+        Integer count = jdbc.queryForObject("SELECT count(*) FROM " + from, Integer.class);
+        return count != null ? count : 0;
+    }
+
+    private static DriverManagerDataSource dataSource(String url) {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(url,
+                System.getProperty("archive.test.datasource-username"),
+                System.getProperty("archive.test.datasource-password"));
+        dataSource.setDriverClassName("org.postgresql.Driver");
+        return dataSource;
+    }
+
+    // ==================== DÉPÔTS ====================
+
+    /**
+     * Dépôt dont les méthodes exécutent leur requête native @Query (ou la requête SQL fournie pour une
+     * requête JPQL) ; toute autre méthode est refusée.
+     */
+    @SuppressWarnings("unchecked")
+    private static <T> T nativeRepository(Class<T> type, NamedParameterJdbcTemplate jdbc, Map<String, String> sqlByMethod) {
+        return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, (proxy, method, args) -> {
+            if (method.getDeclaringClass() == Object.class) {
+                return switch (method.getName()) {
+                    case "equals" -> proxy == args[0];
+                    case "hashCode" -> System.identityHashCode(proxy);
+                    default -> type.getSimpleName();
+                };
+            }
+            String sql = sqlByMethod.containsKey(method.getName())
+                    ? sqlByMethod.get(method.getName())
+                    : nativeSql(method);
+            MapSqlParameterSource parameters = new MapSqlParameterSource();
+            for (int i = 0; i < method.getParameterCount(); i++) {
+                parameters.addValue(method.getParameters()[i].getAnnotation(Param.class).value(), args[i]);
+            }
+            if (method.isAnnotationPresent(Modifying.class)) {
+                return jdbc.update(sql, parameters);
+            }
+            Class<?> element = (Class<?>) ((ParameterizedType) method.getGenericReturnType()).getActualTypeArguments()[0];
+            if (element == Long.class) {
+                return jdbc.queryForList(sql, parameters, Long.class);
+            }
+            return jdbc.query(sql, parameters, (rs, rowNum) -> {
+                ResultSetMetaData metaData = rs.getMetaData();
+                Object[] row = new Object[metaData.getColumnCount()];
+                for (int column = 0; column < row.length; column++) {
+                    row[column] = rs.getObject(column + 1);
+                }
+                return row;
+            });
+        });
+    }
+
+    private static String nativeSql(Method method) {
+        Query query = method.getAnnotation(Query.class);
+        if (query == null || !query.nativeQuery()) {
+            throw new UnsupportedOperationException(method.getName() + " n'est pas une requête native");
+        }
+        return query.value();
+    }
+}
@@ -0,0 +1,169 @@
+package com.tunisia.commerce.service.impl;
+
+import com.tunisia.commerce.repository.DemandeArchiveRepository;
+import com.tunisia.commerce.repository.DemandeEnregistrementRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Archivage par lots : découpage aux bornes des lots (lot incomplet, multiple exact de la taille),
+ * lots dédoublonnés, ordre des écritures du déplacement vers le stockage froid.
+ */
+class ArchiveServiceTest {
+
+    private static final int CHUNK_SIZE = 2;
+
+    private DemandeEnregistrementRepository demandeRepository;
+    private DemandeArchiveRepository archiveRepository;
+    private ImportateurDashboardService dashboardService;
+    private ArchiveService archiveService;
+
+    @BeforeEach
+    void setUp() {
+        demandeRepository = mock(DemandeEnregistrementRepository.class);
+        archiveRepository = mock(DemandeArchiveRepository.class);
+        dashboardService = mock(ImportateurDashboardService.class);
+        when(demandeRepository.findArchivableByPaymentStatus(anyString(), any(LocalDateTime.class), anyLong(), anyInt()))
+                .thenReturn(List.of());
+        when(demandeRepository.findArchivableByDateAgrement(anyString(), any(LocalDate.class), anyLong(), anyInt()))
+                .thenReturn(List.of());
+        when(demandeRepository.archiveByIds(anyCollection(), any(), anyString(), anyString(), anyString()))
+                .thenAnswer(inv -> inv.<List<Long>>getArgument(0).size());
+        archiveService = new ArchiveService(demandeRepository, archiveRepository, mock(PrincipalCacheService.class),
+                dashboardService, mock(PlatformTransactionManager.class), CHUNK_SIZE, 180);
+    }
+
+    // ==================== ARCHIVAGE AUTOMATIQUE ====================
+
+    @Test
+    void incompleteLastChunkEndsTheScan() {
+        completedDemandes(0, rows(1, 2));
+        completedDemandes(2, rows(3, 4));
+        completedDemandes(4, rows(5));
+
+        archiveService.automaticArchive();
+
+        List<List<Long>> chunks = archivedChunks();
+        assertEquals(List.of(List.of(1L, 2L), List.of(3L, 4L), List.of(5L)), chunks);
+        // Le lot de 1 < 2 suffit à conclure : pas de requête après l'id 5
+        verify(demandeRepository, never()).findArchivableByStatusAndDecisionDate(anyCollection(), any(), eq(5L), anyInt());
+    }
+
+    @Test
+    void exactMultipleOfTheChunkSizeNeedsOneEmptyRead() {
+        completedDemandes(0, rows(1, 2));
+        completedDemandes(2, rows(3, 4));
+        completedDemandes(4, List.of());
+
+        archiveService.automaticArchive();
+
+        assertEquals(List.of(List.of(1L, 2L), List.of(3L, 4L)), archivedChunks());
+        verify(demandeRepository).findArchivableByStatusAndDecisionDate(anyCollection(), any(), eq(4L), eq(CHUNK_SIZE));
+    }
+
+    @Test
+    void dashboardsOfEachImportateurAreInvalidatedOncePerChunk() {
+        completedDemandes(0, List.of(new Object[]{1L, 70L}, new Object[]{2L, 70L}));
+        completedDemandes(2, List.of(new Object[]{3L, null}));
+
+        archiveService.automaticArchive();
+
+        verify(dashboardService, times(1)).invalidateAfterCommit(70L);
+        verifyNoMoreInteractions(dashboardService);
+    }
+
+    // ==================== ARCHIVAGE ET RESTAURATION EN MASSE ====================
+
+    @Test
+    void bulkArchiveDeduplicatesThenSplitsIntoChunks() {
+        when(demandeRepository.findIdAndImportateurByIdIn(anyCollection()))
+                .thenAnswer(inv -> inv.<List<Long>>getArgument(0).stream().map(id -> new Object[]{id, null}).toList());
+
+        int archived = archiveService.bulkArchive(List.of(1L, 2L, 3L, 2L, 4L, 5L), "admin@test.tn", "Nettoyage");
+
+        assertEquals(5, archived);
+        assertEquals(List.of(List.of(1L, 2L), List.of(3L, 4L), List.of(5L)), archivedChunks());
+    }
+
+    @Test
+    void bulkRestoreBringsBackColdDemandesBeforeUnarchiving() {
+        when(archiveRepository.findRestorableIds(List.of(1L, 2L))).thenReturn(List.of(2L));
+        when(archiveRepository.findRestorableIds(List.of(3L))).thenReturn(List.of());
+        when(demandeRepository.unarchiveByIds(anyCollection())).thenAnswer(inv -> inv.<List<Long>>getArgument(0).size());
+        when(demandeRepository.findIdAndImportateurByIdIn(anyCollection())).thenReturn(List.of());
+
+        int restored = archiveService.bulkRestore(List.of(1L, 2L, 3L), "admin@test.tn");
+
+        assertEquals(3, restored);
+        InOrder order = inOrder(archiveRepository, demandeRepository);
+        order.verify(archiveRepository).restoreDemandesFromCold(List.of(2L));
+        order.verify(archiveRepository).restoreImportateurDetailsFromCold(List.of(2L));
+        order.verify(archiveRepository).restoreProduitsFromCold(List.of(2L));
+        order.verify(archiveRepository).restoreDocumentsFromCold(List.of(2L));
+        order.verify(archiveRepository).restoreValidateursFromCold(List.of(2L));
+        order.verify(archiveRepository).deleteColdLignes(List.of(2L));
+        order.verify(archiveRepository).deleteColdDemandes(List.of(2L));
+        order.verify(demandeRepository).unarchiveByIds(List.of(1L, 2L));
+        // Lot sans demande en stockage froid : aucune écriture sur les tables froides
+        verify(archiveRepository, never()).restoreDemandesFromCold(List.of(3L));
+    }
+
+    // ==================== STOCKAGE FROID ====================
+
+    @Test
+    void coldMoveCopiesEveryTableBeforeDeletingChildrenThenParents() {
+        when(demandeRepository.findArchivedBefore(any(), eq(CHUNK_SIZE))).thenReturn(rows(1, 2), rows(3));
+        when(archiveRepository.copyDemandesToCold(anyCollection(), any()))
+                .thenAnswer(inv -> inv.<List<Long>>getArgument(0).size());
+
+        int moved = archiveService.moveToColdStorage();
+
+        assertEquals(3, moved);
+        verify(demandeRepository, times(2)).findArchivedBefore(any(), eq(CHUNK_SIZE));
+        List<Long> firstChunk = List.of(1L, 2L);
+        InOrder order = inOrder(archiveRepository);
+        order.verify(archiveRepository).copyDemandesToCold(eq(firstChunk), any());
+        order.verify(archiveRepository).copyImportateurDetailsToCold(firstChunk);
+        order.verify(archiveRepository).copyProduitsToCold(firstChunk);
+        order.verify(archiveRepository).copyDocumentsToCold(firstChunk);
+        order.verify(archiveRepository).copyValidateursToCold(firstChunk);
+        order.verify(archiveRepository).deleteHotValidateurs(firstChunk);
+        order.verify(archiveRepository).deleteHotDocuments(firstChunk);
+        order.verify(archiveRepository).deleteHotProduits(firstChunk);
+        order.verify(archiveRepository).deleteHotImportateurDetails(firstChunk);
+        order.verify(archiveRepository).deleteHotDemandes(firstChunk);
+        order.verify(archiveRepository).copyDemandesToCold(eq(List.of(3L)), any());
+    }
+
+    private void completedDemandes(long afterId, List<Object[]> rows) {
+        when(demandeRepository.findArchivableByStatusAndDecisionDate(anyCollection(), any(LocalDateTime.class),
+                eq(afterId), eq(CHUNK_SIZE))).thenReturn(rows);
+    }
+
+    private List<List<Long>> archivedChunks() {
+        List<List<Long>> chunks = new ArrayList<>();
+        mockingDetails(demandeRepository).getInvocations().stream()
+                .filter(invocation -> invocation.getMethod().getName().equals("archiveByIds"))
+                .forEach(invocation -> chunks.add(List.copyOf(invocation.<List<Long>>getArgument(0))));
+        return chunks;
+    }
+
+    private static List<Object[]> rows(long... ids) {
+        List<Object[]> rows = new ArrayList<>();
+        for (long id : ids) {
+            rows.add(new Object[]{id, null});
+        }
+        return rows;
+    }
+}
@@ -0,0 +1,198 @@
+package com.tunisia.commerce.service.impl;
+
+import com.tunisia.commerce.config.StorageConfig;
+import com.tunisia.commerce.repository.StoredBlobRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Stockage adressé par contenu. L'index stored_blobs est simulé en mémoire (compteur par empreinte),
+ * les fichiers sont écrits dans un répertoire temporaire.
+ */
+class BlobStoreServiceTest {
+
+    private static final String HASH = "ab".repeat(32);
+    private static final String OTHER_HASH = "cd".repeat(32);
+
+    @TempDir
+    Path baseDir;
+
+    private final Map<String, Integer> refCounts = new HashMap<>();
+    private StoredBlobRepository blobRepository;
+    private BlobStoreService blobStore;
+
+    @BeforeEach
+    void setUp() {
+        blobRepository = mock(StoredBlobRepository.class);
+        when(blobRepository.acquire(anyString(), anyString(), anyLong(), any())).thenAnswer(inv -> {
+            refCounts.merge(inv.getArgument(0), 1, Integer::sum);
+            return 1;
+        });
+        when(blobRepository.release(anyString(), any())).thenAnswer(inv -> {
+            String hash = inv.getArgument(0);
+            if (refCounts.getOrDefault(hash, 0) == 0) {
+                return 0;
+            }
+            refCounts.merge(hash, -1, Integer::sum);
+            return 1;
+        });
+        when(blobRepository.registerUnreferenced(anyString(), anyString(), anyLong(), any())).thenAnswer(inv -> {
+            refCounts.putIfAbsent(inv.getArgument(0), 0);
+            return 1;
+        });
+
+        StorageConfig storageConfig = mock(StorageConfig.class);
+        when(storageConfig.getBasePath()).thenReturn(baseDir);
+
+        blobStore = new BlobStoreService(blobRepository, storageConfig, mock(PlatformTransactionManager.class), 24, 2, 10);
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    // ==================== COMPTAGE DES RÉFÉRENCES ====================
+
+    @Test
+    void sameContentIsWrittenOnceAndCountedTwice() throws Exception {
+        AtomicInteger writes = new AtomicInteger();
+
+        Path first = blobStore.acquireStreaming(HASH, 4, out -> {
+            writes.incrementAndGet();
+            out.write("data".getBytes(StandardCharsets.UTF_8));
+        });
+        Path second = blobStore.acquireStreaming(HASH, 4, out -> {
+            writes.incrementAndGet();
+            out.write("data".getBytes(StandardCharsets.UTF_8));
+        });
+
+        assertEquals(first, second);
+        assertEquals(1, writes.get());
+        assertEquals(2, refCounts.get(HASH));
+        assertEquals("data", Files.readString(first));
+        assertEquals(baseDir.resolve("blobs").resolve("ab").resolve("ab").resolve(HASH), first);
+    }
+
+    @Test
+    void releaseDecrementsWithoutDeletingTheFile() throws Exception {
+        Path path = blobStore.acquire(HASH, 4, () -> "data".getBytes(StandardCharsets.UTF_8));
+
+        blobStore.release(HASH);
+        blobStore.release(HASH);
+
+        assertEquals(0, refCounts.get(HASH));
+        assertTrue(Files.exists(path));
+    }
+
+    @Test
+    void failedWriteLeavesNoPartialBlob() {
+        assertThrows(IllegalStateException.class, () -> blobStore.acquireStreaming(HASH, 4, out -> {
+            out.write("da".getBytes(StandardCharsets.UTF_8));
+            throw new IllegalStateException("flux interrompu");
+        }));
+
+        assertFalse(Files.exists(blobStore.pathFor(HASH)));
+        try (var files = Files.list(blobStore.pathFor(HASH).getParent())) {
+            assertEquals(0, files.count());
+        } catch (Exception e) {
+            fail(e);
+        }
+    }
+
+    @Test
+    void fileWrittenByRolledBackTransactionIsIndexedForCollection() throws Exception {
+        TransactionSynchronizationManager.initSynchronization();
+
+        blobStore.acquire(HASH, 4, () -> "data".getBytes(StandardCharsets.UTF_8));
+        // Annulation : le compteur incrémenté par la transaction disparaît avec elle
+        refCounts.remove(HASH);
+        List<TransactionSynchronization> synchronizations = TransactionSynchronizationManager.getSynchronizations();
+        synchronizations.forEach(s -> s.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK));
+
+        verify(blobRepository).registerUnreferenced(eq(HASH), anyString(), eq(4L), any());
+        assertEquals(0, refCounts.get(HASH));
+        assertTrue(Files.exists(blobStore.pathFor(HASH)));
+    }
+
+    @Test
+    void reusedBlobIsNotReindexedOnRollback() throws Exception {
+        blobStore.acquire(HASH, 4, () -> "data".getBytes(StandardCharsets.UTF_8));
+        TransactionSynchronizationManager.initSynchronization();
+
+        blobStore.acquire(HASH, 4, () -> "data".getBytes(StandardCharsets.UTF_8));
+
+        assertTrue(TransactionSynchronizationManager.getSynchronizations().isEmpty());
+    }
+
+    // ==================== RAMASSE-MIETTES ====================
+
+    @Test
+    void garbageCollectionDeletesFilesThenRowsByBatch() throws Exception {
+        String thirdHash = "ef".repeat(32);
+        Path first = blobStore.acquire(HASH, 1, () -> new byte[]{1});
+        Path second = blobStore.acquire(OTHER_HASH, 1, () -> new byte[]{2});
+        Path third = blobStore.acquire(thirdHash, 1, () -> new byte[]{3});
+
+        when(blobRepository.lockCollectable(any(), eq(2)))
+                .thenReturn(List.of(HASH, OTHER_HASH))
+                .thenReturn(List.of(thirdHash))
+                .thenReturn(List.of());
+        List<List<String>> deletedRows = new ArrayList<>();
+        when(blobRepository.deleteUnreferenced(anyCollection())).thenAnswer(inv -> {
+            deletedRows.add(new ArrayList<>(inv.getArgument(0)));
+            return deletedRows.get(deletedRows.size() - 1).size();
+        });
+
+        assertEquals(3, blobStore.collectGarbage());
+
+        assertFalse(Files.exists(first));
+        assertFalse(Files.exists(second));
+        assertFalse(Files.exists(third));
+        assertEquals(List.of(List.of(HASH, OTHER_HASH), List.of(thirdHash)), deletedRows);
+        // Lot incomplet : pas de troisième requête
+        verify(blobRepository, times(2)).lockCollectable(any(), eq(2));
+    }
+
+    @Test
+    void rowIsKeptWhenItsFileCannotBeDeleted() throws Exception {
+        blobStore.acquire(HASH, 1, () -> new byte[]{1});
+        // Un répertoire non vide à la place du fichier : la suppression échoue
+        Path blocked = blobStore.pathFor(OTHER_HASH);
+        Files.createDirectories(blocked.resolve("child"));
+
+        when(blobRepository.lockCollectable(any(), eq(2))).thenReturn(List.of(HASH, OTHER_HASH)).thenReturn(List.of());
+
+        blobStore.collectGarbage();
+
+        verify(blobRepository).deleteUnreferenced(List.of(HASH));
+    }
+
+    @Test
+    void garbageCollectionStopsAtTheRunLimit() {
+        when(blobRepository.lockCollectable(any(), eq(2))).thenReturn(List.of(HASH, OTHER_HASH));
+
+        assertEquals(10, blobStore.collectGarbage());
+        verify(blobRepository, times(5)).lockCollectable(any(), eq(2));
+    }
+}
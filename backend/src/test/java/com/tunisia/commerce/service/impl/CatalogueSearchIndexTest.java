@@ -0,0 +1,90 @@
+package com.tunisia.commerce.service.impl;
+
+import com.tunisia.commerce.dto.produits.ProduitDTO;
+import com.tunisia.commerce.dto.produits.SearchSuggestionDTO;
+import com.tunisia.commerce.enums.DemandeStatus;
+import com.tunisia.commerce.enums.PaymentStatus;
+import com.tunisia.commerce.enums.StatutAgrement;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Index inversé du catalogue : classement, préfixes, codes SH, mise à jour et recherche par sous-chaîne.
+ */
+class CatalogueSearchIndexTest {
+
+    private CatalogueSearchIndex index;
+
+    @BeforeEach
+    void setUp() {
+        index = new CatalogueSearchIndex();
+        index.upsert(entry(1L, "Huile d'olive extra vierge", "0901.21.00", "Alimentaire"));
+        index.upsert(entry(2L, "Dattes Deglet Nour", "0804.10.00", "Alimentaire"));
+        index.upsert(entry(3L, "Tapis berbère", "5701.10.00", "Textile"));
+    }
+
+    @Test
+    void accentsAreFoldedAndLastTermIsPrefixExpanded() {
+        assertEquals(List.of(3L), ids(index.search("berbere", null, 10)));
+        assertEquals(List.of(1L), ids(index.search("huile oli", null, 10)));
+    }
+
+    @Test
+    void numericTermMatchesHsCodePrefix() {
+        assertEquals(List.of(2L), ids(index.search("0804", null, 10)));
+        assertEquals(List.of(1L), ids(index.search("0901.21", null, 10)));
+    }
+
+    @Test
+    void upsertReplacesAndRemoveDropsAllPostings() {
+        index.upsert(entry(2L, "Dattes Allig", "0804.10.00", "Alimentaire"));
+        assertTrue(index.search("deglet", null, 10).isEmpty());
+        assertEquals(List.of(2L), ids(index.search("allig", null, 10)));
+
+        index.remove(2L);
+        assertTrue(index.search("dattes", null, 10).isEmpty());
+        assertTrue(index.search("0804", null, 10).isEmpty());
+        assertEquals(2, index.size());
+    }
+
+    @Test
+    void stopWordsAndSingleLettersHaveNoIndexedTerm() {
+        assertTrue(index.search("de", null, 10).isEmpty());
+        assertTrue(index.search("a", null, 10).isEmpty());
+    }
+
+    @Test
+    void substringSearchMatchesLikeTheOldLikeQuery() {
+        assertEquals(List.of(1L, 2L, 3L), ids(index.searchContaining("", null, 10)));
+        assertEquals(List.of(2L), ids(index.searchContaining("de", null, 10)));
+        assertEquals(List.of(1L, 2L, 3L), ids(index.searchContaining("a", null, 10)));
+        assertEquals(List.of(3L), ids(index.searchContaining("a", e -> e.getProductId() == 3L, 10)));
+    }
+
+    @Test
+    void numericPrefixSuggestsHsCodes() {
+        List<SearchSuggestionDTO> suggestions = index.suggest("08", null, 5);
+
+        assertEquals(1, suggestions.size());
+        assertEquals("0804.10.00", suggestions.get(0).getValue());
+    }
+
+    static CatalogueSearchIndex.Entry entry(Long id, String name, String hsCode, String category) {
+        ProduitDTO produit = ProduitDTO.builder()
+                .id(id)
+                .productName(name)
+                .hsCode(hsCode)
+                .category(category)
+                .exporterId(100L + id)
+                .build();
+        return new CatalogueSearchIndex.Entry(produit, DemandeStatus.VALIDEE, PaymentStatus.REUSSI, StatutAgrement.VALIDE);
+    }
+
+    private static List<Long> ids(List<CatalogueSearchIndex.ScoredEntry> results) {
+        return results.stream().map(s -> s.entry().getProductId()).toList();
+    }
+}
@@ -0,0 +1,136 @@
+package com.tunisia.commerce.service.impl;
+
+import com.tunisia.commerce.dto.produits.ProduitDTO;
+import com.tunisia.commerce.entity.ExportateurEtranger;
+import com.tunisia.commerce.entity.Product;
+import com.tunisia.commerce.enums.DemandeStatus;
+import com.tunisia.commerce.enums.PaymentStatus;
+import com.tunisia.commerce.enums.StatutAgrement;
+import com.tunisia.commerce.enums.TypeDemandeur;
+import com.tunisia.commerce.repository.ProductRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Mises à jour de l'index catalogue : produits partagés entre demandes, reconstruction concurrente,
+ * saisies sans terme indexable.
+ */
+class CatalogueSearchServiceTest {
+
+    private ProductRepository productRepository;
+    private CatalogueSearchService searchService;
+    private ExportateurEtranger exportateur;
+
+    @BeforeEach
+    void setUp() {
+        productRepository = mock(ProductRepository.class);
+        searchService = new CatalogueSearchService(productRepository);
+
+        exportateur = new ExportateurEtranger();
+        exportateur.setId(100L);
+        exportateur.setRaisonSociale("Olivéa SARL");
+        exportateur.setStatutAgrement(StatutAgrement.VALIDE);
+    }
+
+    @Test
+    void productStaysIndexedWhileAnotherOfItsDemandesIsValidated() {
+        Product huile = product(1L, "Huile d'olive");
+        when(productRepository.findCatalogueEntries(anyCollection(), eq(TypeDemandeur.EXPORTATEUR)))
+                .thenReturn(rows(row(huile, DemandeStatus.VALIDEE, PaymentStatus.REUSSI)));
+        searchService.rebuildIndex();
+
+        // La demande 2 qui porte aussi ce produit est rejetée ; la demande 1 reste validée
+        when(productRepository.findCatalogueEntriesByDemandeId(2L, TypeDemandeur.EXPORTATEUR))
+                .thenReturn(rows(row(huile, DemandeStatus.REJETEE, PaymentStatus.EN_ATTENTE)));
+        when(productRepository.findCatalogueEntriesByProductIds(anyCollection(), anyCollection(), eq(TypeDemandeur.EXPORTATEUR)))
+                .thenReturn(rows(row(huile, DemandeStatus.VALIDEE, PaymentStatus.REUSSI)));
+        searchService.refreshDemande(2L);
+
+        assertEquals(List.of(1L), productIds(searchService.searchCatalogue("huile")));
+        assertEquals(List.of(100L), searchService.findExportateursValidesByProduit("huile"));
+    }
+
+    @Test
+    void productIsRemovedOnceNoneOfItsDemandesIsIndexed() {
+        Product huile = product(1L, "Huile d'olive");
+        when(productRepository.findCatalogueEntries(anyCollection(), eq(TypeDemandeur.EXPORTATEUR)))
+                .thenReturn(rows(row(huile, DemandeStatus.SOUMISE, PaymentStatus.EN_ATTENTE)));
+        searchService.rebuildIndex();
+
+        when(productRepository.findCatalogueEntriesByDemandeId(1L, TypeDemandeur.EXPORTATEUR))
+                .thenReturn(rows(row(huile, DemandeStatus.REJETEE, PaymentStatus.EN_ATTENTE)));
+        when(productRepository.findCatalogueEntriesByProductIds(anyCollection(), anyCollection(), eq(TypeDemandeur.EXPORTATEUR)))
+                .thenReturn(List.of());
+        searchService.refreshDemande(1L);
+
+        assertTrue(searchService.searchCatalogue("huile").isEmpty());
+    }
+
+    @Test
+    void validatedAndPaidDemandeWinsOverASubmittedOneInAFullRebuild() {
+        Product huile = product(1L, "Huile d'olive");
+        when(productRepository.findCatalogueEntries(anyCollection(), eq(TypeDemandeur.EXPORTATEUR)))
+                .thenReturn(rows(row(huile, DemandeStatus.VALIDEE, PaymentStatus.REUSSI),
+                        row(huile, DemandeStatus.SOUMISE, PaymentStatus.EN_ATTENTE)));
+
+        searchService.rebuildIndex();
+
+        assertEquals(List.of(100L), searchService.findExportateursValidesByProduit("huile"));
+    }
+
+    @Test
+    void refreshDuringRebuildIsReplayedOnTheNewIndex() {
+        Product huile = product(1L, "Huile d'olive");
+        Product dattes = product(2L, "Dattes");
+        when(productRepository.findCatalogueEntriesByDemandeId(5L, TypeDemandeur.EXPORTATEUR))
+                .thenReturn(rows(row(dattes, DemandeStatus.SOUMISE, PaymentStatus.EN_ATTENTE)));
+        when(productRepository.findCatalogueEntriesByProductIds(anyCollection(), anyCollection(), eq(TypeDemandeur.EXPORTATEUR)))
+                .thenReturn(rows(row(dattes, DemandeStatus.SOUMISE, PaymentStatus.EN_ATTENTE)));
+
+        // La lecture complète ne voit pas encore la demande 5, soumise pendant la reconstruction
+        when(productRepository.findCatalogueEntries(anyCollection(), eq(TypeDemandeur.EXPORTATEUR))).thenAnswer(inv -> {
+            searchService.refreshDemande(5L);
+            return rows(row(huile, DemandeStatus.VALIDEE, PaymentStatus.REUSSI));
+        });
+
+        searchService.rebuildIndex();
+
+        assertEquals(List.of(2L), productIds(searchService.searchCatalogue("dattes")));
+        assertEquals(List.of(1L), productIds(searchService.searchCatalogue("huile")));
+    }
+
+    @Test
+    void keywordWithoutIndexedTermFallsBackToSubstringMatch() {
+        when(productRepository.findCatalogueEntries(anyCollection(), eq(TypeDemandeur.EXPORTATEUR)))
+                .thenReturn(rows(row(product(1L, "Huile d'olive"), DemandeStatus.VALIDEE, PaymentStatus.REUSSI),
+                        row(product(2L, "Pâte de dattes"), DemandeStatus.VALIDEE, PaymentStatus.REUSSI)));
+        searchService.rebuildIndex();
+
+        assertEquals(List.of(2L), productIds(searchService.searchCatalogue("de")));
+        assertEquals(List.of(1L, 2L), productIds(searchService.searchCatalogue("")));
+        assertEquals(List.of(100L), searchService.findExportateursValidesByProduit("e"));
+    }
+
+    private Product product(Long id, String name) {
+        return Product.builder().id(id).productName(name).category("Alimentaire").hsCode("1509.10").build();
+    }
+
+    private Object[] row(Product product, DemandeStatus status, PaymentStatus paymentStatus) {
+        return new Object[]{product, exportateur, status, paymentStatus};
+    }
+
+    private static List<Object[]> rows(Object[]... rows) {
+        return new ArrayList<>(List.of(rows));
+    }
+
+    private static List<Long> productIds(List<ProduitDTO> produits) {
+        return produits.stream().map(ProduitDTO::getId).toList();
+    }
+}
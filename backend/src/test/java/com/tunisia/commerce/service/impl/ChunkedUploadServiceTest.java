@@ -0,0 +1,192 @@
+package com.tunisia.commerce.service.impl;
+
+import com.tunisia.commerce.config.StorageConfig;
+import com.tunisia.commerce.entity.UploadSession;
+import com.tunisia.commerce.enums.UploadSessionStatus;
+import com.tunisia.commerce.enums.UploadTarget;
+import com.tunisia.commerce.exception.UploadException;
+import com.tunisia.commerce.repository.DemandeEnregistrementRepository;
+import com.tunisia.commerce.repository.UploadSessionRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.time.LocalDateTime;
+import java.util.HexFormat;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Ajout des morceaux : réception hors transaction, avancée conditionnelle de la position.
+ * La ligne de session est simulée en mémoire, la mise à jour conditionnelle compare la position.
+ */
+class ChunkedUploadServiceTest {
+
+    private static final String SESSION_ID = "session-1";
+    private static final Long OWNER_ID = 7L;
+
+    @TempDir
+    Path baseDir;
+
+    private UploadSession row;
+    private Path partPath;
+    private ChunkedUploadService uploadService;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        partPath = Files.createDirectories(baseDir.resolve("uploads-tmp")).resolve(SESSION_ID + ".part");
+        Files.createFile(partPath);
+        row = UploadSession.builder()
+                .id(SESSION_ID)
+                .ownerId(OWNER_ID)
+                .target(UploadTarget.PRODUCT_IMAGE)
+                .fileName("photo.jpg")
+                .contentType("image/jpeg")
+                .totalSize(10L)
+                .receivedBytes(0L)
+                .partPath(partPath.toString())
+                .status(UploadSessionStatus.EN_COURS)
+                .createdAt(LocalDateTime.now())
+                .updatedAt(LocalDateTime.now())
+                .expiresAt(LocalDateTime.now().plusHours(1))
+                .build();
+
+        UploadSessionRepository repository = mock(UploadSessionRepository.class);
+        when(repository.findById(SESSION_ID)).thenAnswer(inv -> Optional.of(copy(row)));
+        when(repository.advance(anyString(), anyLong(), anyLong(), any(), any())).thenAnswer(inv -> {
+            long expected = inv.getArgument(1);
+            if (row.getStatus() != UploadSessionStatus.EN_COURS || row.getReceivedBytes() != expected) {
+                return 0;
+            }
+            row.setReceivedBytes(inv.getArgument(2));
+            return 1;
+        });
+
+        StorageConfig storageConfig = mock(StorageConfig.class);
+        when(storageConfig.getBasePath()).thenReturn(baseDir);
+
+        uploadService = new ChunkedUploadService(repository, mock(DemandeEnregistrementRepository.class),
+                mock(ExportateurDossierService.class), mock(DemandeEnregistrementService.class),
+                mock(DemandeImportationService.class), storageConfig, mock(PlatformTransactionManager.class),
+                4, 24, 20);
+    }
+
+    @Test
+    void chunksAreAppendedInOrder() throws IOException {
+        assertEquals(4L, uploadService.appendChunk(SESSION_ID, OWNER_ID, 0, body("abcd"), sha256("abcd")).getReceivedBytes());
+        assertEquals(8L, uploadService.appendChunk(SESSION_ID, OWNER_ID, 4, body("efgh"), sha256("efgh")).getReceivedBytes());
+
+        assertEquals("abcdefgh", Files.readString(partPath));
+        assertNoStagingLeft();
+    }
+
+    @Test
+    void chunkAtWrongOffsetIsRejectedWithTheExpectedOffset() throws IOException {
+        uploadService.appendChunk(SESSION_ID, OWNER_ID, 0, body("abcd"), sha256("abcd"));
+
+        UploadException e = assertThrows(UploadException.class,
+                () -> uploadService.appendChunk(SESSION_ID, OWNER_ID, 6, body("ghij"), sha256("ghij")));
+
+        assertEquals("UPLOAD_OFFSET_MISMATCH", e.getErrorCode());
+        assertEquals(4L, e.getExpectedOffset());
+        assertEquals("abcd", Files.readString(partPath));
+    }
+
+    @Test
+    void retriedChunkAfterItWasAcceptedDoesNotOverwriteThePartFile() throws IOException {
+        uploadService.appendChunk(SESSION_ID, OWNER_ID, 0, body("abcd"), sha256("abcd"));
+        uploadService.appendChunk(SESSION_ID, OWNER_ID, 4, body("efgh"), sha256("efgh"));
+
+        // Réponse perdue côté client : le premier morceau est renvoyé à sa position d'origine
+        UploadException e = assertThrows(UploadException.class,
+                () -> uploadService.appendChunk(SESSION_ID, OWNER_ID, 0, body("abcd"), sha256("abcd")));
+
+        assertEquals(8L, e.getExpectedOffset());
+        assertEquals("abcdefgh", Files.readString(partPath));
+        assertNoStagingLeft();
+    }
+
+    @Test
+    void chunkOvertakenWhileStreamingLosesTheConditionalUpdate() throws IOException {
+        // Un envoi concurrent du même morceau a avancé la position pendant la réception
+        ByteArrayInputStream slowBody = new ByteArrayInputStream("abcd".getBytes(StandardCharsets.UTF_8)) {
+            @Override
+            public synchronized int read(byte[] b, int off, int len) {
+                row.setReceivedBytes(4L);
+                return super.read(b, off, len);
+            }
+        };
+
+        UploadException e = assertThrows(UploadException.class,
+                () -> uploadService.appendChunk(SESSION_ID, OWNER_ID, 0, slowBody, sha256("abcd")));
+
+        assertEquals("UPLOAD_OFFSET_MISMATCH", e.getErrorCode());
+        assertEquals(4L, e.getExpectedOffset());
+        assertEquals(0L, Files.size(partPath));
+        assertNoStagingLeft();
+    }
+
+    @Test
+    void checksumMismatchLeavesTheOffsetUnchangedAndTheChunkCanBeRetried() throws IOException {
+        UploadException e = assertThrows(UploadException.class,
+                () -> uploadService.appendChunk(SESSION_ID, OWNER_ID, 0, body("abXd"), sha256("abcd")));
+
+        assertEquals("UPLOAD_CHUNK_CHECKSUM", e.getErrorCode());
+        assertEquals(0L, row.getReceivedBytes());
+        assertEquals(0L, Files.size(partPath));
+        assertNoStagingLeft();
+
+        assertEquals(4L, uploadService.appendChunk(SESSION_ID, OWNER_ID, 0, body("abcd"), sha256("abcd")).getReceivedBytes());
+        assertEquals("abcd", Files.readString(partPath));
+    }
+
+    private void assertNoStagingLeft() throws IOException {
+        try (Stream<Path> files = Files.list(partPath.getParent())) {
+            assertEquals(1, files.count());
+        }
+    }
+
+    private static ByteArrayInputStream body(String content) {
+        return new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String sha256(String content) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256")
+                    .digest(content.getBytes(StandardCharsets.UTF_8)));
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static UploadSession copy(UploadSession session) {
+        return UploadSession.builder()
+                .id(session.getId())
+                .ownerId(session.getOwnerId())
+                .target(session.getTarget())
+                .fileName(session.getFileName())
+                .contentType(session.getContentType())
+                .totalSize(session.getTotalSize())
+                .receivedBytes(session.getReceivedBytes())
+                .partPath(session.getPartPath())
+                .status(session.getStatus())
+                .createdAt(session.getCreatedAt())
+                .updatedAt(session.getUpdatedAt())
+                .expiresAt(session.getExpiresAt())
+                .build();
+    }
+}
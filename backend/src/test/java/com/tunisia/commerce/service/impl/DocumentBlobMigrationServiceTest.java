@@ -0,0 +1,117 @@
+package com.tunisia.commerce.service.impl;
+
+import com.tunisia.commerce.entity.Document;
+import com.tunisia.commerce.repository.DocumentRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Pageable;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * Reprise des documents de l'ancien format : regroupement des doublons sur un même blob,
+ * suppression de l'ancien fichier seulement après validation.
+ */
+class DocumentBlobMigrationServiceTest {
+
+    private static final String BLOB_HASH = "ab".repeat(32);
+
+    private DocumentRepository documentRepository;
+    private SecureStorageService secureStorageService;
+    private DocumentBlobMigrationService migrationService;
+
+    @BeforeEach
+    void setUp() {
+        documentRepository = mock(DocumentRepository.class);
+        secureStorageService = mock(SecureStorageService.class);
+        when(documentRepository.save(any(Document.class))).thenAnswer(inv -> inv.getArgument(0));
+
+        migrationService = new DocumentBlobMigrationService(documentRepository, secureStorageService,
+                mock(PlatformTransactionManager.class), true, 10);
+        TransactionSynchronizationManager.initSynchronization();
+    }
+
+    @AfterEach
+    void tearDown() {
+        TransactionSynchronizationManager.clearSynchronization();
+    }
+
+    @Test
+    void duplicateLegacyFilesAreFoldedOntoOneBlob() throws Exception {
+        Document first = legacy(1L, "/data/a.enc");
+        Document second = legacy(2L, "/data/b.enc");
+        when(documentRepository.findLegacyDocumentIds(eq(0L), any(Pageable.class))).thenReturn(List.of(1L, 2L));
+        when(secureStorageService.adoptLegacyFile(any(Path.class), eq("hash"))).thenReturn(blob());
+
+        migrationService.migrateNextBatch();
+
+        assertEquals(BLOB_HASH, first.getBlobHash());
+        assertEquals(BLOB_HASH, second.getBlobHash());
+        assertEquals(first.getFilePath(), second.getFilePath());
+        // Aucun ancien fichier supprimé avant la validation
+        verify(secureStorageService, never()).secureDelete(any());
+
+        TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+        verify(secureStorageService).secureDelete(Paths.get("/data/a.enc"));
+        verify(secureStorageService).secureDelete(Paths.get("/data/b.enc"));
+    }
+
+    @Test
+    void unreadableLegacyFileIsSkippedAndKept() throws Exception {
+        Document broken = legacy(1L, "/data/broken.enc");
+        when(documentRepository.findLegacyDocumentIds(eq(0L), any(Pageable.class))).thenReturn(List.of(1L));
+        when(secureStorageService.adoptLegacyFile(any(Path.class), any())).thenThrow(new SecurityException("Empreinte invalide"));
+
+        migrationService.migrateNextBatch();
+
+        assertNull(broken.getBlobHash());
+        assertEquals("/data/broken.enc", broken.getFilePath());
+        assertTrue(TransactionSynchronizationManager.getSynchronizations().isEmpty());
+
+        // Le passage suivant reprend après le document en échec
+        migrationService.migrateNextBatch();
+        verify(documentRepository).findLegacyDocumentIds(eq(1L), any(Pageable.class));
+    }
+
+    @Test
+    void migrationStopsOnceNoLegacyDocumentRemains() {
+        when(documentRepository.findLegacyDocumentIds(anyLong(), any(Pageable.class))).thenReturn(List.of());
+
+        migrationService.migrateNextBatch();
+        migrationService.migrateNextBatch();
+
+        verify(documentRepository, times(1)).findLegacyDocumentIds(anyLong(), any(Pageable.class));
+    }
+
+    private Document legacy(Long id, String filePath) {
+        Document document = new Document();
+        document.setId(id);
+        document.setFilePath(filePath);
+        document.setFileHash("hash");
+        when(documentRepository.findById(id)).thenReturn(Optional.of(document));
+        return document;
+    }
+
+    private static SecureStorageService.StorageResult blob() {
+        return SecureStorageService.StorageResult.builder()
+                .fileName("a.enc")
+                .filePath("/data/blobs/ab/ab/" + BLOB_HASH)
+                .fileHash("hash")
+                .blobHash(BLOB_HASH)
+                .fileSize(4L)
+                .build();
+    }
+}
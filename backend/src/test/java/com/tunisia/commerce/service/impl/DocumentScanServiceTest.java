@@ -0,0 +1,189 @@
+package com.tunisia.commerce.service.impl;
+
+import com.tunisia.commerce.enums.DocumentStatus;
+import com.tunisia.commerce.enums.ScanVerdict;
+import com.tunisia.commerce.repository.DocumentRepository;
+import com.tunisia.commerce.repository.StoredBlobRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.io.*;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Analyse antivirus contre un clamd local simulé (protocole INSTREAM) et cache des verdicts par empreinte.
+ */
+class DocumentScanServiceTest {
+
+    private static final String EICAR =
+            "X5O!P%@AP[4\\PZX54(P^)7CC)7}$EICAR-STANDARD-ANTIVIRUS-TEST-FILE!$H+H*";
+
+    private LocalClamd clamd;
+    private DocumentRepository documentRepository;
+    private StoredBlobRepository blobRepository;
+    private SecureStorageService secureStorageService;
+    private DocumentScanService scanService;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        clamd = new LocalClamd();
+        documentRepository = mock(DocumentRepository.class);
+        blobRepository = mock(StoredBlobRepository.class);
+        secureStorageService = mock(SecureStorageService.class);
+        BlobStoreService blobStoreService = mock(BlobStoreService.class);
+        when(blobStoreService.pathFor(anyString())).thenAnswer(inv -> Path.of("/blobs", inv.getArgument(0, String.class)));
+
+        scanService = new DocumentScanService(documentRepository, blobRepository, secureStorageService,
+                blobStoreService, mock(PlatformTransactionManager.class), new SimpleMeterRegistry(),
+                true, "127.0.0.1", clamd.port(), 1, 10, 100);
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        scanService.shutdown();
+        clamd.close();
+    }
+
+    @Test
+    void cleanContentIsStreamedInChunks() {
+        DocumentScanService.Verdict verdict = scanService.scan(new ByteArrayInputStream(new byte[100_000]));
+
+        assertEquals(ScanVerdict.SAIN, verdict.getVerdict());
+        assertNull(verdict.getSignature());
+        assertEquals(100_000, clamd.bytesReceived.get());
+        assertTrue(clamd.chunksReceived.get() > 1, "Le contenu doit être envoyé en plusieurs morceaux");
+    }
+
+    @Test
+    void infectedContentIsReportedWithItsSignature() {
+        DocumentScanService.Verdict verdict = scanService.scan(
+                new ByteArrayInputStream(EICAR.getBytes(StandardCharsets.US_ASCII)));
+
+        assertEquals(ScanVerdict.INFECTE, verdict.getVerdict());
+        assertEquals("Eicar-Test-Signature", verdict.getSignature());
+    }
+
+    @Test
+    void knownContentIsNeverRescanned() throws Exception {
+        when(blobRepository.findScanVerdict("abc")).thenReturn(Optional.of(ScanVerdict.SAIN));
+
+        scanService.processBlob("abc");
+
+        assertEquals(0, clamd.instreams.get());
+        verify(secureStorageService, never()).openDecryptedStream(any());
+        verify(blobRepository, never()).recordScanVerdict(anyString(), any(), any(), any());
+        verify(documentRepository).releaseQuarantined("abc", DocumentStatus.EN_ATTENTE, null);
+        assertEquals(DocumentStatus.EN_ATTENTE, scanService.initialStatus("abc"));
+    }
+
+    @Test
+    void unknownContentIsScannedRecordedAndRejected() throws Exception {
+        when(blobRepository.findScanVerdict("def")).thenReturn(Optional.empty());
+        when(secureStorageService.openDecryptedStream(any()))
+                .thenReturn(new ByteArrayInputStream(EICAR.getBytes(StandardCharsets.US_ASCII)));
+
+        scanService.processBlob("def");
+
+        assertEquals(1, clamd.instreams.get());
+        verify(blobRepository).recordScanVerdict(eq("def"), eq(ScanVerdict.INFECTE), eq("Eicar-Test-Signature"), any());
+        verify(documentRepository).releaseQuarantined(eq("def"), eq(DocumentStatus.REJETE), contains("Eicar-Test-Signature"));
+    }
+
+    @Test
+    void unreachableClamdKeepsDocumentsInQuarantine() throws Exception {
+        when(blobRepository.findScanVerdict("ghi")).thenReturn(Optional.empty());
+        when(secureStorageService.openDecryptedStream(any())).thenReturn(new ByteArrayInputStream(new byte[10]));
+        clamd.close();
+
+        scanService.processBlob("ghi");
+
+        verify(blobRepository, never()).recordScanVerdict(anyString(), any(), any(), any());
+        verify(documentRepository, never()).releaseQuarantined(anyString(), any(), any());
+        assertEquals(DocumentStatus.QUARANTAINE, scanService.initialStatus("ghi"));
+    }
+
+    /**
+     * clamd minimal : VERSIONCOMMANDS, PING et INSTREAM (morceaux préfixés de leur taille sur 4 octets,
+     * terminés par un morceau vide). Une commande par connexion, réponse terminée comme la commande.
+     */
+    static class LocalClamd implements Closeable {
+        private final ServerSocket serverSocket = new ServerSocket(0);
+        final AtomicInteger instreams = new AtomicInteger();
+        final AtomicInteger chunksReceived = new AtomicInteger();
+        final AtomicInteger bytesReceived = new AtomicInteger();
+
+        LocalClamd() throws IOException {
+            Thread thread = new Thread(this::serve, "local-clamd");
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        int port() {
+            return serverSocket.getLocalPort();
+        }
+
+        private void serve() {
+            while (!serverSocket.isClosed()) {
+                try (Socket socket = serverSocket.accept()) {
+                    handle(new DataInputStream(new BufferedInputStream(socket.getInputStream())), socket.getOutputStream());
+                } catch (IOException e) {
+                    // Fermeture du serveur ou client déconnecté
+                }
+            }
+        }
+
+        private void handle(DataInputStream in, OutputStream out) throws IOException {
+            int prefix = in.read();
+            char terminator = prefix == 'z' ? '\0' : '\n';
+            StringBuilder command = new StringBuilder();
+            int c;
+            while ((c = in.read()) != -1 && c != '\0' && c != '\n') {
+                command.append((char) c);
+            }
+
+            String response;
+            switch (command.toString()) {
+                case "VERSIONCOMMANDS" -> response = "ClamAV 1.0.0/27000/Mon Jan  1 00:00:00 2024| COMMANDS: "
+                        + "SCAN QUIT RELOAD PING CONTSCAN VERSIONCOMMANDS VERSION END SHUTDOWN MULTISCAN "
+                        + "FILDES STATS IDSESSION INSTREAM DETSTATSCLEAR DETSTATS ALLMATCHSCAN";
+                case "PING" -> response = "PONG";
+                case "VERSION" -> response = "ClamAV 1.0.0/27000/Mon Jan  1 00:00:00 2024";
+                case "INSTREAM" -> response = readStream(in);
+                default -> response = "UNKNOWN COMMAND";
+            }
+            out.write((response + terminator).getBytes(StandardCharsets.US_ASCII));
+            out.flush();
+        }
+
+        private String readStream(DataInputStream in) throws IOException {
+            instreams.incrementAndGet();
+            ByteArrayOutputStream content = new ByteArrayOutputStream();
+            int length;
+            while ((length = in.readInt()) > 0) {
+                content.write(in.readNBytes(length));
+                chunksReceived.incrementAndGet();
+                bytesReceived.addAndGet(length);
+            }
+            return content.toString(StandardCharsets.US_ASCII).contains("EICAR-STANDARD-ANTIVIRUS-TEST-FILE")
+                    ? "stream: Eicar-Test-Signature FOUND"
+                    : "stream: OK";
+        }
+
+        @Override
+        public void close() throws IOException {
+            serverSocket.close();
+        }
+    }
+}
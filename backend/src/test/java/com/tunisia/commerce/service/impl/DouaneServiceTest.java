@@ -0,0 +1,79 @@
+package com.tunisia.commerce.service.impl;
+
+import com.tunisia.commerce.enums.DemandeStatus;
+import com.tunisia.commerce.repository.DemandeEnregistrementRepository;
+import com.tunisia.commerce.repository.DemandeProduitRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.redis.connection.DefaultMessage;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Filtre des références douane : validations pendant une reconstruction et validations
+ * reçues d'une autre instance.
+ */
+class DouaneServiceTest {
+
+    private DemandeEnregistrementRepository demandeRepository;
+    private StringRedisTemplate redisTemplate;
+    private DouaneService service;
+
+    @BeforeEach
+    void setUp() {
+        demandeRepository = mock(DemandeEnregistrementRepository.class);
+        when(demandeRepository.findVerifiableByReferenceIn(anyCollection(), any(), anyCollection())).thenReturn(List.of());
+        redisTemplate = mock(StringRedisTemplate.class);
+        service = new DouaneService(demandeRepository, mock(DemandeProduitRepository.class), redisTemplate,
+                mock(RedisMessageListenerContainer.class), 100, 30, 0.001, true);
+    }
+
+    @Test
+    void validationDuringRebuildIsKeptInTheNewFilter() {
+        when(demandeRepository.findReferencesByStatusAndTypeIn(any(), anyCollection())).thenAnswer(inv -> {
+            // Validée après la lecture des références, avant la publication du nouveau filtre
+            service.onDemandeChangedAfterCommit("REG-NOUVELLE", DemandeStatus.VALIDEE);
+            return List.of("REG-ANCIENNE");
+        });
+
+        service.rebuildReferenceFilter();
+
+        service.verifyReference("REG-NOUVELLE");
+        verify(demandeRepository).findVerifiableByReferenceIn(eq(List.of("REG-NOUVELLE")), any(), anyCollection());
+    }
+
+    @Test
+    void unknownReferenceIsAnsweredByTheFilter() {
+        when(demandeRepository.findReferencesByStatusAndTypeIn(any(), anyCollection())).thenReturn(List.of("REG-ANCIENNE"));
+        service.rebuildReferenceFilter();
+
+        assertNull(service.verifyReference("REG-INCONNUE"));
+        verify(demandeRepository, never()).findVerifiableByReferenceIn(anyCollection(), any(), anyCollection());
+    }
+
+    @Test
+    void validationIsBroadcastAndAppliedByOtherInstances() {
+        when(demandeRepository.findReferencesByStatusAndTypeIn(any(), anyCollection())).thenReturn(List.of());
+        service.rebuildReferenceFilter();
+        DouaneService otherNode = new DouaneService(demandeRepository, mock(DemandeProduitRepository.class),
+                mock(StringRedisTemplate.class), mock(RedisMessageListenerContainer.class), 100, 30, 0.001, true);
+        otherNode.rebuildReferenceFilter();
+
+        service.onDemandeChangedAfterCommit("REG-NOUVELLE", DemandeStatus.VALIDEE);
+        ArgumentCaptor<String> sent = ArgumentCaptor.forClass(String.class);
+        verify(redisTemplate).convertAndSend(eq("douane:reference:changed"), sent.capture());
+
+        otherNode.onMessage(new DefaultMessage("douane:reference:changed".getBytes(StandardCharsets.UTF_8),
+                sent.getValue().getBytes(StandardCharsets.UTF_8)), null);
+        otherNode.verifyReference("REG-NOUVELLE");
+        verify(demandeRepository).findVerifiableByReferenceIn(eq(List.of("REG-NOUVELLE")), any(), anyCollection());
+    }
+}
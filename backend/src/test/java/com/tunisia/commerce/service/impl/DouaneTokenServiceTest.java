@@ -0,0 +1,98 @@
+package com.tunisia.commerce.service.impl;
+
+import com.tunisia.commerce.dto.admin.DouaneVerificationResponse;
+import org.junit.jupiter.api.Test;
+
+import java.security.KeyFactory;
+import java.security.KeyPairGenerator;
+import java.security.PublicKey;
+import java.security.spec.X509EncodedKeySpec;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.Base64;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Jetons douane hors ligne : aller-retour, altération, expiration et autre clé.
+ */
+class DouaneTokenServiceTest {
+
+    private final DouaneTokenService service = newService(72);
+
+    @Test
+    void issuedTokenVerifiesWithPublicKeyOnly() {
+        String token = service.issue(sampleResponse());
+        PublicKey publicKey = publicKeyOf(service);
+
+        DouaneTokenService.VerifiedToken claims = DouaneTokenService.verify(token, publicKey, Instant.now());
+
+        assertEquals("REG-2025-0001", claims.getReference());
+        assertEquals("REGISTRATION", claims.getTypeDemande());
+        assertEquals("2025-03-14", claims.getDateAgrement());
+        // Le séparateur est neutralisé dans les valeurs
+        assertEquals("Olive  Co", claims.getExportateurRaisonSociale());
+        assertEquals(service.keyId(), claims.getKeyId());
+    }
+
+    @Test
+    void tamperedPayloadIsRejected() {
+        String token = service.issue(sampleResponse());
+        String[] parts = token.split("\\.");
+        String forged = new String(Base64.getUrlDecoder().decode(parts[1])).replace("REG-2025-0001", "REG-2025-0002");
+        String tampered = parts[0] + "." + Base64.getUrlEncoder().withoutPadding().encodeToString(forged.getBytes())
+                + "." + parts[2];
+
+        assertThrows(SecurityException.class, () -> service.verify(tampered));
+    }
+
+    @Test
+    void expiredTokenIsRejected() {
+        String token = service.issue(sampleResponse());
+        PublicKey publicKey = publicKeyOf(service);
+
+        assertThrows(SecurityException.class,
+                () -> DouaneTokenService.verify(token, publicKey, Instant.now().plus(Duration.ofHours(73))));
+    }
+
+    @Test
+    void tokenFromAnotherKeyIsRejected() {
+        String token = newService(72).issue(sampleResponse());
+
+        assertThrows(SecurityException.class, () -> service.verify(token));
+    }
+
+    private static DouaneTokenService newService(long ttlHours) {
+        try {
+            var keyPair = KeyPairGenerator.getInstance("Ed25519").generateKeyPair();
+            return new DouaneTokenService(
+                    Base64.getEncoder().encodeToString(keyPair.getPrivate().getEncoded()),
+                    Base64.getEncoder().encodeToString(keyPair.getPublic().getEncoded()),
+                    ttlHours);
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static PublicKey publicKeyOf(DouaneTokenService service) {
+        try {
+            return KeyFactory.getInstance("Ed25519").generatePublic(
+                    new X509EncodedKeySpec(Base64.getDecoder().decode(service.publicKeyBase64())));
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static DouaneVerificationResponse sampleResponse() {
+        return DouaneVerificationResponse.builder()
+                .reference("REG-2025-0001")
+                .typeDemande("REGISTRATION")
+                .status("VALIDEE")
+                .numeroAgrement("AGR-778")
+                .dateAgrement(LocalDate.of(2025, 3, 14))
+                .exportateurRaisonSociale("Olive | Co")
+                .exportateurPaysOrigine("IT")
+                .build();
+    }
+}
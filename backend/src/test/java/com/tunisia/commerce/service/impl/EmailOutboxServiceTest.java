@@ -0,0 +1,202 @@
+package com.tunisia.commerce.service.impl;
+
+import com.tunisia.commerce.entity.EmailOutboxMessage;
+import com.tunisia.commerce.enums.EmailOutboxStatus;
+import com.tunisia.commerce.observability.OutboundCallMetrics;
+import com.tunisia.commerce.repository.EmailOutboxRepository;
+import com.tunisia.commerce.scheduling.SchedulingConfig;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.mail.Address;
+import jakarta.mail.MessagingException;
+import jakarta.mail.internet.MimeMessage;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.runner.ApplicationContextRunner;
+import org.springframework.mail.MailSendException;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Envoi des lots de la boîte d'envoi vers un serveur SMTP local (en mémoire), et reprise des
+ * emails en échec par le planificateur.
+ */
+class EmailOutboxServiceTest {
+
+    private LocalSmtp smtp;
+    private SimpleMeterRegistry meterRegistry;
+    private EmailOutboxService outboxService;
+
+    @BeforeEach
+    void setUp() {
+        smtp = new LocalSmtp();
+        meterRegistry = new SimpleMeterRegistry();
+
+        EmailOutboxRepository repository = mock(EmailOutboxRepository.class);
+        when(repository.saveAll(anyList())).thenAnswer(inv -> inv.getArgument(0));
+
+        outboxService = new EmailOutboxService(repository, smtp, new OutboundCallMetrics(meterRegistry),
+                mock(PlatformTransactionManager.class), meterRegistry, "noreply@tunisia-commerce.gov.tn", 2, 50, 3, 60, 3600, 14);
+    }
+
+    @Test
+    void batchIsSentOverASingleConnection() {
+        List<EmailOutboxMessage> batch = List.of(claimed("a@test.tn", 1), claimed("b@test.tn", 1), claimed("c@test.tn", 1));
+
+        outboxService.deliver(batch);
+
+        assertEquals(1, smtp.connections);
+        assertEquals(List.of("a@test.tn", "b@test.tn", "c@test.tn"), smtp.delivered);
+        batch.forEach(message -> {
+            assertEquals(EmailOutboxStatus.ENVOYE, message.getStatus());
+            assertNotNull(message.getSentAt());
+        });
+        assertEquals(3.0, meterRegistry.counter("mail.outbox.envoyes").count());
+    }
+
+    @Test
+    void rejectedRecipientIsRescheduledWithoutBlockingTheBatch() {
+        smtp.rejected.add("bad@test.tn");
+        EmailOutboxMessage good = claimed("ok@test.tn", 1);
+        EmailOutboxMessage bad = claimed("bad@test.tn", 2);
+
+        outboxService.deliver(List.of(good, bad));
+
+        assertEquals(EmailOutboxStatus.ENVOYE, good.getStatus());
+        assertEquals(EmailOutboxStatus.EN_ERREUR, bad.getStatus());
+        // Deuxième tentative : 60 s << 1
+        assertTrue(bad.getNextAttemptAt().isAfter(LocalDateTime.now().plusSeconds(110)));
+        assertNotNull(bad.getLastError());
+    }
+
+    @Test
+    void messageIsAbandonedAfterMaxAttempts() {
+        smtp.down = true;
+        EmailOutboxMessage message = claimed("a@test.tn", 3);
+
+        outboxService.deliver(List.of(message));
+
+        assertEquals(EmailOutboxStatus.ECHOUE, message.getStatus());
+        assertNull(message.getNextAttemptAt());
+        assertEquals(1.0, meterRegistry.counter("mail.outbox.abandonnes").count());
+    }
+
+    @Test
+    void failedEmailIsRetriedByTheSchedulerWithoutAnotherEnqueue() throws Exception {
+        // Boîte d'envoi en mémoire : mêmes critères d'échéance que lockDueMessages
+        List<EmailOutboxMessage> table = new CopyOnWriteArrayList<>();
+        EmailOutboxRepository repository = mock(EmailOutboxRepository.class);
+        when(repository.save(any(EmailOutboxMessage.class))).thenAnswer(inv -> {
+            table.add(inv.getArgument(0));
+            return inv.getArgument(0);
+        });
+        when(repository.saveAll(anyList())).thenAnswer(inv -> inv.getArgument(0));
+        when(repository.lockDueMessages(any(), anyInt())).thenAnswer(inv -> {
+            LocalDateTime now = inv.getArgument(0);
+            return table.stream()
+                    .filter(m -> m.getStatus() == EmailOutboxStatus.EN_ATTENTE || m.getStatus() == EmailOutboxStatus.EN_ERREUR)
+                    .filter(m -> m.getNextAttemptAt() == null || !m.getNextAttemptAt().isAfter(now))
+                    .toList();
+        });
+        smtp.down = true;
+
+        new ApplicationContextRunner()
+                .withUserConfiguration(SchedulingConfig.class)
+                .withPropertyValues("app.mail.outbox.poll-interval-ms=50")
+                .withBean(EmailOutboxService.class, () -> new EmailOutboxService(repository, smtp,
+                        new OutboundCallMetrics(meterRegistry), mock(PlatformTransactionManager.class), meterRegistry,
+                        "noreply@tunisia-commerce.gov.tn", 1, 50, 3, 1, 3600, 14))
+                .run(context -> {
+                    context.getBean(EmailOutboxService.class)
+                            .enqueue("a@test.tn", "Sujet", "<p>Bonjour</p>", "email/verification");
+                    EmailOutboxMessage message = await(() -> table.size() == 1
+                            && table.get(0).getStatus() == EmailOutboxStatus.EN_ERREUR ? table.get(0) : null);
+                    assertTrue(smtp.delivered.isEmpty());
+
+                    // Serveur rétabli : la reprise vient du seul planificateur, après le délai d'attente
+                    smtp.down = false;
+                    await(() -> message.getStatus() == EmailOutboxStatus.ENVOYE ? message : null);
+                    assertEquals(List.of("a@test.tn"), smtp.delivered);
+                    assertEquals(2, message.getAttempts());
+                });
+    }
+
+    @Test
+    void backoffIsCapped() {
+        assertEquals(60, outboxService.backoffSeconds(1));
+        assertEquals(480, outboxService.backoffSeconds(4));
+        assertEquals(3600, outboxService.backoffSeconds(30));
+    }
+
+    private static <T> T await(Supplier<T> condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10_000;
+        T value;
+        while ((value = condition.get()) == null) {
+            assertTrue(System.currentTimeMillis() < deadline, "délai dépassé");
+            Thread.sleep(20);
+        }
+        return value;
+    }
+
+    private static EmailOutboxMessage claimed(String recipient, int attempts) {
+        return EmailOutboxMessage.builder()
+                .recipient(recipient)
+                .subject("Sujet")
+                .htmlBody("<p>Bonjour</p>")
+                .template("email/verification")
+                .status(EmailOutboxStatus.EN_COURS)
+                .attempts(attempts)
+                .createdAt(LocalDateTime.now().minusSeconds(5))
+                .build();
+    }
+
+    /**
+     * Serveur SMTP local : un appel de doSend correspond à une connexion.
+     */
+    private static class LocalSmtp extends JavaMailSenderImpl {
+
+        private final List<String> delivered = new CopyOnWriteArrayList<>();
+        private final Set<String> rejected = new HashSet<>();
+        private volatile boolean down;
+        private volatile int connections;
+
+        @Override
+        protected void doSend(MimeMessage[] mimeMessages, Object[] originalMessages) {
+            connections++;
+            Map<Object, Exception> failed = new LinkedHashMap<>();
+            for (int i = 0; i < mimeMessages.length; i++) {
+                try {
+                    String recipient = recipient(mimeMessages[i]);
+                    if (down) {
+                        throw new MessagingException("Connexion refusée");
+                    }
+                    if (rejected.contains(recipient)) {
+                        throw new MessagingException("550 Destinataire inconnu: " + recipient);
+                    }
+                    delivered.add(recipient);
+                } catch (MessagingException e) {
+                    failed.put(originalMessages != null ? originalMessages[i] : mimeMessages[i], e);
+                }
+            }
+            if (!failed.isEmpty()) {
+                throw new MailSendException(failed);
+            }
+        }
+
+        private static String recipient(MimeMessage message) throws MessagingException {
+            Address[] recipients = message.getAllRecipients();
+            return recipients[0].toString();
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package com.tunisia.commerce.service.impl;
+
+import com.tunisia.commerce.entity.ExchangeRate;
+import com.tunisia.commerce.repository.ExchangeRateRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.*;
+
+/**
+ * Imports de taux de change : verrou en base avant le calcul de la version, premier import
+ * idempotent entre instances, publication monotone après validation.
+ */
+class ExchangeRateServiceTest {
+
+    private ExchangeRateRepository exchangeRateRepository;
+    private ExchangeRateService exchangeRateService;
+
+    @BeforeEach
+    void setUp() {
+        exchangeRateRepository = mock(ExchangeRateRepository.class);
+        exchangeRateService = new ExchangeRateService(exchangeRateRepository, mock(PlatformTransactionManager.class));
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void importTakesTheLockBeforeReadingTheLatestVersion() {
+        when(exchangeRateRepository.findLatestVersion()).thenReturn(3L);
+
+        assertEquals(4L, exchangeRateService.importRates(Map.of("EUR", new BigDecimal("3.40")),
+                ExchangeRateService.SOURCE_ADMIN, "admin@test.tn"));
+
+        InOrder inOrder = inOrder(exchangeRateRepository);
+        inOrder.verify(exchangeRateRepository).lockImports(anyLong());
+        inOrder.verify(exchangeRateRepository).findLatestVersion();
+        inOrder.verify(exchangeRateRepository).saveAll(anyList());
+        assertEquals(4L, exchangeRateService.getVersion());
+    }
+
+    @Test
+    void initialImportIsSkippedWhenAnotherInstanceImportedFirst() {
+        // Table vide à la lecture initiale, remplie une fois le verrou obtenu
+        when(exchangeRateRepository.findLatestVersion()).thenReturn(null, 1L, 1L);
+        when(exchangeRateRepository.findByVersion(1L)).thenReturn(List.of(ExchangeRate.builder()
+                .version(1L).currencyCode("EUR").rateToTnd(new BigDecimal("3.40"))
+                .source(ExchangeRateService.SOURCE_FICHIER).build()));
+
+        exchangeRateService.onApplicationReady();
+
+        verify(exchangeRateRepository).lockImports(anyLong());
+        verify(exchangeRateRepository, never()).saveAll(anyList());
+        assertEquals(1L, exchangeRateService.getVersion());
+    }
+
+    @Test
+    void olderImportCommittingLastDoesNotReplaceANewerVersion() {
+        TransactionSynchronizationManager.initSynchronization();
+        when(exchangeRateRepository.findLatestVersion()).thenReturn(1L);
+        exchangeRateService.importRates(Map.of("EUR", new BigDecimal("3.40")), ExchangeRateService.SOURCE_ADMIN, null);
+        List<TransactionSynchronization> older = TransactionSynchronizationManager.getSynchronizations();
+        TransactionSynchronizationManager.clearSynchronization();
+
+        TransactionSynchronizationManager.initSynchronization();
+        when(exchangeRateRepository.findLatestVersion()).thenReturn(2L);
+        exchangeRateService.importRates(Map.of("EUR", new BigDecimal("3.50")), ExchangeRateService.SOURCE_ADMIN, null);
+        TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+        older.forEach(TransactionSynchronization::afterCommit);
+
+        assertEquals(3L, exchangeRateService.getVersion());
+    }
+}
@@ -0,0 +1,93 @@
+package com.tunisia.commerce.service.impl;
+
+import com.tunisia.commerce.dto.statistics.CountryExporterDTO;
+import com.tunisia.commerce.dto.statistics.ExporterStatisticsDTO;
+import com.tunisia.commerce.repository.ExportateurStatisticsRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+/**
+ * Résolution des pays par l'index des alias : code ISO, nom français ou anglais, quelle que
+ * soit la casse ou l'accentuation ; les lignes d'un même pays sont regroupées.
+ */
+class ExporterStatisticsServiceTest {
+
+    private ExportateurStatisticsRepository statisticsRepository;
+    private ExporterStatisticsService statisticsService;
+
+    @BeforeEach
+    void setUp() {
+        statisticsRepository = mock(ExportateurStatisticsRepository.class);
+        when(statisticsRepository.countExportateursBetweenDates(any(), any())).thenReturn(0L);
+        when(statisticsRepository.findMonthlyRegistrations(any())).thenReturn(List.of());
+        statisticsService = new ExporterStatisticsService(statisticsRepository);
+    }
+
+    @Test
+    void codeAndNamesInAnyCaseResolveToTheSameCountry() {
+        when(statisticsRepository.getExportateurCountByPays()).thenReturn(List.of(
+                new Object[]{"CN", 2L},
+                new Object[]{"Chine", 3L},
+                new Object[]{"china", 1L},
+                new Object[]{"  CHINE ", 1L},
+                new Object[]{"cn", 1L}));
+
+        List<CountryExporterDTO> countries = statisticsService.computeExporterStatistics().getCountries();
+
+        assertEquals(1, countries.size());
+        CountryExporterDTO china = countries.get(0);
+        assertEquals("CN", china.getCode());
+        assertEquals("Chine", china.getName());
+        assertEquals(8L, china.getCount());
+        assertEquals("cn", china.getFlagCode());
+        assertEquals("moyenne", china.getDensity());
+    }
+
+    @Test
+    void accentsAreIgnored() {
+        when(statisticsRepository.getExportateurCountByPays()).thenReturn(List.of(
+                new Object[]{"Algérie", 1L},
+                new Object[]{"ALGERIE", 1L},
+                new Object[]{"Algeria", 1L},
+                new Object[]{"etats-unis", 2L},
+                new Object[]{"United States", 1L}));
+
+        Map<String, CountryExporterDTO> byCode = byCode(statisticsService.computeExporterStatistics());
+
+        assertEquals(2, byCode.size());
+        assertEquals(3L, byCode.get("DZ").getCount());
+        assertEquals("Algérie", byCode.get("DZ").getName());
+        assertEquals(3L, byCode.get("US").getCount());
+        assertEquals("États-Unis", byCode.get("US").getName());
+    }
+
+    @Test
+    void unknownCountryIsKeptUnderItsRawName() {
+        when(statisticsRepository.getExportateurCountByPays()).thenReturn(List.of(
+                new Object[]{"Atlantide", 4L},
+                new Object[]{"Italy", 1L}));
+
+        ExporterStatisticsDTO stats = statisticsService.computeExporterStatistics();
+        Map<String, CountryExporterDTO> byCode = byCode(stats);
+
+        assertEquals("Atlantide", byCode.get("Atlantide").getName());
+        assertEquals(4L, byCode.get("Atlantide").getCount());
+        assertEquals("Italie", byCode.get("IT").getName());
+        assertEquals(5L, stats.getGlobalStats().getTotalExportateurs());
+        assertEquals(2L, stats.getGlobalStats().getTotalPays());
+    }
+
+    private static Map<String, CountryExporterDTO> byCode(ExporterStatisticsDTO stats) {
+        return stats.getCountries().stream()
+                .collect(Collectors.toMap(CountryExporterDTO::getCode, Function.identity()));
+    }
+}
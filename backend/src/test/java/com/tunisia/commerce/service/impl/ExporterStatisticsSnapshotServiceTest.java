@@ -0,0 +1,105 @@
+package com.tunisia.commerce.service.impl;
+
+import com.tunisia.commerce.dto.statistics.ExporterStatisticsDTO;
+import com.tunisia.commerce.scheduling.SchedulingConfig;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.runner.ApplicationContextRunner;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Instantané des statistiques exportateurs : lecture sans recalcul, recalcul après validation
+ * d'une inscription, par le planificateur seul.
+ */
+class ExporterStatisticsSnapshotServiceTest {
+
+    private ExporterStatisticsService statisticsService;
+    private ExporterStatisticsSnapshotService snapshotService;
+
+    @BeforeEach
+    void setUp() {
+        statisticsService = mock(ExporterStatisticsService.class);
+        when(statisticsService.computeExporterStatistics()).thenReturn(stats(), stats());
+        snapshotService = new ExporterStatisticsSnapshotService(statisticsService);
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void readsAreServedFromTheSnapshot() {
+        ExporterStatisticsDTO first = snapshotService.getExporterStatistics();
+
+        assertSame(first, snapshotService.getExporterStatistics());
+        snapshotService.refreshIfDirty();
+        verify(statisticsService, times(1)).computeExporterStatistics();
+    }
+
+    @Test
+    void registrationIsReflectedOnlyAfterCommit() {
+        ExporterStatisticsDTO before = snapshotService.getExporterStatistics();
+
+        TransactionSynchronizationManager.initSynchronization();
+        snapshotService.markDirtyAfterCommit();
+        snapshotService.refreshIfDirty();
+        assertSame(before, snapshotService.getExporterStatistics());
+
+        TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+        snapshotService.refreshIfDirty();
+
+        assertNotSame(before, snapshotService.getExporterStatistics());
+        verify(statisticsService, times(2)).computeExporterStatistics();
+    }
+
+    @Test
+    void failedRefreshIsRetriedOnTheNextCheck() {
+        ExporterStatisticsDTO before = snapshotService.getExporterStatistics();
+        ExporterStatisticsDTO after = stats();
+        when(statisticsService.computeExporterStatistics())
+                .thenThrow(new IllegalStateException("base indisponible"))
+                .thenReturn(after);
+
+        snapshotService.markDirtyAfterCommit();
+        snapshotService.refreshIfDirty();
+        assertSame(before, snapshotService.getExporterStatistics());
+
+        snapshotService.refreshIfDirty();
+        assertSame(after, snapshotService.getExporterStatistics());
+    }
+
+    @Test
+    void registrationIsPickedUpByTheSchedulerWithoutAnyCall() {
+        new ApplicationContextRunner()
+                .withUserConfiguration(SchedulingConfig.class)
+                .withPropertyValues("app.statistics.dirty-check-ms=50")
+                .withBean(ExporterStatisticsSnapshotService.class, () -> snapshotService)
+                .run(context -> {
+                    ExporterStatisticsDTO before = snapshotService.getExporterStatistics();
+
+                    snapshotService.markDirtyAfterCommit();
+
+                    verify(statisticsService, timeout(5000).times(2)).computeExporterStatistics();
+                    assertNotSame(before, snapshotService.getExporterStatistics());
+                });
+    }
+
+    private static ExporterStatisticsDTO stats() {
+        return ExporterStatisticsDTO.builder()
+                .countries(List.of())
+                .monthlyEvolution(List.of())
+                .densityMap(Map.of())
+                .build();
+    }
+}
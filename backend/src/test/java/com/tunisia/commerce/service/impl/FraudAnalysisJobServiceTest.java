@@ -0,0 +1,306 @@
+package com.tunisia.commerce.service.impl;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import com.tunisia.commerce.entity.Document;
+import com.tunisia.commerce.entity.FraudAnalysis;
+import com.tunisia.commerce.enums.FraudJobStatus;
+import com.tunisia.commerce.observability.OutboundCallMetrics;
+import com.tunisia.commerce.repository.DocumentRepository;
+import com.tunisia.commerce.repository.FraudAnalysisRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.time.LocalDateTime;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Jobs d'analyse de fraude contre un service ML local simulé : mémorisation par contenu,
+ * déduplication, file bornée et disjoncteur.
+ */
+class FraudAnalysisJobServiceTest {
+
+    private static final String ML_RESPONSE = "{\"label\":\"real\",\"status\":\"success\",\"confidence\":0.93,"
+            + "\"final_decision\":{\"is_fraud\":false,\"confidence\":0.93,\"reasons\":[\"Montants cohérents\"]}}";
+
+    private LocalMlService ml;
+    private DocumentRepository documentRepository;
+    private FraudAnalysisRepository analysisRepository;
+    private FraudDetectionService client;
+    private final Map<String, FraudAnalysis> memory = new ConcurrentHashMap<>();
+    private FraudAnalysisJobService jobService;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        ml = new LocalMlService();
+        documentRepository = mock(DocumentRepository.class);
+        analysisRepository = mock(FraudAnalysisRepository.class);
+        when(analysisRepository.findById(anyString()))
+                .thenAnswer(inv -> Optional.ofNullable(memory.get(inv.getArgument(0, String.class))));
+        when(analysisRepository.insertIfAbsent(anyString(), anyString(), any(), any(), anyString(), any(), any()))
+                .thenAnswer(inv -> {
+                    memory.putIfAbsent(inv.getArgument(0), FraudAnalysis.builder()
+                            .analysisKey(inv.getArgument(0))
+                            .contentHash(inv.getArgument(1))
+                            .resultJson(inv.getArgument(4))
+                            .analyzedAt(LocalDateTime.now())
+                            .build());
+                    return 1;
+                });
+
+        client = new FraudDetectionService(WebClient.create(),
+                new OutboundCallMetrics(new SimpleMeterRegistry()), ml.url());
+        jobService = jobService(0);
+    }
+
+    private FraudAnalysisJobService jobService(long openSeconds) {
+        return new FraudAnalysisJobService(client, analysisRepository, documentRepository, new ObjectMapper(),
+                mock(PlatformTransactionManager.class), new SimpleMeterRegistry(),
+                1, 1, 10, 60, 2, openSeconds);
+    }
+
+    @AfterEach
+    void tearDown() {
+        ml.release.countDown();
+        jobService.shutdown();
+        ml.close();
+    }
+
+    @Test
+    void identicalContentIsAnalyzedOnce() throws Exception {
+        ml.release.countDown();
+        stored(1L, "facture");
+        stored(2L, "facture");
+
+        FraudAnalysisJobService.FraudJob first = jobService.submit(pdf("facture"), 1L, FraudDetectionService.AnalysisContext.none());
+        first.getCompletion().get(10, TimeUnit.SECONDS);
+        assertEquals(FraudJobStatus.TERMINE, first.getStatus());
+        assertEquals("AUTHENTIQUE", first.getResult().getDecision());
+
+        FraudAnalysisJobService.FraudJob second = jobService.submit(pdf("facture"), 2L, FraudDetectionService.AnalysisContext.none());
+
+        assertTrue(second.isCached());
+        assertEquals(FraudJobStatus.TERMINE, second.getStatus());
+        assertEquals(first.getResult().getReasons(), second.getResult().getReasons());
+        assertEquals(1, ml.analyzeCalls.get());
+        verify(documentRepository).recordFraudAnalysis(eq(1L), anyString(), eq("AUTHENTIQUE"), eq(0.93), any());
+        verify(documentRepository).recordFraudAnalysis(eq(2L), anyString(), eq("AUTHENTIQUE"), eq(0.93), any());
+    }
+
+    @Test
+    void contextIsPartOfTheMemoizationKey() throws Exception {
+        ml.release.countDown();
+
+        jobService.submit(pdf("facture"), null, FraudDetectionService.AnalysisContext.none())
+                .getCompletion().get(10, TimeUnit.SECONDS);
+        FraudAnalysisJobService.FraudJob withContext = jobService.submit(pdf("facture"), null,
+                new FraudDetectionService.AnalysisContext("IMPORT", "IMPORTATEUR", "Sté A", "Tunisie"));
+        withContext.getCompletion().get(10, TimeUnit.SECONDS);
+
+        assertFalse(withContext.isCached());
+        assertEquals(2, ml.analyzeCalls.get());
+    }
+
+    @Test
+    void concurrentIdenticalSubmissionsShareOneJob() throws Exception {
+        stored(1L, "contrat");
+        stored(2L, "contrat");
+        FraudAnalysisJobService.FraudJob first = jobService.submit(pdf("contrat"), 1L, FraudDetectionService.AnalysisContext.none());
+        FraudAnalysisJobService.FraudJob second = jobService.submit(pdf("contrat"), 2L, FraudDetectionService.AnalysisContext.none());
+
+        assertSame(first, second);
+        ml.release.countDown();
+        first.getCompletion().get(10, TimeUnit.SECONDS);
+        assertEquals(1, ml.analyzeCalls.get());
+        // Report sur le second document après la fin du job partagé
+        verify(documentRepository, timeout(2000)).recordFraudAnalysis(eq(2L), anyString(), eq("AUTHENTIQUE"), any(), any());
+    }
+
+    @Test
+    void fileOfAnotherContentIsNotRecordedOnTheDocument() throws Exception {
+        ml.release.countDown();
+        stored(3L, "facture-falsifiee");
+
+        assertThrows(SecurityException.class,
+                () -> jobService.submit(pdf("facture-saine"), 3L, FraudDetectionService.AnalysisContext.none()));
+
+        assertEquals(0, ml.analyzeCalls.get());
+        verify(documentRepository, never()).recordFraudAnalysis(anyLong(), anyString(), any(), any(), any());
+    }
+
+    @Test
+    void fullQueueRejectsNewSubmissions() throws Exception {
+        // Un worker occupé par le service bloqué, une place en file : la troisième soumission est refusée
+        FraudAnalysisJobService.FraudJob running = jobService.submit(pdf("a"), null, FraudDetectionService.AnalysisContext.none());
+        assertTrue(ml.started.await(10, TimeUnit.SECONDS));
+        jobService.submit(pdf("b"), null, FraudDetectionService.AnalysisContext.none());
+
+        assertThrows(IllegalStateException.class,
+                () -> jobService.submit(pdf("c"), null, FraudDetectionService.AnalysisContext.none()));
+
+        ml.release.countDown();
+        running.getCompletion().get(10, TimeUnit.SECONDS);
+    }
+
+    @Test
+    void circuitOpensAfterFailuresAndClosesWhenHealthy() throws Exception {
+        jobService.shutdown();
+        jobService = jobService(1);
+        ml.release.countDown();
+        ml.healthy = false;
+
+        for (String content : new String[]{"x", "y"}) {
+            FraudAnalysisJobService.FraudJob job = jobService.submit(pdf(content), null, FraudDetectionService.AnalysisContext.none());
+            job.getCompletion().get(10, TimeUnit.SECONDS);
+            assertEquals(FraudJobStatus.ECHEC, job.getStatus());
+        }
+        assertTrue(jobService.isCircuitOpen());
+        assertThrows(IllegalStateException.class,
+                () -> jobService.submit(pdf("z"), null, FraudDetectionService.AnalysisContext.none()));
+        assertEquals(2, ml.analyzeCalls.get());
+
+        // Délai d'ouverture non écoulé : la sonde n'appelle pas le service
+        jobService.probeCircuit();
+        assertTrue(jobService.isCircuitOpen());
+
+        awaitHalfOpen();
+        jobService.probeCircuit();
+        assertTrue(jobService.isCircuitOpen());
+
+        awaitHalfOpen();
+        ml.healthy = true;
+        jobService.probeCircuit();
+        assertFalse(jobService.isCircuitOpen());
+        FraudAnalysisJobService.FraudJob job = jobService.submit(pdf("z"), null, FraudDetectionService.AnalysisContext.none());
+        job.getCompletion().get(10, TimeUnit.SECONDS);
+        assertEquals(FraudJobStatus.TERMINE, job.getStatus());
+    }
+
+    @Test
+    void circuitHalfOpensAfterTheOpenPeriodWithoutTheProbe() throws Exception {
+        jobService.shutdown();
+        jobService = jobService(1);
+        ml.release.countDown();
+        ml.healthy = false;
+
+        for (String content : new String[]{"x", "y"}) {
+            jobService.submit(pdf(content), null, FraudDetectionService.AnalysisContext.none())
+                    .getCompletion().get(10, TimeUnit.SECONDS);
+        }
+        assertTrue(jobService.isCircuitOpen());
+
+        // Appel d'essai en échec : rouvert aussitôt, sans attendre un nouveau seuil d'échecs
+        awaitHalfOpen();
+        FraudAnalysisJobService.FraudJob trial = jobService.submit(pdf("z"), null, FraudDetectionService.AnalysisContext.none());
+        trial.getCompletion().get(10, TimeUnit.SECONDS);
+        assertEquals(FraudJobStatus.ECHEC, trial.getStatus());
+        assertTrue(jobService.isCircuitOpen());
+        assertEquals(3, ml.analyzeCalls.get());
+
+        // Appel d'essai réussi : refermé pour de bon
+        awaitHalfOpen();
+        ml.healthy = true;
+        FraudAnalysisJobService.FraudJob job = jobService.submit(pdf("w"), null, FraudDetectionService.AnalysisContext.none());
+        job.getCompletion().get(10, TimeUnit.SECONDS);
+        assertEquals(FraudJobStatus.TERMINE, job.getStatus());
+        Thread.sleep(1100);
+        assertFalse(jobService.isCircuitOpen());
+        assertEquals(4, ml.analyzeCalls.get());
+    }
+
+    private void awaitHalfOpen() throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (jobService.isCircuitOpen()) {
+            assertTrue(System.currentTimeMillis() < deadline, "disjoncteur toujours ouvert");
+            Thread.sleep(50);
+        }
+    }
+
+    private void stored(Long documentId, String content) throws Exception {
+        String blobHash = HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256")
+                .digest(content.getBytes(StandardCharsets.UTF_8)));
+        when(documentRepository.findById(documentId))
+                .thenReturn(Optional.of(Document.builder().id(documentId).blobHash(blobHash).build()));
+    }
+
+    private static MockMultipartFile pdf(String content) {
+        return new MockMultipartFile("file", content + ".pdf", "application/pdf", content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Service ML minimal : POST /analyze (bloqué jusqu'à {@code release}) et GET /health.
+     * Hors service, les deux répondent 503.
+     */
+    static class LocalMlService {
+        private final HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        final AtomicInteger analyzeCalls = new AtomicInteger();
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        volatile boolean healthy = true;
+
+        LocalMlService() throws IOException {
+            server.createContext("/analyze", this::analyze);
+            server.createContext("/health", exchange -> respond(exchange, healthy ? 200 : 503, "{\"status\":\"ok\"}"));
+            server.setExecutor(Executors.newCachedThreadPool());
+            server.start();
+        }
+
+        String url() {
+            return "http://127.0.0.1:" + server.getAddress().getPort();
+        }
+
+        private void analyze(HttpExchange exchange) throws IOException {
+            try (InputStream body = exchange.getRequestBody()) {
+                body.transferTo(OutputStream.nullOutputStream());
+            }
+            analyzeCalls.incrementAndGet();
+            started.countDown();
+            try {
+                release.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            if (healthy) {
+                respond(exchange, 200, ML_RESPONSE);
+            } else {
+                respond(exchange, 503, "{\"error\":\"indisponible\"}");
+            }
+        }
+
+        private static void respond(HttpExchange exchange, int status, String json) throws IOException {
+            byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            exchange.sendResponseHeaders(status, bytes.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(bytes);
+            }
+        }
+
+        void close() {
+            server.stop(0);
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package com.tunisia.commerce.service.impl;
+
+import com.tunisia.commerce.enums.DemandeStatus;
+import com.tunisia.commerce.repository.DemandeEnregistrementRepository;
+import com.tunisia.commerce.repository.DemandeProduitRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.*;
+
+/**
+ * Cache des statistiques du tableau de bord : lecture seule à toute profondeur, taille bornée,
+ * calcul concurrent d'une invalidation non mis en cache.
+ */
+class ImportateurDashboardServiceTest {
+
+    private DemandeEnregistrementRepository demandeRepository;
+    private DemandeProduitRepository demandeProduitRepository;
+    private ImportateurDashboardService dashboardService;
+
+    @BeforeEach
+    void setUp() {
+        demandeRepository = mock(DemandeEnregistrementRepository.class);
+        demandeProduitRepository = mock(DemandeProduitRepository.class);
+        when(demandeRepository.aggregateStatusByImportateur(anyLong(), any()))
+                .thenReturn(rows(new Object[]{DemandeStatus.VALIDEE, 2L, new BigDecimal("100.000")}));
+        when(demandeProduitRepository.aggregateVolumeByImportateur(anyLong()))
+                .thenReturn(rows(new Object[]{"alimentaire", "FR", 1L, new BigDecimal("100.000")}));
+        when(demandeRepository.aggregateDailyVolumeByImportateur(anyLong(), any())).thenReturn(List.of());
+        dashboardService = new ImportateurDashboardService(demandeRepository, demandeProduitRepository, 2);
+    }
+
+    @Test
+    void cachedStatsCannotBeModifiedAtAnyDepth() {
+        Map<String, Object> stats = dashboardService.getDashboardStats(1L);
+
+        assertThrows(UnsupportedOperationException.class, () -> stats.put("volumeMensuel", BigDecimal.ZERO));
+        List<?> categories = (List<?>) stats.get("volumeParCategorie");
+        assertThrows(UnsupportedOperationException.class, () -> categories.remove(0));
+        @SuppressWarnings("unchecked")
+        Map<String, Object> category = (Map<String, Object>) categories.get(0);
+        assertThrows(UnsupportedOperationException.class, () -> category.put("value", 0));
+
+        assertSame(stats, dashboardService.getDashboardStats(1L));
+        verify(demandeRepository, times(1)).aggregateStatusByImportateur(eq(1L), any());
+    }
+
+    @Test
+    void leastRecentlyUsedImportateurIsEvicted() {
+        dashboardService.getDashboardStats(1L);
+        dashboardService.getDashboardStats(2L);
+        dashboardService.getDashboardStats(1L);
+        dashboardService.getDashboardStats(3L);
+
+        dashboardService.getDashboardStats(1L);
+        dashboardService.getDashboardStats(2L);
+
+        verify(demandeRepository, times(1)).aggregateStatusByImportateur(eq(1L), any());
+        verify(demandeRepository, times(2)).aggregateStatusByImportateur(eq(2L), any());
+    }
+
+    @Test
+    void statsComputedDuringAnInvalidationAreNotCached() {
+        when(demandeRepository.aggregateStatusByImportateur(eq(1L), any())).thenAnswer(inv -> {
+            dashboardService.invalidate(1L);
+            return rows(new Object[]{DemandeStatus.VALIDEE, 1L, BigDecimal.ONE});
+        });
+
+        dashboardService.getDashboardStats(1L);
+        dashboardService.getDashboardStats(1L);
+
+        verify(demandeRepository, times(2)).aggregateStatusByImportateur(eq(1L), any());
+    }
+
+    private static List<Object[]> rows(Object[] row) {
+        List<Object[]> rows = new ArrayList<>();
+        rows.add(row);
+        return rows;
+    }
+}
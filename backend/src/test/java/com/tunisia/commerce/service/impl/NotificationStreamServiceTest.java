@@ -0,0 +1,292 @@
+package com.tunisia.commerce.service.impl;
+
+import com.tunisia.commerce.entity.Notification;
+import com.tunisia.commerce.entity.User;
+import com.tunisia.commerce.entity.listener.NotificationListener;
+import com.tunisia.commerce.enums.NotificationStatus;
+import com.tunisia.commerce.enums.NotificationType;
+import com.tunisia.commerce.repository.NotificationRepository;
+import com.tunisia.commerce.repository.UserRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.data.redis.connection.DefaultMessage;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Flux temps réel des notifications : compteur de non lues tenu à jour par la lecture d'une
+ * notification ou de toutes, diffusion à tous les flux du destinataire sur toutes les instances
+ * (Redis en mémoire), libération des flux abandonnés et tickets d'ouverture.
+ */
+class NotificationStreamServiceTest {
+
+    private static final Long RECEIVER_ID = 5L;
+    private static final Long OTHER_ID = 6L;
+
+    private final Map<String, String> redis = new ConcurrentHashMap<>();
+    private final List<NotificationStreamService> instances = new CopyOnWriteArrayList<>();
+
+    private NotificationRepository notificationRepository;
+    private UserRepository userRepository;
+    private NotificationStreamService instanceA;
+    private NotificationStreamService instanceB;
+    private NotificationListener listener;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        StringRedisTemplate redisTemplate = mock(StringRedisTemplate.class);
+        ValueOperations<String, String> values = mock(ValueOperations.class);
+        when(redisTemplate.opsForValue()).thenReturn(values);
+        when(values.get(anyString())).thenAnswer(inv -> redis.get(inv.<String>getArgument(0)));
+        doAnswer(inv -> redis.put(inv.getArgument(0), inv.getArgument(1)))
+                .when(values).set(anyString(), anyString(), any(Duration.class));
+        when(values.setIfAbsent(anyString(), anyString(), any(Duration.class)))
+                .thenAnswer(inv -> redis.putIfAbsent(inv.getArgument(0), inv.getArgument(1)) == null);
+        when(values.getAndDelete(anyString())).thenAnswer(inv -> redis.remove(inv.<String>getArgument(0)));
+        // Script d'incrément du compteur, s'il est chargé
+        when(redisTemplate.execute(any(RedisScript.class), anyList(), any())).thenAnswer(inv -> {
+            String key = inv.<List<String>>getArgument(1).get(0);
+            String current = redis.get(key);
+            if (current == null) {
+                return null;
+            }
+            long value = Long.parseLong(current) + Long.parseLong(inv.getArgument(2));
+            if (value < 0) {
+                redis.remove(key);
+                return null;
+            }
+            redis.put(key, String.valueOf(value));
+            return value;
+        });
+        // Canal pub/sub : chaque instance reçoit chaque message
+        when(redisTemplate.convertAndSend(anyString(), anyString())).thenAnswer(inv -> {
+            DefaultMessage message = new DefaultMessage(
+                    inv.<String>getArgument(0).getBytes(StandardCharsets.UTF_8),
+                    inv.<String>getArgument(1).getBytes(StandardCharsets.UTF_8));
+            instances.forEach(instance -> instance.onMessage(message, null));
+            return (long) instances.size();
+        });
+
+        notificationRepository = mock(NotificationRepository.class);
+        userRepository = mock(UserRepository.class);
+        when(notificationRepository.countByReceiverIdAndStatus(RECEIVER_ID, NotificationStatus.NON_LU)).thenReturn(3L);
+
+        NotificationUnreadCounter unreadCounter = new NotificationUnreadCounter(redisTemplate, notificationRepository, 60);
+        instanceA = instance(redisTemplate, unreadCounter);
+        instanceB = instance(redisTemplate, unreadCounter);
+
+        StaticListableBeanFactory beanFactory = new StaticListableBeanFactory();
+        beanFactory.addBean("notificationStreamService", instanceA);
+        listener = new NotificationListener(beanFactory.getBeanProvider(NotificationStreamService.class));
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    // ==================== COMPTEUR ====================
+
+    @Test
+    void streamOpensWithTheUnreadCount() {
+        RecordingEmitter emitter = open(instanceA, RECEIVER_ID);
+
+        assertEquals(List.of(3L), emitter.counts());
+        assertEquals("3", redis.get("notifications:unread:" + RECEIVER_ID));
+    }
+
+    @Test
+    void newNotificationIncrementsTheCounter() {
+        RecordingEmitter emitter = open(instanceA, RECEIVER_ID);
+
+        listener.onCreated(notification(NotificationStatus.NON_LU));
+
+        assertEquals(List.of(3L, 4L), emitter.counts());
+        assertEquals("4", redis.get("notifications:unread:" + RECEIVER_ID));
+    }
+
+    @Test
+    void markAsReadDecrementsTheCounter() {
+        RecordingEmitter emitter = open(instanceA, RECEIVER_ID);
+        Notification notification = notification(NotificationStatus.NON_LU);
+        listener.onLoaded(notification);
+        when(notificationRepository.findById(10L)).thenReturn(Optional.of(notification));
+        // Hibernate appelle @PostUpdate à l'écriture de l'entité
+        when(notificationRepository.save(notification)).thenAnswer(inv -> {
+            listener.onUpdated(notification);
+            return notification;
+        });
+
+        notificationService().markAsRead(10L);
+
+        assertEquals(List.of(3L, 2L), emitter.counts());
+        assertEquals("2", redis.get("notifications:unread:" + RECEIVER_ID));
+
+        // Notification déjà lue : aucune variation
+        notificationService().markAsRead(10L);
+        assertEquals(List.of(3L, 2L), emitter.counts());
+    }
+
+    @Test
+    void markAllAsReadResetsTheCounterAfterCommit() {
+        RecordingEmitter emitter = open(instanceA, RECEIVER_ID);
+        when(userRepository.existsById(RECEIVER_ID)).thenReturn(true);
+        when(notificationRepository.markAllAsRead(eq(RECEIVER_ID), any(), any(), any())).thenReturn(3);
+
+        TransactionSynchronizationManager.initSynchronization();
+        notificationService().markAllAsRead(RECEIVER_ID);
+        assertEquals(List.of(3L), emitter.counts());
+        assertEquals("3", redis.get("notifications:unread:" + RECEIVER_ID));
+
+        TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+
+        assertEquals(List.of(3L, 0L), emitter.counts());
+        assertEquals("0", redis.get("notifications:unread:" + RECEIVER_ID));
+    }
+
+    // ==================== DIFFUSION ====================
+
+    @Test
+    void notificationIsFannedOutToEveryStreamOfTheReceiverOnEveryInstance() {
+        RecordingEmitter firstTab = open(instanceA, RECEIVER_ID);
+        RecordingEmitter secondTab = open(instanceA, RECEIVER_ID);
+        RecordingEmitter otherInstance = open(instanceB, RECEIVER_ID);
+        when(notificationRepository.countByReceiverIdAndStatus(OTHER_ID, NotificationStatus.NON_LU)).thenReturn(0L);
+        RecordingEmitter otherUser = open(instanceB, OTHER_ID);
+
+        // Créée sur l'instance A, reçue aussi par les flux ouverts sur B
+        listener.onCreated(notification(NotificationStatus.NON_LU));
+
+        for (RecordingEmitter emitter : List.of(firstTab, secondTab, otherInstance)) {
+            Map<?, ?> data = (Map<?, ?>) emitter.last(NotificationStreamService.EVENT_NOTIFICATION);
+            assertEquals(4L, ((Number) data.get("unreadCount")).longValue());
+            assertEquals(10L, ((Number) ((Map<?, ?>) data.get("notification")).get("id")).longValue());
+        }
+        assertNull(otherUser.last(NotificationStreamService.EVENT_NOTIFICATION));
+    }
+
+    @Test
+    void abandonedStreamIsReleasedByTheHeartbeat() {
+        RecordingEmitter gone = open(instanceA, RECEIVER_ID);
+        RecordingEmitter alive = open(instanceA, RECEIVER_ID);
+        gone.broken = true;
+
+        instanceA.heartbeat();
+        int attempts = gone.sends;
+        listener.onCreated(notification(NotificationStatus.NON_LU));
+
+        assertEquals(attempts, gone.sends);
+        assertNotNull(alive.last(NotificationStreamService.EVENT_NOTIFICATION));
+    }
+
+    // ==================== TICKETS ====================
+
+    @Test
+    void ticketOpensTheStreamOfItsOwnerOnlyOnce() {
+        NotificationStreamService.StreamTicket ticket = instanceA.issueTicket(RECEIVER_ID);
+
+        // Utilisable depuis une autre instance
+        assertEquals(RECEIVER_ID, instanceB.redeemTicket(ticket.ticket()));
+        assertNull(instanceA.redeemTicket(ticket.ticket()));
+        assertNull(instanceA.redeemTicket("inconnu"));
+        assertNull(instanceA.redeemTicket(null));
+    }
+
+    private NotificationStreamService instance(StringRedisTemplate redisTemplate, NotificationUnreadCounter unreadCounter) {
+        NotificationStreamService instance = new NotificationStreamService(redisTemplate,
+                mock(RedisMessageListenerContainer.class), unreadCounter, 60_000, 30) {
+            @Override
+            SseEmitter createEmitter() {
+                return new RecordingEmitter();
+            }
+        };
+        instances.add(instance);
+        return instance;
+    }
+
+    private NotificationServiceImpl notificationService() {
+        return new NotificationServiceImpl(notificationRepository, userRepository,
+                mock(NotificationUnreadCounter.class), instanceA);
+    }
+
+    private static RecordingEmitter open(NotificationStreamService instance, Long userId) {
+        return (RecordingEmitter) instance.openStream(userId);
+    }
+
+    private static Notification notification(NotificationStatus status) {
+        return Notification.builder()
+                .id(10L)
+                .receiver(User.builder().id(RECEIVER_ID).build())
+                .title("Nouvelle demande")
+                .notificationType(NotificationType.SYSTEME)
+                .status(status)
+                .build();
+    }
+
+    /**
+     * Flux SSE sans réponse HTTP : les événements envoyés sont enregistrés.
+     */
+    private static class RecordingEmitter extends SseEmitter {
+
+        private final List<Map.Entry<String, Object>> events = new CopyOnWriteArrayList<>();
+        private volatile boolean broken;
+        private volatile int sends;
+
+        @Override
+        public void send(SseEventBuilder builder) throws IOException {
+            sends++;
+            if (broken) {
+                throw new IOException("Broken pipe");
+            }
+            List<ResponseBodyEmitter.DataWithMediaType> parts = new ArrayList<>(builder.build());
+            String head = parts.get(0).getData().toString();
+            if (head.startsWith("event:")) {
+                events.add(Map.entry(head.substring("event:".length(), head.indexOf('\n')), parts.get(1).getData()));
+            }
+        }
+
+        List<Long> counts() {
+            return events.stream()
+                    .filter(event -> event.getKey().equals(NotificationStreamService.EVENT_NOTIFICATION)
+                            || event.getKey().equals(NotificationStreamService.EVENT_UNREAD_COUNT))
+                    .map(event -> {
+                        Map<?, ?> data = (Map<?, ?>) event.getValue();
+                        Object count = data.containsKey("count") ? data.get("count") : data.get("unreadCount");
+                        return ((Number) count).longValue();
+                    })
+                    .toList();
+        }
+
+        Object last(String name) {
+            Object last = null;
+            for (Map.Entry<String, Object> event : events) {
+                if (event.getKey().equals(name)) {
+                    last = event.getValue();
+                }
+            }
+            return last;
+        }
+    }
+}
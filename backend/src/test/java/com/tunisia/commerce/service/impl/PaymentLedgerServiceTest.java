@@ -0,0 +1,230 @@
+package com.tunisia.commerce.service.impl;
+
+import com.stripe.exception.InvalidRequestException;
+import com.stripe.exception.StripeException;
+import com.stripe.model.Charge;
+import com.stripe.model.PaymentIntent;
+import com.stripe.model.PaymentIntentCollection;
+import com.tunisia.commerce.dto.payment.PaymentTransactionDTO;
+import com.tunisia.commerce.entity.PaymentLedgerEntry;
+import com.tunisia.commerce.repository.DemandeEnregistrementRepository;
+import com.tunisia.commerce.repository.PaymentLedgerRepository;
+import com.tunisia.commerce.repository.UserRepository;
+import com.tunisia.commerce.service.StripeGateway;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Registre des paiements alimenté par un Stripe local (en mémoire) et un dépôt en mémoire.
+ */
+class PaymentLedgerServiceTest {
+
+    private LocalStripe stripe;
+    private Map<String, PaymentLedgerEntry> ledger;
+    private PaymentLedgerService ledgerService;
+    private PaymentLedgerReconciliationService reconciliationService;
+
+    @BeforeEach
+    void setUp() {
+        stripe = new LocalStripe();
+        ledger = new LinkedHashMap<>();
+
+        PaymentLedgerRepository repository = mock(PaymentLedgerRepository.class);
+        AtomicLong ids = new AtomicLong();
+        when(repository.lockByPaymentIntentId(anyString()))
+                .thenAnswer(inv -> Optional.ofNullable(ledger.get(inv.<String>getArgument(0))));
+        when(repository.reserve(anyString())).thenAnswer(inv -> {
+            String paymentIntentId = inv.getArgument(0);
+            if (ledger.containsKey(paymentIntentId)) {
+                return 0;
+            }
+            ledger.put(paymentIntentId, PaymentLedgerEntry.builder()
+                    .id(ids.incrementAndGet())
+                    .paymentIntentId(paymentIntentId)
+                    .amountMinor(0L)
+                    .status("reserved")
+                    .stripeUpdatedAt(-1L)
+                    .build());
+            return 1;
+        });
+        when(repository.save(any(PaymentLedgerEntry.class))).thenAnswer(inv -> {
+            PaymentLedgerEntry entry = inv.getArgument(0);
+            if (entry.getId() == null) {
+                entry.setId(ids.incrementAndGet());
+            }
+            ledger.put(entry.getPaymentIntentId(), entry);
+            return entry;
+        });
+        when(repository.findFirstByDemandeIdOrderByCreatedAtDesc(anyLong())).thenAnswer(inv -> ledger.values().stream()
+                .filter(e -> inv.<Long>getArgument(0).equals(e.getDemandeId()))
+                .max(Comparator.comparing(PaymentLedgerEntry::getCreatedAt)));
+
+        DemandeEnregistrementRepository demandeRepository = mock(DemandeEnregistrementRepository.class);
+        when(demandeRepository.findById(anyLong())).thenReturn(Optional.empty());
+        UserRepository userRepository = mock(UserRepository.class);
+        when(userRepository.findById(anyLong())).thenReturn(Optional.empty());
+
+        ledgerService = new PaymentLedgerService(repository, demandeRepository, userRepository, stripe,
+                mock(PaymentStatsService.class));
+        reconciliationService = new PaymentLedgerReconciliationService(stripe, ledgerService, repository);
+    }
+
+    @Test
+    void reconciliationPagesThroughTheWholeHistory() {
+        for (int i = 1; i <= 250; i++) {
+            stripe.add(intent("pi_" + i, 1_700_000_000L + i, "succeeded", (long) i));
+        }
+
+        PaymentLedgerReconciliationService.ReconciliationResult result = reconciliationService.reconcile(null);
+
+        assertTrue(result.complete());
+        assertEquals(3, result.pages());
+        assertEquals(250, result.synced());
+        assertEquals(250, ledger.size());
+        // Au-delà des 100 derniers PaymentIntents
+        PaymentTransactionDTO oldest = ledgerService.findByDemande(1L);
+        assertNotNull(oldest);
+        assertEquals("pi_1", oldest.getPaymentIntentId());
+        assertEquals(10.0, oldest.getAmount());
+    }
+
+    @Test
+    void incrementalReconciliationOnlyReadsRecentIntents() {
+        for (int i = 1; i <= 50; i++) {
+            stripe.add(intent("pi_" + i, 1_700_000_000L + i, "succeeded", (long) i));
+        }
+
+        PaymentLedgerReconciliationService.ReconciliationResult result = reconciliationService.reconcile(1_700_000_041L);
+
+        assertEquals(10, result.synced());
+        assertEquals(10, ledger.size());
+    }
+
+    @Test
+    void staleEventDoesNotOverwriteNewerState() {
+        ledgerService.recordPaymentIntent(intent("pi_1", 1_700_000_000L, "succeeded", 1L), 200L,
+                PaymentLedgerService.SOURCE_WEBHOOK);
+        ledgerService.recordPaymentIntent(intent("pi_1", 1_700_000_000L, "processing", 1L), 150L,
+                PaymentLedgerService.SOURCE_WEBHOOK);
+
+        assertEquals("succeeded", ledger.get("pi_1").getStatus());
+        assertEquals(200L, ledger.get("pi_1").getStripeUpdatedAt());
+    }
+
+    @Test
+    void sameSecondEventDoesNotMoveStatusBackwards() {
+        ledgerService.recordPaymentIntent(intent("pi_1", 1_700_000_000L, "succeeded", 1L), 200L,
+                PaymentLedgerService.SOURCE_APPLICATION);
+        ledgerService.recordPaymentIntent(intent("pi_1", 1_700_000_000L, "processing", 1L), 200L,
+                PaymentLedgerService.SOURCE_WEBHOOK);
+
+        assertEquals("succeeded", ledger.get("pi_1").getStatus());
+        assertEquals(PaymentLedgerService.SOURCE_APPLICATION, ledger.get("pi_1").getSource());
+    }
+
+    @Test
+    void staleFailedChargeDoesNotOverwriteSucceededPayment() {
+        ledgerService.recordPaymentIntent(intent("pi_3", 1_700_000_000L, "succeeded", 3L), 200L,
+                PaymentLedgerService.SOURCE_WEBHOOK);
+
+        Charge failed = new Charge();
+        failed.setId("ch_3");
+        failed.setPaymentIntent("pi_3");
+        failed.setPaid(false);
+        failed.setFailureCode("card_declined");
+        ledgerService.recordCharge(failed, 200L);
+        ledgerService.recordCharge(failed, 150L);
+
+        assertNull(ledger.get("pi_3").getFailureCode());
+        assertEquals(200L, ledger.get("pi_3").getStripeUpdatedAt());
+    }
+
+    @Test
+    void chargeBeforeIntentFetchesTheIntent() {
+        PaymentIntent paymentIntent = intent("pi_7", 1_700_000_000L, "succeeded", 7L);
+        stripe.add(paymentIntent);
+
+        Charge charge = new Charge();
+        charge.setId("ch_7");
+        charge.setPaymentIntent("pi_7");
+        ledgerService.recordCharge(charge, 300L);
+
+        PaymentLedgerEntry entry = ledger.get("pi_7");
+        assertNotNull(entry);
+        assertEquals(7L, entry.getDemandeId());
+
+        // Charge suivante : appliquée sans nouvel appel
+        charge.setFailureCode("card_declined");
+        charge.setFailureMessage("Carte refusée");
+        ledgerService.recordCharge(charge, 301L);
+        assertEquals("ch_7", ledger.get("pi_7").getChargeId());
+        assertEquals("card_declined", ledger.get("pi_7").getFailureCode());
+        assertEquals(1, stripe.retrieveCalls);
+    }
+
+    private static PaymentIntent intent(String id, long created, String status, Long demandeId) {
+        PaymentIntent paymentIntent = new PaymentIntent();
+        paymentIntent.setId(id);
+        paymentIntent.setCreated(created);
+        paymentIntent.setStatus(status);
+        paymentIntent.setAmount(1000L);
+        paymentIntent.setCurrency("usd");
+        paymentIntent.setMetadata(new HashMap<>(Map.of("demandeId", demandeId.toString(), "userId", "42")));
+        return paymentIntent;
+    }
+
+    /**
+     * Stripe local : PaymentIntents triés du plus récent au plus ancien, pagination par curseur.
+     */
+    private static class LocalStripe implements StripeGateway {
+
+        private final List<PaymentIntent> intents = new ArrayList<>();
+        private int retrieveCalls;
+
+        void add(PaymentIntent paymentIntent) {
+            intents.add(paymentIntent);
+            intents.sort(Comparator.comparing(PaymentIntent::getCreated).reversed());
+        }
+
+        @Override
+        public PaymentIntentCollection listPaymentIntents(Long createdFrom, String startingAfter, long limit) {
+            List<PaymentIntent> matching = intents.stream()
+                    .filter(pi -> createdFrom == null || pi.getCreated() >= createdFrom)
+                    .toList();
+            int from = 0;
+            if (startingAfter != null) {
+                for (int i = 0; i < matching.size(); i++) {
+                    if (matching.get(i).getId().equals(startingAfter)) {
+                        from = i + 1;
+                        break;
+                    }
+                }
+            }
+            int to = (int) Math.min(matching.size(), from + limit);
+
+            PaymentIntentCollection page = new PaymentIntentCollection();
+            page.setData(new ArrayList<>(matching.subList(from, to)));
+            page.setHasMore(to < matching.size());
+            return page;
+        }
+
+        @Override
+        public PaymentIntent retrievePaymentIntent(String paymentIntentId) throws StripeException {
+            retrieveCalls++;
+            return intents.stream()
+                    .filter(pi -> pi.getId().equals(paymentIntentId))
+                    .findFirst()
+                    .orElseThrow(() -> new InvalidRequestException("No such payment_intent", "id", null, null, 404, null));
+        }
+    }
+}
@@ -0,0 +1,159 @@
+package com.tunisia.commerce.service.impl;
+
+import com.stripe.model.PaymentIntent;
+import com.tunisia.commerce.entity.PaymentLedgerEntry;
+import com.tunisia.commerce.entity.PaymentStatsRollup;
+import com.tunisia.commerce.repository.DemandeEnregistrementRepository;
+import com.tunisia.commerce.repository.PaymentLedgerRepository;
+import com.tunisia.commerce.repository.PaymentStatsRollupRepository;
+import com.tunisia.commerce.repository.UserRepository;
+import com.tunisia.commerce.service.StripeGateway;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.BeanUtils;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReentrantLock;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Agrégats de paiement tenus par le registre : une ligne en mémoire protégée par un verrou
+ * tenu jusqu'à la « validation », comme le verrou de ligne PostgreSQL.
+ */
+class PaymentStatsServiceTest {
+
+    private static final String INTENT = "pi_1";
+
+    private final AtomicReference<PaymentLedgerEntry> row = new AtomicReference<>();
+    private final ReentrantLock rowLock = new ReentrantLock();
+    private final Map<String, long[]> rollups = new HashMap<>();
+    private PaymentLedgerService ledgerService;
+
+    @BeforeEach
+    void setUp() {
+        PaymentLedgerRepository ledgerRepository = mock(PaymentLedgerRepository.class);
+        when(ledgerRepository.lockByPaymentIntentId(INTENT)).thenAnswer(inv -> {
+            rowLock.lock();
+            return Optional.ofNullable(copy(row.get()));
+        });
+        when(ledgerRepository.reserve(INTENT)).thenAnswer(inv -> {
+            PaymentLedgerEntry reserved = PaymentLedgerEntry.builder()
+                    .id(1L).paymentIntentId(INTENT).amountMinor(0L).status("reserved").stripeUpdatedAt(-1L).build();
+            return row.compareAndSet(null, reserved) ? 1 : 0;
+        });
+        when(ledgerRepository.save(any(PaymentLedgerEntry.class))).thenAnswer(inv -> {
+            row.set(copy(inv.getArgument(0)));
+            return inv.getArgument(0);
+        });
+
+        PaymentStatsRollupRepository rollupRepository = mock(PaymentStatsRollupRepository.class);
+        doAnswer(inv -> {
+            String key = inv.getArgument(0) + "|" + inv.getArgument(1) + "|" + inv.getArgument(2) + "|" + inv.getArgument(3);
+            synchronized (rollups) {
+                long[] totals = rollups.computeIfAbsent(key, k -> new long[2]);
+                totals[0] += inv.<Long>getArgument(4);
+                totals[1] += inv.<Long>getArgument(5);
+            }
+            return null;
+        }).when(rollupRepository).increment(anyString(), anyString(), anyString(), anyString(), anyLong(), anyLong());
+
+        DemandeEnregistrementRepository demandeRepository = mock(DemandeEnregistrementRepository.class);
+        when(demandeRepository.findById(anyLong())).thenReturn(Optional.empty());
+        UserRepository userRepository = mock(UserRepository.class);
+        when(userRepository.findById(anyLong())).thenReturn(Optional.empty());
+
+        ledgerService = new PaymentLedgerService(ledgerRepository, demandeRepository, userRepository,
+                mock(StripeGateway.class), new PaymentStatsService(rollupRepository, ledgerRepository));
+    }
+
+    @Test
+    void statusChangeMovesThePaymentBetweenBuckets() {
+        record("processing", 100L);
+        record("succeeded", 101L);
+
+        assertEquals(0L, total("processing")[0]);
+        assertArrayEquals(new long[]{1L, 1000L}, total("succeeded"));
+    }
+
+    @Test
+    void concurrentUpdatesOfTheSameIntentKeepRollupsExact() throws Exception {
+        ExecutorService writers = Executors.newFixedThreadPool(2);
+        try {
+            for (int round = 0; round < 20; round++) {
+                row.set(null);
+                rollups.clear();
+                record("requires_payment_method", 50L);
+
+                CountDownLatch ready = new CountDownLatch(2);
+                Future<?> confirm = writers.submit(() -> concurrently(ready, "succeeded", 101L));
+                Future<?> webhook = writers.submit(() -> concurrently(ready, "processing", 100L));
+                confirm.get(5, TimeUnit.SECONDS);
+                webhook.get(5, TimeUnit.SECONDS);
+
+                assertEquals("succeeded", row.get().getStatus());
+                assertEquals(0L, total("requires_payment_method")[0]);
+                assertEquals(0L, total("processing")[0]);
+                assertArrayEquals(new long[]{1L, 1000L}, total("succeeded"));
+            }
+        } finally {
+            writers.shutdownNow();
+        }
+    }
+
+    private Void concurrently(CountDownLatch ready, String status, long observedAt) throws InterruptedException {
+        ready.countDown();
+        ready.await();
+        record(status, observedAt);
+        return null;
+    }
+
+    /**
+     * Une écriture du registre, suivie de la « validation » qui libère le verrou de ligne.
+     */
+    private void record(String status, long observedAt) {
+        try {
+            ledgerService.recordPaymentIntent(intent(status), observedAt, PaymentLedgerService.SOURCE_WEBHOOK);
+        } finally {
+            while (rowLock.isHeldByCurrentThread()) {
+                rowLock.unlock();
+            }
+        }
+    }
+
+    private long[] total(String status) {
+        synchronized (rollups) {
+            return rollups.getOrDefault(PaymentStatsRollup.BUCKET_TOTAL + "|" + status + "||usd", new long[2]);
+        }
+    }
+
+    private static PaymentIntent intent(String status) {
+        PaymentIntent paymentIntent = new PaymentIntent();
+        paymentIntent.setId(INTENT);
+        paymentIntent.setCreated(1_700_000_000L);
+        paymentIntent.setStatus(status);
+        paymentIntent.setAmount(1000L);
+        paymentIntent.setCurrency("usd");
+        paymentIntent.setMetadata(new HashMap<>(Map.of("demandeId", "1", "userId", "42")));
+        return paymentIntent;
+    }
+
+    private static PaymentLedgerEntry copy(PaymentLedgerEntry entry) {
+        if (entry == null) {
+            return null;
+        }
+        PaymentLedgerEntry copy = new PaymentLedgerEntry();
+        BeanUtils.copyProperties(entry, copy);
+        return copy;
+    }
+}
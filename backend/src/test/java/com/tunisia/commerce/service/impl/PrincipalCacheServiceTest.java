@@ -0,0 +1,152 @@
+package com.tunisia.commerce.service.impl;
+
+import com.tunisia.commerce.enums.UserRole;
+import com.tunisia.commerce.enums.UserStatus;
+import com.tunisia.commerce.repository.UserRepository;
+import com.tunisia.commerce.security.AuthenticatedUser;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+/**
+ * Cache des principaux : invalidation (y compris après changement d'email), chargement concurrent
+ * d'une invalidation, éviction LRU.
+ */
+class PrincipalCacheServiceTest {
+
+    private UserRepository userRepository;
+    private PrincipalCacheService principalCache;
+
+    @BeforeEach
+    void setUp() {
+        userRepository = mock(UserRepository.class);
+        when(userRepository.findPrincipalByEmail(anyString())).thenReturn(List.of());
+        principalCache = new PrincipalCacheService(userRepository, 2, 15);
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    // ==================== CACHE ====================
+
+    @Test
+    void principalIsLoadedOnceThenServedFromCache() {
+        row(1L, "a@test.tn", "EXPORTATEUR", "ACTIF");
+
+        AuthenticatedUser first = principalCache.resolve("a@test.tn");
+        AuthenticatedUser second = principalCache.resolve("a@test.tn");
+
+        assertSame(first, second);
+        assertEquals(1L, first.getId());
+        assertEquals(UserRole.EXPORTATEUR, first.getRole());
+        assertEquals(UserStatus.ACTIF, first.getStatus());
+        assertTrue(first.isUserType("EXPORTATEUR"));
+        verify(userRepository, times(1)).findPrincipalByEmail("a@test.tn");
+    }
+
+    @Test
+    void unknownEmailIsNotCached() {
+        assertNull(principalCache.resolve("inconnu@test.tn"));
+        assertNull(principalCache.resolve("inconnu@test.tn"));
+
+        verify(userRepository, times(2)).findPrincipalByEmail("inconnu@test.tn");
+    }
+
+    // ==================== INVALIDATION ====================
+
+    @Test
+    void invalidationReloadsTheNewStatus() {
+        row(1L, "a@test.tn", "EXPORTATEUR", "ACTIF");
+        principalCache.resolve("a@test.tn");
+
+        row(1L, "a@test.tn", "EXPORTATEUR", "SUSPENDU");
+        principalCache.invalidate(1L, "a@test.tn");
+
+        assertEquals(UserStatus.SUSPENDU, principalCache.resolve("a@test.tn").getStatus());
+    }
+
+    @Test
+    void invalidationByIdRemovesTheEntryUnderTheOldEmail() {
+        row(1L, "ancien@test.tn", "IMPORTATEUR", "ACTIF");
+        principalCache.resolve("ancien@test.tn");
+
+        // Changement d'email : seule la nouvelle adresse est connue au moment de l'invalidation
+        principalCache.invalidate(1L, "nouveau@test.tn");
+        principalCache.resolve("ancien@test.tn");
+
+        verify(userRepository, times(2)).findPrincipalByEmail("ancien@test.tn");
+    }
+
+    @Test
+    void invalidationIsRepeatedAfterTheTransactionCompletes() {
+        row(1L, "a@test.tn", "EXPORTATEUR", "ACTIF");
+        TransactionSynchronizationManager.initSynchronization();
+
+        principalCache.invalidateAfterCommit(1L, "a@test.tn");
+        // Lecture pendant la transaction : l'ancienne valeur est remise en cache
+        principalCache.resolve("a@test.tn");
+        TransactionSynchronizationManager.getSynchronizations()
+                .forEach(s -> s.afterCompletion(TransactionSynchronization.STATUS_COMMITTED));
+        principalCache.resolve("a@test.tn");
+
+        verify(userRepository, times(2)).findPrincipalByEmail("a@test.tn");
+    }
+
+    @Test
+    void loadOvertakenByAnInvalidationIsNotCached() {
+        // L'invalidation survient pendant la lecture de la ligne
+        when(userRepository.findPrincipalByEmail("a@test.tn")).thenAnswer(inv -> {
+            principalCache.invalidate(1L, "a@test.tn");
+            return rows(1L, "a@test.tn", "EXPORTATEUR", "ACTIF");
+        });
+
+        assertNotNull(principalCache.resolve("a@test.tn"));
+        principalCache.resolve("a@test.tn");
+
+        verify(userRepository, times(2)).findPrincipalByEmail("a@test.tn");
+    }
+
+    // ==================== ÉVICTION ====================
+
+    @Test
+    void leastRecentlyUsedEntryIsEvicted() {
+        row(1L, "a@test.tn", "EXPORTATEUR", "ACTIF");
+        row(2L, "b@test.tn", "IMPORTATEUR", "ACTIF");
+        row(3L, "c@test.tn", "ADMIN", "ACTIF");
+
+        principalCache.resolve("a@test.tn");
+        principalCache.resolve("b@test.tn");
+        // a redevient le plus récent : b est évincé à l'arrivée de c
+        principalCache.resolve("a@test.tn");
+        principalCache.resolve("c@test.tn");
+
+        principalCache.resolve("a@test.tn");
+        principalCache.resolve("b@test.tn");
+
+        verify(userRepository, times(1)).findPrincipalByEmail("a@test.tn");
+        verify(userRepository, times(2)).findPrincipalByEmail("b@test.tn");
+    }
+
+    private void row(Long id, String email, String type, String status) {
+        when(userRepository.findPrincipalByEmail(email)).thenReturn(rows(id, email, type, status));
+    }
+
+    private static List<Object[]> rows(Long id, String email, String type, String status) {
+        List<Object[]> rows = new ArrayList<>();
+        rows.add(new Object[]{id, email, type, type, status});
+        return rows;
+    }
+}
@@ -0,0 +1,253 @@
+package com.tunisia.commerce.service.impl;
+
+import com.tunisia.commerce.enums.RapportJobStatus;
+import com.tunisia.commerce.scheduling.SchedulingConfig;
+import com.tunisia.commerce.service.NotificationService;
+import com.tunisia.commerce.service.RapportPDFService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.boot.test.context.runner.ApplicationContextRunner;
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * File de génération des rapports : états du job, déduplication par importateur, saturation,
+ * rapport persisté (chiffré par SecureStorageService, ici simulé sur disque) et expiration
+ * par la tâche planifiée.
+ */
+class RapportJobServiceTest {
+
+    @TempDir
+    Path storage;
+
+    private RapportPDFService rapportPDFService;
+    private SecureStorageService secureStorageService;
+    private NotificationService notificationService;
+    private final List<Path> renderedTempFiles = new CopyOnWriteArrayList<>();
+    private final CountDownLatch release = new CountDownLatch(1);
+    private final CountDownLatch rendering = new CountDownLatch(1);
+    private RapportJobService jobService;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        rapportPDFService = mock(RapportPDFService.class);
+        secureStorageService = mock(SecureStorageService.class);
+        notificationService = mock(NotificationService.class);
+
+        doAnswer(inv -> {
+            OutputStream out = inv.getArgument(1);
+            out.write(("%PDF rapport importateur " + inv.getArgument(0)).getBytes(StandardCharsets.UTF_8));
+            return null;
+        }).when(rapportPDFService).generateRapportPDF(anyLong(), any(OutputStream.class));
+        when(secureStorageService.storeGeneratedFile(any(Path.class), eq("rapports"), anyString())).thenAnswer(inv -> {
+            Path source = inv.getArgument(0);
+            renderedTempFiles.add(source);
+            Path target = Files.copy(source, storage.resolve(inv.<String>getArgument(2)));
+            return SecureStorageService.StorageResult.builder()
+                    .fileName(target.getFileName().toString())
+                    .filePath(target.toString())
+                    .fileHash("hash-" + target.getFileName())
+                    .fileSize(Files.size(target))
+                    .build();
+        });
+        when(secureStorageService.copyDocument(any(Path.class), anyString(), any(OutputStream.class))).thenAnswer(inv -> {
+            OutputStream out = inv.getArgument(2);
+            return Files.copy(inv.<Path>getArgument(0), out);
+        });
+        doAnswer(inv -> {
+            Files.deleteIfExists(inv.getArgument(0));
+            return null;
+        }).when(secureStorageService).secureDelete(any(Path.class));
+    }
+
+    @AfterEach
+    void tearDown() {
+        release.countDown();
+        if (jobService != null) {
+            jobService.shutdown();
+        }
+    }
+
+    // ==================== ÉTATS ====================
+
+    @Test
+    void jobGoesFromQueuedToRunningToDone() throws Exception {
+        jobService = jobService(1, 5, 60);
+        blockRendering(1L);
+
+        RapportJobService.RapportJob running = jobService.submit(1L);
+        assertTrue(rendering.await(5, TimeUnit.SECONDS));
+        RapportJobService.RapportJob queued = jobService.submit(2L);
+
+        assertEquals(RapportJobStatus.EN_COURS, running.getStatus());
+        assertEquals(RapportJobStatus.EN_ATTENTE, queued.getStatus());
+        assertThrows(IllegalStateException.class, () -> jobService.ensureAvailable(queued));
+        assertNull(jobService.toDTO(queued).getExpiresAt());
+
+        release.countDown();
+        running.getCompletion().get(5, TimeUnit.SECONDS);
+        queued.getCompletion().get(5, TimeUnit.SECONDS);
+
+        assertEquals(RapportJobStatus.TERMINE, running.getStatus());
+        assertEquals(RapportJobStatus.TERMINE, queued.getStatus());
+        assertNotNull(jobService.toDTO(queued).getQueueWaitMs());
+        assertNotNull(jobService.toDTO(queued).getExpiresAt());
+        verify(notificationService).createSystemNotification(eq(2L), anyString(), eq("RAPPORT"));
+    }
+
+    @Test
+    void sameImporterReusesTheJobInFlightThenGetsANewOne() throws Exception {
+        jobService = jobService(1, 5, 60);
+        blockRendering(1L);
+
+        RapportJobService.RapportJob first = jobService.submit(1L);
+        assertSame(first, jobService.submit(1L));
+
+        release.countDown();
+        first.getCompletion().get(5, TimeUnit.SECONDS);
+
+        RapportJobService.RapportJob second = jobService.submit(1L);
+        assertNotSame(first, second);
+        second.getCompletion().get(5, TimeUnit.SECONDS);
+        verify(rapportPDFService, times(2)).generateRapportPDF(eq(1L), any(OutputStream.class));
+    }
+
+    @Test
+    void fullQueueRejectsTheSubmissionWithoutKeepingTheJob() throws Exception {
+        jobService = jobService(1, 1, 60);
+        blockRendering(1L);
+        jobService.submit(1L);
+        assertTrue(rendering.await(5, TimeUnit.SECONDS));
+        jobService.submit(2L);
+
+        assertThrows(IllegalStateException.class, () -> jobService.submit(3L));
+
+        // L'importateur refusé peut soumettre à nouveau une fois la file libérée
+        release.countDown();
+        RapportJobService.RapportJob retried = await(() -> {
+            try {
+                return jobService.submit(3L);
+            } catch (IllegalStateException e) {
+                return null;
+            }
+        });
+        assertEquals(RapportJobStatus.TERMINE, retried.getCompletion().get(5, TimeUnit.SECONDS).getStatus());
+    }
+
+    @Test
+    void renderingFailureIsReportedOnTheJob() throws Exception {
+        jobService = jobService(1, 5, 60);
+        doThrow(new IllegalStateException("Importateur introuvable"))
+                .when(rapportPDFService).generateRapportPDF(eq(9L), any(OutputStream.class));
+
+        RapportJobService.RapportJob job = jobService.submit(9L);
+        job.getCompletion().get(5, TimeUnit.SECONDS);
+
+        assertEquals(RapportJobStatus.ECHEC, job.getStatus());
+        assertEquals("Importateur introuvable", jobService.toDTO(job).getError());
+        assertThrows(IllegalStateException.class, () -> jobService.writeResult(job, new ByteArrayOutputStream()));
+        verify(notificationService, never()).createSystemNotification(anyLong(), anyString(), anyString());
+    }
+
+    // ==================== RAPPORT PERSISTÉ ====================
+
+    @Test
+    void renderedReportIsPersistedAndServedToItsOwnerOnly() throws Exception {
+        jobService = jobService(1, 5, 60);
+
+        RapportJobService.RapportJob job = jobService.submit(4L);
+        job.getCompletion().get(5, TimeUnit.SECONDS);
+
+        byte[] expected = "%PDF rapport importateur 4".getBytes(StandardCharsets.UTF_8);
+        ByteArrayOutputStream downloaded = new ByteArrayOutputStream();
+        jobService.writeResult(job, downloaded);
+        assertArrayEquals(expected, downloaded.toByteArray());
+        assertEquals(expected.length, jobService.getResultSize(job));
+        assertTrue(Files.exists(storage.resolve("rapport_4_" + job.getId() + ".pdf")));
+        // Le fichier temporaire du rendu ne reste pas sur disque
+        assertFalse(Files.exists(renderedTempFiles.get(0)));
+
+        assertSame(job, jobService.findJob(job.getId(), 4L).orElseThrow());
+        assertTrue(jobService.findJob(job.getId(), 5L).isEmpty());
+    }
+
+    // ==================== EXPIRATION ====================
+
+    @Test
+    void reportIsKeptUntilItsTimeToLive() throws Exception {
+        jobService = jobService(1, 5, 60);
+        RapportJobService.RapportJob job = jobService.submit(4L);
+        job.getCompletion().get(5, TimeUnit.SECONDS);
+
+        jobService.purgeExpired();
+
+        assertEquals(RapportJobStatus.TERMINE, job.getStatus());
+        verify(secureStorageService, never()).secureDelete(any(Path.class));
+    }
+
+    @Test
+    void expiredReportIsDeletedByTheSchedulerWithoutAnyCall() throws Exception {
+        jobService = jobService(1, 5, 0);
+        RapportJobService.RapportJob job = jobService.submit(4L);
+        job.getCompletion().get(5, TimeUnit.SECONDS);
+        Path report = storage.resolve("rapport_4_" + job.getId() + ".pdf");
+        assertTrue(Files.exists(report));
+
+        new ApplicationContextRunner()
+                .withUserConfiguration(SchedulingConfig.class)
+                .withPropertyValues("app.reports.cleanup-interval-ms=50")
+                .withBean(RapportJobService.class, () -> jobService)
+                .run(context -> {
+                    verify(secureStorageService, timeout(5000)).secureDelete(Paths.get(report.toString()));
+                    await(() -> job.getStatus() == RapportJobStatus.EXPIRE ? job : null);
+                });
+
+        assertFalse(Files.exists(report));
+        assertTrue(jobService.findJob(job.getId(), 4L).isEmpty());
+    }
+
+    private RapportJobService jobService(int workers, int queueCapacity, long ttlMinutes) {
+        return new RapportJobService(rapportPDFService, secureStorageService, notificationService,
+                new SimpleMeterRegistry(), workers, queueCapacity, ttlMinutes);
+    }
+
+    /**
+     * Le rendu de l'importateur reste bloqué jusqu'à {@code release}.
+     */
+    private void blockRendering(Long importateurId) {
+        doAnswer(inv -> {
+            rendering.countDown();
+            assertTrue(release.await(5, TimeUnit.SECONDS));
+            OutputStream out = inv.getArgument(1);
+            out.write(("%PDF rapport importateur " + importateurId).getBytes(StandardCharsets.UTF_8));
+            return null;
+        }).when(rapportPDFService).generateRapportPDF(eq(importateurId), any(OutputStream.class));
+    }
+
+    private static <T> T await(Supplier<T> condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        T value;
+        while ((value = condition.get()) == null) {
+            assertTrue(System.currentTimeMillis() < deadline, "Délai dépassé");
+            Thread.sleep(20);
+        }
+        return value;
+    }
+}
@@ -0,0 +1,107 @@
+package com.tunisia.commerce.service.impl;
+
+import com.tunisia.commerce.cache.ReferenceCacheRegions;
+import com.tunisia.commerce.entity.StructureCompetence;
+import com.tunisia.commerce.entity.StructureInterne;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.persistence.Cache;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.CacheRegionStatistics;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.redis.connection.DefaultMessage;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Éviction du cache de référence : locale, diffusée aux autres instances, et taux de succès exposé.
+ */
+class ReferenceCacheServiceTest {
+
+    private Cache entityCache;
+    private org.hibernate.Cache hibernateCache;
+    private Statistics statistics;
+    private StringRedisTemplate redisTemplate;
+    private SimpleMeterRegistry meterRegistry;
+    private ReferenceCacheService service;
+
+    @BeforeEach
+    void setUp() {
+        entityCache = mock(Cache.class);
+        hibernateCache = mock(org.hibernate.Cache.class);
+        statistics = mock(Statistics.class);
+        SessionFactory sessionFactory = mock(SessionFactory.class);
+        when(sessionFactory.getCache()).thenReturn(hibernateCache);
+        when(sessionFactory.getStatistics()).thenReturn(statistics);
+        EntityManagerFactory entityManagerFactory = mock(EntityManagerFactory.class);
+        when(entityManagerFactory.getCache()).thenReturn(entityCache);
+        when(entityManagerFactory.unwrap(SessionFactory.class)).thenReturn(sessionFactory);
+
+        redisTemplate = mock(StringRedisTemplate.class);
+        meterRegistry = new SimpleMeterRegistry();
+        service = new ReferenceCacheService(entityManagerFactory, redisTemplate,
+                mock(RedisMessageListenerContainer.class), meterRegistry, true);
+    }
+
+    @Test
+    void evictionOutsideTransactionIsLocalThenBroadcast() {
+        service.evictAfterCommit(StructureInterne.class, StructureCompetence.class);
+
+        verify(entityCache).evict(StructureInterne.class);
+        verify(entityCache).evict(StructureCompetence.class);
+        verify(hibernateCache).evictQueryRegion(ReferenceCacheRegions.QUERIES);
+        ArgumentCaptor<String> message = ArgumentCaptor.forClass(String.class);
+        verify(redisTemplate).convertAndSend(eq("cache:reference:evict"), message.capture());
+        assertTrue(message.getValue().endsWith("|StructureInterne,StructureCompetence"));
+    }
+
+    @Test
+    void evictionFromAnotherNodeIsAppliedLocally() {
+        service.onMessage(message("autre-instance|StructureInterne,Inconnue"), null);
+
+        verify(entityCache).evict(StructureInterne.class);
+        verify(entityCache, times(1)).evict(any());
+        verify(hibernateCache).evictQueryRegion(ReferenceCacheRegions.QUERIES);
+    }
+
+    @Test
+    void ownBroadcastIsIgnored() {
+        service.evictAfterCommit(StructureInterne.class);
+        ArgumentCaptor<String> sent = ArgumentCaptor.forClass(String.class);
+        verify(redisTemplate).convertAndSend(anyString(), sent.capture());
+        clearInvocations(entityCache, hibernateCache);
+
+        service.onMessage(message(sent.getValue()), null);
+
+        verifyNoInteractions(entityCache, hibernateCache);
+    }
+
+    @Test
+    void hitRatioIsExposedPerRegion() {
+        CacheRegionStatistics regionStatistics = mock(CacheRegionStatistics.class);
+        when(regionStatistics.getHitCount()).thenReturn(3L);
+        when(regionStatistics.getMissCount()).thenReturn(1L);
+        when(statistics.getCacheRegionStatistics(ReferenceCacheRegions.STRUCTURE)).thenReturn(regionStatistics);
+
+        assertEquals(0.75, meterRegistry.get("cache.reference.hit.ratio")
+                .tag("region", ReferenceCacheRegions.STRUCTURE).gauge().value());
+        assertEquals(3.0, meterRegistry.get("cache.reference.gets")
+                .tag("region", ReferenceCacheRegions.STRUCTURE).tag("result", "hit").functionCounter().count());
+        assertEquals(0.0, meterRegistry.get("cache.reference.hit.ratio")
+                .tag("region", ReferenceCacheRegions.COUNTRY).gauge().value());
+    }
+
+    private static DefaultMessage message(String body) {
+        return new DefaultMessage("cache:reference:evict".getBytes(StandardCharsets.UTF_8),
+                body.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,156 @@
+package com.tunisia.commerce.service.impl;
+
+import com.stripe.Stripe;
+import com.stripe.model.Event;
+import com.stripe.net.ApiResource;
+import com.stripe.net.Webhook;
+import com.tunisia.commerce.entity.StripeWebhookEvent;
+import com.tunisia.commerce.enums.WebhookEventStatus;
+import com.tunisia.commerce.repository.StripeWebhookEventRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.domain.Pageable;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Boîte de réception des webhooks Stripe : clé d'ordonnancement, bail des prises en charge,
+ * distribution d'un seul événement à la fois par PaymentIntent.
+ */
+class StripeWebhookInboxServiceTest {
+
+    private static final String SECRET = "whsec_test";
+
+    private StripeWebhookEventRepository inboxRepository;
+    private StripePaymentService stripePaymentService;
+    private StripeWebhookInboxService inboxService;
+
+    @BeforeEach
+    void setUp() {
+        inboxRepository = mock(StripeWebhookEventRepository.class);
+        stripePaymentService = mock(StripePaymentService.class);
+        inboxService = new StripeWebhookInboxService(inboxRepository, stripePaymentService, new SimpleMeterRegistry(),
+                SECRET, 2, 8, 30, 3600, 30, 900);
+    }
+
+    @AfterEach
+    void tearDown() {
+        inboxService.shutdown();
+    }
+
+    // ==================== CLÉ D'ORDONNANCEMENT ====================
+
+    @Test
+    void paymentIntentAndChargeEventsShareThePaymentIntentKey() {
+        Event intentEvent = event("evt_1", "payment_intent.succeeded",
+                "{\"id\":\"pi_1\",\"object\":\"payment_intent\",\"metadata\":{\"demandeId\":\"42\"}}");
+        Event chargeEvent = event("evt_2", "charge.succeeded",
+                "{\"id\":\"ch_1\",\"object\":\"charge\",\"payment_intent\":\"pi_1\"}");
+
+        assertEquals("pi:pi_1", inboxService.orderingKey(intentEvent));
+        assertEquals("pi:pi_1", inboxService.orderingKey(chargeEvent));
+    }
+
+    @Test
+    void eventWithoutPaymentIntentIsKeyedOnItself() {
+        Event event = event("evt_3", "charge.succeeded", "{\"id\":\"ch_2\",\"object\":\"charge\"}");
+
+        assertEquals("event:evt_3", inboxService.orderingKey(event));
+    }
+
+    @Test
+    void signedEventIsStoredUnderItsPaymentIntentKey() throws Exception {
+        String payload = json("evt_4", "payment_intent.created",
+                "{\"id\":\"pi_4\",\"object\":\"payment_intent\",\"metadata\":{\"demandeId\":\"7\"}}");
+        long timestamp = System.currentTimeMillis() / 1000;
+        String signature = Webhook.Util.computeHmacSha256(SECRET, timestamp + "." + payload);
+        when(inboxRepository.insertIfAbsent(anyString(), anyString(), anyString(), anyString(), any())).thenReturn(1);
+
+        assertTrue(inboxService.receive(payload, "t=" + timestamp + ",v1=" + signature));
+
+        verify(inboxRepository).insertIfAbsent(eq("evt_4"), eq("payment_intent.created"), eq("pi:pi_4"), eq(payload), any());
+    }
+
+    @Test
+    void invalidSignatureIsRejected() {
+        String payload = json("evt_5", "payment_intent.created", "{\"id\":\"pi_5\",\"object\":\"payment_intent\"}");
+
+        assertThrows(SecurityException.class, () -> inboxService.receive(payload, "t=1,v1=bad"));
+        verifyNoInteractions(inboxRepository);
+    }
+
+    // ==================== BAIL ====================
+
+    @Test
+    void onlyClaimsOlderThanTheLeaseAreReleased() {
+        LocalDateTime before = LocalDateTime.now();
+        inboxService.releaseInterrupted();
+        LocalDateTime after = LocalDateTime.now();
+
+        ArgumentCaptor<LocalDateTime> cutoff = ArgumentCaptor.forClass(LocalDateTime.class);
+        verify(inboxRepository).releaseClaimedBefore(cutoff.capture());
+        assertFalse(cutoff.getValue().isBefore(before.minusSeconds(900)));
+        assertFalse(cutoff.getValue().isAfter(after.minusSeconds(900)));
+    }
+
+    @Test
+    void claimIsTimestamped() {
+        when(inboxRepository.findByStatusInOrderByIdAsc(anyCollection(), any(Pageable.class)))
+                .thenReturn(List.of(pending(1L, "pi:pi_1")));
+
+        inboxService.dispatch();
+
+        verify(inboxRepository, timeout(2000)).claim(eq(1L), anyCollection(), notNull());
+    }
+
+    // ==================== DISTRIBUTION ====================
+
+    @Test
+    void onlyTheOldestEventOfAPaymentIntentIsDispatched() {
+        when(inboxRepository.findByStatusInOrderByIdAsc(anyCollection(), any(Pageable.class)))
+                .thenReturn(List.of(pending(1L, "pi:pi_1"), pending(2L, "pi:pi_1"), pending(3L, "pi:pi_2")));
+
+        inboxService.dispatch();
+
+        verify(inboxRepository, timeout(2000)).claim(eq(1L), anyCollection(), any());
+        verify(inboxRepository, timeout(2000)).claim(eq(3L), anyCollection(), any());
+        verify(inboxRepository, never()).claim(eq(2L), anyCollection(), any());
+    }
+
+    @Test
+    void retryDelayGrowsExponentiallyUpToTheCap() {
+        assertEquals(30, inboxService.backoffSeconds(1));
+        assertEquals(60, inboxService.backoffSeconds(2));
+        assertEquals(3600, inboxService.backoffSeconds(10));
+    }
+
+    private static StripeWebhookEvent pending(Long id, String orderingKey) {
+        return StripeWebhookEvent.builder()
+                .id(id)
+                .eventId("evt_" + id)
+                .eventType("payment_intent.succeeded")
+                .orderingKey(orderingKey)
+                .payload("{}")
+                .status(WebhookEventStatus.EN_ATTENTE)
+                .attempts(0)
+                .receivedAt(LocalDateTime.now())
+                .build();
+    }
+
+    private static Event event(String id, String type, String object) {
+        return ApiResource.GSON.fromJson(json(id, type, object), Event.class);
+    }
+
+    private static String json(String id, String type, String object) {
+        return "{\"id\":\"" + id + "\",\"object\":\"event\",\"api_version\":\"" + Stripe.API_VERSION + "\"," +
+                "\"type\":\"" + type + "\",\"data\":{\"object\":" + object + "}}";
+    }
+}
@@ -0,0 +1,91 @@
+package com.tunisia.commerce.service.impl;
+
+import com.tunisia.commerce.entity.Country;
+import com.tunisia.commerce.entity.NgpCode;
+import com.tunisia.commerce.repository.CountryRepository;
+import com.tunisia.commerce.repository.NgpCodeRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Moteur tarifaire : codes désactivés exclus de l'index, échec de chargement sans rechargement
+ * à chaque cotation, entités de l'instantané jamais exposées directement.
+ */
+class TariffEngineTest {
+
+    private NgpCodeRepository ngpCodeRepository;
+    private CountryRepository countryRepository;
+    private TariffEngine tariffEngine;
+
+    @BeforeEach
+    void setUp() {
+        ngpCodeRepository = mock(NgpCodeRepository.class);
+        countryRepository = mock(CountryRepository.class);
+        when(countryRepository.findAll()).thenReturn(List.of(Country.builder()
+                .code("FR").name("France").isEuMember(true).exchangeRateToTnd(new BigDecimal("3.30")).build()));
+        tariffEngine = new TariffEngine(ngpCodeRepository, countryRepository);
+    }
+
+    @Test
+    void inactiveCodeDoesNotShadowTheActivePrefix() {
+        when(ngpCodeRepository.findAll()).thenReturn(List.of(
+                ngp(1L, "8471", "0.10", true),
+                ngp(2L, "84713000", "0.30", false)));
+        tariffEngine.reload();
+
+        assertEquals("8471", tariffEngine.findNgpCode("8471300000").orElseThrow().getNgpCode());
+    }
+
+    @Test
+    void inactiveCodeIsNotUsedAsChapterFallback() {
+        when(ngpCodeRepository.findAll()).thenReturn(List.of(
+                ngp(1L, "8401", "0.30", false),
+                ngp(2L, "8402", "0.10", true)));
+        tariffEngine.reload();
+
+        assertEquals("8402", tariffEngine.findNgpCode("8499").orElseThrow().getNgpCode());
+    }
+
+    @Test
+    void failedLoadIsNotRetriedByEveryQuote() {
+        when(ngpCodeRepository.findAll()).thenThrow(new IllegalStateException("base indisponible"));
+
+        assertThrows(IllegalStateException.class, () -> tariffEngine.resolve("8471", "FR"));
+        assertThrows(IllegalStateException.class, () -> tariffEngine.resolve("8471", "FR"));
+        assertThrows(IllegalStateException.class, () -> tariffEngine.findCountry("FR"));
+
+        verify(ngpCodeRepository, times(1)).findAll();
+    }
+
+    @Test
+    void sharedEntitiesAreCopiedOnRead() {
+        when(ngpCodeRepository.findAll()).thenReturn(List.of(ngp(1L, "8471", "0.10", true)));
+        tariffEngine.reload();
+
+        NgpCode found = tariffEngine.findNgpCode("8471").orElseThrow();
+        found.setDutyRate(new BigDecimal("0.99"));
+        Country country = tariffEngine.resolve("8471", "FR").country();
+        country.setName("Modifié");
+
+        assertEquals(new BigDecimal("0.10"), tariffEngine.resolve("8471", "FR").ngpCode().getDutyRate());
+        assertEquals("France", tariffEngine.findCountry("FR").orElseThrow().getName());
+        assertNotSame(tariffEngine.getDefaultNgpCode(), tariffEngine.getDefaultNgpCode());
+    }
+
+    private static NgpCode ngp(Long id, String code, String dutyRate, boolean active) {
+        return NgpCode.builder()
+                .id(id)
+                .ngpCode(code)
+                .categoryCode(code.substring(0, 2))
+                .productNameFr("Produit " + code)
+                .dutyRate(new BigDecimal(dutyRate))
+                .isActive(active)
+                .build();
+    }
+}
@@ -0,0 +1,178 @@
+package com.tunisia.commerce.service.impl;
+
+import com.tunisia.commerce.dto.tax.TaxBatchResponse;
+import com.tunisia.commerce.dto.tax.TaxRequest;
+import com.tunisia.commerce.dto.tax.TaxResponse;
+import com.tunisia.commerce.entity.Country;
+import com.tunisia.commerce.entity.NgpCode;
+import com.tunisia.commerce.repository.CountryRepository;
+import com.tunisia.commerce.repository.NgpCodeRepository;
+import com.tunisia.commerce.util.FixedPoint;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Test différentiel : le calcul en virgule fixe doit produire exactement
+ * (valeur et échelle) les mêmes montants que le calcul BigDecimal de référence.
+ */
+class TaxCalculatorFixedPointTest {
+
+    private static final String[] CURRENCIES = {"TND", "EUR", "USD", "GBP", "CHF", "TRY", "CNY", "DZD", "XXX"};
+    private static final String[] COUNTRIES = {"FR", "IT", "TR", "CN", "IN", "US", "MA", "DE"};
+    private static final String[] CATEGORIES = {"01", "09", "16", "49", "61", "84", "85", "99"};
+
+    private final TaxCalculatorService service =
+            new TaxCalculatorService(new TariffEngine(null, null), new ExchangeRateService(null, null));
+
+    @Test
+    void fixedPointMatchesBigDecimalOnRandomLines() {
+        Random random = new Random(20240611L);
+        for (int i = 0; i < 200_000; i++) {
+            BigDecimal value = randomValue(random);
+            String currency = CURRENCIES[random.nextInt(CURRENCIES.length)];
+            NgpCode ngpCode = randomNgpCode(random);
+            Country country = randomCountry(random);
+
+            assertSameTaxes(service.calculateTaxes(value, currency, ngpCode, country),
+                    service.calculateTaxesFixedPoint(value, currency, ngpCode, country),
+                    value + " " + currency + " " + ngpCode.getNgpCode() + " " + country.getCode());
+        }
+    }
+
+    @Test
+    void fixedPointMatchesBigDecimalOnRoundingBoundaries() {
+        NgpCode ngpCode = NgpCode.builder().ngpCode("84713000").categoryCode("84")
+                .dutyRate(new BigDecimal("0.15")).vatRate(new BigDecimal("0.19")).build();
+        Country country = Country.builder().code("CN").exchangeRateToTnd(new BigDecimal("0.435")).build();
+
+        // Valeurs autour des seuils : FODEC minimum (400 TND), demi-millime exact, grandes valeurs
+        String[] values = {"0", "0.001", "399.999", "400", "400.001", "0.002", "1.5", "3.333", "12345.675",
+                "999999999.999", "-10.005", "100.00000", "1E+3", "123.4567"};
+        for (String v : values) {
+            for (String currency : new String[]{"TND", "EUR", "CNY"}) {
+                BigDecimal value = new BigDecimal(v);
+                assertSameTaxes(service.calculateTaxes(value, currency, ngpCode, country),
+                        service.calculateTaxesFixedPoint(value, currency, ngpCode, country),
+                        v + " " + currency);
+            }
+        }
+    }
+
+    @Test
+    void batchWithPrecomputedRatesMatchesRecomputedRatesOnRoundingBoundaries() {
+        List<NgpCode> ngpCodes = List.of(
+                NgpCode.builder().id(1L).ngpCode("84713000").categoryCode("84").productNameFr("Ordinateur")
+                        .dutyRate(new BigDecimal("0.125")).vatRate(new BigDecimal("0.19")).build(),
+                NgpCode.builder().id(2L).ngpCode("61091000").categoryCode("61").productNameFr("T-shirt")
+                        .dutyRate(new BigDecimal("0.0375")).vatRate(new BigDecimal("0.13")).build(),
+                NgpCode.builder().id(3L).ngpCode("90189000").categoryCode("90").productNameFr("Matériel médical")
+                        .dutyRate(new BigDecimal("0.005")).build(),
+                NgpCode.builder().id(4L).ngpCode("99999999").categoryCode("99").productNameFr("Produit").build());
+        List<Country> countries = List.of(
+                Country.builder().code("FR").isEuMember(true).exchangeRateToTnd(new BigDecimal("3.305")).build(),
+                Country.builder().code("TR").hasFreeTradeAgreement(true)
+                        .preferentialDutyRate(new BigDecimal("0.015")).exchangeRateToTnd(new BigDecimal("0.095")).build(),
+                Country.builder().code("CN").exchangeRateToTnd(new BigDecimal("0.435")).build(),
+                Country.builder().code("US").build());
+
+        NgpCodeRepository ngpCodeRepository = mock(NgpCodeRepository.class);
+        CountryRepository countryRepository = mock(CountryRepository.class);
+        when(ngpCodeRepository.findAll()).thenReturn(ngpCodes);
+        when(countryRepository.findAll()).thenReturn(countries);
+        TariffEngine tariffEngine = new TariffEngine(ngpCodeRepository, countryRepository);
+        tariffEngine.reload();
+        TaxCalculatorService engineService =
+                new TaxCalculatorService(tariffEngine, new ExchangeRateService(null, null));
+
+        // Demi-millime exact sur le droit, la FODEC et la TVA, seuil FODEC minimum (400 TND)
+        String[] values = {"0.001", "0.004", "0.012", "1.5", "3.333", "8.004", "399.999", "400", "400.001",
+                "12345.675", "26.668", "999999999.999"};
+        List<TaxRequest> requests = new ArrayList<>();
+        List<String> labels = new ArrayList<>();
+        List<TaxResponse> expected = new ArrayList<>();
+        for (String v : values) {
+            for (String currency : new String[]{"TND", "EUR", "CNY"}) {
+                for (NgpCode ngpCode : ngpCodes) {
+                    for (Country country : countries) {
+                        TaxRequest request = new TaxRequest();
+                        request.setValue(new BigDecimal(v));
+                        request.setCurrency(currency);
+                        request.setHsCode(ngpCode.getNgpCode());
+                        request.setCountryCode(country.getCode());
+                        requests.add(request);
+                        labels.add(v + " " + currency + " " + ngpCode.getNgpCode() + " " + country.getCode());
+                        expected.add(engineService.calculateTaxesFixedPoint(
+                                new BigDecimal(v), currency, ngpCode, country));
+                    }
+                }
+            }
+        }
+
+        TaxBatchResponse batch = engineService.calculateTaxesBatch(requests);
+
+        assertEquals(requests.size(), batch.getCount());
+        for (int i = 0; i < requests.size(); i++) {
+            assertSameTaxes(expected.get(i), batch.getLines().get(i), labels.get(i));
+        }
+    }
+
+    @Test
+    void fixedPointRoundsHalfUpLikeBigDecimal() {
+        FixedPoint.Rate rate = FixedPoint.Rate.of(new BigDecimal("0.5"));
+        for (long millimes = -2_000; millimes <= 2_000; millimes++) {
+            BigDecimal expected = BigDecimal.valueOf(millimes, 3).multiply(rate.toBigDecimal())
+                    .setScale(3, RoundingMode.HALF_UP);
+            assertEquals(expected, FixedPoint.toBigDecimal(FixedPoint.multiply(millimes, rate)));
+        }
+    }
+
+    private static void assertSameTaxes(TaxResponse expected, TaxResponse actual, String line) {
+        assertEquals(expected.getCustomsDuty(), actual.getCustomsDuty(), "droit de douane: " + line);
+        assertEquals(expected.getVat(), actual.getVat(), "TVA: " + line);
+        assertEquals(expected.getOtherTaxes(), actual.getOtherTaxes(), "autres taxes: " + line);
+        assertEquals(expected.getTotal(), actual.getTotal(), "total: " + line);
+        assertEquals(expected.getCurrency(), actual.getCurrency(), "devise: " + line);
+        assertEquals(expected.getExchangeRateVersion(), actual.getExchangeRateVersion(), "version des taux: " + line);
+    }
+
+    private static BigDecimal randomValue(Random random) {
+        int scale = random.nextInt(5) == 0 ? random.nextInt(6) : random.nextInt(4);
+        long unscaled = switch (random.nextInt(4)) {
+            case 0 -> random.nextInt(1_000);
+            case 1 -> random.nextInt(1_000_000);
+            case 2 -> (long) random.nextInt(Integer.MAX_VALUE) * 100;
+            default -> random.nextLong() >>> 20;
+        };
+        return BigDecimal.valueOf(unscaled, scale);
+    }
+
+    private static NgpCode randomNgpCode(Random random) {
+        String category = CATEGORIES[random.nextInt(CATEGORIES.length)];
+        return NgpCode.builder()
+                .ngpCode(category + String.format("%06d", random.nextInt(1_000_000)))
+                .categoryCode(category)
+                .productNameFr(random.nextInt(10) == 0 ? "Matériel médical" : "Produit")
+                .dutyRate(random.nextInt(10) == 0 ? null : BigDecimal.valueOf(random.nextInt(4_000), 2 + random.nextInt(3)))
+                .vatRate(random.nextInt(10) == 0 ? null : BigDecimal.valueOf(random.nextInt(30), 2))
+                .build();
+    }
+
+    private static Country randomCountry(Random random) {
+        return Country.builder()
+                .code(COUNTRIES[random.nextInt(COUNTRIES.length)])
+                .exchangeRateToTnd(random.nextInt(4) == 0 ? null : BigDecimal.valueOf(1 + random.nextInt(5_000), 3))
+                .hasFreeTradeAgreement(random.nextInt(4) == 0)
+                .preferentialDutyRate(random.nextBoolean() ? null : BigDecimal.valueOf(random.nextInt(100), 3))
+                .isEuMember(random.nextInt(4) == 0)
+                .build();
+    }
+}
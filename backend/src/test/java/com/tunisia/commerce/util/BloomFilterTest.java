@@ -0,0 +1,27 @@
+package com.tunisia.commerce.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Filtre de Bloom : aucun faux négatif, taux de faux positifs proche de celui demandé.
+ */
+class BloomFilterTest {
+
+    @Test
+    void hasNoFalseNegatives() {
+        BloomFilter filter = BloomFilter.create(10_000, 0.001);
+        for (int i = 0; i < 10_000; i++) {
+            filter.put("REG-" + i);
+        }
+        int falsePositives = 0;
+        for (int i = 0; i < 10_000; i++) {
+            assertTrue(filter.mightContain("REG-" + i));
+            if (filter.mightContain("DEC-" + i)) {
+                falsePositives++;
+            }
+        }
+        assertTrue(falsePositives < 100, "Taux de faux positifs trop élevé: " + falsePositives);
+    }
+}
@@ -1,4 +1,4 @@
-import React, { useState, useEffect } from 'react';
+import React, { useState, useEffect, useRef } from 'react';
 import { useAuth } from '../App';
 import { notificationService } from '../services/notificationService';
 import { NotificationActionData } from '../types/NotificationActionData';
@@ -17,6 +17,7 @@ const Notification: React.FC<NotificationProps> = ({ onNotificationAction, onNot
   const [notifications, setNotifications] = useState<NotificationData[]>([]);
   const [unreadCount, setUnreadCount] = useState(0);
   const [loading, setLoading] = useState(false);
+  const showNotificationsRef = useRef(showNotifications);
 
   const fetchUnreadCount = async () => {
     if (!user?.id) return;
@@ -131,18 +132,59 @@ const Notification: React.FC<NotificationProps> = ({ onNotificationAction, onNot
   };
 
   useEffect(() => {
-    if (user?.id) {
-      fetchUnreadCount();
-      
-      const interval = setInterval(() => {
+    if (!user?.id) return;
+
+    let source: EventSource | null = null;
+    let retryTimer: ReturnType<typeof setTimeout> | undefined;
+    let closed = false;
+
+    // Le compteur est poussé par le serveur (premier événement à l'ouverture, puis à chaque changement)
+    const connect = async () => {
+      try {
+        const opened = await notificationService.openNotificationStream();
+        if (closed) {
+          opened.close();
+          return;
+        }
+        source = opened;
+        source.addEventListener('unread-count', (event) => {
+          setUnreadCount(JSON.parse((event as MessageEvent).data).count);
+        });
+        source.addEventListener('notification', (event) => {
+          setUnreadCount(JSON.parse((event as MessageEvent).data).unreadCount);
+          if (showNotificationsRef.current) {
+            fetchNotifications();
+          }
+        });
+        source.onerror = () => {
+          // Le ticket est à usage unique : reconnexion avec un nouveau ticket
+          source?.close();
+          scheduleReconnect();
+        };
+      } catch (error) {
+        console.error('Erreur lors de l\'ouverture du flux de notifications:', error);
         fetchUnreadCount();
-      }, 30000);
-      
-      return () => clearInterval(interval);
-    }
+        scheduleReconnect();
+      }
+    };
+
+    const scheduleReconnect = () => {
+      if (!closed) {
+        retryTimer = setTimeout(connect, 5000);
+      }
+    };
+
+    connect();
+
+    return () => {
+      closed = true;
+      clearTimeout(retryTimer);
+      source?.close();
+    };
   }, [user]);
 
   useEffect(() => {
+    showNotificationsRef.current = showNotifications;
     if (showNotifications) {
       fetchNotifications();
     }
@@ -37,6 +37,16 @@ export const notificationService = {
     return response.data.count;
   },
 
+  // Ouvrir le flux temps réel (SSE) : EventSource ne transmet pas l'en-tête Authorization,
+  // un ticket à usage unique est donc demandé avec le token puis passé dans l'URL
+  openNotificationStream: async (): Promise<EventSource> => {
+    const token = getAuthToken();
+    const response = await axios.post(`${API_BASE_URL}/notifications/stream-ticket`, {}, {
+      headers: { 'Authorization': `Bearer ${token}` }
+    });
+    return new EventSource(`${API_BASE_URL}/notifications/stream?ticket=${encodeURIComponent(response.data.ticket)}`);
+  },
+
   // Marquer une notification comme lue
   markAsRead: async (notificationId: number): Promise<void> => {
     const token = getAuthToken();